@@ -59,6 +59,24 @@ public final class AISettings implements PersistentStateComponent<AISettings.Sta
         public boolean customRulesEnabled = false;
         public String customRule = ""; // Store custom rule text
         
+        // Document search configuration (per embedding provider)
+        public String openAIVectorSearchMode = VectorSearchMode.EXACT.getId();
+        public String geminiVectorSearchMode = VectorSearchMode.EXACT.getId();
+        public boolean persistQueryEmbeddingCache = false;
+        public boolean memoryMappedDocumentStore = true;
+        
+        // Response cache for repeated prompts (opt-in)
+        public boolean responseCacheEnabled = false;
+        public boolean persistResponseCache = false;
+        public boolean failureDeduplicationEnabled = false;
+        
+        // Analyze every failure of a run, one request per root cause (opt-in)
+        public boolean batchAnalysisEnabled = false;
+        
+        // Provider resilience: fail over to the other configured provider, hedge slow requests (opt-in)
+        public boolean providerFailoverEnabled = true;
+        public boolean hedgedRequestsEnabled = false;
+        
         /**
          * Default constructor for state initialization.
          * All fields have default values to ensure proper initialization.
@@ -356,6 +374,203 @@ public final class AISettings implements PersistentStateComponent<AISettings.Sta
     
     // --- Validation and utility methods ---
     
+    // --- Document search configuration ---
+    
+    /**
+     * Gets the vector search mode used for documents embedded by the given service.
+     * 
+     * @param serviceType the embedding provider
+     * @return the configured search mode, or default if invalid
+     */
+    public VectorSearchMode getVectorSearchMode(@NotNull AIServiceType serviceType) {
+        String modeId = serviceType == AIServiceType.GEMINI 
+            ? myState.geminiVectorSearchMode 
+            : myState.openAIVectorSearchMode;
+        VectorSearchMode mode = VectorSearchMode.fromId(modeId);
+        return mode != null ? mode : VectorSearchMode.getDefault();
+    }
+    
+    /**
+     * Sets the vector search mode used for documents embedded by the given service.
+     * 
+     * @param serviceType the embedding provider
+     * @param mode the search mode to use
+     */
+    public void setVectorSearchMode(@NotNull AIServiceType serviceType, @Nullable VectorSearchMode mode) {
+        String modeId = mode != null ? mode.getId() : VectorSearchMode.getDefault().getId();
+        LOG.info("Vector search mode for " + serviceType.getId() + " set to: " + modeId);
+        if (serviceType == AIServiceType.GEMINI) {
+            myState.geminiVectorSearchMode = modeId;
+        } else {
+            myState.openAIVectorSearchMode = modeId;
+        }
+    }
+    
+    /**
+     * Checks if query embeddings should be cached on disk across IDE restarts.
+     * 
+     * @return true if the persistent query embedding cache is enabled
+     */
+    public boolean isPersistQueryEmbeddingCache() {
+        return myState.persistQueryEmbeddingCache;
+    }
+    
+    /**
+     * Sets whether query embeddings should be cached on disk across IDE restarts.
+     * 
+     * @param persist true to keep query embeddings in the persistent cache
+     */
+    public void setPersistQueryEmbeddingCache(boolean persist) {
+        LOG.info("Persistent query embedding cache " + (persist ? "enabled" : "disabled"));
+        myState.persistQueryEmbeddingCache = persist;
+    }
+    
+    /**
+     * Checks if the bundled document database should be extracted to disk and memory-mapped
+     * read-only instead of being copied into memory.
+     * 
+     * @return true if the memory-mapped document store is enabled
+     */
+    public boolean isMemoryMappedDocumentStore() {
+        return myState.memoryMappedDocumentStore;
+    }
+    
+    /**
+     * Sets whether the bundled document database should be memory-mapped from disk.
+     * Takes effect after an IDE restart, since the document store is shared by all projects.
+     * 
+     * @param memoryMapped true to memory-map the extracted database
+     */
+    public void setMemoryMappedDocumentStore(boolean memoryMapped) {
+        LOG.info("Memory-mapped document store " + (memoryMapped ? "enabled" : "disabled"));
+        myState.memoryMappedDocumentStore = memoryMapped;
+    }
+    
+    /**
+     * Checks if identical prompts should be answered from the response cache instead of a model call.
+     * 
+     * @return true if the response cache is enabled
+     */
+    public boolean isResponseCacheEnabled() {
+        return myState.responseCacheEnabled;
+    }
+    
+    /**
+     * Sets whether identical prompts should be answered from the response cache.
+     * 
+     * @param enabled true to reuse cached responses for identical prompts
+     */
+    public void setResponseCacheEnabled(boolean enabled) {
+        LOG.info("AI response cache " + (enabled ? "enabled" : "disabled"));
+        myState.responseCacheEnabled = enabled;
+    }
+    
+    /**
+     * Checks if cached responses should be kept on disk across IDE restarts.
+     * 
+     * @return true if the persistent response cache is enabled
+     */
+    public boolean isPersistResponseCache() {
+        return myState.persistResponseCache;
+    }
+    
+    /**
+     * Sets whether cached responses should be kept on disk across IDE restarts.
+     * Takes effect after an IDE restart, since the response cache is shared by all projects.
+     * 
+     * @param persist true to keep cached responses in the persistent cache
+     */
+    public void setPersistResponseCache(boolean persist) {
+        LOG.info("Persistent AI response cache " + (persist ? "enabled" : "disabled"));
+        myState.persistResponseCache = persist;
+    }
+    
+    /**
+     * Checks if failures that differ only in details such as timestamps, IDs or ports should
+     * reuse the analysis of a recent similar failure.
+     * 
+     * @return true if failure deduplication is enabled
+     */
+    public boolean isFailureDeduplicationEnabled() {
+        return myState.failureDeduplicationEnabled;
+    }
+    
+    /**
+     * Sets whether similar failures should reuse the analysis of a recent failure.
+     * 
+     * @param enabled true to reuse analyses of similar recent failures
+     */
+    public void setFailureDeduplicationEnabled(boolean enabled) {
+        LOG.info("Failure deduplication " + (enabled ? "enabled" : "disabled"));
+        myState.failureDeduplicationEnabled = enabled;
+    }
+    
+    /**
+     * Checks if all failures of a test run should be analyzed, grouped by root cause.
+     * 
+     * <p>When disabled, only the first failure of a run is analyzed.</p>
+     * 
+     * @return true if batch analysis is enabled
+     */
+    public boolean isBatchAnalysisEnabled() {
+        return myState.batchAnalysisEnabled;
+    }
+    
+    /**
+     * Sets whether all failures of a test run should be analyzed, grouped by root cause.
+     * 
+     * @param enabled true to analyze every failure cluster when a test run finishes
+     */
+    public void setBatchAnalysisEnabled(boolean enabled) {
+        LOG.info("Batch analysis " + (enabled ? "enabled" : "disabled"));
+        myState.batchAnalysisEnabled = enabled;
+    }
+    
+    /**
+     * Checks if a failed analysis should be retried with the other configured provider.
+     * 
+     * <p>The other provider is only used when its API key is configured, and then with its
+     * best available model.</p>
+     * 
+     * @return true if provider failover is enabled
+     */
+    public boolean isProviderFailoverEnabled() {
+        return myState.providerFailoverEnabled;
+    }
+    
+    /**
+     * Sets whether a failed analysis should be retried with the other configured provider.
+     * 
+     * @param enabled true to fail over to the other configured provider
+     */
+    public void setProviderFailoverEnabled(boolean enabled) {
+        LOG.info("Provider failover " + (enabled ? "enabled" : "disabled"));
+        myState.providerFailoverEnabled = enabled;
+    }
+    
+    /**
+     * Checks if a slow analysis request should be hedged with a second identical request.
+     * 
+     * <p>The second request is sent once the first has taken longer than the provider's
+     * recent 95th percentile latency, and the first response wins. Hedging trades extra
+     * tokens for lower tail latency, and streamed requests are never hedged.</p>
+     * 
+     * @return true if hedged requests are enabled
+     */
+    public boolean isHedgedRequestsEnabled() {
+        return myState.hedgedRequestsEnabled;
+    }
+    
+    /**
+     * Sets whether a slow analysis request should be hedged with a second identical request.
+     * 
+     * @param enabled true to hedge requests slower than the provider's 95th percentile latency
+     */
+    public void setHedgedRequestsEnabled(boolean enabled) {
+        LOG.info("Hedged requests " + (enabled ? "enabled" : "disabled"));
+        myState.hedgedRequestsEnabled = enabled;
+    }
+    
     /**
      * Checks if AI analysis is properly configured and ready to use.
      * 
@@ -0,0 +1,91 @@
+package com.trace.ai.configuration;
+
+/**
+ * Enumeration of vector search strategies for the document store.
+ * 
+ * <p>The search mode is selected per embedding provider. Exact search is always
+ * available and is the ground truth; approximate search trades a small amount of
+ * recall for sub-linear query time on large corpora; quantized search keeps a quarter
+ * of the vector memory and re-ranks its best candidates exactly.</p>
+ * 
+ * @author Alex Ibasitas
+ * @since 1.0.0
+ */
+public enum VectorSearchMode {
+    
+    /**
+     * Exact cosine similarity over every stored embedding.
+     */
+    EXACT("Exact"),
+    
+    /**
+     * Approximate nearest-neighbour search using an HNSW graph.
+     */
+    HNSW("Approximate (HNSW)"),
+    
+    /**
+     * Int8-quantized candidate scan re-ranked with full-precision cosine similarity.
+     */
+    QUANTIZED("Quantized (int8)");
+    
+    private final String displayName;
+    
+    /**
+     * Constructor for vector search mode.
+     * 
+     * @param displayName the human-readable name for UI display
+     */
+    VectorSearchMode(String displayName) {
+        this.displayName = displayName;
+    }
+    
+    /**
+     * Gets the unique identifier for this mode (same as enum name).
+     * 
+     * @return the mode ID
+     */
+    public String getId() {
+        return this.name().toLowerCase();
+    }
+    
+    /**
+     * Gets the human-readable display name for UI.
+     * 
+     * @return the display name
+     */
+    public String getDisplayName() {
+        return displayName;
+    }
+    
+    /**
+     * Gets the vector search mode from its ID.
+     * 
+     * @param id the mode ID
+     * @return the corresponding mode, or null if not found
+     */
+    public static VectorSearchMode fromId(String id) {
+        if (id == null || id.trim().isEmpty()) {
+            return null;
+        }
+        
+        try {
+            return valueOf(id.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+    
+    /**
+     * Gets the default vector search mode.
+     * 
+     * @return the default mode (EXACT)
+     */
+    public static VectorSearchMode getDefault() {
+        return EXACT;
+    }
+    
+    @Override
+    public String toString() {
+        return displayName;
+    }
+}
@@ -12,6 +12,9 @@ import org.jetbrains.annotations.Nullable;
  * and service metadata. The confidence level is expected to be 
  * included in the analysis text itself.</p>
  * 
+ * <p>Results answered from the response cache instead of a model call are
+ * flagged with {@link #isCached()}.</p>
+ * 
  * @author Alex Ibasitas
  * @since 1.0.0
  */
@@ -23,6 +26,7 @@ public final class AIAnalysisResult {
     private final String modelId;
     private final long timestamp;
     private final long processingTimeMs;
+    private final boolean cached;
     
     /**
      * Constructor for AIAnalysisResult.
@@ -57,12 +61,34 @@ public final class AIAnalysisResult {
                            @NotNull String modelId,
                            long timestamp,
                            long processingTimeMs) {
+        this(analysis, prompt, serviceType, modelId, timestamp, processingTimeMs, false);
+    }
+    
+    /**
+     * Constructor for AIAnalysisResult with prompt and cache flag.
+     * 
+     * @param analysis the analysis text from the AI service
+     * @param prompt the prompt that was sent to the AI (can be null)
+     * @param serviceType the AI service type used
+     * @param modelId the specific model ID used
+     * @param timestamp the timestamp when analysis was performed
+     * @param processingTimeMs the processing time in milliseconds
+     * @param cached true if the analysis was served from the response cache
+     */
+    public AIAnalysisResult(@NotNull String analysis,
+                           @Nullable String prompt,
+                           @NotNull AIServiceType serviceType,
+                           @NotNull String modelId,
+                           long timestamp,
+                           long processingTimeMs,
+                           boolean cached) {
         this.analysis = analysis;
         this.prompt = prompt;
         this.serviceType = serviceType;
         this.modelId = modelId;
         this.timestamp = timestamp;
         this.processingTimeMs = processingTimeMs;
+        this.cached = cached;
     }
     
     /**
@@ -128,16 +154,26 @@ public final class AIAnalysisResult {
         return processingTimeMs;
     }
     
+    /**
+     * Checks if the analysis was served from the response cache instead of a model call.
+     * 
+     * @return true if the analysis came from the response cache
+     */
+    public boolean isCached() {
+        return cached;
+    }
+    
     /**
      * Gets a user-friendly description of the result.
      * 
      * @return a formatted description
      */
     public String getDescription() {
-        return String.format("Analysis by %s (%s) - %dms",
+        return String.format("Analysis by %s (%s) - %dms%s",
                 serviceType.getDisplayName(),
                 modelId,
-                processingTimeMs);
+                processingTimeMs,
+                cached ? " (cached)" : "");
     }
     
     @Override
@@ -149,6 +185,7 @@ public final class AIAnalysisResult {
                 ", modelId='" + modelId + '\'' +
                 ", timestamp=" + timestamp +
                 ", processingTimeMs=" + processingTimeMs +
+                ", cached=" + cached +
                 '}';
     }
     
@@ -161,6 +198,7 @@ public final class AIAnalysisResult {
         
         if (timestamp != that.timestamp) return false;
         if (processingTimeMs != that.processingTimeMs) return false;
+        if (cached != that.cached) return false;
         if (!analysis.equals(that.analysis)) return false;
         if (prompt != null ? !prompt.equals(that.prompt) : that.prompt != null) return false;
         if (serviceType != that.serviceType) return false;
@@ -175,6 +213,7 @@ public final class AIAnalysisResult {
         result = 31 * result + modelId.hashCode();
         result = 31 * result + (int) (timestamp ^ (timestamp >>> 32));
         result = 31 * result + (int) (processingTimeMs ^ (processingTimeMs >>> 32));
+        result = 31 * result + (cached ? 1 : 0);
         return result;
     }
 } 
\ No newline at end of file
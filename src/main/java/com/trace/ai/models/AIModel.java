@@ -214,6 +214,15 @@ public class AIModel {
         return getOptimalMaxTokens(serviceType, modelId);
     }
     
+    /**
+     * Gets the number of tokens this model accepts for prompt and response together.
+     * 
+     * @return the context window in tokens
+     */
+    public int getContextWindowTokens() {
+        return getContextWindowTokens(serviceType, modelId);
+    }
+    
     /**
      * Gets the optimal temperature for this model.
      * 
@@ -307,6 +316,42 @@ public class AIModel {
         }
     }
     
+    /**
+     * Gets the context window of a given service and model.
+     * 
+     * <p>Unknown models get a conservative window so that prompts sized for them are
+     * not rejected.</p>
+     * 
+     * @param serviceType the service type
+     * @param modelId the model ID
+     * @return the context window in tokens
+     */
+    public static int getContextWindowTokens(@NotNull AIServiceType serviceType, @NotNull String modelId) {
+        String id = modelId.toLowerCase();
+        switch (serviceType) {
+            case OPENAI:
+                if (id.startsWith("gpt-4.1")) {
+                    return 1_047_576; // GPT-4.1 family
+                } else if (id.startsWith("gpt-5") || id.matches("o\\d.*")) {
+                    return 200_000; // GPT-5 and o-series reasoning models
+                } else if (id.startsWith("gpt-4o") || id.startsWith("gpt-4-turbo") || id.contains("preview")) {
+                    return 128_000; // GPT-4o and GPT-4 Turbo
+                } else if (id.startsWith("gpt-4")) {
+                    return 8_192; // Original GPT-4
+                } else {
+                    return 16_385; // GPT-3.5 Turbo
+                }
+            case GEMINI:
+                if (id.contains("1.0") || id.equals("gemini-pro")) {
+                    return 32_760; // Gemini 1.0 Pro
+                } else {
+                    return 1_048_576; // Gemini 1.5 and later
+                }
+            default:
+                return 8_192; // Default fallback
+        }
+    }
+    
     /**
      * Gets the optimal temperature for a given service and model.
      * 
@@ -3,6 +3,11 @@ package com.trace.ai.models;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+
 /**
  * Represents a test failure document entry in the frozen vector store.
  * 
@@ -236,6 +241,26 @@ public class DocumentEntry {
         return content.toString();
     }
     
+    /**
+     * Computes the hash of the embedding content.
+     * 
+     * <p>The hash identifies the exact text that was embedded, so a refresh can skip
+     * documents whose embedding content has not changed.</p>
+     * 
+     * @return the SHA-256 hash of {@link #buildEmbeddingContent()} as lowercase hex
+     */
+    @NotNull
+    public String computeContentHash() {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            byte[] hash = digest.digest(buildEmbeddingContent().getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(hash);
+        } catch (NoSuchAlgorithmException e) {
+            // Every Java platform is required to support SHA-256
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+    
     /**
      * Creates a search-friendly representation of the document.
      * 
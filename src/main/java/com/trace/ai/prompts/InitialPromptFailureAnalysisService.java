@@ -24,6 +24,11 @@ import com.intellij.openapi.diagnostic.Logger;
  *   <li><strong>Detailed:</strong> Comprehensive prompts with full context for thorough investigation</li>
  * </ul>
  * 
+ * <p>Every prompt opens with the text that is the same for all failures: the instruction,
+ * the custom instructions and the response format. The failure details follow, and a short
+ * analysis request comes last. Providers cache the shared beginning of prompts, so this
+ * order lets them reuse it; see {@link PromptLayout}.</p>
+ * 
  * <p>This service focuses solely on initial failure analysis and does not include
  * chat history or user query context. For user query processing, see UserQueryPromptService.</p>
  */
@@ -32,6 +37,9 @@ public final class InitialPromptFailureAnalysisService implements Disposable {
     
     private static final Logger LOG = Logger.getInstance(InitialPromptFailureAnalysisService.class);
     
+    // Enough scenarios to show the pattern without letting a large cluster blow up the prompt
+    static final int MAX_LISTED_SCENARIOS = 20;
+    
     /**
      * Generates a concise summary prompt for quick analysis.
      * 
@@ -72,6 +80,21 @@ public final class InitialPromptFailureAnalysisService implements Disposable {
             prompt.append(customRule.trim()).append("\n\n");
         }
         
+        // Response format is static too, so it belongs to the cacheable prefix
+        prompt.append("### Response Format ###\n");
+        prompt.append("Provide your analysis in this exact format:\n\n");
+        
+        prompt.append("### Failure Analysis\n");
+        prompt.append("- **Failure Type:** [Assertion/Exception/Configuration/Environment/Other]\n");
+        prompt.append("- **Likely Cause:** [Product Defect/Automation Issue/Data Issue/Environment Issue/Test Design Issue]\n");
+        prompt.append("- **Confidence:** [High/Medium/Low] - Based on the evidence quality and your analysis\n\n");
+
+        prompt.append("### Technical Details\n");
+        prompt.append("- **Observed vs. Expected:** [Briefly describe what the test was trying to do and what happened instead]\n\n");
+
+        prompt.append("### Recommended Actions\n");
+        prompt.append("- **Immediate Steps:** [Specific, actionable steps to resolve this issue]\n\n");
+        
         // Background context (identical structure to full analysis)
         prompt.append("### Test Failure Context ###\n");
         appendFailureContext(prompt, failureInfo);
@@ -96,20 +119,9 @@ public final class InitialPromptFailureAnalysisService implements Disposable {
         prompt.append("### Code Context ###\n");
         appendCodeContext(prompt, failureInfo);
         
-        // Clear analysis request with structured sections (kept last so docs are inserted before it)
+        // Analysis request kept last so docs are inserted before it
         prompt.append("### Analysis Request ###\n");
-        prompt.append("Provide your analysis in this exact format:\n\n");
-        
-        prompt.append("### Failure Analysis\n");
-        prompt.append("- **Failure Type:** [Assertion/Exception/Configuration/Environment/Other]\n");
-        prompt.append("- **Likely Cause:** [Product Defect/Automation Issue/Data Issue/Environment Issue/Test Design Issue]\n");
-        prompt.append("- **Confidence:** [High/Medium/Low] - Based on the evidence quality and your analysis\n\n");
-
-        prompt.append("### Technical Details\n");
-        prompt.append("- **Observed vs. Expected:** [Briefly describe what the test was trying to do and what happened instead]\n\n");
-
-        prompt.append("### Recommended Actions\n");
-        prompt.append("- **Immediate Steps:** [Specific, actionable steps to resolve this issue]\n");
+        prompt.append("Analyze the test failure above and respond in the response format.\n");
         
         LOG.info("Summary prompt generated for: " + failureInfo.getScenarioName());
         return prompt.toString();
@@ -166,6 +178,26 @@ public final class InitialPromptFailureAnalysisService implements Disposable {
             prompt.append(customRule.trim()).append("\n\n");
         }
         
+        // Response format is static too, so it belongs to the cacheable prefix
+        prompt.append("### Response Format ###\n");
+        prompt.append("Provide your analysis in this exact format. Be specific and actionable:\n\n");
+        
+        prompt.append("## Failure Analysis\n");
+        prompt.append("- **Failure Type:** [Assertion/Exception/Configuration/Environment/Other] - Choose the most specific category\n");
+        prompt.append("- **Likely Cause:** [Product Defect/Automation Issue/Data Issue/Environment Issue/Test Design Issue] - Select the primary cause\n");
+        prompt.append("- **Confidence:** [High/Medium/Low] - Based on the evidence quality and your analysis\n\n");
+        
+        prompt.append("## Technical Details\n");
+        prompt.append("- **What Failed:** [Specific description of what the test was trying to do and what actually happened]\n");
+        prompt.append("- **Why It Failed:** [Technical explanation based on the evidence - reference specific parts of the stack trace, step definition, or scenario]\n\n");
+        
+        prompt.append("## Recommended Actions\n");
+        prompt.append("- **Immediate Steps:** [Specific, actionable steps to resolve this issue - be concrete]\n");
+        prompt.append("- **Investigation Areas:** [What to check next to confirm the root cause]\n");
+        prompt.append("- **Test Improvements:** [How to make this test more robust and prevent similar failures]\n\n");
+        
+        prompt.append("**Important:** Base your analysis on the evidence provided. If you need more information, specify what additional context would help.\n\n");
+        
         // Structured context with clear sections and improved organization
         prompt.append("### Test Failure Context ###\n");
         appendFailureContext(prompt, failureInfo);
@@ -189,27 +221,94 @@ public final class InitialPromptFailureAnalysisService implements Disposable {
         prompt.append("### Code Context ###\n");
         appendCodeContext(prompt, failureInfo);
         
-        // Enhanced analysis request with specific guidance and examples
+        // Analysis request kept last so docs are inserted before it
         prompt.append("### Analysis Request ###\n");
-        prompt.append("Provide your analysis in this exact format. Be specific and actionable:\n\n");
+        prompt.append("Analyze the test failure above step-by-step and respond in the response format.\n");
         
-        prompt.append("## Failure Analysis\n");
-        prompt.append("- **Failure Type:** [Assertion/Exception/Configuration/Environment/Other] - Choose the most specific category\n");
-        prompt.append("- **Likely Cause:** [Product Defect/Automation Issue/Data Issue/Environment Issue/Test Design Issue] - Select the primary cause\n");
-        prompt.append("- **Confidence:** [High/Medium/Low] - Based on the evidence quality and your analysis\n\n");
+        LOG.info("Detailed prompt generated for: " + failureInfo.getScenarioName());
+        return prompt.toString();
+    }
+    
+    /**
+     * Generates one consolidated prompt for several failures that share a root cause.
+     * 
+     * <p>The first failure is described in full, like in the summary prompt. The other
+     * failures are listed by scenario, failed step and error message only, so the prompt
+     * grows slowly with the number of affected scenarios. At most
+     * {@link #MAX_LISTED_SCENARIOS} scenarios are listed.</p>
+     * 
+     * @param failures the failures of one cluster, the representative first
+     * @return a prompt asking for the shared root cause
+     * @throws IllegalArgumentException if failures is null or empty
+     */
+    public String generateClusterPrompt(@NotNull List<FailureInfo> failures) {
+        if (failures == null || failures.isEmpty()) {
+            throw new IllegalArgumentException("Failures cannot be null or empty");
+        }
         
-        prompt.append("## Technical Details\n");
-        prompt.append("- **What Failed:** [Specific description of what the test was trying to do and what actually happened]\n");
-        prompt.append("- **Why It Failed:** [Technical explanation based on the evidence - reference specific parts of the stack trace, step definition, or scenario]\n\n");
+        AISettings aiSettings = AISettings.getInstance();
+        if (!aiSettings.isTraceEnabled()) {
+            LOG.info("Cluster prompt generation skipped - AI disabled");
+            return "TRACE is currently disabled. Enable TRACE to generate analysis prompts.";
+        }
         
-        prompt.append("## Recommended Actions\n");
-        prompt.append("- **Immediate Steps:** [Specific, actionable steps to resolve this issue - be concrete]\n");
-        prompt.append("- **Investigation Areas:** [What to check next to confirm the root cause]\n");
-        prompt.append("- **Test Improvements:** [How to make this test more robust and prevent similar failures]\n\n");
+        FailureInfo representative = failures.get(0);
+        StringBuilder prompt = new StringBuilder();
         
-        prompt.append("**Important:** Base your analysis on the evidence provided. If you need more information, specify what additional context would help.\n");
+        prompt.append("### Instruction ###\n");
+        prompt.append("You are an expert test automation engineer. ");
+        prompt.append("Several test scenarios in the same run failed with the same stack trace at the same step. ");
+        prompt.append("Identify the single root cause they share and how to resolve it for all of them.\n\n");
         
-        LOG.info("Detailed prompt generated for: " + failureInfo.getScenarioName());
+        String customRule = aiSettings.getCustomRule();
+        if (customRule != null && !customRule.trim().isEmpty()) {
+            prompt.append("**Custom Instructions:**\n");
+            prompt.append(customRule.trim()).append("\n\n");
+        }
+        
+        prompt.append("### Response Format ###\n");
+        prompt.append("Provide your analysis in this exact format:\n\n");
+        
+        prompt.append("### Shared Root Cause\n");
+        prompt.append("- **Failure Type:** [Assertion/Exception/Configuration/Environment/Other]\n");
+        prompt.append("- **Likely Cause:** [Product Defect/Automation Issue/Data Issue/Environment Issue/Test Design Issue]\n");
+        prompt.append("- **Confidence:** [High/Medium/Low] - Based on the evidence quality and your analysis\n");
+        prompt.append("- **Explanation:** [Why all of these scenarios fail the same way]\n\n");
+        
+        prompt.append("### Recommended Actions\n");
+        prompt.append("- **Immediate Steps:** [Specific, actionable steps that resolve the failure for every affected scenario]\n");
+        prompt.append("- **Outliers:** [Any listed scenario that looks like it fails for a different reason, or None]\n\n");
+        
+        prompt.append("### Representative Failure ###\n");
+        appendFailureContext(prompt, representative);
+        
+        prompt.append("### Error Details ###\n");
+        appendErrorDetails(prompt, representative);
+        
+        GherkinScenarioInfo scenarioInfo = representative.getGherkinScenarioInfo();
+        if (scenarioInfo != null && scenarioInfo.getSteps() != null && !scenarioInfo.getSteps().isEmpty()) {
+            prompt.append("### Gherkin Scenario ###\n");
+            appendGherkinScenario(prompt, representative);
+        }
+        
+        StepDefinitionInfo stepDefInfo = representative.getStepDefinitionInfo();
+        if (stepDefInfo != null && stepDefInfo.getMethodText() != null) {
+            prompt.append("### Step Definition ###\n");
+            appendStepDefinition(prompt, representative);
+        }
+        
+        prompt.append("### Code Context ###\n");
+        appendCodeContext(prompt, representative);
+        
+        prompt.append("### Affected Scenarios ###\n");
+        appendAffectedScenarios(prompt, failures);
+        
+        prompt.append("### Analysis Request ###\n");
+        prompt.append("Analyze the ").append(failures.size())
+            .append(" failures above and respond in the response format.\n");
+        
+        LOG.info("Cluster prompt generated for " + failures.size() + " failures, represented by: "
+            + representative.getScenarioName());
         return prompt.toString();
     }
     
@@ -324,6 +423,32 @@ public final class InitialPromptFailureAnalysisService implements Disposable {
         prompt.append("\n");
     }
     
+    private void appendAffectedScenarios(StringBuilder prompt, List<FailureInfo> failures) {
+        int listed = Math.min(failures.size(), MAX_LISTED_SCENARIOS);
+        for (int i = 0; i < listed; i++) {
+            FailureInfo failure = failures.get(i);
+            prompt.append(i + 1).append(". **").append(failure.getScenarioName()).append("**");
+            if (failure.getFailedStepText() != null) {
+                prompt.append(" - ").append(failure.getFailedStepText());
+            }
+            prompt.append("\n");
+            if (failure.getErrorMessage() != null && !failure.getErrorMessage().trim().isEmpty()) {
+                prompt.append("   Error: ").append(firstLine(failure.getErrorMessage())).append("\n");
+            }
+        }
+        if (failures.size() > listed) {
+            prompt.append("... and ").append(failures.size() - listed).append(" more scenarios with the same failure\n");
+        }
+        
+        prompt.append("\n");
+    }
+    
+    private String firstLine(String text) {
+        String trimmed = text.trim();
+        int newline = trimmed.indexOf('\n');
+        return newline >= 0 ? trimmed.substring(0, newline).trim() : trimmed;
+    }
+    
     private String cleanStackTrace(String stackTrace) {
         // Remove unnecessary metadata and formatting while preserving essential information
         return stackTrace
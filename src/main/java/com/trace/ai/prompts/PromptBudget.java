@@ -0,0 +1,251 @@
+package com.trace.ai.prompts;
+
+import com.intellij.openapi.diagnostic.Logger;
+import com.trace.ai.models.AIModel;
+import com.trace.ai.tokenizer.BpeTokenizer;
+import com.trace.ai.tokenizer.TokenEncoding;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Fits an assembled prompt into a token budget, section by section.
+ *
+ * <p>Prompts are split at their {@code ### Section ###} headers. Sections that can grow
+ * without bound, such as stack traces, step definitions and retrieved documentation, are
+ * first cut to their own token budget. If the prompt is still larger than the model can
+ * take, the least important sections are shortened or dropped until it fits: documentation
+ * first, then conversation history and affected scenarios, then the scenario and step
+ * definition, and the error details last. Instructions, the failure context and the analysis
+ * request are never cut.</p>
+ *
+ * <p>A section is cut from its end, keeping the top frames of a stack trace and the start
+ * of each document, and is marked as truncated so the model knows text is missing.</p>
+ *
+ * @author Alex Ibasitas
+ * @since 1.0.0
+ */
+public final class PromptBudget {
+    
+    private static final Logger LOG = Logger.getInstance(PromptBudget.class);
+    
+    // Headroom for differences between the local count and the provider's
+    static final int SAFETY_MARGIN_TOKENS = 256;
+    
+    // A section cut below this is dropped rather than kept as a fragment
+    static final int MIN_SECTION_TOKENS = 64;
+    
+    static final String TRUNCATION_MARKER = "[... truncated to fit the token budget ...]";
+    
+    private static final Pattern SECTION_HEADER = Pattern.compile("(?m)^### (.+?) ###\\n?");
+    
+    // Sections not listed here can be shortened after documentation, and have no budget of their own
+    private static final SectionRule DEFAULT_RULE = new SectionRule(2, Integer.MAX_VALUE);
+    private static final SectionRule REQUIRED = new SectionRule(SectionRule.REQUIRED_PRIORITY, Integer.MAX_VALUE);
+    
+    private static final Map<String, SectionRule> RULES = Map.ofEntries(
+        Map.entry("Instruction", REQUIRED),
+        Map.entry("Role", REQUIRED),
+        Map.entry("Task", REQUIRED),
+        Map.entry("Custom Instructions", REQUIRED),
+        Map.entry("Response Format", REQUIRED),
+        Map.entry("Test Failure Context", REQUIRED),
+        Map.entry("Representative Failure", REQUIRED),
+        Map.entry("Code Context", REQUIRED),
+        Map.entry("Current Query", REQUIRED),
+        Map.entry("Response Guidelines", REQUIRED),
+        Map.entry("Analysis Request", REQUIRED),
+        Map.entry("Error Details", new SectionRule(4, 2000)),
+        Map.entry("Step Definition", new SectionRule(3, 1500)),
+        Map.entry("Gherkin Scenario", new SectionRule(3, 1500)),
+        Map.entry("Recent Conversation", new SectionRule(2, 3000)),
+        Map.entry("Recent Conversation Context", new SectionRule(2, 3000)),
+        Map.entry("Affected Scenarios", new SectionRule(2, 1500)),
+        Map.entry("Relevant Documentation", new SectionRule(1, 3000))
+    );
+    
+    private final int maxPromptTokens;
+    private final BpeTokenizer tokenizer;
+    
+    /**
+     * Creates a budget.
+     *
+     * @param maxPromptTokens the most tokens the prompt may have
+     * @param tokenizer counts and truncates tokens
+     * @throws IllegalArgumentException if maxPromptTokens is not positive
+     */
+    PromptBudget(int maxPromptTokens, @NotNull BpeTokenizer tokenizer) {
+        if (maxPromptTokens <= 0) {
+            throw new IllegalArgumentException("Max prompt tokens must be positive");
+        }
+        this.maxPromptTokens = maxPromptTokens;
+        this.tokenizer = tokenizer;
+    }
+    
+    /**
+     * Creates the budget of a model: its context window less the response it may generate.
+     *
+     * @param model the model the prompt is sent to
+     * @return the prompt budget of the model
+     */
+    @NotNull
+    public static PromptBudget forModel(@NotNull AIModel model) {
+        int maxPromptTokens = model.getContextWindowTokens() - model.getMaxTokens() - SAFETY_MARGIN_TOKENS;
+        return new PromptBudget(Math.max(MIN_SECTION_TOKENS, maxPromptTokens),
+            BpeTokenizer.getInstance(TokenEncoding.forModel(model.getServiceType(), model.getModelId())));
+    }
+    
+    /**
+     * Gets the most tokens a prompt may have.
+     *
+     * @return the prompt budget in tokens
+     */
+    public int getMaxPromptTokens() {
+        return maxPromptTokens;
+    }
+    
+    /**
+     * Fits a prompt into the budget.
+     *
+     * @param prompt the assembled prompt
+     * @return the prompt with sections cut to their budgets and, if needed, shortened to fit
+     */
+    @NotNull
+    public String fit(@NotNull String prompt) {
+        List<Section> sections = split(prompt);
+        int total = 0;
+        for (Section section : sections) {
+            if (section.tokens > section.rule.maxTokens) {
+                section.truncate(section.rule.maxTokens);
+            }
+            total += section.tokens;
+        }
+        
+        int overflow = total - maxPromptTokens;
+        for (int priority = 1; overflow > 0 && priority < SectionRule.REQUIRED_PRIORITY; priority++) {
+            // Later sections of the same priority are cut first; they are usually less specific
+            for (int i = sections.size() - 1; overflow > 0 && i >= 0; i--) {
+                Section section = sections.get(i);
+                if (section.rule.priority != priority || section.dropped) {
+                    continue;
+                }
+                int before = section.tokens;
+                int keep = before - overflow;
+                if (keep < MIN_SECTION_TOKENS) {
+                    section.dropped = true;
+                    overflow -= before;
+                } else {
+                    section.truncate(keep);
+                    overflow -= before - section.tokens;
+                }
+            }
+        }
+        if (overflow > 0) {
+            LOG.warn("Prompt exceeds its budget of " + maxPromptTokens + " tokens by " + overflow
+                + " tokens even without optional sections");
+        }
+        
+        StringBuilder fitted = new StringBuilder(prompt.length());
+        for (Section section : sections) {
+            if (!section.dropped) {
+                fitted.append(section.text);
+            }
+        }
+        if (fitted.length() != prompt.length()) {
+            LOG.info("Fitted prompt to " + maxPromptTokens + " token budget (" + prompt.length()
+                + " -> " + fitted.length() + " chars)");
+        }
+        return fitted.toString();
+    }
+    
+    /**
+     * Splits a prompt at its section headers.
+     *
+     * @param prompt the prompt
+     * @return the sections in order, text before the first header as a required section
+     */
+    private List<Section> split(String prompt) {
+        List<Section> sections = new ArrayList<>();
+        Matcher matcher = SECTION_HEADER.matcher(prompt);
+        int start = 0;
+        SectionRule rule = REQUIRED;
+        String header = "";
+        while (matcher.find()) {
+            if (matcher.start() > start || !header.isEmpty()) {
+                sections.add(new Section(header, prompt.substring(start + header.length(), matcher.start()), rule));
+            }
+            header = matcher.group();
+            rule = RULES.getOrDefault(matcher.group(1).trim(), DEFAULT_RULE);
+            start = matcher.start();
+        }
+        sections.add(new Section(header, prompt.substring(start + header.length()), rule));
+        return sections;
+    }
+    
+    /**
+     * Priority and own token budget of a kind of section.
+     */
+    private static final class SectionRule {
+        
+        static final int REQUIRED_PRIORITY = Integer.MAX_VALUE;
+        
+        // Lower priorities are cut first
+        final int priority;
+        final int maxTokens;
+        
+        SectionRule(int priority, int maxTokens) {
+            this.priority = priority;
+            this.maxTokens = maxTokens;
+        }
+    }
+    
+    /**
+     * One header and its body.
+     */
+    private final class Section {
+        
+        final String header;
+        final SectionRule rule;
+        String text;
+        int tokens;
+        boolean dropped;
+        
+        Section(String header, String body, SectionRule rule) {
+            this.header = header;
+            this.rule = rule;
+            this.text = header + body;
+            this.tokens = tokenizer.countTokens(text);
+        }
+        
+        /**
+         * Cuts the section to a number of tokens, closing an open code block and marking the cut.
+         *
+         * @param maxTokens the most tokens the section may have afterwards
+         */
+        void truncate(int maxTokens) {
+            String suffix = "\n" + TRUNCATION_MARKER + "\n\n";
+            String kept = tokenizer.truncate(text, Math.max(0, maxTokens - tokenizer.countTokens(suffix + "```\n")));
+            if (kept.length() < header.length()) {
+                kept = header;
+            }
+            kept = kept.stripTrailing();
+            if (countFences(kept) % 2 == 1) {
+                kept += "\n```";
+            }
+            text = kept + suffix;
+            tokens = tokenizer.countTokens(text);
+        }
+        
+        private int countFences(String value) {
+            int count = 0;
+            for (int index = value.indexOf("```"); index >= 0; index = value.indexOf("```", index + 3)) {
+                count++;
+            }
+            return count;
+        }
+    }
+}
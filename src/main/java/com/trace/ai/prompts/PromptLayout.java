@@ -0,0 +1,79 @@
+package com.trace.ai.prompts;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Splits a prompt into its stable prefix and its volatile suffix.
+ *
+ * <p>Providers cache the longest prefix that a prompt shares with recent prompts, so
+ * prompts are laid out with the text that rarely changes first: instructions, the response
+ * format and the failure context. The sections that change from request to request, namely
+ * chat history, retrieved documentation and the request itself, come last. The stable
+ * prefix is everything before the first of these sections.</p>
+ *
+ * <p>Prompts without a volatile section, such as connection tests, have no stable prefix.</p>
+ *
+ * @author Alex Ibasitas
+ * @since 1.0.0
+ */
+public final class PromptLayout {
+    
+    private static final Pattern SECTION_HEADER = Pattern.compile("(?m)^### (.+?) ###$");
+    
+    // Sections that differ between requests that share the same instructions and failure
+    private static final Set<String> VOLATILE_SECTIONS = Set.of(
+        "Recent Conversation",
+        "Relevant Documentation",
+        "Current Query",
+        "Analysis Request"
+    );
+    
+    /**
+     * Private constructor to prevent instantiation of utility class.
+     */
+    private PromptLayout() {
+        throw new UnsupportedOperationException("Utility class cannot be instantiated");
+    }
+    
+    /**
+     * Finds where the stable prefix of a prompt ends.
+     *
+     * @param prompt the prompt
+     * @return the offset of the first volatile section, or 0 if the prompt has none
+     */
+    public static int stablePrefixEnd(@NotNull String prompt) {
+        Matcher matcher = SECTION_HEADER.matcher(prompt);
+        while (matcher.find()) {
+            if (VOLATILE_SECTIONS.contains(matcher.group(1).trim())) {
+                return matcher.start();
+            }
+        }
+        return 0;
+    }
+    
+    /**
+     * Gets the stable prefix of a prompt.
+     *
+     * @param prompt the prompt
+     * @return the text before the first volatile section, or an empty string if there is none
+     */
+    @NotNull
+    public static String stablePrefix(@NotNull String prompt) {
+        return prompt.substring(0, stablePrefixEnd(prompt));
+    }
+    
+    /**
+     * Gets the volatile suffix of a prompt.
+     *
+     * @param prompt the prompt
+     * @return the text from the first volatile section on, or the whole prompt if there is none
+     */
+    @NotNull
+    public static String volatileSuffix(@NotNull String prompt) {
+        return prompt.substring(stablePrefixEnd(prompt));
+    }
+}
@@ -24,6 +24,11 @@ import com.intellij.openapi.diagnostic.Logger;
  *   <li><strong>RAG Documents:</strong> Retrieved relevant documentation (when available)</li>
  * </ul>
  * 
+ * <p>Instructions and the failure context come first, since they are the same for every
+ * question about a failure. Chat history and the query, which change with every turn,
+ * come last, so that follow-up questions share a long prompt prefix that providers
+ * can cache; see {@link PromptLayout}.</p>
+ * 
  * <p>This service is specifically designed for user query processing and should
  * not be used for initial failure analysis. For initial analysis, see
  * {@link InitialPromptFailureAnalysisService}.</p>
@@ -75,7 +80,18 @@ public final class UserQueryPromptService {
         prompt.append("### Task ###\n");
         prompt.append("Answer the user's specific question about the test failure using the provided context.\n\n");
         
-        // Original failure context (always preserved)
+        // Response format guidance
+        prompt.append("### Response Guidelines ###\n");
+        prompt.append("Provide a clear, specific answer to the user's question. Be actionable and relevant.\n\n");
+        
+        // Add custom rule if present
+        String customRule = AISettings.getInstance().getCustomRule();
+        if (customRule != null && !customRule.trim().isEmpty()) {
+            prompt.append("### Custom Instructions ###\n");
+            prompt.append(customRule.trim()).append("\n\n");
+        }
+        
+        // Original failure context (always preserved, and the same for every question about this failure)
         prompt.append("### Test Failure Context ###\n");
         appendFailureContext(prompt, failureInfo);
         
@@ -86,22 +102,9 @@ public final class UserQueryPromptService {
             prompt.append(chatHistoryContext).append("\n");
         }
         
-
-        
         // User's specific query (placed at the end per Gemini best practices)
         prompt.append("### Current Query ###\n");
-        prompt.append(userQuery.trim()).append("\n\n");
-        
-        // Response format guidance
-        prompt.append("### Response Guidelines ###\n");
-        prompt.append("Provide a clear, specific answer to the user's question. Be actionable and relevant.\n\n");
-        
-        // Add custom rule if present
-        String customRule = AISettings.getInstance().getCustomRule();
-        if (customRule != null && !customRule.trim().isEmpty()) {
-            prompt.append("### Custom Instructions ###\n");
-            prompt.append(customRule.trim()).append("\n");
-        }
+        prompt.append(userQuery.trim()).append("\n");
         
         LOG.info("User query prompt generated for: " + userQuery);
         return prompt.toString();
@@ -1,6 +1,5 @@
 package com.trace.ai.services;
 
-import com.intellij.openapi.application.ApplicationManager;
 import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.project.Project;
 import com.trace.ai.models.AIAnalysisResult;
@@ -9,13 +8,17 @@ import com.trace.ai.prompts.UserQueryPromptService;
 import com.trace.test.models.FailureInfo;
 import com.trace.ai.configuration.AISettings;
 import com.trace.ai.configuration.AIServiceType;
-import com.trace.ai.services.embedding.OpenAIEmbeddingService;
-import com.trace.ai.services.embedding.GeminiEmbeddingService;
-import com.trace.security.SecureAPIKeyManager;
 
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
+import java.util.List;
+import java.util.concurrent.CancellationException;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 
 /**
  * Coordinates between prompt orchestrators and request handler.
@@ -48,6 +51,9 @@ public final class AIAnalysisOrchestrator {
     
     private static final Logger LOG = Logger.getInstance(AIAnalysisOrchestrator.class);
     
+    // Keeps a large batch from hitting provider rate limits while still overlapping requests
+    static final int BATCH_MAX_CONCURRENT_REQUESTS = 3;
+    
     // Services
     private final Project project;
     private final AIRequestHandler requestHandler;
@@ -55,10 +61,8 @@ public final class AIAnalysisOrchestrator {
     private final UserQueryPromptService userQueryOrchestrator;
     private final AISettings aiSettings;
     
-    // Lazy-loaded services to avoid EDT violations
-    private volatile DocumentRetrievalService documentRetrievalService;
-    private volatile OpenAIEmbeddingService openAIEmbeddingService;
-    private volatile GeminiEmbeddingService geminiEmbeddingService;
+    // Analyses of recent failures, reused for near-identical failures of later runs
+    private final FailureDeduplicationCache failureDeduplicationCache = new FailureDeduplicationCache();
     
     /**
      * Constructor for AIAnalysisOrchestrator.
@@ -79,7 +83,7 @@ public final class AIAnalysisOrchestrator {
         this.initialOrchestrator = new InitialPromptFailureAnalysisService();
         this.userQueryOrchestrator = new UserQueryPromptService();
         
-        LOG.info("AIAnalysisOrchestrator initialized (embedding services will be loaded lazily)");
+        LOG.info("AIAnalysisOrchestrator initialized (document store will be loaded lazily)");
     }
     
     /**
@@ -139,7 +143,8 @@ public final class AIAnalysisOrchestrator {
                         result.getServiceType(),
                         result.getModelId(),
                         result.getTimestamp(),
-                        result.getProcessingTimeMs()
+                        result.getProcessingTimeMs(),
+                        result.isCached()
                     );
                 })
                 .exceptionally(throwable -> {
@@ -173,6 +178,46 @@ public final class AIAnalysisOrchestrator {
      * @throws IllegalArgumentException if failureInfo is null
      */
     public CompletableFuture<AIAnalysisResult> analyzeInitialFailureWithDocuments(@NotNull FailureInfo failureInfo, @NotNull AnalysisMode mode) {
+        return analyzeInitialFailureWithDocuments(failureInfo, mode, null);
+    }
+    
+    /**
+     * Analyzes an initial test failure with document retrieval integration, streaming the response.
+     * 
+     * <p>Streamed text is passed to {@code onPartialText} on a background thread while the
+     * model generates it. The returned future completes with the full result as usual.</p>
+     * 
+     * @param failureInfo the failure information to analyze
+     * @param mode the analysis mode
+     * @param onPartialText receives streamed text as it arrives, or null to wait for the full response
+     * @return a CompletableFuture containing the analysis result
+     * @throws IllegalArgumentException if failureInfo or mode is null
+     */
+    public CompletableFuture<AIAnalysisResult> analyzeInitialFailureWithDocuments(@NotNull FailureInfo failureInfo,
+                                                                                  @NotNull AnalysisMode mode,
+                                                                                  @Nullable Consumer<String> onPartialText) {
+        return analyzeInitialFailureWithDocuments(failureInfo, mode, onPartialText, null);
+    }
+    
+    /**
+     * Analyzes an initial test failure with document retrieval integration under a cancellable handle.
+     * 
+     * <p>Document retrieval and the AI request are registered with the handle, so cancelling
+     * it aborts whichever is running. A cancelled analysis completes the returned future with
+     * a {@link CancellationException} instead of an error result and does not fall back to
+     * the basic analysis.</p>
+     * 
+     * @param failureInfo the failure information to analyze
+     * @param mode the analysis mode
+     * @param onPartialText receives streamed text as it arrives, or null to wait for the full response
+     * @param handle the handle that can cancel the analysis, or null if it cannot be cancelled
+     * @return a CompletableFuture containing the analysis result
+     * @throws IllegalArgumentException if failureInfo or mode is null
+     */
+    public CompletableFuture<AIAnalysisResult> analyzeInitialFailureWithDocuments(@NotNull FailureInfo failureInfo,
+                                                                                  @NotNull AnalysisMode mode,
+                                                                                  @Nullable Consumer<String> onPartialText,
+                                                                                  @Nullable AnalysisHandle handle) {
         LOG.debug("Starting initial failure analysis with documents");
         
         if (failureInfo == null) {
@@ -205,58 +250,30 @@ public final class AIAnalysisOrchestrator {
                 ));
             }
 
+            // A recent analysis of the same failure is shown instantly instead of waiting for the model
+            final FailureFingerprint fingerprint = aiSettings.isFailureDeduplicationEnabled()
+                ? FailureFingerprint.of(failureInfo)
+                : null;
+            if (fingerprint != null) {
+                AIAnalysisResult previous = failureDeduplicationCache.findExact(fingerprint, mode);
+                if (previous != null) {
+                    LOG.info("Reusing analysis of an identical recent failure");
+                    return CompletableFuture.completedFuture(createReusedResult(previous));
+                }
+            }
+            
             // First, retrieve relevant documents
-            return getDocumentRetrievalService().retrieveRelevantDocuments(
+            CompletableFuture<String> retrieval = track(handle, getDocumentRetrievalService().retrieveRelevantDocuments(
                 failureInfo.getScenarioName(),
                 "failure_analysis",
                 failureInfo.getErrorMessage(),
                 "detailed"
-            ).thenCompose(documentContext -> {
-                // Create enhanced prompt with document context positioned as context, not response format
-                final String basePrompt = (mode == AnalysisMode.OVERVIEW)
-                    ? initialOrchestrator.generateSummaryPrompt(failureInfo)
-                    : initialOrchestrator.generateDetailedPrompt(failureInfo);
-                
-        // Insert document context before the "Analysis Request" section and avoid duplicate headers
-        String enhancedPrompt = PromptUtils.insertDocumentContext(basePrompt, documentContext);
-                
-                LOG.debug("Retrieved document context for scenario '" + failureInfo.getScenarioName() + "' (" + documentContext.length() + " chars)");
-                
-                LOG.debug("Enhanced prompt with documents (base: " + basePrompt.length() + " + context: " + documentContext.length() + " = " + enhancedPrompt.length() + " chars)");
-                
-                // Send the enhanced prompt to the AI request handler
-                final String requestLabel = (mode == AnalysisMode.OVERVIEW)
-                    ? "Quick Overview"
-                    : "Enhanced Analysis with Documents";
-                return requestHandler.sendRequest(enhancedPrompt, requestLabel)
-                    .thenApply(result -> {
-                        LOG.info("Enhanced failure analysis completed successfully");
-                        
-                        // Create a new result that includes the prompt for display in "Show AI thinking"
-                        return new AIAnalysisResult(
-                            result.getAnalysis(),
-                            enhancedPrompt,  // Include the prompt for display
-                            result.getServiceType(),
-                            result.getModelId(),
-                            result.getTimestamp(),
-                            result.getProcessingTimeMs()
-                        );
-                    })
-                    .exceptionally(throwable -> {
-                        LOG.error("Enhanced failure analysis failed", throwable);
-                        return new AIAnalysisResult(
-                            "Enhanced analysis failed due to an error: " + throwable.getMessage(),
-                            AIServiceType.OPENAI,
-                            "error",
-                            System.currentTimeMillis(),
-                            0L
-                        );
-                    });
-            }).exceptionally(throwable -> {
-                LOG.error("Document retrieval failed, falling back to basic analysis", throwable);
-                // Fallback to basic analysis if document retrieval fails
-                return analyzeInitialFailure(failureInfo, mode).join();
-            });
+            ));
+            CompletableFuture<AIAnalysisResult> result = fingerprint != null
+                ? reuseSimilarAnalysis(fingerprint, mode, handle, retrieval,
+                    () -> analyzeWithDocumentContext(failureInfo, mode, onPartialText, handle, retrieval))
+                : analyzeWithDocumentContext(failureInfo, mode, onPartialText, handle, retrieval);
+            return handle != null ? handle.bind(result) : result;
             
         } catch (Exception e) {
             LOG.error("Failed to create enhanced failure analysis", e);
@@ -270,6 +287,249 @@ public final class AIAnalysisOrchestrator {
         }
     }
     
+    /**
+     * Builds the prompt with the retrieved document context and sends it to the AI service.
+     * 
+     * <p>Falls back to the basic analysis if document retrieval fails.</p>
+     * 
+     * @param failureInfo the failure information to analyze
+     * @param mode the analysis mode
+     * @param onPartialText receives streamed text as it arrives, or null to wait for the full response
+     * @param handle the handle that can cancel the analysis, or null if it cannot be cancelled
+     * @param retrieval the document retrieval already in progress
+     * @return a CompletableFuture containing the analysis result
+     */
+    private CompletableFuture<AIAnalysisResult> analyzeWithDocumentContext(@NotNull FailureInfo failureInfo,
+                                                                           @NotNull AnalysisMode mode,
+                                                                           @Nullable Consumer<String> onPartialText,
+                                                                           @Nullable AnalysisHandle handle,
+                                                                           @NotNull CompletableFuture<String> retrieval) {
+        return retrieval.thenCompose(documentContext -> {
+            AnalysisHandle.throwIfCancelled(handle);
+            
+            // Create enhanced prompt with document context positioned as context, not response format
+            final String basePrompt = (mode == AnalysisMode.OVERVIEW)
+                ? initialOrchestrator.generateSummaryPrompt(failureInfo)
+                : initialOrchestrator.generateDetailedPrompt(failureInfo);
+            
+            // Insert document context before the "Analysis Request" section and avoid duplicate headers
+            String enhancedPrompt = PromptUtils.insertDocumentContext(basePrompt, documentContext);
+            
+            LOG.debug("Retrieved document context for scenario '" + failureInfo.getScenarioName() + "' (" + documentContext.length() + " chars)");
+            
+            LOG.debug("Enhanced prompt with documents (base: " + basePrompt.length() + " + context: " + documentContext.length() + " = " + enhancedPrompt.length() + " chars)");
+            
+            // Send the enhanced prompt to the AI request handler
+            final String requestLabel = (mode == AnalysisMode.OVERVIEW)
+                ? "Quick Overview"
+                : "Enhanced Analysis with Documents";
+            return track(handle, requestHandler.sendRequest(enhancedPrompt, requestLabel, onPartialText))
+                .thenApply(result -> {
+                    LOG.info("Enhanced failure analysis completed successfully");
+                    
+                    // Create a new result that includes the prompt for display in "Show AI thinking"
+                    return new AIAnalysisResult(
+                        result.getAnalysis(),
+                        enhancedPrompt,  // Include the prompt for display
+                        result.getServiceType(),
+                        result.getModelId(),
+                        result.getTimestamp(),
+                        result.getProcessingTimeMs(),
+                        result.isCached()
+                    );
+                })
+                .exceptionally(throwable -> {
+                    AnalysisHandle.throwIfCancelled(handle);
+                    LOG.error("Enhanced failure analysis failed", throwable);
+                    return new AIAnalysisResult(
+                        "Enhanced analysis failed due to an error: " + throwable.getMessage(),
+                        AIServiceType.OPENAI,
+                        "error",
+                        System.currentTimeMillis(),
+                        0L
+                    );
+                });
+        }).exceptionallyCompose(throwable -> {
+            AnalysisHandle.throwIfCancelled(handle);
+            LOG.error("Document retrieval failed, falling back to basic analysis", throwable);
+            // Fallback to basic analysis if document retrieval fails, without blocking the network thread
+            return analyzeInitialFailure(failureInfo, mode);
+        });
+    }
+    
+    /**
+     * Reuses the analysis of a similar recent failure, or runs the analysis and remembers it.
+     * 
+     * <p>The masked failure text is embedded while the documents are retrieved. If a recent
+     * failure is similar enough, the retrieval is cancelled and its analysis is returned
+     * without a model call.</p>
+     * 
+     * @param fingerprint the fingerprint of the failure
+     * @param mode the analysis mode
+     * @param handle the handle that can cancel the analysis, or null if it cannot be cancelled
+     * @param retrieval the document retrieval already in progress
+     * @param analysis runs the analysis if no similar failure is found
+     * @return a CompletableFuture containing the analysis result
+     */
+    private CompletableFuture<AIAnalysisResult> reuseSimilarAnalysis(@NotNull FailureFingerprint fingerprint,
+                                                                     @NotNull AnalysisMode mode,
+                                                                     @Nullable AnalysisHandle handle,
+                                                                     @NotNull CompletableFuture<String> retrieval,
+                                                                     @NotNull Supplier<CompletableFuture<AIAnalysisResult>> analysis) {
+        CompletableFuture<float[]> embedding = fingerprint.getText().isEmpty()
+            ? CompletableFuture.completedFuture(null)
+            : track(handle, getDocumentRetrievalService().embedQuery(fingerprint.getText()));
+        return embedding.thenCompose(failureEmbedding -> {
+            AnalysisHandle.throwIfCancelled(handle);
+            
+            AIAnalysisResult previous = failureDeduplicationCache.findSimilar(fingerprint, failureEmbedding, mode);
+            if (previous != null) {
+                LOG.info("Reusing analysis of a similar recent failure");
+                retrieval.cancel(true);
+                return CompletableFuture.completedFuture(createReusedResult(previous));
+            }
+            
+            return analysis.get().thenApply(result -> {
+                // Error and disabled results must not be shown again for later failures
+                if (!"error".equals(result.getModelId()) && !"disabled".equals(result.getModelId())
+                        && result.getAnalysis() != null && !result.getAnalysis().trim().isEmpty()) {
+                    failureDeduplicationCache.put(fingerprint, failureEmbedding, mode, result);
+                }
+                return result;
+            });
+        });
+    }
+    
+    /**
+     * Creates a copy of a remembered analysis, flagged as cached so that it is shown as reused.
+     * 
+     * <p>The prompt is left out: it describes the earlier failure, with its own stack trace
+     * and scenario, and no prompt was sent for the new one.</p>
+     * 
+     * @param previous the remembered analysis
+     * @return the result to show for the new failure
+     */
+    private static AIAnalysisResult createReusedResult(@NotNull AIAnalysisResult previous) {
+        return new AIAnalysisResult(
+            previous.getAnalysis(),
+            null,
+            previous.getServiceType(),
+            previous.getModelId(),
+            System.currentTimeMillis(),
+            0L,
+            true
+        );
+    }
+    
+    /**
+     * Analyzes the failures of a test run with one request per root cause.
+     * 
+     * <p>Each cluster is sent as one consolidated prompt describing its representative
+     * failure and listing the other affected scenarios. At most
+     * {@link #BATCH_MAX_CONCURRENT_REQUESTS} requests are in flight at a time; the next
+     * cluster is sent as soon as one completes. Clusters are sent in list order.</p>
+     * 
+     * <p>{@code onClusterAnalyzed} is called on a background thread as each cluster completes.
+     * A failed request is reported as an error result for its cluster and does not stop the
+     * others. Cancelling the handle stops the batch.</p>
+     * 
+     * @param clusters the clusters to analyze, largest first
+     * @param onClusterAnalyzed receives each cluster with its result
+     * @param handle the handle that can cancel the batch, or null if it cannot be cancelled
+     * @return a CompletableFuture that completes when every cluster has been analyzed
+     */
+    public CompletableFuture<Void> analyzeFailureClusters(@NotNull List<FailureCluster> clusters,
+                                                          @NotNull BiConsumer<FailureCluster, AIAnalysisResult> onClusterAnalyzed,
+                                                          @Nullable AnalysisHandle handle) {
+        if (clusters.isEmpty()) {
+            return CompletableFuture.completedFuture(null);
+        }
+        
+        LOG.info("Dispatching batch analysis of " + clusters.size() + " failure cluster(s)");
+        
+        // Each lane sends one cluster at a time and takes the next one when it completes
+        AtomicInteger nextCluster = new AtomicInteger();
+        int lanes = Math.min(BATCH_MAX_CONCURRENT_REQUESTS, clusters.size());
+        CompletableFuture<?>[] laneFutures = new CompletableFuture<?>[lanes];
+        for (int i = 0; i < lanes; i++) {
+            laneFutures[i] = analyzeNextCluster(clusters, nextCluster, onClusterAnalyzed, handle);
+        }
+        CompletableFuture<Void> batch = CompletableFuture.allOf(laneFutures);
+        return handle != null ? handle.bind(batch) : batch;
+    }
+    
+    /**
+     * Analyzes the next cluster that no lane has taken yet, then the one after, until none are left.
+     * 
+     * @param clusters the clusters of the batch
+     * @param nextCluster the index of the next cluster to take, shared by all lanes
+     * @param onClusterAnalyzed receives each cluster with its result
+     * @param handle the handle that can cancel the batch, may be null
+     * @return a CompletableFuture that completes when this lane has no cluster left
+     */
+    private CompletableFuture<Void> analyzeNextCluster(@NotNull List<FailureCluster> clusters,
+                                                       @NotNull AtomicInteger nextCluster,
+                                                       @NotNull BiConsumer<FailureCluster, AIAnalysisResult> onClusterAnalyzed,
+                                                       @Nullable AnalysisHandle handle) {
+        int index = nextCluster.getAndIncrement();
+        if (index >= clusters.size()) {
+            return CompletableFuture.completedFuture(null);
+        }
+        
+        FailureCluster cluster = clusters.get(index);
+        return analyzeFailureCluster(cluster, handle).thenCompose(result -> {
+            AnalysisHandle.throwIfCancelled(handle);
+            try {
+                onClusterAnalyzed.accept(cluster, result);
+            } catch (RuntimeException e) {
+                LOG.error("Failed to handle batch analysis result", e);
+            }
+            return analyzeNextCluster(clusters, nextCluster, onClusterAnalyzed, handle);
+        });
+    }
+    
+    /**
+     * Sends the consolidated prompt of one cluster.
+     * 
+     * @param cluster the cluster to analyze
+     * @param handle the handle that can cancel the batch, may be null
+     * @return a CompletableFuture containing the analysis result, or an error result if the request failed
+     */
+    private CompletableFuture<AIAnalysisResult> analyzeFailureCluster(@NotNull FailureCluster cluster,
+                                                                      @Nullable AnalysisHandle handle) {
+        try {
+            AnalysisHandle.throwIfCancelled(handle);
+            final String prompt = initialOrchestrator.generateClusterPrompt(cluster.getFailures());
+            
+            // Gate: if AI analysis is disabled, return a result with prompt only (no network)
+            if (!aiSettings.isAutoAnalyzeEnabled()) {
+                return CompletableFuture.completedFuture(AIResultUtils.createPromptOnlyResult(prompt, AIServiceType.OPENAI));
+            }
+            
+            return track(handle, requestHandler.sendRequest(prompt, "Batch Analysis"))
+                .thenApply(result -> new AIAnalysisResult(
+                    result.getAnalysis(),
+                    prompt,  // Include the prompt for display
+                    result.getServiceType(),
+                    result.getModelId(),
+                    result.getTimestamp(),
+                    result.getProcessingTimeMs(),
+                    result.isCached()
+                ))
+                .exceptionally(throwable -> {
+                    AnalysisHandle.throwIfCancelled(handle);
+                    LOG.error("Batch analysis of cluster " + cluster + " failed", throwable);
+                    return AIResultUtils.createErrorResult(throwable, AIServiceType.OPENAI);
+                });
+        } catch (CancellationException e) {
+            return CompletableFuture.failedFuture(e);
+        } catch (Exception e) {
+            LOG.error("Failed to create batch analysis for cluster " + cluster, e);
+            return CompletableFuture.completedFuture(
+                AIResultUtils.createErrorResult("Failed to create batch analysis: " + e.getMessage(), AIServiceType.OPENAI));
+        }
+    }
+    
     /**
      * Analyzes a user query with context composition.
      * 
@@ -345,7 +605,8 @@ public final class AIAnalysisOrchestrator {
                         result.getServiceType(),
                         result.getModelId(),
                         result.getTimestamp(),
-                        result.getProcessingTimeMs()
+                        result.getProcessingTimeMs(),
+                        result.isCached()
                     );
                 })
                 .exceptionally(throwable -> {
@@ -389,6 +650,44 @@ public final class AIAnalysisOrchestrator {
      * @throws IllegalArgumentException if any parameter is null
      */
     public CompletableFuture<AIAnalysisResult> analyzeUserQueryWithDocuments(@NotNull FailureInfo failureInfo, @NotNull String userQuery) {
+        return analyzeUserQueryWithDocuments(failureInfo, userQuery, null);
+    }
+    
+    /**
+     * Analyzes a user query with document retrieval integration, streaming the response.
+     * 
+     * <p>Streamed text is passed to {@code onPartialText} on a background thread while the
+     * model generates it. The returned future completes with the full result as usual.</p>
+     * 
+     * @param failureInfo the original failure information
+     * @param userQuery the user's specific question or request
+     * @param onPartialText receives streamed text as it arrives, or null to wait for the full response
+     * @return a CompletableFuture containing the analysis result
+     * @throws IllegalArgumentException if failureInfo or userQuery is null
+     */
+    public CompletableFuture<AIAnalysisResult> analyzeUserQueryWithDocuments(@NotNull FailureInfo failureInfo,
+                                                                             @NotNull String userQuery,
+                                                                             @Nullable Consumer<String> onPartialText) {
+        return analyzeUserQueryWithDocuments(failureInfo, userQuery, onPartialText, null);
+    }
+    
+    /**
+     * Analyzes a user query with document retrieval integration under a cancellable handle.
+     * 
+     * <p>Cancellation behaves as in
+     * {@link #analyzeInitialFailureWithDocuments(FailureInfo, AnalysisMode, Consumer, AnalysisHandle)}.</p>
+     * 
+     * @param failureInfo the original failure information
+     * @param userQuery the user's specific question or request
+     * @param onPartialText receives streamed text as it arrives, or null to wait for the full response
+     * @param handle the handle that can cancel the analysis, or null if it cannot be cancelled
+     * @return a CompletableFuture containing the analysis result
+     * @throws IllegalArgumentException if failureInfo or userQuery is null
+     */
+    public CompletableFuture<AIAnalysisResult> analyzeUserQueryWithDocuments(@NotNull FailureInfo failureInfo,
+                                                                             @NotNull String userQuery,
+                                                                             @Nullable Consumer<String> onPartialText,
+                                                                             @Nullable AnalysisHandle handle) {
         if (failureInfo == null) {
             throw new IllegalArgumentException("FailureInfo cannot be null");
         }
@@ -423,12 +722,15 @@ public final class AIAnalysisOrchestrator {
             LOG.info("Added user query to chat history: " + userQuery);
             
             // First, retrieve relevant documents for the user query
-            return getDocumentRetrievalService().retrieveRelevantDocuments(
+            CompletableFuture<String> retrieval = track(handle, getDocumentRetrievalService().retrieveRelevantDocuments(
                 userQuery,
                 "user_query",
                 failureInfo.getErrorMessage(),
                 "detailed"
-            ).thenCompose(documentContext -> {
+            ));
+            CompletableFuture<AIAnalysisResult> enhancedAnalysis = retrieval.thenCompose(documentContext -> {
+                AnalysisHandle.throwIfCancelled(handle);
+                
                 // Use the user query orchestrator to create a base prompt with context
                 String basePrompt = userQueryOrchestrator.generatePrompt(failureInfo, userQuery, chatHistoryService);
                 
@@ -440,7 +742,7 @@ public final class AIAnalysisOrchestrator {
                 LOG.debug("Enhanced user query prompt with documents (base: " + basePrompt.length() + " + context: " + documentContext.length() + " = " + enhancedPrompt.length() + " chars)");
                 
                 // Send the enhanced prompt to the AI request handler
-                return requestHandler.sendRequest(enhancedPrompt, "Enhanced User Query with Documents")
+                return track(handle, requestHandler.sendRequest(enhancedPrompt, "Enhanced User Query with Documents", onPartialText))
                     .thenApply(result -> {
                         LOG.debug("Enhanced user query analysis completed by " + result.getServiceType() + " (" + (result.getAnalysis() != null ? result.getAnalysis().length() : 0) + " chars)");
                         LOG.info("AI Response Timestamp: " + result.getTimestamp());
@@ -452,10 +754,12 @@ public final class AIAnalysisOrchestrator {
                             result.getServiceType(),
                             result.getModelId(),
                             result.getTimestamp(),
-                            result.getProcessingTimeMs()
+                            result.getProcessingTimeMs(),
+                            result.isCached()
                         );
                     })
                     .exceptionally(throwable -> {
+                        AnalysisHandle.throwIfCancelled(handle);
                         LOG.error("Enhanced user query analysis failed: " + throwable.getMessage(), throwable);
                         return new AIAnalysisResult(
                             "Enhanced user query analysis failed: " + throwable.getMessage(),
@@ -465,11 +769,13 @@ public final class AIAnalysisOrchestrator {
                             0L
                         );
                     });
-            }).exceptionally(throwable -> {
+            }).exceptionallyCompose(throwable -> {
+                AnalysisHandle.throwIfCancelled(handle);
                 LOG.error("Document retrieval failed for user query, falling back to basic analysis", throwable);
-                // Fallback to basic user query analysis if document retrieval fails
-                return analyzeUserQuery(failureInfo, userQuery).join();
+                // Fallback to basic user query analysis if document retrieval fails, without blocking the network thread
+                return analyzeUserQuery(failureInfo, userQuery);
             });
+            return handle != null ? handle.bind(enhancedAnalysis) : enhancedAnalysis;
             
         } catch (Exception e) {
             LOG.error("Unexpected error in enhanced user query analysis: " + e.getMessage(), e);
@@ -616,103 +922,23 @@ public final class AIAnalysisOrchestrator {
     }
 
     /**
-     * Gets the OpenAI embedding service with lazy initialization.
-     * This method ensures thread-safe initialization and avoids EDT violations.
-     *
-     * @return the OpenAI embedding service
-     */
-    private OpenAIEmbeddingService getOpenAIEmbeddingService() {
-        if (openAIEmbeddingService == null) {
-            synchronized (this) {
-                if (openAIEmbeddingService == null) {
-                    // Check if we're on EDT and move API key retrieval off EDT
-                    if (ApplicationManager.getApplication().isDispatchThread()) {
-                        // We're on EDT, need to get API key off EDT
-                        CompletableFuture<String> apiKeyFuture = CompletableFuture.supplyAsync(() -> 
-                            SecureAPIKeyManager.getAPIKey(AIServiceType.OPENAI));
-                        try {
-                            String apiKey = apiKeyFuture.get(); // This will block but we're in a synchronized block
-                            openAIEmbeddingService = new OpenAIEmbeddingService(apiKey != null ? apiKey : "");
-                        } catch (Exception e) {
-                            LOG.warn("Failed to get OpenAI API key off EDT", e);
-                            openAIEmbeddingService = new OpenAIEmbeddingService("");
-                        }
-                    } else {
-                        // We're not on EDT, safe to call directly
-                        String apiKey = SecureAPIKeyManager.getAPIKey(AIServiceType.OPENAI);
-                        openAIEmbeddingService = new OpenAIEmbeddingService(apiKey != null ? apiKey : "");
-                    }
-                    LOG.debug("OpenAI embedding service initialized lazily");
-                }
-            }
-        }
-        return openAIEmbeddingService;
-    }
-    
-    /**
-     * Gets the Gemini embedding service with lazy initialization.
-     * This method ensures thread-safe initialization and avoids EDT violations.
-     *
-     * @return the Gemini embedding service
+     * Gets the document retrieval service shared by all projects.
+     * 
+     * @return the document retrieval service
      */
-    private GeminiEmbeddingService getGeminiEmbeddingService() {
-        if (geminiEmbeddingService == null) {
-            synchronized (this) {
-                if (geminiEmbeddingService == null) {
-                    // Check if we're on EDT and move API key retrieval off EDT
-                    if (ApplicationManager.getApplication().isDispatchThread()) {
-                        // We're on EDT, need to get API key off EDT
-                        CompletableFuture<String> apiKeyFuture = CompletableFuture.supplyAsync(() -> 
-                            SecureAPIKeyManager.getAPIKey(AIServiceType.GEMINI));
-                        try {
-                            String apiKey = apiKeyFuture.get(); // This will block but we're in a synchronized block
-                            geminiEmbeddingService = new GeminiEmbeddingService(apiKey != null ? apiKey : "");
-                        } catch (Exception e) {
-                            LOG.warn("Failed to get Gemini API key off EDT", e);
-                            geminiEmbeddingService = new GeminiEmbeddingService("");
-                        }
-                    } else {
-                        // We're not on EDT, safe to call directly
-                        String apiKey = SecureAPIKeyManager.getAPIKey(AIServiceType.GEMINI);
-                        geminiEmbeddingService = new GeminiEmbeddingService(apiKey != null ? apiKey : "");
-                    }
-                    LOG.debug("Gemini embedding service initialized lazily");
-                }
-            }
-        }
-        return geminiEmbeddingService;
+    private DocumentRetrievalService getDocumentRetrievalService() {
+        return DocumentStoreService.getInstance().getRetrievalService();
     }
-    
+
     /**
-     * Gets the document retrieval service with lazy initialization.
-     * This method ensures thread-safe initialization and avoids EDT violations.
-     *
-     * @return the document retrieval service
+     * Registers a stage of an analysis with its handle, if it has one.
+     * 
+     * @param handle the handle of the analysis, may be null
+     * @param stage the future of the stage
+     * @return the same future
      */
-    private DocumentRetrievalService getDocumentRetrievalService() {
-        if (documentRetrievalService == null) {
-            synchronized (this) {
-                if (documentRetrievalService == null) {
-                    // Initialize document database service
-                    DocumentDatabaseService databaseService = new DocumentDatabaseService();
-                    try {
-                        databaseService.initializeDatabase();
-                    } catch (Exception e) {
-                        LOG.warn("Failed to initialize document database", e);
-                    }
-                    
-                    // Initialize document retrieval service with lazy-loaded embedding services
-                    documentRetrievalService = new DocumentRetrievalService(
-                        databaseService, 
-                        getOpenAIEmbeddingService(), 
-                        getGeminiEmbeddingService(), 
-                        aiSettings
-                    );
-                    LOG.debug("Document retrieval service initialized lazily");
-                }
-            }
-        }
-        return documentRetrievalService;
+    private static <T> CompletableFuture<T> track(@Nullable AnalysisHandle handle, @NotNull CompletableFuture<T> stage) {
+        return handle != null ? handle.track(stage) : stage;
     }
 
 } 
\ No newline at end of file
@@ -4,7 +4,9 @@ import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.project.Project;
 import com.trace.ai.models.AIAnalysisResult;
 import com.trace.ai.models.AIModel;
+import com.trace.ai.prompts.PromptBudget;
 import com.trace.ai.services.providers.AIServiceProvider;
+import com.trace.ai.services.resilience.ResiliencePolicy;
 import com.trace.ai.services.AIServiceFactory;
 import com.trace.ai.services.AIModelService;
 import com.trace.test.models.FailureInfo;
@@ -13,8 +15,14 @@ import com.trace.ai.configuration.AIServiceType;
 import com.trace.ai.configuration.AISettings;
 
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
+import java.util.concurrent.CancellationException;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
 
 /**
  * Pure network layer that handles HTTP requests/responses for AI analysis.
@@ -29,6 +37,7 @@ import java.util.concurrent.CompletableFuture;
  *   <li>API authentication & key management</li>
  *   <li>Connection validation</li>
  *   <li>Error handling for network issues</li>
+ *   <li>Retries, circuit breaking and failover between providers</li>
  *   <li>Response parsing</li>
  * </ul>
  * 
@@ -77,6 +86,39 @@ public final class AIRequestHandler {
      * @throws IllegalStateException if no AI service is properly configured
      */
     public CompletableFuture<AIAnalysisResult> sendRequest(@NotNull String prompt, @NotNull String analysisMode) {
+        return sendRequest(prompt, analysisMode, null);
+    }
+    
+    /**
+     * Sends a prompt to the AI service for analysis, optionally streaming the response.
+     * 
+     * <p>When a listener is given, the provider streams the response and passes each newly
+     * generated piece of text to it on a background thread. The returned future still
+     * completes with the full result, including error results that were never streamed.</p>
+     * 
+     * <p>Cancelling the returned future cancels the provider request and aborts its HTTP exchange.</p>
+     * 
+     * <p>When the response cache is enabled, a prompt that was answered before by the same
+     * model is answered from the cache without a model call. Such results are flagged with
+     * {@link AIAnalysisResult#isCached()} and nothing is streamed for them.</p>
+     * 
+     * <p>Transient provider failures are retried by the provider's {@link ResiliencePolicy}.
+     * When the provider still cannot answer and failover is enabled, the prompt is sent to
+     * the best available model of another provider whose API key is configured. A streamed
+     * request is neither retried nor failed over once text has been shown.</p>
+     * 
+     * <p>The prompt is fitted to the {@link PromptBudget} of the model it is sent to.
+     * Responses are cached under the prompt as given, before fitting.</p>
+     * 
+     * @param prompt the pre-composed prompt to send
+     * @param analysisMode the analysis mode ("Quick Overview" or "Full Analysis")
+     * @param onPartialText receives streamed text as it arrives, or null to wait for the full response
+     * @return a CompletableFuture containing the analysis result
+     * @throws IllegalArgumentException if prompt is null or empty
+     */
+    public CompletableFuture<AIAnalysisResult> sendRequest(@NotNull String prompt,
+                                                           @NotNull String analysisMode,
+                                                           @Nullable Consumer<String> onPartialText) {
         if (prompt == null || prompt.trim().isEmpty()) {
             throw new IllegalArgumentException("Prompt cannot be null or empty");
         }
@@ -147,10 +189,46 @@ public final class AIRequestHandler {
                 );
             }
             
-            // Send the request to the AI service provider
-            return provider.analyze(prompt, defaultModel.getModelId(), apiKey)
+            // Identical prompts, such as re-runs of the same failing scenario, are answered from the cache
+            final String modelId = defaultModel.getModelId();
+            final AIResponseCache responseCache = aiSettings.isResponseCacheEnabled()
+                ? AIServiceFactory.getResponseCacheStatic()
+                : null;
+            if (responseCache != null) {
+                String cachedAnalysis = responseCache.get(serviceType, modelId, prompt);
+                if (cachedAnalysis != null) {
+                    LOG.info("AI analysis answered from response cache");
+                    return CompletableFuture.completedFuture(
+                        new AIAnalysisResult(
+                            cachedAnalysis,
+                            null,
+                            serviceType,
+                            modelId,
+                            System.currentTimeMillis(),
+                            0L,
+                            true
+                        )
+                    );
+                }
+            }
+            
+            // Oversized sections are cut so the prompt and the response fit the model's context window
+            String fittedPrompt = PromptBudget.forModel(defaultModel).fit(prompt);
+            
+            // Send the request to the AI service provider, retrying transient failures
+            AtomicBoolean streamed = new AtomicBoolean();
+            CompletableFuture<AIAnalysisResult> primary = sendToProvider(
+                provider, serviceType, fittedPrompt, modelId, apiKey, onPartialText, streamed);
+            CompletableFuture<AIAnalysisResult> analysis = aiSettings.isProviderFailoverEnabled()
+                ? withFailover(primary, serviceType, prompt, onPartialText, streamed)
+                : primary;
+            CompletableFuture<AIAnalysisResult> handled = analysis
                 .thenApply(result -> {
                     LOG.info("AI analysis completed successfully");
+                    // Only successful responses are cached, under the model that actually answered
+                    if (responseCache != null && result.getAnalysis() != null && !result.getAnalysis().trim().isEmpty()) {
+                        responseCache.put(result.getServiceType(), result.getModelId(), prompt, result.getAnalysis());
+                    }
                     return result;
                 })
                 .exceptionally(throwable -> {
@@ -163,6 +241,13 @@ public final class AIRequestHandler {
                         0L
                     );
                 });
+            // Cancelling the returned future aborts the provider's HTTP exchange
+            handled.whenComplete((result, throwable) -> {
+                if (handled.isCancelled()) {
+                    analysis.cancel(true);
+                }
+            });
+            return handled;
                 
         } catch (Exception e) {
             LOG.error("Unexpected error during AI analysis", e);
@@ -178,6 +263,130 @@ public final class AIRequestHandler {
         }
     }
     
+    /**
+     * Sends a prompt to one provider through its resilience policy.
+     * 
+     * @param provider the provider to send to
+     * @param serviceType the service type of the provider
+     * @param prompt the prompt to send
+     * @param modelId the model to use
+     * @param apiKey the API key of the provider
+     * @param onPartialText receives streamed text, or null to wait for the full response
+     * @param streamed set once any text has been streamed
+     * @return a CompletableFuture containing the analysis result
+     */
+    private CompletableFuture<AIAnalysisResult> sendToProvider(@NotNull AIServiceProvider provider,
+                                                               @NotNull AIServiceType serviceType,
+                                                               @NotNull String prompt,
+                                                               @NotNull String modelId,
+                                                               @NotNull String apiKey,
+                                                               @Nullable Consumer<String> onPartialText,
+                                                               @NotNull AtomicBoolean streamed) {
+        ResiliencePolicy policy = AIServiceFactory.getResiliencePolicyStatic(serviceType);
+        if (onPartialText == null) {
+            return policy.execute(() -> provider.analyze(prompt, modelId, apiKey),
+                AISettings.getInstance().isHedgedRequestsEnabled());
+        }
+        // Streamed requests are never hedged, and never retried once text has been shown
+        Consumer<String> listener = text -> {
+            streamed.set(true);
+            onPartialText.accept(text);
+        };
+        return policy.execute(() -> provider.analyzeStreaming(prompt, modelId, apiKey, listener),
+            false, () -> !streamed.get());
+    }
+    
+    /**
+     * Sends the prompt to another provider when the primary request fails.
+     * 
+     * <p>The returned future fails with the primary error when no other provider is
+     * configured or the other provider fails too. Cancelling it cancels whichever request
+     * is in flight.</p>
+     * 
+     * @param primary the request to the default model's provider
+     * @param failedService the service type of the primary request
+     * @param prompt the prompt to send, fitted again to the budget of the model failed over to
+     * @param onPartialText receives streamed text, or null to wait for the full response
+     * @param streamed set once any text has been streamed
+     * @return a CompletableFuture containing the analysis result of whichever provider answered
+     */
+    private CompletableFuture<AIAnalysisResult> withFailover(@NotNull CompletableFuture<AIAnalysisResult> primary,
+                                                             @NotNull AIServiceType failedService,
+                                                             @NotNull String prompt,
+                                                             @Nullable Consumer<String> onPartialText,
+                                                             @NotNull AtomicBoolean streamed) {
+        CompletableFuture<AIAnalysisResult> result = new CompletableFuture<>();
+        AtomicReference<CompletableFuture<AIAnalysisResult>> current = new AtomicReference<>(primary);
+        result.whenComplete((value, error) -> {
+            if (result.isCancelled()) {
+                current.get().cancel(true);
+            }
+        });
+        
+        primary.whenComplete((value, error) -> {
+            if (error == null) {
+                result.complete(value);
+                return;
+            }
+            Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+            AIModel fallbackModel = result.isDone() || cause instanceof CancellationException || streamed.get()
+                ? null
+                : findFailoverModel(failedService);
+            if (fallbackModel == null) {
+                result.completeExceptionally(cause);
+                return;
+            }
+            
+            AIServiceType fallbackService = fallbackModel.getServiceType();
+            LOG.warn(failedService.getDisplayName() + " analysis failed, failing over to "
+                + fallbackModel.getFullDisplayName() + ": " + cause.getMessage());
+            CompletableFuture<AIAnalysisResult> fallback = sendToProvider(
+                AIServiceFactory.getProviderStatic(fallbackService), fallbackService,
+                PromptBudget.forModel(fallbackModel).fit(prompt),
+                fallbackModel.getModelId(), SecureAPIKeyManager.getAPIKey(fallbackService), onPartialText, streamed);
+            current.set(fallback);
+            // The result may have been cancelled while the fallback was being started
+            if (result.isCancelled()) {
+                fallback.cancel(true);
+                return;
+            }
+            fallback.whenComplete((fallbackValue, fallbackError) -> {
+                if (fallbackError == null) {
+                    result.complete(fallbackValue);
+                } else {
+                    LOG.warn("Failover to " + fallbackModel.getFullDisplayName() + " failed", fallbackError);
+                    result.completeExceptionally(cause);
+                }
+            });
+        });
+        return result;
+    }
+    
+    /**
+     * Finds the model to fail over to when a provider cannot answer.
+     * 
+     * @param failedService the service type that failed
+     * @return the best available model of another provider with a configured API key, or null if there is none
+     */
+    @Nullable
+    private AIModel findFailoverModel(@NotNull AIServiceType failedService) {
+        AIModelService modelService = AIModelService.getInstance();
+        for (AIServiceType serviceType : AIServiceType.values()) {
+            if (serviceType == failedService || !AIServiceFactory.hasProviderStatic(serviceType)) {
+                continue;
+            }
+            String apiKey = SecureAPIKeyManager.getAPIKey(serviceType);
+            if (apiKey == null || apiKey.trim().isEmpty()) {
+                continue;
+            }
+            AIModel model = modelService.getBestAvailableModelForService(serviceType);
+            if (model != null) {
+                return model;
+            }
+        }
+        return null;
+    }
+    
     /**
      * Validates the connection to a specific AI service.
      * 
@@ -0,0 +1,315 @@
+package com.trace.ai.services;
+
+import com.intellij.openapi.diagnostic.Logger;
+import com.trace.ai.configuration.AIServiceType;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.LongSupplier;
+
+/**
+ * Bounded LRU cache for AI analysis responses with time-based expiry.
+ *
+ * <p>Re-running the same failing scenario produces the same prompt, so its analysis can
+ * be answered without another model call. Entries are keyed by provider, model and a hash
+ * of the normalized prompt, so switching the default model never returns another model's
+ * answer.</p>
+ *
+ * <p>When a store path is given, entries are also written to a small SQLite side table
+ * so they survive IDE restarts. Only the prompt hash and the response text are persisted,
+ * never the prompt. Any failure of the persistent store disables it and the cache keeps
+ * working in memory.</p>
+ *
+ * @author Alex Ibasitas
+ * @since 1.0.0
+ */
+public final class AIResponseCache {
+    
+    private static final Logger LOG = Logger.getInstance(AIResponseCache.class);
+    
+    public static final int DEFAULT_MAX_ENTRIES = 200;
+    public static final Duration DEFAULT_TTL = Duration.ofHours(24);
+    
+    private static final String TABLE_NAME = "ai_response_cache";
+    
+    private final int maxEntries;
+    private final long ttlMillis;
+    private final LongSupplier clock;
+    private final Map<String, CachedResponse> entries;
+    
+    private Connection storeConnection;
+    
+    /**
+     * Creates an in-memory cache.
+     *
+     * @param maxEntries the maximum number of cached responses
+     * @param ttl how long a response stays valid
+     * @throws IllegalArgumentException if maxEntries or ttl are not positive
+     */
+    public AIResponseCache(int maxEntries, @NotNull Duration ttl) {
+        this(maxEntries, ttl, null, System::currentTimeMillis);
+    }
+    
+    /**
+     * Creates a cache that is additionally backed by a SQLite file.
+     *
+     * @param maxEntries the maximum number of cached responses
+     * @param ttl how long a response stays valid
+     * @param storePath the SQLite file for persistent entries, or null for memory only
+     * @throws IllegalArgumentException if maxEntries or ttl are not positive
+     */
+    public AIResponseCache(int maxEntries, @NotNull Duration ttl, @Nullable Path storePath) {
+        this(maxEntries, ttl, storePath, System::currentTimeMillis);
+    }
+    
+    /**
+     * Creates a cache with an explicit clock, used by tests to control expiry.
+     *
+     * @param maxEntries the maximum number of cached responses
+     * @param ttl how long a response stays valid
+     * @param storePath the SQLite file for persistent entries, or null for memory only
+     * @param clock the time source in milliseconds
+     * @throws IllegalArgumentException if maxEntries or ttl are not positive
+     */
+    AIResponseCache(int maxEntries, @NotNull Duration ttl, @Nullable Path storePath, @NotNull LongSupplier clock) {
+        if (maxEntries <= 0) {
+            throw new IllegalArgumentException("Max entries must be positive");
+        }
+        if (ttl.isNegative() || ttl.isZero()) {
+            throw new IllegalArgumentException("TTL must be positive");
+        }
+        
+        this.maxEntries = maxEntries;
+        this.ttlMillis = ttl.toMillis();
+        this.clock = clock;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CachedResponse> eldest) {
+                return size() > AIResponseCache.this.maxEntries;
+            }
+        };
+        
+        if (storePath != null) {
+            openStore(storePath);
+        }
+    }
+    
+    /**
+     * Gets a cached response.
+     *
+     * @param serviceType the AI service
+     * @param modelId the model
+     * @param prompt the full prompt
+     * @return the cached response text, or null if absent or expired
+     */
+    @Nullable
+    public String get(@NotNull AIServiceType serviceType, @NotNull String modelId, @NotNull String prompt) {
+        return get(createKey(serviceType, modelId, prompt));
+    }
+    
+    /**
+     * Stores a response in the cache.
+     *
+     * @param serviceType the AI service
+     * @param modelId the model
+     * @param prompt the full prompt
+     * @param response the response text to cache
+     */
+    public void put(@NotNull AIServiceType serviceType, @NotNull String modelId,
+                    @NotNull String prompt, @NotNull String response) {
+        put(createKey(serviceType, modelId, prompt), response);
+    }
+    
+    /**
+     * Gets the number of responses held in memory.
+     *
+     * @return the in-memory entry count
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+    
+    /**
+     * Checks whether entries are written to the persistent store.
+     *
+     * @return true if the SQLite side table is in use
+     */
+    public synchronized boolean isPersistent() {
+        return storeConnection != null;
+    }
+    
+    /**
+     * Removes all cached responses, including persisted ones.
+     */
+    public synchronized void clear() {
+        entries.clear();
+        if (storeConnection != null) {
+            try (Statement stmt = storeConnection.createStatement()) {
+                stmt.execute("DELETE FROM " + TABLE_NAME);
+            } catch (SQLException e) {
+                disableStore("clear", e);
+            }
+        }
+    }
+    
+    /**
+     * Closes the persistent store. The in-memory cache remains usable.
+     */
+    public synchronized void close() {
+        if (storeConnection != null) {
+            try {
+                storeConnection.close();
+            } catch (SQLException e) {
+                LOG.warn("Failed to close AI response cache store", e);
+            }
+            storeConnection = null;
+        }
+    }
+    
+    /**
+     * Creates the cache key from the provider, model and normalized prompt hash.
+     *
+     * <p>Prompts are normalized like query texts, so differences in line endings and
+     * whitespace do not cause a miss.</p>
+     *
+     * @param serviceType the AI service
+     * @param modelId the model
+     * @param prompt the full prompt
+     * @return the cache key
+     */
+    @NotNull
+    static String createKey(@NotNull AIServiceType serviceType, @NotNull String modelId, @NotNull String prompt) {
+        return serviceType.getId() + ":" + modelId + ":"
+            + QueryEmbeddingCache.sha256(QueryEmbeddingCache.normalize(prompt));
+    }
+    
+    private synchronized String get(String key) {
+        long now = clock.getAsLong();
+        CachedResponse entry = entries.get(key);
+        if (entry != null) {
+            if (now - entry.createdAt < ttlMillis) {
+                return entry.response;
+            }
+            entries.remove(key);
+        }
+        
+        CachedResponse stored = loadFromStore(key, now);
+        if (stored != null) {
+            entries.put(key, stored);
+            return stored.response;
+        }
+        return null;
+    }
+    
+    private synchronized void put(String key, String response) {
+        CachedResponse entry = new CachedResponse(response, clock.getAsLong());
+        entries.put(key, entry);
+        saveToStore(key, entry);
+    }
+    
+    private void openStore(Path storePath) {
+        try {
+            Path parent = storePath.toAbsolutePath().getParent();
+            if (parent != null) {
+                Files.createDirectories(parent);
+            }
+            Class.forName("org.sqlite.JDBC");
+            storeConnection = DriverManager.getConnection("jdbc:sqlite:" + storePath.toAbsolutePath());
+            try (Statement stmt = storeConnection.createStatement()) {
+                stmt.execute("PRAGMA busy_timeout = 2000");
+                stmt.execute("CREATE TABLE IF NOT EXISTS " + TABLE_NAME + " ("
+                    + "cache_key TEXT PRIMARY KEY, "
+                    + "response TEXT NOT NULL, "
+                    + "created_at INTEGER NOT NULL)");
+            }
+            pruneStore();
+            LOG.info("AI response cache store opened: " + storePath);
+        } catch (Exception e) {
+            LOG.warn("Persistent AI response cache unavailable, using memory only", e);
+            close();
+        }
+    }
+    
+    /**
+     * Removes expired rows and keeps at most {@code maxEntries} of the newest rows.
+     */
+    private void pruneStore() throws SQLException {
+        try (PreparedStatement expired = storeConnection.prepareStatement(
+                "DELETE FROM " + TABLE_NAME + " WHERE created_at <= ?");
+             PreparedStatement overflow = storeConnection.prepareStatement(
+                "DELETE FROM " + TABLE_NAME + " WHERE cache_key NOT IN ("
+                    + "SELECT cache_key FROM " + TABLE_NAME + " ORDER BY created_at DESC LIMIT ?)")) {
+            expired.setLong(1, clock.getAsLong() - ttlMillis);
+            expired.executeUpdate();
+            overflow.setInt(1, maxEntries);
+            overflow.executeUpdate();
+        }
+    }
+    
+    private CachedResponse loadFromStore(String key, long now) {
+        if (storeConnection == null) {
+            return null;
+        }
+        try (PreparedStatement stmt = storeConnection.prepareStatement(
+                "SELECT response, created_at FROM " + TABLE_NAME + " WHERE cache_key = ?")) {
+            stmt.setString(1, key);
+            try (ResultSet rs = stmt.executeQuery()) {
+                if (!rs.next()) {
+                    return null;
+                }
+                long createdAt = rs.getLong("created_at");
+                if (now - createdAt >= ttlMillis) {
+                    return null;
+                }
+                return new CachedResponse(rs.getString("response"), createdAt);
+            }
+        } catch (SQLException e) {
+            disableStore("read", e);
+            return null;
+        }
+    }
+    
+    private void saveToStore(String key, CachedResponse entry) {
+        if (storeConnection == null) {
+            return;
+        }
+        try (PreparedStatement stmt = storeConnection.prepareStatement(
+                "INSERT OR REPLACE INTO " + TABLE_NAME + " (cache_key, response, created_at) VALUES (?, ?, ?)")) {
+            stmt.setString(1, key);
+            stmt.setString(2, entry.response);
+            stmt.setLong(3, entry.createdAt);
+            stmt.executeUpdate();
+        } catch (SQLException e) {
+            disableStore("write", e);
+        }
+    }
+    
+    private void disableStore(String operation, SQLException e) {
+        LOG.warn("AI response cache store " + operation + " failed, continuing in memory only", e);
+        close();
+    }
+    
+    /**
+     * A cached response with its creation time.
+     */
+    private static final class CachedResponse {
+        private final String response;
+        private final long createdAt;
+        
+        private CachedResponse(String response, long createdAt) {
+            this.response = response;
+            this.createdAt = createdAt;
+        }
+    }
+}
@@ -1,16 +1,28 @@
 package com.trace.ai.services;
 
+import com.intellij.openapi.application.PathManager;
 import com.intellij.openapi.diagnostic.Logger;
+import com.trace.ai.services.embedding.GeminiEmbeddingService;
+import com.trace.ai.services.embedding.OpenAIEmbeddingService;
+import com.trace.ai.services.http.HttpClientRegistry;
+import com.trace.ai.services.http.HttpOperation;
 import com.trace.ai.services.providers.AIServiceProvider;
 import com.trace.ai.services.providers.GeminiProvider;
 import com.trace.ai.services.providers.OpenAIProvider;
+import com.trace.ai.services.resilience.ResiliencePolicy;
 import com.trace.ai.configuration.AIServiceType;
+import com.trace.ai.configuration.AISettings;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 import java.net.http.HttpClient;
-import java.time.Duration;
+import java.nio.file.Path;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.Map;
 
 /**
@@ -23,7 +35,10 @@ import java.util.Map;
  * <p>Features:</p>
  * <ul>
  *   <li>Provider registration and retrieval</li>
- *   <li>Shared HTTP client for efficient resource usage</li>
+ *   <li>Shared HTTP clients per operation, with HTTP/2 and connection reuse</li>
+ *   <li>Bounded network executor for asynchronous requests</li>
+ *   <li>Retry, circuit breaker and hedging policy per provider</li>
+ *   <li>Response cache shared by all projects</li>
  *   <li>Thread-safe provider management</li>
  *   <li>Automatic provider initialization</li>
  * </ul>
@@ -47,8 +62,24 @@ public final class AIServiceFactory {
     // Provider registry (instance-based to allow proper cleanup)
     private final Map<AIServiceType, AIServiceProvider> providers = new ConcurrentHashMap<>();
     
-    // Shared HTTP client for efficient resource usage (lazy initialized)
-    private volatile HttpClient httpClient;
+    // Threads that handle responses of asynchronous requests; kept small since they never block on I/O
+    private static final int NETWORK_THREADS = 4;
+    private static final long NETWORK_THREAD_KEEP_ALIVE_SECONDS = 60;
+    
+    // Shared HTTP clients per operation (lazy initialized)
+    private volatile HttpClientRegistry httpClientRegistry;
+    
+    // Executor of the shared HTTP clients, created together with the registry
+    private volatile ExecutorService networkExecutor;
+    
+    // Resilience policy per provider, so that one provider's failures do not trip another's breaker
+    private final Map<AIServiceType, ResiliencePolicy> resiliencePolicies = new ConcurrentHashMap<>();
+    
+    // Embedding policy per provider, apart from the analysis policies since embedding latencies are much shorter
+    private final Map<AIServiceType, ResiliencePolicy> embeddingResiliencePolicies = new ConcurrentHashMap<>();
+    
+    // Cache of analysis responses shared by all projects (lazy initialized)
+    private volatile AIResponseCache responseCache;
     
     // Singleton instance for backward compatibility
     private static volatile AIServiceFactory instance;
@@ -193,30 +224,138 @@ public final class AIServiceFactory {
     }
     
     /**
-     * Gets the shared HTTP client used by all providers.
+     * Gets the registry of shared HTTP clients.
      * 
-     * <p>This method provides access to the shared HTTP client for providers
-     * that need custom HTTP configuration. Uses lazy initialization with
-     * double-checked locking for thread safety.</p>
+     * <p>Uses lazy initialization with double-checked locking for thread safety.</p>
      * 
-     * @return the shared HTTP client
+     * @return the HTTP client registry
      */
-    public HttpClient getSharedHttpClient() {
-        if (httpClient == null) {
+    public HttpClientRegistry getHttpClientRegistry() {
+        if (httpClientRegistry == null) {
             synchronized (this) {
-                if (httpClient == null) {
-                    httpClient = createSharedHttpClient();
-                    LOG.debug("Created shared HTTP client with lazy initialization");
+                if (httpClientRegistry == null) {
+                    httpClientRegistry = createHttpClientRegistry();
+                    LOG.debug("Created shared HTTP client registry with lazy initialization");
                 }
             }
         }
-        return httpClient;
+        return httpClientRegistry;
+    }
+    
+    public static HttpClientRegistry getHttpClientRegistryStatic() {
+        return getInstance().getHttpClientRegistry();
+    }
+    
+    /**
+     * Gets the shared HTTP client for a kind of request.
+     * 
+     * @param operation the kind of request
+     * @return the shared HTTP client of the operation
+     */
+    public HttpClient getHttpClient(@NotNull HttpOperation operation) {
+        return getHttpClientRegistry().getClient(operation);
+    }
+    
+    public static HttpClient getHttpClientStatic(@NotNull HttpOperation operation) {
+        return getInstance().getHttpClient(operation);
+    }
+    
+    /**
+     * Gets the shared HTTP client used for analysis requests.
+     * 
+     * @return the shared HTTP client
+     */
+    public HttpClient getSharedHttpClient() {
+        return getHttpClient(HttpOperation.ANALYSIS);
     }
     
     public static HttpClient getSharedHttpClientStatic() {
         return getInstance().getSharedHttpClient();
     }
     
+    /**
+     * Gets the bounded executor that runs response handling of the shared HTTP clients.
+     * 
+     * <p>Callers that continue work after an asynchronous request, such as scheduled
+     * retries, use this executor instead of the common pool so that network work stays
+     * on a small, dedicated set of daemon threads.</p>
+     * 
+     * @return the network executor
+     */
+    public ExecutorService getNetworkExecutor() {
+        getHttpClientRegistry();
+        return networkExecutor;
+    }
+    
+    public static ExecutorService getNetworkExecutorStatic() {
+        return getInstance().getNetworkExecutor();
+    }
+    
+    /**
+     * Gets the retry, circuit breaker and hedging policy of a provider.
+     * 
+     * <p>The policy lives as long as the factory, so its circuit breaker and latency
+     * history are shared by every request sent to the provider.</p>
+     * 
+     * @param serviceType the service type of the provider
+     * @return the resilience policy of the provider
+     */
+    public ResiliencePolicy getResiliencePolicy(@NotNull AIServiceType serviceType) {
+        return resiliencePolicies.computeIfAbsent(serviceType,
+            type -> new ResiliencePolicy(type.getDisplayName(), getNetworkExecutor()));
+    }
+    
+    public static ResiliencePolicy getResiliencePolicyStatic(@NotNull AIServiceType serviceType) {
+        return getInstance().getResiliencePolicy(serviceType);
+    }
+    
+    /**
+     * Gets the retry and circuit breaker policy of a provider's embedding requests.
+     * 
+     * <p>The policy lives as long as the factory, so embedding services created again for a
+     * new API key keep the circuit breaker of the ones they replace.</p>
+     * 
+     * @param serviceType the service type of the provider
+     * @return the embedding resilience policy of the provider
+     */
+    public ResiliencePolicy getEmbeddingResiliencePolicy(@NotNull AIServiceType serviceType) {
+        return embeddingResiliencePolicies.computeIfAbsent(serviceType, type -> switch (type) {
+            case OPENAI -> OpenAIEmbeddingService.createResiliencePolicy(getNetworkExecutor());
+            case GEMINI -> GeminiEmbeddingService.createResiliencePolicy(getNetworkExecutor());
+        });
+    }
+    
+    public static ResiliencePolicy getEmbeddingResiliencePolicyStatic(@NotNull AIServiceType serviceType) {
+        return getInstance().getEmbeddingResiliencePolicy(serviceType);
+    }
+    
+    /**
+     * Gets the cache of analysis responses.
+     * 
+     * <p>Whether the cache is persisted under the IDE system directory is decided when it
+     * is first created, so changing that setting takes effect after an IDE restart.</p>
+     * 
+     * @return the response cache
+     */
+    public AIResponseCache getResponseCache() {
+        if (responseCache == null) {
+            synchronized (this) {
+                if (responseCache == null) {
+                    Path storePath = AISettings.getInstance().isPersistResponseCache()
+                        ? Path.of(PathManager.getSystemPath(), "trace", "ai-responses.db")
+                        : null;
+                    responseCache = new AIResponseCache(
+                        AIResponseCache.DEFAULT_MAX_ENTRIES, AIResponseCache.DEFAULT_TTL, storePath);
+                }
+            }
+        }
+        return responseCache;
+    }
+    
+    public static AIResponseCache getResponseCacheStatic() {
+        return getInstance().getResponseCache();
+    }
+    
     /**
      * Initializes the default providers.
      * 
@@ -226,10 +365,10 @@ public final class AIServiceFactory {
     private void initializeDefaultProviders() {
         try {
             // Register OpenAI provider
-            registerProvider(AIServiceType.OPENAI, new OpenAIProvider(getSharedHttpClient()));
+            registerProvider(AIServiceType.OPENAI, new OpenAIProvider(getHttpClientRegistry()));
             
             // Register Google Gemini provider
-            registerProvider(AIServiceType.GEMINI, new GeminiProvider(getSharedHttpClient()));
+            registerProvider(AIServiceType.GEMINI, new GeminiProvider(getHttpClientRegistry()));
             
             LOG.info("Initialized " + providers.size() + " default AI service providers");
             
@@ -239,21 +378,42 @@ public final class AIServiceFactory {
     }
     
     /**
-     * Creates the shared HTTP client with optimal configuration.
+     * Creates the registry of shared HTTP clients.
+     * 
+     * <p>The clients run on a bounded pool of daemon threads instead of their default
+     * unbounded cached pools. Idle threads time out, so the pool costs nothing while the
+     * plugin is not talking to a provider.</p>
+     * 
+     * @return the HTTP client registry
+     */
+    private HttpClientRegistry createHttpClientRegistry() {
+        networkExecutor = createNetworkExecutor();
+        return new HttpClientRegistry(networkExecutor);
+    }
+    
+    /**
+     * Creates the bounded executor for the shared HTTP clients.
      * 
-     * @return the configured HTTP client
+     * @return the network executor
      */
-    private HttpClient createSharedHttpClient() {
-        return HttpClient.newBuilder()
-                .connectTimeout(Duration.ofSeconds(10))
-                .build();
+    private static ExecutorService createNetworkExecutor() {
+        AtomicInteger threadNumber = new AtomicInteger();
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(NETWORK_THREADS, NETWORK_THREADS,
+                NETWORK_THREAD_KEEP_ALIVE_SECONDS, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), runnable -> {
+                    Thread thread = new Thread(runnable, "TRACE Network-" + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
     }
     
     /**
      * Cleans up instance resources to prevent memory leaks and ensure consistent startup behavior.
      * 
      * <p>This method should be called during plugin shutdown or when resources need to be reset.
-     * It clears the providers map and closes the shared HTTP client to prevent memory leaks.</p>
+     * It clears the providers map, releases the shared HTTP clients, shuts down their
+     * network executor and closes the response cache to prevent memory leaks.</p>
      */
     public void cleanup() {
         LOG.info("Starting cleanup of AIServiceFactory instance resources");
@@ -263,17 +423,24 @@ public final class AIServiceFactory {
         try {
             // Clear providers first
             providers.clear();
+            resiliencePolicies.clear();
             
-            // Clear the shared HTTP client reference
+            // Clear the shared HTTP client registry
             synchronized (this) {
-                if (httpClient != null) {
+                if (httpClientRegistry != null) {
                     try {
-                        httpClient = null;
-                        LOG.info("Cleared shared HTTP client reference - JVM will handle cleanup");
+                        httpClientRegistry = null;
+                        networkExecutor.shutdownNow();
+                        networkExecutor = null;
+                        LOG.info("Cleared shared HTTP clients and shut down network executor");
                     } catch (Exception e) {
                         LOG.warn("Error during HTTP client cleanup: " + e.getMessage(), e);
                     }
                 }
+                if (responseCache != null) {
+                    responseCache.close();
+                    responseCache = null;
+                }
             }
             
             LOG.info("AIServiceFactory cleanup completed - cleared " + resourcesCleaned + " AI service providers");
@@ -0,0 +1,175 @@
+package com.trace.ai.services;
+
+import com.intellij.openapi.diagnostic.Logger;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+
+/**
+ * Cancellable handle of one AI analysis.
+ *
+ * <p>An analysis runs as a chain of futures: document retrieval, then the provider request.
+ * Cancelling a future in such a chain does not reach the futures it was derived from, so
+ * the orchestrator registers every stage with {@link #track(CompletableFuture)}. Cancelling
+ * the handle cancels all stages still running, which aborts the HTTP exchange of the
+ * provider request and stops a streamed response.</p>
+ *
+ * <p>Handles are created by {@link AnalysisTracker}, which cancels them when a new test run
+ * starts or a newer failure supersedes them.</p>
+ *
+ * @author Alex Ibasitas
+ * @since 1.0.0
+ */
+public final class AnalysisHandle {
+    
+    private static final Logger LOG = Logger.getInstance(AnalysisHandle.class);
+    
+    private final String testRunId;
+    private final Consumer<AnalysisHandle> onFinished;
+    
+    // Guarded by this
+    private final List<CompletableFuture<?>> stages = new ArrayList<>();
+    private final List<Runnable> cancelListeners = new ArrayList<>();
+    private boolean cancelled;
+    
+    /**
+     * Creates a handle.
+     *
+     * @param testRunId the test run the analysis belongs to, or null if it belongs to none
+     * @param onFinished called once when the analysis result completes or the handle is cancelled
+     */
+    AnalysisHandle(@Nullable String testRunId, @NotNull Consumer<AnalysisHandle> onFinished) {
+        this.testRunId = testRunId;
+        this.onFinished = onFinished;
+    }
+    
+    /**
+     * Gets the test run this analysis belongs to.
+     *
+     * @return the test run ID, or null if the analysis belongs to no test run
+     */
+    @Nullable
+    public String getTestRunId() {
+        return testRunId;
+    }
+    
+    /**
+     * Registers a stage of the analysis so that cancelling the handle cancels it.
+     *
+     * <p>A stage registered after the handle was cancelled is cancelled immediately.</p>
+     *
+     * @param stage the future of the stage
+     * @return the same future
+     */
+    @NotNull
+    public <T> CompletableFuture<T> track(@NotNull CompletableFuture<T> stage) {
+        synchronized (this) {
+            if (!cancelled) {
+                stages.add(stage);
+                stage.whenComplete((value, error) -> untrack(stage));
+                return stage;
+            }
+        }
+        stage.cancel(true);
+        return stage;
+    }
+    
+    /**
+     * Registers the final result of the analysis.
+     *
+     * <p>The result is tracked like any stage, and the handle is released by its tracker
+     * once the result completes.</p>
+     *
+     * @param result the future that completes with the analysis result
+     * @return the same future
+     */
+    @NotNull
+    <T> CompletableFuture<T> bind(@NotNull CompletableFuture<T> result) {
+        track(result).whenComplete((value, error) -> onFinished.accept(this));
+        return result;
+    }
+    
+    /**
+     * Adds a listener that runs when the handle is cancelled.
+     *
+     * <p>Used to stop work that is not a future, such as rendering a streamed response.
+     * The listener runs immediately if the handle is already cancelled.</p>
+     *
+     * @param listener the listener to run
+     */
+    public void onCancel(@NotNull Runnable listener) {
+        synchronized (this) {
+            if (!cancelled) {
+                cancelListeners.add(listener);
+                return;
+            }
+        }
+        listener.run();
+    }
+    
+    /**
+     * Cancels the analysis and every stage that is still running.
+     *
+     * @return true if this call cancelled the analysis, false if it was already cancelled
+     */
+    public boolean cancel() {
+        List<CompletableFuture<?>> running;
+        List<Runnable> listeners;
+        synchronized (this) {
+            if (cancelled) {
+                return false;
+            }
+            cancelled = true;
+            running = new ArrayList<>(stages);
+            listeners = new ArrayList<>(cancelListeners);
+            stages.clear();
+            cancelListeners.clear();
+        }
+        
+        LOG.info("Cancelling AI analysis" + (testRunId != null ? " of test run " + testRunId : "")
+            + " with " + running.size() + " running stage(s)");
+        for (CompletableFuture<?> stage : running) {
+            stage.cancel(true);
+        }
+        for (Runnable listener : listeners) {
+            try {
+                listener.run();
+            } catch (RuntimeException e) {
+                LOG.warn("Analysis cancel listener failed", e);
+            }
+        }
+        onFinished.accept(this);
+        return true;
+    }
+    
+    /**
+     * Checks whether the analysis has been cancelled.
+     *
+     * @return true if the analysis has been cancelled
+     */
+    public synchronized boolean isCancelled() {
+        return cancelled;
+    }
+    
+    /**
+     * Throws if the handle has been cancelled, so that a chain stops instead of falling back
+     * to another request.
+     *
+     * @param handle the handle, may be null
+     * @throws CancellationException if the handle has been cancelled
+     */
+    static void throwIfCancelled(@Nullable AnalysisHandle handle) {
+        if (handle != null && handle.isCancelled()) {
+            throw new CancellationException("AI analysis was cancelled");
+        }
+    }
+    
+    private synchronized void untrack(CompletableFuture<?> stage) {
+        stages.remove(stage);
+    }
+}
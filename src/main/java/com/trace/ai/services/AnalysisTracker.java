@@ -0,0 +1,121 @@
+package com.trace.ai.services;
+
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.project.Project;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Tracks the AI analyses running in a project so that outdated ones can be cancelled.
+ *
+ * <p>An analysis the user no longer looks at still spends tokens and holds a network
+ * thread until the provider finishes. This service cancels such analyses:</p>
+ * <ul>
+ *   <li>All analyses when a new test run starts, see {@link #cancelAll()}</li>
+ *   <li>Earlier analyses when a newer failure analysis supersedes them</li>
+ *   <li>The analyses of one test run, see {@link #cancelTestRun(String)}</li>
+ * </ul>
+ *
+ * <p>Finished analyses release their handle automatically.</p>
+ *
+ * @author Alex Ibasitas
+ * @since 1.0.0
+ */
+public final class AnalysisTracker implements Disposable {
+    
+    private static final Logger LOG = Logger.getInstance(AnalysisTracker.class);
+    
+    private final List<AnalysisHandle> activeHandles = new CopyOnWriteArrayList<>();
+    
+    /**
+     * Gets the analysis tracker of a project.
+     *
+     * @param project the project
+     * @return the tracker
+     */
+    @NotNull
+    public static AnalysisTracker getInstance(@NotNull Project project) {
+        return project.getService(AnalysisTracker.class);
+    }
+    
+    /**
+     * Starts tracking a new analysis.
+     *
+     * @param testRunId the test run the analysis belongs to, or null if it belongs to none
+     * @param supersedePrevious true to cancel every analysis that is still running, as a
+     *                          newer failure analysis does
+     * @return the handle of the new analysis
+     */
+    @NotNull
+    public AnalysisHandle startAnalysis(@Nullable String testRunId, boolean supersedePrevious) {
+        if (supersedePrevious) {
+            int cancelled = cancel(activeHandles);
+            if (cancelled > 0) {
+                LOG.info("Superseded " + cancelled + " running AI analysis(es)");
+            }
+        }
+        
+        AnalysisHandle handle = new AnalysisHandle(testRunId, activeHandles::remove);
+        activeHandles.add(handle);
+        return handle;
+    }
+    
+    /**
+     * Cancels every running analysis. Called when a new test run starts.
+     *
+     * @return the number of analyses that were cancelled
+     */
+    public int cancelAll() {
+        int cancelled = cancel(activeHandles);
+        if (cancelled > 0) {
+            LOG.info("Cancelled " + cancelled + " running AI analysis(es)");
+        }
+        return cancelled;
+    }
+    
+    /**
+     * Cancels the running analyses of one test run.
+     *
+     * @param testRunId the test run ID
+     * @return the number of analyses that were cancelled
+     */
+    public int cancelTestRun(@NotNull String testRunId) {
+        List<AnalysisHandle> ofRun = new ArrayList<>();
+        for (AnalysisHandle handle : activeHandles) {
+            if (Objects.equals(testRunId, handle.getTestRunId())) {
+                ofRun.add(handle);
+            }
+        }
+        return cancel(ofRun);
+    }
+    
+    /**
+     * Gets the number of analyses that are still running.
+     *
+     * @return the number of running analyses
+     */
+    public int getActiveCount() {
+        return activeHandles.size();
+    }
+    
+    @Override
+    public void dispose() {
+        cancelAll();
+    }
+    
+    private static int cancel(List<AnalysisHandle> handles) {
+        int cancelled = 0;
+        for (AnalysisHandle handle : new ArrayList<>(handles)) {
+            if (handle.cancel()) {
+                cancelled++;
+            }
+        }
+        return cancelled;
+    }
+}
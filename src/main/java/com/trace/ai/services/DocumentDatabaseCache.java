@@ -0,0 +1,208 @@
+package com.trace.ai.services;
+
+import com.intellij.openapi.diagnostic.Logger;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+
+/**
+ * Extracts the bundled document database to a versioned file in a cache directory.
+ *
+ * <p>The file name carries the first characters of the SHA-256 checksum of the bundled
+ * database, so a plugin update with a different database extracts a new file while an
+ * unchanged database is reused across projects and IDE restarts without being copied again.
+ * Extraction writes to a temporary file in the same directory and moves it into place
+ * atomically, so a concurrent reader never sees a partial file. Older versions are removed
+ * on a best-effort basis once a new one is in place.</p>
+ *
+ * @author Alex Ibasitas
+ * @since 1.0.0
+ */
+final class DocumentDatabaseCache {
+    
+    private static final Logger LOG = Logger.getInstance(DocumentDatabaseCache.class);
+    
+    static final String FILE_PREFIX = "trace-documents-";
+    static final String FILE_EXTENSION = ".db";
+    private static final int VERSION_LENGTH = 16;
+    
+    private final Path cacheDirectory;
+    
+    /**
+     * Opens the bundled database resource.
+     */
+    @FunctionalInterface
+    interface ResourceOpener {
+        
+        /**
+         * Opens a new stream over the bundled database.
+         *
+         * @return the stream, or null if the resource does not exist
+         * @throws IOException if the resource cannot be opened
+         */
+        @Nullable
+        InputStream open() throws IOException;
+    }
+    
+    /**
+     * Prepares a freshly extracted file before it becomes visible to readers.
+     */
+    @FunctionalInterface
+    interface Preparer {
+        
+        /**
+         * Prepares the extracted file.
+         *
+         * @param file the temporary file holding the extracted database
+         * @throws IOException if preparation fails; the file is discarded
+         */
+        void prepare(@NotNull Path file) throws IOException;
+    }
+    
+    /**
+     * Creates a cache over the given directory.
+     *
+     * @param cacheDirectory the directory holding extracted databases, created on first extraction
+     */
+    DocumentDatabaseCache(@NotNull Path cacheDirectory) {
+        this.cacheDirectory = cacheDirectory;
+    }
+    
+    /**
+     * Gets the extracted database for the bundled resource, extracting it if needed.
+     *
+     * @param resource opens the bundled database
+     * @param expectedChecksum the published SHA-256 checksum of the resource, or null to compute it
+     * @param preparer prepares a newly extracted file, for example by migrating its schema
+     * @return the path of the extracted database
+     * @throws IOException if the resource is missing, does not match its checksum, or cannot be extracted
+     */
+    @NotNull
+    Path extract(@NotNull ResourceOpener resource, @Nullable String expectedChecksum,
+                 @NotNull Preparer preparer) throws IOException {
+        String checksum = expectedChecksum != null ? expectedChecksum : computeChecksum(resource);
+        Path target = getCachedFile(checksum);
+        if (Files.isRegularFile(target)) {
+            LOG.debug("Reusing extracted document database: " + target);
+            return target;
+        }
+        
+        Files.createDirectories(cacheDirectory);
+        Path tempFile = Files.createTempFile(cacheDirectory, FILE_PREFIX, ".tmp");
+        try {
+            String actualChecksum;
+            try (InputStream in = openResource(resource); OutputStream out = Files.newOutputStream(tempFile)) {
+                actualChecksum = copyWithChecksum(in, out);
+            }
+            if (!actualChecksum.equals(checksum)) {
+                throw new IOException("Bundled document database does not match its checksum");
+            }
+            
+            preparer.prepare(tempFile);
+            moveIntoPlace(tempFile, target);
+        } finally {
+            Files.deleteIfExists(tempFile);
+        }
+        
+        LOG.info("Extracted document database to " + target);
+        pruneOtherVersions(target);
+        return target;
+    }
+    
+    /**
+     * Deletes an extracted database that could not be opened, so the next call extracts it again.
+     *
+     * @param file the extracted database
+     */
+    void invalidate(@NotNull Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            LOG.warn("Failed to delete extracted document database: " + file, e);
+        }
+    }
+    
+    /**
+     * Gets the versioned path for a database checksum.
+     *
+     * @param checksum the SHA-256 checksum of the database
+     * @return the path inside the cache directory
+     */
+    @NotNull
+    Path getCachedFile(@NotNull String checksum) {
+        return cacheDirectory.resolve(FILE_PREFIX + checksum.substring(0, VERSION_LENGTH) + FILE_EXTENSION);
+    }
+    
+    /**
+     * Computes the SHA-256 checksum of a database resource.
+     *
+     * @param resource opens the resource
+     * @return the lowercase hex checksum
+     * @throws IOException if the resource is missing or cannot be read
+     */
+    @NotNull
+    static String computeChecksum(@NotNull ResourceOpener resource) throws IOException {
+        try (InputStream in = openResource(resource)) {
+            return copyWithChecksum(in, OutputStream.nullOutputStream());
+        }
+    }
+    
+    private static InputStream openResource(ResourceOpener resource) throws IOException {
+        InputStream in = resource.open();
+        if (in == null) {
+            throw new IOException("Database resource not found");
+        }
+        return in;
+    }
+    
+    private static String copyWithChecksum(InputStream in, OutputStream out) throws IOException {
+        try {
+            DigestInputStream digestStream = new DigestInputStream(in, MessageDigest.getInstance("SHA-256"));
+            digestStream.transferTo(out);
+            return HexFormat.of().formatHex(digestStream.getMessageDigest().digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IOException("SHA-256 not available", e);
+        }
+    }
+    
+    private static void moveIntoPlace(Path source, Path target) throws IOException {
+        try {
+            Files.move(source, target, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            // Another IDE process may have extracted the same version first and hold it open
+            if (!Files.isRegularFile(target)) {
+                throw e;
+            }
+            LOG.debug("Document database was extracted concurrently: " + target);
+        }
+    }
+    
+    private void pruneOtherVersions(Path current) {
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(cacheDirectory, FILE_PREFIX + "*" + FILE_EXTENSION)) {
+            for (Path file : files) {
+                if (!file.equals(current)) {
+                    // Fails harmlessly on platforms that lock files still open in another IDE instance
+                    try {
+                        Files.deleteIfExists(file);
+                        LOG.info("Removed outdated document database: " + file);
+                    } catch (IOException e) {
+                        LOG.debug("Could not remove outdated document database: " + file);
+                    }
+                }
+            }
+        } catch (IOException e) {
+            LOG.warn("Failed to prune outdated document databases", e);
+        }
+    }
+}
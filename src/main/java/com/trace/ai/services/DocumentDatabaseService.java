@@ -2,18 +2,32 @@ package com.trace.ai.services;
 
 import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.util.io.FileUtil;
+import com.trace.ai.configuration.VectorSearchMode;
 import com.trace.ai.models.DocumentEntry;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
+import org.sqlite.SQLiteConfig;
 
 import java.io.File;
+import java.io.IOException;
 import java.io.InputStream;
-import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.sql.*;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 
@@ -42,10 +56,31 @@ public class DocumentDatabaseService {
     
     private static final String DATABASE_NAME = "trace-documents.db";
     private static final String DATABASE_VERSION = "1.0";
+    private static final String APPROXIMATE_INDEX_EXTENSION = ".hnsw";
+    private static final String DATABASE_RESOURCE = "/db/" + DATABASE_NAME;
+    private static final String CHECKSUM_EXTENSION = ".sha256";
+    
+    // Upper bound for the memory-mapped region; the bundled database is far smaller
+    private static final long MMAP_SIZE_BYTES = 256L * 1024 * 1024;
+    private static final int READ_POOL_SIZE = Math.max(2, Math.min(4, Runtime.getRuntime().availableProcessors()));
     
     private Connection connection;
     private final ReadWriteLock dbLock = new ReentrantReadWriteLock();
     
+    // Extra read-only connections to the memory-mapped file, so concurrent searches do not
+    // serialize on one connection; empty when the database is in memory or opened for writing
+    private final BlockingQueue<Connection> readConnections = new LinkedBlockingQueue<>();
+    private volatile int readConnectionCount;
+    
+    // In-memory vector indexes built at initialization (immutable snapshot, replaced atomically)
+    private volatile Map<EmbeddingType, DocumentVectorIndex> vectorIndexes = Collections.emptyMap();
+    
+    // Approximate (HNSW) indexes, created on demand for embedding types configured for approximate search
+    private volatile Map<EmbeddingType, HnswVectorIndex> approximateIndexes = Collections.emptyMap();
+    private volatile Map<EmbeddingType, QuantizedVectorIndex> quantizedIndexes = Collections.emptyMap();
+    private final Map<EmbeddingType, VectorSearchMode> searchModes = new ConcurrentHashMap<>();
+    private volatile EmbeddingCodec.Encoding storageEncoding = EmbeddingCodec.Encoding.FLOAT32;
+    
     /**
      * Constructor for DocumentDatabaseService.
      * 
@@ -68,6 +103,200 @@ public class DocumentDatabaseService {
         LOG.info("Initializing document database from JAR resources");
         
         // Explicitly load the SQLite JDBC driver
+        loadDriver();
+        
+        // Load database from JAR resources into memory
+        loadDatabaseFromResource();
+        
+        // Build the in-memory vector indexes once so searches never touch embedding BLOBs
+        buildVectorIndexes();
+        
+        LOG.info("Document database initialized successfully from JAR resources");
+    }
+    
+    /**
+     * Initializes a read-only, memory-mapped connection to the bundled database.
+     * 
+     * <p>The bundled database is extracted once to a file in the given cache directory whose name
+     * is derived from its checksum, and re-extracted only when a plugin update ships a different
+     * database. The file is opened read-only with {@code PRAGMA mmap_size}, so pages are served from
+     * the operating system page cache and shared by every project that opens the same file, instead
+     * of each project holding its own in-memory copy.</p>
+     * 
+     * <p>Falls back to {@link #initializeDatabase()} behaviour if the cache directory cannot be used.</p>
+     * 
+     * @param cacheDirectory the directory for the extracted database
+     * @throws SQLException if neither the cached nor the in-memory database can be loaded
+     */
+    public void initializeDatabaseFromCache(@NotNull Path cacheDirectory) throws SQLException {
+        LOG.info("Initializing memory-mapped document database in " + cacheDirectory);
+        
+        // Explicitly load the SQLite JDBC driver
+        loadDriver();
+        
+        DocumentDatabaseCache cache = new DocumentDatabaseCache(cacheDirectory);
+        try {
+            Path databaseFile = openReadOnly(cache);
+            openReadConnectionPool(databaseFile);
+        } catch (IOException | SQLException e) {
+            LOG.warn("Memory-mapped document database unavailable, loading into memory: " + e.getMessage());
+            close();
+            loadDatabaseFromResource();
+        }
+        
+        // Build the in-memory vector indexes once so searches never touch embedding BLOBs
+        buildVectorIndexes();
+        
+        LOG.info("Document database initialized successfully");
+    }
+    
+    /**
+     * Extracts the bundled database if needed and opens it read-only, retrying once with a
+     * fresh extraction if the cached file turns out to be unreadable.
+     */
+    private Path openReadOnly(DocumentDatabaseCache cache) throws IOException, SQLException {
+        String checksum = readBundledChecksum();
+        Path databaseFile = cache.extract(
+            () -> DocumentDatabaseService.class.getResourceAsStream(DATABASE_RESOURCE), checksum, this::prepareExtractedDatabase);
+        try {
+            connection = openMemoryMapped(databaseFile, true);
+        } catch (SQLException e) {
+            LOG.warn("Extracted document database is unreadable, extracting again: " + e.getMessage());
+            cache.invalidate(databaseFile);
+            databaseFile = cache.extract(
+                () -> DocumentDatabaseService.class.getResourceAsStream(DATABASE_RESOURCE), checksum, this::prepareExtractedDatabase);
+            connection = openMemoryMapped(databaseFile, true);
+        }
+        LOG.info("Opened memory-mapped document database: " + databaseFile);
+        return databaseFile;
+    }
+    
+    /**
+     * Opens the pool of read-only connections used by query-time lookups. A connection that
+     * fails to open only shrinks the pool; with none, lookups share the main connection.
+     */
+    private void openReadConnectionPool(Path databaseFile) {
+        for (int i = 0; i < READ_POOL_SIZE; i++) {
+            try {
+                readConnections.add(openMemoryMapped(databaseFile, false));
+            } catch (SQLException e) {
+                LOG.warn("Failed to open pooled read connection: " + e.getMessage());
+                break;
+            }
+        }
+        readConnectionCount = readConnections.size();
+        LOG.info("Opened " + readConnectionCount + " pooled read connections");
+    }
+    
+    /**
+     * Borrows a connection for a read-only query. Must be called under the read lock and
+     * returned with {@link #releaseReadConnection(Connection)}.
+     * 
+     * @return a pooled connection, or the main connection if there is no pool
+     * @throws SQLException if interrupted while waiting for a pooled connection
+     */
+    private Connection acquireReadConnection() throws SQLException {
+        if (readConnectionCount == 0) {
+            return connection;
+        }
+        try {
+            return readConnections.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a read connection", e);
+        }
+    }
+    
+    /**
+     * Returns a connection borrowed with {@link #acquireReadConnection()}.
+     * 
+     * @param readConnection the borrowed connection, or null if none was borrowed
+     */
+    private void releaseReadConnection(Connection readConnection) {
+        if (readConnection != null && readConnection != connection) {
+            readConnections.offer(readConnection);
+        }
+    }
+    
+    /**
+     * Opens a read-only connection with memory-mapped I/O, optionally checking that the file is usable.
+     */
+    private Connection openMemoryMapped(Path databaseFile, boolean verifyIntegrity) throws SQLException {
+        SQLiteConfig config = new SQLiteConfig();
+        config.setReadOnly(true);
+        Connection readOnlyConnection = DriverManager.getConnection("jdbc:sqlite:" + databaseFile.toAbsolutePath(),
+            config.toProperties());
+        try (Statement stmt = readOnlyConnection.createStatement()) {
+            stmt.execute("PRAGMA mmap_size = " + MMAP_SIZE_BYTES);
+            if (verifyIntegrity) {
+                try (ResultSet rs = stmt.executeQuery("PRAGMA quick_check")) {
+                    if (!rs.next() || !"ok".equalsIgnoreCase(rs.getString(1))) {
+                        throw new SQLException("Integrity check failed");
+                    }
+                }
+            }
+        } catch (SQLException e) {
+            readOnlyConnection.close();
+            throw e;
+        }
+        return readOnlyConnection;
+    }
+    
+    /**
+     * Migrates a freshly extracted database before it is opened read-only, since a
+     * read-only connection cannot add the refresh columns itself.
+     */
+    private void prepareExtractedDatabase(Path databaseFile) throws IOException {
+        try (Connection writeConnection = DriverManager.getConnection("jdbc:sqlite:" + databaseFile.toAbsolutePath())) {
+            writeConnection.setAutoCommit(false);
+            migrateSchema(writeConnection);
+            writeConnection.commit();
+        } catch (SQLException e) {
+            throw new IOException("Failed to prepare extracted document database", e);
+        }
+    }
+    
+    /**
+     * Reads the checksum published beside the bundled database by DocumentStoreRefresher.
+     * 
+     * @return the checksum, or null if none is bundled and it has to be computed
+     */
+    @Nullable
+    private static String readBundledChecksum() {
+        try (InputStream in = DocumentDatabaseService.class.getResourceAsStream(DATABASE_RESOURCE + CHECKSUM_EXTENSION)) {
+            if (in == null) {
+                return null;
+            }
+            String checksum = new String(in.readAllBytes(), StandardCharsets.US_ASCII).trim().toLowerCase();
+            return checksum.matches("[0-9a-f]{64}") ? checksum : null;
+        } catch (IOException e) {
+            LOG.warn("Failed to read bundled database checksum", e);
+            return null;
+        }
+    }
+    
+    /**
+     * Writes the SHA-256 checksum file that versions the extracted database cache.
+     * 
+     * <p>Used by DocumentStoreRefresher after the database file is closed, so the IDE
+     * can decide whether to re-extract without hashing the bundled database at startup.</p>
+     * 
+     * @param databasePath the path to the database file
+     * @throws IOException if the database cannot be read or the checksum cannot be written
+     */
+    public static void writeChecksumFile(@NotNull String databasePath) throws IOException {
+        Path databaseFile = Path.of(databasePath);
+        String checksum = DocumentDatabaseCache.computeChecksum(() -> Files.newInputStream(databaseFile));
+        Path checksumFile = databaseFile.resolveSibling(databaseFile.getFileName() + CHECKSUM_EXTENSION);
+        Files.writeString(checksumFile, checksum + "\n", StandardCharsets.US_ASCII);
+    }
+    
+    /**
+     * Loads the SQLite JDBC driver.
+     * 
+     * @throws SQLException if the driver is not on the classpath
+     */
+    private static void loadDriver() throws SQLException {
         try {
             Class.forName("org.sqlite.JDBC");
             LOG.info("SQLite JDBC driver loaded successfully");
@@ -75,11 +304,6 @@ public class DocumentDatabaseService {
             LOG.error("Failed to load SQLite JDBC driver", e);
             throw new SQLException("SQLite JDBC driver not found", e);
         }
-        
-        // Load database from JAR resources into memory
-        loadDatabaseFromResource();
-        
-        LOG.info("Document database initialized successfully from JAR resources");
     }
     
     /**
@@ -95,13 +319,7 @@ public class DocumentDatabaseService {
         LOG.info("Initializing document database for writing to: " + databasePath);
         
         // Explicitly load the SQLite JDBC driver
-        try {
-            Class.forName("org.sqlite.JDBC");
-            LOG.info("SQLite JDBC driver loaded successfully");
-        } catch (ClassNotFoundException e) {
-            LOG.error("Failed to load SQLite JDBC driver", e);
-            throw new SQLException("SQLite JDBC driver not found", e);
-        }
+        loadDriver();
         
         // Create the target directory if it doesn't exist
         java.io.File targetFile = new java.io.File(databasePath);
@@ -117,6 +335,9 @@ public class DocumentDatabaseService {
         // Create tables if they don't exist
         createTables();
         
+        // Rewrite embeddings stored in an older format
+        migrateEmbeddingBlobs();
+        
         LOG.info("Document database initialized successfully for writing to: " + databasePath);
     }
     
@@ -148,9 +369,139 @@ public class DocumentDatabaseService {
             )
         """);
         
+        migrateSchema(connection);
+        
         connection.commit();
     }
     
+    /**
+     * Adds the columns used for incremental refreshes to databases created before they existed.
+     * 
+     * <p>Each row records the hash of its embedding content and, per provider, the model that
+     * produced the embedding and whether that embedding is stale. Stale embeddings no longer
+     * match the document content or the provider's current model and are excluded from search.</p>
+     * 
+     * @param target the connection to migrate
+     * @throws SQLException if the migration fails
+     */
+    private void migrateSchema(Connection target) throws SQLException {
+        List<String> existingColumns = new ArrayList<>();
+        try (Statement stmt = target.createStatement();
+             ResultSet rs = stmt.executeQuery("PRAGMA table_info(documents)")) {
+            while (rs.next()) {
+                existingColumns.add(rs.getString("name"));
+            }
+        }
+        
+        Map<String, String> refreshColumns = new LinkedHashMap<>();
+        refreshColumns.put("content_hash", "TEXT");
+        refreshColumns.put("openai_embedding_model", "TEXT");
+        refreshColumns.put("openai_embedding_stale", "INTEGER NOT NULL DEFAULT 0");
+        refreshColumns.put("gemini_embedding_model", "TEXT");
+        refreshColumns.put("gemini_embedding_stale", "INTEGER NOT NULL DEFAULT 0");
+        
+        try (Statement stmt = target.createStatement()) {
+            for (Map.Entry<String, String> column : refreshColumns.entrySet()) {
+                if (!existingColumns.contains(column.getKey())) {
+                    stmt.execute("ALTER TABLE documents ADD COLUMN " + column.getKey() + " " + column.getValue());
+                    LOG.info("Added column " + column.getKey() + " to documents table");
+                }
+            }
+        }
+    }
+    
+    /**
+     * Re-encodes every embedding BLOB that is in the legacy format or in a different
+     * encoding than the configured storage encoding.
+     * 
+     * <p>Runs in a single transaction when a database is opened for writing. Databases
+     * loaded read-only do not need it, since legacy BLOBs are still decoded.</p>
+     * 
+     * @throws SQLException if the migration fails
+     */
+    private void migrateEmbeddingBlobs() throws SQLException {
+        dbLock.writeLock().lock();
+        try {
+            int migrated = 0;
+            for (EmbeddingType embeddingType : EmbeddingType.values()) {
+                String embeddingColumn = getEmbeddingColumn(embeddingType);
+                String select = "SELECT id, " + embeddingColumn + " FROM documents WHERE " + embeddingColumn + " IS NOT NULL";
+                String update = "UPDATE documents SET " + embeddingColumn + " = ? WHERE id = ?";
+                
+                try (PreparedStatement selectStmt = connection.prepareStatement(select);
+                     PreparedStatement updateStmt = connection.prepareStatement(update);
+                     ResultSet rs = selectStmt.executeQuery()) {
+                    while (rs.next()) {
+                        byte[] blob = rs.getBytes(2);
+                        if (EmbeddingCodec.getEncoding(blob) == storageEncoding) {
+                            continue;
+                        }
+                        updateStmt.setBytes(1, EmbeddingCodec.encode(EmbeddingCodec.decode(blob), storageEncoding));
+                        updateStmt.setLong(2, rs.getLong(1));
+                        updateStmt.addBatch();
+                        migrated++;
+                    }
+                    updateStmt.executeBatch();
+                }
+            }
+            connection.commit();
+            
+            if (migrated > 0) {
+                LOG.info("Migrated " + migrated + " embeddings to " + storageEncoding.getId() + " storage format v"
+                    + EmbeddingCodec.FORMAT_VERSION);
+            }
+        } catch (SQLException e) {
+            connection.rollback();
+            throw e;
+        } finally {
+            dbLock.writeLock().unlock();
+        }
+    }
+    
+    /**
+     * Sets the encoding used for embeddings written from now on.
+     * 
+     * <p>Must be called before {@link #initializeDatabaseForWriting(String)} so that the
+     * migration converts existing embeddings to the same encoding. Float16 halves and int8
+     * quarters the size of the stored embeddings at a small loss of precision.</p>
+     * 
+     * @param encoding the storage encoding
+     */
+    public void setStorageEncoding(@NotNull EmbeddingCodec.Encoding encoding) {
+        this.storageEncoding = encoding;
+    }
+    
+    /**
+     * Gets the encoding used for embeddings written from now on.
+     * 
+     * @return the storage encoding
+     */
+    @NotNull
+    public EmbeddingCodec.Encoding getStorageEncoding() {
+        return storageEncoding;
+    }
+    
+    /**
+     * Rebuilds the database file to reclaim the space freed by deletes and smaller embeddings.
+     * 
+     * @throws SQLException if the vacuum fails
+     */
+    public void compact() throws SQLException {
+        dbLock.writeLock().lock();
+        try {
+            connection.commit();
+            connection.setAutoCommit(true);
+            try (Statement stmt = connection.createStatement()) {
+                stmt.execute("VACUUM");
+            } finally {
+                connection.setAutoCommit(false);
+            }
+            LOG.info("Document database compacted");
+        } finally {
+            dbLock.writeLock().unlock();
+        }
+    }
+    
     /**
      * Creates database indexes for optimal query performance.
      * 
@@ -234,6 +585,7 @@ public class DocumentDatabaseService {
             }
             
             connection.commit();
+            invalidateVectorIndexes();
             LOG.debug("Inserted document: " + entry.getTitle() + " with ID: " + documentId);
             
             return documentId;
@@ -269,6 +621,7 @@ public class DocumentDatabaseService {
             int rowsAffected = stmt.executeUpdate();
             if (rowsAffected > 0) {
                 connection.commit();
+                invalidateVectorIndexes();
                 LOG.debug("Updated OpenAI embedding for document ID: " + documentId);
             } else {
                 LOG.warn("No document found with ID: " + documentId);
@@ -303,6 +656,7 @@ public class DocumentDatabaseService {
             int rowsAffected = stmt.executeUpdate();
             if (rowsAffected > 0) {
                 connection.commit();
+                invalidateVectorIndexes();
                 LOG.debug("Updated Gemini embedding for document ID: " + documentId);
             } else {
                 LOG.warn("No document found with ID: " + documentId);
@@ -444,11 +798,124 @@ public class DocumentDatabaseService {
         LOG.info("Starting vector similarity search with " + queryEmbedding.length + " dimensions");
         LOG.info("Search parameters: maxResults=" + maxResults + ", threshold=" + similarityThreshold);
         
+        VectorSearchEngine engine = getSearchEngine(embeddingType);
+        if (engine != null) {
+            return findRelevantDocumentsWithIndex(engine, queryEmbedding, maxResults, similarityThreshold);
+        }
+        
+        return findRelevantDocumentsByScan(queryEmbedding, embeddingType, maxResults, similarityThreshold);
+    }
+    
+    /**
+     * Searches an in-memory search engine and loads document text only for the winning IDs.
+     * 
+     * @param index the search engine for the requested embedding type
+     * @param queryEmbedding the query embedding to search against
+     * @param maxResults the maximum number of results to return
+     * @param similarityThreshold the minimum similarity score
+     * @return list of relevant documents ordered by descending similarity
+     * @throws SQLException if loading the matched documents fails
+     */
+    private List<DocumentWithSimilarity> findRelevantDocumentsWithIndex(VectorSearchEngine index,
+                                                                        float[] queryEmbedding,
+                                                                        int maxResults,
+                                                                        double similarityThreshold) throws SQLException {
+        List<DocumentVectorIndex.ScoredDocument> matches = index.search(queryEmbedding, maxResults, similarityThreshold);
+        
+        List<Long> documentIds = new ArrayList<>(matches.size());
+        for (DocumentVectorIndex.ScoredDocument match : matches) {
+            documentIds.add(match.getDocumentId());
+        }
+        Map<Long, DocumentWithSimilarity> loaded = loadDocumentsByIds(documentIds);
+        
+        List<DocumentWithSimilarity> documents = new ArrayList<>(matches.size());
+        for (DocumentVectorIndex.ScoredDocument match : matches) {
+            DocumentWithSimilarity doc = loaded.get(match.getDocumentId());
+            if (doc != null) {
+                doc.setSimilarityScore(match.getSimilarityScore());
+                documents.add(doc);
+            }
+        }
+        
+        LOG.info("Vector similarity search completed:");
+        LOG.info("  - Total documents checked: " + index.size());
+        LOG.info("  - Final results returned: " + documents.size());
+        
+        return documents;
+    }
+    
+    /**
+     * Loads documents by ID without their embedding data.
+     * 
+     * @param documentIds the IDs of the documents to load
+     * @return the loaded documents keyed by ID
+     * @throws SQLException if retrieval fails
+     */
+    private Map<Long, DocumentWithSimilarity> loadDocumentsByIds(List<Long> documentIds) throws SQLException {
+        Map<Long, DocumentWithSimilarity> documents = new HashMap<>();
+        if (documentIds.isEmpty()) {
+            return documents;
+        }
+        
+        dbLock.readLock().lock();
+        Connection readConnection = null;
+        try {
+            readConnection = acquireReadConnection();
+            String placeholders = String.join(", ", Collections.nCopies(documentIds.size(), "?"));
+            String sql = "SELECT id, category, title, content, summary, root_causes, resolution_steps, tags " +
+                         "FROM documents WHERE id IN (" + placeholders + ")";
+            
+            PreparedStatement stmt = readConnection.prepareStatement(sql);
+            for (int i = 0; i < documentIds.size(); i++) {
+                stmt.setLong(i + 1, documentIds.get(i));
+            }
+            ResultSet rs = stmt.executeQuery();
+            
+            while (rs.next()) {
+                DocumentWithSimilarity doc = new DocumentWithSimilarity();
+                doc.setId(rs.getLong("id"));
+                doc.setCategory(rs.getString("category"));
+                doc.setTitle(rs.getString("title"));
+                doc.setContent(rs.getString("content"));
+                doc.setSummary(rs.getString("summary"));
+                doc.setRootCauses(rs.getString("root_causes"));
+                doc.setResolutionSteps(rs.getString("resolution_steps"));
+                doc.setTags(rs.getString("tags"));
+                documents.put(doc.getId(), doc);
+            }
+            
+            return documents;
+            
+        } finally {
+            releaseReadConnection(readConnection);
+            dbLock.readLock().unlock();
+        }
+    }
+    
+    /**
+     * Performs a full-table similarity scan, decoding every stored embedding.
+     * 
+     * <p>Used when no in-memory index is available, e.g. for databases opened
+     * for writing by DocumentStoreRefresher.</p>
+     * 
+     * @param queryEmbedding the query embedding to search against
+     * @param embeddingType the type of embedding to search
+     * @param maxResults the maximum number of results to return
+     * @param similarityThreshold the minimum similarity score
+     * @return list of relevant documents with their similarity scores
+     * @throws SQLException if retrieval fails
+     */
+    private List<DocumentWithSimilarity> findRelevantDocumentsByScan(float[] queryEmbedding,
+                                                                     EmbeddingType embeddingType,
+                                                                     int maxResults,
+                                                                     double similarityThreshold) throws SQLException {
         dbLock.readLock().lock();
+        Connection readConnection = null;
         try {
+            readConnection = acquireReadConnection();
             String sql = buildRelevantDocumentsQuery(embeddingType);
             
-            PreparedStatement stmt = connection.prepareStatement(sql);
+            PreparedStatement stmt = readConnection.prepareStatement(sql);
             ResultSet rs = stmt.executeQuery();
             
             List<DocumentWithSimilarity> documents = new ArrayList<>();
@@ -501,10 +968,290 @@ public class DocumentDatabaseService {
             return documents;
             
         } finally {
+            releaseReadConnection(readConnection);
             dbLock.readLock().unlock();
         }
     }
     
+    /**
+     * Builds the in-memory vector indexes for every embedding type.
+     * 
+     * <p>Each index holds all embeddings of one type, pre-normalized in a single
+     * contiguous array. Embedding types in {@link VectorSearchMode#QUANTIZED} mode get an
+     * int8 index instead, which re-ranks against the stored BLOBs. The indexes replace the
+     * current snapshot atomically.</p>
+     * 
+     * @throws SQLException if reading the embeddings fails
+     */
+    public void buildVectorIndexes() throws SQLException {
+        Map<EmbeddingType, DocumentVectorIndex> indexes = new EnumMap<>(EmbeddingType.class);
+        Map<EmbeddingType, QuantizedVectorIndex> quantized = new EnumMap<>(EmbeddingType.class);
+        
+        dbLock.readLock().lock();
+        try {
+            for (EmbeddingType embeddingType : EmbeddingType.values()) {
+                String embeddingColumn = getEmbeddingColumn(embeddingType);
+                String sql = "SELECT id, " + embeddingColumn + " FROM documents " +
+                             "WHERE " + embeddingColumn + " IS NOT NULL " +
+                             "AND " + getStaleColumn(embeddingType) + " = 0 ORDER BY id";
+                
+                PreparedStatement stmt = connection.prepareStatement(sql);
+                ResultSet rs = stmt.executeQuery();
+                
+                if (getSearchMode(embeddingType) == VectorSearchMode.QUANTIZED) {
+                    QuantizedVectorIndex.Builder builder = QuantizedVectorIndex.builder(
+                        documentIds -> loadEmbeddingsByIds(embeddingType, documentIds));
+                    while (rs.next()) {
+                        builder.addEncoded(rs.getLong(1), rs.getBytes(2));
+                    }
+                    
+                    QuantizedVectorIndex index = builder.build();
+                    quantized.put(embeddingType, index);
+                    LOG.info("Built " + embeddingType + " quantized vector index: " + index.size() +
+                             " documents, " + index.getDimension() + " dimensions, " +
+                             index.getVectorMemoryBytes() / 1024 + " KB");
+                    continue;
+                }
+                
+                DocumentVectorIndex.Builder builder = DocumentVectorIndex.builder();
+                while (rs.next()) {
+                    builder.addEncoded(rs.getLong(1), rs.getBytes(2));
+                }
+                
+                DocumentVectorIndex index = builder.build();
+                indexes.put(embeddingType, index);
+                LOG.info("Built " + embeddingType + " vector index: " + index.size() +
+                         " documents, " + index.getDimension() + " dimensions");
+            }
+        } finally {
+            dbLock.readLock().unlock();
+        }
+        
+        vectorIndexes = Collections.unmodifiableMap(indexes);
+        quantizedIndexes = Collections.unmodifiableMap(quantized);
+        approximateIndexes = Collections.emptyMap();
+    }
+    
+    /**
+     * Loads and decodes the embeddings of the given documents, for re-ranking quantized candidates.
+     * 
+     * @param embeddingType the embedding type to load
+     * @param documentIds the document IDs
+     * @return the embeddings keyed by document ID
+     * @throws SQLException if retrieval fails
+     */
+    private Map<Long, float[]> loadEmbeddingsByIds(EmbeddingType embeddingType, Collection<Long> documentIds) throws SQLException {
+        Map<Long, float[]> embeddings = new HashMap<>();
+        if (documentIds.isEmpty()) {
+            return embeddings;
+        }
+        
+        dbLock.readLock().lock();
+        Connection readConnection = null;
+        try {
+            readConnection = acquireReadConnection();
+            String placeholders = String.join(", ", Collections.nCopies(documentIds.size(), "?"));
+            String sql = "SELECT id, " + getEmbeddingColumn(embeddingType) + " FROM documents " +
+                         "WHERE id IN (" + placeholders + ")";
+            
+            try (PreparedStatement stmt = readConnection.prepareStatement(sql)) {
+                int index = 1;
+                for (Long documentId : documentIds) {
+                    stmt.setLong(index++, documentId);
+                }
+                try (ResultSet rs = stmt.executeQuery()) {
+                    while (rs.next()) {
+                        byte[] blob = rs.getBytes(2);
+                        if (blob != null) {
+                            embeddings.put(rs.getLong(1), deserializeEmbedding(blob));
+                        }
+                    }
+                }
+            }
+            return embeddings;
+        
+        } finally {
+            releaseReadConnection(readConnection);
+            dbLock.readLock().unlock();
+        }
+    }
+    
+    /**
+     * Drops the in-memory vector indexes after a write so searches fall back to a table scan.
+     */
+    private void invalidateVectorIndexes() {
+        if (!vectorIndexes.isEmpty() || !quantizedIndexes.isEmpty()) {
+            vectorIndexes = Collections.emptyMap();
+            quantizedIndexes = Collections.emptyMap();
+            approximateIndexes = Collections.emptyMap();
+            LOG.debug("Vector indexes invalidated after database write");
+        }
+    }
+    
+    /**
+     * Sets the vector search mode for an embedding type.
+     * 
+     * <p>Approximate search uses an HNSW graph loaded from the bundled resources, or built
+     * in memory on first use when no matching graph is bundled. Exact search remains the
+     * fallback whenever no graph can be provided.</p>
+     * 
+     * <p>Quantized search decides how the indexes are built, so it only takes effect for
+     * indexes built after the mode is set.</p>
+     * 
+     * @param embeddingType the embedding type to configure
+     * @param mode the search mode to use
+     */
+    public void setSearchMode(@NotNull EmbeddingType embeddingType, @NotNull VectorSearchMode mode) {
+        VectorSearchMode previous = searchModes.put(embeddingType, mode);
+        if (previous != mode) {
+            LOG.info("Vector search mode for " + embeddingType + " set to " + mode.getId());
+        }
+    }
+    
+    /**
+     * Gets the vector search mode for an embedding type.
+     * 
+     * @param embeddingType the embedding type
+     * @return the configured search mode
+     */
+    @NotNull
+    public VectorSearchMode getSearchMode(@NotNull EmbeddingType embeddingType) {
+        return searchModes.getOrDefault(embeddingType, VectorSearchMode.getDefault());
+    }
+    
+    /**
+     * Resolves the in-memory search engine for an embedding type according to its search mode.
+     * 
+     * @param embeddingType the embedding type
+     * @return the search engine, or null if no in-memory index is available
+     */
+    @Nullable
+    private VectorSearchEngine getSearchEngine(EmbeddingType embeddingType) {
+        DocumentVectorIndex exactIndex = vectorIndexes.get(embeddingType);
+        if (exactIndex == null) {
+            // Quantized-only types have no exact index; the quantized one serves every mode
+            return quantizedIndexes.get(embeddingType);
+        }
+        if (getSearchMode(embeddingType) != VectorSearchMode.HNSW) {
+            return exactIndex;
+        }
+        
+        HnswVectorIndex approximateIndex = approximateIndexes.get(embeddingType);
+        return approximateIndex != null ? approximateIndex : createApproximateIndex(embeddingType, exactIndex);
+    }
+    
+    /**
+     * Loads or builds the HNSW index for an embedding type, falling back to exact search on failure.
+     * 
+     * @param embeddingType the embedding type
+     * @param exactIndex the exact index holding the vectors
+     * @return the search engine to use
+     */
+    private synchronized VectorSearchEngine createApproximateIndex(EmbeddingType embeddingType,
+                                                                   DocumentVectorIndex exactIndex) {
+        HnswVectorIndex approximateIndex = approximateIndexes.get(embeddingType);
+        if (approximateIndex != null) {
+            return approximateIndex;
+        }
+        
+        try {
+            String resourcePath = "/db/" + getApproximateIndexFileName(embeddingType);
+            try (InputStream graphStream = getClass().getResourceAsStream(resourcePath)) {
+                if (graphStream != null) {
+                    approximateIndex = HnswVectorIndex.readFrom(graphStream, exactIndex);
+                    LOG.info("Loaded " + embeddingType + " HNSW graph from " + resourcePath);
+                }
+            } catch (java.io.IOException e) {
+                LOG.warn("Bundled " + embeddingType + " HNSW graph is unusable, rebuilding: " + e.getMessage());
+            }
+            
+            if (approximateIndex == null) {
+                approximateIndex = HnswVectorIndex.build(exactIndex);
+            }
+        } catch (Exception e) {
+            LOG.warn("Failed to create " + embeddingType + " HNSW index, using exact search", e);
+            return exactIndex;
+        }
+        
+        // Only publish if the exact index was not replaced or invalidated meanwhile
+        if (vectorIndexes.get(embeddingType) == exactIndex) {
+            Map<EmbeddingType, HnswVectorIndex> updated = new EnumMap<>(EmbeddingType.class);
+            updated.putAll(approximateIndexes);
+            updated.put(embeddingType, approximateIndex);
+            approximateIndexes = Collections.unmodifiableMap(updated);
+        }
+        return approximateIndex;
+    }
+    
+    /**
+     * Builds HNSW graphs for all embedding types and writes them beside the database file.
+     * 
+     * <p>Used by DocumentStoreRefresher so the bundled graphs always match the bundled database.</p>
+     * 
+     * @param directory the directory containing the database file
+     * @throws SQLException if reading the embeddings fails
+     * @throws java.io.IOException if writing a graph fails
+     */
+    public void exportApproximateIndexes(@NotNull File directory) throws SQLException, java.io.IOException {
+        buildVectorIndexes();
+        
+        for (Map.Entry<EmbeddingType, DocumentVectorIndex> entry : vectorIndexes.entrySet()) {
+            File graphFile = new File(directory, getApproximateIndexFileName(entry.getKey()));
+            if (entry.getValue().size() == 0) {
+                if (graphFile.exists() && !graphFile.delete()) {
+                    LOG.warn("Failed to delete stale HNSW graph: " + graphFile.getAbsolutePath());
+                }
+                continue;
+            }
+            
+            HnswVectorIndex graph = HnswVectorIndex.build(entry.getValue());
+            try (java.io.OutputStream out = java.nio.file.Files.newOutputStream(graphFile.toPath())) {
+                graph.writeTo(out);
+            }
+            LOG.info("Wrote " + entry.getKey() + " HNSW graph to " + graphFile.getAbsolutePath());
+        }
+    }
+    
+    /**
+     * Gets the file name of the persisted HNSW graph for an embedding type.
+     * 
+     * @param embeddingType the embedding type
+     * @return the graph file name, stored beside trace-documents.db
+     */
+    static String getApproximateIndexFileName(EmbeddingType embeddingType) {
+        return "trace-documents-" + embeddingType.name().toLowerCase() + APPROXIMATE_INDEX_EXTENSION;
+    }
+    
+    /**
+     * Gets the embedding BLOB column name for an embedding type.
+     * 
+     * @param embeddingType the embedding type
+     * @return the column name
+     */
+    private String getEmbeddingColumn(EmbeddingType embeddingType) {
+        return embeddingType == EmbeddingType.OPENAI ? "openai_embedding_data" : "gemini_embedding_data";
+    }
+    
+    /**
+     * Gets the stale flag column for an embedding type.
+     * 
+     * @param embeddingType the embedding type
+     * @return the column name
+     */
+    private String getStaleColumn(EmbeddingType embeddingType) {
+        return embeddingType == EmbeddingType.OPENAI ? "openai_embedding_stale" : "gemini_embedding_stale";
+    }
+    
+    /**
+     * Gets the embedding model column for an embedding type.
+     * 
+     * @param embeddingType the embedding type
+     * @return the column name
+     */
+    private String getModelColumn(EmbeddingType embeddingType) {
+        return embeddingType == EmbeddingType.OPENAI ? "openai_embedding_model" : "gemini_embedding_model";
+    }
+    
     /**
      * Builds the SQL query for retrieving documents with embeddings.
      * 
@@ -519,6 +1266,7 @@ public class DocumentDatabaseService {
                "resolution_steps, tags, " + embeddingColumn + " " +
                "FROM documents " +
                "WHERE " + embeddingColumn + " IS NOT NULL " +
+               "AND " + getStaleColumn(embeddingType) + " = 0 " +
                "ORDER BY id";
     }
     
@@ -534,6 +1282,22 @@ public class DocumentDatabaseService {
      * @throws IllegalArgumentException if embeddings have different dimensions
      */
     public double calculateCosineSimilarity(float[] embedding1, float[] embedding2) {
+        return cosineSimilarity(embedding1, embedding2);
+    }
+    
+    /**
+     * Calculates cosine similarity between two embeddings without a database instance.
+     * 
+     * <p>Used by callers that compare embeddings outside the document store, such as the
+     * failure deduplication cache.</p>
+     * 
+     * @param embedding1 the first embedding
+     * @param embedding2 the second embedding
+     * @return the cosine similarity score
+     * @throws IllegalArgumentException if embeddings have different dimensions
+     * @see #calculateCosineSimilarity(float[], float[])
+     */
+    public static double cosineSimilarity(float[] embedding1, float[] embedding2) {
         if (embedding1.length != embedding2.length) {
             throw new IllegalArgumentException("Embeddings must have same dimensions");
         }
@@ -561,12 +1325,14 @@ public class DocumentDatabaseService {
      */
     public int getDocumentCountWithEmbeddings(EmbeddingType embeddingType) throws SQLException {
         dbLock.readLock().lock();
+        Connection readConnection = null;
         try {
+            readConnection = acquireReadConnection();
             String embeddingColumn = embeddingType == EmbeddingType.OPENAI ? 
                 "openai_embedding_data" : "gemini_embedding_data";
             
             String sql = "SELECT COUNT(*) FROM documents WHERE " + embeddingColumn + " IS NOT NULL";
-            PreparedStatement stmt = connection.prepareStatement(sql);
+            PreparedStatement stmt = readConnection.prepareStatement(sql);
             ResultSet rs = stmt.executeQuery();
             
             if (rs.next()) {
@@ -575,6 +1341,7 @@ public class DocumentDatabaseService {
             return 0;
             
         } finally {
+            releaseReadConnection(readConnection);
             dbLock.readLock().unlock();
         }
     }
@@ -592,6 +1359,7 @@ public class DocumentDatabaseService {
             PreparedStatement stmt = connection.prepareStatement(sql);
             int deletedCount = stmt.executeUpdate();
             connection.commit();
+            invalidateVectorIndexes();
             LOG.info("Cleared " + deletedCount + " documents from database");
         } finally {
             dbLock.writeLock().unlock();
@@ -599,16 +1367,227 @@ public class DocumentDatabaseService {
     }
     
     /**
-     * Closes the database connection.
+     * Gets the refresh state of every stored document, keyed by title.
+     * 
+     * <p>Used by incremental refreshes to decide which documents must be inserted,
+     * re-embedded or deleted without reading any embedding BLOBs.</p>
+     * 
+     * @return the stored document states by title
+     * @throws SQLException if the query fails
      */
-    public void close() {
-        if (connection != null) {
-            try {
-                connection.close();
-                LOG.info("Document database connection closed");
+    @NotNull
+    public Map<String, StoredDocumentState> getStoredDocumentStates() throws SQLException {
+        dbLock.readLock().lock();
+        try {
+            String sql = """
+                SELECT id, title, content_hash,
+                       openai_embedding_data IS NOT NULL AS has_openai, openai_embedding_model, openai_embedding_stale,
+                       gemini_embedding_data IS NOT NULL AS has_gemini, gemini_embedding_model, gemini_embedding_stale
+                FROM documents
+                ORDER BY id
+            """;
+            
+            Map<String, StoredDocumentState> states = new LinkedHashMap<>();
+            try (PreparedStatement stmt = connection.prepareStatement(sql);
+                 ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    StoredDocumentState state = new StoredDocumentState(
+                        rs.getLong("id"),
+                        rs.getString("content_hash"),
+                        new StoredEmbeddingState(rs.getBoolean("has_openai"), rs.getString("openai_embedding_model"),
+                            rs.getBoolean("openai_embedding_stale")),
+                        new StoredEmbeddingState(rs.getBoolean("has_gemini"), rs.getString("gemini_embedding_model"),
+                            rs.getBoolean("gemini_embedding_stale")));
+                    if (states.putIfAbsent(rs.getString("title"), state) != null) {
+                        LOG.warn("Duplicate document title in store: " + rs.getString("title"));
+                    }
+                }
+            }
+            return states;
+        
+        } finally {
+            dbLock.readLock().unlock();
+        }
+    }
+    
+    /**
+     * Applies the result of an incremental refresh in a single transaction.
+     * 
+     * <p>Either all inserts, updates and deletes are committed or, on failure, the previous
+     * contents are left untouched.</p>
+     * 
+     * @param changes the documents to insert or update
+     * @param deletedIds the IDs of documents to delete
+     * @throws SQLException if writing fails
+     */
+    public void applyRefresh(@NotNull List<DocumentChange> changes, @NotNull Collection<Long> deletedIds) throws SQLException {
+        dbLock.writeLock().lock();
+        try {
+            String insertSql = """
+                INSERT INTO documents (
+                    category, title, content, summary, root_causes, 
+                    resolution_steps, tags, content_hash
+                ) VALUES (?, ?, ?, ?, ?, ?, ?, ?)
+            """;
+            String updateSql = """
+                UPDATE documents 
+                SET category = ?, title = ?, content = ?, summary = ?, root_causes = ?,
+                    resolution_steps = ?, tags = ?, content_hash = ?, updated_at = CURRENT_TIMESTAMP
+                WHERE id = ?
+            """;
+            
+            int inserted = 0;
+            int updated = 0;
+            try (PreparedStatement insert = connection.prepareStatement(insertSql, Statement.RETURN_GENERATED_KEYS);
+                 PreparedStatement update = connection.prepareStatement(updateSql);
+                 PreparedStatement delete = connection.prepareStatement("DELETE FROM documents WHERE id = ?")) {
+                for (Long id : deletedIds) {
+                    delete.setLong(1, id);
+                    delete.addBatch();
+                }
+                delete.executeBatch();
+                
+                for (DocumentChange change : changes) {
+                    long id;
+                    if (change.getExistingId() == null) {
+                        setContentParameters(insert, change.getDocument());
+                        insert.executeUpdate();
+                        try (ResultSet keys = insert.getGeneratedKeys()) {
+                            if (!keys.next()) {
+                                throw new SQLException("No ID generated for document: " + change.getDocument().getTitle());
+                            }
+                            id = keys.getLong(1);
+                        }
+                        inserted++;
+                    } else {
+                        id = change.getExistingId();
+                        if (change.isContentChanged()) {
+                            setContentParameters(update, change.getDocument());
+                            update.setLong(9, id);
+                            update.executeUpdate();
+                        }
+                        updated++;
+                    }
+                    applyEmbeddingUpdate(id, EmbeddingType.OPENAI, change.getOpenAIUpdate());
+                    applyEmbeddingUpdate(id, EmbeddingType.GEMINI, change.getGeminiUpdate());
+                }
+                connection.commit();
             } catch (SQLException e) {
-                LOG.error("Error closing database connection", e);
+                connection.rollback();
+                throw e;
             }
+            
+            invalidateVectorIndexes();
+            LOG.info("Applied document refresh: " + inserted + " inserted, " + updated + " updated, "
+                + deletedIds.size() + " deleted");
+            
+        } finally {
+            dbLock.writeLock().unlock();
+        }
+    }
+    
+    /**
+     * Binds the content columns and content hash of a document to the first eight statement parameters.
+     * 
+     * @param stmt the statement
+     * @param entry the document
+     * @throws SQLException if binding fails
+     */
+    private void setContentParameters(PreparedStatement stmt, DocumentEntry entry) throws SQLException {
+        stmt.setString(1, entry.getCategory());
+        stmt.setString(2, entry.getTitle());
+        stmt.setString(3, entry.getContent());
+        stmt.setString(4, entry.getSummary());
+        stmt.setString(5, entry.getRootCauses());
+        stmt.setString(6, entry.getResolutionSteps());
+        stmt.setString(7, entry.getTags());
+        stmt.setString(8, entry.computeContentHash());
+    }
+    
+    /**
+     * Writes one provider's embedding update for a document. Must be called with the write lock held.
+     * 
+     * @param id the document ID
+     * @param embeddingType the provider of the embedding
+     * @param embeddingUpdate the update to apply
+     * @throws SQLException if writing fails
+     */
+    private void applyEmbeddingUpdate(long id, EmbeddingType embeddingType, EmbeddingUpdate embeddingUpdate) throws SQLException {
+        String embeddingColumn = getEmbeddingColumn(embeddingType);
+        String dimensionColumn = embeddingType == EmbeddingType.OPENAI ? 
+            "openai_embedding_dimension" : "gemini_embedding_dimension";
+        
+        switch (embeddingUpdate.getAction()) {
+            case REPLACE -> {
+                String sql = "UPDATE documents SET " + embeddingColumn + " = ?, " + dimensionColumn + " = ?, " +
+                             getModelColumn(embeddingType) + " = ?, " + getStaleColumn(embeddingType) + " = 0 " +
+                             "WHERE id = ?";
+                try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+                    setEmbeddingParameters(stmt, 1, embeddingUpdate.getEmbedding());
+                    stmt.setString(3, embeddingUpdate.getModel());
+                    stmt.setLong(4, id);
+                    stmt.executeUpdate();
+                }
+            }
+            case MARK_STALE -> {
+                String sql = "UPDATE documents SET " + getStaleColumn(embeddingType) + " = 1 WHERE id = ?";
+                try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+                    stmt.setLong(1, id);
+                    stmt.executeUpdate();
+                }
+            }
+            case KEEP -> {
+                // Nothing to write
+            }
+        }
+    }
+    
+    /**
+     * Binds an embedding BLOB and its dimension to two consecutive statement parameters.
+     * 
+     * @param stmt the statement
+     * @param index the parameter index of the BLOB; the dimension goes to the next index
+     * @param embedding the embedding, or null to bind NULLs
+     * @throws SQLException if binding fails
+     */
+    private void setEmbeddingParameters(PreparedStatement stmt, int index, float[] embedding) throws SQLException {
+        if (embedding != null) {
+            stmt.setBytes(index, serializeEmbedding(embedding));
+            stmt.setInt(index + 1, embedding.length);
+        } else {
+            stmt.setNull(index, Types.BLOB);
+            stmt.setNull(index + 1, Types.INTEGER);
+        }
+    }
+    
+    /**
+     * Closes the database connection and any pooled read connections.
+     * 
+     * <p>Waits for running queries, since pooled connections are only borrowed under the read lock.</p>
+     */
+    public void close() {
+        dbLock.writeLock().lock();
+        try {
+            readConnectionCount = 0;
+            Connection pooled;
+            while ((pooled = readConnections.poll()) != null) {
+                try {
+                    pooled.close();
+                } catch (SQLException e) {
+                    LOG.warn("Error closing pooled read connection", e);
+                }
+            }
+            
+            if (connection != null) {
+                try {
+                    connection.close();
+                    LOG.info("Document database connection closed");
+                } catch (SQLException e) {
+                    LOG.error("Error closing database connection", e);
+                }
+            }
+        } finally {
+            dbLock.writeLock().unlock();
         }
     }
     
@@ -624,9 +1603,9 @@ public class DocumentDatabaseService {
     private void loadDatabaseFromResource() throws SQLException {
         try {
             // Load the database from JAR resources
-            InputStream dbStream = getClass().getResourceAsStream("/db/trace-documents.db");
+            InputStream dbStream = getClass().getResourceAsStream(DATABASE_RESOURCE);
             if (dbStream == null) {
-                throw new SQLException("Database resource not found: /db/trace-documents.db");
+                throw new SQLException("Database resource not found: " + DATABASE_RESOURCE);
             }
             
             // Create in-memory database connection
@@ -655,6 +1634,10 @@ public class DocumentDatabaseService {
                 tempFile.delete();
             }
             
+            // The bundled file may predate the refresh columns; the in-memory copy is migrated instead
+            migrateSchema(connection);
+            connection.commit();
+            
             LOG.info("Successfully loaded database from JAR resources into memory");
             
         } catch (Exception e) {
@@ -669,29 +1652,20 @@ public class DocumentDatabaseService {
      * Serializes a float array to byte array for BLOB storage.
      * 
      * @param embedding the embedding array
-     * @return serialized byte array
+     * @return serialized byte array in {@link EmbeddingCodec} format
      */
     private byte[] serializeEmbedding(float[] embedding) {
-        ByteBuffer buffer = ByteBuffer.allocate(embedding.length * 4);
-        for (float value : embedding) {
-            buffer.putFloat(value);
-        }
-        return buffer.array();
+        return EmbeddingCodec.encode(embedding, storageEncoding);
     }
     
     /**
      * Deserializes a byte array to float array from BLOB storage.
      * 
-     * @param bytes the serialized byte array
+     * @param bytes the serialized byte array, in the current or the legacy format
      * @return deserialized float array
      */
     private float[] deserializeEmbedding(byte[] bytes) {
-        ByteBuffer buffer = ByteBuffer.wrap(bytes);
-        float[] embedding = new float[bytes.length / 4];
-        for (int i = 0; i < embedding.length; i++) {
-            embedding[i] = buffer.getFloat();
-        }
-        return embedding;
+        return EmbeddingCodec.decode(bytes);
     }
     
     /**
@@ -724,6 +1698,197 @@ public class DocumentDatabaseService {
         }
     }
     
+    /**
+     * Refresh state of one provider's embedding for a stored document.
+     */
+    public static final class StoredEmbeddingState {
+        private final boolean present;
+        private final String model;
+        private final boolean stale;
+        
+        public StoredEmbeddingState(boolean present, @Nullable String model, boolean stale) {
+            this.present = present;
+            this.model = model;
+            this.stale = stale;
+        }
+        
+        public boolean isPresent() {
+            return present;
+        }
+        
+        @Nullable
+        public String getModel() {
+            return model;
+        }
+        
+        public boolean isStale() {
+            return stale;
+        }
+        
+        /**
+         * Checks whether the embedding exists, is not stale and was produced by the given model.
+         * 
+         * @param currentModel the model currently used by the provider
+         * @return true if the embedding can be kept as is
+         */
+        public boolean isCurrent(@NotNull String currentModel) {
+            return present && !stale && currentModel.equals(model);
+        }
+    }
+    
+    /**
+     * Refresh state of a stored document: its ID, content hash and embedding states.
+     */
+    public static final class StoredDocumentState {
+        private final long id;
+        private final String contentHash;
+        private final StoredEmbeddingState openAIEmbedding;
+        private final StoredEmbeddingState geminiEmbedding;
+        
+        public StoredDocumentState(long id, @Nullable String contentHash,
+                                   @NotNull StoredEmbeddingState openAIEmbedding,
+                                   @NotNull StoredEmbeddingState geminiEmbedding) {
+            this.id = id;
+            this.contentHash = contentHash;
+            this.openAIEmbedding = openAIEmbedding;
+            this.geminiEmbedding = geminiEmbedding;
+        }
+        
+        public long getId() {
+            return id;
+        }
+        
+        @Nullable
+        public String getContentHash() {
+            return contentHash;
+        }
+        
+        @NotNull
+        public StoredEmbeddingState getEmbeddingState(@NotNull EmbeddingType embeddingType) {
+            return embeddingType == EmbeddingType.OPENAI ? openAIEmbedding : geminiEmbedding;
+        }
+    }
+    
+    /**
+     * Change to one provider's embedding of a document during a refresh.
+     */
+    public static final class EmbeddingUpdate {
+        
+        /**
+         * The kind of embedding change.
+         */
+        public enum Action {
+            KEEP,
+            REPLACE,
+            MARK_STALE
+        }
+        
+        private static final EmbeddingUpdate KEEP = new EmbeddingUpdate(Action.KEEP, null, null);
+        private static final EmbeddingUpdate MARK_STALE = new EmbeddingUpdate(Action.MARK_STALE, null, null);
+        
+        private final Action action;
+        private final float[] embedding;
+        private final String model;
+        
+        private EmbeddingUpdate(Action action, float[] embedding, String model) {
+            this.action = action;
+            this.embedding = embedding;
+            this.model = model;
+        }
+        
+        /**
+         * Leaves the stored embedding untouched; new documents get no embedding.
+         */
+        @NotNull
+        public static EmbeddingUpdate keep() {
+            return KEEP;
+        }
+        
+        /**
+         * Flags the stored embedding as stale so search ignores it until it is re-embedded.
+         */
+        @NotNull
+        public static EmbeddingUpdate markStale() {
+            return MARK_STALE;
+        }
+        
+        /**
+         * Stores a fresh embedding and clears the stale flag.
+         */
+        @NotNull
+        public static EmbeddingUpdate replace(@NotNull float[] embedding, @NotNull String model) {
+            return new EmbeddingUpdate(Action.REPLACE, embedding, model);
+        }
+        
+        @NotNull
+        public Action getAction() {
+            return action;
+        }
+        
+        @Nullable
+        public float[] getEmbedding() {
+            return embedding;
+        }
+        
+        @Nullable
+        public String getModel() {
+            return model;
+        }
+    }
+    
+    /**
+     * A document to insert or update during a refresh, with its embedding updates.
+     */
+    public static final class DocumentChange {
+        private final Long existingId;
+        private final DocumentEntry document;
+        private final boolean contentChanged;
+        private final EmbeddingUpdate openAIUpdate;
+        private final EmbeddingUpdate geminiUpdate;
+        
+        /**
+         * Creates a new document change.
+         * 
+         * @param existingId the ID of the stored document, or null to insert a new one
+         * @param document the parsed document
+         * @param contentChanged whether the stored content must be rewritten
+         * @param openAIUpdate the OpenAI embedding update
+         * @param geminiUpdate the Gemini embedding update
+         */
+        public DocumentChange(@Nullable Long existingId, @NotNull DocumentEntry document, boolean contentChanged,
+                              @NotNull EmbeddingUpdate openAIUpdate, @NotNull EmbeddingUpdate geminiUpdate) {
+            this.existingId = existingId;
+            this.document = document;
+            this.contentChanged = contentChanged;
+            this.openAIUpdate = openAIUpdate;
+            this.geminiUpdate = geminiUpdate;
+        }
+        
+        @Nullable
+        public Long getExistingId() {
+            return existingId;
+        }
+        
+        @NotNull
+        public DocumentEntry getDocument() {
+            return document;
+        }
+        
+        public boolean isContentChanged() {
+            return contentChanged;
+        }
+        
+        @NotNull
+        public EmbeddingUpdate getOpenAIUpdate() {
+            return openAIUpdate;
+        }
+        
+        @NotNull
+        public EmbeddingUpdate getGeminiUpdate() {
+            return geminiUpdate;
+        }
+    }
+    
     /**
      * Enumeration for embedding types.
      */
@@ -15,6 +15,7 @@ import java.sql.SQLException;
 import java.util.List;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
 
 /**
  * Service for retrieving relevant documents using vector similarity search.
@@ -29,6 +30,7 @@ import java.util.concurrent.TimeUnit;
  *   <li>Vector similarity search with cosine similarity calculation</li>
  *   <li>Configurable similarity threshold (default: 0.7)</li>
  *   <li>Top 3 most relevant document retrieval</li>
+ *   <li>Query embedding cache so repeated failures skip the embedding request</li>
  *   <li>Formatted document context for AI prompt inclusion</li>
  *   <li>Comprehensive error handling and logging</li>
  * </ul>
@@ -50,9 +52,10 @@ public class DocumentRetrievalService {
     private final OpenAIEmbeddingService openAIEmbeddingService;
     private final GeminiEmbeddingService geminiEmbeddingService;
     private final AISettings aiSettings;
+    private final QueryEmbeddingCache queryEmbeddingCache;
     
     /**
-     * Creates a new DocumentRetrievalService.
+     * Creates a new DocumentRetrievalService with an in-memory query embedding cache.
      * 
      * @param databaseService the document database service
      * @param openAIEmbeddingService the OpenAI embedding service
@@ -64,6 +67,25 @@ public class DocumentRetrievalService {
                                    @NotNull OpenAIEmbeddingService openAIEmbeddingService,
                                    @NotNull GeminiEmbeddingService geminiEmbeddingService,
                                    @NotNull AISettings aiSettings) {
+        this(databaseService, openAIEmbeddingService, geminiEmbeddingService, aiSettings,
+            new QueryEmbeddingCache(QueryEmbeddingCache.DEFAULT_MAX_ENTRIES, QueryEmbeddingCache.DEFAULT_TTL));
+    }
+    
+    /**
+     * Creates a new DocumentRetrievalService.
+     * 
+     * @param databaseService the document database service
+     * @param openAIEmbeddingService the OpenAI embedding service
+     * @param geminiEmbeddingService the Gemini embedding service
+     * @param aiSettings the AI settings configuration
+     * @param queryEmbeddingCache the cache for query embeddings
+     * @throws NullPointerException if any required service is null
+     */
+    public DocumentRetrievalService(@NotNull DocumentDatabaseService databaseService,
+                                   @NotNull OpenAIEmbeddingService openAIEmbeddingService,
+                                   @NotNull GeminiEmbeddingService geminiEmbeddingService,
+                                   @NotNull AISettings aiSettings,
+                                   @NotNull QueryEmbeddingCache queryEmbeddingCache) {
         if (databaseService == null) {
             throw new NullPointerException("Database service cannot be null");
         }
@@ -76,11 +98,15 @@ public class DocumentRetrievalService {
         if (aiSettings == null) {
             throw new NullPointerException("AI settings cannot be null");
         }
+        if (queryEmbeddingCache == null) {
+            throw new NullPointerException("Query embedding cache cannot be null");
+        }
         
         this.databaseService = databaseService;
         this.openAIEmbeddingService = openAIEmbeddingService;
         this.geminiEmbeddingService = geminiEmbeddingService;
         this.aiSettings = aiSettings;
+        this.queryEmbeddingCache = queryEmbeddingCache;
         
         LOG.info("Document retrieval service initialized");
     }
@@ -128,9 +154,29 @@ public class DocumentRetrievalService {
             });
     }
     
+    /**
+     * Embeds text with the provider and model used for document retrieval.
+     * 
+     * <p>The embedding goes through the query embedding cache, so text that was embedded
+     * before costs no request. Used to compare failures with each other.</p>
+     * 
+     * @param text the text to embed
+     * @return a CompletableFuture containing the embedding, or null if none could be generated
+     * @throws IllegalArgumentException if text is null or empty
+     */
+    public CompletableFuture<float[]> embedQuery(@NotNull String text) {
+        if (text == null || text.trim().isEmpty()) {
+            throw new IllegalArgumentException("Text cannot be null or empty");
+        }
+        return generateQueryEmbedding(text);
+    }
+    
     /**
      * Generates an embedding for the query text.
      * 
+     * <p>Embeddings are served from the query embedding cache when the same normalized
+     * text was embedded before with the same provider and model.</p>
+     * 
      * @param queryText the text to generate embedding for
      * @return a CompletableFuture containing the generated embedding
      */
@@ -153,29 +199,33 @@ public class DocumentRetrievalService {
             LOG.info("Query text (truncated): " + queryText.substring(0, 100) + "...");
         }
         
-        CompletableFuture<float[]> embeddingFuture;
         if (serviceType == null) {
             LOG.info("No embedding provider available (no default model and no API key). Skipping embeddings.");
             return CompletableFuture.completedFuture(null);
         }
 
+        final String modelId;
+        final Supplier<CompletableFuture<float[]>> embeddingRequest;
         switch (serviceType) {
             case OPENAI:
                 LOG.info("Using OpenAI embedding service (1536 dimensions)");
-                embeddingFuture = openAIEmbeddingService.generateEmbedding(queryText);
+                modelId = openAIEmbeddingService.getDefaultModel();
+                embeddingRequest = () -> openAIEmbeddingService.generateEmbedding(queryText)
+                    .orTimeout(EMBEDDING_TIMEOUT_SECONDS, TimeUnit.SECONDS);
                 break;
             case GEMINI:
                 LOG.info("Using Gemini embedding service (3072 dimensions)");
-                embeddingFuture = geminiEmbeddingService.generateEmbedding(queryText);
+                modelId = geminiEmbeddingService.getDefaultModel();
+                embeddingRequest = () -> geminiEmbeddingService.generateEmbedding(queryText)
+                    .orTimeout(EMBEDDING_TIMEOUT_SECONDS, TimeUnit.SECONDS);
                 break;
             default:
                 LOG.info("Unknown service type: " + serviceType + ". Skipping embeddings.");
-                embeddingFuture = CompletableFuture.completedFuture(null);
-                break;
+                return CompletableFuture.completedFuture(null);
         }
         
-        return embeddingFuture
-            .orTimeout(EMBEDDING_TIMEOUT_SECONDS, TimeUnit.SECONDS)
+        return queryEmbeddingCache.getOrCompute(serviceType, modelId != null ? modelId : serviceType.getId(),
+                queryText, embeddingRequest)
             .thenApply(embedding -> {
                 LOG.info("Successfully generated embedding with " + embedding.length + " dimensions");
                 return embedding;
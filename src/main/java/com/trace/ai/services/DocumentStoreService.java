@@ -0,0 +1,222 @@
+package com.trace.ai.services;
+
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.application.PathManager;
+import com.intellij.openapi.diagnostic.Logger;
+import com.trace.ai.configuration.AISettings;
+import com.trace.ai.configuration.AIServiceType;
+import com.trace.ai.services.embedding.GeminiEmbeddingService;
+import com.trace.ai.services.embedding.OpenAIEmbeddingService;
+import com.trace.ai.services.http.HttpClientRegistry;
+import com.trace.security.APIKeyListener;
+import com.trace.security.SecureAPIKeyManager;
+import org.jetbrains.annotations.NotNull;
+
+import java.nio.file.Path;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Application-level owner of the document store shared by every open project.
+ *
+ * <p>The document database, its vector indexes and the query embedding cache are created
+ * once per IDE instead of once per project. Creation is lazy and thread-safe, so the first
+ * analysis in any project pays for loading the corpus and every later request in any project
+ * reuses it. A database that fails to initialize is not kept; the next request tries again.</p>
+ *
+ * <p>The API keys are read when the retrieval service is created. When a key is stored or
+ * cleared, {@link APIKeyListener#TOPIC} drops the retrieval service, and the next request
+ * creates it again with the new key, so a new key takes effect immediately.</p>
+ *
+ * <p>Embedding services send requests through the embedding client of
+ * {@link AIServiceFactory#getHttpClientRegistry()}.
+ * Document store settings (search modes, memory-mapped storage, persistent query cache) are
+ * read when the store is first created and take effect after an IDE restart.</p>
+ *
+ * @author Alex Ibasitas
+ * @since 1.0.0
+ */
+public final class DocumentStoreService implements Disposable {
+    
+    private static final Logger LOG = Logger.getInstance(DocumentStoreService.class);
+    
+    private volatile DocumentRetrievalService retrievalService;
+    private volatile DocumentDatabaseService databaseService;
+    private volatile QueryEmbeddingCache queryEmbeddingCache;
+    private volatile boolean disposed;
+    
+    /**
+     * Creates the service and subscribes to API key changes for its lifetime.
+     */
+    public DocumentStoreService() {
+        ApplicationManager.getApplication().getMessageBus().connect(this)
+            .subscribe(APIKeyListener.TOPIC, serviceType -> invalidateRetrievalService());
+    }
+    
+    /**
+     * Gets the application-level document store service.
+     *
+     * @return the DocumentStoreService instance
+     */
+    public static DocumentStoreService getInstance() {
+        return ApplicationManager.getApplication().getService(DocumentStoreService.class);
+    }
+    
+    /**
+     * Gets the shared document retrieval service, creating the document store on first use.
+     *
+     * <p>Must not be called on the EDT for the first time, since it loads the document database.</p>
+     *
+     * @return the document retrieval service
+     * @throws IllegalStateException if the service has been disposed
+     */
+    @NotNull
+    public DocumentRetrievalService getRetrievalService() {
+        DocumentRetrievalService service = retrievalService;
+        if (service != null) {
+            return service;
+        }
+        synchronized (this) {
+            if (disposed) {
+                throw new IllegalStateException("Document store service has been disposed");
+            }
+            service = retrievalService;
+            if (service != null) {
+                return service;
+            }
+            
+            // Read under the lock, so that a key changed meanwhile drops this service once it is cached
+            String openAIKey = getAPIKey(AIServiceType.OPENAI);
+            String geminiKey = getAPIKey(AIServiceType.GEMINI);
+            DocumentDatabaseService database = databaseService;
+            if (database == null) {
+                database = createDatabase();
+                if (database == null) {
+                    // Retrieval over an uninitialized database finds no documents. It is not
+                    // cached, so that the next request tries to initialize the database again.
+                    return createRetrievalService(new DocumentDatabaseService(), openAIKey, geminiKey);
+                }
+                databaseService = database;
+            }
+            service = createRetrievalService(database, openAIKey, geminiKey);
+            retrievalService = service;
+            LOG.info("Shared document store initialized");
+            return service;
+        }
+    }
+    
+    /**
+     * Drops the retrieval service after an API key has changed. The next request creates it
+     * again with the new keys; the database and the query embedding cache are kept.
+     */
+    private void invalidateRetrievalService() {
+        synchronized (this) {
+            if (retrievalService != null) {
+                retrievalService = null;
+                LOG.info("API key changed, the shared document store will use the new key");
+            }
+        }
+    }
+    
+    /**
+     * Creates and initializes the document database.
+     *
+     * @return the database, or null if it could not be initialized
+     */
+    private DocumentDatabaseService createDatabase() {
+        AISettings aiSettings = AISettings.getInstance();
+        
+        DocumentDatabaseService database = new DocumentDatabaseService();
+        database.setSearchMode(DocumentDatabaseService.EmbeddingType.OPENAI,
+            aiSettings.getVectorSearchMode(AIServiceType.OPENAI));
+        database.setSearchMode(DocumentDatabaseService.EmbeddingType.GEMINI,
+            aiSettings.getVectorSearchMode(AIServiceType.GEMINI));
+        try {
+            // The memory-mapped store is extracted once under the IDE system directory
+            if (aiSettings.isMemoryMappedDocumentStore()) {
+                database.initializeDatabaseFromCache(Path.of(PathManager.getSystemPath(), "trace", "document-store"));
+            } else {
+                database.initializeDatabase();
+            }
+            return database;
+        } catch (Exception e) {
+            LOG.warn("Failed to initialize document database", e);
+            database.close();
+            return null;
+        }
+    }
+    
+    /**
+     * Creates the embedding services for the given keys and the retrieval service using them.
+     */
+    private DocumentRetrievalService createRetrievalService(DocumentDatabaseService database,
+                                                            String openAIKey,
+                                                            String geminiKey) {
+        QueryEmbeddingCache cache = queryEmbeddingCache;
+        if (cache == null) {
+            // Query embeddings are optionally persisted under the IDE system directory
+            Path cacheStorePath = AISettings.getInstance().isPersistQueryEmbeddingCache()
+                ? Path.of(PathManager.getSystemPath(), "trace", "query-embeddings.db")
+                : null;
+            cache = new QueryEmbeddingCache(
+                QueryEmbeddingCache.DEFAULT_MAX_ENTRIES, QueryEmbeddingCache.DEFAULT_TTL, cacheStorePath);
+            queryEmbeddingCache = cache;
+        }
+        
+        HttpClientRegistry httpClients = AIServiceFactory.getHttpClientRegistryStatic();
+        return new DocumentRetrievalService(
+            database,
+            new OpenAIEmbeddingService(openAIKey, httpClients,
+                AIServiceFactory.getEmbeddingResiliencePolicyStatic(AIServiceType.OPENAI)),
+            new GeminiEmbeddingService(geminiKey, httpClients,
+                AIServiceFactory.getEmbeddingResiliencePolicyStatic(AIServiceType.GEMINI)),
+            AISettings.getInstance(),
+            cache
+        );
+    }
+    
+    /**
+     * Reads an API key, moving the lookup off the EDT if necessary.
+     *
+     * @param serviceType the service to read the key for
+     * @return the API key, or an empty string if none is configured
+     */
+    private static String getAPIKey(AIServiceType serviceType) {
+        try {
+            String apiKey;
+            if (ApplicationManager.getApplication().isDispatchThread()) {
+                // We're on EDT, need to get API key off EDT
+                apiKey = CompletableFuture.supplyAsync(() -> SecureAPIKeyManager.getAPIKey(serviceType)).get();
+            } else {
+                apiKey = SecureAPIKeyManager.getAPIKey(serviceType);
+            }
+            return apiKey != null ? apiKey : "";
+        } catch (Exception e) {
+            LOG.warn("Failed to get " + serviceType + " API key", e);
+            return "";
+        }
+    }
+    
+    /**
+     * Closes the document database and the query embedding cache when the IDE shuts down.
+     */
+    @Override
+    public void dispose() {
+        LOG.info("Disposing shared document store");
+        synchronized (this) {
+            disposed = true;
+            retrievalService = null;
+            
+            QueryEmbeddingCache cache = queryEmbeddingCache;
+            if (cache != null) {
+                cache.close();
+                queryEmbeddingCache = null;
+            }
+            DocumentDatabaseService database = databaseService;
+            if (database != null) {
+                database.close();
+                databaseService = null;
+            }
+        }
+    }
+}
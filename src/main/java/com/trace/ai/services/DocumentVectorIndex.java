@@ -0,0 +1,353 @@
+package com.trace.ai.services;
+
+import com.intellij.openapi.diagnostic.Logger;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * In-memory exact vector index for document embeddings of a single embedding type.
+ *
+ * <p>All embeddings are L2-normalized once at build time and stored back to back in a
+ * single contiguous {@code float[]}, so a similarity search is a plain dot-product scan
+ * over one array followed by a bounded top-K selection. No BLOB decoding or object
+ * allocation happens per document during search.</p>
+ *
+ * <p>The index is immutable once built and safe to share between threads.</p>
+ *
+ * @author Alex Ibasitas
+ * @since 1.0.0
+ */
+public final class DocumentVectorIndex implements VectorSearchEngine {
+    
+    private static final Logger LOG = Logger.getInstance(DocumentVectorIndex.class);
+    
+    private final int dimension;
+    private final long[] documentIds;
+    private final float[] vectors;
+    
+    /**
+     * Creates an index over pre-normalized vectors.
+     *
+     * @param dimension the embedding dimension
+     * @param documentIds the document IDs, one per vector
+     * @param vectors the normalized vectors laid out contiguously
+     */
+    private DocumentVectorIndex(int dimension, long[] documentIds, float[] vectors) {
+        this.dimension = dimension;
+        this.documentIds = documentIds;
+        this.vectors = vectors;
+    }
+    
+    /**
+     * Creates a new builder for an index.
+     *
+     * @return a new builder
+     */
+    @NotNull
+    public static Builder builder() {
+        return new Builder();
+    }
+    
+    /**
+     * Finds the most similar documents to the query embedding.
+     *
+     * <p>Scores are cosine similarities. Only documents scoring at or above the
+     * threshold are returned, ordered by descending score.</p>
+     *
+     * @param queryEmbedding the query embedding
+     * @param maxResults the maximum number of results to return
+     * @param similarityThreshold the minimum similarity score
+     * @return the top scoring documents, best first
+     * @throws IllegalArgumentException if maxResults is not positive or the query dimension does not match the index
+     */
+    @Override
+    @NotNull
+    public List<ScoredDocument> search(@NotNull float[] queryEmbedding, int maxResults, double similarityThreshold) {
+        if (maxResults <= 0) {
+            throw new IllegalArgumentException("Max results must be positive");
+        }
+        if (size() == 0) {
+            return Collections.emptyList();
+        }
+        if (queryEmbedding.length != dimension) {
+            throw new IllegalArgumentException("Embeddings must have same dimensions");
+        }
+        
+        float[] query = normalize(queryEmbedding);
+        if (query == null) {
+            return Collections.emptyList();
+        }
+        
+        // Min-heap on score so the weakest of the current top-K is evicted first
+        PriorityQueue<ScoredDocument> topResults = new PriorityQueue<>(maxResults + 1,
+            (a, b) -> Double.compare(a.getSimilarityScore(), b.getSimilarityScore()));
+        
+        for (int doc = 0, offset = 0; doc < documentIds.length; doc++, offset += dimension) {
+            double score = dotProduct(query, vectors, offset, dimension);
+            if (score < similarityThreshold) {
+                continue;
+            }
+            if (topResults.size() < maxResults) {
+                topResults.add(new ScoredDocument(documentIds[doc], score));
+            } else if (score > topResults.peek().getSimilarityScore()) {
+                topResults.poll();
+                topResults.add(new ScoredDocument(documentIds[doc], score));
+            }
+        }
+        
+        List<ScoredDocument> results = new ArrayList<>(topResults);
+        results.sort((a, b) -> Double.compare(b.getSimilarityScore(), a.getSimilarityScore()));
+        return results;
+    }
+    
+    /**
+     * Gets the number of indexed documents.
+     *
+     * @return the document count
+     */
+    @Override
+    public int size() {
+        return documentIds.length;
+    }
+    
+    /**
+     * Gets the embedding dimension of this index.
+     *
+     * @return the embedding dimension, or 0 if the index is empty
+     */
+    @Override
+    public int getDimension() {
+        return dimension;
+    }
+    
+    /**
+     * Gets the document ID stored at the given position.
+     *
+     * @param ordinal the position of the document in the index
+     * @return the document ID
+     */
+    long getDocumentId(int ordinal) {
+        return documentIds[ordinal];
+    }
+    
+    /**
+     * Computes the cosine similarity between a normalized query and the document at the given position.
+     *
+     * @param normalizedQuery the L2-normalized query vector
+     * @param ordinal the position of the document in the index
+     * @return the cosine similarity
+     */
+    double similarity(float[] normalizedQuery, int ordinal) {
+        return dotProduct(normalizedQuery, vectors, ordinal * dimension, dimension);
+    }
+    
+    /**
+     * Computes the cosine similarity between two indexed documents.
+     *
+     * @param firstOrdinal the position of the first document
+     * @param secondOrdinal the position of the second document
+     * @return the cosine similarity
+     */
+    double similarity(int firstOrdinal, int secondOrdinal) {
+        int first = firstOrdinal * dimension;
+        int second = secondOrdinal * dimension;
+        double sum = 0.0;
+        for (int i = 0; i < dimension; i++) {
+            sum += vectors[first + i] * vectors[second + i];
+        }
+        return sum;
+    }
+    
+    /**
+     * Computes the dot product of a query vector and a vector stored in a contiguous array.
+     *
+     * @param query the query vector
+     * @param data the contiguous vector storage
+     * @param offset the offset of the stored vector
+     * @param length the vector length
+     * @return the dot product
+     */
+    static double dotProduct(float[] query, float[] data, int offset, int length) {
+        double sum = 0.0;
+        for (int i = 0; i < length; i++) {
+            sum += query[i] * data[offset + i];
+        }
+        return sum;
+    }
+    
+    /**
+     * Returns an L2-normalized copy of the vector.
+     *
+     * @param vector the vector to normalize
+     * @return the normalized copy, or null if the vector has zero norm
+     */
+    static float[] normalize(@NotNull float[] vector) {
+        double norm = 0.0;
+        for (float value : vector) {
+            norm += value * value;
+        }
+        if (norm == 0.0) {
+            return null;
+        }
+        
+        float scale = (float) (1.0 / Math.sqrt(norm));
+        float[] normalized = new float[vector.length];
+        for (int i = 0; i < vector.length; i++) {
+            normalized[i] = vector[i] * scale;
+        }
+        return normalized;
+    }
+    
+    /**
+     * Builder that accumulates embeddings and packs them into a contiguous index.
+     */
+    public static final class Builder {
+        
+        private int dimension;
+        private int count;
+        private long[] documentIds = new long[64];
+        private float[] vectors = new float[0];
+        
+        private Builder() {
+        }
+        
+        /**
+         * Adds a document embedding to the index.
+         *
+         * <p>The first embedding fixes the index dimension. Embeddings with a different
+         * dimension or a zero norm are skipped.</p>
+         *
+         * @param documentId the document ID
+         * @param embedding the document embedding
+         * @return this builder
+         */
+        @NotNull
+        public Builder add(long documentId, @NotNull float[] embedding) {
+            if (embedding.length == 0) {
+                return this;
+            }
+            if (count == 0 && dimension == 0) {
+                dimension = embedding.length;
+                vectors = new float[documentIds.length * dimension];
+            } else if (embedding.length != dimension) {
+                LOG.warn("Skipping document " + documentId + " with embedding dimension " + embedding.length
+                    + " (index dimension is " + dimension + ")");
+                return this;
+            }
+            
+            float[] normalized = normalize(embedding);
+            if (normalized == null) {
+                LOG.debug("Skipping document " + documentId + " with zero-norm embedding");
+                return this;
+            }
+            
+            if (count == documentIds.length) {
+                int newCapacity = documentIds.length * 2;
+                documentIds = Arrays.copyOf(documentIds, newCapacity);
+                vectors = Arrays.copyOf(vectors, newCapacity * dimension);
+            }
+            
+            documentIds[count] = documentId;
+            System.arraycopy(normalized, 0, vectors, count * dimension, dimension);
+            count++;
+            return this;
+        }
+        
+        /**
+         * Adds a stored embedding BLOB to the index, decoding it straight into the
+         * contiguous vector array.
+         *
+         * <p>Uses the norm from the BLOB header when present, so the vector is normalized
+         * in place without an intermediate array. Embeddings with a different dimension or
+         * a zero norm are skipped.</p>
+         *
+         * @param documentId the document ID
+         * @param blob the embedding BLOB in {@link EmbeddingCodec} format
+         * @return this builder
+         */
+        @NotNull
+        public Builder addEncoded(long documentId, @NotNull byte[] blob) {
+            int embeddingDimension = EmbeddingCodec.getDimension(blob);
+            if (embeddingDimension == 0) {
+                return this;
+            }
+            if (count == 0 && dimension == 0) {
+                dimension = embeddingDimension;
+                vectors = new float[documentIds.length * dimension];
+            } else if (embeddingDimension != dimension) {
+                LOG.warn("Skipping document " + documentId + " with embedding dimension " + embeddingDimension
+                    + " (index dimension is " + dimension + ")");
+                return this;
+            }
+            
+            if (count == documentIds.length) {
+                int newCapacity = documentIds.length * 2;
+                documentIds = Arrays.copyOf(documentIds, newCapacity);
+                vectors = Arrays.copyOf(vectors, newCapacity * dimension);
+            }
+            
+            int offset = count * dimension;
+            EmbeddingCodec.decodeInto(blob, vectors, offset);
+            double norm = EmbeddingCodec.getNorm(blob);
+            if (norm < 0) {
+                norm = 0.0;
+                for (int i = offset; i < offset + dimension; i++) {
+                    norm += vectors[i] * vectors[i];
+                }
+                norm = Math.sqrt(norm);
+            }
+            if (norm == 0.0) {
+                LOG.debug("Skipping document " + documentId + " with zero-norm embedding");
+                return this;
+            }
+            
+            float scale = (float) (1.0 / norm);
+            for (int i = offset; i < offset + dimension; i++) {
+                vectors[i] *= scale;
+            }
+            documentIds[count] = documentId;
+            count++;
+            return this;
+        }
+        
+        /**
+         * Builds the immutable index.
+         *
+         * @return the built index
+         */
+        @NotNull
+        public DocumentVectorIndex build() {
+            return new DocumentVectorIndex(
+                dimension,
+                Arrays.copyOf(documentIds, count),
+                Arrays.copyOf(vectors, count * dimension)
+            );
+        }
+    }
+    
+    /**
+     * A document ID paired with its similarity score.
+     */
+    public static final class ScoredDocument {
+        private final long documentId;
+        private final double similarityScore;
+        
+        public ScoredDocument(long documentId, double similarityScore) {
+            this.documentId = documentId;
+            this.similarityScore = similarityScore;
+        }
+        
+        public long getDocumentId() {
+            return documentId;
+        }
+        
+        public double getSimilarityScore() {
+            return similarityScore;
+        }
+    }
+}
@@ -0,0 +1,308 @@
+package com.trace.ai.services;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Binary storage format for embedding BLOBs.
+ *
+ * <p>Embeddings are stored little-endian behind a 16-byte header:</p>
+ * <pre>
+ * offset  size  field
+ *  0      3     magic "EMB"
+ *  3      1     format version (1)
+ *  4      1     encoding id (0 = float32, 1 = float16, 2 = int8)
+ *  5      3     reserved (0)
+ *  8      4     dimension (int32)
+ * 12      4     L2 norm of the original vector (float32)
+ * 16      ...   payload: float32 values, float16 values, or an int8 scale (float32) followed by int8 values
+ * </pre>
+ *
+ * <p>Float32 payloads are decoded with a single bulk {@link java.nio.FloatBuffer#get(float[], int, int)}
+ * call, so the search path never converts values one by one. The stored norm lets callers
+ * normalize a vector without a second pass over it.</p>
+ *
+ * <p>BLOBs written before the format existed (headerless big-endian float32) are still
+ * decoded, so existing databases keep working until they are migrated.</p>
+ *
+ * @author Alex Ibasitas
+ * @since 1.0.0
+ */
+public final class EmbeddingCodec {
+    
+    public static final int FORMAT_VERSION = 1;
+    public static final int HEADER_SIZE = 16;
+    
+    private static final byte[] MAGIC = {'E', 'M', 'B'};
+    private static final int ENCODING_OFFSET = 4;
+    private static final int DIMENSION_OFFSET = 8;
+    private static final int NORM_OFFSET = 12;
+    
+    /**
+     * Value encoding of an embedding payload.
+     */
+    public enum Encoding {
+        FLOAT32(0, "float32", 4),
+        FLOAT16(1, "float16", 2),
+        INT8(2, "int8", 1);
+        
+        private final int code;
+        private final String id;
+        private final int bytesPerValue;
+        
+        Encoding(int code, String id, int bytesPerValue) {
+            this.code = code;
+            this.id = id;
+            this.bytesPerValue = bytesPerValue;
+        }
+        
+        /**
+         * Gets the identifier used on the command line.
+         *
+         * @return the encoding identifier
+         */
+        @NotNull
+        public String getId() {
+            return id;
+        }
+        
+        /**
+         * Gets the encoding for an identifier.
+         *
+         * @param id the encoding identifier
+         * @return the matching encoding, or {@link #FLOAT32} if the identifier is unknown
+         */
+        @NotNull
+        public static Encoding fromId(@Nullable String id) {
+            for (Encoding encoding : values()) {
+                if (encoding.id.equalsIgnoreCase(id)) {
+                    return encoding;
+                }
+            }
+            return FLOAT32;
+        }
+        
+        private int payloadSize(int dimension) {
+            return (this == INT8 ? 4 : 0) + dimension * bytesPerValue;
+        }
+        
+        @Nullable
+        private static Encoding fromCode(int code) {
+            for (Encoding encoding : values()) {
+                if (encoding.code == code) {
+                    return encoding;
+                }
+            }
+            return null;
+        }
+    }
+    
+    /**
+     * Private constructor to prevent instantiation of utility class.
+     */
+    private EmbeddingCodec() {
+        throw new UnsupportedOperationException("Utility class cannot be instantiated");
+    }
+    
+    /**
+     * Encodes an embedding in the current storage format.
+     *
+     * @param embedding the embedding to encode
+     * @param encoding the value encoding
+     * @return the encoded BLOB
+     * @throws IllegalArgumentException if the embedding is null or empty
+     */
+    @NotNull
+    public static byte[] encode(@NotNull float[] embedding, @NotNull Encoding encoding) {
+        if (embedding == null || embedding.length == 0) {
+            throw new IllegalArgumentException("Embedding cannot be null or empty");
+        }
+        
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + encoding.payloadSize(embedding.length))
+            .order(ByteOrder.LITTLE_ENDIAN);
+        buffer.put(MAGIC).put((byte) FORMAT_VERSION).put((byte) encoding.code).put(new byte[3]);
+        buffer.putInt(embedding.length);
+        buffer.putFloat(norm(embedding));
+        
+        switch (encoding) {
+            case FLOAT32 -> buffer.asFloatBuffer().put(embedding);
+            case FLOAT16 -> {
+                for (float value : embedding) {
+                    buffer.putShort(Float.floatToFloat16(value));
+                }
+            }
+            case INT8 -> {
+                float scale = int8Scale(embedding);
+                buffer.putFloat(scale);
+                for (float value : embedding) {
+                    buffer.put(quantize(value, scale));
+                }
+            }
+        }
+        return buffer.array();
+    }
+    
+    /**
+     * Decodes an embedding BLOB.
+     *
+     * @param blob the stored BLOB, in the current or the legacy format
+     * @return the decoded embedding
+     * @throws IllegalArgumentException if the BLOB is not a valid embedding
+     */
+    @NotNull
+    public static float[] decode(@NotNull byte[] blob) {
+        float[] embedding = new float[getDimension(blob)];
+        decodeInto(blob, embedding, 0);
+        return embedding;
+    }
+    
+    /**
+     * Decodes an embedding BLOB directly into a larger array, avoiding an intermediate copy.
+     *
+     * @param blob the stored BLOB, in the current or the legacy format
+     * @param target the array to write the values to
+     * @param offset the position of the first value in target
+     * @return the dimension of the embedding
+     * @throws IllegalArgumentException if the BLOB is not a valid embedding or does not fit
+     */
+    public static int decodeInto(@NotNull byte[] blob, @NotNull float[] target, int offset) {
+        int dimension = getDimension(blob);
+        if (offset < 0 || offset + dimension > target.length) {
+            throw new IllegalArgumentException("Target array too small for embedding of dimension " + dimension);
+        }
+        
+        Encoding encoding = getEncoding(blob);
+        if (encoding == null) {
+            // Legacy headerless big-endian float32
+            ByteBuffer.wrap(blob).asFloatBuffer().get(target, offset, dimension);
+            return dimension;
+        }
+        
+        ByteBuffer payload = ByteBuffer.wrap(blob, HEADER_SIZE, blob.length - HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        switch (encoding) {
+            case FLOAT32 -> payload.asFloatBuffer().get(target, offset, dimension);
+            case FLOAT16 -> {
+                for (int i = 0; i < dimension; i++) {
+                    target[offset + i] = Float.float16ToFloat(payload.getShort());
+                }
+            }
+            case INT8 -> {
+                float scale = payload.getFloat();
+                for (int i = 0; i < dimension; i++) {
+                    target[offset + i] = payload.get() * scale;
+                }
+            }
+        }
+        return dimension;
+    }
+    
+    /**
+     * Gets the dimension of an embedding BLOB without decoding it.
+     *
+     * @param blob the stored BLOB
+     * @return the embedding dimension
+     * @throws IllegalArgumentException if the BLOB is not a valid embedding
+     */
+    public static int getDimension(@NotNull byte[] blob) {
+        if (getEncoding(blob) != null) {
+            return readInt(blob, DIMENSION_OFFSET);
+        }
+        if (blob.length % 4 != 0) {
+            throw new IllegalArgumentException("Invalid embedding BLOB of " + blob.length + " bytes");
+        }
+        return blob.length / 4;
+    }
+    
+    /**
+     * Gets the L2 norm of the original embedding from the header.
+     *
+     * @param blob the stored BLOB
+     * @return the stored norm, or -1 for legacy BLOBs that carry no header
+     */
+    public static float getNorm(@NotNull byte[] blob) {
+        if (getEncoding(blob) == null) {
+            return -1f;
+        }
+        return Float.intBitsToFloat(readInt(blob, NORM_OFFSET));
+    }
+    
+    /**
+     * Gets the encoding of an embedding BLOB.
+     *
+     * @param blob the stored BLOB
+     * @return the encoding, or null for legacy headerless BLOBs
+     */
+    @Nullable
+    public static Encoding getEncoding(@NotNull byte[] blob) {
+        if (blob.length < HEADER_SIZE || blob[0] != MAGIC[0] || blob[1] != MAGIC[1] || blob[2] != MAGIC[2]
+                || blob[3] != FORMAT_VERSION) {
+            return null;
+        }
+        Encoding encoding = Encoding.fromCode(blob[ENCODING_OFFSET]);
+        // A legacy BLOB could start with the magic bytes by chance; the exact size rules that out
+        if (encoding == null || blob.length != HEADER_SIZE + encoding.payloadSize(readInt(blob, DIMENSION_OFFSET))) {
+            return null;
+        }
+        return encoding;
+    }
+    
+    /**
+     * Checks whether a BLOB is in the legacy headerless format.
+     *
+     * @param blob the stored BLOB
+     * @return true if the BLOB needs migration
+     */
+    public static boolean isLegacy(@NotNull byte[] blob) {
+        return getEncoding(blob) == null;
+    }
+    
+    /**
+     * Computes the L2 norm of a vector.
+     *
+     * @param vector the vector
+     * @return the norm
+     */
+    public static float norm(@NotNull float[] vector) {
+        double sum = 0.0;
+        for (float value : vector) {
+            sum += value * value;
+        }
+        return (float) Math.sqrt(sum);
+    }
+    
+    /**
+     * Computes the symmetric int8 scale factor of a vector so that its largest
+     * absolute value maps to 127.
+     *
+     * @param vector the vector
+     * @return the scale factor, or 1 for an all-zero vector
+     */
+    public static float int8Scale(@NotNull float[] vector) {
+        float maxAbs = 0f;
+        for (float value : vector) {
+            maxAbs = Math.max(maxAbs, Math.abs(value));
+        }
+        return maxAbs == 0f ? 1f : maxAbs / 127f;
+    }
+    
+    /**
+     * Quantizes a value to int8 with the given scale factor.
+     *
+     * @param value the value
+     * @param scale the scale factor from {@link #int8Scale(float[])}
+     * @return the quantized value
+     */
+    public static byte quantize(float value, float scale) {
+        return (byte) Math.max(-127, Math.min(127, Math.round(value / scale)));
+    }
+    
+    private static int readInt(byte[] blob, int offset) {
+        return (blob[offset] & 0xFF)
+            | (blob[offset + 1] & 0xFF) << 8
+            | (blob[offset + 2] & 0xFF) << 16
+            | (blob[offset + 3] & 0xFF) << 24;
+    }
+}
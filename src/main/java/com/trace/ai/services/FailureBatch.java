@@ -0,0 +1,124 @@
+package com.trace.ai.services;
+
+import com.intellij.openapi.diagnostic.Logger;
+import com.trace.test.models.FailureInfo;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Collects every failure of a test run and groups them by root cause.
+ *
+ * <p>When many scenarios fail for one reason, analyzing each of them spends a model call
+ * per scenario on the same answer. The batch groups failures by their
+ * {@link FailureFingerprint#getClusterKey() cluster key}, so that one consolidated prompt
+ * can be sent per root cause instead.</p>
+ *
+ * <p>The batch is thread-safe. It holds at most {@link #DEFAULT_MAX_FAILURES} failures;
+ * later failures of a very large run are counted but not kept.</p>
+ *
+ * @author Alex Ibasitas
+ * @since 1.0.0
+ */
+public final class FailureBatch {
+    
+    private static final Logger LOG = Logger.getInstance(FailureBatch.class);
+    
+    // Far more than anyone reads through, and small enough to keep in memory for a run
+    public static final int DEFAULT_MAX_FAILURES = 500;
+    
+    private final int maxFailures;
+    
+    // Guarded by this, in the order the first failure of each cluster was collected
+    private final Map<String, List<FailureInfo>> failuresByKey = new LinkedHashMap<>();
+    private int collectedCount;
+    private int droppedCount;
+    
+    /**
+     * Creates a batch that holds at most {@link #DEFAULT_MAX_FAILURES} failures.
+     */
+    public FailureBatch() {
+        this(DEFAULT_MAX_FAILURES);
+    }
+    
+    /**
+     * Creates a batch with a custom limit.
+     *
+     * @param maxFailures the maximum number of failures kept
+     * @throws IllegalArgumentException if maxFailures is not positive
+     */
+    FailureBatch(int maxFailures) {
+        if (maxFailures <= 0) {
+            throw new IllegalArgumentException("Max failures must be positive");
+        }
+        this.maxFailures = maxFailures;
+    }
+    
+    /**
+     * Adds a failure to the cluster of its root cause.
+     *
+     * @param failureInfo the failure
+     */
+    public void add(@NotNull FailureInfo failureInfo) {
+        String key = FailureFingerprint.of(failureInfo).getClusterKey();
+        synchronized (this) {
+            if (collectedCount >= maxFailures) {
+                droppedCount++;
+                if (droppedCount == 1) {
+                    LOG.warn("Failure batch is full, further failures of this run are not analyzed");
+                }
+                return;
+            }
+            failuresByKey.computeIfAbsent(key, k -> new ArrayList<>()).add(failureInfo);
+            collectedCount++;
+        }
+    }
+    
+    /**
+     * Gets the clusters collected so far, largest first. Clusters of equal size keep the
+     * order in which their first failure was collected.
+     *
+     * @return the clusters
+     */
+    @NotNull
+    public synchronized List<FailureCluster> getClusters() {
+        List<FailureCluster> clusters = new ArrayList<>(failuresByKey.size());
+        for (Map.Entry<String, List<FailureInfo>> entry : failuresByKey.entrySet()) {
+            clusters.add(new FailureCluster(entry.getKey(), entry.getValue()));
+        }
+        // The sort is stable, so ties stay in collection order
+        clusters.sort(Comparator.comparingInt(FailureCluster::size).reversed());
+        return clusters;
+    }
+    
+    /**
+     * Gets the number of failures kept in the batch.
+     *
+     * @return the number of failures
+     */
+    public synchronized int size() {
+        return collectedCount;
+    }
+    
+    /**
+     * Gets the number of failures that were not kept because the batch was full.
+     *
+     * @return the number of dropped failures
+     */
+    public synchronized int getDroppedCount() {
+        return droppedCount;
+    }
+    
+    /**
+     * Removes all failures.
+     */
+    public synchronized void clear() {
+        failuresByKey.clear();
+        collectedCount = 0;
+        droppedCount = 0;
+    }
+}
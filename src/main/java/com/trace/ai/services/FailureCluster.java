@@ -0,0 +1,101 @@
+package com.trace.ai.services;
+
+import com.trace.test.models.FailureInfo;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Failures of one test run that share a root cause.
+ *
+ * <p>All failures of a cluster have the same {@link FailureFingerprint#getClusterKey() cluster key}:
+ * the same exception type and top stack frames at the same step. The first failure
+ * collected represents the cluster in the consolidated prompt.</p>
+ *
+ * @author Alex Ibasitas
+ * @since 1.0.0
+ */
+public final class FailureCluster {
+    
+    private final String key;
+    private final List<FailureInfo> failures;
+    
+    /**
+     * Creates a cluster.
+     *
+     * @param key the cluster key shared by the failures
+     * @param failures the failures in the order they were collected, at least one
+     * @throws IllegalArgumentException if failures is empty
+     */
+    FailureCluster(@NotNull String key, @NotNull List<FailureInfo> failures) {
+        if (failures.isEmpty()) {
+            throw new IllegalArgumentException("Failures cannot be empty");
+        }
+        this.key = key;
+        this.failures = Collections.unmodifiableList(new ArrayList<>(failures));
+    }
+    
+    /**
+     * Gets the cluster key shared by the failures.
+     *
+     * @return the cluster key
+     */
+    @NotNull
+    public String getKey() {
+        return key;
+    }
+    
+    /**
+     * Gets the failure that represents the cluster, which is the first one collected.
+     *
+     * @return the representative failure
+     */
+    @NotNull
+    public FailureInfo getRepresentative() {
+        return failures.get(0);
+    }
+    
+    /**
+     * Gets all failures of the cluster in the order they were collected.
+     *
+     * @return an unmodifiable list of the failures
+     */
+    @NotNull
+    public List<FailureInfo> getFailures() {
+        return failures;
+    }
+    
+    /**
+     * Gets the number of failures in the cluster.
+     *
+     * @return the number of failures
+     */
+    public int size() {
+        return failures.size();
+    }
+    
+    /**
+     * Checks if the cluster contains the given failure instance.
+     *
+     * @param failureInfo the failure to look for
+     * @return true if the failure was collected into this cluster
+     */
+    public boolean contains(@NotNull FailureInfo failureInfo) {
+        for (FailureInfo failure : failures) {
+            if (failure == failureInfo) {
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    @Override
+    public String toString() {
+        return "FailureCluster{" +
+                "size=" + failures.size() +
+                ", representative='" + getRepresentative().getScenarioName() + '\'' +
+                '}';
+    }
+}
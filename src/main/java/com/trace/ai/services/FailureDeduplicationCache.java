@@ -0,0 +1,211 @@
+package com.trace.ai.services;
+
+import com.trace.ai.models.AIAnalysisResult;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.LongSupplier;
+
+/**
+ * Remembers analyses of recent failures so that near-identical failures can reuse them.
+ *
+ * <p>Beyond exact prompt caching, re-runs of a flaky scenario usually fail with text that
+ * differs only in timestamps, IDs or ports. Each analysed failure is stored with its
+ * {@link FailureFingerprint} and the embedding of its masked text. A new failure reuses a
+ * stored analysis when:</p>
+ * <ul>
+ *   <li>Its fingerprint signature is identical, or</li>
+ *   <li>It has the same exception type and the cosine similarity of the embeddings is at
+ *       least the similarity threshold</li>
+ * </ul>
+ *
+ * <p>Analyses are only reused for the same analysis mode. The cache holds a bounded
+ * number of entries, evicts the least recently used one and drops entries after their
+ * time to live.</p>
+ *
+ * @author Alex Ibasitas
+ * @since 1.0.0
+ */
+public final class FailureDeduplicationCache {
+    
+    public static final int DEFAULT_MAX_ENTRIES = 50;
+    public static final Duration DEFAULT_TTL = Duration.ofHours(8);
+    
+    // Failures above this similarity differ only in details that do not change the analysis
+    public static final double DEFAULT_SIMILARITY_THRESHOLD = 0.97;
+    
+    private final int maxEntries;
+    private final long ttlMillis;
+    private final double similarityThreshold;
+    private final LongSupplier clock;
+    private final Map<String, Entry> entries;
+    
+    /**
+     * Creates a cache with the default size, time to live and similarity threshold.
+     */
+    public FailureDeduplicationCache() {
+        this(DEFAULT_MAX_ENTRIES, DEFAULT_TTL, DEFAULT_SIMILARITY_THRESHOLD, System::currentTimeMillis);
+    }
+    
+    /**
+     * Creates a cache with an explicit clock, used by tests to control expiry.
+     *
+     * @param maxEntries the maximum number of remembered failures
+     * @param ttl how long an analysis may be reused
+     * @param similarityThreshold the minimum cosine similarity of similar failures
+     * @param clock the time source in milliseconds
+     * @throws IllegalArgumentException if maxEntries or ttl are not positive or the threshold is not in (0, 1]
+     */
+    FailureDeduplicationCache(int maxEntries, @NotNull Duration ttl, double similarityThreshold,
+                              @NotNull LongSupplier clock) {
+        if (maxEntries <= 0) {
+            throw new IllegalArgumentException("Max entries must be positive");
+        }
+        if (ttl.isNegative() || ttl.isZero()) {
+            throw new IllegalArgumentException("TTL must be positive");
+        }
+        if (similarityThreshold <= 0 || similarityThreshold > 1) {
+            throw new IllegalArgumentException("Similarity threshold must be in (0, 1]");
+        }
+        
+        this.maxEntries = maxEntries;
+        this.ttlMillis = ttl.toMillis();
+        this.similarityThreshold = similarityThreshold;
+        this.clock = clock;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > FailureDeduplicationCache.this.maxEntries;
+            }
+        };
+    }
+    
+    /**
+     * Finds the analysis of a failure with the same fingerprint signature.
+     *
+     * <p>This needs no embedding, so it is checked before one is requested.</p>
+     *
+     * @param fingerprint the fingerprint of the new failure
+     * @param mode the analysis mode
+     * @return the stored analysis, or null if there is none
+     */
+    @Nullable
+    public synchronized AIAnalysisResult findExact(@NotNull FailureFingerprint fingerprint, @NotNull AnalysisMode mode) {
+        String key = createKey(fingerprint.getSignature(), mode);
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            return null;
+        }
+        if (isExpired(entry, clock.getAsLong())) {
+            entries.remove(key);
+            return null;
+        }
+        return entry.result;
+    }
+    
+    /**
+     * Finds the analysis of the most similar recent failure.
+     *
+     * @param fingerprint the fingerprint of the new failure
+     * @param embedding the embedding of {@link FailureFingerprint#getText()}, or null if none is available
+     * @param mode the analysis mode
+     * @return the stored analysis, or null if no failure is similar enough
+     */
+    @Nullable
+    public synchronized AIAnalysisResult findSimilar(@NotNull FailureFingerprint fingerprint,
+                                                     @Nullable float[] embedding,
+                                                     @NotNull AnalysisMode mode) {
+        AIAnalysisResult exact = findExact(fingerprint, mode);
+        if (exact != null || embedding == null) {
+            return exact;
+        }
+        
+        long now = clock.getAsLong();
+        String bestKey = null;
+        double bestSimilarity = similarityThreshold;
+        for (Map.Entry<String, Entry> candidate : new ArrayList<>(entries.entrySet())) {
+            Entry entry = candidate.getValue();
+            if (isExpired(entry, now)) {
+                entries.remove(candidate.getKey());
+                continue;
+            }
+            if (entry.mode != mode
+                    || entry.embedding == null
+                    || entry.embedding.length != embedding.length
+                    || !entry.exceptionType.equals(fingerprint.getExceptionType())) {
+                continue;
+            }
+            double similarity = DocumentDatabaseService.cosineSimilarity(embedding, entry.embedding);
+            if (similarity >= bestSimilarity) {
+                bestSimilarity = similarity;
+                bestKey = candidate.getKey();
+            }
+        }
+        // Reading through the map marks the match as recently used
+        return bestKey != null ? entries.get(bestKey).result : null;
+    }
+    
+    /**
+     * Remembers the analysis of a failure.
+     *
+     * @param fingerprint the fingerprint of the failure
+     * @param embedding the embedding of {@link FailureFingerprint#getText()}, or null if none is available
+     * @param mode the analysis mode
+     * @param result the analysis to reuse for similar failures
+     */
+    public synchronized void put(@NotNull FailureFingerprint fingerprint, @Nullable float[] embedding,
+                                 @NotNull AnalysisMode mode, @NotNull AIAnalysisResult result) {
+        entries.put(createKey(fingerprint.getSignature(), mode), new Entry(
+            fingerprint.getExceptionType(), embedding != null ? embedding.clone() : null, mode, result,
+            clock.getAsLong()));
+    }
+    
+    /**
+     * Gets the number of remembered failures.
+     *
+     * @return the entry count
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+    
+    /**
+     * Forgets all remembered failures.
+     */
+    public synchronized void clear() {
+        entries.clear();
+    }
+    
+    private boolean isExpired(Entry entry, long now) {
+        return now - entry.createdAt >= ttlMillis;
+    }
+    
+    private static String createKey(String signature, AnalysisMode mode) {
+        return mode.name() + ":" + signature;
+    }
+    
+    /**
+     * A remembered failure with its analysis.
+     */
+    private static final class Entry {
+        private final String exceptionType;
+        private final float[] embedding;
+        private final AnalysisMode mode;
+        private final AIAnalysisResult result;
+        private final long createdAt;
+        
+        private Entry(String exceptionType, float[] embedding, AnalysisMode mode,
+                      AIAnalysisResult result, long createdAt) {
+            this.exceptionType = exceptionType;
+            this.embedding = embedding;
+            this.mode = mode;
+            this.result = result;
+            this.createdAt = createdAt;
+        }
+    }
+}
@@ -0,0 +1,207 @@
+package com.trace.ai.services;
+
+import com.trace.test.models.FailureInfo;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Fingerprint of a test failure that ignores values which change from run to run.
+ *
+ * <p>Two runs of the same flaky scenario rarely fail with identical text: timestamps,
+ * generated IDs, ports and object hashes differ. The fingerprint masks such values in the
+ * error message and keeps only the exception type and the top frames of the stack trace,
+ * without line numbers. It consists of:</p>
+ * <ul>
+ *   <li>A signature hash, equal for failures that differ only in masked values. Numbers
+ *       in the values of an assertion, such as {@code expected 200 but was 500}, are not
+ *       masked here, since a different value is a different failure.</li>
+ *   <li>The exception type, which similar failures must share</li>
+ *   <li>The masked failure text, which is embedded to find similar failures</li>
+ *   <li>A cluster key, equal for failures with the same stack trace at the same step,
+ *       whatever their messages and step arguments</li>
+ * </ul>
+ *
+ * @author Alex Ibasitas
+ * @since 1.0.0
+ */
+public final class FailureFingerprint {
+    
+    // Enough frames to tell call sites apart without depending on deep framework frames
+    private static final int MAX_FRAMES = 5;
+    
+    private static final Pattern UUID = Pattern.compile(
+        "\\b[0-9a-fA-F]{8}-[0-9a-fA-F]{4}-[0-9a-fA-F]{4}-[0-9a-fA-F]{4}-[0-9a-fA-F]{12}\\b");
+    private static final Pattern TIMESTAMP = Pattern.compile(
+        "\\b\\d{4}-\\d{2}-\\d{2}(?:[T ]\\d{2}:\\d{2}(?::\\d{2}(?:[.,]\\d+)?)?(?:Z|[+-]\\d{2}:?\\d{2})?)?"
+            + "|\\b\\d{1,2}:\\d{2}:\\d{2}(?:[.,]\\d+)?\\b");
+    private static final Pattern HEX = Pattern.compile("\\b0x[0-9a-fA-F]+\\b|@[0-9a-fA-F]{4,}\\b|\\b[0-9a-fA-F]{16,}\\b");
+    private static final Pattern NUMBER = Pattern.compile("\\d+");
+    private static final Pattern FRAME_LOCATION = Pattern.compile("\\(.*\\)$");
+    private static final Pattern SYNTHETIC_NAME = Pattern.compile("\\$\\$Lambda[^.(]*|\\$\\d+");
+    private static final Pattern QUOTED = Pattern.compile("\"[^\"]*\"|'[^']*'");
+    private static final Pattern ASSERTED_VALUES = Pattern.compile("(?is)\\bexpected\\b(.*?)\\bbut\\b(.*)");
+    
+    private final String signature;
+    private final String exceptionType;
+    private final String text;
+    private final String clusterKey;
+    
+    private FailureFingerprint(@NotNull String signature, @NotNull String exceptionType, @NotNull String text,
+                               @NotNull String clusterKey) {
+        this.signature = signature;
+        this.exceptionType = exceptionType;
+        this.text = text;
+        this.clusterKey = clusterKey;
+    }
+    
+    /**
+     * Creates the fingerprint of a failure.
+     *
+     * @param failureInfo the failure
+     * @return the fingerprint
+     */
+    @NotNull
+    public static FailureFingerprint of(@NotNull FailureInfo failureInfo) {
+        String stackTrace = failureInfo.getStackTrace() != null ? failureInfo.getStackTrace() : "";
+        String exceptionType = "";
+        String stackTraceMessage = "";
+        List<String> frames = new ArrayList<>();
+        for (String rawLine : stackTrace.split("\\R")) {
+            String line = rawLine.trim();
+            if (line.isEmpty()) {
+                continue;
+            }
+            if (line.startsWith("at ")) {
+                if (frames.size() < MAX_FRAMES) {
+                    frames.add(normalizeFrame(line.substring(3)));
+                }
+            } else if (exceptionType.isEmpty() && frames.isEmpty()) {
+                int colon = line.indexOf(':');
+                exceptionType = colon >= 0 ? line.substring(0, colon).trim() : line;
+                stackTraceMessage = colon >= 0 ? line.substring(colon + 1) : "";
+            }
+        }
+        
+        String message = failureInfo.getErrorMessage() != null ? failureInfo.getErrorMessage() : stackTraceMessage;
+        String maskedMessage = normalizeMessage(message);
+        String step = failureInfo.getFailedStepText() != null
+            ? QueryEmbeddingCache.normalize(failureInfo.getFailedStepText())
+            : "";
+        
+        String text = QueryEmbeddingCache.normalize(step + "\n" + maskedMessage);
+        if (text.isEmpty() && failureInfo.getScenarioName() != null) {
+            text = QueryEmbeddingCache.normalize(failureInfo.getScenarioName());
+        }
+        String signature = QueryEmbeddingCache.sha256(exceptionType + "\n" + step + "\n" + maskedMessage
+            + "\n" + assertedValues(message) + "\n" + String.join("\n", frames));
+        // Scenario outline rows and data-driven steps differ only in their arguments
+        String stepShape = normalizeMessage(QUOTED.matcher(step).replaceAll("<s>"));
+        String clusterKey = QueryEmbeddingCache.sha256(
+            exceptionType + "\n" + stepShape + "\n" + String.join("\n", frames));
+        return new FailureFingerprint(signature, exceptionType, text, clusterKey);
+    }
+    
+    /**
+     * Masks values that change between runs of the same failure.
+     *
+     * <p>UUIDs, timestamps, hex values and object hashes, and finally any remaining
+     * numbers such as IDs, ports and durations are replaced by placeholders, and
+     * whitespace is collapsed.</p>
+     *
+     * @param message the error message, may be null
+     * @return the masked message
+     */
+    @NotNull
+    static String normalizeMessage(@Nullable String message) {
+        if (message == null) {
+            return "";
+        }
+        String masked = NUMBER.matcher(maskIdentifiers(message)).replaceAll("<n>");
+        return QueryEmbeddingCache.normalize(masked);
+    }
+    
+    /**
+     * Gets the expected and actual values of an assertion message, with identifiers and
+     * times masked but numbers kept.
+     *
+     * @param message the error message, may be null
+     * @return the asserted values, or an empty string if the message is not an assertion
+     */
+    @NotNull
+    static String assertedValues(@Nullable String message) {
+        if (message == null) {
+            return "";
+        }
+        Matcher matcher = ASSERTED_VALUES.matcher(message);
+        if (!matcher.find()) {
+            return "";
+        }
+        return QueryEmbeddingCache.normalize(maskIdentifiers(matcher.group(1)))
+            + " | " + QueryEmbeddingCache.normalize(maskIdentifiers(matcher.group(2)));
+    }
+    
+    private static String maskIdentifiers(String text) {
+        String masked = UUID.matcher(text).replaceAll("<uuid>");
+        masked = TIMESTAMP.matcher(masked).replaceAll("<time>");
+        return HEX.matcher(masked).replaceAll("<hex>");
+    }
+    
+    /**
+     * Reduces a stack frame to its method, without file, line number or synthetic class numbers.
+     *
+     * @param frame the frame text after "at "
+     * @return the normalized frame
+     */
+    @NotNull
+    private static String normalizeFrame(@NotNull String frame) {
+        String method = FRAME_LOCATION.matcher(frame.trim()).replaceAll("");
+        return SYNTHETIC_NAME.matcher(method).replaceAll("\\$");
+    }
+    
+    /**
+     * Gets the signature hash. Failures that differ only in masked values have the same signature.
+     *
+     * @return the signature hash
+     */
+    @NotNull
+    public String getSignature() {
+        return signature;
+    }
+    
+    /**
+     * Gets the exception type from the first line of the stack trace.
+     *
+     * @return the exception type, or an empty string if the stack trace has none
+     */
+    @NotNull
+    public String getExceptionType() {
+        return exceptionType;
+    }
+    
+    /**
+     * Gets the masked failure text, made of the failed step and the masked error message.
+     *
+     * @return the text to embed
+     */
+    @NotNull
+    public String getText() {
+        return text;
+    }
+    
+    /**
+     * Gets the cluster key. Failures with the same exception type and top stack frames at a
+     * step that differs only in quoted or numeric arguments share a cluster key, even when
+     * their error messages differ.
+     *
+     * @return the cluster key hash
+     */
+    @NotNull
+    public String getClusterKey() {
+        return clusterKey;
+    }
+}
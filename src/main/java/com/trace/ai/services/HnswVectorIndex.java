@@ -0,0 +1,506 @@
+package com.trace.ai.services;
+
+import com.intellij.openapi.diagnostic.Logger;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Random;
+import java.util.function.IntToDoubleFunction;
+
+/**
+ * Approximate nearest-neighbour vector search using a Hierarchical Navigable Small World graph.
+ *
+ * <p>The graph is layered on top of a {@link DocumentVectorIndex}, which owns the normalized
+ * vectors; the graph only stores neighbour lists per node and level. Searches descend greedily
+ * through the upper layers and run a beam search of width {@code efSearch} on the bottom layer,
+ * visiting a small fraction of the corpus instead of scanning every vector.</p>
+ *
+ * <p>Graphs can be persisted next to the document database with {@link #writeTo(OutputStream)}
+ * and loaded back with {@link #readFrom(InputStream, DocumentVectorIndex)}, which validates that
+ * the graph was built for the same documents in the same order.</p>
+ *
+ * @author Alex Ibasitas
+ * @since 1.0.0
+ */
+public final class HnswVectorIndex implements VectorSearchEngine {
+    
+    private static final Logger LOG = Logger.getInstance(HnswVectorIndex.class);
+    
+    // Graph construction defaults
+    public static final int DEFAULT_M = 16;
+    public static final int DEFAULT_EF_CONSTRUCTION = 100;
+    public static final int DEFAULT_EF_SEARCH = 64;
+    private static final int MAX_LEVEL_CAP = 16;
+    private static final long LEVEL_SEED = 42L;
+    
+    // Persisted graph format
+    private static final int FILE_MAGIC = 0x54484E57; // "THNW"
+    private static final int FILE_VERSION = 1;
+    
+    private static final int[] EMPTY_NEIGHBORS = new int[0];
+    
+    private final DocumentVectorIndex vectors;
+    private final int m;
+    private final int[][][] links;
+    private final int entryPoint;
+    private final int maxLevel;
+    private volatile int efSearch = DEFAULT_EF_SEARCH;
+    
+    private HnswVectorIndex(DocumentVectorIndex vectors, int m, int[][][] links, int entryPoint, int maxLevel) {
+        this.vectors = vectors;
+        this.m = m;
+        this.links = links;
+        this.entryPoint = entryPoint;
+        this.maxLevel = maxLevel;
+    }
+    
+    /**
+     * Builds an HNSW graph over an exact index using default parameters.
+     *
+     * @param vectors the exact index holding the normalized vectors
+     * @return the built graph index
+     */
+    @NotNull
+    public static HnswVectorIndex build(@NotNull DocumentVectorIndex vectors) {
+        return build(vectors, DEFAULT_M, DEFAULT_EF_CONSTRUCTION);
+    }
+    
+    /**
+     * Builds an HNSW graph over an exact index.
+     *
+     * @param vectors the exact index holding the normalized vectors
+     * @param m the maximum number of neighbours per node on upper layers (twice this on layer 0)
+     * @param efConstruction the beam width used while inserting nodes
+     * @return the built graph index
+     * @throws IllegalArgumentException if m or efConstruction are not positive
+     */
+    @NotNull
+    public static HnswVectorIndex build(@NotNull DocumentVectorIndex vectors, int m, int efConstruction) {
+        if (m <= 1) {
+            throw new IllegalArgumentException("M must be greater than 1");
+        }
+        if (efConstruction <= 0) {
+            throw new IllegalArgumentException("efConstruction must be positive");
+        }
+        
+        long startTime = System.currentTimeMillis();
+        HnswVectorIndex index = new GraphBuilder(vectors, m, efConstruction).build();
+        LOG.info("Built HNSW graph over " + vectors.size() + " documents in " +
+                 (System.currentTimeMillis() - startTime) + "ms (M=" + m + ", efConstruction=" + efConstruction + ")");
+        return index;
+    }
+    
+    @Override
+    @NotNull
+    public List<DocumentVectorIndex.ScoredDocument> search(@NotNull float[] queryEmbedding,
+                                                           int maxResults,
+                                                           double similarityThreshold) {
+        if (maxResults <= 0) {
+            throw new IllegalArgumentException("Max results must be positive");
+        }
+        if (size() == 0) {
+            return Collections.emptyList();
+        }
+        if (queryEmbedding.length != vectors.getDimension()) {
+            throw new IllegalArgumentException("Embeddings must have same dimensions");
+        }
+        
+        float[] query = DocumentVectorIndex.normalize(queryEmbedding);
+        if (query == null) {
+            return Collections.emptyList();
+        }
+        
+        IntToDoubleFunction score = node -> vectors.similarity(query, node);
+        NeighborLookup graph = new NeighborLookup() {
+            @Override
+            public int[] neighbors(int node, int level) {
+                return level < links[node].length ? links[node][level] : EMPTY_NEIGHBORS;
+            }
+            
+            @Override
+            public int degree(int node, int level) {
+                return level < links[node].length ? links[node][level].length : 0;
+            }
+        };
+        int nearest = entryPoint;
+        for (int level = maxLevel; level > 0; level--) {
+            nearest = searchLayer(graph, score, nearest, 1, level, size()).get(0).node;
+        }
+        List<Candidate> candidates = searchLayer(graph, score, nearest,
+            Math.max(efSearch, maxResults), 0, size());
+        
+        List<DocumentVectorIndex.ScoredDocument> results = new ArrayList<>(maxResults);
+        for (Candidate candidate : candidates) {
+            if (results.size() == maxResults || candidate.score < similarityThreshold) {
+                break;
+            }
+            results.add(new DocumentVectorIndex.ScoredDocument(vectors.getDocumentId(candidate.node), candidate.score));
+        }
+        return results;
+    }
+    
+    @Override
+    public int size() {
+        return vectors.size();
+    }
+    
+    @Override
+    public int getDimension() {
+        return vectors.getDimension();
+    }
+    
+    /**
+     * Sets the beam width used on the bottom layer during search.
+     *
+     * <p>Higher values raise recall at the cost of visiting more nodes.</p>
+     *
+     * @param efSearch the search beam width
+     * @throws IllegalArgumentException if efSearch is not positive
+     */
+    public void setEfSearch(int efSearch) {
+        if (efSearch <= 0) {
+            throw new IllegalArgumentException("efSearch must be positive");
+        }
+        this.efSearch = efSearch;
+    }
+    
+    /**
+     * Gets the beam width used on the bottom layer during search.
+     *
+     * @return the search beam width
+     */
+    public int getEfSearch() {
+        return efSearch;
+    }
+    
+    /**
+     * Writes the graph structure to a stream.
+     *
+     * <p>Only the graph is written; vectors stay in the document database.</p>
+     *
+     * @param outputStream the stream to write to (not closed by this method)
+     * @throws IOException if writing fails
+     */
+    public void writeTo(@NotNull OutputStream outputStream) throws IOException {
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(outputStream));
+        out.writeInt(FILE_MAGIC);
+        out.writeInt(FILE_VERSION);
+        out.writeInt(getDimension());
+        out.writeInt(size());
+        out.writeInt(m);
+        out.writeInt(maxLevel);
+        out.writeInt(entryPoint);
+        
+        for (int node = 0; node < size(); node++) {
+            out.writeLong(vectors.getDocumentId(node));
+            out.writeInt(links[node].length);
+            for (int[] neighbors : links[node]) {
+                out.writeInt(neighbors.length);
+                for (int neighbor : neighbors) {
+                    out.writeInt(neighbor);
+                }
+            }
+        }
+        out.flush();
+    }
+    
+    /**
+     * Reads a graph previously written by {@link #writeTo(OutputStream)}.
+     *
+     * @param inputStream the stream to read from (not closed by this method)
+     * @param vectors the exact index the graph was built for
+     * @return the loaded graph index
+     * @throws IOException if the stream is invalid or was built for different documents
+     */
+    @NotNull
+    public static HnswVectorIndex readFrom(@NotNull InputStream inputStream,
+                                           @NotNull DocumentVectorIndex vectors) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(inputStream));
+        if (in.readInt() != FILE_MAGIC) {
+            throw new IOException("Not an HNSW graph file");
+        }
+        int version = in.readInt();
+        if (version != FILE_VERSION) {
+            throw new IOException("Unsupported HNSW graph version: " + version);
+        }
+        
+        int dimension = in.readInt();
+        int size = in.readInt();
+        if (dimension != vectors.getDimension() || size != vectors.size()) {
+            throw new IOException("HNSW graph does not match the document index (" + size + "x" + dimension +
+                                  " vs " + vectors.size() + "x" + vectors.getDimension() + ")");
+        }
+        
+        int m = in.readInt();
+        int maxLevel = in.readInt();
+        int entryPoint = in.readInt();
+        if (size > 0 && (entryPoint < 0 || entryPoint >= size)) {
+            throw new IOException("Invalid HNSW entry point: " + entryPoint);
+        }
+        
+        int[][][] links = new int[size][][];
+        for (int node = 0; node < size; node++) {
+            if (in.readLong() != vectors.getDocumentId(node)) {
+                throw new IOException("HNSW graph was built for different documents");
+            }
+            int levels = in.readInt();
+            links[node] = new int[levels][];
+            for (int level = 0; level < levels; level++) {
+                int degree = in.readInt();
+                int[] neighbors = new int[degree];
+                for (int i = 0; i < degree; i++) {
+                    neighbors[i] = in.readInt();
+                    if (neighbors[i] < 0 || neighbors[i] >= size) {
+                        throw new IOException("Invalid HNSW neighbour reference: " + neighbors[i]);
+                    }
+                }
+                links[node][level] = neighbors;
+            }
+        }
+        
+        return new HnswVectorIndex(vectors, m, links, entryPoint, maxLevel);
+    }
+    
+    /**
+     * Runs a beam search on a single graph level.
+     *
+     * @param graph the neighbour lookup for the graph
+     * @param score the similarity of a node to the search target
+     * @param entry the node to start from
+     * @param ef the beam width
+     * @param level the graph level to search
+     * @param nodeCount the number of nodes in the graph
+     * @return the best nodes found, ordered by descending similarity
+     */
+    private static List<Candidate> searchLayer(NeighborLookup graph, IntToDoubleFunction score,
+                                               int entry, int ef, int level, int nodeCount) {
+        BitSet visited = new BitSet(nodeCount);
+        PriorityQueue<Candidate> frontier = new PriorityQueue<>((a, b) -> Double.compare(b.score, a.score));
+        PriorityQueue<Candidate> best = new PriorityQueue<>((a, b) -> Double.compare(a.score, b.score));
+        
+        Candidate start = new Candidate(entry, score.applyAsDouble(entry));
+        visited.set(entry);
+        frontier.add(start);
+        best.add(start);
+        
+        while (!frontier.isEmpty()) {
+            Candidate current = frontier.poll();
+            if (best.size() >= ef && current.score < best.peek().score) {
+                break;
+            }
+            
+            int[] neighbors = graph.neighbors(current.node, level);
+            int degree = graph.degree(current.node, level);
+            for (int i = 0; i < degree; i++) {
+                int neighbor = neighbors[i];
+                if (visited.get(neighbor)) {
+                    continue;
+                }
+                visited.set(neighbor);
+                
+                double neighborScore = score.applyAsDouble(neighbor);
+                if (best.size() < ef || neighborScore > best.peek().score) {
+                    Candidate candidate = new Candidate(neighbor, neighborScore);
+                    frontier.add(candidate);
+                    best.add(candidate);
+                    if (best.size() > ef) {
+                        best.poll();
+                    }
+                }
+            }
+        }
+        
+        List<Candidate> results = new ArrayList<>(best);
+        results.sort((a, b) -> Double.compare(b.score, a.score));
+        return results;
+    }
+    
+    /**
+     * Neighbour lookup shared by the builder and the finished graph.
+     */
+    private interface NeighborLookup {
+        int[] neighbors(int node, int level);
+        
+        int degree(int node, int level);
+    }
+    
+    /**
+     * A graph node paired with its similarity to the current search target.
+     */
+    private static final class Candidate {
+        private final int node;
+        private final double score;
+        
+        private Candidate(int node, double score) {
+            this.node = node;
+            this.score = score;
+        }
+    }
+    
+    /**
+     * Incremental graph construction following the HNSW insertion algorithm.
+     */
+    private static final class GraphBuilder implements NeighborLookup {
+        
+        private final DocumentVectorIndex vectors;
+        private final int m;
+        private final int efConstruction;
+        private final double levelMultiplier;
+        private final Random random = new Random(LEVEL_SEED);
+        
+        private final int[][][] links;
+        private final int[][] degrees;
+        private int entryPoint;
+        private int maxLevel;
+        
+        private GraphBuilder(DocumentVectorIndex vectors, int m, int efConstruction) {
+            this.vectors = vectors;
+            this.m = m;
+            this.efConstruction = efConstruction;
+            this.levelMultiplier = 1.0 / Math.log(m);
+            this.links = new int[vectors.size()][][];
+            this.degrees = new int[vectors.size()][];
+        }
+        
+        private HnswVectorIndex build() {
+            for (int node = 0; node < vectors.size(); node++) {
+                insert(node);
+            }
+            
+            // Trim neighbour arrays to their actual degree
+            int[][][] trimmed = new int[links.length][][];
+            for (int node = 0; node < links.length; node++) {
+                trimmed[node] = new int[links[node].length][];
+                for (int level = 0; level < links[node].length; level++) {
+                    int[] neighbors = new int[degrees[node][level]];
+                    System.arraycopy(links[node][level], 0, neighbors, 0, neighbors.length);
+                    trimmed[node][level] = neighbors;
+                }
+            }
+            return new HnswVectorIndex(vectors, m, trimmed, entryPoint, maxLevel);
+        }
+        
+        private void insert(int node) {
+            int level = randomLevel();
+            links[node] = new int[level + 1][];
+            degrees[node] = new int[level + 1];
+            for (int l = 0; l <= level; l++) {
+                links[node][l] = new int[maxConnections(l) + 1];
+            }
+            
+            if (node == 0) {
+                entryPoint = 0;
+                maxLevel = level;
+                return;
+            }
+            
+            IntToDoubleFunction score = other -> vectors.similarity(node, other);
+            int nearest = entryPoint;
+            for (int l = maxLevel; l > level; l--) {
+                nearest = searchLayer(this, score, nearest, 1, l, node).get(0).node;
+            }
+            
+            for (int l = Math.min(level, maxLevel); l >= 0; l--) {
+                List<Candidate> candidates = searchLayer(this, score, nearest, efConstruction, l, node);
+                List<Candidate> selected = selectNeighbors(candidates, m);
+                for (Candidate candidate : selected) {
+                    links[node][l][degrees[node][l]++] = candidate.node;
+                    connect(candidate.node, node, l);
+                }
+                nearest = candidates.get(0).node;
+            }
+            
+            if (level > maxLevel) {
+                maxLevel = level;
+                entryPoint = node;
+            }
+        }
+        
+        /**
+         * Adds a link from {@code from} to {@code to}, pruning {@code from}'s neighbours when full.
+         */
+        private void connect(int from, int to, int level) {
+            int[] neighbors = links[from][level];
+            neighbors[degrees[from][level]++] = to;
+            
+            int limit = maxConnections(level);
+            if (degrees[from][level] <= limit) {
+                return;
+            }
+            
+            List<Candidate> candidates = new ArrayList<>(degrees[from][level]);
+            for (int i = 0; i < degrees[from][level]; i++) {
+                candidates.add(new Candidate(neighbors[i], vectors.similarity(from, neighbors[i])));
+            }
+            candidates.sort((a, b) -> Double.compare(b.score, a.score));
+            
+            List<Candidate> kept = selectNeighbors(candidates, limit);
+            degrees[from][level] = 0;
+            for (Candidate candidate : kept) {
+                neighbors[degrees[from][level]++] = candidate.node;
+            }
+        }
+        
+        /**
+         * Selects up to {@code limit} diverse neighbours from candidates sorted by descending similarity.
+         *
+         * <p>A candidate is preferred only if it is closer to the base node than to any already selected
+         * neighbour; remaining slots are filled with the closest skipped candidates.</p>
+         */
+        private List<Candidate> selectNeighbors(List<Candidate> candidates, int limit) {
+            List<Candidate> selected = new ArrayList<>(limit);
+            List<Candidate> skipped = new ArrayList<>();
+            for (Candidate candidate : candidates) {
+                if (selected.size() == limit) {
+                    break;
+                }
+                boolean diverse = true;
+                for (Candidate chosen : selected) {
+                    if (vectors.similarity(candidate.node, chosen.node) > candidate.score) {
+                        diverse = false;
+                        break;
+                    }
+                }
+                if (diverse) {
+                    selected.add(candidate);
+                } else {
+                    skipped.add(candidate);
+                }
+            }
+            for (int i = 0; i < skipped.size() && selected.size() < limit; i++) {
+                selected.add(skipped.get(i));
+            }
+            return selected;
+        }
+        
+        @Override
+        public int[] neighbors(int node, int level) {
+            return level < links[node].length ? links[node][level] : EMPTY_NEIGHBORS;
+        }
+        
+        @Override
+        public int degree(int node, int level) {
+            return level < links[node].length ? degrees[node][level] : 0;
+        }
+        
+        private int maxConnections(int level) {
+            return level == 0 ? m * 2 : m;
+        }
+        
+        private int randomLevel() {
+            double level = -Math.log(1.0 - random.nextDouble()) * levelMultiplier;
+            return Math.min((int) level, MAX_LEVEL_CAP);
+        }
+    }
+}
@@ -1,6 +1,8 @@
 package com.trace.ai.services;
 
 import com.intellij.openapi.diagnostic.Logger;
+import com.trace.ai.tokenizer.BpeTokenizer;
+import com.trace.ai.tokenizer.TokenEncoding;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
@@ -26,6 +28,7 @@ public final class PromptUtils {
     
     // Constants for prompt section markers
     private static final String ANALYSIS_REQUEST_MARKER = "### Analysis Request ###";
+    private static final String CURRENT_QUERY_MARKER = "### Current Query ###";
     private static final String DOCS_HEADER = "### Relevant Documentation ###";
     
     /**
@@ -36,9 +39,11 @@ public final class PromptUtils {
     }
     
     /**
-     * Inserts document context into the prompt before the "Analysis Request" section.
+     * Inserts document context into the prompt before the "Analysis Request" section,
+     * or before the "Current Query" section of user query prompts.
      * This positions the document context as background information rather than
-     * part of the response format.
+     * part of the response format, and keeps it out of the stable prompt prefix
+     * since retrieved documents differ from request to request.
      *
      * @param prompt the base prompt
      * @param documentContext the retrieved document context
@@ -63,15 +68,18 @@ public final class PromptUtils {
         }
         
         int insertIndex = prompt.indexOf(ANALYSIS_REQUEST_MARKER);
+        if (insertIndex == -1) {
+            insertIndex = prompt.indexOf(CURRENT_QUERY_MARKER);
+        }
         
         if (insertIndex != -1) {
-            // Insert document context before the Analysis Request section
-            String beforeAnalysisRequest = prompt.substring(0, insertIndex)
+            // Insert document context before the Analysis Request or Current Query section
+            String beforeRequest = prompt.substring(0, insertIndex)
                 .replaceAll("\n+$", ""); // remove trailing newlines
-            String afterAnalysisRequest = prompt.substring(insertIndex)
+            String afterRequest = prompt.substring(insertIndex)
                 .replaceAll("^\n+", ""); // remove leading newlines
-            // Ensure exactly one blank line above docs and two above Analysis Request
-            return beforeAnalysisRequest + "\n" + docSection + "\n\n" + afterAnalysisRequest;
+            // Ensure exactly one blank line above docs and two above the request
+            return beforeRequest + "\n" + docSection + "\n\n" + afterRequest;
         } else {
             // Fallback: append document context at the end
             LOG.debug("Analysis Request section not found in prompt, appending document context at the end");
@@ -80,18 +88,19 @@ public final class PromptUtils {
     }
     
     /**
-     * Estimates the approximate token count for a prompt based on character count.
-     * This is a rough estimation using the common 4 characters per token ratio.
+     * Counts the tokens of a prompt with the cl100k_base encoding.
+     * The count is exact when the encoding's merge table is bundled and estimated otherwise;
+     * use {@link com.trace.ai.prompts.PromptBudget} to count for a specific model.
      *
      * @param prompt the prompt text
-     * @return estimated token count
+     * @return the token count
      * @throws IllegalArgumentException if prompt is null
      */
     public static int estimateTokenCount(@NotNull String prompt) {
         if (prompt == null) {
             throw new IllegalArgumentException("Prompt cannot be null");
         }
-        return prompt.length() / 4;
+        return BpeTokenizer.getInstance(TokenEncoding.CL100K_BASE).countTokens(prompt);
     }
     
     /**
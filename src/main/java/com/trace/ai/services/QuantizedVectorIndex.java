@@ -0,0 +1,359 @@
+package com.trace.ai.services;
+
+import com.intellij.openapi.diagnostic.Logger;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * In-memory vector index that keeps int8-quantized embeddings and re-ranks with full precision.
+ *
+ * <p>Every embedding is L2-normalized and quantized to one signed byte per dimension with
+ * its own scale factor, so the index needs a quarter of the memory of
+ * {@link DocumentVectorIndex}. A search runs in two passes:</p>
+ * <ol>
+ *   <li>Candidate scan: the quantized query is scored against every quantized vector with
+ *       an integer dot product and the best {@code maxResults * rerankFactor} documents
+ *       are kept</li>
+ *   <li>Re-rank: the full-precision embeddings of those candidates are loaded from the
+ *       {@link FullPrecisionSource} and scored with exact cosine similarity</li>
+ * </ol>
+ *
+ * <p>Returned scores are therefore exact whenever a full-precision source is configured.
+ * Without one, the quantized scores are returned as is.</p>
+ *
+ * <p>The index is immutable once built and safe to share between threads.</p>
+ *
+ * @author Alex Ibasitas
+ * @since 1.0.0
+ */
+public final class QuantizedVectorIndex implements VectorSearchEngine {
+    
+    private static final Logger LOG = Logger.getInstance(QuantizedVectorIndex.class);
+    
+    public static final int DEFAULT_RERANK_FACTOR = 4;
+    public static final int MIN_RERANK_CANDIDATES = 20;
+    
+    private final int dimension;
+    private final long[] documentIds;
+    private final byte[] codes;
+    private final float[] scales;
+    private final FullPrecisionSource fullPrecisionSource;
+    private final int rerankFactor;
+    
+    /**
+     * Loads full-precision embeddings for re-ranking.
+     */
+    @FunctionalInterface
+    public interface FullPrecisionSource {
+        
+        /**
+         * Loads the embeddings of the given documents.
+         *
+         * @param documentIds the document IDs
+         * @return the embeddings keyed by document ID; missing documents are skipped
+         * @throws Exception if loading fails; the quantized scores are used instead
+         */
+        @NotNull
+        Map<Long, float[]> loadEmbeddings(@NotNull Collection<Long> documentIds) throws Exception;
+    }
+    
+    private QuantizedVectorIndex(int dimension, long[] documentIds, byte[] codes, float[] scales,
+                                 FullPrecisionSource fullPrecisionSource, int rerankFactor) {
+        this.dimension = dimension;
+        this.documentIds = documentIds;
+        this.codes = codes;
+        this.scales = scales;
+        this.fullPrecisionSource = fullPrecisionSource;
+        this.rerankFactor = rerankFactor;
+    }
+    
+    /**
+     * Creates a new builder for an index.
+     *
+     * @param fullPrecisionSource the source for re-ranking, or null to return quantized scores
+     * @return a new builder
+     */
+    @NotNull
+    public static Builder builder(@Nullable FullPrecisionSource fullPrecisionSource) {
+        return new Builder(fullPrecisionSource);
+    }
+    
+    /**
+     * Finds the most similar documents to the query embedding.
+     *
+     * @param queryEmbedding the query embedding
+     * @param maxResults the maximum number of results to return
+     * @param similarityThreshold the minimum similarity score
+     * @return the top scoring documents, best first
+     * @throws IllegalArgumentException if maxResults is not positive or the query dimension does not match the index
+     */
+    @Override
+    @NotNull
+    public List<DocumentVectorIndex.ScoredDocument> search(@NotNull float[] queryEmbedding,
+                                                           int maxResults,
+                                                           double similarityThreshold) {
+        if (maxResults <= 0) {
+            throw new IllegalArgumentException("Max results must be positive");
+        }
+        if (size() == 0) {
+            return Collections.emptyList();
+        }
+        if (queryEmbedding.length != dimension) {
+            throw new IllegalArgumentException("Embeddings must have same dimensions");
+        }
+        
+        float[] query = DocumentVectorIndex.normalize(queryEmbedding);
+        if (query == null) {
+            return Collections.emptyList();
+        }
+        
+        if (fullPrecisionSource == null) {
+            return scanCandidates(query, maxResults, similarityThreshold);
+        }
+        
+        // The quantization error is small but not zero, so candidates are not cut at the threshold
+        int candidateCount = Math.max(maxResults * rerankFactor, MIN_RERANK_CANDIDATES);
+        List<DocumentVectorIndex.ScoredDocument> candidates = scanCandidates(query, candidateCount, -1.0);
+        return rerank(query, candidates, maxResults, similarityThreshold);
+    }
+    
+    /**
+     * Scores the query against every quantized vector and keeps the best documents.
+     * The query is quantized as well so the inner loop is a pure integer dot product.
+     */
+    private List<DocumentVectorIndex.ScoredDocument> scanCandidates(float[] query, int limit, double threshold) {
+        float queryScale = EmbeddingCodec.int8Scale(query);
+        byte[] queryCodes = new byte[dimension];
+        for (int i = 0; i < dimension; i++) {
+            queryCodes[i] = EmbeddingCodec.quantize(query[i], queryScale);
+        }
+        
+        // Min-heap on score so the weakest of the current top-K is evicted first
+        PriorityQueue<DocumentVectorIndex.ScoredDocument> topResults = new PriorityQueue<>(limit + 1,
+            (a, b) -> Double.compare(a.getSimilarityScore(), b.getSimilarityScore()));
+        
+        for (int doc = 0, offset = 0; doc < documentIds.length; doc++, offset += dimension) {
+            int dot = 0;
+            for (int i = 0; i < dimension; i++) {
+                dot += queryCodes[i] * codes[offset + i];
+            }
+            double score = dot * ((double) scales[doc] * queryScale);
+            if (score < threshold) {
+                continue;
+            }
+            if (topResults.size() < limit) {
+                topResults.add(new DocumentVectorIndex.ScoredDocument(documentIds[doc], score));
+            } else if (score > topResults.peek().getSimilarityScore()) {
+                topResults.poll();
+                topResults.add(new DocumentVectorIndex.ScoredDocument(documentIds[doc], score));
+            }
+        }
+        
+        List<DocumentVectorIndex.ScoredDocument> results = new ArrayList<>(topResults);
+        results.sort((a, b) -> Double.compare(b.getSimilarityScore(), a.getSimilarityScore()));
+        return results;
+    }
+    
+    /**
+     * Re-scores the candidates with their full-precision embeddings.
+     */
+    private List<DocumentVectorIndex.ScoredDocument> rerank(float[] query,
+                                                            List<DocumentVectorIndex.ScoredDocument> candidates,
+                                                            int maxResults,
+                                                            double similarityThreshold) {
+        List<Long> candidateIds = new ArrayList<>(candidates.size());
+        for (DocumentVectorIndex.ScoredDocument candidate : candidates) {
+            candidateIds.add(candidate.getDocumentId());
+        }
+        
+        Map<Long, float[]> embeddings;
+        try {
+            embeddings = fullPrecisionSource.loadEmbeddings(candidateIds);
+        } catch (Exception e) {
+            LOG.warn("Failed to load full-precision embeddings, using quantized scores: " + e.getMessage());
+            embeddings = Collections.emptyMap();
+        }
+        
+        List<DocumentVectorIndex.ScoredDocument> results = new ArrayList<>(candidates.size());
+        for (DocumentVectorIndex.ScoredDocument candidate : candidates) {
+            float[] embedding = embeddings.get(candidate.getDocumentId());
+            float[] normalized = embedding != null && embedding.length == dimension
+                ? DocumentVectorIndex.normalize(embedding)
+                : null;
+            double score = normalized != null
+                ? DocumentVectorIndex.dotProduct(query, normalized, 0, dimension)
+                : candidate.getSimilarityScore();
+            if (score >= similarityThreshold) {
+                results.add(new DocumentVectorIndex.ScoredDocument(candidate.getDocumentId(), score));
+            }
+        }
+        
+        results.sort((a, b) -> Double.compare(b.getSimilarityScore(), a.getSimilarityScore()));
+        return results.size() > maxResults ? new ArrayList<>(results.subList(0, maxResults)) : results;
+    }
+    
+    /**
+     * Gets the number of indexed documents.
+     *
+     * @return the document count
+     */
+    @Override
+    public int size() {
+        return documentIds.length;
+    }
+    
+    /**
+     * Gets the embedding dimension of this index.
+     *
+     * @return the embedding dimension, or 0 if the index is empty
+     */
+    @Override
+    public int getDimension() {
+        return dimension;
+    }
+    
+    /**
+     * Gets the approximate heap size of the quantized vectors.
+     *
+     * @return the size in bytes of the codes and scale factors
+     */
+    public long getVectorMemoryBytes() {
+        return codes.length + 4L * scales.length;
+    }
+    
+    /**
+     * Builder that normalizes, quantizes and packs embeddings into a contiguous index.
+     */
+    public static final class Builder {
+        
+        private final FullPrecisionSource fullPrecisionSource;
+        private int rerankFactor = DEFAULT_RERANK_FACTOR;
+        private int dimension;
+        private int count;
+        private long[] documentIds = new long[64];
+        private byte[] codes = new byte[0];
+        private float[] scales = new float[64];
+        private float[] scratch = new float[0];
+        
+        private Builder(FullPrecisionSource fullPrecisionSource) {
+            this.fullPrecisionSource = fullPrecisionSource;
+        }
+        
+        /**
+         * Sets how many candidates per requested result are re-ranked.
+         *
+         * @param rerankFactor the candidate multiplier
+         * @return this builder
+         * @throws IllegalArgumentException if rerankFactor is less than 1
+         */
+        @NotNull
+        public Builder setRerankFactor(int rerankFactor) {
+            if (rerankFactor < 1) {
+                throw new IllegalArgumentException("Rerank factor must be at least 1");
+            }
+            this.rerankFactor = rerankFactor;
+            return this;
+        }
+        
+        /**
+         * Adds a document embedding to the index.
+         *
+         * <p>The first embedding fixes the index dimension. Embeddings with a different
+         * dimension or a zero norm are skipped.</p>
+         *
+         * @param documentId the document ID
+         * @param embedding the document embedding
+         * @return this builder
+         */
+        @NotNull
+        public Builder add(long documentId, @NotNull float[] embedding) {
+            if (!acceptDimension(documentId, embedding.length)) {
+                return this;
+            }
+            System.arraycopy(embedding, 0, scratch, 0, dimension);
+            return addScratch(documentId);
+        }
+        
+        /**
+         * Adds a stored embedding BLOB to the index.
+         *
+         * @param documentId the document ID
+         * @param blob the embedding BLOB in {@link EmbeddingCodec} format
+         * @return this builder
+         */
+        @NotNull
+        public Builder addEncoded(long documentId, @NotNull byte[] blob) {
+            if (!acceptDimension(documentId, EmbeddingCodec.getDimension(blob))) {
+                return this;
+            }
+            EmbeddingCodec.decodeInto(blob, scratch, 0);
+            return addScratch(documentId);
+        }
+        
+        private boolean acceptDimension(long documentId, int embeddingDimension) {
+            if (embeddingDimension == 0) {
+                return false;
+            }
+            if (count == 0 && dimension == 0) {
+                dimension = embeddingDimension;
+                codes = new byte[documentIds.length * dimension];
+                scratch = new float[dimension];
+            } else if (embeddingDimension != dimension) {
+                LOG.warn("Skipping document " + documentId + " with embedding dimension " + embeddingDimension
+                    + " (index dimension is " + dimension + ")");
+                return false;
+            }
+            return true;
+        }
+        
+        private Builder addScratch(long documentId) {
+            float[] normalized = DocumentVectorIndex.normalize(scratch);
+            if (normalized == null) {
+                LOG.debug("Skipping document " + documentId + " with zero-norm embedding");
+                return this;
+            }
+            
+            if (count == documentIds.length) {
+                int newCapacity = documentIds.length * 2;
+                documentIds = Arrays.copyOf(documentIds, newCapacity);
+                codes = Arrays.copyOf(codes, newCapacity * dimension);
+                scales = Arrays.copyOf(scales, newCapacity);
+            }
+            
+            float scale = EmbeddingCodec.int8Scale(normalized);
+            int offset = count * dimension;
+            for (int i = 0; i < dimension; i++) {
+                codes[offset + i] = EmbeddingCodec.quantize(normalized[i], scale);
+            }
+            documentIds[count] = documentId;
+            scales[count] = scale;
+            count++;
+            return this;
+        }
+        
+        /**
+         * Builds the immutable index.
+         *
+         * @return the built index
+         */
+        @NotNull
+        public QuantizedVectorIndex build() {
+            return new QuantizedVectorIndex(
+                dimension,
+                Arrays.copyOf(documentIds, count),
+                Arrays.copyOf(codes, count * dimension),
+                Arrays.copyOf(scales, count),
+                fullPrecisionSource,
+                rerankFactor
+            );
+        }
+    }
+}
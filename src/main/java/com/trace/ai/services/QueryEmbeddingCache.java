@@ -0,0 +1,424 @@
+package com.trace.ai.services;
+
+import com.intellij.openapi.diagnostic.Logger;
+import com.trace.ai.configuration.AIServiceType;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Bounded LRU cache for query embeddings with time-based expiry.
+ *
+ * <p>Entries are keyed by provider, embedding model and a hash of the normalized query
+ * text, so the same failure message reported many times across a suite only costs a
+ * single embedding request. Concurrent lookups for the same key share one in-flight
+ * request.</p>
+ *
+ * <p>When a store path is given, entries are also written to a small SQLite side table
+ * so they survive IDE restarts. Only the text hash is persisted, never the query text.
+ * Any failure of the persistent store disables it and the cache keeps working in
+ * memory.</p>
+ *
+ * @author Alex Ibasitas
+ * @since 1.0.0
+ */
+public final class QueryEmbeddingCache {
+    
+    private static final Logger LOG = Logger.getInstance(QueryEmbeddingCache.class);
+    
+    public static final int DEFAULT_MAX_ENTRIES = 512;
+    public static final Duration DEFAULT_TTL = Duration.ofDays(7);
+    
+    private static final String TABLE_NAME = "query_embedding_cache";
+    
+    private final int maxEntries;
+    private final long ttlMillis;
+    private final LongSupplier clock;
+    private final Map<String, CachedEmbedding> entries;
+    private final Map<String, CompletableFuture<float[]>> inFlight = new ConcurrentHashMap<>();
+    
+    private Connection storeConnection;
+    
+    /**
+     * Creates an in-memory cache.
+     *
+     * @param maxEntries the maximum number of cached embeddings
+     * @param ttl how long an embedding stays valid
+     * @throws IllegalArgumentException if maxEntries or ttl are not positive
+     */
+    public QueryEmbeddingCache(int maxEntries, @NotNull Duration ttl) {
+        this(maxEntries, ttl, null, System::currentTimeMillis);
+    }
+    
+    /**
+     * Creates a cache that is additionally backed by a SQLite file.
+     *
+     * @param maxEntries the maximum number of cached embeddings
+     * @param ttl how long an embedding stays valid
+     * @param storePath the SQLite file for persistent entries, or null for memory only
+     * @throws IllegalArgumentException if maxEntries or ttl are not positive
+     */
+    public QueryEmbeddingCache(int maxEntries, @NotNull Duration ttl, @Nullable Path storePath) {
+        this(maxEntries, ttl, storePath, System::currentTimeMillis);
+    }
+    
+    /**
+     * Creates a cache with an explicit clock, used by tests to control expiry.
+     *
+     * @param maxEntries the maximum number of cached embeddings
+     * @param ttl how long an embedding stays valid
+     * @param storePath the SQLite file for persistent entries, or null for memory only
+     * @param clock the time source in milliseconds
+     * @throws IllegalArgumentException if maxEntries or ttl are not positive
+     */
+    QueryEmbeddingCache(int maxEntries, @NotNull Duration ttl, @Nullable Path storePath, @NotNull LongSupplier clock) {
+        if (maxEntries <= 0) {
+            throw new IllegalArgumentException("Max entries must be positive");
+        }
+        if (ttl.isNegative() || ttl.isZero()) {
+            throw new IllegalArgumentException("TTL must be positive");
+        }
+        
+        this.maxEntries = maxEntries;
+        this.ttlMillis = ttl.toMillis();
+        this.clock = clock;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CachedEmbedding> eldest) {
+                return size() > QueryEmbeddingCache.this.maxEntries;
+            }
+        };
+        
+        if (storePath != null) {
+            openStore(storePath);
+        }
+    }
+    
+    /**
+     * Returns the cached embedding for the query, or computes it once and caches the result.
+     *
+     * <p>Cache hits complete immediately without any network call. A null or failed
+     * computation is not cached.</p>
+     *
+     * @param serviceType the embedding provider
+     * @param modelId the embedding model
+     * @param queryText the raw query text
+     * @param loader supplies the embedding request on a cache miss
+     * @return a CompletableFuture containing the embedding
+     */
+    @NotNull
+    public CompletableFuture<float[]> getOrCompute(@NotNull AIServiceType serviceType,
+                                                   @NotNull String modelId,
+                                                   @NotNull String queryText,
+                                                   @NotNull Supplier<CompletableFuture<float[]>> loader) {
+        String key = createKey(serviceType, modelId, queryText);
+        float[] cached = get(key);
+        if (cached != null) {
+            LOG.debug("Query embedding cache hit for " + serviceType.getId() + "/" + modelId);
+            return CompletableFuture.completedFuture(cached);
+        }
+        
+        CompletableFuture<float[]> pending = new CompletableFuture<>();
+        CompletableFuture<float[]> existing = inFlight.putIfAbsent(key, pending);
+        if (existing != null) {
+            LOG.debug("Joining in-flight query embedding request for " + serviceType.getId());
+            return existing;
+        }
+        
+        CompletableFuture<float[]> request;
+        try {
+            request = loader.get();
+        } catch (RuntimeException e) {
+            request = CompletableFuture.failedFuture(e);
+        }
+        request.whenComplete((embedding, throwable) -> {
+            if (throwable == null && embedding != null && embedding.length > 0) {
+                put(key, embedding);
+            }
+            inFlight.remove(key, pending);
+            if (throwable != null) {
+                pending.completeExceptionally(throwable);
+            } else {
+                pending.complete(embedding);
+            }
+        });
+        return pending;
+    }
+    
+    /**
+     * Gets a cached embedding.
+     *
+     * @param serviceType the embedding provider
+     * @param modelId the embedding model
+     * @param queryText the raw query text
+     * @return the cached embedding, or null if absent or expired
+     */
+    @Nullable
+    public float[] get(@NotNull AIServiceType serviceType, @NotNull String modelId, @NotNull String queryText) {
+        return get(createKey(serviceType, modelId, queryText));
+    }
+    
+    /**
+     * Stores an embedding in the cache.
+     *
+     * @param serviceType the embedding provider
+     * @param modelId the embedding model
+     * @param queryText the raw query text
+     * @param embedding the embedding to cache
+     */
+    public void put(@NotNull AIServiceType serviceType, @NotNull String modelId,
+                    @NotNull String queryText, @NotNull float[] embedding) {
+        put(createKey(serviceType, modelId, queryText), embedding);
+    }
+    
+    /**
+     * Gets the number of embeddings held in memory.
+     *
+     * @return the in-memory entry count
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+    
+    /**
+     * Checks whether entries are written to the persistent store.
+     *
+     * @return true if the SQLite side table is in use
+     */
+    public synchronized boolean isPersistent() {
+        return storeConnection != null;
+    }
+    
+    /**
+     * Removes all cached embeddings, including persisted ones.
+     */
+    public synchronized void clear() {
+        entries.clear();
+        if (storeConnection != null) {
+            try (Statement stmt = storeConnection.createStatement()) {
+                stmt.execute("DELETE FROM " + TABLE_NAME);
+            } catch (SQLException e) {
+                disableStore("clear", e);
+            }
+        }
+    }
+    
+    /**
+     * Closes the persistent store. The in-memory cache remains usable.
+     */
+    public synchronized void close() {
+        if (storeConnection != null) {
+            try {
+                storeConnection.close();
+            } catch (SQLException e) {
+                LOG.warn("Failed to close query embedding cache store", e);
+            }
+            storeConnection = null;
+        }
+    }
+    
+    /**
+     * Normalizes query text so that trivially different renderings of the same failure share a key.
+     *
+     * <p>Line endings and runs of whitespace are collapsed and the text is trimmed.</p>
+     *
+     * @param queryText the raw query text
+     * @return the normalized text
+     */
+    @NotNull
+    static String normalize(@NotNull String queryText) {
+        StringBuilder normalized = new StringBuilder(queryText.length());
+        boolean pendingSpace = false;
+        for (int i = 0; i < queryText.length(); i++) {
+            char c = queryText.charAt(i);
+            if (Character.isWhitespace(c)) {
+                pendingSpace = normalized.length() > 0;
+            } else {
+                if (pendingSpace) {
+                    normalized.append(' ');
+                    pendingSpace = false;
+                }
+                normalized.append(c);
+            }
+        }
+        return normalized.toString();
+    }
+    
+    /**
+     * Creates the cache key from the provider, model and normalized query hash.
+     *
+     * @param serviceType the embedding provider
+     * @param modelId the embedding model
+     * @param queryText the raw query text
+     * @return the cache key
+     */
+    @NotNull
+    static String createKey(@NotNull AIServiceType serviceType, @NotNull String modelId, @NotNull String queryText) {
+        return serviceType.getId() + ":" + modelId + ":" + sha256(normalize(queryText));
+    }
+    
+    private synchronized float[] get(String key) {
+        long now = clock.getAsLong();
+        CachedEmbedding entry = entries.get(key);
+        if (entry != null) {
+            if (now - entry.createdAt < ttlMillis) {
+                return entry.embedding;
+            }
+            entries.remove(key);
+        }
+        
+        CachedEmbedding stored = loadFromStore(key, now);
+        if (stored != null) {
+            entries.put(key, stored);
+            return stored.embedding;
+        }
+        return null;
+    }
+    
+    private synchronized void put(String key, float[] embedding) {
+        CachedEmbedding entry = new CachedEmbedding(embedding.clone(), clock.getAsLong());
+        entries.put(key, entry);
+        saveToStore(key, entry);
+    }
+    
+    private void openStore(Path storePath) {
+        try {
+            Path parent = storePath.toAbsolutePath().getParent();
+            if (parent != null) {
+                Files.createDirectories(parent);
+            }
+            Class.forName("org.sqlite.JDBC");
+            storeConnection = DriverManager.getConnection("jdbc:sqlite:" + storePath.toAbsolutePath());
+            try (Statement stmt = storeConnection.createStatement()) {
+                stmt.execute("PRAGMA busy_timeout = 2000");
+                stmt.execute("CREATE TABLE IF NOT EXISTS " + TABLE_NAME + " ("
+                    + "cache_key TEXT PRIMARY KEY, "
+                    + "embedding BLOB NOT NULL, "
+                    + "created_at INTEGER NOT NULL)");
+            }
+            pruneStore();
+            LOG.info("Query embedding cache store opened: " + storePath);
+        } catch (Exception e) {
+            LOG.warn("Persistent query embedding cache unavailable, using memory only", e);
+            close();
+        }
+    }
+    
+    /**
+     * Removes expired rows and keeps at most {@code maxEntries} of the newest rows.
+     */
+    private void pruneStore() throws SQLException {
+        try (PreparedStatement expired = storeConnection.prepareStatement(
+                "DELETE FROM " + TABLE_NAME + " WHERE created_at <= ?");
+             PreparedStatement overflow = storeConnection.prepareStatement(
+                "DELETE FROM " + TABLE_NAME + " WHERE cache_key NOT IN ("
+                    + "SELECT cache_key FROM " + TABLE_NAME + " ORDER BY created_at DESC LIMIT ?)")) {
+            expired.setLong(1, clock.getAsLong() - ttlMillis);
+            expired.executeUpdate();
+            overflow.setInt(1, maxEntries);
+            overflow.executeUpdate();
+        }
+    }
+    
+    private CachedEmbedding loadFromStore(String key, long now) {
+        if (storeConnection == null) {
+            return null;
+        }
+        try (PreparedStatement stmt = storeConnection.prepareStatement(
+                "SELECT embedding, created_at FROM " + TABLE_NAME + " WHERE cache_key = ?")) {
+            stmt.setString(1, key);
+            try (ResultSet rs = stmt.executeQuery()) {
+                if (!rs.next()) {
+                    return null;
+                }
+                long createdAt = rs.getLong("created_at");
+                if (now - createdAt >= ttlMillis) {
+                    return null;
+                }
+                return new CachedEmbedding(deserializeEmbedding(rs.getBytes("embedding")), createdAt);
+            }
+        } catch (SQLException e) {
+            disableStore("read", e);
+            return null;
+        }
+    }
+    
+    private void saveToStore(String key, CachedEmbedding entry) {
+        if (storeConnection == null) {
+            return;
+        }
+        try (PreparedStatement stmt = storeConnection.prepareStatement(
+                "INSERT OR REPLACE INTO " + TABLE_NAME + " (cache_key, embedding, created_at) VALUES (?, ?, ?)")) {
+            stmt.setString(1, key);
+            stmt.setBytes(2, serializeEmbedding(entry.embedding));
+            stmt.setLong(3, entry.createdAt);
+            stmt.executeUpdate();
+        } catch (SQLException e) {
+            disableStore("write", e);
+        }
+    }
+    
+    private void disableStore(String operation, SQLException e) {
+        LOG.warn("Query embedding cache store " + operation + " failed, continuing in memory only", e);
+        close();
+    }
+    
+    private static byte[] serializeEmbedding(float[] embedding) {
+        return EmbeddingCodec.encode(embedding, EmbeddingCodec.Encoding.FLOAT32);
+    }
+    
+    private static float[] deserializeEmbedding(byte[] bytes) {
+        return EmbeddingCodec.decode(bytes);
+    }
+    
+    /**
+     * Hashes text for use in a cache key, so that the text itself is never stored.
+     *
+     * @param text the text to hash
+     * @return the lowercase hex SHA-256 digest
+     */
+    @NotNull
+    static String sha256(@NotNull String text) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(text.getBytes(StandardCharsets.UTF_8));
+            StringBuilder hex = new StringBuilder(digest.length * 2);
+            for (byte b : digest) {
+                hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+    
+    /**
+     * A cached embedding with its creation time.
+     */
+    private static final class CachedEmbedding {
+        private final float[] embedding;
+        private final long createdAt;
+        
+        private CachedEmbedding(float[] embedding, long createdAt) {
+            this.embedding = embedding;
+            this.createdAt = createdAt;
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package com.trace.ai.services;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.List;
+
+/**
+ * Interface for in-memory vector search engines used by the document store.
+ * 
+ * <p>Implementations score documents by cosine similarity against a query embedding.
+ * {@link DocumentVectorIndex} performs an exact scan and is the ground truth;
+ * {@link HnswVectorIndex} performs approximate nearest-neighbour search.</p>
+ * 
+ * <p>Implementations must be safe for concurrent searches.</p>
+ * 
+ * @author Alex Ibasitas
+ * @since 1.0.0
+ */
+public interface VectorSearchEngine {
+    
+    /**
+     * Finds the most similar documents to the query embedding.
+     * 
+     * @param queryEmbedding the query embedding
+     * @param maxResults the maximum number of results to return
+     * @param similarityThreshold the minimum cosine similarity score
+     * @return the top scoring documents ordered by descending score
+     * @throws IllegalArgumentException if maxResults is not positive or the query dimension does not match the engine
+     */
+    @NotNull
+    List<DocumentVectorIndex.ScoredDocument> search(@NotNull float[] queryEmbedding, 
+                                                    int maxResults, 
+                                                    double similarityThreshold);
+    
+    /**
+     * Gets the number of searchable documents.
+     * 
+     * @return the document count
+     */
+    int size();
+    
+    /**
+     * Gets the embedding dimension.
+     * 
+     * @return the embedding dimension, or 0 if empty
+     */
+    int getDimension();
+}
@@ -0,0 +1,151 @@
+package com.trace.ai.services.embedding;
+
+import com.trace.ai.services.http.AsyncExchange;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.IntFunction;
+
+/**
+ * Splits embedding inputs into provider-sized batches.
+ *
+ * <p>Batches are contiguous ranges of the input list, so results can be mapped back to
+ * their inputs in order by simple concatenation. A batch is closed when adding the next
+ * text would exceed either the item limit or the estimated token budget. A single text
+ * larger than the budget is sent on its own and left to the provider to reject or
+ * truncate.</p>
+ *
+ * @author Alex Ibasitas
+ * @since 1.0.0
+ */
+final class EmbeddingBatches {
+    
+    private EmbeddingBatches() {
+        // Utility class
+    }
+    
+    /**
+     * Partitions the texts into contiguous batches.
+     *
+     * @param texts the texts to embed
+     * @param maxItems the maximum number of texts per batch
+     * @param maxTokens the maximum estimated tokens per batch
+     * @return the batches as {@code [start, end)} index ranges, in input order
+     * @throws IllegalArgumentException if maxItems or maxTokens are not positive
+     */
+    @NotNull
+    static List<int[]> partition(@NotNull List<String> texts, int maxItems, int maxTokens) {
+        if (maxItems <= 0 || maxTokens <= 0) {
+            throw new IllegalArgumentException("Batch limits must be positive");
+        }
+        
+        List<int[]> batches = new ArrayList<>();
+        int start = 0;
+        int batchTokens = 0;
+        for (int i = 0; i < texts.size(); i++) {
+            int tokens = estimateTokenCount(texts.get(i));
+            boolean full = i - start >= maxItems || (i > start && batchTokens + tokens > maxTokens);
+            if (full) {
+                batches.add(new int[]{start, i});
+                start = i;
+                batchTokens = 0;
+            }
+            batchTokens += tokens;
+        }
+        if (start < texts.size()) {
+            batches.add(new int[]{start, texts.size()});
+        }
+        return batches;
+    }
+    
+    /**
+     * Sends batch requests one after another and collects their results in order.
+     *
+     * <p>The first request that fails fails the returned future and the remaining requests
+     * are not sent. Cancelling the returned future cancels the request in flight.</p>
+     *
+     * @param requestCount the number of requests
+     * @param request sends a request by index
+     * @return a future that completes with the concatenated results of all requests
+     */
+    @NotNull
+    static <T> CompletableFuture<List<T>> sendInSequence(int requestCount,
+                                                         @NotNull IntFunction<CompletableFuture<List<T>>> request) {
+        CompletableFuture<List<T>> result = new CompletableFuture<>();
+        AtomicReference<CompletableFuture<List<T>>> current = new AtomicReference<>();
+        result.whenComplete((value, error) -> {
+            CompletableFuture<List<T>> inFlight = current.get();
+            if (result.isCancelled() && inFlight != null) {
+                inFlight.cancel(true);
+            }
+        });
+        sendFrom(0, requestCount, new ArrayList<>(), request, result, current);
+        return result;
+    }
+    
+    private static <T> void sendFrom(int index, int requestCount, List<T> collected,
+                                     IntFunction<CompletableFuture<List<T>>> request,
+                                     CompletableFuture<List<T>> result,
+                                     AtomicReference<CompletableFuture<List<T>>> current) {
+        if (index == requestCount) {
+            result.complete(collected);
+            return;
+        }
+        if (result.isDone()) {
+            return;
+        }
+        
+        CompletableFuture<List<T>> step;
+        try {
+            step = request.apply(index);
+        } catch (RuntimeException e) {
+            result.completeExceptionally(e);
+            return;
+        }
+        current.set(step);
+        if (result.isCancelled()) {
+            step.cancel(true);
+            return;
+        }
+        step.whenComplete((value, error) -> {
+            if (error != null) {
+                result.completeExceptionally(AsyncExchange.unwrap(error));
+                return;
+            }
+            collected.addAll(value);
+            sendFrom(index + 1, requestCount, collected, request, result, current);
+        });
+    }
+    
+    /**
+     * Estimates the token count of a text using the same 4 characters per token
+     * heuristic as the prompt utilities.
+     *
+     * @param text the text to estimate
+     * @return the estimated token count, at least 1
+     */
+    static int estimateTokenCount(@NotNull String text) {
+        return Math.max(1, text.length() / 4);
+    }
+    
+    /**
+     * Validates a list of embedding inputs.
+     *
+     * @param texts the texts to validate
+     * @throws IllegalArgumentException if the list is null or contains a null or blank text
+     */
+    static void validateInputs(List<String> texts) {
+        if (texts == null) {
+            throw new IllegalArgumentException("Texts cannot be null");
+        }
+        for (int i = 0; i < texts.size(); i++) {
+            String text = texts.get(i);
+            if (text == null || text.trim().isEmpty()) {
+                throw new IllegalArgumentException("Text at index " + i + " cannot be null or empty");
+            }
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package com.trace.ai.services.embedding;
+
+import com.trace.ai.services.resilience.ProviderHttpException;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.time.Duration;
+
+/**
+ * Thrown when an embedding API rejects a request with HTTP 429 (Too Many Requests).
+ *
+ * <p>Carries the delay requested by the provider's {@code Retry-After} header so that
+ * callers can wait exactly as long as the provider asked before sending more work.</p>
+ *
+ * @author Alex Ibasitas
+ * @since 1.0.0
+ */
+public class EmbeddingRateLimitException extends ProviderHttpException {
+    
+    /**
+     * Creates a new rate limit exception.
+     *
+     * @param message the error message
+     * @param retryAfter the delay requested by the provider, or null if none was given
+     */
+    public EmbeddingRateLimitException(@NotNull String message, @Nullable Duration retryAfter) {
+        super(message, 429, retryAfter);
+    }
+}
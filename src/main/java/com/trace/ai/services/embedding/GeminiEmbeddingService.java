@@ -5,14 +5,27 @@ import com.google.gson.JsonArray;
 import com.google.gson.JsonObject;
 import com.google.gson.JsonParser;
 import com.intellij.openapi.diagnostic.Logger;
+import com.trace.ai.services.http.AsyncExchange;
+import com.trace.ai.services.http.CompressedBodyHandlers;
+import com.trace.ai.services.http.HttpClientRegistry;
+import com.trace.ai.services.http.HttpOperation;
+import com.trace.ai.services.resilience.ProviderHttpException;
+import com.trace.ai.services.resilience.ResiliencePolicy;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 import java.net.URI;
 import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
 import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Function;
 
 /**
  * Google Gemini embedding service for generating vector embeddings.
@@ -23,8 +36,9 @@ import java.util.concurrent.CompletableFuture;
  * <p>Features:</p>
  * <ul>
  *   <li>Google Gemini text-embedding-001 model integration</li>
- *   <li>Platform-independent HTTP communication</li>
- *   <li>Comprehensive error handling with retry logic</li>
+ *   <li>Batch embedding generation via batchEmbedContents</li>
+ *   <li>Platform-independent, non-blocking HTTP communication</li>
+ *   <li>Comprehensive error handling with delayed, cancellable retries</li>
  *   <li>Efficient JSON processing with Gson</li>
  *   <li>Thread-safe operations</li>
  * </ul>
@@ -37,10 +51,15 @@ public class GeminiEmbeddingService {
     private static final Logger LOG = Logger.getInstance(GeminiEmbeddingService.class);
     
     // Google Gemini Embedding API Configuration
-    private static final String EMBEDDING_URL = "https://generativelanguage.googleapis.com/v1beta/models/gemini-embedding-001:embedContent";
+    private static final String MODEL_URL = "https://generativelanguage.googleapis.com/v1beta/models/gemini-embedding-001";
+    private static final String EMBED_CONTENT_METHOD = ":embedContent";
+    private static final String BATCH_EMBED_CONTENTS_METHOD = ":batchEmbedContents";
     private static final String DEFAULT_MODEL = "gemini-embedding-001";
     private static final int EMBEDDING_DIMENSIONS = 3072; // gemini-embedding-001 returns 3072 dimensions
-    private static final Duration REQUEST_TIMEOUT = Duration.ofSeconds(30);
+    
+    // Batch limits (batchEmbedContents accepts up to 100 requests per call)
+    private static final int MAX_BATCH_SIZE = 100;
+    private static final int MAX_BATCH_TOKENS = 100_000;
     
     // Retry configuration
     private static final int MAX_RETRIES = 3;
@@ -51,8 +70,13 @@ public class GeminiEmbeddingService {
     private final Gson gson = new Gson();
     
     // HTTP client for making requests
-    private final HttpClient httpClient;
+    private final HttpClientRegistry httpClients;
+    private final ResiliencePolicy resiliencePolicy;
     private final String apiKey;
+    private final String modelUrl;
+    
+    // Optional rate limiter shared by all requests of a bulk job
+    private volatile TokenBucketRateLimiter rateLimiter;
     
     /**
      * Creates a new Gemini embedding service.
@@ -61,12 +85,85 @@ public class GeminiEmbeddingService {
      * @throws IllegalArgumentException if apiKey is null or empty
      */
     public GeminiEmbeddingService(@NotNull String apiKey) {
+        this(apiKey, MODEL_URL);
+    }
+    
+    /**
+     * Creates a new Gemini embedding service against a specific model endpoint.
+     * 
+     * <p>The {@code :embedContent} and {@code :batchEmbedContents} methods are appended to
+     * the model URL. Used for proxies and for local stub servers in tests.</p>
+     * 
+     * @param apiKey the Google API key for authentication
+     * @param modelUrl the model resource URL
+     * @throws IllegalArgumentException if apiKey or modelUrl is null or empty
+     */
+    public GeminiEmbeddingService(@NotNull String apiKey, @NotNull String modelUrl) {
+        this(apiKey, modelUrl, new HttpClientRegistry(null));
+    }
+    
+    /**
+     * Creates a new Gemini embedding service that sends requests through an existing HTTP client.
+     * 
+     * <p>Used where the caller supplies its own client, for example in tests.</p>
+     * 
+     * @param apiKey the Google API key for authentication
+     * @param httpClient the HTTP client to send requests with
+     * @throws IllegalArgumentException if apiKey is null or empty
+     */
+    public GeminiEmbeddingService(@NotNull String apiKey, @NotNull HttpClient httpClient) {
+        this(apiKey, MODEL_URL, HttpClientRegistry.ofClient(httpClient));
+    }
+    
+    /**
+     * Creates a new Gemini embedding service that takes its HTTP client from a registry.
+     * 
+     * <p>Used inside the IDE with {@link com.trace.ai.services.AIServiceFactory#getHttpClientRegistry()},
+     * so embedding requests reuse pooled HTTP/2 connections of the
+     * {@link HttpOperation#EMBEDDING} client instead of opening new ones.</p>
+     * 
+     * @param apiKey the API key for authentication
+     * @param httpClients the registry to take the HTTP client and timeouts from
+     * @throws IllegalArgumentException if apiKey is null or empty
+     */
+    public GeminiEmbeddingService(@NotNull String apiKey, @NotNull HttpClientRegistry httpClients) {
+        this(apiKey, MODEL_URL, httpClients);
+    }
+    
+    /**
+     * Creates a new Gemini embedding service that takes its HTTP client from a registry and
+     * sends requests through a shared resilience policy.
+     * 
+     * <p>Used inside the IDE with {@link com.trace.ai.services.AIServiceFactory#getEmbeddingResiliencePolicy},
+     * so the circuit breaker outlives the service when it is created again for a new API key.</p>
+     * 
+     * @param apiKey the API key for authentication
+     * @param httpClients the registry to take the HTTP client and timeouts from
+     * @param resiliencePolicy the retry and circuit breaker policy, as created by {@link #createResiliencePolicy}
+     * @throws IllegalArgumentException if apiKey is null or empty
+     */
+    public GeminiEmbeddingService(@NotNull String apiKey, @NotNull HttpClientRegistry httpClients,
+                                  @NotNull ResiliencePolicy resiliencePolicy) {
+        this(apiKey, MODEL_URL, httpClients, resiliencePolicy);
+    }
+    
+    private GeminiEmbeddingService(String apiKey, String modelUrl, HttpClientRegistry httpClients) {
+        this(apiKey, modelUrl, httpClients, null);
+    }
+    
+    private GeminiEmbeddingService(String apiKey, String modelUrl, HttpClientRegistry httpClients,
+                                   ResiliencePolicy resiliencePolicy) {
         if (apiKey == null || apiKey.trim().isEmpty()) {
             throw new IllegalArgumentException("API key cannot be null or empty");
         }
+        if (modelUrl == null || modelUrl.trim().isEmpty()) {
+            throw new IllegalArgumentException("Model URL cannot be null or empty");
+        }
         
         this.apiKey = apiKey.trim();
-        this.httpClient = HttpClient.newHttpClient();
+        this.modelUrl = modelUrl.trim();
+        this.httpClients = httpClients;
+        this.resiliencePolicy = resiliencePolicy != null ? resiliencePolicy : createResiliencePolicy(defaultExecutor());
         
         LOG.info("Gemini embedding service initialized");
     }
@@ -75,7 +172,9 @@ public class GeminiEmbeddingService {
      * Generates an embedding for the given text using Gemini's embedding-001 model.
      * 
      * <p>This method handles the complete embedding generation workflow including
-     * request building, HTTP communication, response parsing, and error handling.</p>
+     * request building, HTTP communication, response parsing, and error handling.
+     * The request is sent asynchronously and no thread is blocked while it is in flight
+     * or backing off. Cancelling the returned future aborts the request.</p>
      * 
      * @param text the text to generate embedding for
      * @return a CompletableFuture containing the generated embedding as a float array
@@ -88,40 +187,126 @@ public class GeminiEmbeddingService {
         
         LOG.info("Generating Gemini embedding for text length: " + text.length());
         
-        return CompletableFuture.supplyAsync(() -> {
-            for (int attempt = 0; attempt < MAX_RETRIES; attempt++) {
-                try {
-                    return generateEmbeddingWithRetry(text, attempt);
-                } catch (Exception e) {
-                    LOG.warn("Gemini embedding generation attempt " + (attempt + 1) + " failed", e);
-                    
-                    if (attempt < MAX_RETRIES - 1) {
-                        // Exponential backoff
-                        long backoffMs = Math.min(INITIAL_BACKOFF_MS * (1L << attempt), MAX_BACKOFF_MS);
-                        try {
-                            Thread.sleep(backoffMs);
-                        } catch (InterruptedException ie) {
-                            Thread.currentThread().interrupt();
-                            throw new RuntimeException("Embedding generation interrupted", ie);
-                        }
-                    }
-                }
+        return resiliencePolicy.execute(() -> generateSingleEmbedding(text), rateLimiter,
+            EmbeddingBatches.estimateTokenCount(text), defaultExecutor());
+    }
+    
+    /**
+     * Generates embeddings for several texts using the batchEmbedContents endpoint.
+     * 
+     * <p>Texts are split into requests by item count and estimated token budget. Each
+     * request is retried independently, and the returned list holds one embedding per
+     * input text in the same order as the inputs.</p>
+     * 
+     * @param texts the texts to generate embeddings for
+     * @return a CompletableFuture containing the embeddings in input order
+     * @throws IllegalArgumentException if texts is null or contains a null or empty text
+     */
+    public CompletableFuture<List<float[]>> generateEmbeddings(@NotNull List<String> texts) {
+        return generateEmbeddings(texts, defaultExecutor());
+    }
+    
+    /**
+     * Generates embeddings for several texts, scheduling retries on the given executor.
+     * 
+     * <p>Batch requests are sent one after another without blocking a thread. The executor
+     * runs the delayed retry and rate limiter waits, which only start the next request.
+     * Cancelling the returned future aborts the request in flight and skips the remaining
+     * batches.</p>
+     * 
+     * @param texts the texts to generate embeddings for
+     * @param executor the executor that runs scheduled retries
+     * @return a CompletableFuture containing the embeddings in input order
+     * @throws IllegalArgumentException if texts is null or contains a null or empty text
+     */
+    public CompletableFuture<List<float[]>> generateEmbeddings(@NotNull List<String> texts, @NotNull Executor executor) {
+        EmbeddingBatches.validateInputs(texts);
+        if (texts.isEmpty()) {
+            return CompletableFuture.completedFuture(Collections.emptyList());
+        }
+        
+        List<String> inputs = List.copyOf(texts);
+        List<int[]> batches = EmbeddingBatches.partition(inputs, MAX_BATCH_SIZE, MAX_BATCH_TOKENS);
+        LOG.info("Generating " + inputs.size() + " Gemini embeddings in " + batches.size() + " batch request(s)");
+        
+        return EmbeddingBatches.sendInSequence(batches.size(), index -> {
+            List<String> batch = inputs.subList(batches.get(index)[0], batches.get(index)[1]);
+            long batchTokens = 0;
+            for (String text : batch) {
+                batchTokens += EmbeddingBatches.estimateTokenCount(text);
             }
-            
-            LOG.error("Failed to generate Gemini embedding after " + MAX_RETRIES + " attempts");
-            throw new RuntimeException("Failed to generate Gemini embedding after " + MAX_RETRIES + " attempts");
+            return resiliencePolicy.execute(() -> generateBatchEmbeddings(batch), rateLimiter, batchTokens, executor);
+        });
+    }
+    
+    /**
+     * Sets the rate limiter that every request of this service must pass through.
+     * 
+     * <p>Bulk jobs share one limiter per provider so that concurrent workers together
+     * stay within the provider's token rate and all back off on HTTP 429.</p>
+     * 
+     * @param rateLimiter the rate limiter, or null to send requests unthrottled
+     */
+    public void setRateLimiter(@Nullable TokenBucketRateLimiter rateLimiter) {
+        this.rateLimiter = rateLimiter;
+    }
+    
+    /**
+     * Creates the retry and circuit breaker policy of Gemini embedding requests.
+     * 
+     * @param executor runs scheduled attempts
+     * @return a new policy with its own circuit breaker
+     */
+    @NotNull
+    public static ResiliencePolicy createResiliencePolicy(@NotNull Executor executor) {
+        return new ResiliencePolicy("Gemini embedding API", MAX_RETRIES, INITIAL_BACKOFF_MS, MAX_BACKOFF_MS, executor);
+    }
+    
+    /**
+     * Gets the executor for retries when the caller does not pass one.
+     * 
+     * <p>Uses the executor of the HTTP client, which is the bounded network executor
+     * inside the IDE, so retries never run on the common pool there.</p>
+     * 
+     * @return the executor for scheduled retries
+     */
+    private Executor defaultExecutor() {
+        return httpClients.getClient(HttpOperation.EMBEDDING).executor().orElse(ForkJoinPool.commonPool());
+    }
+    
+    /**
+     * Generates embeddings for one batch of texts in a single request.
+     * 
+     * @param texts the texts in this batch
+     * @return a CompletableFuture containing the embeddings in the same order as the texts
+     */
+    private CompletableFuture<List<float[]>> generateBatchEmbeddings(@NotNull List<String> texts) {
+        long startTime = System.currentTimeMillis();
+        
+        JsonArray requests = new JsonArray();
+        for (String text : texts) {
+            requests.add(buildEmbeddingRequest(text));
+        }
+        JsonObject request = new JsonObject();
+        request.add("requests", requests);
+        
+        return executeEmbeddingRequest(modelUrl + BATCH_EMBED_CONTENTS_METHOD, gson.toJson(request), response -> {
+            List<float[]> embeddings = parseBatchEmbeddingResponse(response, texts.size());
+        
+            long processingTime = System.currentTimeMillis() - startTime;
+            LOG.info("Gemini batch of " + texts.size() + " embeddings generated in " + processingTime + "ms");
+        
+            return embeddings;
         });
     }
     
     /**
-     * Generates an embedding with retry logic for a specific attempt.
+     * Generates an embedding for a single text in one request attempt.
      * 
      * @param text the text to generate embedding for
-     * @param attempt the current attempt number (0-based)
-     * @return the generated embedding
-     * @throws Exception if the embedding generation fails
+     * @return a CompletableFuture containing the generated embedding
      */
-    private float[] generateEmbeddingWithRetry(@NotNull String text, int attempt) throws Exception {
+    private CompletableFuture<float[]> generateSingleEmbedding(@NotNull String text) {
         long startTime = System.currentTimeMillis();
         
         // Build the request
@@ -130,16 +315,15 @@ public class GeminiEmbeddingService {
         
         // Request body logging removed for security
         
-        // Execute the request
-        String response = executeEmbeddingRequest(requestBody);
-        
-        // Parse the response
-        float[] embedding = parseEmbeddingResponse(response);
+        // Execute the request and parse the response
+        return executeEmbeddingRequest(modelUrl + EMBED_CONTENT_METHOD, requestBody, response -> {
+            float[] embedding = parseEmbeddingResponse(response);
         
-        long processingTime = System.currentTimeMillis() - startTime;
-        LOG.info("Gemini embedding generated in " + processingTime + "ms");
+            long processingTime = System.currentTimeMillis() - startTime;
+            LOG.info("Gemini embedding generated in " + processingTime + "ms");
         
-        return embedding;
+            return embedding;
+        });
     }
     
     /**
@@ -167,32 +351,45 @@ public class GeminiEmbeddingService {
     }
     
     /**
-     * Executes the HTTP request to the Gemini embedding API.
+     * Sends the HTTP request to the Gemini embedding API asynchronously.
      * 
+     * <p>Cancelling the returned future aborts the HTTP exchange.</p>
+     * 
+     * @param endpoint the embedding endpoint URL
      * @param requestBody the JSON request body
-     * @return the response body as a string
-     * @throws Exception if the request fails
+     * @param parser parses a successful response body
+     * @return a CompletableFuture containing the parsed response, failed with
+     *         {@link EmbeddingRateLimitException} on HTTP 429 or a RuntimeException on other errors
      */
-    private String executeEmbeddingRequest(@NotNull String requestBody) throws Exception {
-        String url = EMBEDDING_URL + "?key=" + apiKey;
+    private <T> CompletableFuture<T> executeEmbeddingRequest(@NotNull String endpoint, @NotNull String requestBody,
+                                                             @NotNull Function<String, T> parser) {
+        String url = endpoint + "?key=" + apiKey;
         
-        HttpRequest httpRequest = HttpRequest.newBuilder()
-                .uri(URI.create(url))
+        HttpRequest httpRequest = CompressedBodyHandlers.acceptGzip(
+                    httpClients.newRequest(HttpOperation.EMBEDDING, URI.create(url)))
                 .header("Content-Type", "application/json")
                 .POST(HttpRequest.BodyPublishers.ofString(requestBody))
-                .timeout(REQUEST_TIMEOUT)
                 .build();
         
-        HttpResponse<String> response = httpClient.send(httpRequest, HttpResponse.BodyHandlers.ofString());
+        CompletableFuture<HttpResponse<String>> exchange =
+            httpClients.getClient(HttpOperation.EMBEDDING).sendAsync(httpRequest, CompressedBodyHandlers.ofString());
         
-        if (response.statusCode() != 200) {
-            String errorMessage = "Gemini embedding API request failed with status " + 
-                    response.statusCode() + ": " + response.body();
-            LOG.error(errorMessage);
-            throw new RuntimeException(errorMessage);
-        }
+        return AsyncExchange.cancelWith(exchange.thenApply(response -> {
+            if (response.statusCode() == 429) {
+                Duration retryAfter = EmbeddingRateLimitException.parseRetryAfter(
+                    response.headers().firstValue("Retry-After").orElse(null));
+                LOG.warn("Gemini embedding API rate limited" + (retryAfter != null ? ", retry after " + retryAfter.toMillis() + "ms" : ""));
+                throw new EmbeddingRateLimitException("Gemini embedding API rate limited: " + response.body(), retryAfter);
+            }
+            if (response.statusCode() != 200) {
+                String errorMessage = "Gemini embedding API request failed with status " + 
+                        response.statusCode() + ": " + response.body();
+                LOG.error(errorMessage);
+                throw new ProviderHttpException(errorMessage, response.statusCode(), null);
+            }
         
-        return response.body();
+            return parser.apply(response.body());
+        }), exchange);
     }
     
     /**
@@ -200,9 +397,9 @@ public class GeminiEmbeddingService {
      * 
      * @param response the response body from Gemini
      * @return the embedding as a float array
-     * @throws Exception if parsing fails
+     * @throws RuntimeException if parsing fails
      */
-    private float[] parseEmbeddingResponse(@NotNull String response) throws Exception {
+    private float[] parseEmbeddingResponse(@NotNull String response) {
         try {
             JsonObject jsonResponse = JsonParser.parseString(response).getAsJsonObject();
             
@@ -248,6 +445,38 @@ public class GeminiEmbeddingService {
         }
     }
     
+    /**
+     * Parses a batchEmbedContents response. Embeddings are returned in request order.
+     * 
+     * @param response the response body from Gemini
+     * @param expectedCount the number of texts sent in the request
+     * @return the embeddings in request order
+     */
+    private List<float[]> parseBatchEmbeddingResponse(@NotNull String response, int expectedCount) {
+        try {
+            JsonObject jsonResponse = JsonParser.parseString(response).getAsJsonObject();
+            JsonArray embeddings = jsonResponse.getAsJsonArray("embeddings");
+            if (embeddings == null || embeddings.size() != expectedCount) {
+                throw new RuntimeException("Expected " + expectedCount + " embeddings in Gemini response, got "
+                    + (embeddings == null ? 0 : embeddings.size()));
+            }
+            
+            List<float[]> result = new ArrayList<>(expectedCount);
+            for (int i = 0; i < embeddings.size(); i++) {
+                JsonArray values = embeddings.get(i).getAsJsonObject().getAsJsonArray("values");
+                if (values == null) {
+                    throw new RuntimeException("No values for embedding " + i + " in Gemini response");
+                }
+                result.add(parseValuesArray(values));
+            }
+            return result;
+            
+        } catch (Exception e) {
+            LOG.error("Failed to parse Gemini batch embedding response", e);
+            throw new RuntimeException("Failed to parse Gemini batch embedding response: " + e.getMessage(), e);
+        }
+    }
+    
     /**
      * Parses a JSON array of values into a float array.
      * 
@@ -275,17 +504,15 @@ public class GeminiEmbeddingService {
      * @return a CompletableFuture containing true if connection is valid, false otherwise
      */
     public CompletableFuture<Boolean> validateConnection() {
-        return CompletableFuture.supplyAsync(() -> {
-            try {
-                // Test with a simple text
-                String testText = "Hello, world!";
-                generateEmbedding(testText).get();
-                LOG.info("Gemini embedding service connection validation successful");
-                return true;
-            } catch (Exception e) {
-                LOG.warn("Gemini embedding service connection validation failed: " + e.getMessage());
+        // Test with a simple text
+        String testText = "Hello, world!";
+        return generateEmbedding(testText).handle((embedding, error) -> {
+            if (error != null) {
+                LOG.warn("Gemini embedding service connection validation failed: " + AsyncExchange.unwrap(error).getMessage());
                 return false;
             }
+            LOG.info("Gemini embedding service connection validation successful");
+            return true;
         });
     }
     
@@ -1,9 +1,16 @@
 package com.trace.ai.services.embedding;
 
 import com.google.gson.Gson;
+import com.google.gson.JsonArray;
 import com.google.gson.JsonObject;
 import com.google.gson.JsonParser;
 import com.intellij.openapi.diagnostic.Logger;
+import com.trace.ai.services.http.AsyncExchange;
+import com.trace.ai.services.http.CompressedBodyHandlers;
+import com.trace.ai.services.http.HttpClientRegistry;
+import com.trace.ai.services.http.HttpOperation;
+import com.trace.ai.services.resilience.ProviderHttpException;
+import com.trace.ai.services.resilience.ResiliencePolicy;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
@@ -12,7 +19,12 @@ import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
 import java.time.Duration;
+import java.util.Collections;
+import java.util.List;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Function;
 
 /**
  * OpenAI embedding service for generating vector embeddings.
@@ -23,8 +35,9 @@ import java.util.concurrent.CompletableFuture;
  * <p>Features:</p>
  * <ul>
  *   <li>OpenAI text-embedding-ada-002 model integration</li>
- *   <li>Platform-independent HTTP communication</li>
- *   <li>Comprehensive error handling with retry logic</li>
+ *   <li>Batch embedding generation with array input</li>
+ *   <li>Platform-independent, non-blocking HTTP communication</li>
+ *   <li>Comprehensive error handling with delayed, cancellable retries</li>
  *   <li>Efficient JSON processing with Gson</li>
  *   <li>Thread-safe operations</li>
  * </ul>
@@ -40,7 +53,10 @@ public class OpenAIEmbeddingService {
     private static final String EMBEDDING_URL = "https://api.openai.com/v1/embeddings";
     private static final String DEFAULT_MODEL = "text-embedding-ada-002";
     private static final int EMBEDDING_DIMENSIONS = 1536;
-    private static final Duration REQUEST_TIMEOUT = Duration.ofSeconds(30);
+    
+    // Batch limits (the API accepts up to 2048 inputs and 300k tokens per request)
+    private static final int MAX_BATCH_SIZE = 2048;
+    private static final int MAX_BATCH_TOKENS = 250_000;
     
     // Retry configuration
     private static final int MAX_RETRIES = 3;
@@ -51,8 +67,13 @@ public class OpenAIEmbeddingService {
     private final Gson gson = new Gson();
     
     // HTTP client for making requests
-    private final HttpClient httpClient;
+    private final HttpClientRegistry httpClients;
+    private final ResiliencePolicy resiliencePolicy;
     private final String apiKey;
+    private final String embeddingUrl;
+    
+    // Optional rate limiter shared by all requests of a bulk job
+    private volatile TokenBucketRateLimiter rateLimiter;
     
     /**
      * Creates a new OpenAI embedding service.
@@ -61,12 +82,84 @@ public class OpenAIEmbeddingService {
      * @throws IllegalArgumentException if apiKey is null or empty
      */
     public OpenAIEmbeddingService(@NotNull String apiKey) {
+        this(apiKey, EMBEDDING_URL);
+    }
+    
+    /**
+     * Creates a new OpenAI embedding service against a specific endpoint.
+     * 
+     * <p>Used for OpenAI-compatible proxies and for local stub servers in tests.</p>
+     * 
+     * @param apiKey the OpenAI API key for authentication
+     * @param embeddingUrl the embeddings endpoint URL
+     * @throws IllegalArgumentException if apiKey or embeddingUrl is null or empty
+     */
+    public OpenAIEmbeddingService(@NotNull String apiKey, @NotNull String embeddingUrl) {
+        this(apiKey, embeddingUrl, new HttpClientRegistry(null));
+    }
+    
+    /**
+     * Creates a new OpenAI embedding service that sends requests through an existing HTTP client.
+     * 
+     * <p>Used where the caller supplies its own client, for example in tests.</p>
+     * 
+     * @param apiKey the OpenAI API key for authentication
+     * @param httpClient the HTTP client to send requests with
+     * @throws IllegalArgumentException if apiKey is null or empty
+     */
+    public OpenAIEmbeddingService(@NotNull String apiKey, @NotNull HttpClient httpClient) {
+        this(apiKey, EMBEDDING_URL, HttpClientRegistry.ofClient(httpClient));
+    }
+    
+    /**
+     * Creates a new OpenAI embedding service that takes its HTTP client from a registry.
+     * 
+     * <p>Used inside the IDE with {@link com.trace.ai.services.AIServiceFactory#getHttpClientRegistry()},
+     * so embedding requests reuse pooled HTTP/2 connections of the
+     * {@link HttpOperation#EMBEDDING} client instead of opening new ones.</p>
+     * 
+     * @param apiKey the API key for authentication
+     * @param httpClients the registry to take the HTTP client and timeouts from
+     * @throws IllegalArgumentException if apiKey is null or empty
+     */
+    public OpenAIEmbeddingService(@NotNull String apiKey, @NotNull HttpClientRegistry httpClients) {
+        this(apiKey, EMBEDDING_URL, httpClients);
+    }
+    
+    /**
+     * Creates a new OpenAI embedding service that takes its HTTP client from a registry and
+     * sends requests through a shared resilience policy.
+     * 
+     * <p>Used inside the IDE with {@link com.trace.ai.services.AIServiceFactory#getEmbeddingResiliencePolicy},
+     * so the circuit breaker outlives the service when it is created again for a new API key.</p>
+     * 
+     * @param apiKey the API key for authentication
+     * @param httpClients the registry to take the HTTP client and timeouts from
+     * @param resiliencePolicy the retry and circuit breaker policy, as created by {@link #createResiliencePolicy}
+     * @throws IllegalArgumentException if apiKey is null or empty
+     */
+    public OpenAIEmbeddingService(@NotNull String apiKey, @NotNull HttpClientRegistry httpClients,
+                                  @NotNull ResiliencePolicy resiliencePolicy) {
+        this(apiKey, EMBEDDING_URL, httpClients, resiliencePolicy);
+    }
+    
+    private OpenAIEmbeddingService(String apiKey, String embeddingUrl, HttpClientRegistry httpClients) {
+        this(apiKey, embeddingUrl, httpClients, null);
+    }
+    
+    private OpenAIEmbeddingService(String apiKey, String embeddingUrl, HttpClientRegistry httpClients,
+                                   ResiliencePolicy resiliencePolicy) {
         if (apiKey == null || apiKey.trim().isEmpty()) {
             throw new IllegalArgumentException("API key cannot be null or empty");
         }
+        if (embeddingUrl == null || embeddingUrl.trim().isEmpty()) {
+            throw new IllegalArgumentException("Embedding URL cannot be null or empty");
+        }
         
         this.apiKey = apiKey.trim();
-        this.httpClient = HttpClient.newHttpClient();
+        this.embeddingUrl = embeddingUrl.trim();
+        this.httpClients = httpClients;
+        this.resiliencePolicy = resiliencePolicy != null ? resiliencePolicy : createResiliencePolicy(defaultExecutor());
         
         LOG.info("OpenAI embedding service initialized");
     }
@@ -75,7 +168,9 @@ public class OpenAIEmbeddingService {
      * Generates an embedding for the given text using OpenAI's text-embedding-ada-002 model.
      * 
      * <p>This method handles the complete embedding generation workflow including
-     * request building, HTTP communication, response parsing, and error handling.</p>
+     * request building, HTTP communication, response parsing, and error handling.
+     * The request is sent asynchronously and no thread is blocked while it is in flight
+     * or backing off. Cancelling the returned future aborts the request.</p>
      * 
      * @param text the text to generate embedding for
      * @return a CompletableFuture containing the generated embedding as a float array
@@ -88,40 +183,127 @@ public class OpenAIEmbeddingService {
         
         LOG.info("Generating OpenAI embedding for text length: " + text.length());
         
-        return CompletableFuture.supplyAsync(() -> {
-            for (int attempt = 0; attempt < MAX_RETRIES; attempt++) {
-                try {
-                    return generateEmbeddingWithRetry(text, attempt);
-                } catch (Exception e) {
-                    LOG.warn("OpenAI embedding generation attempt " + (attempt + 1) + " failed", e);
-                    
-                    if (attempt < MAX_RETRIES - 1) {
-                        // Exponential backoff
-                        long backoffMs = Math.min(INITIAL_BACKOFF_MS * (1L << attempt), MAX_BACKOFF_MS);
-                        try {
-                            Thread.sleep(backoffMs);
-                        } catch (InterruptedException ie) {
-                            Thread.currentThread().interrupt();
-                            throw new RuntimeException("Embedding generation interrupted", ie);
-                        }
-                    }
-                }
+        return resiliencePolicy.execute(() -> generateSingleEmbedding(text), rateLimiter,
+            EmbeddingBatches.estimateTokenCount(text), defaultExecutor());
+    }
+    
+    /**
+     * Generates embeddings for several texts using the batch form of the embedding API.
+     * 
+     * <p>Texts are split into requests by item count and estimated token budget. Each
+     * request is retried independently, and the returned list holds one embedding per
+     * input text in the same order as the inputs.</p>
+     * 
+     * @param texts the texts to generate embeddings for
+     * @return a CompletableFuture containing the embeddings in input order
+     * @throws IllegalArgumentException if texts is null or contains a null or empty text
+     */
+    public CompletableFuture<List<float[]>> generateEmbeddings(@NotNull List<String> texts) {
+        return generateEmbeddings(texts, defaultExecutor());
+    }
+    
+    /**
+     * Generates embeddings for several texts, scheduling retries on the given executor.
+     * 
+     * <p>Batch requests are sent one after another without blocking a thread. The executor
+     * runs the delayed retry and rate limiter waits, which only start the next request.
+     * Cancelling the returned future aborts the request in flight and skips the remaining
+     * batches.</p>
+     * 
+     * @param texts the texts to generate embeddings for
+     * @param executor the executor that runs scheduled retries
+     * @return a CompletableFuture containing the embeddings in input order
+     * @throws IllegalArgumentException if texts is null or contains a null or empty text
+     */
+    public CompletableFuture<List<float[]>> generateEmbeddings(@NotNull List<String> texts, @NotNull Executor executor) {
+        EmbeddingBatches.validateInputs(texts);
+        if (texts.isEmpty()) {
+            return CompletableFuture.completedFuture(Collections.emptyList());
+        }
+        
+        List<String> inputs = List.copyOf(texts);
+        List<int[]> batches = EmbeddingBatches.partition(inputs, MAX_BATCH_SIZE, MAX_BATCH_TOKENS);
+        LOG.info("Generating " + inputs.size() + " OpenAI embeddings in " + batches.size() + " batch request(s)");
+        
+        return EmbeddingBatches.sendInSequence(batches.size(), index -> {
+            List<String> batch = inputs.subList(batches.get(index)[0], batches.get(index)[1]);
+            long batchTokens = 0;
+            for (String text : batch) {
+                batchTokens += EmbeddingBatches.estimateTokenCount(text);
             }
-            
-            LOG.error("Failed to generate OpenAI embedding after " + MAX_RETRIES + " attempts");
-            throw new RuntimeException("Failed to generate OpenAI embedding after " + MAX_RETRIES + " attempts");
+            return resiliencePolicy.execute(() -> generateBatchEmbeddings(batch), rateLimiter, batchTokens, executor);
+        });
+    }
+    
+    /**
+     * Sets the rate limiter that every request of this service must pass through.
+     * 
+     * <p>Bulk jobs share one limiter per provider so that concurrent workers together
+     * stay within the provider's token rate and all back off on HTTP 429.</p>
+     * 
+     * @param rateLimiter the rate limiter, or null to send requests unthrottled
+     */
+    public void setRateLimiter(@Nullable TokenBucketRateLimiter rateLimiter) {
+        this.rateLimiter = rateLimiter;
+    }
+    
+    /**
+     * Creates the retry and circuit breaker policy of OpenAI embedding requests.
+     * 
+     * @param executor runs scheduled attempts
+     * @return a new policy with its own circuit breaker
+     */
+    @NotNull
+    public static ResiliencePolicy createResiliencePolicy(@NotNull Executor executor) {
+        return new ResiliencePolicy("OpenAI embedding API", MAX_RETRIES, INITIAL_BACKOFF_MS, MAX_BACKOFF_MS, executor);
+    }
+    
+    /**
+     * Gets the executor for retries when the caller does not pass one.
+     * 
+     * <p>Uses the executor of the HTTP client, which is the bounded network executor
+     * inside the IDE, so retries never run on the common pool there.</p>
+     * 
+     * @return the executor for scheduled retries
+     */
+    private Executor defaultExecutor() {
+        return httpClients.getClient(HttpOperation.EMBEDDING).executor().orElse(ForkJoinPool.commonPool());
+    }
+    
+    /**
+     * Generates embeddings for one batch of texts in a single request.
+     * 
+     * @param texts the texts in this batch
+     * @return a CompletableFuture containing the embeddings in the same order as the texts
+     */
+    private CompletableFuture<List<float[]>> generateBatchEmbeddings(@NotNull List<String> texts) {
+        long startTime = System.currentTimeMillis();
+        
+        JsonObject request = new JsonObject();
+        request.addProperty("model", DEFAULT_MODEL);
+        JsonArray input = new JsonArray();
+        for (String text : texts) {
+            input.add(text);
+        }
+        request.add("input", input);
+        
+        return executeEmbeddingRequest(gson.toJson(request), response -> {
+            List<float[]> embeddings = parseBatchEmbeddingResponse(response, texts.size());
+        
+            long processingTime = System.currentTimeMillis() - startTime;
+            LOG.info("OpenAI batch of " + texts.size() + " embeddings generated in " + processingTime + "ms");
+        
+            return embeddings;
         });
     }
     
     /**
-     * Generates an embedding with retry logic for a specific attempt.
+     * Generates an embedding for a single text in one request attempt.
      * 
      * @param text the text to generate embedding for
-     * @param attempt the current attempt number (0-based)
-     * @return the generated embedding
-     * @throws Exception if the embedding generation fails
+     * @return a CompletableFuture containing the generated embedding
      */
-    private float[] generateEmbeddingWithRetry(@NotNull String text, int attempt) throws Exception {
+    private CompletableFuture<float[]> generateSingleEmbedding(@NotNull String text) {
         long startTime = System.currentTimeMillis();
         
         // Build the request
@@ -130,16 +312,15 @@ public class OpenAIEmbeddingService {
         
         // Request body logging removed for security
         
-        // Execute the request
-        String response = executeEmbeddingRequest(requestBody);
-        
-        // Parse the response
-        float[] embedding = parseEmbeddingResponse(response);
+        // Execute the request and parse the response
+        return executeEmbeddingRequest(requestBody, response -> {
+            float[] embedding = parseEmbeddingResponse(response);
         
-        long processingTime = System.currentTimeMillis() - startTime;
-        LOG.info("OpenAI embedding generated in " + processingTime + "ms");
+            long processingTime = System.currentTimeMillis() - startTime;
+            LOG.info("OpenAI embedding generated in " + processingTime + "ms");
         
-        return embedding;
+            return embedding;
+        });
     }
     
     /**
@@ -156,31 +337,43 @@ public class OpenAIEmbeddingService {
     }
     
     /**
-     * Executes the HTTP request to the OpenAI embedding API.
+     * Sends the HTTP request to the OpenAI embedding API asynchronously.
+     * 
+     * <p>Cancelling the returned future aborts the HTTP exchange.</p>
      * 
      * @param requestBody the JSON request body
-     * @return the response body as a string
-     * @throws Exception if the request fails
+     * @param parser parses a successful response body
+     * @return a CompletableFuture containing the parsed response, failed with
+     *         {@link EmbeddingRateLimitException} on HTTP 429 or a RuntimeException on other errors
      */
-    private String executeEmbeddingRequest(@NotNull String requestBody) throws Exception {
-        HttpRequest httpRequest = HttpRequest.newBuilder()
-                .uri(URI.create(EMBEDDING_URL))
+    private <T> CompletableFuture<T> executeEmbeddingRequest(@NotNull String requestBody,
+                                                             @NotNull Function<String, T> parser) {
+        HttpRequest httpRequest = CompressedBodyHandlers.acceptGzip(
+                    httpClients.newRequest(HttpOperation.EMBEDDING, URI.create(embeddingUrl)))
                 .header("Content-Type", "application/json")
                 .header("Authorization", "Bearer " + apiKey)
                 .POST(HttpRequest.BodyPublishers.ofString(requestBody))
-                .timeout(REQUEST_TIMEOUT)
                 .build();
         
-        HttpResponse<String> response = httpClient.send(httpRequest, HttpResponse.BodyHandlers.ofString());
+        CompletableFuture<HttpResponse<String>> exchange =
+            httpClients.getClient(HttpOperation.EMBEDDING).sendAsync(httpRequest, CompressedBodyHandlers.ofString());
         
-        if (response.statusCode() != 200) {
-            String errorMessage = "OpenAI embedding API request failed with status " + 
-                    response.statusCode() + ": " + response.body();
-            LOG.error(errorMessage);
-            throw new RuntimeException(errorMessage);
-        }
+        return AsyncExchange.cancelWith(exchange.thenApply(response -> {
+            if (response.statusCode() == 429) {
+                Duration retryAfter = EmbeddingRateLimitException.parseRetryAfter(
+                    response.headers().firstValue("Retry-After").orElse(null));
+                LOG.warn("OpenAI embedding API rate limited" + (retryAfter != null ? ", retry after " + retryAfter.toMillis() + "ms" : ""));
+                throw new EmbeddingRateLimitException("OpenAI embedding API rate limited: " + response.body(), retryAfter);
+            }
+            if (response.statusCode() != 200) {
+                String errorMessage = "OpenAI embedding API request failed with status " + 
+                        response.statusCode() + ": " + response.body();
+                LOG.error(errorMessage);
+                throw new ProviderHttpException(errorMessage, response.statusCode(), null);
+            }
         
-        return response.body();
+            return parser.apply(response.body());
+        }), exchange);
     }
     
     /**
@@ -188,9 +381,9 @@ public class OpenAIEmbeddingService {
      * 
      * @param response the response body from OpenAI
      * @return the embedding as a float array
-     * @throws Exception if parsing fails
+     * @throws RuntimeException if parsing fails
      */
-    private float[] parseEmbeddingResponse(@NotNull String response) throws Exception {
+    private float[] parseEmbeddingResponse(@NotNull String response) {
         try {
             JsonObject jsonResponse = JsonParser.parseString(response).getAsJsonObject();
             
@@ -225,23 +418,64 @@ public class OpenAIEmbeddingService {
         }
     }
     
+    /**
+     * Parses a batch embedding response, ordering embeddings by their {@code index} field.
+     * 
+     * @param response the response body from OpenAI
+     * @param expectedCount the number of texts sent in the request
+     * @return the embeddings in request order
+     */
+    private List<float[]> parseBatchEmbeddingResponse(@NotNull String response, int expectedCount) {
+        try {
+            JsonObject jsonResponse = JsonParser.parseString(response).getAsJsonObject();
+            JsonArray data = jsonResponse.getAsJsonArray("data");
+            if (data == null || data.size() != expectedCount) {
+                throw new RuntimeException("Expected " + expectedCount + " embeddings in OpenAI response, got "
+                    + (data == null ? 0 : data.size()));
+            }
+            
+            float[][] ordered = new float[expectedCount][];
+            for (int i = 0; i < data.size(); i++) {
+                JsonObject item = data.get(i).getAsJsonObject();
+                int index = item.has("index") ? item.get("index").getAsInt() : i;
+                JsonArray embedding = item.getAsJsonArray("embedding");
+                if (index < 0 || index >= expectedCount || ordered[index] != null || embedding == null) {
+                    throw new RuntimeException("Invalid embedding entry at position " + i + " in OpenAI response");
+                }
+                
+                float[] embeddingArray = new float[embedding.size()];
+                for (int j = 0; j < embedding.size(); j++) {
+                    embeddingArray[j] = embedding.get(j).getAsFloat();
+                }
+                if (embeddingArray.length != EMBEDDING_DIMENSIONS) {
+                    LOG.warn("Embedding dimensions mismatch: expected " + EMBEDDING_DIMENSIONS + ", got " + embeddingArray.length);
+                }
+                ordered[index] = embeddingArray;
+            }
+            
+            return List.of(ordered);
+            
+        } catch (Exception e) {
+            LOG.error("Failed to parse OpenAI batch embedding response", e);
+            throw new RuntimeException("Failed to parse OpenAI batch embedding response: " + e.getMessage(), e);
+        }
+    }
+    
     /**
      * Validates the connection to OpenAI's embedding service.
      * 
      * @return a CompletableFuture containing true if connection is valid, false otherwise
      */
     public CompletableFuture<Boolean> validateConnection() {
-        return CompletableFuture.supplyAsync(() -> {
-            try {
-                // Test with a simple text
-                String testText = "Hello, world!";
-                generateEmbedding(testText).get();
-                LOG.info("OpenAI embedding service connection validation successful");
-                return true;
-            } catch (Exception e) {
-                LOG.warn("OpenAI embedding service connection validation failed: " + e.getMessage());
+        // Test with a simple text
+        String testText = "Hello, world!";
+        return generateEmbedding(testText).handle((embedding, error) -> {
+            if (error != null) {
+                LOG.warn("OpenAI embedding service connection validation failed: " + AsyncExchange.unwrap(error).getMessage());
                 return false;
             }
+            LOG.info("OpenAI embedding service connection validation successful");
+            return true;
         });
     }
     
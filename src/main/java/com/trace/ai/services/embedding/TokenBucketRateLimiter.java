@@ -0,0 +1,139 @@
+package com.trace.ai.services.embedding;
+
+import com.trace.ai.services.resilience.RateLimiter;
+import org.jetbrains.annotations.NotNull;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Token bucket rate limiter shared by all requests to one embedding provider.
+ *
+ * <p>The bucket refills continuously at a fixed rate up to its capacity. Callers take
+ * as many permits as the estimated tokens of their request and either block until enough
+ * are available or, with {@link #tryAcquire(long)}, retry after the returned delay. When
+ * the provider answers with HTTP 429, {@link #pause(Duration)} stops all callers until the
+ * requested {@code Retry-After} delay has passed.</p>
+ *
+ * <p>This class is thread-safe.</p>
+ *
+ * @author Alex Ibasitas
+ * @since 1.0.0
+ */
+public final class TokenBucketRateLimiter implements RateLimiter {
+    
+    private final double permitsPerNano;
+    private final long capacity;
+    
+    private double availablePermits;
+    private long lastRefillNanos;
+    private long pausedUntilNanos;
+    
+    /**
+     * Creates a rate limiter that starts with a full bucket.
+     *
+     * @param permitsPerMinute the sustained refill rate
+     * @param capacity the maximum number of permits that can accumulate
+     * @throws IllegalArgumentException if permitsPerMinute or capacity are not positive
+     */
+    public TokenBucketRateLimiter(long permitsPerMinute, long capacity) {
+        if (permitsPerMinute <= 0) {
+            throw new IllegalArgumentException("Permits per minute must be positive");
+        }
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be positive");
+        }
+        
+        this.permitsPerNano = permitsPerMinute / (double) TimeUnit.MINUTES.toNanos(1);
+        this.capacity = capacity;
+        this.availablePermits = capacity;
+        this.lastRefillNanos = System.nanoTime();
+        this.pausedUntilNanos = lastRefillNanos;
+    }
+    
+    /**
+     * Takes permits from the bucket, blocking until they are available.
+     *
+     * <p>Requests larger than the bucket capacity are clamped to the capacity so that
+     * they can still proceed once the bucket is full.</p>
+     *
+     * @param permits the number of permits to take
+     * @throws InterruptedException if the thread is interrupted while waiting
+     */
+    public void acquire(long permits) throws InterruptedException {
+        while (true) {
+            long waitNanos = tryAcquire(permits);
+            if (waitNanos == 0) {
+                return;
+            }
+            TimeUnit.NANOSECONDS.sleep(waitNanos);
+        }
+    }
+    
+    /**
+     * Takes permits from the bucket if they are available now, without blocking.
+     *
+     * <p>Asynchronous callers schedule another attempt after the returned delay instead
+     * of holding a thread while they wait.</p>
+     *
+     * @param permits the number of permits to take
+     * @return zero if the permits were taken, otherwise the nanoseconds to wait before trying again
+     */
+    @Override
+    public long tryAcquire(long permits) {
+        long requested = Math.max(1, Math.min(permits, capacity));
+        long waitNanos;
+        synchronized (this) {
+            long now = System.nanoTime();
+            refill(now);
+            if (now - pausedUntilNanos < 0) {
+                waitNanos = pausedUntilNanos - now;
+            } else if (availablePermits >= requested) {
+                availablePermits -= requested;
+                return 0;
+            } else {
+                waitNanos = (long) Math.ceil((requested - availablePermits) / permitsPerNano);
+            }
+        }
+        return Math.max(waitNanos, TimeUnit.MILLISECONDS.toNanos(1));
+    }
+    
+    /**
+     * Stops handing out permits for the given delay and empties the bucket.
+     *
+     * <p>Used when the provider signals rate limiting. A shorter pause never cuts an
+     * existing longer one short.</p>
+     *
+     * @param delay how long to pause
+     */
+    @Override
+    public synchronized void pause(@NotNull Duration delay) {
+        long now = System.nanoTime();
+        refill(now);
+        long until = now + delay.toNanos();
+        if (until - pausedUntilNanos > 0) {
+            pausedUntilNanos = until;
+        }
+        availablePermits = 0;
+    }
+    
+    /**
+     * Gets the permits that are currently available without waiting.
+     *
+     * @return the available permits
+     */
+    public synchronized long getAvailablePermits() {
+        refill(System.nanoTime());
+        return (long) availablePermits;
+    }
+    
+    private void refill(long now) {
+        // No permits accumulate while paused
+        long from = pausedUntilNanos - lastRefillNanos > 0 ? pausedUntilNanos : lastRefillNanos;
+        long elapsed = now - from;
+        if (elapsed > 0) {
+            availablePermits = Math.min(capacity, availablePermits + elapsed * permitsPerNano);
+            lastRefillNanos = now;
+        }
+    }
+}
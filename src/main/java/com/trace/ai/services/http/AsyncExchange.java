@@ -0,0 +1,61 @@
+package com.trace.ai.services.http;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Helpers for futures derived from {@code HttpClient.sendAsync} exchanges.
+ *
+ * @author Alex Ibasitas
+ * @since 1.0.0
+ */
+public final class AsyncExchange {
+    
+    /**
+     * Private constructor to prevent instantiation.
+     */
+    private AsyncExchange() {
+        throw new UnsupportedOperationException("Utility class cannot be instantiated");
+    }
+    
+    /**
+     * Cancels an HTTP exchange when the future derived from it is cancelled.
+     *
+     * <p>Futures created with {@code thenApply} do not pass cancellation back to their
+     * source, so without this a cancelled request would keep its connection busy until
+     * the response arrived.</p>
+     *
+     * @param derived the future handed to callers
+     * @param exchange the future returned by {@code HttpClient.sendAsync}
+     * @return the derived future
+     */
+    @NotNull
+    public static <T> CompletableFuture<T> cancelWith(@NotNull CompletableFuture<T> derived,
+                                                      @NotNull CompletableFuture<?> exchange) {
+        derived.whenComplete((value, error) -> {
+            if (derived.isCancelled()) {
+                exchange.cancel(true);
+            }
+        });
+        return derived;
+    }
+    
+    /**
+     * Unwraps the exception that actually failed a future.
+     *
+     * @param error the exception a future completed with
+     * @return the underlying cause
+     */
+    @NotNull
+    public static Throwable unwrap(@NotNull Throwable error) {
+        Throwable cause = error;
+        while ((cause instanceof CompletionException || cause instanceof ExecutionException)
+                && cause.getCause() != null) {
+            cause = cause.getCause();
+        }
+        return cause;
+    }
+}
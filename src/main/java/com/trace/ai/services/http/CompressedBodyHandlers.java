@@ -0,0 +1,113 @@
+package com.trace.ai.services.http;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.net.http.HttpHeaders;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Requests gzip-compressed responses and decodes them.
+ *
+ * <p>The JDK HTTP client neither asks for nor decodes compressed responses. Embedding
+ * responses are long arrays of numbers written out as JSON text and shrink several times
+ * when compressed, so asking for gzip saves most of their transfer time.</p>
+ *
+ * <p>Streamed responses should not ask for compression, since a compressing server or
+ * proxy may hold back events until it has a full block to send.</p>
+ *
+ * @author Alex Ibasitas
+ * @since 1.0.0
+ */
+public final class CompressedBodyHandlers {
+    
+    static final String ACCEPT_ENCODING = "Accept-Encoding";
+    static final String CONTENT_ENCODING = "Content-Encoding";
+    static final String GZIP = "gzip";
+    
+    private CompressedBodyHandlers() {
+        // Utility class
+    }
+    
+    /**
+     * Asks the server for a gzip-compressed response.
+     *
+     * @param builder the request builder
+     * @return the same builder
+     */
+    @NotNull
+    public static HttpRequest.Builder acceptGzip(@NotNull HttpRequest.Builder builder) {
+        return builder.header(ACCEPT_ENCODING, GZIP);
+    }
+    
+    /**
+     * Creates a body handler that reads the response as a string, decompressing it if the
+     * server sent it gzip-compressed.
+     *
+     * <p>The charset is taken from the {@code Content-Type} header and defaults to UTF-8.</p>
+     *
+     * @return the body handler
+     */
+    @NotNull
+    public static HttpResponse.BodyHandler<String> ofString() {
+        return responseInfo -> {
+            Charset charset = charsetOf(responseInfo.headers());
+            if (!isGzip(responseInfo.headers())) {
+                return HttpResponse.BodySubscribers.ofString(charset);
+            }
+            return HttpResponse.BodySubscribers.mapping(
+                HttpResponse.BodySubscribers.ofByteArray(), body -> new String(gunzip(body), charset));
+        };
+    }
+    
+    /**
+     * Checks whether the response body is gzip-compressed.
+     *
+     * @param headers the response headers
+     * @return true if the content encoding is gzip
+     */
+    static boolean isGzip(@NotNull HttpHeaders headers) {
+        return headers.firstValue(CONTENT_ENCODING)
+            .map(encoding -> GZIP.equals(encoding.trim().toLowerCase(Locale.ROOT)))
+            .orElse(false);
+    }
+    
+    /**
+     * Gets the charset named in the {@code Content-Type} header.
+     *
+     * @param headers the response headers
+     * @return the charset, or UTF-8 if none is named or it is not supported
+     */
+    @NotNull
+    static Charset charsetOf(@NotNull HttpHeaders headers) {
+        String contentType = headers.firstValue("Content-Type").orElse("");
+        for (String parameter : contentType.split(";")) {
+            String trimmed = parameter.trim();
+            if (trimmed.regionMatches(true, 0, "charset=", 0, 8)) {
+                String name = trimmed.substring(8).replace("\"", "").trim();
+                try {
+                    return Charset.forName(name);
+                } catch (IllegalArgumentException e) {
+                    return StandardCharsets.UTF_8;
+                }
+            }
+        }
+        return StandardCharsets.UTF_8;
+    }
+    
+    private static byte[] gunzip(byte[] compressed) {
+        try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(compressed))) {
+            return in.readAllBytes();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to decompress gzip response", e);
+        }
+    }
+}
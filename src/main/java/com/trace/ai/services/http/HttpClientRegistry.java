@@ -0,0 +1,167 @@
+package com.trace.ai.services.http;
+
+import com.intellij.openapi.diagnostic.Logger;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.Executor;
+
+/**
+ * Hands out long-lived HTTP clients, one per {@link HttpOperation}, with per-operation timeouts.
+ *
+ * <p>Creating an HTTP client for a request throws away its connection pool, so every call
+ * pays for a new TCP connection and TLS handshake. Clients from the registry are created
+ * once and kept: they prefer HTTP/2, which multiplexes concurrent requests to a host over
+ * one connection, and keep idle connections for reuse. The connect timeout is fixed per
+ * client, so each operation gets its own client; all of them share one executor.</p>
+ *
+ * <p>Callers should get the client from the registry for every request rather than keep
+ * it, so that changed timeouts take effect.</p>
+ *
+ * @author Alex Ibasitas
+ * @since 1.0.0
+ */
+public final class HttpClientRegistry {
+    
+    private static final Logger LOG = Logger.getInstance(HttpClientRegistry.class);
+    
+    @Nullable
+    private final Executor executor;
+    @Nullable
+    private final HttpClient fixedClient;
+    
+    // Guarded by this
+    private final Map<HttpOperation, HttpClient> clients = new EnumMap<>(HttpOperation.class);
+    private final Map<HttpOperation, Duration> connectTimeouts = new EnumMap<>(HttpOperation.class);
+    private final Map<HttpOperation, Duration> requestTimeouts = new EnumMap<>(HttpOperation.class);
+    
+    /**
+     * Creates a registry whose clients run on the given executor.
+     *
+     * @param executor the executor of all clients, or null for the default executor of each client
+     */
+    public HttpClientRegistry(@Nullable Executor executor) {
+        this(executor, null);
+    }
+    
+    private HttpClientRegistry(@Nullable Executor executor, @Nullable HttpClient fixedClient) {
+        this.executor = executor;
+        this.fixedClient = fixedClient;
+        for (HttpOperation operation : HttpOperation.values()) {
+            connectTimeouts.put(operation, operation.getDefaultConnectTimeout());
+            requestTimeouts.put(operation, operation.getDefaultRequestTimeout());
+        }
+    }
+    
+    /**
+     * Creates a registry that uses one existing client for every operation.
+     *
+     * <p>Used where the caller supplies its own client, for example in tests. Request
+     * timeouts still apply per operation; connect timeouts are those of the client.</p>
+     *
+     * @param httpClient the client to use
+     * @return the registry
+     */
+    @NotNull
+    public static HttpClientRegistry ofClient(@NotNull HttpClient httpClient) {
+        return new HttpClientRegistry(null, httpClient);
+    }
+    
+    /**
+     * Gets the client for an operation, creating it on first use.
+     *
+     * @param operation the kind of request
+     * @return the client
+     */
+    @NotNull
+    public synchronized HttpClient getClient(@NotNull HttpOperation operation) {
+        if (fixedClient != null) {
+            return fixedClient;
+        }
+        HttpClient client = clients.get(operation);
+        if (client == null) {
+            client = createClient(connectTimeouts.get(operation));
+            clients.put(operation, client);
+            LOG.debug("Created HTTP client for " + operation + " requests");
+        }
+        return client;
+    }
+    
+    /**
+     * Gets the time allowed for a response to a request of the given kind.
+     *
+     * @param operation the kind of request
+     * @return the request timeout
+     */
+    @NotNull
+    public synchronized Duration getRequestTimeout(@NotNull HttpOperation operation) {
+        return requestTimeouts.get(operation);
+    }
+    
+    /**
+     * Gets the time allowed to open a connection for a request of the given kind.
+     *
+     * @param operation the kind of request
+     * @return the connect timeout
+     */
+    @NotNull
+    public synchronized Duration getConnectTimeout(@NotNull HttpOperation operation) {
+        return connectTimeouts.get(operation);
+    }
+    
+    /**
+     * Changes the timeouts of an operation.
+     *
+     * <p>A new connect timeout replaces the client of the operation, so it applies to
+     * requests sent after this call. Requests in flight keep their old timeouts.</p>
+     *
+     * @param operation the kind of request
+     * @param connectTimeout the time allowed to open a connection
+     * @param requestTimeout the time allowed for a response
+     * @throws IllegalArgumentException if a timeout is not positive
+     */
+    public synchronized void setTimeouts(@NotNull HttpOperation operation,
+                                         @NotNull Duration connectTimeout,
+                                         @NotNull Duration requestTimeout) {
+        if (connectTimeout == null || connectTimeout.isNegative() || connectTimeout.isZero()) {
+            throw new IllegalArgumentException("Connect timeout must be positive");
+        }
+        if (requestTimeout == null || requestTimeout.isNegative() || requestTimeout.isZero()) {
+            throw new IllegalArgumentException("Request timeout must be positive");
+        }
+        if (!connectTimeout.equals(connectTimeouts.put(operation, connectTimeout))) {
+            clients.remove(operation);
+        }
+        requestTimeouts.put(operation, requestTimeout);
+        LOG.info("Timeouts of " + operation + " requests set to connect " + connectTimeout.toMillis()
+            + "ms, request " + requestTimeout.toMillis() + "ms");
+    }
+    
+    /**
+     * Starts a request with the timeout of the given operation.
+     *
+     * @param operation the kind of request
+     * @param uri the request URI
+     * @return the request builder
+     */
+    @NotNull
+    public HttpRequest.Builder newRequest(@NotNull HttpOperation operation, @NotNull URI uri) {
+        return HttpRequest.newBuilder(uri).timeout(getRequestTimeout(operation));
+    }
+    
+    private HttpClient createClient(Duration connectTimeout) {
+        HttpClient.Builder builder = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_2)
+            .connectTimeout(connectTimeout);
+        if (executor != null) {
+            builder.executor(executor);
+        }
+        return builder.build();
+    }
+}
@@ -0,0 +1,60 @@
+package com.trace.ai.services.http;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.time.Duration;
+
+/**
+ * Kinds of HTTP requests the plugin sends, each with its own timeouts.
+ *
+ * <p>Model discovery and key validation run while the user waits in the settings dialog,
+ * so they give up early. Analysis requests wait longer for the model to respond.</p>
+ *
+ * @author Alex Ibasitas
+ * @since 1.0.0
+ */
+public enum HttpOperation {
+    
+    /**
+     * Non-streamed analysis requests, and the wait for the headers of streamed ones.
+     */
+    ANALYSIS(Duration.ofSeconds(10), Duration.ofSeconds(30)),
+    
+    /**
+     * Embedding requests for queries and documents.
+     */
+    EMBEDDING(Duration.ofSeconds(10), Duration.ofSeconds(30)),
+    
+    /**
+     * Model discovery and API key validation.
+     */
+    DISCOVERY(Duration.ofSeconds(5), Duration.ofSeconds(10));
+    
+    private final Duration defaultConnectTimeout;
+    private final Duration defaultRequestTimeout;
+    
+    HttpOperation(@NotNull Duration defaultConnectTimeout, @NotNull Duration defaultRequestTimeout) {
+        this.defaultConnectTimeout = defaultConnectTimeout;
+        this.defaultRequestTimeout = defaultRequestTimeout;
+    }
+    
+    /**
+     * Gets the default time allowed to open a connection.
+     *
+     * @return the default connect timeout
+     */
+    @NotNull
+    public Duration getDefaultConnectTimeout() {
+        return defaultConnectTimeout;
+    }
+    
+    /**
+     * Gets the default time allowed for a response after the request was sent.
+     *
+     * @return the default request timeout
+     */
+    @NotNull
+    public Duration getDefaultRequestTimeout() {
+        return defaultRequestTimeout;
+    }
+}
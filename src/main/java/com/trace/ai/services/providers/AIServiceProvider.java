@@ -3,8 +3,10 @@ package com.trace.ai.services.providers;
 import com.trace.ai.models.AIAnalysisResult;
 import com.trace.ai.configuration.AIServiceType;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
 
 /**
  * Interface for AI service providers.
@@ -66,6 +68,45 @@ public interface AIServiceProvider {
                                                @NotNull String modelId, 
                                                @NotNull String apiKey);
     
+    /**
+     * Analyzes a prompt using the specified model, streaming the response as it is generated.
+     * 
+     * <p>Each piece of text is passed to {@code onPartialText} as soon as it has been parsed
+     * from the response body, on the thread reading the response. The returned future
+     * completes with the full analysis once the stream ends, exactly as {@link #analyze}
+     * would. Listeners must return quickly and must not touch UI components directly.</p>
+     * 
+     * <p>Providers that cannot stream fall back to {@link #analyze} and deliver the
+     * complete text through the returned future only.</p>
+     * 
+     * @param prompt the prompt to analyze
+     * @param modelId the model ID to use for analysis
+     * @param apiKey the API key for authentication
+     * @param onPartialText receives each newly generated piece of text, in order
+     * @return the analysis result with metadata
+     * @throws IllegalArgumentException if any parameter is null or empty
+     * @throws RuntimeException if the service is unavailable or returns an error
+     */
+    default CompletableFuture<AIAnalysisResult> analyzeStreaming(@NotNull String prompt,
+                                                                @NotNull String modelId,
+                                                                @NotNull String apiKey,
+                                                                @NotNull Consumer<String> onPartialText) {
+        return analyze(prompt, modelId, apiKey);
+    }
+    
+    /**
+     * Gets the prompt cache usage of this provider.
+     * 
+     * <p>Providers whose responses report how many prompt tokens were served from a cache
+     * count them here. Others return null.</p>
+     * 
+     * @return the prompt cache metrics, or null if the provider does not report cache usage
+     */
+    @Nullable
+    default PromptCacheMetrics getPromptCacheMetrics() {
+        return null;
+    }
+    
     /**
      * Discovers the models available to the user with the given API key.
      * 
@@ -0,0 +1,260 @@
+package com.trace.ai.services.providers;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.intellij.openapi.diagnostic.Logger;
+import com.trace.ai.services.http.AsyncExchange;
+import com.trace.ai.services.http.CompressedBodyHandlers;
+import com.trace.ai.services.http.HttpClientRegistry;
+import com.trace.ai.services.http.HttpOperation;
+import com.trace.ai.tokenizer.BpeTokenizer;
+import com.trace.ai.tokenizer.TokenEncoding;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.net.URI;
+import java.net.http.HttpRequest;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.LongSupplier;
+
+/**
+ * Stores stable prompt prefixes in Gemini's context cache.
+ *
+ * <p>A prefix is uploaded with the {@code cachedContents} API and later requests name the
+ * cache instead of sending the prefix again. Gemini bills cached tokens at a discount and
+ * does not process them again, which pays off for follow-up questions about the same
+ * failure. Each cache lives for {@link #TTL}; it is forgotten here a minute before Gemini
+ * deletes it, so that no request names an expired cache.</p>
+ *
+ * <p>Most failures get no follow-up, so a prefix is only uploaded when a second request
+ * uses it within that time, and no request waits for an upload: requests send the prefix
+ * inline until its cache has been created. A failure's first analysis therefore costs no
+ * extra round trip and no cache storage.</p>
+ *
+ * <p>Gemini only caches prefixes above a minimum size that depends on the model. Shorter
+ * prefixes are always sent inline. When a cache cannot be created, the prefix is sent
+ * inline until the entry would have expired, instead of trying again on every request.</p>
+ *
+ * <p>Instances are thread-safe. Concurrent requests for the same prefix share one upload.</p>
+ *
+ * @author Alex Ibasitas
+ * @since 1.0.0
+ */
+final class GeminiContextCache {
+    
+    private static final Logger LOG = Logger.getInstance(GeminiContextCache.class);
+    
+    static final String CACHED_CONTENTS_URL = "https://generativelanguage.googleapis.com/v1beta/cachedContents";
+    static final Duration TTL = Duration.ofMinutes(10);
+    private static final Duration EXPIRY_MARGIN = Duration.ofMinutes(1);
+    
+    // Caches expire on their own, so forgetting the least recently used one only costs a re-upload
+    static final int MAX_ENTRIES = 32;
+    
+    private final HttpClientRegistry httpClients;
+    private final String url;
+    private final LongSupplier nanoClock;
+    
+    // Guarded by this; in access order so that the least recently used entry is evicted first
+    private final Map<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    
+    /**
+     * Creates a context cache for the Gemini API.
+     *
+     * @param httpClients the registry to take the HTTP client and timeouts from
+     */
+    GeminiContextCache(@NotNull HttpClientRegistry httpClients) {
+        this(httpClients, CACHED_CONTENTS_URL, System::nanoTime);
+    }
+    
+    /**
+     * Creates a context cache.
+     *
+     * @param httpClients the registry to take the HTTP client and timeouts from
+     * @param url the cachedContents endpoint
+     * @param nanoClock the clock that times entries, in nanoseconds
+     */
+    GeminiContextCache(@NotNull HttpClientRegistry httpClients, @NotNull String url, @NotNull LongSupplier nanoClock) {
+        this.httpClients = httpClients;
+        this.url = url;
+        this.nanoClock = nanoClock;
+    }
+    
+    /**
+     * Gets the cache that holds a prompt prefix, if it has been created.
+     *
+     * <p>Never waits for an upload. The second request with a prefix starts its upload in
+     * the background; requests get the cache name once the upload has finished.</p>
+     *
+     * @param prefix the stable prompt prefix
+     * @param modelId the model the cache is created for
+     * @param apiKey the API key; caches belong to the key's project
+     * @return the cache name, or null if the prefix is sent inline
+     */
+    @Nullable
+    String lookup(@NotNull String prefix, @NotNull String modelId, @NotNull String apiKey) {
+        if (prefix.isEmpty() || BpeTokenizer.getInstance(TokenEncoding.CL100K_BASE).countTokens(prefix) < minimumTokens(modelId)) {
+            return null;
+        }
+        String key = key(prefix, modelId, apiKey);
+        long now = nanoClock.getAsLong();
+        long expiresAt = now + TTL.minus(EXPIRY_MARGIN).toNanos();
+        CompletableFuture<String> name;
+        synchronized (this) {
+            Entry entry = entries.get(key);
+            if (entry == null || now - entry.expiresAt >= 0) {
+                // Remember the prefix, but only upload it if another request uses it
+                put(key, new Entry(null, expiresAt));
+                return null;
+            }
+            if (entry.name != null) {
+                return entry.name.getNow(null);
+            }
+            name = new CompletableFuture<>();
+            put(key, new Entry(name, expiresAt));
+        }
+        create(prefix, modelId, apiKey).whenComplete((created, error) -> {
+            if (error != null) {
+                LOG.warn("Failed to cache Gemini prompt prefix, sending it inline: " + AsyncExchange.unwrap(error).getMessage());
+                name.complete(null);
+            } else {
+                LOG.info("Cached Gemini prompt prefix as " + created);
+                name.complete(created);
+            }
+        });
+        return null;
+    }
+    
+    /**
+     * Forgets the cache of a prompt prefix, for example when Gemini no longer knows its name.
+     *
+     * @param prefix the stable prompt prefix
+     * @param modelId the model the cache was created for
+     * @param apiKey the API key the cache was created with
+     */
+    void invalidate(@NotNull String prefix, @NotNull String modelId, @NotNull String apiKey) {
+        synchronized (this) {
+            entries.remove(key(prefix, modelId, apiKey));
+        }
+    }
+    
+    /**
+     * Gets the number of prefixes currently tracked.
+     *
+     * @return the entry count
+     */
+    synchronized int size() {
+        return entries.size();
+    }
+    
+    /**
+     * Uploads a prefix to the cachedContents API.
+     *
+     * @return a future with the name of the new cache
+     */
+    private CompletableFuture<String> create(String prefix, String modelId, String apiKey) {
+        JsonObject part = new JsonObject();
+        part.addProperty("text", prefix);
+        JsonArray parts = new JsonArray();
+        parts.add(part);
+        JsonObject content = new JsonObject();
+        content.addProperty("role", "user");
+        content.add("parts", parts);
+        JsonArray contents = new JsonArray();
+        contents.add(content);
+        
+        JsonObject body = new JsonObject();
+        body.addProperty("model", "models/" + modelId);
+        body.add("contents", contents);
+        body.addProperty("ttl", TTL.toSeconds() + "s");
+        
+        HttpRequest request = CompressedBodyHandlers.acceptGzip(
+                httpClients.newRequest(HttpOperation.ANALYSIS, URI.create(url + "?key=" + apiKey)))
+            .header("Content-Type", "application/json")
+            .POST(HttpRequest.BodyPublishers.ofString(body.toString()))
+            .build();
+        
+        return httpClients.getClient(HttpOperation.ANALYSIS)
+            .sendAsync(request, CompressedBodyHandlers.ofString())
+            .thenApply(response -> {
+                if (response.statusCode() != 200) {
+                    throw new RuntimeException("Gemini cachedContents request failed with status "
+                        + response.statusCode() + ": " + response.body());
+                }
+                JsonElement name = JsonParser.parseString(response.body()).getAsJsonObject().get("name");
+                if (name == null || name.isJsonNull()) {
+                    throw new RuntimeException("No name in Gemini cachedContents response");
+                }
+                return name.getAsString();
+            });
+    }
+    
+    /**
+     * Gets the smallest prefix Gemini caches for a model.
+     *
+     * <p>Counts are cl100k estimates of Gemini's tokens, which is close enough here: a
+     * prefix just below the real minimum fails to cache and is then sent inline.</p>
+     *
+     * @param modelId the model ID
+     * @return the minimum prefix size in tokens
+     */
+    static int minimumTokens(@NotNull String modelId) {
+        String id = modelId.toLowerCase();
+        if (id.contains("1.0") || id.contains("1.5") || id.equals("gemini-pro")) {
+            return 32_768;
+        }
+        return id.contains("pro") ? 4_096 : 1_024;
+    }
+    
+    private void put(String key, Entry entry) {
+        entries.put(key, entry);
+        if (entries.size() > MAX_ENTRIES) {
+            entries.remove(entries.keySet().iterator().next());
+        }
+    }
+    
+    private static String key(String prefix, String modelId, String apiKey) {
+        return sha256(apiKey + "\n" + modelId + "\n" + prefix);
+    }
+    
+    /**
+     * Computes the SHA-256 hash of a text.
+     *
+     * @param text the text to hash
+     * @return the hash as lowercase hex
+     */
+    @NotNull
+    static String sha256(@NotNull String text) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(text.getBytes(StandardCharsets.UTF_8));
+            StringBuilder hex = new StringBuilder(digest.length * 2);
+            for (byte b : digest) {
+                hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+    
+    /**
+     * The upload of a prefix, or null if it has not been started, and when to stop using it.
+     */
+    private static final class Entry {
+        private final CompletableFuture<String> name;
+        private final long expiresAt;
+        
+        private Entry(@Nullable CompletableFuture<String> name, long expiresAt) {
+            this.name = name;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
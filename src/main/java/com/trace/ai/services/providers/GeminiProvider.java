@@ -6,17 +6,27 @@ import com.google.gson.JsonParser;
 import com.intellij.openapi.diagnostic.Logger;
 import com.trace.ai.models.AIAnalysisResult;
 import com.trace.ai.configuration.AIServiceType;
+import com.trace.ai.services.http.AsyncExchange;
+import com.trace.ai.services.http.CompressedBodyHandlers;
+import com.trace.ai.services.http.HttpClientRegistry;
+import com.trace.ai.services.http.HttpOperation;
+import com.trace.ai.prompts.PromptLayout;
+import com.trace.ai.services.resilience.ProviderHttpException;
+import com.trace.ai.services.resilience.ResiliencePolicy;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 import java.net.URI;
 import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
-import java.time.Duration;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
 import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
 
 /**
  * Google Gemini-specific AI service provider implementation.
@@ -27,6 +37,8 @@ import com.google.gson.JsonArray;
  * <p>Features:</p>
  * <ul>
  *   <li>Google Gemini GenerateContent API integration</li>
+ *   <li>Streaming responses via StreamGenerateContent and server-sent events</li>
+ *   <li>Context caching of the stable prompt prefix, with cache usage metrics</li>
  *   <li>Support for multiple Gemini models (gemini-pro, gemini-pro-vision, etc.)</li>
  *   <li>Gemini-specific request and response formatting</li>
  *   <li>Comprehensive error handling for Gemini API errors</li>
@@ -43,15 +55,20 @@ public class GeminiProvider implements AIServiceProvider {
     // Google Gemini API Configuration
     private static final String API_BASE_URL = "https://generativelanguage.googleapis.com/v1beta/models/";
     private static final String API_ENDPOINT = ":generateContent";
+    private static final String STREAMING_API_ENDPOINT = ":streamGenerateContent";
     private static final int DEFAULT_MAX_TOKENS = 2000;
     private static final double DEFAULT_TEMPERATURE = 0.3;
-    private static final Duration REQUEST_TIMEOUT = Duration.ofSeconds(30);
     
     // JSON Processing
     private final Gson gson = new Gson();
     
-    // HTTP client for making requests
-    private final HttpClient httpClient;
+    // HTTP clients and timeouts for making requests
+    private final HttpClientRegistry httpClients;
+    
+    // Stable prompt prefixes uploaded to Gemini's context cache
+    private final GeminiContextCache contextCache;
+    
+    private final PromptCacheMetrics promptCacheMetrics = new PromptCacheMetrics();
     
     /**
      * Constructor for GeminiProvider.
@@ -59,7 +76,20 @@ public class GeminiProvider implements AIServiceProvider {
      * @param httpClient the HTTP client to use for requests
      */
     public GeminiProvider(@NotNull HttpClient httpClient) {
-        this.httpClient = httpClient;
+        this(HttpClientRegistry.ofClient(httpClient));
+    }
+    
+    /**
+     * Constructor for GeminiProvider that takes its HTTP clients from a registry.
+     * 
+     * <p>Analysis requests use the {@link HttpOperation#ANALYSIS} client and model discovery
+     * uses the {@link HttpOperation#DISCOVERY} client, each with its own timeouts.</p>
+     * 
+     * @param httpClients the registry to take HTTP clients and timeouts from
+     */
+    public GeminiProvider(@NotNull HttpClientRegistry httpClients) {
+        this.httpClients = httpClients;
+        this.contextCache = new GeminiContextCache(httpClients);
     }
     
     @Override
@@ -68,17 +98,15 @@ public class GeminiProvider implements AIServiceProvider {
             return CompletableFuture.completedFuture(false);
         }
         
-        return CompletableFuture.supplyAsync(() -> {
-            try {
-                // Test with a simple prompt
-                String testPrompt = "Hello";
-                analyze(testPrompt, "gemini-pro", apiKey).get();
-                LOG.info("Gemini connection validation successful");
-                return true;
-            } catch (Exception e) {
-                LOG.warn("Gemini connection validation failed: " + e.getMessage());
+        // Test with a simple prompt
+        String testPrompt = "Hello";
+        return analyze(testPrompt, "gemini-pro", apiKey).handle((result, error) -> {
+            if (error != null) {
+                LOG.warn("Gemini connection validation failed: " + AsyncExchange.unwrap(error).getMessage());
                 return false;
             }
+            LOG.info("Gemini connection validation successful");
+            return true;
         });
     }
     
@@ -86,89 +114,152 @@ public class GeminiProvider implements AIServiceProvider {
     public CompletableFuture<AIAnalysisResult> analyze(@NotNull String prompt, 
                                                       @NotNull String modelId, 
                                                       @NotNull String apiKey) {
-        if (prompt == null || prompt.trim().isEmpty()) {
-            throw new IllegalArgumentException("Prompt cannot be null or empty");
-        }
-        if (modelId == null || modelId.trim().isEmpty()) {
-            throw new IllegalArgumentException("Model ID cannot be null or empty");
-        }
-        if (apiKey == null || apiKey.trim().isEmpty()) {
-            throw new IllegalArgumentException("API key cannot be null or empty");
-        }
+        validateAnalysisArguments(prompt, modelId, apiKey);
         
-        return CompletableFuture.supplyAsync(() -> {
-            long startTime = System.currentTimeMillis();
+        long startTime = System.currentTimeMillis();
+        LOG.info("Starting Gemini analysis with model: " + modelId);
             
-            try {
-                LOG.info("Starting Gemini analysis with model: " + modelId);
+        // Build Gemini-specific request, naming the cache of the stable prefix if there is one
+        String prefix = PromptLayout.stablePrefix(prompt);
+        String cacheName = contextCache.lookup(prefix, modelId, apiKey);
+        JsonObject request = buildGeminiRequest(prompt, modelId, cacheName);
                 
-                // Build Gemini-specific request
-                JsonObject request = buildGeminiRequest(prompt, modelId);
+        // Send the HTTP request without blocking
+        String url = API_BASE_URL + modelId + API_ENDPOINT + "?key=" + apiKey;
+        CompletableFuture<HttpResponse<String>> exchange =
+            httpClients.getClient(HttpOperation.ANALYSIS)
+                .sendAsync(buildHttpRequest(request, url, true), CompressedBodyHandlers.ofString());
+        exchange.thenAccept(response -> invalidateRejectedCache(cacheName, response.statusCode(), prefix, modelId, apiKey));
                 
-                // Make HTTP request
-                String response = executeGeminiRequest(request, modelId, apiKey);
+        CompletableFuture<AIAnalysisResult> analysis = exchange.thenApply(response -> {
+            if (response.statusCode() != 200) {
+                throw new ProviderHttpException("Gemini API request failed with status " + 
+                        response.statusCode() + ": " + response.body(), response.statusCode(),
+                        ProviderHttpException.parseRetryAfter(response.headers().firstValue("Retry-After").orElse(null)));
+            }
                 
-                // Parse Gemini-specific response
-                AIAnalysisResult result = parseGeminiResponse(response, modelId, startTime);
+            // Parse Gemini-specific response
+            AIAnalysisResult result = parseGeminiResponse(response.body(), modelId, startTime);
                 
-                LOG.info("Gemini analysis completed in " + (System.currentTimeMillis() - startTime) + "ms");
+            LOG.info("Gemini analysis completed in " + (System.currentTimeMillis() - startTime) + "ms");
                 
-                return result;
+            return result;
+        }).exceptionally(error -> {
+            Throwable cause = AsyncExchange.unwrap(error);
+            LOG.error("Gemini analysis failed", cause);
+            throw new RuntimeException("Gemini analysis failed: " + cause.getMessage(), cause);
+        });
+        return AsyncExchange.cancelWith(analysis, exchange);
+    }
+    
+    @Override
+    public CompletableFuture<AIAnalysisResult> analyzeStreaming(@NotNull String prompt,
+                                                               @NotNull String modelId,
+                                                               @NotNull String apiKey,
+                                                               @NotNull Consumer<String> onPartialText) {
+        validateAnalysisArguments(prompt, modelId, apiKey);
+        
+        long startTime = System.currentTimeMillis();
+        LOG.info("Starting streaming Gemini analysis with model: " + modelId);
+            
+        StringBuilder text = new StringBuilder();
+        AtomicReference<JsonObject> usage = new AtomicReference<>();
+        String prefix = PromptLayout.stablePrefix(prompt);
+        String cacheName = contextCache.lookup(prefix, modelId, apiKey);
+        CompletableFuture<HttpResponse<Void>> exchange = executeGeminiStreamingRequest(
+            buildGeminiRequest(prompt, modelId, cacheName), modelId, apiKey, chunk -> {
+                if (text.length() == 0) {
+                    LOG.debug("Gemini time to first token: " + (System.currentTimeMillis() - startTime) + "ms");
+                }
+                text.append(chunk);
+                onPartialText.accept(chunk);
+            }, usage);
+        exchange.whenComplete((response, error) -> {
+            ProviderHttpException httpError = error != null
+                ? ResiliencePolicy.findCause(error, ProviderHttpException.class)
+                : null;
+            if (httpError != null) {
+                invalidateRejectedCache(cacheName, httpError.getStatusCode(), prefix, modelId, apiKey);
+            }
+        });
                 
-            } catch (Exception e) {
-                LOG.error("Gemini analysis failed", e);
-                throw new RuntimeException("Gemini analysis failed: " + e.getMessage(), e);
+        CompletableFuture<AIAnalysisResult> analysis = exchange.thenApply(response -> {
+            if (text.length() == 0) {
+                throw new RuntimeException("No text in Gemini response stream");
             }
+            if (usage.get() != null) {
+                recordGeminiUsage(usage.get(), promptCacheMetrics);
+            }
+                
+            long processingTime = System.currentTimeMillis() - startTime;
+            LOG.info("Streaming Gemini analysis completed in " + processingTime + "ms");
+                
+            return new AIAnalysisResult(
+                text.toString(),
+                AIServiceType.GEMINI,
+                modelId,
+                System.currentTimeMillis(),
+                processingTime
+            );
+        }).exceptionally(error -> {
+            Throwable cause = AsyncExchange.unwrap(error);
+            LOG.error("Streaming Gemini analysis failed", cause);
+            throw new RuntimeException("Gemini analysis failed: " + cause.getMessage(), cause);
         });
+        return AsyncExchange.cancelWith(analysis, exchange);
     }
     
     @Override
     public CompletableFuture<String[]> discoverAvailableModels(@NotNull String apiKey) {
-        return CompletableFuture.supplyAsync(() -> {
-            try {
-                // Query Gemini's models endpoint to get available models
-                HttpRequest request = HttpRequest.newBuilder()
-                    .uri(URI.create("https://generativelanguage.googleapis.com/v1beta/models?key=" + apiKey))
-                    .GET()
-                    .timeout(REQUEST_TIMEOUT)
-                    .build();
+        // Query Gemini's models endpoint to get available models
+        HttpRequest request = CompressedBodyHandlers.acceptGzip(
+                httpClients.newRequest(HttpOperation.DISCOVERY, URI.create("https://generativelanguage.googleapis.com/v1beta/models?key=" + apiKey)))
+            .GET()
+            .build();
                 
-                HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
+        CompletableFuture<HttpResponse<String>> exchange =
+            httpClients.getClient(HttpOperation.DISCOVERY).sendAsync(request, CompressedBodyHandlers.ofString());
                 
-                if (response.statusCode() == 200) {
-                    JsonObject jsonResponse = JsonParser.parseString(response.body()).getAsJsonObject();
-                    JsonArray models = jsonResponse.getAsJsonArray("models");
+        CompletableFuture<String[]> discovered = exchange.thenApply(response -> {
+            if (response.statusCode() == 200) {
+                JsonObject jsonResponse = JsonParser.parseString(response.body()).getAsJsonObject();
+                JsonArray models = jsonResponse.getAsJsonArray("models");
                     
-                    List<String> availableModels = new ArrayList<>();
-                    for (int i = 0; i < models.size(); i++) {
-                        JsonObject model = models.get(i).getAsJsonObject();
-                        String modelId = model.get("name").getAsString().replace("models/", "");
+                List<String> availableModels = new ArrayList<>();
+                for (int i = 0; i < models.size(); i++) {
+                    JsonObject model = models.get(i).getAsJsonObject();
+                    String modelId = model.get("name").getAsString().replace("models/", "");
                         
-                        // Check if model supports generateContent
-                        if (model.has("supportedGenerationMethods")) {
-                            JsonArray methods = model.getAsJsonArray("supportedGenerationMethods");
-                            for (int j = 0; j < methods.size(); j++) {
-                                if ("generateContent".equals(methods.get(j).getAsString())) {
-                                    availableModels.add(modelId);
-                                    break;
-                                }
+                    // Check if model supports generateContent
+                    if (model.has("supportedGenerationMethods")) {
+                        JsonArray methods = model.getAsJsonArray("supportedGenerationMethods");
+                        for (int j = 0; j < methods.size(); j++) {
+                            if ("generateContent".equals(methods.get(j).getAsString())) {
+                                availableModels.add(modelId);
+                                break;
                             }
                         }
                     }
-                    
-                    LOG.info("Discovered " + availableModels.size() + " Gemini models");
-                    return availableModels.toArray(new String[0]);
-                } else {
-                    LOG.warn("Failed to discover Gemini models: " + response.statusCode());
-                    // Return default models as fallback
-                    return new String[]{"gemini-1.5-flash", "gemini-1.5-pro"};
                 }
-            } catch (Exception e) {
-                LOG.warn("Error discovering Gemini models: " + e.getMessage());
+                    
+                LOG.info("Discovered " + availableModels.size() + " Gemini models");
+                return availableModels.toArray(new String[0]);
+            } else {
+                LOG.warn("Failed to discover Gemini models: " + response.statusCode());
                 // Return default models as fallback
                 return new String[]{"gemini-1.5-flash", "gemini-1.5-pro"};
             }
+        }).exceptionally(error -> {
+            LOG.warn("Error discovering Gemini models: " + AsyncExchange.unwrap(error).getMessage());
+            // Return default models as fallback
+            return new String[]{"gemini-1.5-flash", "gemini-1.5-pro"};
         });
+        return AsyncExchange.cancelWith(discovered, exchange);
+    }
+    
+    @Override
+    public PromptCacheMetrics getPromptCacheMetrics() {
+        return promptCacheMetrics;
     }
     
     @Override
@@ -184,12 +275,20 @@ public class GeminiProvider implements AIServiceProvider {
     /**
      * Builds a Gemini-specific request JSON.
      * 
+     * <p>When the stable prefix of the prompt is in the context cache, the request names
+     * the cache and only sends the rest of the prompt.</p>
+     * 
      * @param prompt the prompt to analyze
      * @param modelId the model ID to use
+     * @param cacheName the context cache holding the prompt's stable prefix, or null to send the whole prompt
      * @return the request JSON object
      */
-    private JsonObject buildGeminiRequest(@NotNull String prompt, @NotNull String modelId) {
+    private JsonObject buildGeminiRequest(@NotNull String prompt, @NotNull String modelId, @Nullable String cacheName) {
         JsonObject request = new JsonObject();
+        if (cacheName != null) {
+            request.addProperty("cachedContent", cacheName);
+            prompt = PromptLayout.volatileSuffix(prompt);
+        }
         
         // Add generation config
         JsonObject generationConfig = new JsonObject();
@@ -218,35 +317,61 @@ public class GeminiProvider implements AIServiceProvider {
     }
     
     /**
-     * Executes an HTTP request to the Gemini API.
+     * Sends a streaming HTTP request to the Gemini API and reads the response as it arrives.
+     * 
+     * <p>{@code alt=sse} makes Gemini send one server-sent event per response chunk instead
+     * of a single JSON array. The request timeout only covers the wait for the response
+     * headers, so a long generation is not cut off once the first chunk has been received.
+     * Chunks are parsed on the HTTP client's threads as they are received; no thread waits
+     * for the stream.</p>
      * 
      * @param request the request JSON object
      * @param modelId the model ID to use
      * @param apiKey the API key for authentication
-     * @return the response body as a string
-     * @throws Exception if the request fails
+     * @param onText receives each non-empty text chunk
+     * @param usage set to the last chunk that reports usage metadata
+     * @return a CompletableFuture that completes when the stream has ended, or fails if the
+     *         request fails or the stream reports an error
+     */
+    private CompletableFuture<HttpResponse<Void>> executeGeminiStreamingRequest(@NotNull JsonObject request,
+                                                                             @NotNull String modelId,
+                                                                             @NotNull String apiKey,
+                                                                             @NotNull Consumer<String> onText,
+                                                                             @NotNull AtomicReference<JsonObject> usage) {
+        String url = API_BASE_URL + modelId + STREAMING_API_ENDPOINT + "?alt=sse&key=" + apiKey;
+        HttpRequest httpRequest = buildHttpRequest(request, url, false);
+        
+        return httpClients.getClient(HttpOperation.ANALYSIS).sendAsync(httpRequest, new ServerSentEventBodyHandler("Gemini", data -> {
+            JsonObject chunk = JsonParser.parseString(data).getAsJsonObject();
+            String text = extractGeminiStreamText(chunk);
+            if (chunk.has("usageMetadata")) {
+                usage.set(chunk);
+            }
+            if (!text.isEmpty()) {
+                onText.accept(text);
+            }
+        }));
+    }
+    
+    /**
+     * Builds the HTTP request for a GenerateContent call.
+     * 
+     * @param request the request JSON object
+     * @param url the endpoint URL including the API key
+     * @param acceptGzip whether to ask for a compressed response, which streamed responses should not
+     * @return the HTTP request
      */
-    private String executeGeminiRequest(@NotNull JsonObject request, 
-                                      @NotNull String modelId, 
-                                      @NotNull String apiKey) throws Exception {
+    private HttpRequest buildHttpRequest(@NotNull JsonObject request, @NotNull String url, boolean acceptGzip) {
         String requestBody = gson.toJson(request);
-        String url = API_BASE_URL + modelId + API_ENDPOINT + "?key=" + apiKey;
         
-        HttpRequest httpRequest = HttpRequest.newBuilder()
-                .uri(URI.create(url))
+        HttpRequest.Builder builder = httpClients.newRequest(HttpOperation.ANALYSIS, URI.create(url));
+        if (acceptGzip) {
+            CompressedBodyHandlers.acceptGzip(builder);
+        }
+        return builder
                 .header("Content-Type", "application/json")
                 .POST(HttpRequest.BodyPublishers.ofString(requestBody))
-                .timeout(REQUEST_TIMEOUT)
                 .build();
-        
-        HttpResponse<String> response = httpClient.send(httpRequest, HttpResponse.BodyHandlers.ofString());
-        
-        if (response.statusCode() != 200) {
-            throw new RuntimeException("Gemini API request failed with status " + 
-                    response.statusCode() + ": " + response.body());
-        }
-        
-        return response.body();
     }
     
     /**
@@ -265,6 +390,7 @@ public class GeminiProvider implements AIServiceProvider {
             
             // Extract the analysis text
             String analysis = extractGeminiResponseText(jsonResponse);
+            recordGeminiUsage(jsonResponse, promptCacheMetrics);
             
             // Calculate processing time
             long processingTime = System.currentTimeMillis() - startTime;
@@ -321,4 +447,101 @@ public class GeminiProvider implements AIServiceProvider {
             throw new RuntimeException("Failed to extract analysis text: " + e.getMessage(), e);
         }
     }
-} 
\ No newline at end of file
+    
+    /**
+     * Extracts the text from one Gemini stream chunk.
+     * 
+     * <p>All text parts of the first candidate are joined. Chunks that carry only the
+     * finish reason, safety ratings or usage metadata yield an empty string.</p>
+     * 
+     * @param chunk the parsed chunk JSON
+     * @return the chunk text, or an empty string if the chunk has none
+     * @throws RuntimeException if the chunk reports an error
+     */
+    static String extractGeminiStreamText(@NotNull JsonObject chunk) {
+        if (chunk.has("error")) {
+            JsonElement error = chunk.get("error");
+            String message = error.isJsonObject() && error.getAsJsonObject().has("message")
+                ? error.getAsJsonObject().get("message").getAsString()
+                : error.toString();
+            throw new RuntimeException("Gemini stream reported an error: " + message);
+        }
+        
+        JsonArray candidates = chunk.getAsJsonArray("candidates");
+        if (candidates == null || candidates.size() == 0) {
+            return "";
+        }
+        
+        JsonObject content = candidates.get(0).getAsJsonObject().getAsJsonObject("content");
+        JsonArray parts = content != null ? content.getAsJsonArray("parts") : null;
+        if (parts == null) {
+            return "";
+        }
+        
+        StringBuilder text = new StringBuilder();
+        for (JsonElement part : parts) {
+            JsonElement partText = part.isJsonObject() ? part.getAsJsonObject().get("text") : null;
+            if (partText != null && !partText.isJsonNull()) {
+                text.append(partText.getAsString());
+            }
+        }
+        return text.toString();
+    }
+    
+    /**
+     * Records the prompt cache usage that a Gemini response reports.
+     * 
+     * <p>{@code cachedContentTokenCount} covers both explicit context caches and the
+     * implicit caching that newer models apply on their own.</p>
+     * 
+     * @param response the response, or the last stream chunk with usage metadata
+     * @param metrics the metrics to record into
+     * @return true if the response reported its prompt token count
+     */
+    static boolean recordGeminiUsage(@NotNull JsonObject response, @NotNull PromptCacheMetrics metrics) {
+        JsonElement usage = response.get("usageMetadata");
+        if (usage == null || !usage.isJsonObject() || !usage.getAsJsonObject().has("promptTokenCount")) {
+            return false;
+        }
+        JsonObject usageMetadata = usage.getAsJsonObject();
+        JsonElement cached = usageMetadata.get("cachedContentTokenCount");
+        metrics.record(usageMetadata.get("promptTokenCount").getAsLong(),
+            cached == null || cached.isJsonNull() ? 0 : cached.getAsLong());
+        LOG.debug("Gemini prompt cache: " + metrics);
+        return true;
+    }
+    
+    /**
+     * Forgets a context cache that Gemini rejected, so that the prefix is uploaded again for later requests.
+     * 
+     * @param cacheName the cache the request named, or null if it sent the whole prompt
+     * @param statusCode the HTTP status of the response
+     * @param prefix the stable prompt prefix
+     * @param modelId the model ID
+     * @param apiKey the API key
+     */
+    private void invalidateRejectedCache(@Nullable String cacheName, int statusCode,
+                                         @NotNull String prefix, @NotNull String modelId, @NotNull String apiKey) {
+        if (cacheName != null && statusCode >= 400 && statusCode < 500 && statusCode != 429) {
+            LOG.warn("Gemini rejected context cache " + cacheName + " with status " + statusCode);
+            contextCache.invalidate(prefix, modelId, apiKey);
+        }
+    }
+    
+    /**
+     * Validates the arguments of an analysis request.
+     * 
+     * @throws IllegalArgumentException if any argument is null or empty
+     */
+    private static void validateAnalysisArguments(String prompt, String modelId, String apiKey) {
+        if (prompt == null || prompt.trim().isEmpty()) {
+            throw new IllegalArgumentException("Prompt cannot be null or empty");
+        }
+        if (modelId == null || modelId.trim().isEmpty()) {
+            throw new IllegalArgumentException("Model ID cannot be null or empty");
+        }
+        if (apiKey == null || apiKey.trim().isEmpty()) {
+            throw new IllegalArgumentException("API key cannot be null or empty");
+        }
+    }
+}
\ No newline at end of file
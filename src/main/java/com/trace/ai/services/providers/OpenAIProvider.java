@@ -6,17 +6,25 @@ import com.google.gson.JsonParser;
 import com.intellij.openapi.diagnostic.Logger;
 import com.trace.ai.models.AIAnalysisResult;
 import com.trace.ai.configuration.AIServiceType;
+import com.trace.ai.services.http.AsyncExchange;
+import com.trace.ai.services.http.CompressedBodyHandlers;
+import com.trace.ai.services.http.HttpClientRegistry;
+import com.trace.ai.services.http.HttpOperation;
+import com.trace.ai.prompts.PromptLayout;
+import com.trace.ai.services.resilience.ProviderHttpException;
 import org.jetbrains.annotations.NotNull;
 
 import java.net.URI;
 import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
-import java.time.Duration;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
 import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
 
 /**
  * OpenAI-specific AI service provider implementation.
@@ -27,6 +35,8 @@ import com.google.gson.JsonArray;
  * <p>Features:</p>
  * <ul>
  *   <li>OpenAI Chat Completions API integration</li>
+ *   <li>Streaming responses via server-sent events</li>
+ *   <li>Prompt cache routing for stable prompt prefixes, with cache usage metrics</li>
  *   <li>Support for multiple OpenAI models (GPT-4, GPT-3.5-turbo, etc.)</li>
  *   <li>OpenAI-specific request and response formatting</li>
  *   <li>Comprehensive error handling for OpenAI API errors</li>
@@ -44,13 +54,14 @@ public class OpenAIProvider implements AIServiceProvider {
     private static final String API_URL = "https://api.openai.com/v1/chat/completions";
     private static final int DEFAULT_MAX_TOKENS = 2000;
     private static final double DEFAULT_TEMPERATURE = 0.3;
-    private static final Duration REQUEST_TIMEOUT = Duration.ofSeconds(30);
     
     // JSON Processing
     private final Gson gson = new Gson();
     
-    // HTTP client for making requests
-    private final HttpClient httpClient;
+    // HTTP clients and timeouts for making requests
+    private final HttpClientRegistry httpClients;
+    
+    private final PromptCacheMetrics promptCacheMetrics = new PromptCacheMetrics();
     
     /**
      * Constructor for OpenAIProvider.
@@ -58,7 +69,19 @@ public class OpenAIProvider implements AIServiceProvider {
      * @param httpClient the HTTP client to use for requests
      */
     public OpenAIProvider(@NotNull HttpClient httpClient) {
-        this.httpClient = httpClient;
+        this(HttpClientRegistry.ofClient(httpClient));
+    }
+    
+    /**
+     * Constructor for OpenAIProvider that takes its HTTP clients from a registry.
+     * 
+     * <p>Analysis requests use the {@link HttpOperation#ANALYSIS} client and model discovery
+     * uses the {@link HttpOperation#DISCOVERY} client, each with its own timeouts.</p>
+     * 
+     * @param httpClients the registry to take HTTP clients and timeouts from
+     */
+    public OpenAIProvider(@NotNull HttpClientRegistry httpClients) {
+        this.httpClients = httpClients;
     }
     
     @Override
@@ -67,17 +90,15 @@ public class OpenAIProvider implements AIServiceProvider {
             return CompletableFuture.completedFuture(false);
         }
         
-        return CompletableFuture.supplyAsync(() -> {
-            try {
-                // Test with a simple prompt
-                String testPrompt = "Hello";
-                analyze(testPrompt, "gpt-4o", apiKey).get();
-                LOG.info("OpenAI connection validation successful");
-                return true;
-            } catch (Exception e) {
-                LOG.warn("OpenAI connection validation failed: " + e.getMessage());
+        // Test with a simple prompt
+        String testPrompt = "Hello";
+        return analyze(testPrompt, "gpt-4o", apiKey).handle((result, error) -> {
+            if (error != null) {
+                LOG.warn("OpenAI connection validation failed: " + AsyncExchange.unwrap(error).getMessage());
                 return false;
             }
+            LOG.info("OpenAI connection validation successful");
+            return true;
         });
     }
     
@@ -85,83 +106,139 @@ public class OpenAIProvider implements AIServiceProvider {
     public CompletableFuture<AIAnalysisResult> analyze(@NotNull String prompt, 
                                                       @NotNull String modelId, 
                                                       @NotNull String apiKey) {
-        if (prompt == null || prompt.trim().isEmpty()) {
-            throw new IllegalArgumentException("Prompt cannot be null or empty");
-        }
-        if (modelId == null || modelId.trim().isEmpty()) {
-            throw new IllegalArgumentException("Model ID cannot be null or empty");
-        }
-        if (apiKey == null || apiKey.trim().isEmpty()) {
-            throw new IllegalArgumentException("API key cannot be null or empty");
-        }
+        validateAnalysisArguments(prompt, modelId, apiKey);
         
-        return CompletableFuture.supplyAsync(() -> {
-            long startTime = System.currentTimeMillis();
+        long startTime = System.currentTimeMillis();
+        LOG.info("Starting OpenAI analysis with model: " + modelId);
             
-            try {
-                LOG.info("Starting OpenAI analysis with model: " + modelId);
+        // Build OpenAI-specific request
+        JsonObject request = buildOpenAIRequest(prompt, modelId);
+                
+        // Send the HTTP request without blocking
+        CompletableFuture<HttpResponse<String>> exchange =
+            httpClients.getClient(HttpOperation.ANALYSIS)
+                .sendAsync(buildHttpRequest(request, apiKey, true), CompressedBodyHandlers.ofString());
                 
-                // Build OpenAI-specific request
-                JsonObject request = buildOpenAIRequest(prompt, modelId);
+        CompletableFuture<AIAnalysisResult> analysis = exchange.thenApply(response -> {
+            if (response.statusCode() != 200) {
+                throw new ProviderHttpException("OpenAI API request failed with status " + 
+                        response.statusCode() + ": " + response.body(), response.statusCode(),
+                        ProviderHttpException.parseRetryAfter(response.headers().firstValue("Retry-After").orElse(null)));
+            }
                 
-                // Make HTTP request
-                String response = executeOpenAIRequest(request, apiKey);
+            // Parse OpenAI-specific response
+            AIAnalysisResult result = parseOpenAIResponse(response.body(), modelId, startTime);
                 
-                // Parse OpenAI-specific response
-                AIAnalysisResult result = parseOpenAIResponse(response, modelId, startTime);
+            LOG.info("OpenAI analysis completed in " + (System.currentTimeMillis() - startTime) + "ms");
                 
-                LOG.info("OpenAI analysis completed in " + (System.currentTimeMillis() - startTime) + "ms");
+            return result;
+        }).exceptionally(error -> {
+            Throwable cause = AsyncExchange.unwrap(error);
+            LOG.error("OpenAI analysis failed", cause);
+            throw new RuntimeException("OpenAI analysis failed: " + cause.getMessage(), cause);
+        });
+        return AsyncExchange.cancelWith(analysis, exchange);
+    }
+    
+    @Override
+    public CompletableFuture<AIAnalysisResult> analyzeStreaming(@NotNull String prompt,
+                                                               @NotNull String modelId,
+                                                               @NotNull String apiKey,
+                                                               @NotNull Consumer<String> onPartialText) {
+        validateAnalysisArguments(prompt, modelId, apiKey);
+        
+        long startTime = System.currentTimeMillis();
+        LOG.info("Starting streaming OpenAI analysis with model: " + modelId);
+            
+        JsonObject request = buildOpenAIRequest(prompt, modelId);
+        request.addProperty("stream", true);
+        // The last chunk then reports usage, including cached prompt tokens
+        JsonObject streamOptions = new JsonObject();
+        streamOptions.addProperty("include_usage", true);
+        request.add("stream_options", streamOptions);
                 
-                return result;
+        StringBuilder text = new StringBuilder();
+        AtomicReference<JsonObject> usage = new AtomicReference<>();
+        CompletableFuture<HttpResponse<Void>> exchange = executeOpenAIStreamingRequest(
+            request, apiKey, delta -> {
+                if (text.length() == 0) {
+                    LOG.debug("OpenAI time to first token: " + (System.currentTimeMillis() - startTime) + "ms");
+                }
+                text.append(delta);
+                onPartialText.accept(delta);
+            }, usage);
                 
-            } catch (Exception e) {
-                LOG.error("OpenAI analysis failed", e);
-                throw new RuntimeException("OpenAI analysis failed: " + e.getMessage(), e);
+        CompletableFuture<AIAnalysisResult> analysis = exchange.thenApply(response -> {
+            if (text.length() == 0) {
+                throw new RuntimeException("No content in OpenAI response stream");
+            }
+            if (usage.get() != null) {
+                recordOpenAIUsage(usage.get(), promptCacheMetrics);
             }
+                
+            long processingTime = System.currentTimeMillis() - startTime;
+            LOG.info("Streaming OpenAI analysis completed in " + processingTime + "ms");
+                
+            return new AIAnalysisResult(
+                text.toString(),
+                AIServiceType.OPENAI,
+                modelId,
+                System.currentTimeMillis(),
+                processingTime
+            );
+        }).exceptionally(error -> {
+            Throwable cause = AsyncExchange.unwrap(error);
+            LOG.error("Streaming OpenAI analysis failed", cause);
+            throw new RuntimeException("OpenAI analysis failed: " + cause.getMessage(), cause);
         });
+        return AsyncExchange.cancelWith(analysis, exchange);
     }
     
     @Override
     public CompletableFuture<String[]> discoverAvailableModels(@NotNull String apiKey) {
-        return CompletableFuture.supplyAsync(() -> {
-            try {
-                // Query OpenAI's models endpoint to get available models
-                HttpRequest request = HttpRequest.newBuilder()
-                    .uri(URI.create("https://api.openai.com/v1/models"))
-                    .header("Authorization", "Bearer " + apiKey)
-                    .GET()
-                    .timeout(REQUEST_TIMEOUT)
-                    .build();
+        // Query OpenAI's models endpoint to get available models
+        HttpRequest request = CompressedBodyHandlers.acceptGzip(
+                httpClients.newRequest(HttpOperation.DISCOVERY, URI.create("https://api.openai.com/v1/models")))
+            .header("Authorization", "Bearer " + apiKey)
+            .GET()
+            .build();
                 
-                HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
+        CompletableFuture<HttpResponse<String>> exchange =
+            httpClients.getClient(HttpOperation.DISCOVERY).sendAsync(request, CompressedBodyHandlers.ofString());
                 
-                if (response.statusCode() == 200) {
-                    JsonObject jsonResponse = JsonParser.parseString(response.body()).getAsJsonObject();
-                    JsonArray data = jsonResponse.getAsJsonArray("data");
+        CompletableFuture<String[]> models = exchange.thenApply(response -> {
+            if (response.statusCode() == 200) {
+                JsonObject jsonResponse = JsonParser.parseString(response.body()).getAsJsonObject();
+                JsonArray data = jsonResponse.getAsJsonArray("data");
                     
-                    List<String> availableModels = new ArrayList<>();
-                    for (int i = 0; i < data.size(); i++) {
-                        JsonObject model = data.get(i).getAsJsonObject();
-                        String modelId = model.get("id").getAsString();
-                        // Only include GPT models
-                        if (modelId.startsWith("gpt-")) {
-                            availableModels.add(modelId);
-                        }
+                List<String> availableModels = new ArrayList<>();
+                for (int i = 0; i < data.size(); i++) {
+                    JsonObject model = data.get(i).getAsJsonObject();
+                    String modelId = model.get("id").getAsString();
+                    // Only include GPT models
+                    if (modelId.startsWith("gpt-")) {
+                        availableModels.add(modelId);
                     }
-                    
-                    LOG.info("Discovered " + availableModels.size() + " OpenAI models");
-                    return availableModels.toArray(new String[0]);
-                } else {
-                    LOG.warn("Failed to discover OpenAI models: " + response.statusCode());
-                    // Return default models as fallback
-                    return new String[]{"gpt-3.5-turbo", "gpt-4o", "gpt-4o-mini"};
                 }
-            } catch (Exception e) {
-                LOG.warn("Error discovering OpenAI models: " + e.getMessage());
+                    
+                LOG.info("Discovered " + availableModels.size() + " OpenAI models");
+                return availableModels.toArray(new String[0]);
+            } else {
+                LOG.warn("Failed to discover OpenAI models: " + response.statusCode());
                 // Return default models as fallback
                 return new String[]{"gpt-3.5-turbo", "gpt-4o", "gpt-4o-mini"};
             }
+        }).exceptionally(error -> {
+            LOG.warn("Error discovering OpenAI models: " + AsyncExchange.unwrap(error).getMessage());
+            // Return default models as fallback
+            return new String[]{"gpt-3.5-turbo", "gpt-4o", "gpt-4o-mini"};
         });
+        return AsyncExchange.cancelWith(models, exchange);
+    }
+    
+    @Override
+    public PromptCacheMetrics getPromptCacheMetrics() {
+        return promptCacheMetrics;
     }
     
     @Override
@@ -177,6 +254,10 @@ public class OpenAIProvider implements AIServiceProvider {
     /**
      * Builds an OpenAI-specific request JSON.
      * 
+     * <p>OpenAI caches prompt prefixes on its own. Requests whose prompts share a stable
+     * prefix carry the same {@code prompt_cache_key}, which routes them to the servers
+     * that hold that prefix.</p>
+     * 
      * @param prompt the prompt to analyze
      * @param modelId the model ID to use
      * @return the request JSON object
@@ -187,6 +268,11 @@ public class OpenAIProvider implements AIServiceProvider {
         request.addProperty("max_tokens", DEFAULT_MAX_TOKENS);
         request.addProperty("temperature", DEFAULT_TEMPERATURE);
         
+        String prefix = PromptLayout.stablePrefix(prompt);
+        if (!prefix.isEmpty()) {
+            request.addProperty("prompt_cache_key", promptCacheKey(prefix));
+        }
+        
         // Add messages array
         JsonObject message = new JsonObject();
         message.addProperty("role", "user");
@@ -201,32 +287,57 @@ public class OpenAIProvider implements AIServiceProvider {
     }
     
     /**
-     * Executes an HTTP request to the OpenAI API.
+     * Sends a streaming HTTP request to the OpenAI API and reads the response as it arrives.
+     * 
+     * <p>The request timeout only covers the wait for the response headers, so a long
+     * generation is not cut off once the first chunk has been received. Chunks are parsed
+     * on the HTTP client's threads as they are received; no thread waits for the stream.</p>
+     * 
+     * @param request the request JSON object with {@code stream} enabled
+     * @param apiKey the API key for authentication
+     * @param onDelta receives each non-empty content delta
+     * @param usage set to the chunk that reports usage
+     * @return a CompletableFuture that completes when the stream has ended, or fails if the
+     *         request fails or the stream reports an error
+     */
+    private CompletableFuture<HttpResponse<Void>> executeOpenAIStreamingRequest(@NotNull JsonObject request,
+                                                                             @NotNull String apiKey,
+                                                                             @NotNull Consumer<String> onDelta,
+                                                                             @NotNull AtomicReference<JsonObject> usage) {
+        HttpRequest httpRequest = buildHttpRequest(request, apiKey, false);
+        
+        return httpClients.getClient(HttpOperation.ANALYSIS).sendAsync(httpRequest, new ServerSentEventBodyHandler("OpenAI", data -> {
+            JsonObject chunk = JsonParser.parseString(data).getAsJsonObject();
+            String delta = extractOpenAIStreamDelta(chunk);
+            if (chunk.has("usage") && chunk.get("usage").isJsonObject()) {
+                usage.set(chunk);
+            }
+            if (!delta.isEmpty()) {
+                onDelta.accept(delta);
+            }
+        }));
+    }
+    
+    /**
+     * Builds the HTTP request for a Chat Completions call.
      * 
      * @param request the request JSON object
      * @param apiKey the API key for authentication
-     * @return the response body as a string
-     * @throws Exception if the request fails
+     * @param acceptGzip whether to ask for a compressed response, which streamed responses should not
+     * @return the HTTP request
      */
-    private String executeOpenAIRequest(@NotNull JsonObject request, @NotNull String apiKey) throws Exception {
+    private HttpRequest buildHttpRequest(@NotNull JsonObject request, @NotNull String apiKey, boolean acceptGzip) {
         String requestBody = gson.toJson(request);
         
-        HttpRequest httpRequest = HttpRequest.newBuilder()
-                .uri(URI.create(API_URL))
+        HttpRequest.Builder builder = httpClients.newRequest(HttpOperation.ANALYSIS, URI.create(API_URL));
+        if (acceptGzip) {
+            CompressedBodyHandlers.acceptGzip(builder);
+        }
+        return builder
                 .header("Content-Type", "application/json")
                 .header("Authorization", "Bearer " + apiKey)
                 .POST(HttpRequest.BodyPublishers.ofString(requestBody))
-                .timeout(REQUEST_TIMEOUT)
                 .build();
-        
-        HttpResponse<String> response = httpClient.send(httpRequest, HttpResponse.BodyHandlers.ofString());
-        
-        if (response.statusCode() != 200) {
-            throw new RuntimeException("OpenAI API request failed with status " + 
-                    response.statusCode() + ": " + response.body());
-        }
-        
-        return response.body();
     }
     
     /**
@@ -245,6 +356,7 @@ public class OpenAIProvider implements AIServiceProvider {
             
             // Extract the analysis text
             String analysis = extractOpenAIResponseText(jsonResponse);
+            recordOpenAIUsage(jsonResponse, promptCacheMetrics);
             
             // Calculate processing time
             long processingTime = System.currentTimeMillis() - startTime;
@@ -295,4 +407,89 @@ public class OpenAIProvider implements AIServiceProvider {
             throw new RuntimeException("Failed to extract analysis text: " + e.getMessage(), e);
         }
     }
-} 
\ No newline at end of file
+    
+    /**
+     * Extracts the content delta from one OpenAI stream chunk.
+     * 
+     * <p>Chunks that carry only the role, the finish reason or usage data have no content
+     * and yield an empty string.</p>
+     * 
+     * @param chunk the parsed chunk JSON
+     * @return the content delta, or an empty string if the chunk has none
+     * @throws RuntimeException if the chunk reports an error
+     */
+    static String extractOpenAIStreamDelta(@NotNull JsonObject chunk) {
+        if (chunk.has("error")) {
+            JsonElement error = chunk.get("error");
+            String message = error.isJsonObject() && error.getAsJsonObject().has("message")
+                ? error.getAsJsonObject().get("message").getAsString()
+                : error.toString();
+            throw new RuntimeException("OpenAI stream reported an error: " + message);
+        }
+        
+        JsonArray choices = chunk.getAsJsonArray("choices");
+        if (choices == null || choices.size() == 0) {
+            return "";
+        }
+        
+        JsonObject delta = choices.get(0).getAsJsonObject().getAsJsonObject("delta");
+        if (delta == null) {
+            return "";
+        }
+        
+        JsonElement content = delta.get("content");
+        return content == null || content.isJsonNull() ? "" : content.getAsString();
+    }
+    
+    /**
+     * Records the prompt cache usage that an OpenAI response reports.
+     * 
+     * @param response the response, or the stream chunk with usage
+     * @param metrics the metrics to record into
+     * @return true if the response reported its prompt token count
+     */
+    static boolean recordOpenAIUsage(@NotNull JsonObject response, @NotNull PromptCacheMetrics metrics) {
+        JsonElement usage = response.get("usage");
+        if (usage == null || !usage.isJsonObject() || !usage.getAsJsonObject().has("prompt_tokens")) {
+            return false;
+        }
+        JsonObject usageObject = usage.getAsJsonObject();
+        JsonElement details = usageObject.get("prompt_tokens_details");
+        JsonElement cached = details != null && details.isJsonObject()
+            ? details.getAsJsonObject().get("cached_tokens")
+            : null;
+        metrics.record(usageObject.get("prompt_tokens").getAsLong(),
+            cached == null || cached.isJsonNull() ? 0 : cached.getAsLong());
+        LOG.debug("OpenAI prompt cache: " + metrics);
+        return true;
+    }
+    
+    /**
+     * Derives the prompt cache key of a stable prompt prefix.
+     * 
+     * <p>The key only steers routing, so a rare collision costs at most a cache miss.</p>
+     * 
+     * @param prefix the stable prompt prefix
+     * @return the prompt cache key
+     */
+    static String promptCacheKey(@NotNull String prefix) {
+        return "trace-" + Integer.toHexString(prefix.hashCode());
+    }
+    
+    /**
+     * Validates the arguments of an analysis request.
+     * 
+     * @throws IllegalArgumentException if any argument is null or empty
+     */
+    private static void validateAnalysisArguments(String prompt, String modelId, String apiKey) {
+        if (prompt == null || prompt.trim().isEmpty()) {
+            throw new IllegalArgumentException("Prompt cannot be null or empty");
+        }
+        if (modelId == null || modelId.trim().isEmpty()) {
+            throw new IllegalArgumentException("Model ID cannot be null or empty");
+        }
+        if (apiKey == null || apiKey.trim().isEmpty()) {
+            throw new IllegalArgumentException("API key cannot be null or empty");
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,114 @@
+package com.trace.ai.services.providers;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts how much of a provider's prompts were served from its prompt cache.
+ *
+ * <p>Providers report the prompt tokens of every response and how many of those were read
+ * from a cached prefix instead of being processed again. A request is a hit when any of
+ * its prompt tokens were cached. Cached tokens are billed at a discount and shorten the
+ * time to the first token, so the cached token ratio is the figure to watch.</p>
+ *
+ * <p>Instances are thread-safe.</p>
+ *
+ * @author Alex Ibasitas
+ * @since 1.0.0
+ */
+public final class PromptCacheMetrics {
+    
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder promptTokens = new LongAdder();
+    private final LongAdder cachedTokens = new LongAdder();
+    
+    /**
+     * Records the prompt usage of one response.
+     *
+     * @param promptTokenCount the prompt tokens of the request, including cached ones
+     * @param cachedTokenCount the prompt tokens read from the cache
+     */
+    public void record(long promptTokenCount, long cachedTokenCount) {
+        requests.increment();
+        if (cachedTokenCount > 0) {
+            hits.increment();
+        }
+        promptTokens.add(Math.max(0, promptTokenCount));
+        cachedTokens.add(Math.max(0, cachedTokenCount));
+    }
+    
+    /**
+     * Gets the number of responses recorded.
+     *
+     * @return the request count
+     */
+    public long getRequestCount() {
+        return requests.sum();
+    }
+    
+    /**
+     * Gets the number of responses with any cached prompt tokens.
+     *
+     * @return the hit count
+     */
+    public long getHitCount() {
+        return hits.sum();
+    }
+    
+    /**
+     * Gets the share of requests with any cached prompt tokens.
+     *
+     * @return the hit rate between 0 and 1, or 0 if nothing was recorded
+     */
+    public double getHitRate() {
+        long count = requests.sum();
+        return count == 0 ? 0 : (double) hits.sum() / count;
+    }
+    
+    /**
+     * Gets the prompt tokens of all recorded requests.
+     *
+     * @return the prompt token count
+     */
+    public long getPromptTokens() {
+        return promptTokens.sum();
+    }
+    
+    /**
+     * Gets the prompt tokens read from the cache.
+     *
+     * @return the cached token count
+     */
+    public long getCachedTokens() {
+        return cachedTokens.sum();
+    }
+    
+    /**
+     * Gets the share of prompt tokens read from the cache.
+     *
+     * @return the cached token ratio between 0 and 1, or 0 if nothing was recorded
+     */
+    public double getCachedTokenRatio() {
+        long total = promptTokens.sum();
+        return total == 0 ? 0 : (double) cachedTokens.sum() / total;
+    }
+    
+    /**
+     * Clears all counts.
+     */
+    public void reset() {
+        requests.reset();
+        hits.reset();
+        promptTokens.reset();
+        cachedTokens.reset();
+    }
+    
+    @Override
+    @NotNull
+    public String toString() {
+        return String.format("%d requests, %.0f%% hits, %d of %d prompt tokens cached (%.0f%%)",
+            getRequestCount(), getHitRate() * 100, getCachedTokens(), getPromptTokens(), getCachedTokenRatio() * 100);
+    }
+}
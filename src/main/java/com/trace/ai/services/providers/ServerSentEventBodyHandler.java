@@ -0,0 +1,115 @@
+package com.trace.ai.services.providers;
+
+import com.trace.ai.services.resilience.ProviderHttpException;
+import org.jetbrains.annotations.NotNull;
+
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.Flow;
+import java.util.function.Consumer;
+
+/**
+ * Body handler that reads a {@code text/event-stream} response as it arrives without blocking a thread.
+ *
+ * <p>Response lines are pushed to a {@link ServerSentEventReader} by the HTTP client, so
+ * each event reaches the data consumer on a network thread as soon as it has been
+ * received. The response future completes once the stream has ended. A response with a
+ * status other than 200 fails with its body in the message instead of being read as
+ * events.</p>
+ *
+ * <p>If the data consumer throws, the remaining lines are discarded and the response
+ * fails with that exception once the stream has ended.</p>
+ *
+ * @author Alex Ibasitas
+ * @since 1.0.0
+ */
+final class ServerSentEventBodyHandler implements HttpResponse.BodyHandler<Void> {
+    
+    private final String serviceName;
+    private final Consumer<String> onData;
+    
+    /**
+     * Creates a body handler.
+     *
+     * @param serviceName the provider name used in error messages
+     * @param onData receives the data of each event, in order
+     */
+    ServerSentEventBodyHandler(@NotNull String serviceName, @NotNull Consumer<String> onData) {
+        this.serviceName = serviceName;
+        this.onData = onData;
+    }
+    
+    @Override
+    public HttpResponse.BodySubscriber<Void> apply(HttpResponse.ResponseInfo responseInfo) {
+        int statusCode = responseInfo.statusCode();
+        if (statusCode != 200) {
+            return HttpResponse.BodySubscribers.mapping(
+                HttpResponse.BodySubscribers.ofString(StandardCharsets.UTF_8), body -> {
+                    throw new ProviderHttpException(serviceName + " API request failed with status " + 
+                            statusCode + ": " + body, statusCode, ProviderHttpException.parseRetryAfter(
+                                responseInfo.headers().firstValue("Retry-After").orElse(null)));
+                });
+        }
+        
+        // A null separator accepts \n, \r and \r\n like BufferedReader.readLine
+        return HttpResponse.BodySubscribers.fromLineSubscriber(
+            new EventSubscriber(new ServerSentEventReader(onData)), EventSubscriber::finish,
+            StandardCharsets.UTF_8, null);
+    }
+    
+    /**
+     * Feeds response lines to a reader and remembers the first failure.
+     */
+    private static final class EventSubscriber implements Flow.Subscriber<String> {
+        
+        private final ServerSentEventReader reader;
+        
+        // Signals are delivered one at a time, and finish runs after onComplete
+        private RuntimeException failure;
+        
+        private EventSubscriber(ServerSentEventReader reader) {
+            this.reader = reader;
+        }
+        
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            subscription.request(Long.MAX_VALUE);
+        }
+        
+        @Override
+        public void onNext(String line) {
+            if (failure != null) {
+                return;
+            }
+            try {
+                reader.accept(line);
+            } catch (RuntimeException e) {
+                failure = e;
+            }
+        }
+        
+        @Override
+        public void onError(Throwable throwable) {
+            // The HTTP client fails the response future itself
+        }
+        
+        @Override
+        public void onComplete() {
+            if (failure != null) {
+                return;
+            }
+            try {
+                reader.finish();
+            } catch (RuntimeException e) {
+                failure = e;
+            }
+        }
+        
+        private Void finish() {
+            if (failure != null) {
+                throw failure;
+            }
+            return null;
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package com.trace.ai.services.providers;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.function.Consumer;
+
+/**
+ * Minimal reader for {@code text/event-stream} response bodies.
+ *
+ * <p>Both OpenAI and Gemini stream completions as server-sent events whose {@code data}
+ * fields carry one JSON chunk each. This reader only understands what those APIs send:</p>
+ * <ul>
+ *   <li>{@code data:} lines are collected and joined with newlines</li>
+ *   <li>A blank line dispatches the collected data as one event</li>
+ *   <li>Comment lines starting with {@code :} and all other fields are ignored</li>
+ *   <li>An event whose data is {@code [DONE]} ends the stream</li>
+ * </ul>
+ *
+ * <p>Lines are consumed as they arrive, so every event is dispatched as soon as its
+ * terminating blank line has been received. {@link ServerSentEventBodyHandler} feeds the
+ * lines one at a time with {@link #accept(String)} and calls {@link #finish()} when the
+ * body ends.</p>
+ *
+ * @author Alex Ibasitas
+ * @since 1.0.0
+ */
+final class ServerSentEventReader {
+    
+    static final String DONE_MARKER = "[DONE]";
+    
+    private static final String DATA_FIELD = "data";
+    
+    private final Consumer<String> onData;
+    
+    // Data lines of the event being read, null between events
+    private StringBuilder data;
+    private boolean done;
+    
+    /**
+     * Creates a reader that is fed one line at a time.
+     *
+     * @param onData receives the data of each event, in order
+     */
+    ServerSentEventReader(@NotNull Consumer<String> onData) {
+        this.onData = onData;
+    }
+    
+    /**
+     * Reads one response line. Lines after the {@code [DONE]} event are ignored.
+     *
+     * @param line the line, without its line terminator
+     * @return true if the stream has been ended by a {@code [DONE]} event
+     */
+    boolean accept(@NotNull String line) {
+        if (done) {
+            return true;
+        }
+        if (line.isEmpty()) {
+            if (data != null) {
+                String event = data.toString();
+                data = null;
+                done = dispatch(event);
+            }
+            return done;
+        }
+        if (line.startsWith(":")) {
+            return false;
+        }
+        
+        int colon = line.indexOf(':');
+        String field = colon < 0 ? line : line.substring(0, colon);
+        if (!DATA_FIELD.equals(field)) {
+            return false;
+        }
+        
+        // A single space after the colon is part of the syntax, not the value
+        String value = colon < 0 ? "" : line.substring(colon + 1);
+        if (value.startsWith(" ")) {
+            value = value.substring(1);
+        }
+        if (data == null) {
+            data = new StringBuilder(value);
+        } else {
+            data.append('\n').append(value);
+        }
+        return false;
+    }
+    
+    /**
+     * Ends the stream, dispatching data still pending as a final event.
+     *
+     * @return true if the stream was ended by a {@code [DONE]} event, false if it simply ended
+     */
+    boolean finish() {
+        if (!done && data != null) {
+            String event = data.toString();
+            data = null;
+            done = dispatch(event);
+        }
+        return done;
+    }
+    
+    /**
+     * Dispatches one event.
+     *
+     * @return true if the event marks the end of the stream
+     */
+    private boolean dispatch(String event) {
+        if (DONE_MARKER.equals(event)) {
+            return true;
+        }
+        onData.accept(event);
+        return false;
+    }
+}
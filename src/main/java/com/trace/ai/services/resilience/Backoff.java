@@ -0,0 +1,62 @@
+package com.trace.ai.services.resilience;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.DoubleSupplier;
+
+/**
+ * Computes waits between retries: exponential backoff with jitter, never shorter than the
+ * provider's {@code Retry-After}.
+ *
+ * <p>Half of each wait is fixed and half is random. The random half spreads out retries of
+ * requests that failed together, such as a batch hitting a rate limit, so that they do not
+ * all come back at the same moment.</p>
+ *
+ * @author Alex Ibasitas
+ * @since 1.0.0
+ */
+public final class Backoff {
+    
+    /**
+     * Private constructor to prevent instantiation.
+     */
+    private Backoff() {
+        throw new UnsupportedOperationException("Utility class cannot be instantiated");
+    }
+    
+    /**
+     * Computes the wait before the next attempt.
+     *
+     * @param attemptIndex the zero-based index of the attempt that failed
+     * @param initialMs the wait after the first failed attempt, doubled after each further failure
+     * @param maxMs the longest wait, unless the provider asks for longer
+     * @param retryAfter the delay requested by the provider, or null if none was given
+     * @return the wait in milliseconds
+     */
+    public static long delayMillis(int attemptIndex, long initialMs, long maxMs, @Nullable Duration retryAfter) {
+        return delayMillis(attemptIndex, initialMs, maxMs, retryAfter, () -> ThreadLocalRandom.current().nextDouble());
+    }
+    
+    /**
+     * Computes the wait before the next attempt with the given source of randomness.
+     *
+     * @param attemptIndex the zero-based index of the attempt that failed
+     * @param initialMs the wait after the first failed attempt, doubled after each further failure
+     * @param maxMs the longest wait, unless the provider asks for longer
+     * @param retryAfter the delay requested by the provider, or null if none was given
+     * @param random supplies values in [0, 1)
+     * @return the wait in milliseconds
+     */
+    static long delayMillis(int attemptIndex, long initialMs, long maxMs, @Nullable Duration retryAfter,
+                            DoubleSupplier random) {
+        long exponential = Math.min(initialMs << Math.min(attemptIndex, 30), maxMs);
+        long half = exponential / 2;
+        long delay = half + (long) (random.getAsDouble() * (exponential - half));
+        if (retryAfter != null) {
+            delay = Math.max(delay, retryAfter.toMillis());
+        }
+        return delay;
+    }
+}
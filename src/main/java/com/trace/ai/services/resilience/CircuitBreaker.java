@@ -0,0 +1,153 @@
+package com.trace.ai.services.resilience;
+
+import com.intellij.openapi.diagnostic.Logger;
+import org.jetbrains.annotations.NotNull;
+
+import java.time.Duration;
+import java.util.function.LongSupplier;
+
+/**
+ * Stops sending requests to a provider that keeps failing.
+ *
+ * <p>After {@link #DEFAULT_FAILURE_THRESHOLD} consecutive transient failures the breaker
+ * opens and requests fail immediately with {@link CircuitOpenException}, which lets callers
+ * fail over to another provider instead of waiting through retries. Once the open duration
+ * has passed, a single trial request is let through: its success closes the breaker and its
+ * failure opens it again.</p>
+ *
+ * <p>This class is thread-safe.</p>
+ *
+ * @author Alex Ibasitas
+ * @since 1.0.0
+ */
+public final class CircuitBreaker {
+    
+    private static final Logger LOG = Logger.getInstance(CircuitBreaker.class);
+    
+    public static final int DEFAULT_FAILURE_THRESHOLD = 5;
+    public static final Duration DEFAULT_OPEN_DURATION = Duration.ofSeconds(30);
+    
+    /**
+     * State of a circuit breaker.
+     */
+    public enum State {
+        /** Requests are sent normally. */
+        CLOSED,
+        /** Requests fail immediately. */
+        OPEN,
+        /** One trial request has been let through and its outcome decides the next state. */
+        HALF_OPEN
+    }
+    
+    private final String name;
+    private final int failureThreshold;
+    private final long openDurationNanos;
+    private final LongSupplier clock;
+    
+    // Guarded by this
+    private State state = State.CLOSED;
+    private int consecutiveFailures;
+    private long openedAt;
+    
+    /**
+     * Creates a circuit breaker with the default threshold and open duration.
+     *
+     * @param name the name used in log and error messages
+     */
+    public CircuitBreaker(@NotNull String name) {
+        this(name, DEFAULT_FAILURE_THRESHOLD, DEFAULT_OPEN_DURATION, System::nanoTime);
+    }
+    
+    /**
+     * Creates a circuit breaker.
+     *
+     * @param name the name used in log and error messages
+     * @param failureThreshold the consecutive failures that open the breaker
+     * @param openDuration how long the breaker stays open before a trial request
+     * @param clock supplies the current time in nanoseconds
+     * @throws IllegalArgumentException if the threshold or duration is not positive
+     */
+    CircuitBreaker(@NotNull String name, int failureThreshold, @NotNull Duration openDuration,
+                   @NotNull LongSupplier clock) {
+        if (failureThreshold <= 0) {
+            throw new IllegalArgumentException("Failure threshold must be positive");
+        }
+        if (openDuration == null || openDuration.isNegative() || openDuration.isZero()) {
+            throw new IllegalArgumentException("Open duration must be positive");
+        }
+        this.name = name;
+        this.failureThreshold = failureThreshold;
+        this.openDurationNanos = openDuration.toNanos();
+        this.clock = clock;
+    }
+    
+    /**
+     * Asks to send a request.
+     *
+     * @return true if the request may be sent, false if the breaker is open
+     */
+    public synchronized boolean tryAcquire() {
+        switch (state) {
+            case CLOSED:
+                return true;
+            case OPEN:
+                if (clock.getAsLong() - openedAt < openDurationNanos) {
+                    return false;
+                }
+                LOG.info(name + " circuit half-open, sending a trial request");
+                state = State.HALF_OPEN;
+                openedAt = clock.getAsLong();
+                return true;
+            default:
+                // A trial request is in flight; allow another if it was cancelled without an outcome
+                if (clock.getAsLong() - openedAt < openDurationNanos) {
+                    return false;
+                }
+                openedAt = clock.getAsLong();
+                return true;
+        }
+    }
+    
+    /**
+     * Records a request that reached the provider and got an answer.
+     */
+    public synchronized void recordSuccess() {
+        if (state != State.CLOSED) {
+            LOG.info(name + " circuit closed");
+        }
+        state = State.CLOSED;
+        consecutiveFailures = 0;
+    }
+    
+    /**
+     * Records a request that failed with a transient error.
+     */
+    public synchronized void recordFailure() {
+        consecutiveFailures++;
+        if (state == State.HALF_OPEN || (state == State.CLOSED && consecutiveFailures >= failureThreshold)) {
+            LOG.warn(name + " circuit opened after " + consecutiveFailures + " consecutive failures");
+            state = State.OPEN;
+            openedAt = clock.getAsLong();
+        }
+    }
+    
+    /**
+     * Gets the current state.
+     *
+     * @return the state
+     */
+    @NotNull
+    public synchronized State getState() {
+        return state;
+    }
+    
+    /**
+     * Gets the name of the breaker.
+     *
+     * @return the name
+     */
+    @NotNull
+    public String getName() {
+        return name;
+    }
+}
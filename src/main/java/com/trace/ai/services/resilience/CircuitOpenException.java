@@ -0,0 +1,21 @@
+package com.trace.ai.services.resilience;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Thrown instead of sending a request while a provider's {@link CircuitBreaker} is open.
+ *
+ * @author Alex Ibasitas
+ * @since 1.0.0
+ */
+public class CircuitOpenException extends RuntimeException {
+    
+    /**
+     * Creates a new circuit open exception.
+     *
+     * @param message the error message
+     */
+    public CircuitOpenException(@NotNull String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,76 @@
+package com.trace.ai.services.resilience;
+
+import java.util.Arrays;
+
+/**
+ * Keeps the latencies of a provider's most recent successful requests.
+ *
+ * <p>Used to decide when a request has become slow enough to hedge. Percentiles are only
+ * reported once {@link #MIN_SAMPLES} requests have been recorded, so that a few early
+ * requests cannot set an unrepresentative threshold.</p>
+ *
+ * <p>This class is thread-safe.</p>
+ *
+ * @author Alex Ibasitas
+ * @since 1.0.0
+ */
+public final class LatencyTracker {
+    
+    static final int DEFAULT_CAPACITY = 100;
+    static final int MIN_SAMPLES = 20;
+    
+    // Ring buffer of latencies in milliseconds, guarded by this
+    private final long[] samples;
+    private int next;
+    private int count;
+    
+    /**
+     * Creates a tracker of the last {@link #DEFAULT_CAPACITY} latencies.
+     */
+    public LatencyTracker() {
+        this(DEFAULT_CAPACITY);
+    }
+    
+    /**
+     * Creates a tracker of the last given number of latencies.
+     *
+     * @param capacity the number of latencies kept
+     * @throws IllegalArgumentException if capacity is not positive
+     */
+    LatencyTracker(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be positive");
+        }
+        this.samples = new long[capacity];
+    }
+    
+    /**
+     * Records the latency of a successful request.
+     *
+     * @param latencyMs the latency in milliseconds
+     */
+    public synchronized void record(long latencyMs) {
+        samples[next] = Math.max(0, latencyMs);
+        next = (next + 1) % samples.length;
+        count = Math.min(count + 1, samples.length);
+    }
+    
+    /**
+     * Gets a percentile of the recorded latencies.
+     *
+     * @param percentile the percentile between 0 and 1, for example 0.95
+     * @return the latency in milliseconds, or -1 if fewer than {@link #MIN_SAMPLES} latencies were recorded
+     */
+    public long getPercentile(double percentile) {
+        long[] sorted;
+        synchronized (this) {
+            if (count < MIN_SAMPLES) {
+                return -1;
+            }
+            sorted = Arrays.copyOf(samples, count);
+        }
+        Arrays.sort(sorted);
+        int index = (int) Math.ceil(percentile * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(index, sorted.length - 1))];
+    }
+}
@@ -0,0 +1,109 @@
+package com.trace.ai.services.resilience;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+
+/**
+ * Thrown when an AI provider answers a request with an unsuccessful HTTP status.
+ *
+ * <p>Carries the status code and the delay requested by the provider's {@code Retry-After}
+ * header so that {@link ResiliencePolicy} can decide whether and when to retry.</p>
+ *
+ * @author Alex Ibasitas
+ * @since 1.0.0
+ */
+public class ProviderHttpException extends RuntimeException {
+    
+    private final int statusCode;
+    private final Duration retryAfter;
+    
+    /**
+     * Creates a new provider HTTP exception.
+     *
+     * @param message the error message
+     * @param statusCode the HTTP status code of the response
+     * @param retryAfter the delay requested by the provider, or null if none was given
+     */
+    public ProviderHttpException(@NotNull String message, int statusCode, @Nullable Duration retryAfter) {
+        super(message);
+        this.statusCode = statusCode;
+        this.retryAfter = retryAfter;
+    }
+    
+    /**
+     * Gets the HTTP status code of the response.
+     *
+     * @return the status code
+     */
+    public int getStatusCode() {
+        return statusCode;
+    }
+    
+    /**
+     * Gets the delay requested by the provider.
+     *
+     * @return the requested delay, or null if the response had no usable Retry-After header
+     */
+    @Nullable
+    public Duration getRetryAfter() {
+        return retryAfter;
+    }
+    
+    /**
+     * Checks if the request may succeed when sent again.
+     *
+     * <p>Rate limiting (429), request timeouts (408) and server errors (5xx) are transient.
+     * Other client errors, such as an invalid API key, fail the same way every time.</p>
+     *
+     * @return true if the status is transient
+     */
+    public boolean isRetryable() {
+        return statusCode == 408 || isRateLimited() || statusCode >= 500;
+    }
+    
+    /**
+     * Checks if the provider rejected the request because too many were sent.
+     *
+     * <p>A rate-limited provider is healthy, so rate limiting does not count towards
+     * opening a {@link CircuitBreaker}.</p>
+     *
+     * @return true if the status is 429 (Too Many Requests)
+     */
+    public boolean isRateLimited() {
+        return statusCode == 429;
+    }
+    
+    /**
+     * Parses a {@code Retry-After} header value.
+     *
+     * <p>Both forms defined by HTTP are supported: a number of seconds and an HTTP date.</p>
+     *
+     * @param headerValue the header value, may be null
+     * @return the delay, or null if the value is missing or invalid
+     */
+    @Nullable
+    public static Duration parseRetryAfter(@Nullable String headerValue) {
+        if (headerValue == null || headerValue.trim().isEmpty()) {
+            return null;
+        }
+        String value = headerValue.trim();
+        try {
+            double seconds = Double.parseDouble(value);
+            return seconds >= 0 ? Duration.ofMillis((long) (seconds * 1000)) : null;
+        } catch (NumberFormatException e) {
+            // Not a number of seconds; try the HTTP date form
+        }
+        try {
+            ZonedDateTime retryAt = ZonedDateTime.parse(value, DateTimeFormatter.RFC_1123_DATE_TIME);
+            Duration delay = Duration.between(ZonedDateTime.now(retryAt.getZone()), retryAt);
+            return delay.isNegative() ? Duration.ZERO : delay;
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+    }
+}
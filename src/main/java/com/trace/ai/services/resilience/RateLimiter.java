@@ -0,0 +1,33 @@
+package com.trace.ai.services.resilience;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.time.Duration;
+
+/**
+ * Limits the rate at which requests are sent to a provider.
+ *
+ * <p>{@link ResiliencePolicy} takes permits before every attempt of a rate-limited request
+ * and pauses the limiter when the provider asks to retry after a delay, so that every
+ * request sharing the limiter waits too.</p>
+ *
+ * @author Alex Ibasitas
+ * @since 1.0.0
+ */
+public interface RateLimiter {
+    
+    /**
+     * Takes permits if they are available now, without blocking.
+     *
+     * @param permits the number of permits to take
+     * @return zero if the permits were taken, otherwise the nanoseconds to wait before trying again
+     */
+    long tryAcquire(long permits);
+    
+    /**
+     * Stops handing out permits for the given delay.
+     *
+     * @param delay how long to pause
+     */
+    void pause(@NotNull Duration delay);
+}
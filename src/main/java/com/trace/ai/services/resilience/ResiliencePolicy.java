@@ -0,0 +1,375 @@
+package com.trace.ai.services.resilience;
+
+import com.intellij.openapi.diagnostic.Logger;
+import com.trace.ai.services.http.AsyncExchange;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Retries, short-circuits and hedges the requests sent to one AI provider.
+ *
+ * <p>A request that fails with a transient error (rate limiting, a server error or an I/O
+ * failure) is sent again after an exponential, jittered backoff that is never shorter than
+ * the provider's {@code Retry-After}. Other errors, such as an invalid API key, fail at once.
+ * Waits are scheduled with {@link CompletableFuture#delayedExecutor(long, TimeUnit, Executor)}
+ * so that no thread is held while backing off.</p>
+ *
+ * <p>Every request first asks the provider's {@link CircuitBreaker}. While it is open the
+ * request fails immediately with {@link CircuitOpenException} so that the caller can fail
+ * over to another provider.</p>
+ *
+ * <p>A hedged request sends a second, identical attempt once the first has been running
+ * longer than the provider's recent 95th percentile latency. The first successful response
+ * wins and the other attempt is cancelled.</p>
+ *
+ * <p>A rate-limited request takes permits from a {@link RateLimiter} before every attempt,
+ * and waits for them like for a backoff. A {@code Retry-After} from the provider pauses the
+ * limiter, so that every request sharing it waits as long as the provider asked.</p>
+ *
+ * <p>Cancelling the returned future cancels every attempt in flight, which aborts their HTTP
+ * exchanges, and stops any further attempts.</p>
+ *
+ * @author Alex Ibasitas
+ * @since 1.0.0
+ */
+public final class ResiliencePolicy {
+    
+    private static final Logger LOG = Logger.getInstance(ResiliencePolicy.class);
+    
+    public static final int DEFAULT_MAX_ATTEMPTS = 3;
+    public static final long DEFAULT_INITIAL_BACKOFF_MS = 1000;
+    public static final long DEFAULT_MAX_BACKOFF_MS = 20000;
+    
+    static final double HEDGE_PERCENTILE = 0.95;
+    
+    private final String name;
+    private final int maxAttempts;
+    private final long initialBackoffMs;
+    private final long maxBackoffMs;
+    private final CircuitBreaker circuitBreaker;
+    private final LatencyTracker latencyTracker;
+    private final Executor executor;
+    
+    /**
+     * Creates a policy with the default attempts, backoff and circuit breaker.
+     *
+     * @param name the provider name used in log and error messages
+     * @param executor runs scheduled attempts
+     */
+    public ResiliencePolicy(@NotNull String name, @NotNull Executor executor) {
+        this(name, DEFAULT_MAX_ATTEMPTS, DEFAULT_INITIAL_BACKOFF_MS, DEFAULT_MAX_BACKOFF_MS,
+            new CircuitBreaker(name), new LatencyTracker(), executor);
+    }
+    
+    /**
+     * Creates a policy with its own circuit breaker.
+     *
+     * @param name the provider name used in log and error messages
+     * @param maxAttempts the maximum number of attempts per request
+     * @param initialBackoffMs the wait after the first failed attempt, doubled after each further failure
+     * @param maxBackoffMs the longest wait between attempts, unless the provider asks for longer
+     * @param executor runs scheduled attempts
+     * @throws IllegalArgumentException if maxAttempts is not positive
+     */
+    public ResiliencePolicy(@NotNull String name, int maxAttempts, long initialBackoffMs, long maxBackoffMs,
+                            @NotNull Executor executor) {
+        this(name, maxAttempts, initialBackoffMs, maxBackoffMs, new CircuitBreaker(name), new LatencyTracker(), executor);
+    }
+    
+    /**
+     * Creates a policy.
+     *
+     * @param name the provider name used in log and error messages
+     * @param maxAttempts the maximum number of attempts per request
+     * @param initialBackoffMs the wait after the first failed attempt, doubled after each further failure
+     * @param maxBackoffMs the longest wait between attempts, unless the provider asks for longer
+     * @param circuitBreaker the breaker of the provider
+     * @param latencyTracker the latencies of the provider's recent requests
+     * @param executor runs scheduled attempts
+     * @throws IllegalArgumentException if maxAttempts is not positive
+     */
+    ResiliencePolicy(@NotNull String name, int maxAttempts, long initialBackoffMs, long maxBackoffMs,
+                     @NotNull CircuitBreaker circuitBreaker, @NotNull LatencyTracker latencyTracker,
+                     @NotNull Executor executor) {
+        if (maxAttempts <= 0) {
+            throw new IllegalArgumentException("Max attempts must be positive");
+        }
+        this.name = name;
+        this.maxAttempts = maxAttempts;
+        this.initialBackoffMs = initialBackoffMs;
+        this.maxBackoffMs = maxBackoffMs;
+        this.circuitBreaker = circuitBreaker;
+        this.latencyTracker = latencyTracker;
+        this.executor = executor;
+    }
+    
+    /**
+     * Runs a request until it succeeds, fails with a permanent error or runs out of attempts.
+     *
+     * @param attempt starts one attempt of the request
+     * @param hedge true to send a second attempt when the first is slower than usual
+     * @return a future that completes with the first successful result
+     */
+    @NotNull
+    public <T> CompletableFuture<T> execute(@NotNull Supplier<CompletableFuture<T>> attempt, boolean hedge) {
+        return execute(attempt, hedge, () -> true);
+    }
+    
+    /**
+     * Runs a request until it succeeds, fails with a permanent error or runs out of attempts.
+     *
+     * <p>Streamed requests pass a {@code mayRetry} check that turns false once text has been
+     * delivered, since a second attempt would deliver that text again.</p>
+     *
+     * @param attempt starts one attempt of the request
+     * @param hedge true to send a second attempt when the first is slower than usual
+     * @param mayRetry checked after a failed attempt; false fails the request at once
+     * @return a future that completes with the first successful result
+     */
+    @NotNull
+    public <T> CompletableFuture<T> execute(@NotNull Supplier<CompletableFuture<T>> attempt, boolean hedge,
+                                            @NotNull BooleanSupplier mayRetry) {
+        return new Execution<>(attempt, hedge, mayRetry, null, 0, executor).start();
+    }
+    
+    /**
+     * Runs a rate-limited request until it succeeds, fails with a permanent error or runs out of attempts.
+     *
+     * <p>Bulk jobs pass their own executor, which then runs the attempts that were delayed by
+     * a backoff or by the rate limiter.</p>
+     *
+     * @param attempt starts one attempt of the request
+     * @param rateLimiter the limiter to take permits from before each attempt, or null to send unthrottled
+     * @param permits the permits each attempt takes, such as its estimated tokens
+     * @param executor runs scheduled attempts of this request
+     * @return a future that completes with the first successful result
+     */
+    @NotNull
+    public <T> CompletableFuture<T> execute(@NotNull Supplier<CompletableFuture<T>> attempt,
+                                            @Nullable RateLimiter rateLimiter, long permits,
+                                            @NotNull Executor executor) {
+        return new Execution<>(attempt, false, () -> true, rateLimiter, permits, executor).start();
+    }
+    
+    /**
+     * Gets the circuit breaker of the provider.
+     *
+     * @return the circuit breaker
+     */
+    @NotNull
+    public CircuitBreaker getCircuitBreaker() {
+        return circuitBreaker;
+    }
+    
+    /**
+     * Gets the latencies of the provider's recent requests.
+     *
+     * @return the latency tracker
+     */
+    @NotNull
+    public LatencyTracker getLatencyTracker() {
+        return latencyTracker;
+    }
+    
+    /**
+     * State of one request and its attempts.
+     */
+    private final class Execution<T> {
+        
+        private final Supplier<CompletableFuture<T>> attempt;
+        private final boolean hedge;
+        private final BooleanSupplier mayRetry;
+        private final RateLimiter rateLimiter;
+        private final long permits;
+        private final Executor executor;
+        private final CompletableFuture<T> result = new CompletableFuture<>();
+        
+        // Attempts of the current round, guarded by this; a hedged round has two
+        private final List<CompletableFuture<T>> inFlight = new ArrayList<>();
+        
+        private Execution(Supplier<CompletableFuture<T>> attempt, boolean hedge, BooleanSupplier mayRetry,
+                          @Nullable RateLimiter rateLimiter, long permits, Executor executor) {
+            this.attempt = attempt;
+            this.hedge = hedge;
+            this.mayRetry = mayRetry;
+            this.rateLimiter = rateLimiter;
+            this.permits = permits;
+            this.executor = executor;
+        }
+        
+        private CompletableFuture<T> start() {
+            result.whenComplete((value, error) -> cancelInFlight());
+            runRound(0);
+            return result;
+        }
+        
+        private void runRound(int attemptIndex) {
+            if (result.isDone()) {
+                return;
+            }
+            if (rateLimiter != null) {
+                long waitNanos = rateLimiter.tryAcquire(permits);
+                if (waitNanos > 0) {
+                    schedule(() -> runRound(attemptIndex), waitNanos, TimeUnit.NANOSECONDS);
+                    return;
+                }
+            }
+            if (!circuitBreaker.tryAcquire()) {
+                result.completeExceptionally(new CircuitOpenException(
+                    name + " is unavailable after repeated failures; requests are paused briefly"));
+                return;
+            }
+            
+            launch(attemptIndex);
+            
+            long hedgeAfterMs = hedge ? latencyTracker.getPercentile(HEDGE_PERCENTILE) : -1;
+            if (hedgeAfterMs >= 0) {
+                CompletableFuture.delayedExecutor(hedgeAfterMs, TimeUnit.MILLISECONDS, executor).execute(() -> {
+                    synchronized (this) {
+                        // Only hedge a round whose single attempt is still running
+                        if (result.isDone() || inFlight.size() != 1 || inFlight.get(0).isDone()) {
+                            return;
+                        }
+                    }
+                    LOG.info(name + " request slower than " + hedgeAfterMs + "ms, sending a hedged request");
+                    launch(attemptIndex);
+                });
+            }
+        }
+        
+        private void launch(int attemptIndex) {
+            long startTime = System.nanoTime();
+            CompletableFuture<T> current;
+            try {
+                current = attempt.get();
+            } catch (RuntimeException e) {
+                current = CompletableFuture.failedFuture(e);
+            }
+            synchronized (this) {
+                inFlight.add(current);
+            }
+            // The result may have been completed while the attempt was being started
+            if (result.isDone()) {
+                current.cancel(true);
+                return;
+            }
+            CompletableFuture<T> launched = current;
+            launched.whenComplete((value, error) -> {
+                if (error == null) {
+                    latencyTracker.record(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime));
+                    circuitBreaker.recordSuccess();
+                    result.complete(value);
+                } else {
+                    onAttemptFailed(attemptIndex, launched, AsyncExchange.unwrap(error));
+                }
+            });
+        }
+        
+        private void onAttemptFailed(int attemptIndex, CompletableFuture<T> failed, Throwable error) {
+            synchronized (this) {
+                inFlight.remove(failed);
+                // The other attempt of a hedged round may still succeed
+                if (result.isDone() || !inFlight.isEmpty()) {
+                    return;
+                }
+            }
+            
+            ProviderHttpException httpError = findCause(error, ProviderHttpException.class);
+            if (!isTransient(error)) {
+                // The provider answered, so it is up; the request itself is at fault
+                circuitBreaker.recordSuccess();
+                result.completeExceptionally(error);
+                return;
+            }
+            if (httpError == null || !httpError.isRateLimited()) {
+                circuitBreaker.recordFailure();
+            }
+            
+            Duration retryAfter = httpError != null ? httpError.getRetryAfter() : null;
+            if (retryAfter != null && rateLimiter != null) {
+                rateLimiter.pause(retryAfter);
+            }
+            
+            if (attemptIndex >= maxAttempts - 1 || !mayRetry.getAsBoolean()) {
+                LOG.warn(name + " request failed after " + (attemptIndex + 1) + " attempts");
+                result.completeExceptionally(error);
+                return;
+            }
+            
+            long backoffMs = Backoff.delayMillis(attemptIndex, initialBackoffMs, maxBackoffMs, retryAfter);
+            LOG.warn(name + " request attempt " + (attemptIndex + 1) + " failed, retrying in " + backoffMs + "ms: "
+                + error.getMessage());
+            schedule(() -> runRound(attemptIndex + 1), backoffMs, TimeUnit.MILLISECONDS);
+        }
+        
+        private void schedule(Runnable task, long delay, TimeUnit unit) {
+            CompletableFuture.delayedExecutor(delay, unit, executor).execute(() -> {
+                try {
+                    task.run();
+                } catch (Throwable t) {
+                    result.completeExceptionally(t);
+                }
+            });
+        }
+        
+        private void cancelInFlight() {
+            List<CompletableFuture<T>> attempts;
+            synchronized (this) {
+                attempts = new ArrayList<>(inFlight);
+                inFlight.clear();
+            }
+            for (CompletableFuture<T> running : attempts) {
+                if (!running.isDone()) {
+                    running.cancel(true);
+                }
+            }
+        }
+    }
+    
+    /**
+     * Checks if a request that failed with the given error may succeed when sent again.
+     *
+     * @param error the error of the failed attempt
+     * @return true for retryable HTTP statuses and I/O failures such as timeouts and refused connections
+     */
+    public static boolean isTransient(@NotNull Throwable error) {
+        if (findCause(error, CircuitOpenException.class) != null) {
+            return false;
+        }
+        ProviderHttpException httpError = findCause(error, ProviderHttpException.class);
+        if (httpError != null) {
+            return httpError.isRetryable();
+        }
+        return findCause(error, IOException.class) != null;
+    }
+    
+    /**
+     * Finds an exception of the given type in the cause chain of an error.
+     *
+     * @param error the error to search
+     * @param type the exception type to find
+     * @return the first exception of the type, or null if there is none
+     */
+    @Nullable
+    public static <E extends Throwable> E findCause(@NotNull Throwable error, @NotNull Class<E> type) {
+        Throwable cause = error;
+        // Bounded so that a cyclic cause chain cannot loop forever
+        for (int depth = 0; cause != null && depth < 16; depth++) {
+            if (type.isInstance(cause)) {
+                return type.cast(cause);
+            }
+            cause = cause.getCause();
+        }
+        return null;
+    }
+}
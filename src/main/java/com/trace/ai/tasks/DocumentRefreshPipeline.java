@@ -0,0 +1,377 @@
+package com.trace.ai.tasks;
+
+import com.intellij.openapi.diagnostic.Logger;
+import com.trace.ai.models.DocumentEntry;
+import com.trace.ai.services.DocumentDatabaseService;
+import com.trace.ai.services.DocumentDatabaseService.DocumentChange;
+import com.trace.ai.services.DocumentDatabaseService.EmbeddingType;
+import com.trace.ai.services.DocumentDatabaseService.EmbeddingUpdate;
+import com.trace.ai.services.DocumentDatabaseService.StoredDocumentState;
+import com.trace.ai.services.DocumentDatabaseService.StoredEmbeddingState;
+import com.trace.ai.services.embedding.GeminiEmbeddingService;
+import com.trace.ai.services.embedding.OpenAIEmbeddingService;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * Staged pipeline that embeds a parsed document corpus and writes it to the document store.
+ *
+ * <p>The refresh is incremental. Every document carries the hash of its embedding content,
+ * and every stored embedding records the model that produced it, so only what changed is
+ * sent to the embedding providers. The pipeline runs in three stages:</p>
+ * <ol>
+ *   <li>Diff: match the parsed documents to the stored rows by title and decide, per
+ *       provider, which documents need a new embedding</li>
+ *   <li>Embed: split those inputs into batch requests and send them to every configured
+ *       provider at the same time, with a bounded number of requests in flight per provider</li>
+ *   <li>Write: insert new documents, update changed ones and delete removed ones in a
+ *       single transaction</li>
+ * </ol>
+ *
+ * <p>An embedding that no longer matches its document content or the provider's current
+ * model, and could not be regenerated in this run, is marked stale and excluded from search
+ * until a later refresh replaces it.</p>
+ *
+ * <p>Rate limiting is handled by the embedding services themselves through their shared
+ * {@link com.trace.ai.services.embedding.TokenBucketRateLimiter}, so concurrent workers of
+ * one provider back off together when the provider answers with HTTP 429.</p>
+ *
+ * @author Alex Ibasitas
+ * @since 1.0.0
+ */
+public final class DocumentRefreshPipeline {
+    
+    private static final Logger LOG = Logger.getInstance(DocumentRefreshPipeline.class);
+    
+    public static final int DEFAULT_PARALLELISM = 4;
+    public static final int DEFAULT_DOCUMENTS_PER_REQUEST = 32;
+    
+    private final DocumentDatabaseService database;
+    private final OpenAIEmbeddingService openAIEmbeddingService;
+    private final GeminiEmbeddingService geminiEmbeddingService;
+    private final int parallelism;
+    private final int documentsPerRequest;
+    
+    /**
+     * Creates a new refresh pipeline.
+     *
+     * @param database the database to write to, already initialized for writing
+     * @param openAIEmbeddingService the OpenAI embedding service, or null to skip OpenAI embeddings
+     * @param geminiEmbeddingService the Gemini embedding service, or null to skip Gemini embeddings
+     * @param parallelism the maximum number of requests in flight per provider
+     * @param documentsPerRequest the maximum number of documents per batch request
+     * @throws IllegalArgumentException if parallelism or documentsPerRequest are not positive
+     */
+    public DocumentRefreshPipeline(@NotNull DocumentDatabaseService database,
+                                   @Nullable OpenAIEmbeddingService openAIEmbeddingService,
+                                   @Nullable GeminiEmbeddingService geminiEmbeddingService,
+                                   int parallelism,
+                                   int documentsPerRequest) {
+        if (parallelism <= 0) {
+            throw new IllegalArgumentException("Parallelism must be positive");
+        }
+        if (documentsPerRequest <= 0) {
+            throw new IllegalArgumentException("Documents per request must be positive");
+        }
+        
+        this.database = database;
+        this.openAIEmbeddingService = openAIEmbeddingService;
+        this.geminiEmbeddingService = geminiEmbeddingService;
+        this.parallelism = parallelism;
+        this.documentsPerRequest = documentsPerRequest;
+    }
+    
+    /**
+     * Runs the pipeline for the given documents.
+     *
+     * <p>A failed batch request leaves the affected embeddings unchanged (or marks them
+     * stale when they are outdated) and is reported in the result; it does not abort the
+     * refresh. Documents are identified by title; stored documents whose title is no longer
+     * in the corpus are deleted.</p>
+     *
+     * @param documents the parsed documents
+     * @return the refresh result
+     * @throws SQLException if reading the stored state or the final write fails; the previous
+     *         store contents are kept
+     * @throws InterruptedException if the thread is interrupted while waiting for embeddings
+     */
+    @NotNull
+    public Result run(@NotNull List<DocumentEntry> documents) throws SQLException, InterruptedException {
+        long startTime = System.currentTimeMillis();
+        
+        // Stage 1: diff the corpus against the stored rows
+        Map<String, StoredDocumentState> storedStates = database.getStoredDocumentStates();
+        List<PlannedDocument> planned = new ArrayList<>(documents.size());
+        Set<String> titles = new HashSet<>();
+        for (DocumentEntry document : documents) {
+            if (!titles.add(document.getTitle())) {
+                LOG.warn("Skipping document with duplicate title: " + document.getTitle());
+                continue;
+            }
+            StoredDocumentState state = storedStates.get(document.getTitle());
+            boolean contentChanged = state == null || !document.computeContentHash().equals(state.getContentHash());
+            planned.add(new PlannedDocument(document, state, contentChanged));
+        }
+        List<Long> deletedIds = new ArrayList<>();
+        for (Map.Entry<String, StoredDocumentState> stored : storedStates.entrySet()) {
+            if (!titles.contains(stored.getKey())) {
+                deletedIds.add(stored.getValue().getId());
+            }
+        }
+        
+        // Stage 2: embed what changed with all providers concurrently
+        ProviderStage openAIStage = openAIEmbeddingService != null
+            ? new ProviderStage("OpenAI", EmbeddingType.OPENAI, openAIEmbeddingService.getDefaultModel(),
+                texts -> openAIEmbeddingService.generateEmbeddings(texts, Runnable::run), planned)
+            : new ProviderStage("OpenAI", EmbeddingType.OPENAI, null, null, planned);
+        ProviderStage geminiStage = geminiEmbeddingService != null
+            ? new ProviderStage("Gemini", EmbeddingType.GEMINI, geminiEmbeddingService.getDefaultModel(),
+                texts -> geminiEmbeddingService.generateEmbeddings(texts, Runnable::run), planned)
+            : new ProviderStage("Gemini", EmbeddingType.GEMINI, null, null, planned);
+        List<ProviderStage> stages = List.of(openAIStage, geminiStage);
+        
+        List<ExecutorService> executors = new ArrayList<>();
+        List<Future<?>> pending = new ArrayList<>();
+        try {
+            for (ProviderStage stage : stages) {
+                if (stage.pendingIndexes.isEmpty()) {
+                    continue;
+                }
+                ExecutorService executor = Executors.newFixedThreadPool(parallelism);
+                executors.add(executor);
+                for (int start = 0; start < stage.pendingIndexes.size(); start += documentsPerRequest) {
+                    int end = Math.min(start + documentsPerRequest, stage.pendingIndexes.size());
+                    List<Integer> batch = stage.pendingIndexes.subList(start, end);
+                    pending.add(executor.submit(() -> stage.embedBatch(batch, planned)));
+                }
+            }
+            for (Future<?> future : pending) {
+                try {
+                    future.get();
+                } catch (ExecutionException e) {
+                    // embedBatch records its own failures; anything else is a programming error
+                    throw new IllegalStateException("Embedding stage failed", e.getCause());
+                }
+            }
+        } finally {
+            for (ExecutorService executor : executors) {
+                executor.shutdownNow();
+            }
+        }
+        
+        // Stage 3: write inserts, updates and deletes in a single transaction
+        List<DocumentChange> changes = new ArrayList<>();
+        int insertedCount = 0;
+        int staleCount = 0;
+        for (int i = 0; i < planned.size(); i++) {
+            PlannedDocument document = planned.get(i);
+            EmbeddingUpdate openAIUpdate = openAIStage.updateFor(i, document);
+            EmbeddingUpdate geminiUpdate = geminiStage.updateFor(i, document);
+            boolean embeddingsChanged = openAIUpdate.getAction() != EmbeddingUpdate.Action.KEEP
+                || geminiUpdate.getAction() != EmbeddingUpdate.Action.KEEP;
+            if (document.state == null || document.contentChanged || embeddingsChanged) {
+                changes.add(new DocumentChange(document.state != null ? document.state.getId() : null,
+                    document.entry, document.contentChanged, openAIUpdate, geminiUpdate));
+            }
+            if (document.state == null) {
+                insertedCount++;
+            }
+            for (EmbeddingUpdate update : List.of(openAIUpdate, geminiUpdate)) {
+                if (update.getAction() == EmbeddingUpdate.Action.MARK_STALE) {
+                    staleCount++;
+                }
+            }
+        }
+        if (!changes.isEmpty() || !deletedIds.isEmpty()) {
+            database.applyRefresh(changes, deletedIds);
+        }
+        
+        int failedRequests = 0;
+        for (ProviderStage stage : stages) {
+            failedRequests += stage.failedRequests.get();
+            if (stage.embedder != null) {
+                LOG.info(stage.name + " embeddings: " + stage.embeddedCount.get() + "/"
+                    + stage.pendingIndexes.size() + " changed documents");
+            }
+        }
+        long processingTime = System.currentTimeMillis() - startTime;
+        LOG.info("Document refresh pipeline completed in " + processingTime + "ms");
+        
+        return new Result(planned.size(), insertedCount, changes.size() - insertedCount, deletedIds.size(),
+            openAIStage.embeddedCount.get(), geminiStage.embeddedCount.get(), staleCount, failedRequests);
+    }
+    
+    /**
+     * A parsed document with the stored state it was matched to.
+     */
+    private static final class PlannedDocument {
+        private final DocumentEntry entry;
+        private final StoredDocumentState state;
+        private final boolean contentChanged;
+        
+        private PlannedDocument(DocumentEntry entry, StoredDocumentState state, boolean contentChanged) {
+            this.entry = entry;
+            this.state = state;
+            this.contentChanged = contentChanged;
+        }
+        
+        private StoredEmbeddingState embeddingState(EmbeddingType embeddingType) {
+            return state != null ? state.getEmbeddingState(embeddingType) : null;
+        }
+    }
+    
+    /**
+     * Embedding state of one provider: the documents that need a new embedding and the
+     * index-aligned results. A stage without an embedder embeds nothing.
+     */
+    private static final class ProviderStage {
+        private final String name;
+        private final EmbeddingType embeddingType;
+        private final String model;
+        private final Function<List<String>, CompletableFuture<List<float[]>>> embedder;
+        private final List<Integer> pendingIndexes = new ArrayList<>();
+        private final float[][] embeddings;
+        private final AtomicInteger embeddedCount = new AtomicInteger();
+        private final AtomicInteger failedRequests = new AtomicInteger();
+        
+        private ProviderStage(String name, EmbeddingType embeddingType, String model,
+                              Function<List<String>, CompletableFuture<List<float[]>>> embedder,
+                              List<PlannedDocument> planned) {
+            this.name = name;
+            this.embeddingType = embeddingType;
+            this.model = model;
+            this.embedder = embedder;
+            this.embeddings = new float[planned.size()][];
+            if (embedder != null) {
+                for (int i = 0; i < planned.size(); i++) {
+                    PlannedDocument document = planned.get(i);
+                    StoredEmbeddingState stored = document.embeddingState(embeddingType);
+                    if (document.contentChanged || stored == null || !stored.isCurrent(model)) {
+                        pendingIndexes.add(i);
+                    }
+                }
+            }
+        }
+        
+        /**
+         * Embeds one batch on the calling worker thread and stores the results at their
+         * document positions.
+         * Each position is written by exactly one batch, and results are read only
+         * after all batch futures have completed.
+         */
+        private void embedBatch(List<Integer> batch, List<PlannedDocument> planned) {
+            List<String> texts = new ArrayList<>(batch.size());
+            for (int index : batch) {
+                texts.add(planned.get(index).entry.buildEmbeddingContent());
+            }
+            try {
+                List<float[]> results = embedder.apply(texts).get();
+                for (int i = 0; i < results.size(); i++) {
+                    embeddings[batch.get(i)] = results.get(i);
+                }
+                embeddedCount.addAndGet(results.size());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                failedRequests.incrementAndGet();
+            } catch (Exception e) {
+                failedRequests.incrementAndGet();
+                LOG.error("Failed to generate " + name + " embeddings for " + batch.size()
+                    + " documents starting with '" + planned.get(batch.get(0)).entry.getTitle() + "' - " + e.getMessage());
+            }
+        }
+        
+        /**
+         * Decides what happens to this provider's stored embedding of a document.
+         * A fresh embedding replaces it; an outdated one that could not be regenerated is
+         * marked stale; anything else is kept.
+         */
+        private EmbeddingUpdate updateFor(int index, PlannedDocument document) {
+            if (embeddings[index] != null) {
+                return EmbeddingUpdate.replace(embeddings[index], model);
+            }
+            StoredEmbeddingState stored = document.embeddingState(embeddingType);
+            if (stored == null || !stored.isPresent() || stored.isStale()) {
+                return EmbeddingUpdate.keep();
+            }
+            boolean modelChanged = model != null && !model.equals(stored.getModel());
+            return document.contentChanged || modelChanged ? EmbeddingUpdate.markStale() : EmbeddingUpdate.keep();
+        }
+    }
+    
+    /**
+     * Outcome of a pipeline run.
+     */
+    public static final class Result {
+        private final int documentCount;
+        private final int insertedCount;
+        private final int updatedCount;
+        private final int deletedCount;
+        private final int openAIEmbeddingCount;
+        private final int geminiEmbeddingCount;
+        private final int staleEmbeddingCount;
+        private final int failedRequests;
+        
+        public Result(int documentCount, int insertedCount, int updatedCount, int deletedCount,
+                      int openAIEmbeddingCount, int geminiEmbeddingCount, int staleEmbeddingCount,
+                      int failedRequests) {
+            this.documentCount = documentCount;
+            this.insertedCount = insertedCount;
+            this.updatedCount = updatedCount;
+            this.deletedCount = deletedCount;
+            this.openAIEmbeddingCount = openAIEmbeddingCount;
+            this.geminiEmbeddingCount = geminiEmbeddingCount;
+            this.staleEmbeddingCount = staleEmbeddingCount;
+            this.failedRequests = failedRequests;
+        }
+        
+        public int getDocumentCount() {
+            return documentCount;
+        }
+        
+        public int getInsertedCount() {
+            return insertedCount;
+        }
+        
+        public int getUpdatedCount() {
+            return updatedCount;
+        }
+        
+        public int getDeletedCount() {
+            return deletedCount;
+        }
+        
+        public int getUnchangedCount() {
+            return documentCount - insertedCount - updatedCount;
+        }
+        
+        public int getOpenAIEmbeddingCount() {
+            return openAIEmbeddingCount;
+        }
+        
+        public int getGeminiEmbeddingCount() {
+            return geminiEmbeddingCount;
+        }
+        
+        public int getStaleEmbeddingCount() {
+            return staleEmbeddingCount;
+        }
+        
+        public int getFailedRequests() {
+            return failedRequests;
+        }
+    }
+}
@@ -4,13 +4,12 @@ import com.intellij.openapi.diagnostic.Logger;
 import com.trace.ai.models.DocumentEntry;
 import com.trace.ai.services.DocumentDatabaseService;
 import com.trace.ai.services.DocumentParserService;
+import com.trace.ai.services.EmbeddingCodec;
 import com.trace.ai.services.embedding.OpenAIEmbeddingService;
 import com.trace.ai.services.embedding.GeminiEmbeddingService;
-import java.util.Map;
-import java.util.HashMap;
+import com.trace.ai.services.embedding.TokenBucketRateLimiter;
 
 import java.io.File;
-import java.sql.SQLException;
 import java.util.List;
 
 /**
@@ -24,9 +23,20 @@ import java.util.List;
  * <pre>
  * java -cp build/libs/trace.jar com.trace.ai.tasks.DocumentStoreRefresher \
  *   --openai-key=your_openai_key \
- *   --gemini-key=your_gemini_key
+ *   --gemini-key=your_gemini_key \
+ *   --parallelism=4 \
+ *   --embedding-encoding=float32
  * </pre>
  * 
+ * <p>The refresh is incremental: only documents whose embedding content or embedding
+ * model changed are re-embedded. Both providers are embedded concurrently with at most
+ * {@code parallelism} requests in flight per provider, throttled to each provider's
+ * token rate.</p>
+ * 
+ * <p>Embeddings are stored in the {@link EmbeddingCodec} format. The encoding can be
+ * {@code float32} (default), {@code float16} or {@code int8}; existing embeddings are
+ * converted to the chosen encoding when the database is opened.</p>
+ * 
  * @author Alex Ibasitas
  * @since 1.0.0
  */
@@ -34,6 +44,10 @@ public class DocumentStoreRefresher {
     
     private static final Logger LOG = Logger.getInstance(DocumentStoreRefresher.class);
     
+    // Default provider token rates; the buckets also absorb 429 Retry-After pauses
+    private static final long OPENAI_TOKENS_PER_MINUTE = 1_000_000;
+    private static final long GEMINI_TOKENS_PER_MINUTE = 1_000_000;
+    
     /**
      * Returns the path where the database should be written for JAR bundling.
      * 
@@ -47,12 +61,18 @@ public class DocumentStoreRefresher {
         // Parse command line arguments
         String openaiApiKey = null;
         String geminiApiKey = null;
+        int parallelism = DocumentRefreshPipeline.DEFAULT_PARALLELISM;
+        EmbeddingCodec.Encoding encoding = EmbeddingCodec.Encoding.FLOAT32;
         
         for (String arg : args) {
             if (arg.startsWith("--openai-key=")) {
                 openaiApiKey = arg.substring("--openai-key=".length());
             } else if (arg.startsWith("--gemini-key=")) {
                 geminiApiKey = arg.substring("--gemini-key=".length());
+            } else if (arg.startsWith("--parallelism=")) {
+                parallelism = Integer.parseInt(arg.substring("--parallelism=".length()));
+            } else if (arg.startsWith("--embedding-encoding=")) {
+                encoding = EmbeddingCodec.Encoding.fromId(arg.substring("--embedding-encoding=".length()));
             }
         }
         
@@ -76,7 +96,7 @@ public class DocumentStoreRefresher {
             LOG.info("Parsed " + documents.size() + " documents");
             
             // Step 2: Refresh single document store with all available embeddings
-            refreshDocumentStore(documents, openaiApiKey, geminiApiKey);
+            refreshDocumentStore(documents, openaiApiKey, geminiApiKey, parallelism, encoding);
             
             LOG.info("Document store refresh completed - " + documents.size() + " documents processed");
             if (openaiApiKey != null) {
@@ -92,103 +112,66 @@ public class DocumentStoreRefresher {
         }
     }
     
-    private static void refreshDocumentStore(List<DocumentEntry> documents, String openaiApiKey, String geminiApiKey) {
-                    LOG.info("Refreshing document store");
+    private static void refreshDocumentStore(List<DocumentEntry> documents, String openaiApiKey, String geminiApiKey,
+                                             int parallelism, EmbeddingCodec.Encoding encoding) {
+        LOG.info("Refreshing document store");
         
         try {
             // Initialize database for writing to resources directory
             DocumentDatabaseService database = new DocumentDatabaseService();
             String databasePath = getDatabasePath();
+            database.setStorageEncoding(encoding);
             database.initializeDatabaseForWriting(databasePath);
-            LOG.info("Database initialized for writing: " + databasePath);
+            LOG.info("Database initialized for writing: " + databasePath + " (" + encoding.getId() + " embeddings)");
             
-            // Clear existing documents before fresh insertion
-            database.clearAllDocuments();
-            LOG.info("Cleared existing documents");
-            LOG.info("Preparing for fresh document insertion");
+            // Create embedding services, each throttled by its own token bucket
+            OpenAIEmbeddingService openAIEmbeddingService = null;
+            GeminiEmbeddingService geminiEmbeddingService = null;
             
-            // Insert documents and track their database IDs
-            int insertedCount = 0;
-            Map<String, Long> documentIds = new HashMap<>(); // title -> database ID mapping
-            
-            for (DocumentEntry doc : documents) {
-                try {
-                    // Use the new dual-embedding schema - insert without embeddings initially
-                    long documentId = database.insertDocument(doc, null, null);
-                    documentIds.put(doc.getTitle(), documentId);
-                    insertedCount++;
-                } catch (SQLException e) {
-                    LOG.error("Failed to insert: " + doc.getTitle() + " - " + e.getMessage());
-                }
+            if (openaiApiKey != null) {
+                openAIEmbeddingService = new OpenAIEmbeddingService(openaiApiKey);
+                openAIEmbeddingService.setRateLimiter(
+                    new TokenBucketRateLimiter(OPENAI_TOKENS_PER_MINUTE, OPENAI_TOKENS_PER_MINUTE));
+                LOG.info("OpenAI embedding service initialized");
             }
-            LOG.info("Inserted " + insertedCount + " documents");
             
-            // Generate embeddings using the new platform-independent services
-            if (openaiApiKey != null || geminiApiKey != null) {
-                LOG.info("Generating embeddings...");
-                
-                // Create embedding services
-                OpenAIEmbeddingService openAIEmbeddingService = null;
-                GeminiEmbeddingService geminiEmbeddingService = null;
-                
-                if (openaiApiKey != null) {
-                    openAIEmbeddingService = new OpenAIEmbeddingService(openaiApiKey);
-                    LOG.info("OpenAI embedding service initialized");
-                }
-                
-                if (geminiApiKey != null) {
-                    geminiEmbeddingService = new GeminiEmbeddingService(geminiApiKey);
-                    LOG.info("Gemini embedding service initialized");
-                }
-                
-                // Use embedding services directly - no need for EmbeddingService wrapper
-                
-                // Generate embeddings for documents
-                int embeddingCount = 0;
-                for (DocumentEntry doc : documents) {
-                    try {
-                        // Get the database ID for this document
-                        Long databaseId = documentIds.get(doc.getTitle());
-                        if (databaseId == null) {
-                            LOG.error("No database ID found for: " + doc.getTitle());
-                            continue;
-                        }
-                        
-                        // Generate OpenAI embeddings if available
-                        if (openAIEmbeddingService != null) {
-                            float[] openAIEmbedding = openAIEmbeddingService.generateEmbedding(doc.buildEmbeddingContent()).get();
-                            database.updateOpenAIEmbedding(databaseId, openAIEmbedding);
-                            embeddingCount++;
-                            LOG.info("Generated OpenAI embedding for: " + doc.getTitle());
-                        }
-                        
-                        // Generate Gemini embeddings if available
-                        if (geminiEmbeddingService != null) {
-                            float[] geminiEmbedding = geminiEmbeddingService.generateEmbedding(doc.buildEmbeddingContent()).get();
-                            database.updateGeminiEmbedding(databaseId, geminiEmbedding);
-                            embeddingCount++;
-                            LOG.info("Generated Gemini embedding for: " + doc.getTitle());
-                        }
-                        
-                        // Small delay to respect API rate limits
-                        Thread.sleep(200);
-                        
-                    } catch (Exception e) {
-                        LOG.error("Failed to generate embedding for: " + doc.getTitle() + " - " + e.getMessage());
-                    }
-                }
-                
-                LOG.info("Generated " + embeddingCount + " embeddings successfully");
-            } else {
-                LOG.warn("No API keys provided - skipping embedding generation");
+            if (geminiApiKey != null) {
+                geminiEmbeddingService = new GeminiEmbeddingService(geminiApiKey);
+                geminiEmbeddingService.setRateLimiter(
+                    new TokenBucketRateLimiter(GEMINI_TOKENS_PER_MINUTE, GEMINI_TOKENS_PER_MINUTE));
+                LOG.info("Gemini embedding service initialized");
             }
             
+            // Embed only changed documents with both providers concurrently and apply the diff in one transaction
+            DocumentRefreshPipeline pipeline = new DocumentRefreshPipeline(database, openAIEmbeddingService,
+                geminiEmbeddingService, parallelism, DocumentRefreshPipeline.DEFAULT_DOCUMENTS_PER_REQUEST);
+            DocumentRefreshPipeline.Result result = pipeline.run(documents);
+            LOG.info("Refreshed " + result.getDocumentCount() + " documents ("
+                + result.getInsertedCount() + " inserted, "
+                + result.getUpdatedCount() + " updated, "
+                + result.getDeletedCount() + " deleted, "
+                + result.getUnchangedCount() + " unchanged)");
+            LOG.info("Generated " + result.getOpenAIEmbeddingCount() + " OpenAI and "
+                + result.getGeminiEmbeddingCount() + " Gemini embeddings ("
+                + result.getStaleEmbeddingCount() + " marked stale, "
+                + result.getFailedRequests() + " failed requests)");
+            
             // Verify final state
             List<DocumentDatabaseService.DocumentWithEmbedding> docsWithEmbeddings = database.getAllDocumentsWithEmbeddings();
             LOG.info("Database contains " + docsWithEmbeddings.size() + " documents with embeddings");
             
+            // Persist HNSW graphs beside the database so approximate search never has to build them at runtime
+            database.exportApproximateIndexes(new File(databasePath).getAbsoluteFile().getParentFile());
+            LOG.info("Exported approximate search graphs");
+            
+            // Reclaim space freed by deleted documents and re-encoded embeddings before bundling
+            database.compact();
             database.close();
             
+            // Publish the checksum that versions the extracted copy in the IDE cache directory
+            DocumentDatabaseService.writeChecksumFile(databasePath);
+            LOG.info("Wrote database checksum");
+        
         } catch (Exception e) {
             LOG.error("Failed to refresh document store: " + e.getMessage(), e);
             throw new RuntimeException("Failed to refresh document store", e);
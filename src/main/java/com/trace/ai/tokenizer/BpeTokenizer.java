@@ -0,0 +1,236 @@
+package com.trace.ai.tokenizer;
+
+import com.intellij.openapi.diagnostic.Logger;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+
+/**
+ * Counts and truncates text in model tokens with a local byte pair encoding.
+ *
+ * <p>Text is split into pieces with the encoding's pattern, and each piece is encoded
+ * as UTF-8 bytes and merged pair by pair, lowest rank first, exactly as the provider's
+ * tokenizer does. The merge tables are bundled in the plugin resources and read once the
+ * first time an encoding is used.</p>
+ *
+ * <p>When the table of an encoding cannot be read, pieces are estimated instead: one token
+ * per four ASCII characters, one token per other character, and at least one token each.
+ * This is close for English text and code. It can still fall short for scripts whose
+ * characters take several tokens, such as many CJK characters, so only the safety margin
+ * of the prompt budget guards against an overflow then.</p>
+ *
+ * <p>Instances are immutable and thread-safe.</p>
+ *
+ * @author Alex Ibasitas
+ * @since 1.0.0
+ */
+public final class BpeTokenizer {
+    
+    private static final Logger LOG = Logger.getInstance(BpeTokenizer.class);
+    
+    // Long runs such as indentation are merged in chunks so a single piece cannot take quadratic time
+    private static final int MAX_PIECE_BYTES = 512;
+    private static final int ESTIMATED_CHARS_PER_TOKEN = 4;
+    
+    private static final Map<TokenEncoding, BpeTokenizer> TOKENIZERS = new EnumMap<>(TokenEncoding.class);
+    
+    private final TokenEncoding encoding;
+    
+    // Byte sequences, stored as ISO-8859-1 strings, mapped to their merge rank; null when not bundled
+    private final Map<String, Integer> ranks;
+    
+    /**
+     * Creates a tokenizer.
+     *
+     * @param encoding the encoding
+     * @param ranks the merge ranks of byte sequences stored as ISO-8859-1 strings, or null to estimate
+     */
+    BpeTokenizer(@NotNull TokenEncoding encoding, @Nullable Map<String, Integer> ranks) {
+        this.encoding = encoding;
+        this.ranks = ranks;
+    }
+    
+    /**
+     * Gets the shared tokenizer of an encoding, loading its merge table on first use.
+     *
+     * @param encoding the encoding
+     * @return the tokenizer
+     */
+    @NotNull
+    public static BpeTokenizer getInstance(@NotNull TokenEncoding encoding) {
+        synchronized (TOKENIZERS) {
+            return TOKENIZERS.computeIfAbsent(encoding, e -> new BpeTokenizer(e, loadRanks(e)));
+        }
+    }
+    
+    /**
+     * Gets the encoding of this tokenizer.
+     *
+     * @return the encoding
+     */
+    @NotNull
+    public TokenEncoding getEncoding() {
+        return encoding;
+    }
+    
+    /**
+     * Checks if this tokenizer counts exactly, with the encoding's merge table.
+     *
+     * @return true if the merge table is loaded, false if counts are estimated
+     */
+    public boolean isExact() {
+        return ranks != null;
+    }
+    
+    /**
+     * Counts the tokens of a text.
+     *
+     * @param text the text to count
+     * @return the token count
+     */
+    public int countTokens(@NotNull String text) {
+        int count = 0;
+        Matcher matcher = encoding.getPattern().matcher(text);
+        while (matcher.find()) {
+            count += countPieceTokens(matcher.group());
+        }
+        return count;
+    }
+    
+    /**
+     * Cuts a text after the last whole piece that fits in a number of tokens.
+     *
+     * @param text the text to truncate
+     * @param maxTokens the maximum number of tokens to keep
+     * @return the longest prefix of the text, at piece boundaries, of at most maxTokens tokens
+     * @throws IllegalArgumentException if maxTokens is negative
+     */
+    @NotNull
+    public String truncate(@NotNull String text, int maxTokens) {
+        if (maxTokens < 0) {
+            throw new IllegalArgumentException("Max tokens cannot be negative");
+        }
+        int count = 0;
+        int end = 0;
+        Matcher matcher = encoding.getPattern().matcher(text);
+        while (matcher.find()) {
+            count += countPieceTokens(matcher.group());
+            if (count > maxTokens) {
+                return text.substring(0, end);
+            }
+            end = matcher.end();
+        }
+        return text;
+    }
+    
+    private int countPieceTokens(String piece) {
+        if (ranks == null) {
+            return estimatePieceTokens(piece);
+        }
+        byte[] bytes = piece.getBytes(StandardCharsets.UTF_8);
+        int count = 0;
+        for (int start = 0; start < bytes.length; start += MAX_PIECE_BYTES) {
+            count += mergeCount(new String(bytes, start, Math.min(MAX_PIECE_BYTES, bytes.length - start),
+                StandardCharsets.ISO_8859_1));
+        }
+        return count;
+    }
+    
+    /**
+     * Estimates the tokens of a piece without a merge table.
+     *
+     * @param piece the piece
+     * @return the estimated token count, at least 1
+     */
+    private static int estimatePieceTokens(String piece) {
+        int asciiChars = 0;
+        int otherChars = 0;
+        for (int i = 0; i < piece.length(); i += Character.charCount(piece.codePointAt(i))) {
+            if (piece.codePointAt(i) < 0x80) {
+                asciiChars++;
+            } else {
+                otherChars++;
+            }
+        }
+        int asciiTokens = (asciiChars + ESTIMATED_CHARS_PER_TOKEN - 1) / ESTIMATED_CHARS_PER_TOKEN;
+        return Math.max(1, asciiTokens + otherChars);
+    }
+    
+    /**
+     * Merges the bytes of a piece pair by pair, lowest rank first, and counts the resulting tokens.
+     *
+     * @param piece the bytes of the piece as an ISO-8859-1 string
+     * @return the number of tokens the piece encodes to
+     */
+    private int mergeCount(String piece) {
+        if (ranks.containsKey(piece)) {
+            return 1;
+        }
+        // Start offsets of the current parts; the last entry marks the end of the piece
+        List<Integer> bounds = new ArrayList<>(piece.length() + 1);
+        for (int i = 0; i <= piece.length(); i++) {
+            bounds.add(i);
+        }
+        while (bounds.size() > 2) {
+            int bestRank = Integer.MAX_VALUE;
+            int bestIndex = -1;
+            for (int i = 0; i < bounds.size() - 2; i++) {
+                Integer rank = ranks.get(piece.substring(bounds.get(i), bounds.get(i + 2)));
+                if (rank != null && rank < bestRank) {
+                    bestRank = rank;
+                    bestIndex = i;
+                }
+            }
+            if (bestIndex < 0) {
+                break;
+            }
+            bounds.remove(bestIndex + 1);
+        }
+        return bounds.size() - 1;
+    }
+    
+    /**
+     * Reads the merge table of an encoding from the plugin resources.
+     *
+     * @param encoding the encoding
+     * @return the merge ranks, or null if the table is not bundled or cannot be read
+     */
+    @Nullable
+    private static Map<String, Integer> loadRanks(@NotNull TokenEncoding encoding) {
+        try (InputStream stream = BpeTokenizer.class.getResourceAsStream(encoding.getResourcePath())) {
+            if (stream == null) {
+                LOG.warn("No " + encoding.getName() + " merge table bundled, estimating token counts");
+                return null;
+            }
+            Map<String, Integer> ranks = new HashMap<>(262_144);
+            Base64.Decoder decoder = Base64.getDecoder();
+            BufferedReader reader = new BufferedReader(new InputStreamReader(stream, StandardCharsets.US_ASCII));
+            String line;
+            while ((line = reader.readLine()) != null) {
+                int space = line.indexOf(' ');
+                if (space <= 0) {
+                    continue;
+                }
+                ranks.put(new String(decoder.decode(line.substring(0, space)), StandardCharsets.ISO_8859_1),
+                    Integer.parseInt(line.substring(space + 1).trim()));
+            }
+            LOG.info("Loaded " + encoding.getName() + " merge table with " + ranks.size() + " tokens");
+            return ranks;
+        } catch (IOException | IllegalArgumentException e) {
+            LOG.warn("Failed to load " + encoding.getName() + " merge table, estimating token counts", e);
+            return null;
+        }
+    }
+}
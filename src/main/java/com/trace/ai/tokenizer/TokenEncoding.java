@@ -0,0 +1,91 @@
+package com.trace.ai.tokenizer;
+
+import com.trace.ai.configuration.AIServiceType;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.regex.Pattern;
+
+/**
+ * Byte pair encodings used to count prompt tokens.
+ *
+ * <p>Each encoding names the merge table it reads from the plugin resources and the
+ * pattern that splits text into pieces before merging. The tables are the published
+ * {@code .tiktoken} files: one base64 token and its rank per line.</p>
+ *
+ * @author Alex Ibasitas
+ * @since 1.0.0
+ */
+public enum TokenEncoding {
+    
+    /** Encoding of GPT-4, GPT-3.5 and the OpenAI embedding models. */
+    CL100K_BASE("cl100k_base",
+        "'(?i:[sdmt]|ll|ve|re)|[^\\r\\n\\p{L}\\p{N}]?+\\p{L}+|\\p{N}{1,3}| ?[^\\s\\p{L}\\p{N}]++[\\r\\n]*"
+            + "|\\s*[\\r\\n]|\\s+(?!\\S)|\\s+"),
+    
+    /** Encoding of GPT-4o, GPT-4.1 and the o-series reasoning models. */
+    O200K_BASE("o200k_base",
+        "[^\\r\\n\\p{L}\\p{N}]?[\\p{Lu}\\p{Lt}\\p{Lm}\\p{Lo}\\p{M}]*[\\p{Ll}\\p{Lm}\\p{Lo}\\p{M}]+(?i:'s|'t|'re|'ve|'m|'ll|'d)?"
+            + "|[^\\r\\n\\p{L}\\p{N}]?[\\p{Lu}\\p{Lt}\\p{Lm}\\p{Lo}\\p{M}]+[\\p{Ll}\\p{Lm}\\p{Lo}\\p{M}]*(?i:'s|'t|'re|'ve|'m|'ll|'d)?"
+            + "|\\p{N}{1,3}| ?[^\\s\\p{L}\\p{N}]+[\\r\\n/]*|\\s*[\\r\\n]+|\\s+(?!\\S)|\\s+");
+    
+    private final String name;
+    private final Pattern pattern;
+    
+    TokenEncoding(@NotNull String name, @NotNull String pattern) {
+        this.name = name;
+        this.pattern = Pattern.compile(pattern);
+    }
+    
+    /**
+     * Gets the name of the encoding.
+     *
+     * @return the encoding name, for example {@code cl100k_base}
+     */
+    @NotNull
+    public String getName() {
+        return name;
+    }
+    
+    /**
+     * Gets the path of the merge table in the plugin resources.
+     *
+     * @return the resource path
+     */
+    @NotNull
+    public String getResourcePath() {
+        return "/tokenizers/" + name + ".tiktoken";
+    }
+    
+    /**
+     * Gets the pattern that splits text into pieces before merging.
+     *
+     * @return the pre-tokenization pattern
+     */
+    @NotNull
+    Pattern getPattern() {
+        return pattern;
+    }
+    
+    /**
+     * Gets the encoding that best matches a model.
+     *
+     * <p>Gemini does not publish its tokenizer, so its prompts are counted with
+     * {@link #CL100K_BASE}, which gives counts of the same magnitude for English text
+     * and code.</p>
+     *
+     * @param serviceType the service of the model
+     * @param modelId the model ID
+     * @return the encoding to count the model's prompts with
+     */
+    @NotNull
+    public static TokenEncoding forModel(@NotNull AIServiceType serviceType, @NotNull String modelId) {
+        if (serviceType == AIServiceType.OPENAI && modelId != null) {
+            String id = modelId.toLowerCase();
+            if (id.startsWith("gpt-4o") || id.startsWith("gpt-4.1") || id.startsWith("gpt-5")
+                    || id.matches("o\\d.*") || id.startsWith("chatgpt-4o")) {
+                return O200K_BASE;
+            }
+        }
+        return CL100K_BASE;
+    }
+}
@@ -18,6 +18,9 @@ import com.intellij.util.ui.JBUI;
 import com.intellij.util.ui.UIUtil;
 import com.trace.security.SecureAPIKeyManager;
 import com.trace.ai.services.AIModelService;
+import com.trace.ai.services.AIServiceFactory;
+import com.trace.ai.services.providers.AIServiceProvider;
+import com.trace.ai.services.providers.PromptCacheMetrics;
 import com.trace.ai.models.AIModel;
 import com.trace.ai.configuration.AIServiceType;
 import com.trace.ai.configuration.AISettings;
@@ -48,6 +51,7 @@ import com.trace.ai.ui.AIServiceConfigUIHelper;
  *   <li>Default model selection</li>
  *   <li>Model enable/disable functionality</li>
  *   <li>Real-time validation and user feedback</li>
+ *   <li>Prompt cache usage of each provider in the tooltip of its status</li>
  * </ul>
  * 
  * <p>This component automatically discovers available models when API keys
@@ -236,6 +240,8 @@ public class AIServiceConfigPanel extends JBPanel<AIServiceConfigPanel> {
         ApplicationManager.getApplication().executeOnPooledThread(() -> {
             String storedOpenAIKey = SecureAPIKeyManager.getAPIKey(AIServiceType.OPENAI);
             String storedGeminiKey = SecureAPIKeyManager.getAPIKey(AIServiceType.GEMINI);
+            String openaiCacheUsage = describePromptCacheUsage(AIServiceType.OPENAI);
+            String geminiCacheUsage = describePromptCacheUsage(AIServiceType.GEMINI);
             
             // Update UI on EDT after loading keys
             ApplicationManager.getApplication().invokeLater(() -> {
@@ -245,12 +251,14 @@ public class AIServiceConfigPanel extends JBPanel<AIServiceConfigPanel> {
                     openaiStatusLabel.setText("Connected");
                     openaiStatusLabel.setForeground(UIUtil.getLabelSuccessForeground());
                     openaiStatusLabel.setIcon(AllIcons.General.InspectionsOK);
+                    openaiStatusLabel.setToolTipText(openaiCacheUsage);
                     LOG.debug("Loaded OpenAI API key into UI");
                 } else {
                     openaiApiKeyField.setText("");
                     openaiStatusLabel.setText("Not Connected");
                     openaiStatusLabel.setForeground(new TriagePanelConstants().errorForeground);
                     openaiStatusLabel.setIcon(AllIcons.General.Error);
+                    openaiStatusLabel.setToolTipText(null);
                     LOG.debug("No OpenAI API key found in storage");
                 }
                 
@@ -259,12 +267,14 @@ public class AIServiceConfigPanel extends JBPanel<AIServiceConfigPanel> {
                     geminiStatusLabel.setText("Connected");
                     geminiStatusLabel.setForeground(UIUtil.getLabelSuccessForeground());
                     geminiStatusLabel.setIcon(AllIcons.General.InspectionsOK);
+                    geminiStatusLabel.setToolTipText(geminiCacheUsage);
                     LOG.debug("Loaded Gemini API key into UI");
                 } else {
                     geminiApiKeyField.setText("");
                     geminiStatusLabel.setText("Not Connected");
                     geminiStatusLabel.setForeground(new TriagePanelConstants().errorForeground);
                     geminiStatusLabel.setIcon(AllIcons.General.Error);
+                    geminiStatusLabel.setToolTipText(null);
                     LOG.debug("No Gemini API key found in storage");
                 }
                 
@@ -276,6 +286,21 @@ public class AIServiceConfigPanel extends JBPanel<AIServiceConfigPanel> {
         });
     }
     
+    /**
+     * Describes how much of a provider's prompts were served from its prompt cache.
+     * 
+     * @param serviceType the service type
+     * @return the description, or null if the provider has no cache usage to show
+     */
+    private static String describePromptCacheUsage(AIServiceType serviceType) {
+        AIServiceProvider provider = AIServiceFactory.getProviderStatic(serviceType);
+        PromptCacheMetrics metrics = provider != null ? provider.getPromptCacheMetrics() : null;
+        if (metrics == null || metrics.getRequestCount() == 0) {
+            return null;
+        }
+        return "Prompt cache since IDE start: " + metrics;
+    }
+    
     /**
      * Updates the original state for modification detection.
      */
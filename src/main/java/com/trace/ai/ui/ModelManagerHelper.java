@@ -8,13 +8,13 @@ import com.intellij.ui.components.JBPasswordField;
 import javax.swing.JButton;
 import com.intellij.util.ui.UIUtil;
 import com.trace.ai.services.AIModelService;
+import com.trace.ai.services.AIServiceFactory;
 import com.trace.ai.models.AIModel;
 import com.trace.ai.configuration.AIServiceType;
 import com.trace.ai.services.providers.GeminiProvider;
 import com.trace.ai.services.providers.OpenAIProvider;
 import com.trace.security.SecureAPIKeyManager;
 import com.intellij.openapi.application.ApplicationManager;
-import java.net.http.HttpClient;
 import java.util.List;
 import java.util.ArrayList;
 import javax.swing.DefaultListModel;
@@ -182,7 +182,7 @@ public class ModelManagerHelper {
     public void discoverGeminiModels(AIModelService modelService, String apiKey) {
         LOG.info("Discovering Gemini models dynamically");
         
-        GeminiProvider provider = new GeminiProvider(HttpClient.newHttpClient());
+        GeminiProvider provider = new GeminiProvider(AIServiceFactory.getHttpClientRegistryStatic());
         provider.discoverAvailableModels(apiKey)
             .thenAccept(allModels -> {
                 ApplicationManager.getApplication().invokeLater(() -> {
@@ -293,7 +293,7 @@ public class ModelManagerHelper {
         try {
             LOG.info("Discovering OpenAI models");
             
-            OpenAIProvider provider = new OpenAIProvider(HttpClient.newHttpClient());
+            OpenAIProvider provider = new OpenAIProvider(AIServiceFactory.getHttpClientRegistryStatic());
             String[] discoveredModels = provider.discoverAvailableModels(apiKey).get();
             
             if (discoveredModels != null && discoveredModels.length > 0) {
@@ -328,7 +328,7 @@ public class ModelManagerHelper {
         try {
             LOG.info("Discovering Gemini models from provider");
             
-            GeminiProvider provider = new GeminiProvider(HttpClient.newHttpClient());
+            GeminiProvider provider = new GeminiProvider(AIServiceFactory.getHttpClientRegistryStatic());
             String[] discoveredModels = provider.discoverAvailableModels(apiKey).get();
             
             if (discoveredModels != null && discoveredModels.length > 0) {
@@ -8,13 +8,14 @@ import com.intellij.util.ui.UIUtil;
 import com.intellij.icons.AllIcons;
 import com.trace.security.SecureAPIKeyManager;
 import com.trace.ai.configuration.AIServiceType;
+import com.trace.ai.services.AIServiceFactory;
+import com.trace.ai.services.http.HttpClientRegistry;
+import com.trace.ai.services.http.HttpOperation;
 import com.trace.common.constants.TriagePanelConstants;
 import com.intellij.openapi.application.ApplicationManager;
 import java.net.URI;
-import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
-import java.time.Duration;
 import java.util.concurrent.CompletableFuture;
 
 /**
@@ -207,12 +208,11 @@ public class APIKeyManagerHelper {
             LOG.info("Testing OpenAI connectivity with API key: " + apiKey.substring(0, 8) + "...");
             
             // Use HEAD request to test connectivity without consuming quota
-            var client = HttpClient.newHttpClient();
-            var request = HttpRequest.newBuilder()
-                .uri(URI.create("https://api.openai.com/v1/models"))
+            HttpClientRegistry httpClients = AIServiceFactory.getHttpClientRegistryStatic();
+            var client = httpClients.getClient(HttpOperation.DISCOVERY);
+            var request = httpClients.newRequest(HttpOperation.DISCOVERY, URI.create("https://api.openai.com/v1/models"))
                 .header("Authorization", "Bearer " + apiKey)
                 .method("HEAD", HttpRequest.BodyPublishers.noBody())
-                .timeout(Duration.ofSeconds(10))
                 .build();
             
             var response = client.send(request, HttpResponse.BodyHandlers.discarding());
@@ -241,11 +241,11 @@ public class APIKeyManagerHelper {
             LOG.info("Testing Gemini connectivity with API key: " + apiKey.substring(0, 8) + "...");
             
             // Use GET request to test connectivity without consuming quota
-            var client = HttpClient.newHttpClient();
-            var request = HttpRequest.newBuilder()
-                .uri(URI.create("https://generativelanguage.googleapis.com/v1beta/models?key=" + apiKey))
+            HttpClientRegistry httpClients = AIServiceFactory.getHttpClientRegistryStatic();
+            var client = httpClients.getClient(HttpOperation.DISCOVERY);
+            var request = httpClients.newRequest(HttpOperation.DISCOVERY,
+                    URI.create("https://generativelanguage.googleapis.com/v1beta/models?key=" + apiKey))
                 .GET()
-                .timeout(Duration.ofSeconds(10))
                 .build();
             
             var response = client.send(request, HttpResponse.BodyHandlers.ofString());
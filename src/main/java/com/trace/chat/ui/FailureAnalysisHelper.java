@@ -6,7 +6,11 @@ import com.intellij.openapi.project.Project;
 import com.trace.ai.configuration.AISettings;
 import com.trace.ai.models.AIAnalysisResult;
 import com.trace.ai.services.AIAnalysisOrchestrator;
+import com.trace.ai.services.AnalysisHandle;
+import com.trace.ai.services.AnalysisTracker;
 import com.trace.ai.services.ChatHistoryService;
+import com.trace.ai.services.FailureBatch;
+import com.trace.ai.services.FailureCluster;
 import com.trace.ai.services.AnalysisMode;
 import com.trace.chat.components.ChatMessage;
 import com.trace.chat.components.MessageComponent;
@@ -35,6 +39,10 @@ public class FailureAnalysisHelper {
     
     // Constants for error messages
     private static final String ERROR_GENERATING_PROMPT_PREFIX = "Error generating prompt: ";
+    private static final String REUSED_ANALYSIS_NOTE = "_Reused from a recent analysis of the same failure._";
+    
+    // Scenarios named under each group of a batch analysis, the rest are counted
+    private static final int MAX_SCENARIOS_PER_GROUP = 5;
     
     // Analysis mode constants
     private static final String ANALYSIS_MODE_OVERVIEW = "Quick Overview";
@@ -54,6 +62,7 @@ public class FailureAnalysisHelper {
     private String currentAnalysisMode;
     private String currentTestRunId;
     private FailureInfo currentFailureInfo;
+    private final FailureBatch failureBatch = new FailureBatch();
     
     /**
      * Constructor for FailureAnalysisHelper.
@@ -131,8 +140,16 @@ public class FailureAnalysisHelper {
             return result[0];
         }
         
+        boolean batchAnalysisEnabled = AISettings.getInstance().isBatchAnalysisEnabled();
+        
         // Check if we already have a failure in this test run
         if (currentTestRunId != null) {
+            if (batchAnalysisEnabled) {
+                // Same test run - keep it for the batch analysis when the run finishes
+                failureBatch.add(failureInfo);
+                LOG.info("Collected subsequent failure for batch analysis of test run: " + currentTestRunId);
+                return false;
+            }
             // Same test run - ignore silently
             LOG.info("Ignoring subsequent failure in test run: " + currentTestRunId);
             if (LOG.isDebugEnabled()) {
@@ -150,6 +167,11 @@ public class FailureAnalysisHelper {
                      ", Failed Step: " + failureInfo.getFailedStepText());
         }
         
+        failureBatch.clear();
+        if (batchAnalysisEnabled) {
+            failureBatch.add(failureInfo);
+        }
+        
         // Store failure context for future user queries
         this.currentFailureInfo = failureInfo;
         if (aiAnalysisOrchestrator != null) {
@@ -163,6 +185,154 @@ public class FailureAnalysisHelper {
         return true;
     }
     
+    /**
+     * Analyzes all failures collected during the test run, one request per root cause.
+     * 
+     * <p>Called when a test run finishes. Does nothing unless batch analysis is enabled and
+     * more than one failure was collected. Shows a summary of the failure groups, then the
+     * analysis of each group as it completes. The group of the first failure is not sent
+     * again, as it was already analyzed when the failure occurred.</p>
+     */
+    public void analyzeFailureBatch() {
+        if (!SwingUtilities.isEventDispatchThread()) {
+            ApplicationManager.getApplication().invokeLater(this::analyzeFailureBatch);
+            return;
+        }
+        
+        AISettings aiSettings = AISettings.getInstance();
+        if (!aiSettings.isTraceEnabled() || !aiSettings.isBatchAnalysisEnabled()) {
+            failureBatch.clear();
+            return;
+        }
+        
+        List<FailureCluster> clusters = failureBatch.getClusters();
+        int failureCount = failureBatch.size();
+        int droppedCount = failureBatch.getDroppedCount();
+        failureBatch.clear();
+        if (failureCount <= 1 || currentTestRunId == null || currentFailureInfo == null) {
+            LOG.debug("No further failures to analyze in batch");
+            return;
+        }
+        if (aiAnalysisOrchestrator == null) {
+            LOG.warn("AIAnalysisOrchestrator not yet initialized, skipping batch analysis");
+            return;
+        }
+        
+        LOG.info("Batch analysis of test run " + currentTestRunId + ": " + failureCount
+            + " failures in " + clusters.size() + " cluster(s)");
+        
+        List<FailureCluster> pendingClusters = new ArrayList<>();
+        for (FailureCluster cluster : clusters) {
+            if (!cluster.contains(currentFailureInfo)) {
+                pendingClusters.add(cluster);
+            }
+        }
+        addMessage(new ChatMessage(ChatMessage.Role.AI,
+            formatBatchSummary(clusters, failureCount, droppedCount),
+            System.currentTimeMillis(), null, null));
+        if (pendingClusters.isEmpty()) {
+            return;
+        }
+        
+        // A new test run cancels the batch, but a follow-up question does not
+        final AnalysisHandle handle = AnalysisTracker.getInstance(project).startAnalysis(currentTestRunId, false);
+        aiAnalysisOrchestrator.analyzeFailureClusters(pendingClusters, (cluster, result) ->
+            ApplicationManager.getApplication().invokeLater(() -> {
+                if (handle.isCancelled()) {
+                    return;
+                }
+                addMessage(new ChatMessage(ChatMessage.Role.AI,
+                    formatClusterAnalysis(clusters.indexOf(cluster) + 1, cluster, result),
+                    System.currentTimeMillis(),
+                    result.hasPrompt() ? result.getPrompt() : null,
+                    null));
+            }), handle
+        ).exceptionally(throwable -> {
+            if (handle.isCancelled()) {
+                LOG.info("Batch failure analysis was cancelled");
+                return null;
+            }
+            LOG.error("Error during batch failure analysis: " + throwable.getMessage(), throwable);
+            ApplicationManager.getApplication().invokeLater(() -> addMessage(new ChatMessage(ChatMessage.Role.AI,
+                ERROR_GENERATING_PROMPT_PREFIX + throwable.getMessage(), System.currentTimeMillis(), null, null)));
+            return null;
+        });
+    }
+    
+    /**
+     * Formats the overview of the failure groups of a test run.
+     *
+     * @param clusters The failure clusters, largest first
+     * @param failureCount The number of failures collected
+     * @param droppedCount The number of failures that were not collected
+     * @return The summary in markdown
+     */
+    private String formatBatchSummary(List<FailureCluster> clusters, int failureCount, int droppedCount) {
+        StringBuilder summary = new StringBuilder();
+        summary.append("**Test run summary:** ").append(failureCount).append(" failures")
+            .append(" with ").append(clusters.size()).append(clusters.size() == 1 ? " root cause" : " distinct root causes")
+            .append("\n\n");
+        for (int i = 0; i < clusters.size(); i++) {
+            FailureCluster cluster = clusters.get(i);
+            summary.append(i + 1).append(". ").append(describeCluster(cluster));
+            if (cluster.contains(currentFailureInfo)) {
+                summary.append(" _(analyzed above)_");
+            }
+            summary.append("\n");
+        }
+        if (droppedCount > 0) {
+            summary.append("\n_").append(droppedCount).append(" further failures were not included._\n");
+        }
+        return summary.toString();
+    }
+    
+    /**
+     * Formats the analysis of one failure group.
+     *
+     * @param groupNumber The number of the group in the summary
+     * @param cluster The failure cluster
+     * @param result The analysis result of the cluster
+     * @return The analysis message in markdown
+     */
+    private String formatClusterAnalysis(int groupNumber, FailureCluster cluster, AIAnalysisResult result) {
+        StringBuilder message = new StringBuilder();
+        message.append("**Group ").append(groupNumber).append(":** ").append(describeCluster(cluster)).append("\n\n");
+        
+        List<FailureInfo> failures = cluster.getFailures();
+        int named = Math.min(failures.size(), MAX_SCENARIOS_PER_GROUP);
+        message.append("Affected scenarios: ");
+        for (int i = 0; i < named; i++) {
+            if (i > 0) {
+                message.append(", ");
+            }
+            message.append(failures.get(i).getScenarioName());
+        }
+        if (failures.size() > named) {
+            message.append(" and ").append(failures.size() - named).append(" more");
+        }
+        message.append("\n\n");
+        
+        String analysis = result.getAnalysis();
+        message.append(analysis != null && !analysis.trim().isEmpty()
+            ? analysis
+            : "AI analysis completed but returned no content.");
+        return message.toString();
+    }
+    
+    /**
+     * Describes a failure group by its failed step and size.
+     *
+     * @param cluster The failure cluster
+     * @return The description in markdown
+     */
+    private static String describeCluster(FailureCluster cluster) {
+        FailureInfo representative = cluster.getRepresentative();
+        String step = representative.getFailedStepText() != null
+            ? representative.getFailedStepText()
+            : representative.getScenarioName();
+        return "`" + step + "` - " + cluster.size() + (cluster.size() == 1 ? " scenario" : " scenarios");
+    }
+    
     /**
      * Handles user messages with AI analysis if configured, otherwise shows configuration guidance.
      * Enhanced with comprehensive logging for prompt verification and robust error handling.
@@ -274,8 +444,13 @@ public class FailureAnalysisHelper {
         }
         
         LOG.info("Calling aiAnalysisOrchestrator.analyzeUserQueryWithDocuments()");
+        final ChatMessage[] streamedMessage = {null};
+        final StreamingResponseRenderer renderer = createStreamingRenderer(streamedMessage);
+        // Follow-up questions do not supersede each other, but a new test run cancels them
+        final AnalysisHandle handle = AnalysisTracker.getInstance(project).startAnalysis(currentTestRunId, false);
+        handle.onCancel(renderer::close);
         CompletableFuture<AIAnalysisResult> analysisFuture = 
-            aiAnalysisOrchestrator.analyzeUserQueryWithDocuments(currentFailureInfo, messageText);
+            aiAnalysisOrchestrator.analyzeUserQueryWithDocuments(currentFailureInfo, messageText, renderer::append, handle);
         
         // Handle the analysis result
         analysisFuture.thenAccept(result -> {
@@ -291,25 +466,23 @@ public class FailureAnalysisHelper {
                 if (result.getAnalysis() != null && !result.getAnalysis().trim().isEmpty()) {
                     LOG.info("Adding AI response to chat");
                     // Do not attach Show AI thinking for user query responses
-                    addMessage(new ChatMessage(ChatMessage.Role.AI, result.getAnalysis(), 
-                                            System.currentTimeMillis(), null, null));
+                    showFinalResponse(streamedMessage, renderer, result.getAnalysis());
                 } else {
                     LOG.info("AI analysis returned empty content");
-                    addMessage(new ChatMessage(ChatMessage.Role.AI, 
-                        "AI analysis completed but returned no content.", 
-                        System.currentTimeMillis(), null, null));
+                    showFinalResponse(streamedMessage, renderer, "AI analysis completed but returned no content.");
                 }
             } else {
                 LOG.info("AI analysis returned null result");
-                addMessage(new ChatMessage(ChatMessage.Role.AI, 
-                    "AI analysis returned no result.", 
-                    System.currentTimeMillis(), null, null));
+                showFinalResponse(streamedMessage, renderer, "AI analysis returned no result.");
             }
         }).exceptionally(throwable -> {
+            if (handle.isCancelled()) {
+                LOG.info("User query analysis was cancelled");
+                return null;
+            }
             LOG.error("User query analysis failed: " + throwable.getMessage(), throwable);
             String errorMessage = "AI analysis failed: " + throwable.getMessage();
-            addMessage(new ChatMessage(ChatMessage.Role.AI, errorMessage, 
-                                    System.currentTimeMillis(), null, null));
+            showFinalResponse(streamedMessage, renderer, errorMessage);
             return null;
         });
         
@@ -397,10 +570,18 @@ public class FailureAnalysisHelper {
                     return;
                 }
                 
+                // Streamed text replaces the typing indicator as soon as the first tokens arrive
+                final ChatMessage[] streamedMessage = {null};
+                final StreamingResponseRenderer renderer = createStreamingRenderer(streamedMessage);
+                // A newer failure analysis cancels this one, and so does a new test run
+                final AnalysisHandle handle = AnalysisTracker.getInstance(project).startAnalysis(currentTestRunId, true);
+                handle.onCancel(renderer::close);
                 CompletableFuture<AIAnalysisResult> analysisFuture = 
                     aiAnalysisOrchestrator.analyzeInitialFailureWithDocuments(
                         failureInfo,
-                        ANALYSIS_MODE_OVERVIEW.equals(currentAnalysisMode) ? AnalysisMode.OVERVIEW : AnalysisMode.FULL
+                        ANALYSIS_MODE_OVERVIEW.equals(currentAnalysisMode) ? AnalysisMode.OVERVIEW : AnalysisMode.FULL,
+                        renderer::append,
+                        handle
                     );
                 
                 // Handle the analysis result
@@ -432,20 +613,24 @@ public class FailureAnalysisHelper {
                             ApplicationManager.getApplication().invokeLater(() -> scrollHelper.requestAlignNewestIfNear(chatScrollPane));
                         }
                         
-                        // Create a separate AI message with just the analysis result
-                        addMessage(new ChatMessage(ChatMessage.Role.AI, result.getAnalysis(),
-                                                System.currentTimeMillis(), null, null));
+                        // Show the analysis result as a separate AI message, completing the streamed one if any
+                        String analysisText = result.isCached()
+                            ? result.getAnalysis() + "\n\n" + REUSED_ANALYSIS_NOTE
+                            : result.getAnalysis();
+                        showFinalResponse(streamedMessage, renderer, analysisText);
                     } else {
-                        addMessage(new ChatMessage(ChatMessage.Role.AI, 
-                            "AI analysis completed but returned no content.", 
-                            System.currentTimeMillis(), null, null));
+                        showFinalResponse(streamedMessage, renderer, "AI analysis completed but returned no content.");
                     }
                 }).exceptionally(throwable -> {
+                    if (handle.isCancelled()) {
+                        // The chat now belongs to a newer analysis, leave it untouched
+                        LOG.info("Enhanced failure analysis was cancelled");
+                        return null;
+                    }
                     hideTypingIndicator();
                     LOG.error("Error during enhanced failure analysis: " + throwable.getMessage(), throwable);
                     String errorMessage = ERROR_GENERATING_PROMPT_PREFIX + throwable.getMessage();
-                    addMessage(new ChatMessage(ChatMessage.Role.AI, errorMessage, 
-                                            System.currentTimeMillis(), null, null));
+                    showFinalResponse(streamedMessage, renderer, errorMessage);
                     return null;
                 });
                 
@@ -506,6 +691,61 @@ public class FailureAnalysisHelper {
         }
     }
     
+    /**
+     * Creates a renderer that shows a streamed AI response as a single message.
+     * The first frame adds the message, replacing the typing indicator; later frames replace
+     * that message in-place. Frames run on the EDT.
+     *
+     * @param streamedMessage Holds the message currently shown for the stream, confined to the EDT
+     * @return The renderer to feed streamed text into
+     */
+    private StreamingResponseRenderer createStreamingRenderer(ChatMessage[] streamedMessage) {
+        return new StreamingResponseRenderer(text -> {
+            ChatMessage current = streamedMessage[0];
+            if (current == null) {
+                ChatMessage first = new ChatMessage(ChatMessage.Role.AI, text, System.currentTimeMillis(), null, null);
+                addMessage(first);
+                streamedMessage[0] = first;
+                return;
+            }
+            ChatMessage updated = new ChatMessage(ChatMessage.Role.AI, text, current.getTimestamp(), null, null);
+            if (MessageManagerHelper.replaceMessage(current, updated, chatHistory, messageContainer)) {
+                streamedMessage[0] = updated;
+                scrollHelper.requestAlignNewestIfNear(chatScrollPane);
+            }
+        });
+    }
+    
+    /**
+     * Shows the final text of an AI response on the EDT.
+     * Stops the streaming renderer first so a late frame cannot overwrite the final text, then
+     * replaces the streamed message if one is shown, or adds a new message otherwise.
+     *
+     * @param streamedMessage Holds the message currently shown for the stream, if any
+     * @param renderer The streaming renderer of the response
+     * @param text The final response text
+     */
+    private void showFinalResponse(ChatMessage[] streamedMessage, StreamingResponseRenderer renderer, String text) {
+        if (!SwingUtilities.isEventDispatchThread()) {
+            ApplicationManager.getApplication().invokeLater(() -> showFinalResponse(streamedMessage, renderer, text));
+            return;
+        }
+        
+        renderer.close();
+        ChatMessage current = streamedMessage[0];
+        if (current == null) {
+            addMessage(new ChatMessage(ChatMessage.Role.AI, text, System.currentTimeMillis(), null, null));
+            return;
+        }
+        
+        // The chat may have been cleared for a new failure while the response was streaming
+        ChatMessage finalMessage = new ChatMessage(ChatMessage.Role.AI, text, current.getTimestamp(), null, null);
+        if (MessageManagerHelper.replaceMessage(current, finalMessage, chatHistory, messageContainer)) {
+            streamedMessage[0] = finalMessage;
+            scrollHelper.requestAlignNewestIfNear(chatScrollPane);
+        }
+    }
+    
     /**
      * Adds a message to the chat history and updates the UI with proper EDT compliance.
      * Ensures thread safety by dispatching UI updates to the Event Dispatch Thread.
@@ -249,6 +249,54 @@ public class MessageManagerHelper {
         }
     }
     
+    /**
+     * Replaces a message in the chat history and its component in-place.
+     * Used to update a streamed AI response without rebuilding the whole message container.
+     * Must be called on the EDT.
+     *
+     * @param oldMessage The message currently shown
+     * @param newMessage The message to show instead
+     * @param chatHistory The chat history list
+     * @param messageContainer The message container component
+     * @return true if the message was found and replaced, false otherwise
+     */
+    public static boolean replaceMessage(ChatMessage oldMessage,
+                                         ChatMessage newMessage,
+                                         List<ChatMessage> chatHistory,
+                                         JPanel messageContainer) {
+        if (oldMessage == null || newMessage == null || messageContainer == null) return false;
+        
+        // Messages compare by value, so look them up by identity
+        int historyIndex = -1;
+        for (int i = chatHistory.size() - 1; i >= 0; i--) {
+            if (chatHistory.get(i) == oldMessage) {
+                historyIndex = i;
+                break;
+            }
+        }
+        int componentIndex = -1;
+        for (int i = messageContainer.getComponentCount() - 1; i >= 0; i--) {
+            Component c = messageContainer.getComponent(i);
+            if (c instanceof MessageComponent && ((MessageComponent) c).getMessage() == oldMessage) {
+                componentIndex = i;
+                break;
+            }
+        }
+        if (historyIndex < 0 || componentIndex < 0) {
+            return false;
+        }
+        
+        chatHistory.set(historyIndex, newMessage);
+        MessageComponent newComponent = new MessageComponent(newMessage);
+        newComponent.setAlignmentY(Component.TOP_ALIGNMENT);
+        messageContainer.remove(componentIndex);
+        messageContainer.add(newComponent, componentIndex);
+        
+        messageContainer.revalidate();
+        messageContainer.repaint();
+        return true;
+    }
+    
     /**
      * Clears the chat history and UI components.
      * Removes all messages and resets the message container.
@@ -0,0 +1,143 @@
+package com.trace.chat.ui;
+
+import org.jetbrains.annotations.NotNull;
+
+import javax.swing.Timer;
+import java.util.function.Consumer;
+
+/**
+ * Coalesces streamed AI response text into frame-rate-limited updates on the EDT.
+ *
+ * <p>Providers deliver text in small pieces on a background thread, often many per
+ * millisecond. Re-rendering the markdown message for every piece would flood the EDT, so
+ * this class only accumulates text as it arrives and schedules at most one frame at a time.
+ * A frame renders everything received so far, and frames are spaced at least
+ * {@link #FRAME_INTERVAL_MS} apart. Pieces that arrive while a frame is pending are simply
+ * included in that frame.</p>
+ *
+ * <p>{@link #append(String)} may be called from any thread. The frame callback always runs
+ * on the EDT and is never called after {@link #close()}.</p>
+ *
+ * @author Alex Ibasitas
+ * @version 1.0
+ * @since 1.0
+ */
+public final class StreamingResponseRenderer {
+    
+    // Ten frames per second keeps the text flowing without re-rendering markdown constantly
+    static final int FRAME_INTERVAL_MS = 100;
+    
+    private final Consumer<String> onFrame;
+    private final FrameScheduler scheduler;
+    
+    // Guarded by this
+    private final StringBuilder text = new StringBuilder();
+    private boolean frameScheduled;
+    private boolean closed;
+    
+    private volatile long lastFrameTime;
+    
+    /**
+     * Schedules a frame to run on the EDT.
+     */
+    @FunctionalInterface
+    interface FrameScheduler {
+        
+        /**
+         * Runs the frame on the EDT after the given delay.
+         *
+         * @param frame the frame to run
+         * @param delayMs the delay in milliseconds, zero to run as soon as possible
+         */
+        void schedule(@NotNull Runnable frame, int delayMs);
+    }
+    
+    /**
+     * Creates a renderer that schedules frames with a one-shot Swing timer.
+     *
+     * @param onFrame receives the full text received so far, on the EDT
+     */
+    public StreamingResponseRenderer(@NotNull Consumer<String> onFrame) {
+        this(onFrame, StreamingResponseRenderer::scheduleWithTimer);
+    }
+    
+    /**
+     * Creates a renderer with a custom frame scheduler.
+     *
+     * @param onFrame receives the full text received so far
+     * @param scheduler schedules frames
+     */
+    StreamingResponseRenderer(@NotNull Consumer<String> onFrame, @NotNull FrameScheduler scheduler) {
+        this.onFrame = onFrame;
+        this.scheduler = scheduler;
+    }
+    
+    /**
+     * Appends streamed text and schedules a frame if none is pending.
+     *
+     * @param delta the newly received text
+     */
+    public void append(@NotNull String delta) {
+        if (delta == null || delta.isEmpty()) {
+            return;
+        }
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            text.append(delta);
+            if (frameScheduled) {
+                return;
+            }
+            frameScheduled = true;
+        }
+        
+        long sinceLastFrame = System.currentTimeMillis() - lastFrameTime;
+        int delay = (int) Math.max(0, FRAME_INTERVAL_MS - sinceLastFrame);
+        scheduler.schedule(this::renderFrame, delay);
+    }
+    
+    /**
+     * Stops rendering. A frame that is already scheduled does nothing when it runs.
+     *
+     * <p>Call this on the EDT before showing the final response so that a late frame
+     * cannot overwrite it.</p>
+     */
+    public void close() {
+        synchronized (this) {
+            closed = true;
+        }
+    }
+    
+    /**
+     * Gets all text received so far.
+     *
+     * @return the accumulated text
+     */
+    @NotNull
+    public synchronized String getText() {
+        return text.toString();
+    }
+    
+    /**
+     * Renders everything received so far. Text appended after the snapshot schedules the next frame.
+     */
+    private void renderFrame() {
+        String snapshot;
+        synchronized (this) {
+            frameScheduled = false;
+            if (closed) {
+                return;
+            }
+            snapshot = text.toString();
+        }
+        lastFrameTime = System.currentTimeMillis();
+        onFrame.accept(snapshot);
+    }
+    
+    private static void scheduleWithTimer(Runnable frame, int delayMs) {
+        Timer timer = new Timer(delayMs, e -> frame.run());
+        timer.setRepeats(false);
+        timer.start();
+    }
+}
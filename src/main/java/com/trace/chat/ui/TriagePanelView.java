@@ -15,6 +15,7 @@ import com.intellij.openapi.Disposable;
 import com.trace.ai.configuration.AISettings;
 import com.trace.ai.models.AIAnalysisResult;
 import com.trace.ai.services.AIAnalysisOrchestrator;
+import com.trace.ai.services.AnalysisTracker;
 import com.trace.ai.services.ChatHistoryService;
 import com.trace.ai.services.AnalysisMode;
 import com.trace.ai.prompts.InitialPromptFailureAnalysisService;
@@ -222,6 +223,12 @@ public class TriagePanelView {
     public void onTestRunStarted() {
         LOG.debug("Test run started, clearing previous run (ID: " + currentTestRunId + ")");
         
+        // Stop analyses of the previous run so they neither spend tokens nor write into the cleared chat
+        int cancelled = AnalysisTracker.getInstance(project).cancelAll();
+        if (cancelled > 0) {
+            LOG.info("Cancelled " + cancelled + " AI analysis(es) of the previous test run");
+        }
+        
         // Clear test run tracking
         currentTestRunId = null;
         
@@ -665,6 +672,18 @@ public class TriagePanelView {
      * @param message The message to add to the UI
      */
 
+    /**
+     * Called when a test run finishes.
+     * Analyzes the failures collected during the run when batch analysis is enabled.
+     * This method is called by the CucumberTestExecutionListener when onTestingFinished() fires.
+     */
+    public void onTestRunFinished() {
+        LOG.debug("Test run finished (ID: " + currentTestRunId + ")");
+        if (failureAnalysisHelper != null) {
+            failureAnalysisHelper.analyzeFailureBatch();
+        }
+    }
+
     /**
      * Updates the panel with new failure information.
      * Clears the chat and generates an initial AI prompt for the failure.
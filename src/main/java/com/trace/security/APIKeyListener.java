@@ -0,0 +1,31 @@
+package com.trace.security;
+
+import com.intellij.util.messages.Topic;
+import com.trace.ai.configuration.AIServiceType;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Listener for changes of the stored API keys.
+ *
+ * <p>{@link SecureAPIKeyManager} publishes to {@link #TOPIC} on the application message bus
+ * after a key has been stored or cleared, so that services holding clients built with the
+ * old key can drop them instead of reading the credential store on every request.</p>
+ *
+ * @author Alex Ibasitas
+ * @since 1.0.0
+ */
+public interface APIKeyListener {
+    
+    /**
+     * Topic of API key changes on the application message bus.
+     */
+    @Topic.AppLevel
+    Topic<APIKeyListener> TOPIC = new Topic<>("TRACE API key changes", APIKeyListener.class);
+    
+    /**
+     * Called after the API key of a service has been stored or cleared.
+     *
+     * @param serviceType the service whose key changed
+     */
+    void apiKeyChanged(@NotNull AIServiceType serviceType);
+}
@@ -5,6 +5,7 @@ import com.intellij.credentialStore.CredentialAttributesKt;
 import com.intellij.credentialStore.Credentials;
 import com.intellij.ide.passwordSafe.PasswordSafe;
 import com.intellij.openapi.application.ApplicationInfo;
+import com.intellij.openapi.application.ApplicationManager;
 import com.intellij.openapi.diagnostic.Logger;
 import com.trace.ai.configuration.AIServiceType;
 
@@ -51,7 +52,7 @@ public final class SecureAPIKeyManager {
      * 
      * <p>The key is encrypted and stored using IntelliJ's PasswordSafe, which integrates
      * with the system keychain for additional security. Empty or null keys are rejected
-     * and logged as warnings.</p>
+     * and logged as warnings. A stored key is announced on {@link APIKeyListener#TOPIC}.</p>
      * 
      * @param serviceType the AI service type
      * @param apiKey the API key to store
@@ -72,6 +73,7 @@ public final class SecureAPIKeyManager {
             passwordSafe.set(attributes, credentials);
             
             LOG.info("API key stored for service: " + serviceType.getDisplayName());
+            notifyKeyChanged(serviceType);
             return true;
             
         } catch (Exception e) {
@@ -124,7 +126,8 @@ public final class SecureAPIKeyManager {
      * Removes the API key for the specified AI service.
      * 
      * <p>The key is permanently deleted from secure storage. This operation cannot be undone.
-     * The method logs successful removals and any errors that occur during the process.</p>
+     * The method logs successful removals and any errors that occur during the process.
+     * A cleared key is announced on {@link APIKeyListener#TOPIC}.</p>
      * 
      * @param serviceType the AI service type
      * @return true if the key was removed successfully, false otherwise
@@ -137,6 +140,7 @@ public final class SecureAPIKeyManager {
             PasswordSafe.getInstance().set(attributes, null);
             
             LOG.info("API key cleared for service: " + serviceType.getDisplayName());
+            notifyKeyChanged(serviceType);
             return true;
             
         } catch (Exception e) {
@@ -145,6 +149,17 @@ public final class SecureAPIKeyManager {
         }
     }
     
+    /**
+     * Tells the subscribers of {@link APIKeyListener#TOPIC} that a key has changed.
+     * 
+     * @param serviceType the AI service type
+     */
+    private static void notifyKeyChanged(@NotNull AIServiceType serviceType) {
+        ApplicationManager.getApplication().getMessageBus()
+            .syncPublisher(APIKeyListener.TOPIC)
+            .apiKeyChanged(serviceType);
+    }
+    
     /**
      * Checks if an API key exists for the specified AI service.
      * 
@@ -1,15 +1,21 @@
 package com.trace.test.extractors;
 
+import com.intellij.openapi.project.DumbService;
+import com.intellij.openapi.project.IndexNotReadyException;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.vfs.VirtualFile;
 import com.intellij.psi.*;
+import com.intellij.psi.search.GlobalSearchScope;
 import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.util.indexing.FileBasedIndex;
 import com.trace.test.models.GherkinScenarioInfo;
 
 import java.util.ArrayList;
+import java.util.LinkedHashSet;
 import java.util.List;
-import java.util.regex.Pattern;
-import java.util.regex.Matcher;
+import java.util.Set;
+import java.util.function.Predicate;
 
 /**
  * Extracts Gherkin scenario information using IntelliJ's PSI.
@@ -22,6 +28,9 @@ import java.util.regex.Matcher;
  * <p>The extractor supports both regular scenarios and scenario outlines with
  * examples tables, providing comprehensive context for test failure analysis.</p>
  * 
+ * <p>Candidate feature files are looked up in the {@link GherkinStepIndex}, so only files
+ * that mention the failed step or scenario are parsed.</p>
+ * 
  * @author Alex Ibasitas
  * @since 1.0.0
  */
@@ -129,6 +138,24 @@ public class GherkinScenarioExtractor {
      * @return GherkinScenarioInfo containing scenario details, or null if not found
      */
     public GherkinScenarioInfo extractScenarioInfo(String failedStepText, String scenarioName) {
+        return extractScenarioInfo(failedStepText, scenarioName, null);
+    }
+
+    /**
+     * Extracts Gherkin scenario information for a failed step, using the pattern of its
+     * step definition when the step text itself cannot be found.
+     * 
+     * <p>The step definition pattern is only consulted after the step text and the
+     * scenario outline steps have been searched. It then finds the steps bound to the
+     * same step definition, which identifies the scenario when the runner reports the
+     * step differently from how the feature file spells it.</p>
+     *
+     * @param failedStepText The text of the failed step
+     * @param scenarioName The name of the scenario (if known)
+     * @param stepPattern The Cucumber Expression or regular expression of the step definition (if known)
+     * @return GherkinScenarioInfo containing scenario details, or null if not found
+     */
+    public GherkinScenarioInfo extractScenarioInfo(String failedStepText, String scenarioName, String stepPattern) {
         if (failedStepText == null || failedStepText.trim().isEmpty()) {
             LOG.warn("Failed step text is null or empty");
             return null;
@@ -138,7 +165,13 @@ public class GherkinScenarioExtractor {
             // Use read action for PSI operations (JetBrains best practice)
             return ApplicationManager.getApplication().<GherkinScenarioInfo>runReadAction(() -> {
                 try {
-                    return findScenarioByStep(failedStepText, scenarioName);
+                    GherkinScenarioInfo scenarioInfo = findScenarioByStep(failedStepText, scenarioName, null);
+                    if (scenarioInfo == null && stepPattern != null
+                            && StepPatternMatcher.matchesStepDefinition(stepPattern, GherkinStepIndex.normalizeStep(failedStepText))) {
+                        LOG.debug("Searching steps bound to step definition: " + stepPattern);
+                        scenarioInfo = findScenarioByStep(failedStepText, scenarioName, stepPattern);
+                    }
+                    return scenarioInfo;
                 } catch (Exception e) {
                     LOG.warn("Failed to extract scenario info for: " + failedStepText, e);
                     return null;
@@ -151,21 +184,21 @@ public class GherkinScenarioExtractor {
     }
 
     /**
-     * Finds the scenario containing the failed step by searching through all feature files.
+     * Finds the scenario containing the failed step in the feature files that mention it.
      * 
-     * <p>This method iterates through all .feature files in the project and attempts to
-     * find a scenario that contains the specified failed step text.</p>
+     * <p>This method looks up the candidate feature files in the {@link GherkinStepIndex}
+     * and parses only those, instead of every feature file in the project.</p>
      * 
      * @param failedStepText The failed step text to search for
      * @param scenarioName The scenario name (optional, for more precise matching)
+     * @param stepPattern The step definition pattern to match steps with, or null to match the step text
      * @return GherkinScenarioInfo if found, null otherwise
      */
-    private GherkinScenarioInfo findScenarioByStep(String failedStepText, String scenarioName) {
-        // Find all .feature files in the project
-        List<PsiFile> featureFiles = findFeatureFiles();
+    private GherkinScenarioInfo findScenarioByStep(String failedStepText, String scenarioName, String stepPattern) {
+        List<PsiFile> featureFiles = findFeatureFiles(failedStepText, scenarioName, stepPattern);
         
         for (PsiFile featureFile : featureFiles) {
-            GherkinScenarioInfo scenarioInfo = parseFeatureFile(featureFile, failedStepText, scenarioName);
+            GherkinScenarioInfo scenarioInfo = parseFeatureFile(featureFile, failedStepText, scenarioName, stepPattern);
             if (scenarioInfo != null) {
                 return scenarioInfo;
             }
@@ -176,24 +209,73 @@ public class GherkinScenarioExtractor {
     }
 
     /**
-     * Finds all .feature files in the project by recursively searching the project structure.
+     * Finds the feature files that may contain the failed step.
      * 
-     * <p>This method traverses the project directory structure to locate all files with
-     * the .feature extension, which are Cucumber feature files.</p>
+     * <p>Files that contain both the step and the scenario name come first, then files
+     * that contain the step, then files that contain the scenario name. When no file
+     * contains the step literally, the parameterized steps of scenario outlines are
+     * matched against it. Given a step definition pattern, the steps it matches are
+     * looked up instead. While the indexes are being updated, no files are returned.</p>
      * 
-     * @return List of PSI files representing the found feature files
+     * @param failedStepText The failed step text to search for
+     * @param scenarioName The scenario name (optional)
+     * @param stepPattern The step definition pattern to match steps with, or null to match the step text
+     * @return List of PSI files representing the candidate feature files
      */
-    private List<PsiFile> findFeatureFiles() {
+    private List<PsiFile> findFeatureFiles(String failedStepText, String scenarioName, String stepPattern) {
         List<PsiFile> featureFiles = new ArrayList<>();
         
+        if (DumbService.isDumb(project)) {
+            LOG.info("Indexes are being updated, skipping Gherkin scenario lookup");
+            return featureFiles;
+        }
+        
         try {
+            FileBasedIndex index = FileBasedIndex.getInstance();
+            GlobalSearchScope scope = GlobalSearchScope.projectScope(project);
+            String stepKey = GherkinStepIndex.STEP_KEY_PREFIX + GherkinStepIndex.normalizeStep(failedStepText);
+            
+            Set<VirtualFile> stepFiles = new LinkedHashSet<>();
+            if (stepPattern != null) {
+                stepFiles.addAll(findFilesWithMatchingStep(index, scope,
+                    stepText -> StepPatternMatcher.matchesStepDefinition(stepPattern, stepText)));
+            } else {
+                stepFiles.addAll(index.getContainingFiles(GherkinStepIndex.NAME, stepKey, scope));
+                if (stepFiles.isEmpty()) {
+                    String normalizedStep = GherkinStepIndex.normalizeStep(failedStepText);
+                    stepFiles.addAll(findFilesWithMatchingStep(index, scope, stepText ->
+                        stepText.indexOf('<') >= 0 && StepPatternMatcher.matchesOutlineStep(stepText, normalizedStep)));
+                }
+            }
+            
+            Set<VirtualFile> scenarioFiles = new LinkedHashSet<>();
+            if (scenarioName != null && !scenarioName.trim().isEmpty()) {
+                scenarioFiles.addAll(index.getContainingFiles(GherkinStepIndex.NAME,
+                    GherkinStepIndex.SCENARIO_KEY_PREFIX + scenarioName.trim(), scope));
+            }
+            
+            Set<VirtualFile> candidates = new LinkedHashSet<>();
+            for (VirtualFile file : stepFiles) {
+                if (scenarioFiles.contains(file)) {
+                    candidates.add(file);
+                }
+            }
+            candidates.addAll(stepFiles);
+            candidates.addAll(scenarioFiles);
+            
             PsiManager psiManager = PsiManager.getInstance(project);
-            com.intellij.openapi.vfs.VirtualFile[] roots = 
-                com.intellij.openapi.project.ProjectUtil.guessProjectDir(project).getChildren();
+            for (VirtualFile file : candidates) {
+                PsiFile psiFile = psiManager.findFile(file);
+                if (psiFile != null) {
+                    featureFiles.add(psiFile);
+                }
+            }
             
-            for (com.intellij.openapi.vfs.VirtualFile root : roots) {
-                findFeatureFilesRecursively(root, featureFiles, psiManager);
+            if (LOG.isDebugEnabled()) {
+                LOG.debug("Found " + featureFiles.size() + " candidate feature files for step: " + failedStepText);
             }
+        } catch (IndexNotReadyException e) {
+            LOG.info("Indexes are being updated, skipping Gherkin scenario lookup");
         } catch (Exception e) {
             LOG.warn("Failed to find feature files", e);
         }
@@ -202,33 +284,34 @@ public class GherkinScenarioExtractor {
     }
 
     /**
-     * Recursively finds .feature files in a directory and its subdirectories.
+     * Finds the feature files with an indexed step that satisfies a condition.
      * 
-     * <p>This method performs a depth-first search through the directory structure,
-     * identifying files with the .feature extension and converting them to PSI files
-     * for further processing.</p>
+     * <p>Scenario outlines are indexed with their parameters, such as
+     * {@code I enter "<email>"}, while the failed step carries the example values, so
+     * these steps cannot be looked up by key. Instead, the indexed steps are matched
+     * one by one, each against a template compiled only once.</p>
      * 
-     * @param directory The directory to search recursively
-     * @param featureFiles List to accumulate found feature files
-     * @param psiManager The PSI manager for file conversion
+     * @param index The file-based index
+     * @param scope The scope to search in
+     * @param condition The condition on the normalized step text
+     * @return The files containing a matching step
      */
-    private void findFeatureFilesRecursively(com.intellij.openapi.vfs.VirtualFile directory, 
-                                           List<PsiFile> featureFiles, 
-                                           PsiManager psiManager) {
-        if (directory == null || !directory.isDirectory()) {
-            return;
-        }
-        
-        for (com.intellij.openapi.vfs.VirtualFile child : directory.getChildren()) {
-            if (child.isDirectory()) {
-                findFeatureFilesRecursively(child, featureFiles, psiManager);
-            } else if (child.getName().endsWith(".feature")) {
-                PsiFile psiFile = psiManager.findFile(child);
-                if (psiFile != null) {
-                    featureFiles.add(psiFile);
-                }
+    private Set<VirtualFile> findFilesWithMatchingStep(FileBasedIndex index, GlobalSearchScope scope,
+                                                       Predicate<String> condition) {
+        List<String> matchingKeys = new ArrayList<>();
+        index.processAllKeys(GherkinStepIndex.NAME, key -> {
+            if (key.startsWith(GherkinStepIndex.STEP_KEY_PREFIX)
+                    && condition.test(key.substring(GherkinStepIndex.STEP_KEY_PREFIX.length()))) {
+                matchingKeys.add(key);
             }
+            return true;
+        }, scope, null);
+        
+        Set<VirtualFile> files = new LinkedHashSet<>();
+        for (String key : matchingKeys) {
+            files.addAll(index.getContainingFiles(GherkinStepIndex.NAME, key, scope));
         }
+        return files;
     }
 
     /**
@@ -242,9 +325,11 @@ public class GherkinScenarioExtractor {
      * @param featureFile The PSI file representing the feature file to parse
      * @param failedStepText The failed step text to search for within scenarios
      * @param scenarioName The scenario name for more precise matching (optional)
+     * @param stepPattern The step definition pattern to match steps with, or null to match the step text
      * @return GherkinScenarioInfo if a matching scenario is found, null otherwise
      */
-    private GherkinScenarioInfo parseFeatureFile(PsiFile featureFile, String failedStepText, String scenarioName) {
+    private GherkinScenarioInfo parseFeatureFile(PsiFile featureFile, String failedStepText, String scenarioName,
+                                                 String stepPattern) {
         try {
             String fileContent = featureFile.getText();
             String[] lines = fileContent.split("\n");
@@ -280,7 +365,7 @@ public class GherkinScenarioExtractor {
                     // Check if previous scenario contains our failed step
                     if (inScenario && currentScenario != null) {
                         if (scenarioContainsFailedStep(currentScenario, currentSteps, backgroundSteps, 
-                                                      currentDataTable, currentExamplesTable, failedStepText, scenarioName, inScenarioOutline)) {
+                                                      currentDataTable, currentExamplesTable, failedStepText, scenarioName, stepPattern, inScenarioOutline)) {
                             return createEnhancedScenarioInfo(featureFile, featureName, currentScenario, 
                                                             currentSteps, backgroundSteps, currentScenarioTags, 
                                                             currentDataTable, currentExamplesTable, scenarioStartLine, inScenarioOutline);
@@ -338,7 +423,7 @@ public class GherkinScenarioExtractor {
             // Check the last scenario
             if (inScenario && currentScenario != null) {
                 if (scenarioContainsFailedStep(currentScenario, currentSteps, backgroundSteps, 
-                                              currentDataTable, currentExamplesTable, failedStepText, scenarioName, inScenarioOutline)) {
+                                              currentDataTable, currentExamplesTable, failedStepText, scenarioName, stepPattern, inScenarioOutline)) {
                     return createEnhancedScenarioInfo(featureFile, featureName, currentScenario, 
                                                     currentSteps, backgroundSteps, currentScenarioTags, 
                                                     currentDataTable, currentExamplesTable, scenarioStartLine, inScenarioOutline);
@@ -440,13 +525,15 @@ public class GherkinScenarioExtractor {
      * @param examplesTable The examples table for scenario outlines (if any)
      * @param failedStepText The failed step text to search for
      * @param requiredScenarioName The expected scenario name for matching (optional)
+     * @param stepPattern The step definition pattern to match steps with, or null to match the step text
      * @param isScenarioOutline Whether this is a scenario outline
      * @return true if the failed step is found in the scenario, false otherwise
      */
     private boolean scenarioContainsFailedStep(String scenarioName, List<String> scenarioSteps, 
                                              List<String> backgroundSteps, List<String> dataTable,
                                              ExamplesTable examplesTable, String failedStepText, 
-                                             String requiredScenarioName, boolean isScenarioOutline) {
+                                             String requiredScenarioName, String stepPattern,
+                                             boolean isScenarioOutline) {
         
         // Check if scenario name matches (if provided)
         if (requiredScenarioName != null && !requiredScenarioName.trim().isEmpty()) {
@@ -458,14 +545,14 @@ public class GherkinScenarioExtractor {
         
         // Check background steps
         for (String backgroundStep : backgroundSteps) {
-            if (stepMatches(backgroundStep, failedStepText)) {
+            if (stepMatches(backgroundStep, failedStepText, stepPattern)) {
                 return true;
             }
         }
         
         // Check scenario steps
         for (String scenarioStep : scenarioSteps) {
-            if (stepMatches(scenarioStep, failedStepText)) {
+            if (stepMatches(scenarioStep, failedStepText, stepPattern)) {
                 return true;
             }
         }
@@ -495,16 +582,22 @@ public class GherkinScenarioExtractor {
      * 
      * <p>This method performs step matching by removing Gherkin keywords (Given/When/Then/And/But)
      * for comparison, performing direct string matching, and handling parameterized steps
-     * for scenario outlines.</p>
+     * for scenario outlines. Given a step definition pattern, a step matches if the step
+     * definition does.</p>
      * 
      * @param step The step text to check against
      * @param failedStepText The failed step text to match
+     * @param stepPattern The step definition pattern to match steps with, or null to match the step text
      * @return true if the step matches the failed step text, false otherwise
      */
-    private boolean stepMatches(String step, String failedStepText) {
+    private boolean stepMatches(String step, String failedStepText, String stepPattern) {
         String stepText = removeKeywordPrefix(step);
         String failedStepWithoutKeyword = removeKeywordPrefix(failedStepText);
         
+        if (stepPattern != null) {
+            return StepPatternMatcher.matchesStepDefinition(stepPattern, GherkinStepIndex.normalizeStep(stepText));
+        }
+        
         // Direct comparison
         boolean directMatch = stepText.equals(failedStepWithoutKeyword) || 
                             stepText.contains(failedStepWithoutKeyword) ||
@@ -512,7 +605,7 @@ public class GherkinScenarioExtractor {
                             step.contains(failedStepText);
         
         // Parameterized step matching for scenario outlines
-        boolean parameterizedMatch = matchesParameterizedStep(stepText, failedStepText);
+        boolean parameterizedMatch = StepPatternMatcher.matchesOutlineStep(stepText, failedStepWithoutKeyword);
         
         return directMatch || parameterizedMatch;
     }
@@ -684,39 +777,6 @@ public class GherkinScenarioExtractor {
         return false;
     }
 
-    /**
-     * Checks if a parameterized step matches a concrete step text using regex pattern matching.
-     * 
-     * <p>This method handles scenario outline parameter matching by converting parameterized
-     * steps (e.g., "I enter \"<email>\" in the email field") into regex patterns that can
-     * match concrete steps (e.g., "I enter \"valid@test.com\" in the email field").</p>
-     * 
-     * @param parameterizedStep The step with parameters (e.g., "I enter \"<email>\" in the email field")
-     * @param concreteStep The concrete step text (e.g., "When I enter \"valid@test.com\" in the email field")
-     * @return true if the parameterized step matches the concrete step, false otherwise
-     */
-    private boolean matchesParameterizedStep(String parameterizedStep, String concreteStep) {
-        if (!parameterizedStep.contains("<") || !parameterizedStep.contains(">")) {
-            return false;
-        }
-        
-        String concreteStepWithoutKeyword = removeKeywordPrefix(concreteStep);
-        
-        // Create a regex pattern by replacing parameters with wildcards
-        String regexPattern = parameterizedStep
-            .replaceAll("<[^>]+>", "[^\"]*")
-            .replaceAll("\"", "\\\"");
-        
-        try {
-            Pattern pattern = Pattern.compile(regexPattern);
-            Matcher matcher = pattern.matcher(concreteStepWithoutKeyword);
-            return matcher.matches();
-        } catch (Exception e) {
-            LOG.debug("Failed to compile regex pattern for parameterized step matching", e);
-            return false;
-        }
-    }
-
     /**
      * Removes the Gherkin keyword prefix from a step line.
      * 
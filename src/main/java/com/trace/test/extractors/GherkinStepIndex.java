@@ -0,0 +1,151 @@
+package com.trace.test.extractors;
+
+import com.intellij.util.indexing.DataIndexer;
+import com.intellij.util.indexing.FileBasedIndex;
+import com.intellij.util.indexing.FileContent;
+import com.intellij.util.indexing.ID;
+import com.intellij.util.indexing.ScalarIndexExtension;
+import com.intellij.util.io.EnumeratorStringDescriptor;
+import com.intellij.util.io.KeyDescriptor;
+import org.jetbrains.annotations.NotNull;
+
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Indexes the steps and scenario names of Gherkin feature files.
+ *
+ * <p>Each feature file is indexed by its normalized step texts and scenario names. The
+ * index only records which files contain a key, because {@link GherkinScenarioExtractor}
+ * reads the whole file anyway for its feature name, background and examples. The platform
+ * keeps the index up to date as files change and only indexes files inside the project
+ * content, so excluded directories such as {@code build} or {@code node_modules} are
+ * never read. Looking up a failed step therefore no longer walks
+ * the project tree; {@link GherkinScenarioExtractor} only parses the files the index returns.</p>
+ *
+ * <p>Keys are prefixed with {@link #STEP_KEY_PREFIX} or {@link #SCENARIO_KEY_PREFIX}. Step
+ * keys are normalized by {@link #normalizeStep(String)}, so a failed step is found by the
+ * same normalization of its text.</p>
+ *
+ * @author Alex Ibasitas
+ * @since 1.0.0
+ */
+public class GherkinStepIndex extends ScalarIndexExtension<String> {
+    
+    public static final ID<String, Void> NAME = ID.create("com.trace.gherkin.steps");
+    
+    static final String STEP_KEY_PREFIX = "step:";
+    static final String SCENARIO_KEY_PREFIX = "scenario:";
+    
+    // Increment whenever the keys or values change, so that the platform rebuilds the index
+    private static final int VERSION = 2;
+    
+    private static final String[] STEP_KEYWORDS = {
+        "Given", "When", "Then", "And", "But"
+    };
+    
+    @Override
+    @NotNull
+    public ID<String, Void> getName() {
+        return NAME;
+    }
+    
+    @Override
+    @NotNull
+    public DataIndexer<String, Void, FileContent> getIndexer() {
+        // Feature files are UTF-8 by definition, and without the Gherkin plugin the platform
+        // does not know them as text, so the content is decoded here
+        return inputData -> indexFeature(new String(inputData.getContent(), StandardCharsets.UTF_8));
+    }
+    
+    @Override
+    @NotNull
+    public KeyDescriptor<String> getKeyDescriptor() {
+        return EnumeratorStringDescriptor.INSTANCE;
+    }
+    
+    @Override
+    public int getVersion() {
+        return VERSION;
+    }
+    
+    @Override
+    @NotNull
+    public FileBasedIndex.InputFilter getInputFilter() {
+        return file -> "feature".equals(file.getExtension());
+    }
+    
+    @Override
+    public boolean dependsOnFileContent() {
+        return true;
+    }
+    
+    /**
+     * Builds the index entries of one feature file.
+     *
+     * <p>Recognizes the same structure as {@link GherkinScenarioExtractor}: background and
+     * scenario sections, and the steps within them. Steps in examples and data tables are
+     * not indexed.</p>
+     *
+     * @param text the content of the feature file
+     * @return the step and scenario keys of the file
+     */
+    @NotNull
+    static Map<String, Void> indexFeature(@NotNull String text) {
+        Map<String, Void> entries = new HashMap<>();
+        boolean inSection = false;
+        int start = 0;
+        
+        while (start <= text.length()) {
+            int end = text.indexOf('\n', start);
+            if (end < 0) {
+                end = text.length();
+            }
+            String line = text.substring(start, end).trim();
+            start = end + 1;
+            
+            if (line.startsWith("Background:")) {
+                inSection = true;
+            } else if (line.startsWith("Scenario:") || line.startsWith("Scenario Outline:")) {
+                inSection = true;
+                String name = line.substring(line.indexOf(':') + 1).trim();
+                if (!name.isEmpty()) {
+                    entries.put(SCENARIO_KEY_PREFIX + name, null);
+                }
+            } else if (line.startsWith("Feature:") || line.startsWith("Rule:")) {
+                inSection = false;
+            } else if (inSection && startsWithKeyword(line)) {
+                entries.put(STEP_KEY_PREFIX + normalizeStep(line), null);
+            }
+        }
+        return entries;
+    }
+    
+    /**
+     * Normalizes a step for lookup by removing its keyword and collapsing whitespace.
+     *
+     * @param stepText the step text, with or without its keyword
+     * @return the normalized step text
+     */
+    @NotNull
+    public static String normalizeStep(@NotNull String stepText) {
+        String text = stepText.trim();
+        for (String keyword : STEP_KEYWORDS) {
+            if (text.startsWith(keyword + " ")) {
+                text = text.substring(keyword.length() + 1).trim();
+                break;
+            }
+        }
+        return text.replaceAll("\\s+", " ");
+    }
+    
+    private static boolean startsWithKeyword(String line) {
+        for (String keyword : STEP_KEYWORDS) {
+            if (line.startsWith(keyword + " ")) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,558 @@
+package com.trace.test.extractors;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.function.Predicate;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * A stack trace parsed into its exceptions, frames and assertion values.
+ *
+ * <p>The stack trace of a failure is scanned once, character by character, and the result
+ * is shared by {@link StackTraceExtractor} and {@link StepDefinitionExtractor} rather than
+ * each of them splitting the text into lines again for every value they look up. This
+ * matters for browser tests, whose stack traces run to hundreds of lines with several
+ * nested causes.</p>
+ *
+ * <p>The format is the one of {@link Throwable#printStackTrace()}: a header line with the
+ * exception and its message, {@code at} frames, {@code Caused by:} sections, tab-indented
+ * {@code Suppressed:} sections and {@code ... n more} lines. Expected and actual values are
+ * taken from Hamcrest ({@code Expected:} / {@code but: was}), AssertJ ({@code expected:} /
+ * {@code but was:}) and JUnit ({@code expected: <a> but was: <b>}, or {@code expected:<a> but was:<b>}
+ * in JUnit 4) assertion messages.
+ * Other lines are kept as part of the message of the exception they belong to.</p>
+ *
+ * <p>Instances are immutable and thread-safe.</p>
+ *
+ * @author Alex Ibasitas
+ * @since 1.0.0
+ */
+public final class ParsedStackTrace {
+    
+    /**
+     * The parse result of a missing or blank stack trace.
+     */
+    public static final ParsedStackTrace EMPTY = new ParsedStackTrace(null, Collections.emptyList(), null, null);
+    
+    static final String GHERKIN_STEP_CLASS = "✽";
+    
+    private static final String FRAME_PREFIX = "at ";
+    private static final String CAUSED_BY_PREFIX = "Caused by:";
+    private static final String SUPPRESSED_PREFIX = "Suppressed:";
+    private static final String OMITTED_FRAMES_PREFIX = "... ";
+    private static final String[] EXPECTED_PREFIXES = {"Expected:", "expected:"};
+    private static final String[] ACTUAL_PREFIXES = {"but: was", "but was:"};
+    private static final Pattern INLINE_ACTUAL_SEPARATOR = Pattern.compile("\\s*but was:\\s*");
+    
+    private final ExceptionInfo exception;
+    private final List<Frame> frames;
+    private final String expectedValue;
+    private final String actualValue;
+    
+    private ParsedStackTrace(ExceptionInfo exception, List<Frame> frames, String expectedValue, String actualValue) {
+        this.exception = exception;
+        this.frames = frames;
+        this.expectedValue = expectedValue;
+        this.actualValue = actualValue;
+    }
+    
+    /**
+     * Parses a stack trace.
+     *
+     * @param stackTrace the stack trace as printed by the test runner, or null
+     * @return the parsed stack trace, {@link #EMPTY} if the stack trace is null or blank
+     */
+    @NotNull
+    public static ParsedStackTrace parse(@Nullable String stackTrace) {
+        if (stackTrace == null || stackTrace.isBlank()) {
+            return EMPTY;
+        }
+        return new Parser(stackTrace).parse();
+    }
+    
+    /**
+     * Gets the exception the stack trace was printed for.
+     *
+     * @return the outermost exception, or null if the stack trace is empty
+     */
+    @Nullable
+    public ExceptionInfo getException() {
+        return exception;
+    }
+    
+    /**
+     * Gets the causes of the outermost exception, from its direct cause to the root cause.
+     *
+     * @return the chain of causes, empty if there is none
+     */
+    @NotNull
+    public List<ExceptionInfo> getCauses() {
+        List<ExceptionInfo> causes = new ArrayList<>();
+        for (ExceptionInfo cause = exception != null ? exception.getCause() : null; cause != null; cause = cause.getCause()) {
+            causes.add(cause);
+        }
+        return causes;
+    }
+    
+    /**
+     * Gets all frames of the stack trace, in the order they were printed, including the
+     * frames of causes and suppressed exceptions.
+     *
+     * @return the frames
+     */
+    @NotNull
+    public List<Frame> getFrames() {
+        return frames;
+    }
+    
+    /**
+     * Finds the first frame that satisfies a condition.
+     *
+     * @param condition the condition on the frame
+     * @return the first matching frame in printing order, or null if none matches
+     */
+    @Nullable
+    public Frame findFrame(@NotNull Predicate<Frame> condition) {
+        for (Frame frame : frames) {
+            if (condition.test(frame)) {
+                return frame;
+            }
+        }
+        return null;
+    }
+    
+    /**
+     * Gets the expected value of the first assertion message in the stack trace.
+     *
+     * @return the expected value, or null if there is none
+     */
+    @Nullable
+    public String getExpectedValue() {
+        return expectedValue;
+    }
+    
+    /**
+     * Gets the actual value of the first assertion message in the stack trace.
+     *
+     * @return the actual value, or null if there is none
+     */
+    @Nullable
+    public String getActualValue() {
+        return actualValue;
+    }
+    
+    /**
+     * One exception of a stack trace with its frames, suppressed exceptions and cause.
+     */
+    public static final class ExceptionInfo {
+        private final String exceptionClass;
+        private final String message;
+        private final List<Frame> frames;
+        private final List<ExceptionInfo> suppressed;
+        private final ExceptionInfo cause;
+        
+        private ExceptionInfo(String exceptionClass, String message, List<Frame> frames,
+                              List<ExceptionInfo> suppressed, ExceptionInfo cause) {
+            this.exceptionClass = exceptionClass;
+            this.message = message;
+            this.frames = frames;
+            this.suppressed = suppressed;
+            this.cause = cause;
+        }
+        
+        /**
+         * Gets the fully qualified class name of the exception.
+         *
+         * @return the exception class, or null if the header line does not name one
+         */
+        @Nullable
+        public String getExceptionClass() {
+            return exceptionClass;
+        }
+        
+        /**
+         * Gets the message of the exception, including the lines it continues on.
+         *
+         * @return the message, empty if there is none
+         */
+        @NotNull
+        public String getMessage() {
+            return message;
+        }
+        
+        @NotNull
+        public List<Frame> getFrames() {
+            return frames;
+        }
+        
+        @NotNull
+        public List<ExceptionInfo> getSuppressed() {
+            return suppressed;
+        }
+        
+        @Nullable
+        public ExceptionInfo getCause() {
+            return cause;
+        }
+    }
+    
+    /**
+     * One {@code at} line of a stack trace.
+     *
+     * <p>Cucumber reports the failed step as a frame of the class {@code ✽}
+     * whose method is the step text and whose file is the feature file.</p>
+     */
+    public static final class Frame {
+        private final String className;
+        private final String methodName;
+        private final String fileName;
+        private final int lineNumber;
+        
+        Frame(String className, String methodName, String fileName, int lineNumber) {
+            this.className = className;
+            this.methodName = methodName;
+            this.fileName = fileName;
+            this.lineNumber = lineNumber;
+        }
+        
+        /**
+         * Gets the fully qualified class name, without the module or class loader prefix.
+         *
+         * @return the class name
+         */
+        @NotNull
+        public String getClassName() {
+            return className;
+        }
+        
+        @NotNull
+        public String getMethodName() {
+            return methodName;
+        }
+        
+        /**
+         * Gets the file name, such as {@code LoginSteps.java}, or the location that was
+         * printed instead, such as {@code Native Method}.
+         *
+         * @return the file name
+         */
+        @NotNull
+        public String getFileName() {
+            return fileName;
+        }
+        
+        /**
+         * Gets the line number.
+         *
+         * @return the 1-based line number, or -1 if it is unknown
+         */
+        public int getLineNumber() {
+            return lineNumber;
+        }
+        
+        /**
+         * Checks if this frame is a Java source location with a line number.
+         *
+         * @return true if the frame points into a Java file
+         */
+        public boolean isJavaSource() {
+            return lineNumber > 0 && fileName.endsWith(".java");
+        }
+        
+        /**
+         * Checks if this frame is the Gherkin step that Cucumber reports in the stack trace.
+         *
+         * @return true if the frame points into a feature file
+         */
+        public boolean isGherkinStep() {
+            return GHERKIN_STEP_CLASS.equals(className);
+        }
+        
+        @Override
+        public String toString() {
+            return className + "." + methodName + "(" + fileName + (lineNumber > 0 ? ":" + lineNumber : "") + ")";
+        }
+    }
+    
+    /**
+     * Scans a stack trace line by line without splitting it, keeping the exceptions that
+     * are still open on a stack ordered by indentation.
+     */
+    private static final class Parser {
+        private final String text;
+        private final List<Frame> frames = new ArrayList<>();
+        private final Deque<Section> open = new ArrayDeque<>();
+        private Section root;
+        private String expectedValue;
+        private String actualValue;
+        
+        Parser(String text) {
+            this.text = text;
+        }
+        
+        ParsedStackTrace parse() {
+            int length = text.length();
+            int start = 0;
+            while (start < length) {
+                int end = text.indexOf('\n', start);
+                if (end < 0) {
+                    end = length;
+                }
+                int from = start;
+                while (from < end && Character.isWhitespace(text.charAt(from))) {
+                    from++;
+                }
+                int to = end;
+                while (to > from && Character.isWhitespace(text.charAt(to - 1))) {
+                    to--;
+                }
+                if (from < to) {
+                    parseLine(from - start, from, to);
+                }
+                start = end + 1;
+            }
+            return new ParsedStackTrace(root != null ? root.build() : null,
+                Collections.unmodifiableList(frames), expectedValue, actualValue);
+        }
+        
+        private void parseLine(int indent, int from, int to) {
+            if (startsWith(from, to, FRAME_PREFIX)) {
+                Frame frame = parseFrame(from + FRAME_PREFIX.length(), to);
+                if (frame != null) {
+                    sectionForFrame(indent).frames.add(frame);
+                    frames.add(frame);
+                    return;
+                }
+            }
+            if (startsWith(from, to, OMITTED_FRAMES_PREFIX) && text.startsWith(" more", to - 5)) {
+                return;
+            }
+            if (startsWith(from, to, CAUSED_BY_PREFIX)) {
+                Section section = startSection(indent, from + CAUSED_BY_PREFIX.length(), to);
+                Section caused = sectionAtMost(indent);
+                caused.cause = section;
+                // The cause continues the chain of the exception it replaces
+                open.pop();
+                open.push(section);
+                return;
+            }
+            if (startsWith(from, to, SUPPRESSED_PREFIX)) {
+                Section section = startSection(indent, from + SUPPRESSED_PREFIX.length(), to);
+                sectionBelow(indent).suppressed.add(section);
+                open.push(section);
+                return;
+            }
+            if (root == null) {
+                root = startSection(indent, from, to);
+                open.push(root);
+                return;
+            }
+            Section current = open.peek();
+            if (current.frames.isEmpty()) {
+                if (current.message.length() > 0) {
+                    current.message.append('\n');
+                }
+                current.message.append(text, from, to);
+            }
+            findAssertionValues(from, to);
+        }
+        
+        /**
+         * Starts an exception from its header line, which is the class name followed by a
+         * colon and the message, the class name alone, or the message alone.
+         */
+        private Section startSection(int indent, int from, int to) {
+            while (from < to && Character.isWhitespace(text.charAt(from))) {
+                from++;
+            }
+            Section section = new Section(indent);
+            int colon = text.indexOf(':', from);
+            int classEnd = colon >= 0 && colon < to ? colon : to;
+            if (isClassName(from, classEnd)) {
+                section.exceptionClass = text.substring(from, classEnd);
+                from = classEnd < to ? classEnd + 1 : to;
+                while (from < to && Character.isWhitespace(text.charAt(from))) {
+                    from++;
+                }
+            }
+            section.message.append(text, from, to);
+            findAssertionValues(from, to);
+            return section;
+        }
+        
+        private Section ensureRoot(int indent) {
+            if (root == null) {
+                root = new Section(indent);
+                open.push(root);
+            }
+            return root;
+        }
+        
+        /**
+         * Gets the exception that a frame with the given indentation belongs to.
+         */
+        private Section sectionForFrame(int indent) {
+            ensureRoot(indent);
+            while (open.size() > 1 && open.peek().indent >= indent) {
+                open.pop();
+            }
+            return open.peek();
+        }
+        
+        /**
+         * Gets the innermost open exception indented no further than the given indentation.
+         */
+        private Section sectionAtMost(int indent) {
+            ensureRoot(indent);
+            while (open.size() > 1 && open.peek().indent > indent) {
+                open.pop();
+            }
+            return open.peek();
+        }
+        
+        /**
+         * Gets the innermost open exception indented less than the given indentation.
+         */
+        private Section sectionBelow(int indent) {
+            ensureRoot(indent);
+            while (open.size() > 1 && open.peek().indent >= indent) {
+                open.pop();
+            }
+            return open.peek();
+        }
+        
+        /**
+         * Parses the part of a frame line after {@code at}, such as
+         * {@code app//com.example.LoginSteps.login(LoginSteps.java:42)}.
+         */
+        private Frame parseFrame(int from, int to) {
+            int closeParen = text.lastIndexOf(')', to - 1);
+            if (closeParen < from) {
+                return null;
+            }
+            // Step texts may contain parentheses, file names hardly ever do
+            int openParen = text.lastIndexOf('(', closeParen);
+            if (openParen <= from) {
+                return null;
+            }
+            
+            String className;
+            String methodName;
+            if (text.startsWith(GHERKIN_STEP_CLASS + ".", from)) {
+                className = GHERKIN_STEP_CLASS;
+                methodName = text.substring(from + GHERKIN_STEP_CLASS.length() + 1, openParen).trim();
+            } else {
+                int nameStart = text.lastIndexOf('/', openParen - 1) + 1;
+                if (nameStart < from) {
+                    nameStart = from;
+                }
+                int dot = text.lastIndexOf('.', openParen - 1);
+                if (dot <= nameStart) {
+                    return null;
+                }
+                className = text.substring(nameStart, dot);
+                methodName = text.substring(dot + 1, openParen);
+            }
+            
+            int colon = text.lastIndexOf(':', closeParen - 1);
+            int lineNumber = colon > openParen ? parseLineNumber(colon + 1, closeParen) : -1;
+            String fileName = text.substring(openParen + 1, lineNumber > 0 ? colon : closeParen);
+            return new Frame(className, methodName, fileName, lineNumber);
+        }
+        
+        private int parseLineNumber(int from, int to) {
+            // Longer numbers are not line numbers and would overflow
+            if (from >= to || to - from > 9) {
+                return -1;
+            }
+            int value = 0;
+            for (int i = from; i < to; i++) {
+                char c = text.charAt(i);
+                if (c < '0' || c > '9') {
+                    return -1;
+                }
+                value = value * 10 + (c - '0');
+            }
+            return value;
+        }
+        
+        private void findAssertionValues(int from, int to) {
+            if (expectedValue == null) {
+                for (String prefix : EXPECTED_PREFIXES) {
+                    if (startsWith(from, to, prefix)) {
+                        String value = text.substring(from + prefix.length(), to).trim();
+                        Matcher inline = INLINE_ACTUAL_SEPARATOR.matcher(value);
+                        if (inline.find()) {
+                            if (actualValue == null) {
+                                actualValue = value.substring(inline.end()).trim();
+                            }
+                            value = value.substring(0, inline.start()).trim();
+                        }
+                        expectedValue = value;
+                        return;
+                    }
+                }
+            }
+            if (actualValue == null) {
+                for (String prefix : ACTUAL_PREFIXES) {
+                    if (startsWith(from, to, prefix)) {
+                        actualValue = text.substring(from + prefix.length(), to).trim();
+                        return;
+                    }
+                }
+            }
+        }
+        
+        private boolean isClassName(int from, int to) {
+            if (from >= to || !Character.isJavaIdentifierStart(text.charAt(from))) {
+                return false;
+            }
+            boolean qualified = false;
+            for (int i = from + 1; i < to; i++) {
+                char c = text.charAt(i);
+                if (c == '.') {
+                    qualified = true;
+                } else if (!Character.isJavaIdentifierPart(c)) {
+                    return false;
+                }
+            }
+            return qualified;
+        }
+        
+        private boolean startsWith(int from, int to, String prefix) {
+            return to - from >= prefix.length() && text.startsWith(prefix, from);
+        }
+    }
+    
+    /**
+     * An exception that is still being parsed.
+     */
+    private static final class Section {
+        private final int indent;
+        private final StringBuilder message = new StringBuilder();
+        private final List<Frame> frames = new ArrayList<>();
+        private final List<Section> suppressed = new ArrayList<>();
+        private String exceptionClass;
+        private Section cause;
+        
+        Section(int indent) {
+            this.indent = indent;
+        }
+        
+        ExceptionInfo build() {
+            List<ExceptionInfo> builtSuppressed = new ArrayList<>(suppressed.size());
+            for (Section section : suppressed) {
+                builtSuppressed.add(section.build());
+            }
+            return new ExceptionInfo(exceptionClass, message.toString(), Collections.unmodifiableList(frames),
+                Collections.unmodifiableList(builtSuppressed), cause != null ? cause.build() : null);
+        }
+    }
+}
@@ -65,27 +65,46 @@ public class StackTraceExtractor {
         if (test == null) {
             throw new IllegalArgumentException("Test cannot be null");
         }
+        return extractFailureInfo(test, ParsedStackTrace.parse(test.getStacktrace()));
+    }
+
+    /**
+     * Extracts comprehensive failure information from a test proxy whose stack trace has
+     * already been parsed, so that the parse can be shared with other extractors.
+     * 
+     * @param test The test proxy to extract failure information from
+     * @param parsedStackTrace The parsed stack trace of the test
+     * @return FailureInfo containing extracted failure details
+     * @throws IllegalArgumentException if test or parsedStackTrace is null
+     */
+    public FailureInfo extractFailureInfo(SMTestProxy test, ParsedStackTrace parsedStackTrace) {
+        if (test == null) {
+            throw new IllegalArgumentException("Test cannot be null");
+        }
+        if (parsedStackTrace == null) {
+            throw new IllegalArgumentException("Parsed stack trace cannot be null");
+        }
         
         LOG.debug("Starting PSI-based extraction for test: " + test.getName());
         
         try {
             // Extract step text using PSI navigation
-            String failedStepText = extractFailedStepText(test);
+            String failedStepText = extractFailedStepText(test, parsedStackTrace);
             
             // Get comprehensive error information
             String stackTrace = test.getStacktrace();
             String errorMessage = test.getErrorMessage();
             
             // Extract structured information from stack trace
-            String expectedValue = extractExpectedValue(stackTrace);
-            String actualValue = extractActualValue(stackTrace);
+            String expectedValue = parsedStackTrace.getExpectedValue();
+            String actualValue = parsedStackTrace.getActualValue();
             
             // Get source file and line number from test location
-            String sourceFilePath = getSourceFilePathFromTest(test);
-            int lineNumber = getLineNumberFromTest(test);
+            String sourceFilePath = getSourceFilePathFromTest(test, parsedStackTrace);
+            int lineNumber = getLineNumberFromTest(test, parsedStackTrace);
             
             // Extract proper scenario name
-            String scenarioName = extractScenarioName(test, failedStepText);
+            String scenarioName = extractScenarioName(test, failedStepText, parsedStackTrace);
             
             // Build comprehensive failure info
             return new FailureInfo.Builder()
@@ -118,11 +137,22 @@ public class StackTraceExtractor {
             LOG.warn("Test proxy is null");
             return null;
         }
+        return extractFailedStepText(test, ParsedStackTrace.parse(test.getStacktrace()));
+    }
         
+    /**
+     * Extracts the text of the failed step, falling back to the parsed stack trace for
+     * the failure location.
+     *
+     * @param test The failed test proxy
+     * @param parsedStackTrace The parsed stack trace of the test
+     * @return The text of the failed step, or null if not found
+     */
+    private String extractFailedStepText(SMTestProxy test, ParsedStackTrace parsedStackTrace) {
         try {
             // Get the source file and line number from the test location
-            String sourceFilePath = getSourceFilePathFromTest(test);
-            int lineNumber = getLineNumberFromTest(test);
+            String sourceFilePath = getSourceFilePathFromTest(test, parsedStackTrace);
+            int lineNumber = getLineNumberFromTest(test, parsedStackTrace);
             
             if (sourceFilePath == null || lineNumber <= 0) {
                 LOG.debug("Could not determine source file or line number for test: " + test.getName());
@@ -149,9 +179,10 @@ public class StackTraceExtractor {
      * Gets the source file path from the test proxy using IntelliJ's location system.
      * 
      * @param test The test proxy to extract location from
+     * @param parsedStackTrace The parsed stack trace of the test
      * @return The source file path, or null if not found
      */
-    private String getSourceFilePathFromTest(SMTestProxy test) {
+    private String getSourceFilePathFromTest(SMTestProxy test, ParsedStackTrace parsedStackTrace) {
         try {
             // Try to get location from test proxy
             if (test.getLocationUrl() != null) {
@@ -184,9 +215,9 @@ public class StackTraceExtractor {
             }
             
             // Fallback: try to get from stack trace
-            String stackTrace = test.getStacktrace();
-            if (stackTrace != null) {
-                return extractSourceFileFromStackTrace(stackTrace);
+            ParsedStackTrace.Frame frame = findSourceFrame(parsedStackTrace);
+            if (frame != null) {
+                return frame.getFileName();
             }
             
         } catch (Exception e) {
@@ -200,9 +231,10 @@ public class StackTraceExtractor {
      * Gets the line number from the test proxy.
      * 
      * @param test The test proxy to extract line number from
+     * @param parsedStackTrace The parsed stack trace of the test
      * @return The line number, or -1 if not found
      */
-    private int getLineNumberFromTest(SMTestProxy test) {
+    private int getLineNumberFromTest(SMTestProxy test, ParsedStackTrace parsedStackTrace) {
         try {
             // Try to get from location URL first
             if (test.getLocationUrl() != null) {
@@ -220,9 +252,9 @@ public class StackTraceExtractor {
             }
             
             // Fallback: try to get from stack trace
-            String stackTrace = test.getStacktrace();
-            if (stackTrace != null) {
-                return extractLineNumberFromStackTrace(stackTrace);
+            ParsedStackTrace.Frame frame = findSourceFrame(parsedStackTrace);
+            if (frame != null) {
+                return frame.getLineNumber();
             }
             
         } catch (Exception e) {
@@ -483,9 +515,10 @@ public class StackTraceExtractor {
      * 
      * @param test The test proxy to extract scenario name from
      * @param failedStepText The failed step text for fallback
+     * @param parsedStackTrace The parsed stack trace of the test
      * @return The extracted scenario name
      */
-    private String extractScenarioName(SMTestProxy test, String failedStepText) {
+    private String extractScenarioName(SMTestProxy test, String failedStepText, ParsedStackTrace parsedStackTrace) {
         try {
             // First try to get the parent test name (which might be the scenario)
             SMTestProxy parent = test.getParent();
@@ -503,12 +536,9 @@ public class StackTraceExtractor {
             }
             
             // Fallback: try to extract from stack trace
-            String stackTrace = test.getStacktrace();
-            if (stackTrace != null) {
-                String scenarioFromStack = extractScenarioFromStackTrace(stackTrace);
-                if (scenarioFromStack != null) {
-                    return formatScenarioName(scenarioFromStack, test.getName());
-                }
+            String scenarioFromStack = extractScenarioFromStackTrace(parsedStackTrace);
+            if (scenarioFromStack != null) {
+                return formatScenarioName(scenarioFromStack, test.getName());
             }
             
             // Last resort: use a descriptive name based on the step
@@ -571,33 +601,17 @@ public class StackTraceExtractor {
     }
     
     /**
-     * Extracts scenario name from stack trace by looking for feature file references.
+     * Extracts scenario name from stack trace by looking for the feature file step that
+     * Cucumber reports as a frame.
      * 
-     * @param stackTrace The stack trace to search in
+     * @param parsedStackTrace The parsed stack trace to search in
      * @return The extracted scenario name, or null if not found
      */
-    private String extractScenarioFromStackTrace(String stackTrace) {
-        try {
-            String[] lines = stackTrace.split("\n");
-            for (String line : lines) {
-                // Look for lines that reference feature files
-                if (line.contains(".feature:") && line.contains("✽")) {
-                    // Extract the step text from the feature file reference
-                    int stepStart = line.indexOf("✽");
-                    if (stepStart > 0) {
-                        String stepPart = line.substring(stepStart + 1).trim();
-                        // Remove the file reference part
-                        if (stepPart.contains("(file://")) {
-                            stepPart = stepPart.substring(0, stepPart.indexOf("(file://")).trim();
-                        }
-                        if (!stepPart.isEmpty()) {
-                            return stepPart;
-                        }
-                    }
-                }
-            }
-        } catch (Exception e) {
-            LOG.debug("Error extracting scenario from stack trace", e);
+    private String extractScenarioFromStackTrace(ParsedStackTrace parsedStackTrace) {
+        ParsedStackTrace.Frame frame = parsedStackTrace.findFrame(
+            candidate -> candidate.isGherkinStep() && candidate.getFileName().endsWith(".feature"));
+        if (frame != null && !frame.getMethodName().isEmpty()) {
+            return frame.getMethodName();
         }
         return null;
     }
@@ -623,97 +637,15 @@ public class StackTraceExtractor {
     }
 
     /**
-     * Extracts expected value from stack trace.
-     * 
-     * @param stackTrace The stack trace to search in
-     * @return The expected value, or null if not found
-     */
-    private String extractExpectedValue(String stackTrace) {
-        if (stackTrace == null) {
-            return null;
-        }
-        
-        String[] lines = stackTrace.split("\n");
-        for (String line : lines) {
-            line = line.trim();
-            if (line.startsWith("Expected:")) {
-                return line.substring("Expected:".length()).trim();
-            }
-        }
-        return null;
-    }
-
-    /**
-     * Extracts actual value from stack trace.
-     * 
-     * @param stackTrace The stack trace to search in
-     * @return The actual value, or null if not found
-     */
-    private String extractActualValue(String stackTrace) {
-        if (stackTrace == null) {
-            return null;
-        }
-        
-        String[] lines = stackTrace.split("\n");
-        for (String line : lines) {
-            line = line.trim();
-            if (line.startsWith("but: was")) {
-                return line.substring("but: was".length()).trim();
-            }
-        }
-        return null;
-    }
-    
-    /**
-     * Extracts source file from stack trace (fallback method).
-     * 
-     * @param stackTrace The stack trace to search in
-     * @return The source file path, or null if not found
-     */
-    private String extractSourceFileFromStackTrace(String stackTrace) {
-        try {
-            String[] lines = stackTrace.split("\n");
-            for (String line : lines) {
-                if (line.contains(".java:") && !line.contains("cucumber") && !line.contains("junit")) {
-                    String[] parts = line.split(":");
-                    if (parts.length >= 2) {
-                        return parts[0] + ":" + parts[1];
-                    }
-                }
-            }
-        } catch (Exception e) {
-            LOG.debug("Error extracting source file from stack trace", e);
-        }
-        
-        return null;
-    }
-    
-    /**
-     * Extracts line number from stack trace (fallback method).
+     * Finds the first frame of the stack trace in the project's own Java code, skipping
+     * Cucumber and JUnit frames (fallback method).
      * 
-     * @param stackTrace The stack trace to search in
-     * @return The line number, or -1 if not found
+     * @param parsedStackTrace The parsed stack trace to search in
+     * @return The frame, or null if not found
      */
-    private int extractLineNumberFromStackTrace(String stackTrace) {
-        try {
-            String[] lines = stackTrace.split("\n");
-            for (String line : lines) {
-                if (line.contains(".java:") && !line.contains("cucumber") && !line.contains("junit")) {
-                    String[] parts = line.split(":");
-                    if (parts.length >= 3) {
-                        try {
-                            return Integer.parseInt(parts[2]);
-                        } catch (NumberFormatException e) {
-                            LOG.debug("Could not parse line number from stack trace", e);
-                        }
-                    }
-                }
-            }
-        } catch (Exception e) {
-            LOG.debug("Error extracting line number from stack trace", e);
-        }
-        
-        return -1;
+    private ParsedStackTrace.Frame findSourceFrame(ParsedStackTrace parsedStackTrace) {
+        return parsedStackTrace.findFrame(frame -> frame.isJavaSource()
+            && !frame.getClassName().contains("cucumber") && !frame.getClassName().contains("junit"));
     }
     
     /**
@@ -0,0 +1,121 @@
+package com.trace.test.extractors;
+
+import com.intellij.openapi.project.Project;
+import com.intellij.psi.util.PsiModificationTracker;
+import com.trace.test.models.StepDefinitionInfo;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+
+/**
+ * Caches the step definitions that the stack frames of a project resolve to.
+ *
+ * <p>The same few dozen step definition classes fail again and again, and resolving a
+ * frame means finding its class, navigating to the line and reading the method's
+ * annotations. Results are therefore kept per class, method and line, including frames
+ * that turned out not to be step definitions. Any PSI change in the project may move
+ * lines or change annotations, so the whole cache is dropped whenever the PSI
+ * modification count changes.</p>
+ *
+ * <p>At most {@link #MAX_ENTRIES} frames are kept; the least recently used are evicted
+ * first. This class is thread-safe.</p>
+ *
+ * @author Alex Ibasitas
+ * @since 1.0.0
+ */
+public final class StepDefinitionCache {
+    
+    static final int MAX_ENTRIES = 256;
+    
+    private final LongSupplier modificationCount;
+    
+    // Guarded by itself; null values record frames that are not step definitions
+    private final Map<String, StepDefinitionInfo> entries = new LinkedHashMap<>(64, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, StepDefinitionInfo> eldest) {
+            return size() > MAX_ENTRIES;
+        }
+    };
+    
+    private long entriesModificationCount = -1;
+    
+    /**
+     * Creates the cache of a project.
+     *
+     * @param project the project whose PSI changes invalidate the cache
+     */
+    public StepDefinitionCache(@NotNull Project project) {
+        this(() -> PsiModificationTracker.getInstance(project).getModificationCount());
+    }
+    
+    /**
+     * Creates a cache that is invalidated whenever the given count changes.
+     *
+     * @param modificationCount supplies the current modification count
+     */
+    StepDefinitionCache(@NotNull LongSupplier modificationCount) {
+        this.modificationCount = modificationCount;
+    }
+    
+    /**
+     * Gets the step definition cache of a project.
+     *
+     * @param project the project
+     * @return the cache
+     */
+    @NotNull
+    public static StepDefinitionCache getInstance(@NotNull Project project) {
+        return project.getService(StepDefinitionCache.class);
+    }
+    
+    /**
+     * Gets the step definition a stack frame resolves to, resolving it on a cache miss.
+     *
+     * <p>Must be called inside a read action, so that the PSI cannot change between reading
+     * the modification count and resolving the frame. A resolution that throws, for example
+     * because the read action was cancelled, is not cached.</p>
+     *
+     * @param frame the stack frame
+     * @param resolver resolves the frame to its step definition, or to null if it is none
+     * @return the step definition, or null if the frame is not a step definition
+     */
+    @Nullable
+    public StepDefinitionInfo getOrResolve(@NotNull ParsedStackTrace.Frame frame,
+                                           @NotNull Function<ParsedStackTrace.Frame, StepDefinitionInfo> resolver) {
+        String key = frame.getClassName() + "#" + frame.getMethodName() + ":" + frame.getLineNumber();
+        long currentModificationCount = modificationCount.getAsLong();
+        synchronized (entries) {
+            if (entriesModificationCount != currentModificationCount) {
+                entries.clear();
+                entriesModificationCount = currentModificationCount;
+            } else if (entries.containsKey(key)) {
+                return entries.get(key);
+            }
+        }
+        
+        // Resolved outside the lock, since PSI navigation can take a while
+        StepDefinitionInfo stepDefinition = resolver.apply(frame);
+        synchronized (entries) {
+            // Another thread may have seen a newer count meanwhile; this result is then outdated
+            if (entriesModificationCount == currentModificationCount) {
+                entries.put(key, stepDefinition);
+            }
+        }
+        return stepDefinition;
+    }
+    
+    /**
+     * Gets the number of cached frames.
+     *
+     * @return the cache size
+     */
+    int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+}
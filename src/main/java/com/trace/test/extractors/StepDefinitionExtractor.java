@@ -1,29 +1,30 @@
 package com.trace.test.extractors;
 
+import com.intellij.openapi.project.DumbService;
+import com.intellij.openapi.project.IndexNotReadyException;
 import com.intellij.openapi.project.Project;
-import com.intellij.openapi.project.ProjectUtil;
 import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.progress.ProcessCanceledException;
+import com.intellij.openapi.progress.ProgressManager;
 import com.intellij.psi.*;
+import com.intellij.psi.search.GlobalSearchScope;
 import com.intellij.psi.util.PsiTreeUtil;
 import com.intellij.openapi.application.ApplicationManager;
 import com.intellij.openapi.util.TextRange;
-import com.intellij.openapi.vfs.VirtualFile;
-import com.intellij.openapi.vfs.LocalFileSystem;
 import com.intellij.openapi.editor.Document;
 import com.trace.test.models.StepDefinitionInfo;
 
 import java.util.ArrayList;
 import java.util.List;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 /**
  * Extracts step definition method information using IntelliJ's PSI.
  * 
- * <p>This class uses PSI-based navigation to find Cucumber step definitions by extracting
- * Java step definition file paths from stack traces and navigating directly to failure
- * locations. It provides accurate source file and line number information using
- * IntelliJ's built-in code analysis.</p>
+ * <p>This class uses PSI-based navigation to find Cucumber step definitions by resolving
+ * the classes of stack trace frames with {@link JavaPsiFacade} and navigating directly to
+ * failure locations. It provides accurate source file and line number information using
+ * IntelliJ's built-in code analysis. Resolved frames are cached per project in the
+ * {@link StepDefinitionCache}.</p>
  * 
  * <p>The extractor follows IntelliJ Platform best practices by using PSI navigation
  * to the exact failure location, extracting step definitions from actual methods,
@@ -55,14 +56,6 @@ public class StepDefinitionExtractor {
         "should", "given", "when", "then", "and", "but", "i_", "user_"
     };
 
-    // Standard Java source directory patterns
-    private static final String[] SOURCE_PATHS = {
-        "src/test/java/",
-        "src/main/java/",
-        "test/java/",
-        "main/java/"
-    };
-
     /**
      * Constructor for StepDefinitionExtractor.
      *
@@ -78,10 +71,10 @@ public class StepDefinitionExtractor {
 
     /**
      * Extracts step definition information for a failed step using direct PSI navigation.
-     * This method extracts the Java step definition file path from the stack trace
+     * This method resolves the Java step definition classes in the stack trace
      * and navigates to the actual method that contains the step definition.
      * 
-     * <p>This method follows IntelliJ Platform best practices by extracting Java file paths
+     * <p>This method follows IntelliJ Platform best practices by resolving Java classes
      * from stack traces (not feature file paths), using PSI navigation to exact failure
      * locations, extracting step definitions from actual methods that failed, avoiding
      * fragile pattern matching, and using IntelliJ's built-in code analysis.</p>
@@ -94,48 +87,57 @@ public class StepDefinitionExtractor {
             LOG.debug("Stack trace is null or empty");
             return null;
         }
+        return extractStepDefinition(ParsedStackTrace.parse(stackTrace));
+    }
+
+    /**
+     * Extracts step definition information for a failed step from a stack trace that has
+     * already been parsed, so that the parse can be shared with other extractors.
+     *
+     * <p>The frames that look like step definitions are resolved in order, each through
+     * the project's {@link StepDefinitionCache}, until one of them is a method with a
+     * Cucumber annotation. While indexes are being updated, frames are not resolved and
+     * null is returned, so that nothing is cached before the classes can be found.</p>
+     *
+     * @param parsedStackTrace The parsed stack trace containing the failure information
+     * @return StepDefinitionInfo containing method details, or null if not found
+     */
+    public StepDefinitionInfo extractStepDefinition(ParsedStackTrace parsedStackTrace) {
+        if (parsedStackTrace == null || parsedStackTrace.getFrames().isEmpty()) {
+            LOG.debug("Stack trace has no frames");
+            return null;
+        }
         
         try {
-            // Extract Java step definition file path and line number from stack trace
-            StepLocation stepLocation = extractStepLocationFromStackTrace(stackTrace);
-            if (stepLocation == null) {
-                LOG.debug("Could not extract step location from stack trace");
-                return null;
-            }
-            
             // Use read action for PSI operations (JetBrains best practice)
             return ApplicationManager.getApplication().<StepDefinitionInfo>runReadAction(() -> {
-                try {
-                    // Step 1: Navigate to the exact file and line using PSI
-                    PsiFile psiFile = navigateToFile(stepLocation.filePath);
-                    if (psiFile == null) {
-                        LOG.debug("Could not navigate to file: " + stepLocation.filePath);
-                        return null;
-                    }
-                    
-                    // Step 2: Navigate to the exact line number
-                    PsiElement elementAtLine = navigateToLine(psiFile, stepLocation.lineNumber);
-                    if (elementAtLine == null) {
-                        LOG.debug("Could not navigate to line: " + stepLocation.lineNumber);
-                        return null;
+                // Frames resolved without indexes would be cached as not being step definitions
+                if (DumbService.isDumb(project)) {
+                    LOG.info("Indexes are being updated, skipping step definition lookup");
+                    return null;
+                }
+                
+                StepDefinitionCache cache = StepDefinitionCache.getInstance(project);
+                for (ParsedStackTrace.Frame frame : parsedStackTrace.getFrames()) {
+                    // Frames in Java files, e.g. com.example.steps.ClassName.methodName(ClassName.java:lineNumber)
+                    if (!frame.isJavaSource() || !isStepDefinitionClass(frame.getClassName(), frame.getMethodName())) {
+                        continue;
                     }
-                    
-                    // Step 3: Find the method containing this element
-                    PsiMethod containingMethod = findContainingMethod(elementAtLine);
-                    if (containingMethod == null) {
-                        LOG.debug("Could not find containing method");
-                        return null;
+                    StepDefinitionInfo stepDefinition = cache.getOrResolve(frame, this::resolveStepDefinition);
+                    if (stepDefinition != null) {
+                        return stepDefinition;
                     }
-                    
-                    // Step 4: Extract step definition information from the method
-                    return extractStepDefinitionFromMethod(containingMethod);
-                    
-                } catch (Exception e) {
-                    LOG.warn("Failed to extract step definition from location", e);
-                    return null;
                 }
+                    
+                LOG.debug("No step definition found in stack trace");
+                return null;
             });
             
+        } catch (ProcessCanceledException e) {
+            throw e;
+        } catch (IndexNotReadyException e) {
+            LOG.info("Indexes are being updated, skipping step definition lookup");
+            return null;
         } catch (Exception e) {
             LOG.warn("Exception during step definition extraction", e);
             return null;
@@ -143,43 +145,112 @@ public class StepDefinitionExtractor {
     }
     
     /**
-     * Extracts step definition file path and line number from stack trace.
-     * This looks for the first Java file in the stack trace that contains step definitions.
+     * Resolves a stack frame to the step definition method it points into.
      * 
-     * @param stackTrace The stack trace to analyze
-     * @return StepLocation containing file path and line number, or null if not found
+     * @param frame The stack frame to resolve
+     * @return StepDefinitionInfo of the method, or null if the frame is not in a step definition
      */
-    private StepLocation extractStepLocationFromStackTrace(String stackTrace) {
+    private StepDefinitionInfo resolveStepDefinition(ParsedStackTrace.Frame frame) {
         try {
-            // Pattern to match Java files in stack trace: com.example.steps.ClassName.methodName(ClassName.java:lineNumber)
-            Pattern pattern = Pattern.compile("at\\s+([\\w\\.]+)\\.([\\w]+)\\(([\\w]+\\.java):(\\d+)\\)");
-            Matcher matcher = pattern.matcher(stackTrace);
+            // Step 1: Find the class of the frame using PSI
+            PsiClass psiClass = findClass(frame);
+            if (psiClass == null) {
+                LOG.debug("Could not find class: " + frame.getClassName());
+                return null;
+            }
             
-            while (matcher.find()) {
-                String className = matcher.group(1);
-                String methodName = matcher.group(2);
-                String fileName = matcher.group(3);
-                int lineNumber = Integer.parseInt(matcher.group(4));
-                
-                // Check if this looks like a step definition class
-                if (isStepDefinitionClass(className, methodName)) {
-                    // Convert class name to file path
-                    String filePath = convertClassNameToFilePath(className, fileName);
-                    if (filePath != null) {
-                        return new StepLocation(filePath, lineNumber);
-                    }
-                }
+            PsiFile psiFile = psiClass.getContainingFile();
+            if (psiFile == null) {
+                LOG.debug("Could not find file of class: " + frame.getClassName());
+                return null;
             }
             
-            LOG.debug("No step definition location found in stack trace");
-            return null;
+            // Step 2: Navigate to the exact line number
+            PsiElement elementAtLine = navigateToLine(psiFile, frame.getLineNumber());
+            if (elementAtLine == null) {
+                LOG.debug("Could not navigate to line: " + frame.getLineNumber());
+                return null;
+            }
+            
+            // Step 3: Find the method containing this element
+            PsiMethod containingMethod = findContainingMethod(elementAtLine);
+            if (containingMethod == null) {
+                LOG.debug("Could not find containing method");
+                return null;
+            }
             
+            // Step 4: Extract step definition information from the method
+            StepDefinitionInfo stepDefinition = extractStepDefinitionFromMethod(containingMethod);
+            
+            // The PSI helpers swallow exceptions, so a cancelled read action could otherwise
+            // leave a null result behind in the cache
+            ProgressManager.checkCanceled();
+            return stepDefinition;
+            
+        } catch (ProcessCanceledException | IndexNotReadyException e) {
+            // Rethrown so that the cache does not keep a null result for the frame
+            throw e;
         } catch (Exception e) {
-            LOG.warn("Error extracting step location from stack trace", e);
+            LOG.warn("Failed to extract step definition from location", e);
             return null;
         }
     }
     
+    /**
+     * Finds the source class of a stack frame.
+     * 
+     * <p>Frames name classes by their binary name, so nested classes are looked up from
+     * their top-level class, and anonymous or synthetic classes resolve to the class that
+     * declares them. Step definitions are looked for in the sources of all project modules
+     * first, then in libraries with attached sources. If several modules declare the same
+     * class, the one in the file named by the frame is preferred.</p>
+     * 
+     * @param frame The stack frame
+     * @return The class, or null if not found
+     */
+    private PsiClass findClass(ParsedStackTrace.Frame frame) {
+        String[] names = frame.getClassName().split("\\$");
+        JavaPsiFacade facade = JavaPsiFacade.getInstance(project);
+        
+        PsiClass psiClass = findTopLevelClass(facade, names[0], frame.getFileName(), GlobalSearchScope.projectScope(project));
+        if (psiClass == null) {
+            psiClass = findTopLevelClass(facade, names[0], frame.getFileName(), GlobalSearchScope.allScope(project));
+            if (psiClass != null && psiClass.getNavigationElement() instanceof PsiClass) {
+                psiClass = (PsiClass) psiClass.getNavigationElement();
+            }
+        }
+        
+        for (int i = 1; i < names.length && psiClass != null; i++) {
+            PsiClass innerClass = names[i].isEmpty() ? null : psiClass.findInnerClassByName(names[i], false);
+            if (innerClass == null) {
+                break;
+            }
+            psiClass = innerClass;
+        }
+        return psiClass;
+    }
+    
+    /**
+     * Finds a top-level class by its qualified name.
+     * 
+     * @param facade The Java PSI facade of the project
+     * @param qualifiedName The qualified class name
+     * @param fileName The file name from the stack frame
+     * @param scope The scope to search in
+     * @return The class, preferably the one declared in the given file, or null if not found
+     */
+    private PsiClass findTopLevelClass(JavaPsiFacade facade, String qualifiedName, String fileName,
+                                       GlobalSearchScope scope) {
+        PsiClass[] classes = facade.findClasses(qualifiedName, scope);
+        for (PsiClass candidate : classes) {
+            PsiFile file = candidate.getContainingFile();
+            if (file != null && fileName.equals(file.getName())) {
+                return candidate;
+            }
+        }
+        return classes.length > 0 ? classes[0] : null;
+    }
+    
     /**
      * Checks if a class and method look like a step definition.
      * 
@@ -216,91 +287,6 @@ public class StepDefinitionExtractor {
         return false;
     }
     
-    /**
-     * Converts a class name to a file path by searching in the project's file system.
-     * This method works with both real file systems and test fixture virtual file systems.
-     * 
-     * @param className The fully qualified class name
-     * @param fileName The file name (e.g., "ClassName.java")
-     * @return The file path if found, or null if not found
-     */
-    private String convertClassNameToFilePath(String className, String fileName) {
-        try {
-            // Convert class name to package path
-            String packagePath = className.replace('.', '/');
-            
-            // Look for the file in the project using the project's file system
-            for (String sourcePath : SOURCE_PATHS) {
-                String fullPath = sourcePath + packagePath + ".java";
-                
-                // Use the project's base directory to search for files
-                VirtualFile baseDir = ProjectUtil.guessProjectDir(project);
-                if (baseDir != null) {
-                    VirtualFile virtualFile = baseDir.findFileByRelativePath(fullPath);
-                    if (virtualFile != null && virtualFile.exists()) {
-                        return virtualFile.getPath();
-                    }
-                }
-                
-                // Fallback: try using LocalFileSystem for absolute paths
-                VirtualFile virtualFile = LocalFileSystem.getInstance().findFileByPath(baseDir != null ? baseDir.getPath() + "/" + fullPath : fullPath);
-                if (virtualFile != null && virtualFile.exists()) {
-                    return virtualFile.getPath();
-                }
-            }
-            
-            LOG.debug("Could not find file for class: " + className);
-            return null;
-            
-        } catch (Exception e) {
-            LOG.warn("Error converting class name to file path", e);
-            return null;
-        }
-    }
-    
-    /**
-     * Simple data class to hold step location information.
-     */
-    private static class StepLocation {
-        final String filePath;
-        final int lineNumber;
-        
-        StepLocation(String filePath, int lineNumber) {
-            this.filePath = filePath;
-            this.lineNumber = lineNumber;
-        }
-    }
-    
-    /**
-     * Navigates to a file using PSI.
-     * 
-     * @param sourceFilePath The file path to navigate to
-     * @return The PSI file, or null if not found
-     */
-    private PsiFile navigateToFile(String sourceFilePath) {
-        try {
-            // Convert file path to VirtualFile
-            VirtualFile virtualFile = LocalFileSystem.getInstance().findFileByPath(sourceFilePath);
-            if (virtualFile == null) {
-                LOG.debug("VirtualFile not found for: " + sourceFilePath);
-                return null;
-            }
-            
-            // Get PSI file from VirtualFile
-            PsiFile psiFile = PsiManager.getInstance(project).findFile(virtualFile);
-            if (psiFile == null) {
-                LOG.debug("PSI file not found for: " + sourceFilePath);
-                return null;
-            }
-            
-            return psiFile;
-            
-        } catch (Exception e) {
-            LOG.warn("Error navigating to file: " + sourceFilePath, e);
-            return null;
-        }
-    }
-    
     /**
      * Navigates to a specific line in a PSI file.
      * 
@@ -0,0 +1,411 @@
+package com.trace.test.extractors;
+
+import com.intellij.openapi.diagnostic.Logger;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * Matches concrete step texts against step templates.
+ *
+ * <p>Two kinds of templates are supported: steps of scenario outlines, such as
+ * {@code I enter "<email>" in the email field}, and the patterns of step definitions.
+ * Step definition patterns are either Cucumber Expressions, such as
+ * {@code I have {int} cucumbers in my (big )belly}, or regular expressions, which start with
+ * {@code ^} or end with {@code $}, as Cucumber itself tells them apart.</p>
+ *
+ * <p>Each template is compiled once and kept in a bounded cache, since the same templates
+ * are compared with many steps. A compiled template knows the literal text it starts and
+ * ends with, and steps that do not share this text are rejected without running the
+ * regular expression.</p>
+ *
+ * <p>This class is thread-safe.</p>
+ *
+ * @author Alex Ibasitas
+ * @since 1.0.0
+ */
+public final class StepPatternMatcher {
+    
+    private static final Logger LOG = Logger.getInstance(StepPatternMatcher.class);
+    
+    // Templates come from the project's feature files and step definitions, so a few hundred cover most suites
+    static final int MAX_CACHED_PATTERNS = 512;
+    
+    private static final String OUTLINE_KEY_PREFIX = "outline:";
+    private static final String STEP_DEFINITION_KEY_PREFIX = "definition:";
+    
+    private static final Pattern OUTLINE_PARAMETER = Pattern.compile("<[^<>]+>");
+    
+    private static final String INTEGER_REGEX = "-?\\d+";
+    private static final String DECIMAL_REGEX = "[-+]?(?:\\d+(?:[.,]\\d+)?|[.,]\\d+)(?:[eE][-+]?\\d+)?";
+    private static final String WORD_REGEX = "[^\\s]+";
+    private static final String STRING_REGEX = "\"(?:[^\"\\\\]|\\\\.)*\"|'(?:[^'\\\\]|\\\\.)*'";
+    
+    // Guarded by itself; in access order so that the least recently used pattern is evicted first
+    private static final Map<String, CompiledPattern> CACHE = new LinkedHashMap<>(64, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, CompiledPattern> eldest) {
+            return size() > MAX_CACHED_PATTERNS;
+        }
+    };
+    
+    /**
+     * Private constructor to prevent instantiation of utility class.
+     */
+    private StepPatternMatcher() {
+        throw new UnsupportedOperationException("Utility class cannot be instantiated");
+    }
+    
+    /**
+     * Checks if a step of a scenario outline matches a concrete step.
+     *
+     * <p>Each {@code <parameter>} of the template matches any text. A template without
+     * parameters only matches the identical step.</p>
+     *
+     * @param template the outline step without its keyword, e.g. {@code I enter "<email>"}
+     * @param stepText the concrete step without its keyword, e.g. {@code I enter "a@b.com"}
+     * @return true if the step is an example of the template
+     */
+    public static boolean matchesOutlineStep(@NotNull String template, @NotNull String stepText) {
+        return compiled(OUTLINE_KEY_PREFIX, template).matches(stepText);
+    }
+    
+    /**
+     * Checks if the pattern of a step definition matches a concrete step.
+     *
+     * @param stepPattern the Cucumber Expression or regular expression of the step definition
+     * @param stepText the concrete step without its keyword
+     * @return true if the step definition matches the step
+     */
+    public static boolean matchesStepDefinition(@NotNull String stepPattern, @NotNull String stepText) {
+        return compiled(STEP_DEFINITION_KEY_PREFIX, stepPattern).matches(stepText);
+    }
+    
+    /**
+     * Gets the number of compiled patterns in the cache.
+     *
+     * @return the cache size
+     */
+    static int getCacheSize() {
+        synchronized (CACHE) {
+            return CACHE.size();
+        }
+    }
+    
+    /**
+     * Removes all compiled patterns from the cache.
+     */
+    static void clearCache() {
+        synchronized (CACHE) {
+            CACHE.clear();
+        }
+    }
+    
+    private static CompiledPattern compiled(String keyPrefix, String template) {
+        String key = keyPrefix + template;
+        synchronized (CACHE) {
+            CompiledPattern pattern = CACHE.get(key);
+            if (pattern != null) {
+                return pattern;
+            }
+        }
+        // Compiling outside the lock may compile a template twice, which is harmless
+        CompiledPattern pattern = OUTLINE_KEY_PREFIX.equals(keyPrefix)
+            ? compileOutlineStep(template)
+            : compileStepDefinition(template);
+        synchronized (CACHE) {
+            CACHE.put(key, pattern);
+        }
+        return pattern;
+    }
+    
+    /**
+     * Compiles a step of a scenario outline.
+     */
+    static CompiledPattern compileOutlineStep(@NotNull String template) {
+        List<Segment> segments = new ArrayList<>();
+        Matcher matcher = OUTLINE_PARAMETER.matcher(template);
+        int last = 0;
+        while (matcher.find()) {
+            segments.add(Segment.literal(template.substring(last, matcher.start())));
+            segments.add(Segment.regex(".*"));
+            last = matcher.end();
+        }
+        segments.add(Segment.literal(template.substring(last)));
+        return CompiledPattern.of(segments, template);
+    }
+    
+    /**
+     * Compiles the pattern of a step definition, telling regular expressions and Cucumber
+     * Expressions apart the way Cucumber does.
+     */
+    static CompiledPattern compileStepDefinition(@NotNull String stepPattern) {
+        if (stepPattern.startsWith("^") || stepPattern.endsWith("$")) {
+            return CompiledPattern.ofRegex(stepPattern);
+        }
+        if (stepPattern.length() > 1 && stepPattern.startsWith("/") && stepPattern.endsWith("/")) {
+            return CompiledPattern.ofRegex(stepPattern.substring(1, stepPattern.length() - 1));
+        }
+        return compileCucumberExpression(stepPattern);
+    }
+    
+    /**
+     * Compiles a Cucumber Expression.
+     *
+     * <p>Supports parameters such as {@code {int}} and {@code {string}}, optional text in
+     * parentheses, alternative words separated by {@code /} and backslash escapes. Custom
+     * parameter types match any text, since their regular expressions are only known at
+     * run time.</p>
+     */
+    static CompiledPattern compileCucumberExpression(@NotNull String expression) {
+        List<Segment> segments = new ArrayList<>();
+        int i = 0;
+        while (i < expression.length()) {
+            boolean whitespace = Character.isWhitespace(expression.charAt(i));
+            int end = whitespace ? endOfWhitespace(expression, i) : endOfWord(expression, i);
+            String token = expression.substring(i, end);
+            if (whitespace) {
+                segments.add(Segment.literal(token));
+            } else {
+                List<String> alternatives = splitAlternatives(token);
+                if (alternatives.size() == 1) {
+                    translateExpressionToken(token, segments);
+                } else {
+                    StringBuilder regex = new StringBuilder("(?:");
+                    for (int a = 0; a < alternatives.size(); a++) {
+                        List<Segment> alternative = new ArrayList<>();
+                        translateExpressionToken(alternatives.get(a), alternative);
+                        regex.append(a == 0 ? "" : "|").append(Segment.toRegex(alternative));
+                    }
+                    segments.add(Segment.regex(regex.append(')').toString()));
+                }
+            }
+            i = end;
+        }
+        return CompiledPattern.of(segments, expression);
+    }
+    
+    private static int endOfWhitespace(String expression, int start) {
+        int end = start;
+        while (end < expression.length() && Character.isWhitespace(expression.charAt(end))) {
+            end++;
+        }
+        return end;
+    }
+    
+    /**
+     * Finds the end of a word of a Cucumber Expression. Whitespace inside parameters and
+     * optional text, such as in {@code (big )belly}, belongs to the word, so that only
+     * whitespace outside them ends a group of alternatives.
+     */
+    private static int endOfWord(String expression, int start) {
+        int depth = 0;
+        int end = start;
+        while (end < expression.length()) {
+            char c = expression.charAt(end);
+            if (c == '\\') {
+                end = Math.min(end + 2, expression.length());
+                continue;
+            }
+            if (c == '{' || c == '(') {
+                depth++;
+            } else if ((c == '}' || c == ')') && depth > 0) {
+                depth--;
+            } else if (depth == 0 && Character.isWhitespace(c)) {
+                break;
+            }
+            end++;
+        }
+        return end;
+    }
+    
+    /**
+     * Splits a word of a Cucumber Expression at the slashes that separate alternatives,
+     * ignoring escaped slashes and slashes inside parameters or optional text.
+     */
+    private static List<String> splitAlternatives(String token) {
+        List<String> alternatives = new ArrayList<>();
+        int depth = 0;
+        int start = 0;
+        for (int i = 0; i < token.length(); i++) {
+            char c = token.charAt(i);
+            if (c == '\\') {
+                i++;
+            } else if (c == '{' || c == '(') {
+                depth++;
+            } else if ((c == '}' || c == ')') && depth > 0) {
+                depth--;
+            } else if (c == '/' && depth == 0) {
+                alternatives.add(token.substring(start, i));
+                start = i + 1;
+            }
+        }
+        alternatives.add(token.substring(start));
+        return alternatives;
+    }
+    
+    private static void translateExpressionToken(String token, List<Segment> segments) {
+        StringBuilder literal = new StringBuilder();
+        int i = 0;
+        while (i < token.length()) {
+            char c = token.charAt(i);
+            int close = c == '{' ? token.indexOf('}', i) : c == '(' ? token.indexOf(')', i) : -1;
+            if (c == '\\' && i + 1 < token.length()) {
+                literal.append(token.charAt(i + 1));
+                i += 2;
+            } else if (close > i) {
+                segments.add(Segment.literal(literal.toString()));
+                literal.setLength(0);
+                String inner = token.substring(i + 1, close);
+                segments.add(Segment.regex(c == '{'
+                    ? "(?:" + parameterRegex(inner) + ")"
+                    : "(?:" + Pattern.quote(inner.replace("\\", "")) + ")?"));
+                i = close + 1;
+            } else {
+                literal.append(c);
+                i++;
+            }
+        }
+        segments.add(Segment.literal(literal.toString()));
+    }
+    
+    private static String parameterRegex(String type) {
+        switch (type) {
+            case "int":
+            case "byte":
+            case "short":
+            case "long":
+            case "biginteger":
+                return INTEGER_REGEX;
+            case "float":
+            case "double":
+            case "bigdecimal":
+                return DECIMAL_REGEX;
+            case "word":
+                return WORD_REGEX;
+            case "string":
+                return STRING_REGEX;
+            case "":
+                return ".*";
+            default:
+                return ".*?";
+        }
+    }
+    
+    /**
+     * A piece of a template: literal text or a regular expression.
+     */
+    private static final class Segment {
+        private final String text;
+        private final boolean literal;
+        
+        private Segment(String text, boolean literal) {
+            this.text = text;
+            this.literal = literal;
+        }
+        
+        static Segment literal(String text) {
+            return new Segment(text, true);
+        }
+        
+        static Segment regex(String regex) {
+            return new Segment(regex, false);
+        }
+        
+        static String toRegex(List<Segment> segments) {
+            StringBuilder regex = new StringBuilder();
+            for (Segment segment : segments) {
+                if (segment.literal) {
+                    if (!segment.text.isEmpty()) {
+                        regex.append(Pattern.quote(segment.text));
+                    }
+                } else {
+                    regex.append(segment.text);
+                }
+            }
+            return regex.toString();
+        }
+    }
+    
+    /**
+     * A compiled template with the literal text every matching step starts and ends with.
+     */
+    static final class CompiledPattern {
+        private static final CompiledPattern INVALID = new CompiledPattern(null, "", "", false);
+        
+        private final Pattern pattern;
+        private final String prefix;
+        private final String suffix;
+        private final boolean wholeStep;
+        
+        private CompiledPattern(Pattern pattern, String prefix, String suffix, boolean wholeStep) {
+            this.pattern = pattern;
+            this.prefix = prefix;
+            this.suffix = suffix;
+            this.wholeStep = wholeStep;
+        }
+        
+        static CompiledPattern of(List<Segment> segments, String template) {
+            boolean literal = true;
+            StringBuilder text = new StringBuilder();
+            for (Segment segment : segments) {
+                literal &= segment.literal;
+                text.append(segment.text);
+            }
+            if (literal) {
+                // Nothing to compile: the step must equal the template
+                return new CompiledPattern(null, text.toString(), "", true);
+            }
+            String prefix = segments.get(0).literal ? segments.get(0).text : "";
+            Segment last = segments.get(segments.size() - 1);
+            String suffix = last.literal ? last.text : "";
+            try {
+                return new CompiledPattern(Pattern.compile(Segment.toRegex(segments), Pattern.DOTALL), prefix, suffix, true);
+            } catch (PatternSyntaxException e) {
+                LOG.debug("Failed to compile step template: " + template, e);
+                return INVALID;
+            }
+        }
+        
+        static CompiledPattern ofRegex(String regex) {
+            try {
+                return new CompiledPattern(Pattern.compile(regex), "", "", false);
+            } catch (PatternSyntaxException e) {
+                LOG.debug("Failed to compile step definition pattern: " + regex, e);
+                return INVALID;
+            }
+        }
+        
+        /**
+         * Checks if a step matches, trying the literal prefix and suffix first.
+         */
+        boolean matches(String stepText) {
+            if (this == INVALID) {
+                return false;
+            }
+            if (pattern == null) {
+                return stepText.equals(prefix);
+            }
+            if (stepText.length() < prefix.length() + suffix.length()
+                    || !stepText.startsWith(prefix) || !stepText.endsWith(suffix)) {
+                return false;
+            }
+            // Regular expressions of step definitions carry their own anchors
+            return wholeStep ? pattern.matcher(stepText).matches() : pattern.matcher(stepText).find();
+        }
+        
+        String getPrefix() {
+            return prefix;
+        }
+        
+        String getSuffix() {
+            return suffix;
+        }
+    }
+}
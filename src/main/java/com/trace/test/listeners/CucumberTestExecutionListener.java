@@ -2,11 +2,13 @@ package com.trace.test.listeners;
 
 import com.intellij.execution.testframework.sm.runner.SMTRunnerEventsListener;
 import com.intellij.execution.testframework.sm.runner.SMTestProxy;
+import com.intellij.openapi.progress.ProcessCanceledException;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.application.ApplicationManager;
 import com.trace.chat.ui.TriagePanelToolWindowFactory;
 import com.trace.test.extractors.GherkinScenarioExtractor;
+import com.trace.test.extractors.ParsedStackTrace;
 import com.trace.test.extractors.StackTraceExtractor;
 import com.trace.test.extractors.StepDefinitionExtractor;
 import com.trace.test.models.FailureInfo;
@@ -16,6 +18,7 @@ import com.trace.ai.prompts.InitialPromptFailureAnalysisService;
 import com.trace.chat.ui.TriagePanelView;
 import com.trace.ai.configuration.AISettings;
 import com.trace.ai.services.AINetworkService;
+import com.trace.ai.services.AnalysisTracker;
 import com.trace.ai.models.AIAnalysisResult;
 
 import java.io.ByteArrayOutputStream;
@@ -36,6 +39,12 @@ import java.util.concurrent.ConcurrentMap;
  * <p>The listener supports both unit testing (with null project) and production
  * usage (with project context) through different constructors.</p>
  * 
+ * <p>Failures are not processed on the thread that reports them. They are handed to a
+ * {@link FailureProcessingPipeline}, which extracts their context in non-blocking read
+ * actions and publishes them to the panel on the EDT. Test run start and finish
+ * notifications go through the same pipeline, so the panel sees them in order with the
+ * failures.</p>
+ * 
  * @author Alex Ibasitas
  * @since 1.0.0
  */
@@ -51,6 +60,9 @@ public class CucumberTestExecutionListener implements SMTRunnerEventsListener {
     private final AISettings aiSettings;
     private AINetworkService aiNetworkService;
     
+    // Extracts failure context off the EDT and publishes it to the panel in order
+    private final FailureProcessingPipeline failurePipeline;
+    
     // Stream capture for test output analysis (instance-based to allow proper cleanup)
     private final ConcurrentMap<SMTestProxy, ByteArrayOutputStream> testOutputStreams = new ConcurrentHashMap<>();
     private final ConcurrentMap<SMTestProxy, ByteArrayOutputStream> testErrorStreams = new ConcurrentHashMap<>();
@@ -72,6 +84,7 @@ public class CucumberTestExecutionListener implements SMTRunnerEventsListener {
         this.promptGenerationService = new InitialPromptFailureAnalysisService();
         this.aiSettings = AISettings.getInstance();
         this.aiNetworkService = null; // Will be initialized when project is available
+        this.failurePipeline = null;
         instance = this;
         LOG.debug("CucumberTestExecutionListener created without project context");
     }
@@ -93,11 +106,15 @@ public class CucumberTestExecutionListener implements SMTRunnerEventsListener {
             this.stepDefinitionExtractor = new StepDefinitionExtractor(project);
             this.gherkinScenarioExtractor = new GherkinScenarioExtractor(project);
             this.aiNetworkService = new AINetworkService(project);
+            this.failurePipeline = new FailureProcessingPipeline(project,
+                test -> extractFailureInfo(test, project),
+                failureInfo -> publishFailure(failureInfo, project));
         } else {
             this.stackTraceExtractor = null;
             this.stepDefinitionExtractor = null;
             this.gherkinScenarioExtractor = null;
             this.aiNetworkService = null;
+            this.failurePipeline = null;
         }
     }
 
@@ -143,7 +160,16 @@ public class CucumberTestExecutionListener implements SMTRunnerEventsListener {
         
         // Notify TriagePanel that a new test run has started
         if (project != null) {
-            ApplicationManager.getApplication().invokeLater(() -> {
+            // Cancel running analyses right away rather than after the EDT gets to the panel
+            AnalysisTracker.getInstance(project).cancelAll();
+            
+            // Failures of the previous run that are still waiting would land in the new run
+            int dropped = failurePipeline.clearPendingFailures();
+            if (dropped > 0) {
+                LOG.info("Dropped " + dropped + " unprocessed failures of the previous test run");
+            }
+            
+            failurePipeline.runAfterPending(() -> {
                 try {
                     TriagePanelView triagePanel = getTriagePanelForProject(project);
                     if (triagePanel != null) {
@@ -165,7 +191,26 @@ public class CucumberTestExecutionListener implements SMTRunnerEventsListener {
 
     @Override
     public void onTestingFinished(SMTestProxy.SMRootTestProxy root) {
-        // Not needed for our use case
+        LOG.info("Test run finished: " + (root != null ? root.getName() : "null"));
+        
+        // Notify TriagePanel so it can analyze the failures collected during the run,
+        // once the failures reported before the end of the run have reached it
+        if (project != null) {
+            failurePipeline.runAfterPending(() -> {
+                try {
+                    TriagePanelView triagePanel = getTriagePanelForProject(project);
+                    if (triagePanel != null) {
+                        triagePanel.onTestRunFinished();
+                    } else {
+                        if (LOG.isDebugEnabled()) {
+                            LOG.debug("TriagePanel not found for project: " + project.getName());
+                        }
+                    }
+                } catch (Exception e) {
+                    LOG.error("Error notifying TriagePanel of test run finish", e);
+                }
+            });
+        }
     }
 
     @Override
@@ -259,25 +304,33 @@ public class CucumberTestExecutionListener implements SMTRunnerEventsListener {
         
         // Check if this is a Cucumber test
         if (TestUtilityHelper.isCucumberTest(test)) {
-            LOG.info("Processing Cucumber test failure: " + test.getName());
-            processFailedCucumberTest(test, project);
+            if (failurePipeline == null) {
+                LOG.info("Project is null, cannot process test failure");
+                return;
+            }
+            LOG.info("Queueing Cucumber test failure: " + test.getName());
+            failurePipeline.submit(test);
         }
     }
 
 
     /**
-     * Processes a failed Cucumber test by extracting relevant information
-     * and generating AI prompts for analysis.
+     * Extracts the failure information of a failed Cucumber test, including its
+     * step definition and Gherkin scenario.
+     * 
+     * <p>This method runs inside a non-blocking read action off the EDT. It may be
+     * restarted when a write action interrupts it, so it must not have side effects.</p>
      *
      * @param test The failed test proxy
      * @param currentProject The current project context
+     * @return The enhanced failure information, or null if it could not be extracted
      */
-    private void processFailedCucumberTest(SMTestProxy test, Project currentProject) {
+    private FailureInfo extractFailureInfo(SMTestProxy test, Project currentProject) {
         try {
             // Check if we have a valid project for extraction
             if (currentProject == null) {
                 LOG.info("Project is null, cannot process test failure");
-                return;
+                return null;
             }
             
             // Create extractors for this project if not already created
@@ -292,16 +345,19 @@ public class CucumberTestExecutionListener implements SMTRunnerEventsListener {
             // Defensive programming: check if extractors are available
             if (localStackTraceExtractor == null) {
                 LOG.error("StackTraceExtractor is null, cannot process");
-                return;
+                return null;
             }
             
+            // Parse the stack trace once and share it between the extractors
+            ParsedStackTrace parsedStackTrace = ParsedStackTrace.parse(test.getStacktrace());
+            
             // Extract basic failure information using the test proxy directly
             LOG.debug("Extracting failure info from test proxy...");
-            FailureInfo basicFailureInfo = localStackTraceExtractor.extractFailureInfo(test);
+            FailureInfo basicFailureInfo = localStackTraceExtractor.extractFailureInfo(test, parsedStackTrace);
             
             if (basicFailureInfo == null) {
                 LOG.warn("Could not extract basic failure info");
-                return;
+                return null;
             }
             
             if (LOG.isDebugEnabled()) {
@@ -326,7 +382,7 @@ public class CucumberTestExecutionListener implements SMTRunnerEventsListener {
                 }
                 
                 // Use stack trace-based extraction (most reliable approach)
-                stepDefInfo = finalStepDefinitionExtractor.extractStepDefinition(stackTrace);
+                stepDefInfo = finalStepDefinitionExtractor.extractStepDefinition(parsedStackTrace);
                 
                 if (stepDefInfo != null) {
                     if (LOG.isDebugEnabled()) {
@@ -348,7 +404,8 @@ public class CucumberTestExecutionListener implements SMTRunnerEventsListener {
                 }
                 scenarioInfo = localGherkinScenarioExtractor.extractScenarioInfo(
                     basicFailureInfo.getFailedStepText(), 
-                    basicFailureInfo.getScenarioName()
+                    basicFailureInfo.getScenarioName(),
+                    stepDefInfo != null ? stepDefInfo.getStepPattern() : null
                 );
             }
             
@@ -372,26 +429,40 @@ public class CucumberTestExecutionListener implements SMTRunnerEventsListener {
                 .withParsingTime(basicFailureInfo.getParsingTime())
                 .build();
             
-                    // Notify the TriagePanel about the new failure
+            return enhancedFailureInfo;
+        } catch (ProcessCanceledException e) {
+            throw e;
+        } catch (Exception e) {
+            LOG.error("Error processing failed test: " + e.getMessage(), e);
+            return null;
+        }
+    }
+    
+    /**
+     * Publishes an extracted failure to the TriagePanel and triggers AI analysis
+     * if the panel analyzes it individually.
+     * This method runs on the EDT.
+     *
+     * @param failureInfo The extracted failure information
+     * @param currentProject The current project context
+     */
+    private void publishFailure(FailureInfo failureInfo, Project currentProject) {
+        // Notify the TriagePanel about the new failure
         LOG.debug("Notifying TriagePanel about failure");
-        boolean failureWasProcessed = notifyTriagePanel(enhancedFailureInfo, currentProject);
+        boolean failureWasProcessed = notifyTriagePanel(failureInfo, currentProject);
         
         // Only trigger AI analysis if the failure was actually processed
         if (failureWasProcessed) {
             LOG.info("Failure was processed by TriagePanel - triggering AI analysis");
-            triggerAIAnalysisIfConfigured(enhancedFailureInfo, currentProject);
+            triggerAIAnalysisIfConfigured(failureInfo, currentProject);
         } else {
-            LOG.info("Failure was ignored by TriagePanel (subsequent failure in same test run) - skipping AI analysis");
-        }
-            
-        } catch (Exception e) {
-            LOG.error("Error processing failed test: " + e.getMessage(), e);
+            LOG.info("Failure was not analyzed individually by TriagePanel (subsequent failure in same test run) - skipping AI analysis");
         }
     }
     
     /**
      * Notifies the TriagePanel about a new test failure.
-     * This method runs on the EDT to ensure thread safety.
+     * This method must be called on the EDT.
      * 
      * @param failureInfo The failure information to display
      * @param currentProject The current project context
@@ -416,26 +487,15 @@ public class CucumberTestExecutionListener implements SMTRunnerEventsListener {
             return false;
         }
         
-        // Run on EDT to ensure thread safety and get the result
-        final boolean[] wasProcessed = {false};
         try {
-            ApplicationManager.getApplication().invokeAndWait(() -> {
-                try {
-                    if (LOG.isDebugEnabled()) {
-                        LOG.debug("Found TriagePanel, updating with failure info");
-                    }
-                    wasProcessed[0] = triagePanel.updateFailure(failureInfo);
-                } catch (Exception e) {
-                    LOG.error("Error notifying panel: " + e.getMessage(), e);
-                    wasProcessed[0] = false;
-                }
-            });
+            if (LOG.isDebugEnabled()) {
+                LOG.debug("Found TriagePanel, updating with failure info");
+            }
+            return triagePanel.updateFailure(failureInfo);
         } catch (Exception e) {
-            LOG.error("Error during EDT execution in notifyTriagePanel", e);
-            wasProcessed[0] = false;
+            LOG.error("Error notifying panel: " + e.getMessage(), e);
+            return false;
         }
-        
-        return wasProcessed[0];
     }
     
     /**
@@ -0,0 +1,226 @@
+package com.trace.test.listeners;
+
+import com.intellij.execution.testframework.sm.runner.SMTestProxy;
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.application.ModalityState;
+import com.intellij.openapi.application.ReadAction;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.progress.ProcessCanceledException;
+import com.intellij.openapi.progress.ProgressManager;
+import com.intellij.openapi.project.Project;
+import com.intellij.util.concurrency.AppExecutorUtil;
+import com.trace.test.models.FailureInfo;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Processes test failures of a project off the event dispatch thread, one at a time.
+ *
+ * <p>The test runner reports failures on its own thread, and extracting their context
+ * (stack trace, step definition, Gherkin scenario) needs PSI and indexes. Failures are
+ * therefore queued and extracted in non-blocking read actions, which give way to write
+ * actions instead of holding them up, wait until indexing has finished, and are dropped
+ * once the project is closed. Each extracted {@link FailureInfo} is then published on the
+ * event dispatch thread.</p>
+ *
+ * <p>Failures are processed in the order they were reported, so that the first failure
+ * of a run is still the first one the panel sees. Notifications such as the end of a
+ * run are queued behind the failures reported before them with {@link #runAfterPending}.
+ * At most {@link #MAX_QUEUED_FAILURES} failures wait at a time; further failures are
+ * dropped with a warning rather than letting a huge run build up an unbounded backlog.</p>
+ *
+ * <p>Instances are thread-safe.</p>
+ *
+ * @author Alex Ibasitas
+ * @since 1.0.0
+ */
+final class FailureProcessingPipeline {
+    
+    private static final Logger LOG = Logger.getInstance(FailureProcessingPipeline.class);
+    
+    static final int MAX_QUEUED_FAILURES = 256;
+    
+    // One extraction at a time keeps the order and leaves the pool to the rest of the IDE
+    private static final Executor EXTRACTION_EXECUTOR =
+        AppExecutorUtil.createBoundedApplicationPoolExecutor("TRACE Failure Processing", 1);
+    
+    private final BiConsumer<SMTestProxy, Runnable> processor;
+    private final Consumer<Runnable> uiExecutor;
+    
+    private final Queue<Task> tasks = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger queuedFailures = new AtomicInteger();
+    private final AtomicBoolean draining = new AtomicBoolean();
+    
+    /**
+     * Creates a pipeline for the failures of a project.
+     *
+     * @param project the project; processing stops when it is disposed
+     * @param extractor extracts the failure info of a failed test inside a read action,
+     *                  returning null if the failure cannot be processed. It may be run
+     *                  more than once for the same failure and must not have side effects.
+     * @param publisher receives each extracted failure info on the event dispatch thread
+     */
+    FailureProcessingPipeline(@NotNull Project project,
+                              @NotNull Function<SMTestProxy, FailureInfo> extractor,
+                              @NotNull Consumer<FailureInfo> publisher) {
+        this((test, done) -> ReadAction.nonBlocking(() -> extract(extractor, test))
+                .coalesceBy(FailureProcessingPipeline.class, test)
+                .expireWith(project)
+                .inSmartMode(project)
+                .finishOnUiThread(ModalityState.defaultModalityState(), failureInfo -> {
+                    if (failureInfo != null) {
+                        publisher.accept(failureInfo);
+                    }
+                })
+                .submit(EXTRACTION_EXECUTOR)
+                .onProcessed(ignored -> done.run()),
+            runnable -> ApplicationManager.getApplication().invokeLater(runnable, project.getDisposed()));
+    }
+    
+    /**
+     * Creates a pipeline with the given processing stages.
+     *
+     * @param processor processes a failure and runs the given callback once it is done,
+     *                  whether it succeeded, failed or was cancelled
+     * @param uiExecutor runs notifications on the event dispatch thread
+     */
+    FailureProcessingPipeline(@NotNull BiConsumer<SMTestProxy, Runnable> processor,
+                              @NotNull Consumer<Runnable> uiExecutor) {
+        this.processor = processor;
+        this.uiExecutor = uiExecutor;
+    }
+    
+    /**
+     * Queues a failed test for processing.
+     *
+     * @param test the failed test
+     * @return true if the failure was queued, false if the queue is full
+     */
+    boolean submit(@NotNull SMTestProxy test) {
+        if (queuedFailures.incrementAndGet() > MAX_QUEUED_FAILURES) {
+            queuedFailures.decrementAndGet();
+            LOG.warn("Too many test failures waiting to be processed, dropping: " + test.getName());
+            return false;
+        }
+        tasks.add(new Task(test, null));
+        drain();
+        return true;
+    }
+    
+    /**
+     * Runs a notification on the event dispatch thread once all failures queued before it
+     * have been published.
+     *
+     * @param notification the notification to run
+     */
+    void runAfterPending(@NotNull Runnable notification) {
+        tasks.add(new Task(null, notification));
+        drain();
+    }
+    
+    /**
+     * Drops the failures that are waiting to be processed, for example when a new test
+     * run starts. The failure being processed and queued notifications are kept.
+     *
+     * @return the number of failures dropped
+     */
+    int clearPendingFailures() {
+        int dropped = 0;
+        for (Task task : tasks) {
+            if (task.test != null && tasks.remove(task)) {
+                queuedFailures.decrementAndGet();
+                dropped++;
+            }
+        }
+        return dropped;
+    }
+    
+    /**
+     * Gets the number of failures waiting to be processed.
+     *
+     * @return the queued failure count
+     */
+    int getQueuedFailureCount() {
+        return queuedFailures.get();
+    }
+    
+    private void drain() {
+        if (draining.compareAndSet(false, true)) {
+            processNext();
+        }
+    }
+    
+    /**
+     * Processes the next task and, once it is done, the one after it. Only the thread that
+     * set {@link #draining} runs this, until the queue is empty.
+     */
+    private void processNext() {
+        Task task = tasks.poll();
+        if (task == null) {
+            draining.set(false);
+            // A task queued after the poll but before the flag was cleared would wait forever
+            if (!tasks.isEmpty()) {
+                drain();
+            }
+            return;
+        }
+        if (task.test != null) {
+            queuedFailures.decrementAndGet();
+            try {
+                processor.accept(task.test, this::processNext);
+            } catch (RuntimeException e) {
+                LOG.error("Failed to submit test failure for processing", e);
+                processNext();
+            }
+        } else {
+            uiExecutor.accept(() -> {
+                try {
+                    task.notification.run();
+                } catch (RuntimeException e) {
+                    LOG.error("Error running test run notification", e);
+                } finally {
+                    processNext();
+                }
+            });
+        }
+    }
+    
+    @Nullable
+    private static FailureInfo extract(Function<SMTestProxy, FailureInfo> extractor, SMTestProxy test) {
+        FailureInfo failureInfo;
+        try {
+            failureInfo = extractor.apply(test);
+        } catch (ProcessCanceledException e) {
+            throw e;
+        } catch (RuntimeException e) {
+            LOG.error("Error processing failed test: " + e.getMessage(), e);
+            return null;
+        }
+        // The extractors catch their own exceptions, including the cancellation that a
+        // pending write action causes; restart rather than publishing what was cut short
+        ProgressManager.checkCanceled();
+        return failureInfo;
+    }
+    
+    /**
+     * A failed test to process or a notification to run.
+     */
+    private static final class Task {
+        private final SMTestProxy test;
+        private final Runnable notification;
+        
+        private Task(@Nullable SMTestProxy test, @Nullable Runnable notification) {
+            this.test = test;
+            this.notification = notification;
+        }
+    }
+}
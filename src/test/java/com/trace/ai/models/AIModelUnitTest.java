@@ -244,6 +244,18 @@ class AIModelUnitTest {
             assertThat(maxTokens).isEqualTo(2000);
         }
         
+        @Test
+        @DisplayName("should get context window of each model family")
+        void shouldGetContextWindow_ofEachModelFamily() {
+            // Act & Assert
+            assertThat(openAIModel.getContextWindowTokens()).isEqualTo(128_000);
+            assertThat(geminiModel.getContextWindowTokens()).isEqualTo(1_048_576);
+            assertThat(AIModel.getContextWindowTokens(AIServiceType.OPENAI, "gpt-4.1-mini")).isEqualTo(1_047_576);
+            assertThat(AIModel.getContextWindowTokens(AIServiceType.OPENAI, "gpt-4")).isEqualTo(8_192);
+            assertThat(AIModel.getContextWindowTokens(AIServiceType.OPENAI, "gpt-3.5-turbo")).isEqualTo(16_385);
+            assertThat(AIModel.getContextWindowTokens(AIServiceType.GEMINI, "gemini-pro")).isEqualTo(32_760);
+        }
+
         @Test
         @DisplayName("should get optimal temperature for all models")
         void shouldGetOptimalTemperature_forAllModels() {
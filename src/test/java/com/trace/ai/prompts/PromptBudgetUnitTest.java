@@ -0,0 +1,169 @@
+package com.trace.ai.prompts;
+
+import com.trace.ai.configuration.AIServiceType;
+import com.trace.ai.models.AIModel;
+import com.trace.ai.tokenizer.BpeTokenizer;
+import com.trace.ai.tokenizer.TokenEncoding;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@DisplayName("Prompt Budget Unit Tests")
+class PromptBudgetUnitTest {
+    
+    private static final BpeTokenizer TOKENIZER = BpeTokenizer.getInstance(TokenEncoding.CL100K_BASE);
+    
+    private static String words(String word, int count) {
+        return (word + " ").repeat(count).trim();
+    }
+    
+    private static String prompt(String stackTrace, String documentation) {
+        return "### Instruction ###\nAnalyze the failing test.\n\n"
+            + "### Error Details ###\n**Stack Trace:**\n```\n" + stackTrace + "\n```\n\n"
+            + "### Relevant Documentation ###\n" + documentation + "\n\n"
+            + "### Analysis Request ###\nExplain the root cause.\n";
+    }
+    
+    @Nested
+    @DisplayName("Section Budgets")
+    class SectionBudgets {
+        
+        @Test
+        @DisplayName("should leave prompt unchanged when it fits")
+        void shouldLeavePromptUnchanged_whenItFits() {
+            // Arrange
+            String prompt = prompt("at com.example.LoginSteps.login", "Login requires a valid account.");
+            PromptBudget budget = new PromptBudget(100_000, TOKENIZER);
+            
+            // Act
+            String fitted = budget.fit(prompt);
+            
+            // Assert
+            assertThat(fitted).isEqualTo(prompt);
+        }
+        
+        @Test
+        @DisplayName("should cut stack trace to its own budget keeping top frames")
+        void shouldCutStackTraceToItsOwnBudget_keepingTopFrames() {
+            // Arrange
+            String stackTrace = "at com.example.TopFrame.fail\n" + words("frame", 5000);
+            PromptBudget budget = new PromptBudget(100_000, TOKENIZER);
+            
+            // Act
+            String fitted = budget.fit(prompt(stackTrace, "Login requires a valid account."));
+            
+            // Assert
+            String errorDetails = fitted.substring(fitted.indexOf("### Error Details ###"),
+                fitted.indexOf("### Relevant Documentation ###"));
+            assertThat(TOKENIZER.countTokens(errorDetails)).isLessThanOrEqualTo(2000);
+            assertThat(errorDetails).contains("at com.example.TopFrame.fail", PromptBudget.TRUNCATION_MARKER);
+            assertThat(fitted).contains("Login requires a valid account.", "### Analysis Request ###");
+        }
+        
+        @Test
+        @DisplayName("should close code block left open by cut")
+        void shouldCloseCodeBlockLeftOpenByCut() {
+            // Arrange
+            PromptBudget budget = new PromptBudget(100_000, TOKENIZER);
+            
+            // Act
+            String fitted = budget.fit(prompt(words("frame", 5000), "Docs."));
+            
+            // Assert
+            String errorDetails = fitted.substring(fitted.indexOf("### Error Details ###"),
+                fitted.indexOf("### Relevant Documentation ###"));
+            assertThat(errorDetails.split("```", -1)).hasSize(3);
+        }
+    }
+    
+    @Nested
+    @DisplayName("Fitting")
+    class Fitting {
+        
+        @Test
+        @DisplayName("should cut documentation before error details")
+        void shouldCutDocumentation_beforeErrorDetails() {
+            // Arrange
+            String prompt = prompt(words("frame", 400), words("doc", 2000));
+            PromptBudget budget = new PromptBudget(TOKENIZER.countTokens(prompt) - 500, TOKENIZER);
+            
+            // Act
+            String fitted = budget.fit(prompt);
+            
+            // Assert
+            assertThat(TOKENIZER.countTokens(fitted)).isLessThanOrEqualTo(budget.getMaxPromptTokens());
+            assertThat(fitted).contains(words("frame", 400));
+            assertThat(fitted).contains("### Relevant Documentation ###", PromptBudget.TRUNCATION_MARKER);
+        }
+        
+        @Test
+        @DisplayName("should drop section that would be cut below minimum")
+        void shouldDropSection_thatWouldBeCutBelowMinimum() {
+            // Arrange
+            String prompt = prompt(words("frame", 400), words("doc", 300));
+            PromptBudget budget = new PromptBudget(TOKENIZER.countTokens(prompt) - 280, TOKENIZER);
+            
+            // Act
+            String fitted = budget.fit(prompt);
+            
+            // Assert
+            assertThat(fitted).doesNotContain("### Relevant Documentation ###");
+            assertThat(fitted).contains(words("frame", 400), "### Analysis Request ###");
+        }
+        
+        @Test
+        @DisplayName("should never cut required sections")
+        void shouldNeverCutRequiredSections() {
+            // Arrange
+            String prompt = "### Instruction ###\n" + words("rule", 500) + "\n\n"
+                + "### Analysis Request ###\nExplain the root cause.\n";
+            PromptBudget budget = new PromptBudget(100, TOKENIZER);
+            
+            // Act
+            String fitted = budget.fit(prompt);
+            
+            // Assert
+            assertThat(fitted).isEqualTo(prompt);
+        }
+        
+        @Test
+        @DisplayName("should throw exception when prompt is null")
+        void shouldThrowException_whenPromptIsNull() {
+            // Act & Assert
+            assertThatThrownBy(() -> new PromptBudget(100, TOKENIZER).fit(null))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("Argument for @NotNull parameter 'prompt'");
+        }
+    }
+    
+    @Nested
+    @DisplayName("Model Budgets")
+    class ModelBudgets {
+        
+        @Test
+        @DisplayName("should reserve response tokens and margin from context window")
+        void shouldReserveResponseTokensAndMargin_fromContextWindow() {
+            // Arrange
+            AIModel model = new AIModel("GPT-4", AIServiceType.OPENAI, "gpt-4");
+            
+            // Act
+            PromptBudget budget = PromptBudget.forModel(model);
+            
+            // Assert
+            assertThat(budget.getMaxPromptTokens())
+                .isEqualTo(8_192 - model.getMaxTokens() - PromptBudget.SAFETY_MARGIN_TOKENS);
+        }
+        
+        @Test
+        @DisplayName("should throw exception when model is null")
+        void shouldThrowException_whenModelIsNull() {
+            // Act & Assert
+            assertThatThrownBy(() -> PromptBudget.forModel(null))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("Argument for @NotNull parameter 'model'");
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package com.trace.ai.prompts;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@DisplayName("Prompt Layout Unit Tests")
+class PromptLayoutUnitTest {
+    
+    private static final String PREFIX = "### Instruction ###\nAnalyze the failing test.\n\n"
+        + "### Response Format ###\nRoot cause first.\n\n"
+        + "### Error Details ###\nexpected true but was false\n\n";
+    
+    @Nested
+    @DisplayName("Stable Prefix")
+    class StablePrefix {
+        
+        @Test
+        @DisplayName("should end prefix at first volatile section")
+        void shouldEndPrefix_atFirstVolatileSection() {
+            // Arrange
+            String prompt = PREFIX + "### Relevant Documentation ###\nLogin docs.\n\n"
+                + "### Analysis Request ###\nExplain the root cause.\n";
+            
+            // Act
+            String prefix = PromptLayout.stablePrefix(prompt);
+            String suffix = PromptLayout.volatileSuffix(prompt);
+            
+            // Assert
+            assertThat(prefix).isEqualTo(PREFIX);
+            assertThat(suffix).startsWith("### Relevant Documentation ###");
+            assertThat(prefix + suffix).isEqualTo(prompt);
+        }
+        
+        @Test
+        @DisplayName("should keep prefix identical across follow-up queries")
+        void shouldKeepPrefixIdentical_acrossFollowUpQueries() {
+            // Arrange
+            String first = PREFIX + "### Current Query ###\nWhy did it fail?\n";
+            String second = PREFIX + "### Recent Conversation ###\nUser: Why did it fail?\n\n"
+                + "### Current Query ###\nHow do I fix it?\n";
+            
+            // Act & Assert
+            assertThat(PromptLayout.stablePrefix(second)).isEqualTo(PromptLayout.stablePrefix(first));
+        }
+        
+        @Test
+        @DisplayName("should have no prefix when prompt has no volatile section")
+        void shouldHaveNoPrefix_whenPromptHasNoVolatileSection() {
+            // Arrange
+            String prompt = "Hello";
+            
+            // Act & Assert
+            assertThat(PromptLayout.stablePrefixEnd(prompt)).isZero();
+            assertThat(PromptLayout.stablePrefix(prompt)).isEmpty();
+            assertThat(PromptLayout.volatileSuffix(prompt)).isEqualTo(prompt);
+        }
+        
+        @Test
+        @DisplayName("should ignore section names inside text")
+        void shouldIgnoreSectionNames_insideText() {
+            // Arrange
+            String prompt = "### Instruction ###\nEnd with ### Analysis Request ### please.\n\n"
+                + "### Analysis Request ###\nExplain.\n";
+            
+            // Act
+            int end = PromptLayout.stablePrefixEnd(prompt);
+            
+            // Assert
+            assertThat(prompt.substring(end)).isEqualTo("### Analysis Request ###\nExplain.\n");
+        }
+        
+        @Test
+        @DisplayName("should throw exception when prompt is null")
+        void shouldThrowException_whenPromptIsNull() {
+            // Act & Assert
+            assertThatThrownBy(() -> PromptLayout.stablePrefix(null))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("Argument for @NotNull parameter 'prompt'");
+        }
+    }
+}
@@ -0,0 +1,154 @@
+package com.trace.ai.services;
+
+import com.trace.ai.configuration.AIServiceType;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@DisplayName("AI Response Cache Unit Tests")
+class AIResponseCacheUnitTest {
+    
+    private static final String MODEL = "gpt-4o-mini";
+    private static final String PROMPT = "## Test Failure\nScenario: Login\nError: Element not found: #login";
+    private static final String RESPONSE = "The login button selector changed.";
+    
+    @Nested
+    @DisplayName("Constructor Validation")
+    class ConstructorValidation {
+        
+        @Test
+        @DisplayName("should throw exception when max entries is not positive")
+        void shouldThrowException_whenMaxEntriesIsNotPositive() {
+            // Act & Assert
+            assertThatThrownBy(() -> new AIResponseCache(0, Duration.ofMinutes(1)))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("Max entries must be positive");
+        }
+        
+        @Test
+        @DisplayName("should throw exception when ttl is zero")
+        void shouldThrowException_whenTtlIsZero() {
+            // Act & Assert
+            assertThatThrownBy(() -> new AIResponseCache(10, Duration.ZERO))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("TTL must be positive");
+        }
+    }
+    
+    @Nested
+    @DisplayName("In-Memory Caching")
+    class InMemoryCaching {
+        
+        @Test
+        @DisplayName("should return cached response for identical prompt")
+        void shouldReturnCachedResponse_forIdenticalPrompt() {
+            // Arrange
+            AIResponseCache cache = new AIResponseCache(10, Duration.ofMinutes(5));
+            cache.put(AIServiceType.OPENAI, MODEL, PROMPT, RESPONSE);
+            
+            // Act & Assert
+            assertThat(cache.get(AIServiceType.OPENAI, MODEL, PROMPT)).isEqualTo(RESPONSE);
+        }
+        
+        @Test
+        @DisplayName("should treat whitespace variants as the same prompt")
+        void shouldTreatWhitespaceVariantsAsTheSamePrompt() {
+            // Arrange
+            AIResponseCache cache = new AIResponseCache(10, Duration.ofMinutes(5));
+            cache.put(AIServiceType.OPENAI, MODEL, PROMPT, RESPONSE);
+            
+            // Act & Assert
+            assertThat(cache.get(AIServiceType.OPENAI, MODEL, "\n" + PROMPT.replace("\n", "\r\n") + "  ")).isEqualTo(RESPONSE);
+        }
+        
+        @Test
+        @DisplayName("should keep services and models separate")
+        void shouldKeepServicesAndModelsSeparate() {
+            // Arrange
+            AIResponseCache cache = new AIResponseCache(10, Duration.ofMinutes(5));
+            cache.put(AIServiceType.OPENAI, MODEL, PROMPT, RESPONSE);
+            
+            // Act & Assert
+            assertThat(cache.get(AIServiceType.GEMINI, MODEL, PROMPT)).isNull();
+            assertThat(cache.get(AIServiceType.OPENAI, "gpt-4o", PROMPT)).isNull();
+        }
+        
+        @Test
+        @DisplayName("should evict least recently used entry when full")
+        void shouldEvictLeastRecentlyUsedEntry_whenFull() {
+            // Arrange
+            AIResponseCache cache = new AIResponseCache(2, Duration.ofMinutes(5));
+            cache.put(AIServiceType.OPENAI, MODEL, "first", RESPONSE);
+            cache.put(AIServiceType.OPENAI, MODEL, "second", RESPONSE);
+            cache.get(AIServiceType.OPENAI, MODEL, "first");
+            
+            // Act
+            cache.put(AIServiceType.OPENAI, MODEL, "third", RESPONSE);
+            
+            // Assert
+            assertThat(cache.size()).isEqualTo(2);
+            assertThat(cache.get(AIServiceType.OPENAI, MODEL, "first")).isNotNull();
+            assertThat(cache.get(AIServiceType.OPENAI, MODEL, "second")).isNull();
+        }
+        
+        @Test
+        @DisplayName("should expire entries after ttl")
+        void shouldExpireEntriesAfterTtl() {
+            // Arrange
+            AtomicLong now = new AtomicLong(1_000L);
+            AIResponseCache cache = new AIResponseCache(10, Duration.ofSeconds(60), null, now::get);
+            cache.put(AIServiceType.GEMINI, MODEL, PROMPT, RESPONSE);
+            
+            // Act
+            now.addAndGet(60_000L);
+            
+            // Assert
+            assertThat(cache.get(AIServiceType.GEMINI, MODEL, PROMPT)).isNull();
+        }
+    }
+    
+    @Nested
+    @DisplayName("Persistent Store")
+    class PersistentStore {
+        
+        @Test
+        @DisplayName("should restore responses after reopening store")
+        void shouldRestoreResponses_afterReopeningStore(@TempDir Path tempDir) {
+            // Arrange
+            Path storePath = tempDir.resolve("ai-responses.db");
+            AIResponseCache cache = new AIResponseCache(10, Duration.ofMinutes(5), storePath);
+            cache.put(AIServiceType.OPENAI, MODEL, PROMPT, RESPONSE);
+            cache.close();
+            
+            // Act
+            AIResponseCache reopened = new AIResponseCache(10, Duration.ofMinutes(5), storePath);
+            
+            // Assert
+            assertThat(reopened.isPersistent()).isTrue();
+            assertThat(reopened.get(AIServiceType.OPENAI, MODEL, PROMPT)).isEqualTo(RESPONSE);
+            reopened.close();
+        }
+        
+        @Test
+        @DisplayName("should fall back to memory when store cannot be opened")
+        void shouldFallBackToMemory_whenStoreCannotBeOpened(@TempDir Path tempDir) {
+            // Arrange - a directory cannot be opened as a database file
+            AIResponseCache cache = new AIResponseCache(10, Duration.ofMinutes(5), tempDir);
+            
+            // Act
+            cache.put(AIServiceType.OPENAI, MODEL, PROMPT, RESPONSE);
+            
+            // Assert
+            assertThat(cache.isPersistent()).isFalse();
+            assertThat(cache.get(AIServiceType.OPENAI, MODEL, PROMPT)).isEqualTo(RESPONSE);
+        }
+    }
+}
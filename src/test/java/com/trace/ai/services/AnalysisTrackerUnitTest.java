@@ -0,0 +1,174 @@
+package com.trace.ai.services;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@DisplayName("Analysis Tracker Unit Tests")
+class AnalysisTrackerUnitTest {
+    
+    private AnalysisTracker tracker;
+    
+    @BeforeEach
+    void setUp() {
+        tracker = new AnalysisTracker();
+    }
+    
+    @Nested
+    @DisplayName("Cancellation")
+    class Cancellation {
+        
+        @Test
+        @DisplayName("should cancel previous analysis when superseded")
+        void shouldCancelPreviousAnalysis_whenSuperseded() {
+            // Arrange
+            AnalysisHandle first = tracker.startAnalysis("test_run_1", true);
+            CompletableFuture<String> request = first.track(new CompletableFuture<>());
+            
+            // Act
+            AnalysisHandle second = tracker.startAnalysis("test_run_1", true);
+            
+            // Assert
+            assertThat(first.isCancelled()).isTrue();
+            assertThat(request).isCancelled();
+            assertThat(second.isCancelled()).isFalse();
+            assertThat(tracker.getActiveCount()).isEqualTo(1);
+        }
+        
+        @Test
+        @DisplayName("should keep previous analysis when not superseding")
+        void shouldKeepPreviousAnalysis_whenNotSuperseding() {
+            // Arrange
+            AnalysisHandle first = tracker.startAnalysis("test_run_1", true);
+            
+            // Act
+            tracker.startAnalysis("test_run_1", false);
+            
+            // Assert
+            assertThat(first.isCancelled()).isFalse();
+            assertThat(tracker.getActiveCount()).isEqualTo(2);
+        }
+        
+        @Test
+        @DisplayName("should cancel every analysis when all are cancelled")
+        void shouldCancelEveryAnalysis_whenAllAreCancelled() {
+            // Arrange
+            AnalysisHandle first = tracker.startAnalysis("test_run_1", false);
+            AnalysisHandle second = tracker.startAnalysis(null, false);
+            
+            // Act
+            int cancelled = tracker.cancelAll();
+            
+            // Assert
+            assertThat(cancelled).isEqualTo(2);
+            assertThat(first.isCancelled()).isTrue();
+            assertThat(second.isCancelled()).isTrue();
+            assertThat(tracker.getActiveCount()).isZero();
+        }
+        
+        @Test
+        @DisplayName("should cancel only analyses of the given test run")
+        void shouldCancelOnlyAnalysesOfTheGivenTestRun() {
+            // Arrange
+            AnalysisHandle oldRun = tracker.startAnalysis("test_run_1", false);
+            AnalysisHandle newRun = tracker.startAnalysis("test_run_2", false);
+            
+            // Act
+            int cancelled = tracker.cancelTestRun("test_run_1");
+            
+            // Assert
+            assertThat(cancelled).isEqualTo(1);
+            assertThat(oldRun.isCancelled()).isTrue();
+            assertThat(newRun.isCancelled()).isFalse();
+        }
+        
+        @Test
+        @DisplayName("should cancel stage tracked after cancellation")
+        void shouldCancelStageTracked_afterCancellation() {
+            // Arrange
+            AnalysisHandle handle = tracker.startAnalysis("test_run_1", false);
+            handle.cancel();
+            
+            // Act
+            CompletableFuture<String> late = handle.track(new CompletableFuture<>());
+            
+            // Assert
+            assertThat(late).isCancelled();
+        }
+        
+        @Test
+        @DisplayName("should run cancel listeners once")
+        void shouldRunCancelListenersOnce() {
+            // Arrange
+            AnalysisHandle handle = tracker.startAnalysis("test_run_1", false);
+            AtomicInteger calls = new AtomicInteger();
+            handle.onCancel(calls::incrementAndGet);
+            
+            // Act
+            boolean firstCancel = handle.cancel();
+            boolean secondCancel = handle.cancel();
+            handle.onCancel(calls::incrementAndGet);
+            
+            // Assert
+            assertThat(firstCancel).isTrue();
+            assertThat(secondCancel).isFalse();
+            assertThat(calls).hasValue(2);
+        }
+        
+        @Test
+        @DisplayName("should throw cancellation exception when handle is cancelled")
+        void shouldThrowCancellationException_whenHandleIsCancelled() {
+            // Arrange
+            AnalysisHandle handle = tracker.startAnalysis("test_run_1", false);
+            handle.cancel();
+            
+            // Act & Assert
+            assertThatThrownBy(() -> AnalysisHandle.throwIfCancelled(handle))
+                .isInstanceOf(CancellationException.class)
+                .hasMessage("AI analysis was cancelled");
+        }
+    }
+    
+    @Nested
+    @DisplayName("Completion")
+    class Completion {
+        
+        @Test
+        @DisplayName("should release handle when result completes")
+        void shouldReleaseHandle_whenResultCompletes() {
+            // Arrange
+            AnalysisHandle handle = tracker.startAnalysis("test_run_1", false);
+            CompletableFuture<String> result = handle.bind(new CompletableFuture<>());
+            
+            // Act
+            result.complete("analysis");
+            
+            // Assert
+            assertThat(tracker.getActiveCount()).isZero();
+            assertThat(tracker.cancelAll()).isZero();
+            assertThat(handle.isCancelled()).isFalse();
+        }
+        
+        @Test
+        @DisplayName("should cancel bound result when handle is cancelled")
+        void shouldCancelBoundResult_whenHandleIsCancelled() {
+            // Arrange
+            AnalysisHandle handle = tracker.startAnalysis("test_run_1", false);
+            CompletableFuture<String> result = handle.bind(new CompletableFuture<>());
+            
+            // Act
+            tracker.cancelAll();
+            
+            // Assert
+            assertThat(result).isCancelled();
+        }
+    }
+}
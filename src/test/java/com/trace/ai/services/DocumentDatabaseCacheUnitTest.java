@@ -0,0 +1,183 @@
+package com.trace.ai.services;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@DisplayName("Document Database Cache Unit Tests")
+class DocumentDatabaseCacheUnitTest {
+    
+    private static final byte[] DATABASE_V1 = "database version one".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] DATABASE_V2 = "database version two".getBytes(StandardCharsets.UTF_8);
+    
+    private static DocumentDatabaseCache.ResourceOpener resourceOf(byte[] content) {
+        return () -> new ByteArrayInputStream(content);
+    }
+    
+    private static long countCachedFiles(Path directory) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.count();
+        }
+    }
+    
+    @Nested
+    @DisplayName("Extraction")
+    class Extraction {
+        
+        @TempDir
+        Path cacheDirectory;
+        
+        @Test
+        @DisplayName("should extract to versioned file")
+        void shouldExtractToVersionedFile() throws IOException {
+            // Arrange
+            DocumentDatabaseCache cache = new DocumentDatabaseCache(cacheDirectory);
+            
+            // Act
+            Path extracted = cache.extract(resourceOf(DATABASE_V1), null, file -> { });
+            
+            // Assert
+            String checksum = DocumentDatabaseCache.computeChecksum(resourceOf(DATABASE_V1));
+            assertThat(extracted).isEqualTo(cache.getCachedFile(checksum));
+            assertThat(Files.readAllBytes(extracted)).isEqualTo(DATABASE_V1);
+            assertThat(countCachedFiles(cacheDirectory)).isEqualTo(1);
+        }
+        
+        @Test
+        @DisplayName("should reuse extracted file when checksum is unchanged")
+        void shouldReuseExtractedFile_whenChecksumIsUnchanged() throws IOException {
+            // Arrange
+            DocumentDatabaseCache cache = new DocumentDatabaseCache(cacheDirectory);
+            String checksum = DocumentDatabaseCache.computeChecksum(resourceOf(DATABASE_V1));
+            AtomicInteger opens = new AtomicInteger();
+            DocumentDatabaseCache.ResourceOpener countingResource = () -> {
+                opens.incrementAndGet();
+                return new ByteArrayInputStream(DATABASE_V1);
+            };
+            Path first = cache.extract(countingResource, checksum, file -> { });
+            
+            // Act
+            Path second = cache.extract(countingResource, checksum, file -> { });
+            
+            // Assert
+            assertThat(second).isEqualTo(first);
+            assertThat(opens.get()).isEqualTo(1);
+        }
+        
+        @Test
+        @DisplayName("should replace outdated version when checksum changes")
+        void shouldReplaceOutdatedVersion_whenChecksumChanges() throws IOException {
+            // Arrange
+            DocumentDatabaseCache cache = new DocumentDatabaseCache(cacheDirectory);
+            Path outdated = cache.extract(resourceOf(DATABASE_V1), null, file -> { });
+            
+            // Act
+            Path current = cache.extract(resourceOf(DATABASE_V2), null, file -> { });
+            
+            // Assert
+            assertThat(current).isNotEqualTo(outdated);
+            assertThat(outdated).doesNotExist();
+            assertThat(Files.readAllBytes(current)).isEqualTo(DATABASE_V2);
+        }
+        
+        @Test
+        @DisplayName("should apply preparer before publishing file")
+        void shouldApplyPreparerBeforePublishingFile() throws IOException {
+            // Arrange
+            DocumentDatabaseCache cache = new DocumentDatabaseCache(cacheDirectory);
+            
+            // Act
+            Path extracted = cache.extract(resourceOf(DATABASE_V1), null,
+                file -> Files.writeString(file, "migrated"));
+            
+            // Assert
+            assertThat(extracted).hasContent("migrated");
+        }
+        
+        @Test
+        @DisplayName("should extract again after invalidation")
+        void shouldExtractAgain_afterInvalidation() throws IOException {
+            // Arrange
+            DocumentDatabaseCache cache = new DocumentDatabaseCache(cacheDirectory);
+            Path extracted = cache.extract(resourceOf(DATABASE_V1), null, file -> { });
+            Files.writeString(extracted, "corrupted");
+            
+            // Act
+            cache.invalidate(extracted);
+            Path reextracted = cache.extract(resourceOf(DATABASE_V1), null, file -> { });
+            
+            // Assert
+            assertThat(Files.readAllBytes(reextracted)).isEqualTo(DATABASE_V1);
+        }
+    }
+    
+    @Nested
+    @DisplayName("Failures")
+    class Failures {
+        
+        @TempDir
+        Path cacheDirectory;
+        
+        @Test
+        @DisplayName("should reject resource that does not match checksum")
+        void shouldRejectResourceThatDoesNotMatchChecksum() throws IOException {
+            // Arrange
+            DocumentDatabaseCache cache = new DocumentDatabaseCache(cacheDirectory);
+            String checksum = DocumentDatabaseCache.computeChecksum(resourceOf(DATABASE_V1));
+            
+            // Act & Assert
+            assertThatThrownBy(() -> cache.extract(resourceOf(DATABASE_V2), checksum, file -> { }))
+                .isInstanceOf(IOException.class)
+                .hasMessage("Bundled document database does not match its checksum");
+            assertThat(countCachedFiles(cacheDirectory)).isZero();
+        }
+        
+        @Test
+        @DisplayName("should discard file when preparer fails")
+        void shouldDiscardFile_whenPreparerFails() throws IOException {
+            // Arrange
+            DocumentDatabaseCache cache = new DocumentDatabaseCache(cacheDirectory);
+            
+            // Act & Assert
+            assertThatThrownBy(() -> cache.extract(resourceOf(DATABASE_V1), null, file -> {
+                    throw new IOException("migration failed");
+                }))
+                .isInstanceOf(IOException.class)
+                .hasMessage("migration failed");
+            assertThat(countCachedFiles(cacheDirectory)).isZero();
+        }
+        
+        @Test
+        @DisplayName("should throw exception when resource is missing")
+        void shouldThrowException_whenResourceIsMissing() {
+            // Arrange
+            DocumentDatabaseCache cache = new DocumentDatabaseCache(cacheDirectory);
+            
+            // Act & Assert
+            assertThatThrownBy(() -> cache.extract(() -> null, null, file -> { }))
+                .isInstanceOf(IOException.class)
+                .hasMessage("Database resource not found");
+        }
+        
+        @Test
+        @DisplayName("should throw exception when cache directory is null")
+        void shouldThrowException_whenCacheDirectoryIsNull() {
+            // Act & Assert
+            assertThatThrownBy(() -> new DocumentDatabaseCache(null))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("Argument for @NotNull parameter 'cacheDirectory'");
+        }
+    }
+}
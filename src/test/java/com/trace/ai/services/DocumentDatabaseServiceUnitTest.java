@@ -451,6 +451,37 @@ class DocumentDatabaseServiceUnitTest {
         }
     }
     
+    @Nested
+    @DisplayName("Document Content Hash")
+    class DocumentContentHash {
+        
+        @Test
+        @DisplayName("should produce same hash for same embedding content")
+        void shouldProduceSameHash_forSameEmbeddingContent() {
+            // Arrange - content and tags are not part of the embedding content
+            DocumentEntry entry1 = new DocumentEntry("test", "title", "content 1", "summary", null, null, "tag1");
+            DocumentEntry entry2 = new DocumentEntry("other", "title", "content 2", "summary", null, null, "tag2");
+            
+            // Act & Assert
+            assertThat(entry1.computeContentHash()).isEqualTo(entry2.computeContentHash());
+            assertThat(entry1.computeContentHash()).hasSize(64).matches("[0-9a-f]+");
+        }
+        
+        @Test
+        @DisplayName("should change hash when embedding content changes")
+        void shouldChangeHash_whenEmbeddingContentChanges() {
+            // Arrange
+            DocumentEntry entry = new DocumentEntry("test", "title", "content", "summary", null, null, null);
+            String originalHash = entry.computeContentHash();
+            
+            // Act
+            entry.setRootCauses("new root cause");
+            
+            // Assert
+            assertThat(entry.computeContentHash()).isNotEqualTo(originalHash);
+        }
+    }
+    
     @Nested
     @DisplayName("Embedding Type Enum")
     class EmbeddingTypeEnum {
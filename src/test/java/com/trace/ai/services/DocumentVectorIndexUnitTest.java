@@ -0,0 +1,221 @@
+package com.trace.ai.services;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.within;
+
+@DisplayName("Document Vector Index Unit Tests")
+class DocumentVectorIndexUnitTest {
+    
+    @Nested
+    @DisplayName("Index Construction")
+    class IndexConstruction {
+        
+        @Test
+        @DisplayName("should create empty index when no embeddings are added")
+        void shouldCreateEmptyIndex_whenNoEmbeddingsAreAdded() {
+            // Act
+            DocumentVectorIndex index = DocumentVectorIndex.builder().build();
+            
+            // Assert
+            assertThat(index.size()).isZero();
+            assertThat(index.getDimension()).isZero();
+            assertThat(index.search(new float[]{1.0f}, 3, 0.0)).isEmpty();
+        }
+        
+        @Test
+        @DisplayName("should skip embeddings with mismatched dimensions")
+        void shouldSkipEmbeddingsWithMismatchedDimensions() {
+            // Act
+            DocumentVectorIndex index = DocumentVectorIndex.builder()
+                .add(1L, new float[]{1.0f, 0.0f, 0.0f})
+                .add(2L, new float[]{1.0f, 0.0f})
+                .build();
+            
+            // Assert
+            assertThat(index.size()).isEqualTo(1);
+            assertThat(index.getDimension()).isEqualTo(3);
+        }
+        
+        @Test
+        @DisplayName("should skip zero-norm embeddings")
+        void shouldSkipZeroNormEmbeddings() {
+            // Act
+            DocumentVectorIndex index = DocumentVectorIndex.builder()
+                .add(1L, new float[]{0.0f, 0.0f})
+                .add(2L, new float[]{0.0f, 1.0f})
+                .build();
+            
+            // Assert
+            assertThat(index.size()).isEqualTo(1);
+        }
+        
+        @Test
+        @DisplayName("should grow beyond initial capacity")
+        void shouldGrowBeyondInitialCapacity() {
+            // Arrange
+            DocumentVectorIndex.Builder builder = DocumentVectorIndex.builder();
+            
+            // Act
+            for (int i = 0; i < 500; i++) {
+                builder.add(i, new float[]{i + 1.0f, 1.0f});
+            }
+            
+            // Assert
+            assertThat(builder.build().size()).isEqualTo(500);
+        }
+        
+        @Test
+        @DisplayName("should add encoded embeddings like decoded ones")
+        void shouldAddEncodedEmbeddingsLikeDecodedOnes() {
+            // Arrange
+            float[] first = {3.0f, 4.0f, 0.0f};
+            float[] second = {0.0f, 2.0f, 2.0f};
+            float[] query = {1.0f, 1.0f, 0.0f};
+            
+            // Act
+            DocumentVectorIndex decoded = DocumentVectorIndex.builder().add(1L, first).add(2L, second).build();
+            DocumentVectorIndex encoded = DocumentVectorIndex.builder()
+                .addEncoded(1L, EmbeddingCodec.encode(first, EmbeddingCodec.Encoding.FLOAT32))
+                .addEncoded(2L, EmbeddingCodec.encode(second, EmbeddingCodec.Encoding.FLOAT16))
+                .addEncoded(3L, EmbeddingCodec.encode(new float[]{1.0f, 0.0f}, EmbeddingCodec.Encoding.FLOAT32))
+                .build();
+            
+            // Assert - the mismatched dimension is skipped
+            assertThat(encoded.size()).isEqualTo(2);
+            List<DocumentVectorIndex.ScoredDocument> expected = decoded.search(query, 2, 0.0);
+            List<DocumentVectorIndex.ScoredDocument> actual = encoded.search(query, 2, 0.0);
+            for (int i = 0; i < expected.size(); i++) {
+                assertThat(actual.get(i).getDocumentId()).isEqualTo(expected.get(i).getDocumentId());
+                assertThat(actual.get(i).getSimilarityScore()).isCloseTo(expected.get(i).getSimilarityScore(), within(1e-3));
+            }
+        }
+    }
+    
+    @Nested
+    @DisplayName("Similarity Search")
+    class SimilaritySearch {
+        
+        @Test
+        @DisplayName("should return results ordered by descending similarity")
+        void shouldReturnResultsOrderedByDescendingSimilarity() {
+            // Arrange
+            DocumentVectorIndex index = DocumentVectorIndex.builder()
+                .add(1L, new float[]{0.0f, 1.0f})
+                .add(2L, new float[]{1.0f, 0.0f})
+                .add(3L, new float[]{1.0f, 1.0f})
+                .build();
+            
+            // Act
+            List<DocumentVectorIndex.ScoredDocument> results = index.search(new float[]{2.0f, 0.1f}, 3, 0.0);
+            
+            // Assert
+            assertThat(results).extracting(DocumentVectorIndex.ScoredDocument::getDocumentId)
+                .containsExactly(2L, 3L, 1L);
+        }
+        
+        @Test
+        @DisplayName("should limit results to max results")
+        void shouldLimitResultsToMaxResults() {
+            // Arrange
+            DocumentVectorIndex.Builder builder = DocumentVectorIndex.builder();
+            for (int i = 0; i < 20; i++) {
+                builder.add(i, new float[]{1.0f, i * 0.1f});
+            }
+            DocumentVectorIndex index = builder.build();
+            
+            // Act
+            List<DocumentVectorIndex.ScoredDocument> results = index.search(new float[]{1.0f, 0.0f}, 3, 0.0);
+            
+            // Assert
+            assertThat(results).extracting(DocumentVectorIndex.ScoredDocument::getDocumentId)
+                .containsExactly(0L, 1L, 2L);
+        }
+        
+        @Test
+        @DisplayName("should exclude documents below similarity threshold")
+        void shouldExcludeDocumentsBelowSimilarityThreshold() {
+            // Arrange
+            DocumentVectorIndex index = DocumentVectorIndex.builder()
+                .add(1L, new float[]{1.0f, 0.0f})
+                .add(2L, new float[]{0.0f, 1.0f})
+                .build();
+            
+            // Act
+            List<DocumentVectorIndex.ScoredDocument> results = index.search(new float[]{1.0f, 0.0f}, 5, 0.7);
+            
+            // Assert
+            assertThat(results).hasSize(1);
+            assertThat(results.get(0).getDocumentId()).isEqualTo(1L);
+        }
+        
+        @Test
+        @DisplayName("should match cosine similarity of database service")
+        void shouldMatchCosineSimilarityOfDatabaseService() {
+            // Arrange
+            Random random = new Random(42);
+            float[] document = new float[64];
+            float[] query = new float[64];
+            for (int i = 0; i < 64; i++) {
+                document[i] = random.nextFloat() - 0.5f;
+                query[i] = random.nextFloat() - 0.5f;
+            }
+            DocumentVectorIndex index = DocumentVectorIndex.builder().add(7L, document).build();
+            double expected = new DocumentDatabaseService().calculateCosineSimilarity(query, document);
+            
+            // Act
+            List<DocumentVectorIndex.ScoredDocument> results = index.search(query, 1, -1.0);
+            
+            // Assert
+            assertThat(results).hasSize(1);
+            assertThat(results.get(0).getSimilarityScore()).isCloseTo(expected, within(1e-5));
+        }
+        
+        @Test
+        @DisplayName("should throw exception when query dimension does not match")
+        void shouldThrowException_whenQueryDimensionDoesNotMatch() {
+            // Arrange
+            DocumentVectorIndex index = DocumentVectorIndex.builder()
+                .add(1L, new float[]{1.0f, 0.0f, 0.0f})
+                .build();
+            
+            // Act & Assert
+            assertThatThrownBy(() -> index.search(new float[]{1.0f, 0.0f}, 3, 0.0))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("Embeddings must have same dimensions");
+        }
+        
+        @Test
+        @DisplayName("should throw exception when max results is not positive")
+        void shouldThrowException_whenMaxResultsIsNotPositive() {
+            // Arrange
+            DocumentVectorIndex index = DocumentVectorIndex.builder()
+                .add(1L, new float[]{1.0f, 0.0f, 0.0f})
+                .build();
+            
+            // Act & Assert
+            assertThatThrownBy(() -> index.search(new float[]{1.0f, 0.0f, 0.0f}, 0, 0.0))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("Max results must be positive");
+        }
+        
+        @Test
+        @DisplayName("should return empty results for zero query embedding")
+        void shouldReturnEmptyResults_forZeroQueryEmbedding() {
+            // Arrange
+            DocumentVectorIndex index = DocumentVectorIndex.builder()
+                .add(1L, new float[]{1.0f, 0.0f})
+                .build();
+            
+            // Act & Assert
+            assertThat(index.search(new float[]{0.0f, 0.0f}, 3, 0.0)).isEmpty();
+        }
+    }
+}
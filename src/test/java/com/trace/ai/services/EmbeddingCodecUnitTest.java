@@ -0,0 +1,165 @@
+package com.trace.ai.services;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.within;
+
+@DisplayName("Embedding Codec Unit Tests")
+class EmbeddingCodecUnitTest {
+    
+    private static float[] randomEmbedding(int dimension, long seed) {
+        Random random = new Random(seed);
+        float[] embedding = new float[dimension];
+        for (int i = 0; i < dimension; i++) {
+            embedding[i] = (float) random.nextGaussian() * 0.05f;
+        }
+        return embedding;
+    }
+    
+    @Nested
+    @DisplayName("Round Trip")
+    class RoundTrip {
+        
+        @Test
+        @DisplayName("should round trip float32 exactly")
+        void shouldRoundTripFloat32Exactly() {
+            // Arrange
+            float[] embedding = randomEmbedding(1536, 1);
+            
+            // Act
+            byte[] blob = EmbeddingCodec.encode(embedding, EmbeddingCodec.Encoding.FLOAT32);
+            
+            // Assert
+            assertThat(blob).hasSize(EmbeddingCodec.HEADER_SIZE + 1536 * 4);
+            assertThat(EmbeddingCodec.decode(blob)).containsExactly(embedding);
+        }
+        
+        @Test
+        @DisplayName("should round trip float16 within half precision")
+        void shouldRoundTripFloat16WithinHalfPrecision() {
+            // Arrange
+            float[] embedding = randomEmbedding(3072, 2);
+            
+            // Act
+            byte[] blob = EmbeddingCodec.encode(embedding, EmbeddingCodec.Encoding.FLOAT16);
+            float[] decoded = EmbeddingCodec.decode(blob);
+            
+            // Assert
+            assertThat(blob).hasSize(EmbeddingCodec.HEADER_SIZE + 3072 * 2);
+            for (int i = 0; i < embedding.length; i++) {
+                assertThat(decoded[i]).isCloseTo(embedding[i], within(1e-4f));
+            }
+        }
+        
+        @Test
+        @DisplayName("should round trip int8 within one quantization step")
+        void shouldRoundTripInt8WithinOneQuantizationStep() {
+            // Arrange
+            float[] embedding = randomEmbedding(1536, 3);
+            float scale = EmbeddingCodec.int8Scale(embedding);
+            
+            // Act
+            byte[] blob = EmbeddingCodec.encode(embedding, EmbeddingCodec.Encoding.INT8);
+            float[] decoded = EmbeddingCodec.decode(blob);
+            
+            // Assert
+            assertThat(blob).hasSize(EmbeddingCodec.HEADER_SIZE + 4 + 1536);
+            for (int i = 0; i < embedding.length; i++) {
+                assertThat(decoded[i]).isCloseTo(embedding[i], within(scale));
+            }
+        }
+        
+        @Test
+        @DisplayName("should decode into target array at offset")
+        void shouldDecodeIntoTargetArrayAtOffset() {
+            // Arrange
+            float[] embedding = {1f, 2f, 3f};
+            float[] target = new float[5];
+            
+            // Act
+            int dimension = EmbeddingCodec.decodeInto(
+                EmbeddingCodec.encode(embedding, EmbeddingCodec.Encoding.FLOAT32), target, 2);
+            
+            // Assert
+            assertThat(dimension).isEqualTo(3);
+            assertThat(target).containsExactly(0f, 0f, 1f, 2f, 3f);
+        }
+    }
+    
+    @Nested
+    @DisplayName("Header")
+    class Header {
+        
+        @Test
+        @DisplayName("should store dimension norm and encoding")
+        void shouldStoreDimensionNormAndEncoding() {
+            // Arrange
+            float[] embedding = {3f, 4f};
+            
+            // Act
+            byte[] blob = EmbeddingCodec.encode(embedding, EmbeddingCodec.Encoding.FLOAT16);
+            
+            // Assert
+            assertThat(EmbeddingCodec.getDimension(blob)).isEqualTo(2);
+            assertThat(EmbeddingCodec.getNorm(blob)).isEqualTo(5f);
+            assertThat(EmbeddingCodec.getEncoding(blob)).isEqualTo(EmbeddingCodec.Encoding.FLOAT16);
+            assertThat(EmbeddingCodec.isLegacy(blob)).isFalse();
+        }
+        
+        @Test
+        @DisplayName("should resolve encoding ids")
+        void shouldResolveEncodingIds() {
+            // Act & Assert
+            assertThat(EmbeddingCodec.Encoding.fromId("int8")).isEqualTo(EmbeddingCodec.Encoding.INT8);
+            assertThat(EmbeddingCodec.Encoding.fromId("FLOAT16")).isEqualTo(EmbeddingCodec.Encoding.FLOAT16);
+            assertThat(EmbeddingCodec.Encoding.fromId("unknown")).isEqualTo(EmbeddingCodec.Encoding.FLOAT32);
+        }
+    }
+    
+    @Nested
+    @DisplayName("Legacy Format")
+    class LegacyFormat {
+        
+        @Test
+        @DisplayName("should decode headerless big endian blobs")
+        void shouldDecodeHeaderlessBigEndianBlobs() {
+            // Arrange - the format written before the codec existed
+            float[] embedding = randomEmbedding(8, 4);
+            ByteBuffer buffer = ByteBuffer.allocate(embedding.length * 4);
+            for (float value : embedding) {
+                buffer.putFloat(value);
+            }
+            byte[] blob = buffer.array();
+            
+            // Act & Assert
+            assertThat(EmbeddingCodec.isLegacy(blob)).isTrue();
+            assertThat(EmbeddingCodec.getNorm(blob)).isEqualTo(-1f);
+            assertThat(EmbeddingCodec.decode(blob)).containsExactly(embedding);
+        }
+        
+        @Test
+        @DisplayName("should reject blobs with invalid length")
+        void shouldRejectBlobsWithInvalidLength() {
+            // Act & Assert
+            assertThatThrownBy(() -> EmbeddingCodec.decode(new byte[7]))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("Invalid embedding BLOB of 7 bytes");
+        }
+    }
+    
+    @Test
+    @DisplayName("should throw exception when embedding is empty")
+    void shouldThrowException_whenEmbeddingIsEmpty() {
+        // Act & Assert
+        assertThatThrownBy(() -> EmbeddingCodec.encode(new float[0], EmbeddingCodec.Encoding.FLOAT32))
+            .isInstanceOf(IllegalArgumentException.class)
+            .hasMessage("Embedding cannot be null or empty");
+    }
+}
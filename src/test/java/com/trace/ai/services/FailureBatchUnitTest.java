@@ -0,0 +1,159 @@
+package com.trace.ai.services;
+
+import com.trace.test.models.FailureInfo;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@DisplayName("Failure Batch Unit Tests")
+class FailureBatchUnitTest {
+    
+    private static final String LOGIN_STACK_TRACE = "org.openqa.selenium.TimeoutException: Timed out\n"
+        + "\tat com.example.steps.LoginSteps.dashboardIsShown(LoginSteps.java:42)";
+    private static final String CART_STACK_TRACE = "java.lang.AssertionError: expected\n"
+        + "\tat com.example.steps.CartSteps.totalIs(CartSteps.java:31)";
+    
+    private static FailureInfo failure(String scenarioName, String stepText, String errorMessage, String stackTrace) {
+        return new FailureInfo.Builder()
+            .withScenarioName(scenarioName)
+            .withFailedStepText(stepText)
+            .withErrorMessage(errorMessage)
+            .withStackTrace(stackTrace)
+            .build();
+    }
+    
+    private static FailureInfo loginFailure(String scenarioName) {
+        return failure(scenarioName, "Then the dashboard is shown", "Timed out after 30000 ms", LOGIN_STACK_TRACE);
+    }
+    
+    @Nested
+    @DisplayName("Clustering")
+    class Clustering {
+        
+        @Test
+        @DisplayName("should group failures with same stack trace at same step")
+        void shouldGroupFailures_withSameStackTraceAtSameStep() {
+            // Arrange
+            FailureBatch batch = new FailureBatch();
+            FailureInfo first = loginFailure("Admin logs in");
+            FailureInfo second = loginFailure("Guest logs in");
+            FailureInfo third = failure("Cart total", "Then the total is \"12.50\"", "expected:<12.50>", CART_STACK_TRACE);
+            
+            // Act
+            batch.add(first);
+            batch.add(third);
+            batch.add(second);
+            List<FailureCluster> clusters = batch.getClusters();
+            
+            // Assert
+            assertThat(clusters).hasSize(2);
+            assertThat(clusters.get(0).getFailures()).containsExactly(first, second);
+            assertThat(clusters.get(0).getRepresentative()).isSameAs(first);
+            assertThat(clusters.get(1).getFailures()).containsExactly(third);
+            assertThat(batch.size()).isEqualTo(3);
+        }
+        
+        @Test
+        @DisplayName("should order clusters by size and keep collection order for ties")
+        void shouldOrderClustersBySize_andKeepCollectionOrderForTies() {
+            // Arrange
+            FailureBatch batch = new FailureBatch();
+            FailureInfo cart = failure("Cart total", "Then the total is \"12.50\"", "expected", CART_STACK_TRACE);
+            FailureInfo profile = failure("Profile", "Then the profile is shown", "Timed out", LOGIN_STACK_TRACE);
+            FailureInfo firstLogin = loginFailure("Admin logs in");
+            FailureInfo secondLogin = loginFailure("Guest logs in");
+            
+            // Act
+            batch.add(cart);
+            batch.add(profile);
+            batch.add(firstLogin);
+            batch.add(secondLogin);
+            List<FailureCluster> clusters = batch.getClusters();
+            
+            // Assert
+            assertThat(clusters).extracting(FailureCluster::getRepresentative)
+                .containsExactly(firstLogin, cart, profile);
+        }
+        
+        @Test
+        @DisplayName("should report whether cluster contains failure")
+        void shouldReportWhetherClusterContainsFailure() {
+            // Arrange
+            FailureBatch batch = new FailureBatch();
+            FailureInfo collected = loginFailure("Admin logs in");
+            batch.add(collected);
+            
+            // Act
+            FailureCluster cluster = batch.getClusters().get(0);
+            
+            // Assert
+            assertThat(cluster.contains(collected)).isTrue();
+            assertThat(cluster.contains(loginFailure("Admin logs in"))).isFalse();
+        }
+        
+        @Test
+        @DisplayName("should throw exception when failure is null")
+        void shouldThrowException_whenFailureIsNull() {
+            // Arrange
+            FailureBatch batch = new FailureBatch();
+            
+            // Act & Assert
+            assertThatThrownBy(() -> batch.add(null))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("Argument for @NotNull parameter 'failureInfo'");
+        }
+    }
+    
+    @Nested
+    @DisplayName("Capacity")
+    class Capacity {
+        
+        @Test
+        @DisplayName("should count failures beyond limit without keeping them")
+        void shouldCountFailuresBeyondLimit_withoutKeepingThem() {
+            // Arrange
+            FailureBatch batch = new FailureBatch(2);
+            
+            // Act
+            batch.add(loginFailure("First"));
+            batch.add(loginFailure("Second"));
+            batch.add(loginFailure("Third"));
+            
+            // Assert
+            assertThat(batch.size()).isEqualTo(2);
+            assertThat(batch.getDroppedCount()).isEqualTo(1);
+            assertThat(batch.getClusters().get(0).size()).isEqualTo(2);
+        }
+        
+        @Test
+        @DisplayName("should remove all failures on clear")
+        void shouldRemoveAllFailures_onClear() {
+            // Arrange
+            FailureBatch batch = new FailureBatch(1);
+            batch.add(loginFailure("First"));
+            batch.add(loginFailure("Second"));
+            
+            // Act
+            batch.clear();
+            
+            // Assert
+            assertThat(batch.size()).isZero();
+            assertThat(batch.getDroppedCount()).isZero();
+            assertThat(batch.getClusters()).isEmpty();
+        }
+        
+        @Test
+        @DisplayName("should throw exception when limit is not positive")
+        void shouldThrowException_whenLimitIsNotPositive() {
+            // Act & Assert
+            assertThatThrownBy(() -> new FailureBatch(0))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("Max failures must be positive");
+        }
+    }
+}
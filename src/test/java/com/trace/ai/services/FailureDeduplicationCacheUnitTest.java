@@ -0,0 +1,149 @@
+package com.trace.ai.services;
+
+import com.trace.ai.configuration.AIServiceType;
+import com.trace.ai.models.AIAnalysisResult;
+import com.trace.test.models.FailureInfo;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@DisplayName("Failure Deduplication Cache Unit Tests")
+class FailureDeduplicationCacheUnitTest {
+    
+    private static final AIAnalysisResult RESULT = new AIAnalysisResult(
+        "The dashboard request timed out.", AIServiceType.OPENAI, "gpt-4o-mini", 1_000L, 1_200L);
+    
+    private final AtomicLong now = new AtomicLong(1_000L);
+    private FailureDeduplicationCache cache;
+    
+    @BeforeEach
+    void setUp() {
+        cache = new FailureDeduplicationCache(2, Duration.ofMinutes(10), 0.95, now::get);
+    }
+    
+    private static FailureFingerprint fingerprint(String exceptionType, String method) {
+        return FailureFingerprint.of(new FailureInfo.Builder()
+            .withScenarioName("User logs in")
+            .withFailedStepText("Then the dashboard is shown")
+            .withErrorMessage("Timed out")
+            .withStackTrace(exceptionType + ": Timed out\n\tat com.example.steps.LoginSteps." + method + "(LoginSteps.java:42)")
+            .build());
+    }
+    
+    @Nested
+    @DisplayName("Lookup")
+    class Lookup {
+        
+        @Test
+        @DisplayName("should find analysis with identical signature")
+        void shouldFindAnalysis_withIdenticalSignature() {
+            // Arrange
+            FailureFingerprint fingerprint = fingerprint("java.lang.AssertionError", "dashboardIsShown");
+            cache.put(fingerprint, null, AnalysisMode.FULL, RESULT);
+            
+            // Act & Assert
+            assertThat(cache.findExact(fingerprint, AnalysisMode.FULL)).isSameAs(RESULT);
+            assertThat(cache.findExact(fingerprint, AnalysisMode.OVERVIEW)).isNull();
+        }
+        
+        @Test
+        @DisplayName("should find analysis of similar failure with same exception type")
+        void shouldFindAnalysisOfSimilarFailure_withSameExceptionType() {
+            // Arrange
+            cache.put(fingerprint("java.lang.AssertionError", "dashboardIsShown"),
+                new float[]{1.0f, 0.0f, 0.1f}, AnalysisMode.FULL, RESULT);
+            
+            // Act
+            AIAnalysisResult similar = cache.findSimilar(fingerprint("java.lang.AssertionError", "menuIsShown"),
+                new float[]{1.0f, 0.02f, 0.1f}, AnalysisMode.FULL);
+            AIAnalysisResult otherType = cache.findSimilar(fingerprint("java.lang.IllegalStateException", "menuIsShown"),
+                new float[]{1.0f, 0.02f, 0.1f}, AnalysisMode.FULL);
+            
+            // Assert
+            assertThat(similar).isSameAs(RESULT);
+            assertThat(otherType).isNull();
+        }
+        
+        @Test
+        @DisplayName("should not find analysis below similarity threshold")
+        void shouldNotFindAnalysis_belowSimilarityThreshold() {
+            // Arrange
+            cache.put(fingerprint("java.lang.AssertionError", "dashboardIsShown"),
+                new float[]{1.0f, 0.0f, 0.0f}, AnalysisMode.FULL, RESULT);
+            
+            // Act
+            AIAnalysisResult similar = cache.findSimilar(fingerprint("java.lang.AssertionError", "menuIsShown"),
+                new float[]{0.5f, 0.5f, 0.5f}, AnalysisMode.FULL);
+            
+            // Assert
+            assertThat(similar).isNull();
+        }
+        
+        @Test
+        @DisplayName("should ignore embeddings of other dimensions")
+        void shouldIgnoreEmbeddingsOfOtherDimensions() {
+            // Arrange
+            cache.put(fingerprint("java.lang.AssertionError", "dashboardIsShown"),
+                new float[]{1.0f, 0.0f}, AnalysisMode.FULL, RESULT);
+            
+            // Act & Assert
+            assertThat(cache.findSimilar(fingerprint("java.lang.AssertionError", "menuIsShown"),
+                new float[]{1.0f, 0.0f, 0.0f}, AnalysisMode.FULL)).isNull();
+        }
+    }
+    
+    @Nested
+    @DisplayName("Eviction")
+    class Eviction {
+        
+        @Test
+        @DisplayName("should expire entries after ttl")
+        void shouldExpireEntriesAfterTtl() {
+            // Arrange
+            FailureFingerprint fingerprint = fingerprint("java.lang.AssertionError", "dashboardIsShown");
+            cache.put(fingerprint, null, AnalysisMode.FULL, RESULT);
+            
+            // Act
+            now.addAndGet(Duration.ofMinutes(10).toMillis());
+            
+            // Assert
+            assertThat(cache.findExact(fingerprint, AnalysisMode.FULL)).isNull();
+            assertThat(cache.size()).isZero();
+        }
+        
+        @Test
+        @DisplayName("should evict least recently used entry when full")
+        void shouldEvictLeastRecentlyUsedEntry_whenFull() {
+            // Arrange
+            FailureFingerprint first = fingerprint("java.lang.AssertionError", "first");
+            FailureFingerprint second = fingerprint("java.lang.AssertionError", "second");
+            cache.put(first, null, AnalysisMode.FULL, RESULT);
+            cache.put(second, null, AnalysisMode.FULL, RESULT);
+            cache.findExact(first, AnalysisMode.FULL);
+            
+            // Act
+            cache.put(fingerprint("java.lang.AssertionError", "third"), null, AnalysisMode.FULL, RESULT);
+            
+            // Assert
+            assertThat(cache.size()).isEqualTo(2);
+            assertThat(cache.findExact(first, AnalysisMode.FULL)).isNotNull();
+            assertThat(cache.findExact(second, AnalysisMode.FULL)).isNull();
+        }
+        
+        @Test
+        @DisplayName("should throw exception when similarity threshold is out of range")
+        void shouldThrowException_whenSimilarityThresholdIsOutOfRange() {
+            // Act & Assert
+            assertThatThrownBy(() -> new FailureDeduplicationCache(10, Duration.ofMinutes(1), 1.5, now::get))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("Similarity threshold must be in (0, 1]");
+        }
+    }
+}
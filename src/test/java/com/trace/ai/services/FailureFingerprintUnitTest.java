@@ -0,0 +1,163 @@
+package com.trace.ai.services;
+
+import com.trace.test.models.FailureInfo;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@DisplayName("Failure Fingerprint Unit Tests")
+class FailureFingerprintUnitTest {
+    
+    private static FailureInfo failure(String errorMessage, String stackTrace) {
+        return new FailureInfo.Builder()
+            .withScenarioName("User logs in")
+            .withFailedStepText("Then the dashboard is shown")
+            .withErrorMessage(errorMessage)
+            .withStackTrace(stackTrace)
+            .build();
+    }
+    
+    @Nested
+    @DisplayName("Message Masking")
+    class MessageMasking {
+        
+        @Test
+        @DisplayName("should mask values that change between runs")
+        void shouldMaskValuesThatChangeBetweenRuns() {
+            // Act
+            String masked = FailureFingerprint.normalizeMessage(
+                "Order 4711 for 3f2504e0-4f89-11d3-9a0c-0305e82c3301 failed at 2024-05-01T10:15:30.123Z on localhost:8080 (Session@1a2b3c4d)");
+            
+            // Assert
+            assertThat(masked).isEqualTo("Order <n> for <uuid> failed at <time> on localhost:<n> (Session<hex>)");
+        }
+        
+        @Test
+        @DisplayName("should return empty text for null message")
+        void shouldReturnEmptyText_forNullMessage() {
+            // Act & Assert
+            assertThat(FailureFingerprint.normalizeMessage(null)).isEmpty();
+        }
+    }
+    
+    @Nested
+    @DisplayName("Signature")
+    class Signature {
+        
+        @Test
+        @DisplayName("should match failures that differ only in volatile values")
+        void shouldMatchFailures_thatDifferOnlyInVolatileValues() {
+            // Arrange
+            FailureInfo first = failure("Timed out after 30012 ms waiting for port 51234",
+                "org.openqa.selenium.TimeoutException: Timed out after 30012 ms\n"
+                    + "\tat com.example.steps.LoginSteps.dashboardIsShown(LoginSteps.java:42)\n"
+                    + "\tat com.example.steps.LoginSteps$$Lambda$512/0x0000000800c0b000.run(Unknown Source)");
+            FailureInfo second = failure("Timed out after 30457 ms waiting for port 49152",
+                "org.openqa.selenium.TimeoutException: Timed out after 30457 ms\n"
+                    + "\tat com.example.steps.LoginSteps.dashboardIsShown(LoginSteps.java:44)\n"
+                    + "\tat com.example.steps.LoginSteps$$Lambda$498/0x0000000800c0a000.run(Unknown Source)");
+            
+            // Act
+            FailureFingerprint firstFingerprint = FailureFingerprint.of(first);
+            FailureFingerprint secondFingerprint = FailureFingerprint.of(second);
+            
+            // Assert
+            assertThat(firstFingerprint.getSignature()).isEqualTo(secondFingerprint.getSignature());
+            assertThat(firstFingerprint.getExceptionType()).isEqualTo("org.openqa.selenium.TimeoutException");
+            assertThat(firstFingerprint.getText())
+                .isEqualTo("Then the dashboard is shown Timed out after <n> ms waiting for port <n>");
+        }
+        
+        @Test
+        @DisplayName("should differ when failing method differs")
+        void shouldDiffer_whenFailingMethodDiffers() {
+            // Arrange
+            FailureInfo first = failure("expected true",
+                "java.lang.AssertionError: expected true\n\tat com.example.steps.LoginSteps.dashboardIsShown(LoginSteps.java:42)");
+            FailureInfo second = failure("expected true",
+                "java.lang.AssertionError: expected true\n\tat com.example.steps.LoginSteps.menuIsShown(LoginSteps.java:42)");
+            
+            // Act & Assert
+            assertThat(FailureFingerprint.of(first).getSignature())
+                .isNotEqualTo(FailureFingerprint.of(second).getSignature());
+        }
+        
+        @Test
+        @DisplayName("should differ when asserted values differ")
+        void shouldDiffer_whenAssertedValuesDiffer() {
+            // Arrange
+            String frame = "\n\tat com.example.steps.ApiSteps.statusIs(ApiSteps.java:42)";
+            FailureInfo first = failure("expected 200 but was 500", "java.lang.AssertionError: expected 200 but was 500" + frame);
+            FailureInfo second = failure("expected 200 but was 404", "java.lang.AssertionError: expected 200 but was 404" + frame);
+            
+            // Act & Assert
+            assertThat(FailureFingerprint.of(first).getSignature())
+                .isNotEqualTo(FailureFingerprint.of(second).getSignature());
+            assertThat(FailureFingerprint.of(first).getText()).isEqualTo(FailureFingerprint.of(second).getText());
+        }
+        
+        @Test
+        @DisplayName("should throw exception when failure info is null")
+        void shouldThrowException_whenFailureInfoIsNull() {
+            // Act & Assert
+            assertThatThrownBy(() -> FailureFingerprint.of(null))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("Argument for @NotNull parameter 'failureInfo'");
+        }
+    }
+    
+    @Nested
+    @DisplayName("Cluster Key")
+    class ClusterKey {
+        
+        @Test
+        @DisplayName("should match failures at same step with different messages and arguments")
+        void shouldMatchFailures_atSameStepWithDifferentMessagesAndArguments() {
+            // Arrange
+            String stackTrace = "java.lang.AssertionError: expected\n"
+                + "\tat com.example.steps.CartSteps.totalIs(CartSteps.java:31)";
+            FailureInfo first = new FailureInfo.Builder()
+                .withScenarioName("Cart total for books")
+                .withFailedStepText("Then the total is \"12.50\" for user 'alice'")
+                .withErrorMessage("expected:<12.50> but was:<0.00>")
+                .withStackTrace(stackTrace)
+                .build();
+            FailureInfo second = new FailureInfo.Builder()
+                .withScenarioName("Cart total for games")
+                .withFailedStepText("Then the total is \"59.99\" for user 'bob'")
+                .withErrorMessage("expected:<59.99> but was:<null>")
+                .withStackTrace(stackTrace)
+                .build();
+            
+            // Act
+            FailureFingerprint firstFingerprint = FailureFingerprint.of(first);
+            FailureFingerprint secondFingerprint = FailureFingerprint.of(second);
+            
+            // Assert
+            assertThat(firstFingerprint.getClusterKey()).isEqualTo(secondFingerprint.getClusterKey());
+            assertThat(firstFingerprint.getSignature()).isNotEqualTo(secondFingerprint.getSignature());
+        }
+        
+        @Test
+        @DisplayName("should differ when failed step differs")
+        void shouldDiffer_whenFailedStepDiffers() {
+            // Arrange
+            String stackTrace = "java.lang.AssertionError: expected true\n"
+                + "\tat com.example.steps.LoginSteps.dashboardIsShown(LoginSteps.java:42)";
+            FailureInfo first = failure("expected true", stackTrace);
+            FailureInfo second = new FailureInfo.Builder()
+                .withScenarioName("User logs in")
+                .withFailedStepText("Then the profile is shown")
+                .withErrorMessage("expected true")
+                .withStackTrace(stackTrace)
+                .build();
+            
+            // Act & Assert
+            assertThat(FailureFingerprint.of(first).getClusterKey())
+                .isNotEqualTo(FailureFingerprint.of(second).getClusterKey());
+        }
+    }
+}
@@ -0,0 +1,282 @@
+package com.trace.ai.services;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.junit.jupiter.api.TestReporter;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.function.Consumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@DisplayName("HNSW Vector Index Unit Tests")
+class HnswVectorIndexUnitTest {
+    
+    private static final int DIMENSION = 64;
+    private static final int TOP_K = 10;
+    
+    /**
+     * Creates cluster centers; embeddings drawn around them resemble real document
+     * embeddings far more closely than uniformly random vectors.
+     */
+    private static float[][] createCenters(int clusterCount, long seed) {
+        Random random = new Random(seed);
+        float[][] centers = new float[clusterCount][DIMENSION];
+        for (float[] center : centers) {
+            for (int i = 0; i < DIMENSION; i++) {
+                center[i] = (float) random.nextGaussian();
+            }
+        }
+        return centers;
+    }
+    
+    private static DocumentVectorIndex createClusteredIndex(float[][] centers, int documentCount, long seed) {
+        Random random = new Random(seed);
+        DocumentVectorIndex.Builder builder = DocumentVectorIndex.builder();
+        for (int doc = 0; doc < documentCount; doc++) {
+            builder.add(doc, perturb(centers[random.nextInt(centers.length)], 0.35, random));
+        }
+        return builder.build();
+    }
+    
+    private static DocumentVectorIndex createClusteredIndex(int documentCount, int clusterCount, long seed) {
+        return createClusteredIndex(createCenters(clusterCount, seed), documentCount, seed);
+    }
+    
+    private static float[][] createQueries(float[][] centers, int queryCount, long seed) {
+        Random random = new Random(seed);
+        float[][] queries = new float[queryCount][];
+        for (int q = 0; q < queryCount; q++) {
+            queries[q] = perturb(centers[random.nextInt(centers.length)], 0.35, random);
+        }
+        return queries;
+    }
+    
+    private static float[] perturb(float[] center, double noise, Random random) {
+        float[] vector = new float[center.length];
+        for (int i = 0; i < center.length; i++) {
+            vector[i] = center[i] + (float) (random.nextGaussian() * noise);
+        }
+        return vector;
+    }
+    
+    private static Set<Long> idsOf(List<DocumentVectorIndex.ScoredDocument> results) {
+        Set<Long> ids = new HashSet<>();
+        for (DocumentVectorIndex.ScoredDocument result : results) {
+            ids.add(result.getDocumentId());
+        }
+        return ids;
+    }
+    
+    @Nested
+    @DisplayName("Recall")
+    @TestInstance(TestInstance.Lifecycle.PER_CLASS)
+    class Recall {
+        
+        private DocumentVectorIndex exactIndex;
+        private HnswVectorIndex approximateIndex;
+        private float[][] queries;
+        
+        @BeforeAll
+        void setUp() {
+            float[][] centers = createCenters(50, 7L);
+            exactIndex = createClusteredIndex(centers, 5000, 7L);
+            approximateIndex = HnswVectorIndex.build(exactIndex);
+            queries = createQueries(centers, 200, 11L);
+        }
+        
+        @Test
+        @DisplayName("should reach recall target against exact search")
+        void shouldReachRecallTargetAgainstExactSearch() {
+            // Arrange
+            int found = 0;
+            
+            // Act
+            for (float[] query : queries) {
+                Set<Long> expected = idsOf(exactIndex.search(query, TOP_K, -1.0));
+                Set<Long> actual = idsOf(approximateIndex.search(query, TOP_K, -1.0));
+                actual.retainAll(expected);
+                found += actual.size();
+            }
+            double recall = (double) found / (queries.length * TOP_K);
+            
+            // Assert
+            assertThat(recall).isGreaterThanOrEqualTo(0.9);
+        }
+        
+        @Test
+        @DisplayName("should return results ordered by descending similarity")
+        void shouldReturnResultsOrderedByDescendingSimilarity() {
+            // Act
+            List<DocumentVectorIndex.ScoredDocument> results = approximateIndex.search(queries[0], TOP_K, -1.0);
+            
+            // Assert
+            assertThat(results).hasSize(TOP_K);
+            for (int i = 1; i < results.size(); i++) {
+                assertThat(results.get(i - 1).getSimilarityScore())
+                    .isGreaterThanOrEqualTo(results.get(i).getSimilarityScore());
+            }
+        }
+    }
+    
+    /**
+     * Latency of approximate search compared to the brute-force path. Excluded from the unit
+     * test run; run it with {@code ./gradlew benchmark}, which lists the timings in the test report.
+     */
+    @Nested
+    @Tag("benchmark")
+    @DisplayName("Latency")
+    @TestInstance(TestInstance.Lifecycle.PER_CLASS)
+    class Latency {
+        
+        private DocumentVectorIndex exactIndex;
+        private HnswVectorIndex approximateIndex;
+        private float[][] queries;
+        
+        @BeforeAll
+        void setUp() {
+            float[][] centers = createCenters(50, 7L);
+            exactIndex = createClusteredIndex(centers, 20_000, 7L);
+            approximateIndex = HnswVectorIndex.build(exactIndex);
+            queries = createQueries(centers, 500, 11L);
+        }
+        
+        private long timeQueries(Consumer<float[]> search) {
+            long start = System.nanoTime();
+            for (float[] query : queries) {
+                search.accept(query);
+            }
+            return System.nanoTime() - start;
+        }
+        
+        @Test
+        @DisplayName("should report latency compared to brute force")
+        void shouldReportLatencyComparedToBruteForce(TestReporter reporter) {
+            // Arrange - warm up both paths
+            timeQueries(query -> exactIndex.search(query, TOP_K, -1.0));
+            timeQueries(query -> approximateIndex.search(query, TOP_K, -1.0));
+            
+            // Act
+            long exactNanos = timeQueries(query -> exactIndex.search(query, TOP_K, -1.0));
+            long approximateNanos = timeQueries(query -> approximateIndex.search(query, TOP_K, -1.0));
+            
+            // Assert
+            reporter.publishEntry("documents", String.valueOf(exactIndex.size()));
+            reporter.publishEntry("exactMicrosPerQuery", String.format("%.1f", exactNanos / 1000.0 / queries.length));
+            reporter.publishEntry("hnswMicrosPerQuery", String.format("%.1f", approximateNanos / 1000.0 / queries.length));
+            assertThat(approximateNanos).isLessThan(exactNanos);
+        }
+    }
+    
+    @Nested
+    @DisplayName("Persistence")
+    class Persistence {
+        
+        @Test
+        @DisplayName("should return identical results after round trip")
+        void shouldReturnIdenticalResultsAfterRoundTrip() throws IOException {
+            // Arrange
+            float[][] centers = createCenters(10, 3L);
+            DocumentVectorIndex exactIndex = createClusteredIndex(centers, 500, 3L);
+            HnswVectorIndex original = HnswVectorIndex.build(exactIndex);
+            ByteArrayOutputStream output = new ByteArrayOutputStream();
+            original.writeTo(output);
+            float[] query = createQueries(centers, 1, 5L)[0];
+            
+            // Act
+            HnswVectorIndex restored = HnswVectorIndex.readFrom(new ByteArrayInputStream(output.toByteArray()), exactIndex);
+            
+            // Assert
+            assertThat(restored.search(query, TOP_K, -1.0))
+                .extracting(DocumentVectorIndex.ScoredDocument::getDocumentId)
+                .containsExactlyElementsOf(original.search(query, TOP_K, -1.0).stream()
+                    .map(DocumentVectorIndex.ScoredDocument::getDocumentId).toList());
+        }
+        
+        @Test
+        @DisplayName("should reject graph built for different documents")
+        void shouldRejectGraphBuiltForDifferentDocuments() throws IOException {
+            // Arrange
+            ByteArrayOutputStream output = new ByteArrayOutputStream();
+            HnswVectorIndex.build(createClusteredIndex(200, 5, 3L)).writeTo(output);
+            DocumentVectorIndex otherIndex = createClusteredIndex(150, 5, 3L);
+            
+            // Act & Assert
+            assertThatThrownBy(() -> HnswVectorIndex.readFrom(new ByteArrayInputStream(output.toByteArray()), otherIndex))
+                .isInstanceOf(IOException.class);
+        }
+        
+        @Test
+        @DisplayName("should reject stream with invalid header")
+        void shouldRejectStreamWithInvalidHeader() {
+            // Arrange
+            DocumentVectorIndex exactIndex = createClusteredIndex(10, 2, 3L);
+            
+            // Act & Assert
+            assertThatThrownBy(() -> HnswVectorIndex.readFrom(new ByteArrayInputStream(new byte[]{1, 2, 3, 4, 5, 6, 7, 8}), exactIndex))
+                .isInstanceOf(IOException.class);
+        }
+    }
+    
+    @Nested
+    @DisplayName("Edge Cases")
+    class EdgeCases {
+        
+        @Test
+        @DisplayName("should return empty results for empty index")
+        void shouldReturnEmptyResults_forEmptyIndex() {
+            // Act
+            HnswVectorIndex index = HnswVectorIndex.build(DocumentVectorIndex.builder().build());
+            
+            // Assert
+            assertThat(index.size()).isZero();
+            assertThat(index.search(new float[]{1.0f}, 3, 0.0)).isEmpty();
+        }
+        
+        @Test
+        @DisplayName("should throw exception when query dimension does not match")
+        void shouldThrowException_whenQueryDimensionDoesNotMatch() {
+            // Arrange
+            HnswVectorIndex index = HnswVectorIndex.build(createClusteredIndex(20, 2, 3L));
+            
+            // Act & Assert
+            assertThatThrownBy(() -> index.search(new float[]{1.0f, 0.0f}, 3, 0.0))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("Embeddings must have same dimensions");
+        }
+        
+        @Test
+        @DisplayName("should throw exception when max results is not positive")
+        void shouldThrowException_whenMaxResultsIsNotPositive() {
+            // Arrange
+            HnswVectorIndex index = HnswVectorIndex.build(createClusteredIndex(20, 2, 3L));
+            
+            // Act & Assert
+            assertThatThrownBy(() -> index.search(new float[]{1.0f, 0.0f, 0.0f}, -1, 0.0))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("Max results must be positive");
+        }
+        
+        @Test
+        @DisplayName("should reject non-positive ef search")
+        void shouldRejectNonPositiveEfSearch() {
+            // Arrange
+            HnswVectorIndex index = HnswVectorIndex.build(createClusteredIndex(20, 2, 3L));
+            
+            // Act & Assert
+            assertThatThrownBy(() -> index.setEfSearch(0))
+                .isInstanceOf(IllegalArgumentException.class);
+        }
+    }
+}
@@ -0,0 +1,230 @@
+package com.trace.ai.services;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.within;
+
+@DisplayName("Quantized Vector Index Unit Tests")
+class QuantizedVectorIndexUnitTest {
+    
+    // Same dimension as OpenAI embeddings
+    private static final int DIMENSION = 1536;
+    private static final int DOCUMENT_COUNT = 2000;
+    private static final int QUERY_COUNT = 50;
+    private static final int TOP_K = 10;
+    
+    private static float[] perturb(float[] center, double noise, Random random) {
+        float[] vector = new float[center.length];
+        for (int i = 0; i < center.length; i++) {
+            vector[i] = (float) (center[i] + random.nextGaussian() * noise);
+        }
+        return vector;
+    }
+    
+    @Nested
+    @TestInstance(TestInstance.Lifecycle.PER_CLASS)
+    @DisplayName("Recall")
+    class Recall {
+        
+        private final Map<Long, float[]> embeddings = new HashMap<>();
+        private DocumentVectorIndex exactIndex;
+        private QuantizedVectorIndex rerankedIndex;
+        private QuantizedVectorIndex quantizedOnlyIndex;
+        private float[][] queries;
+        
+        @BeforeAll
+        void setUp() {
+            // Clustered embeddings resemble real document embeddings far more than uniform noise
+            Random random = new Random(7);
+            float[][] centers = new float[40][DIMENSION];
+            for (float[] center : centers) {
+                for (int i = 0; i < DIMENSION; i++) {
+                    center[i] = (float) random.nextGaussian();
+                }
+            }
+            
+            DocumentVectorIndex.Builder exactBuilder = DocumentVectorIndex.builder();
+            QuantizedVectorIndex.Builder rerankedBuilder = QuantizedVectorIndex.builder(documentIds -> {
+                Map<Long, float[]> loaded = new HashMap<>();
+                for (Long documentId : documentIds) {
+                    loaded.put(documentId, embeddings.get(documentId));
+                }
+                return loaded;
+            });
+            QuantizedVectorIndex.Builder quantizedOnlyBuilder = QuantizedVectorIndex.builder(null);
+            for (long doc = 0; doc < DOCUMENT_COUNT; doc++) {
+                float[] embedding = perturb(centers[random.nextInt(centers.length)], 0.35, random);
+                embeddings.put(doc, embedding);
+                exactBuilder.add(doc, embedding);
+                rerankedBuilder.addEncoded(doc, EmbeddingCodec.encode(embedding, EmbeddingCodec.Encoding.FLOAT32));
+                quantizedOnlyBuilder.add(doc, embedding);
+            }
+            exactIndex = exactBuilder.build();
+            rerankedIndex = rerankedBuilder.build();
+            quantizedOnlyIndex = quantizedOnlyBuilder.build();
+            
+            queries = new float[QUERY_COUNT][];
+            for (int q = 0; q < QUERY_COUNT; q++) {
+                queries[q] = perturb(centers[random.nextInt(centers.length)], 0.35, random);
+            }
+        }
+        
+        private double recallAtK(VectorSearchEngine engine) {
+            int found = 0;
+            for (float[] query : queries) {
+                Set<Long> expected = new HashSet<>();
+                for (DocumentVectorIndex.ScoredDocument match : exactIndex.search(query, TOP_K, 0.0)) {
+                    expected.add(match.getDocumentId());
+                }
+                for (DocumentVectorIndex.ScoredDocument match : engine.search(query, TOP_K, 0.0)) {
+                    if (expected.contains(match.getDocumentId())) {
+                        found++;
+                    }
+                }
+            }
+            return found / (double) (QUERY_COUNT * TOP_K);
+        }
+        
+        @Test
+        @DisplayName("should reach recall target with re-ranking")
+        void shouldReachRecallTarget_withReRanking() {
+            // Act
+            double recall = recallAtK(rerankedIndex);
+            
+            // Assert
+            assertThat(recall).isGreaterThanOrEqualTo(0.98);
+        }
+        
+        @Test
+        @DisplayName("should reach recall target without re-ranking")
+        void shouldReachRecallTarget_withoutReRanking() {
+            // Act
+            double recall = recallAtK(quantizedOnlyIndex);
+            
+            // Assert
+            assertThat(recall).isGreaterThanOrEqualTo(0.9);
+        }
+        
+        @Test
+        @DisplayName("should return exact scores after re-ranking")
+        void shouldReturnExactScores_afterReRanking() {
+            // Act
+            List<DocumentVectorIndex.ScoredDocument> expected = exactIndex.search(queries[0], TOP_K, 0.0);
+            List<DocumentVectorIndex.ScoredDocument> actual = rerankedIndex.search(queries[0], TOP_K, 0.0);
+            
+            // Assert
+            assertThat(actual.get(0).getDocumentId()).isEqualTo(expected.get(0).getDocumentId());
+            assertThat(actual.get(0).getSimilarityScore()).isCloseTo(expected.get(0).getSimilarityScore(), within(1e-5));
+        }
+        
+        @Test
+        @DisplayName("should use a quarter of the exact index memory")
+        void shouldUseQuarterOfExactIndexMemory() {
+            // Arrange
+            long exactBytes = 4L * DOCUMENT_COUNT * DIMENSION;
+            
+            // Act & Assert
+            assertThat(rerankedIndex.getVectorMemoryBytes()).isLessThanOrEqualTo(exactBytes / 4 + 4L * DOCUMENT_COUNT);
+        }
+    }
+    
+    @Nested
+    @DisplayName("Search Behaviour")
+    class SearchBehaviour {
+        
+        @Test
+        @DisplayName("should exclude documents below similarity threshold")
+        void shouldExcludeDocumentsBelowSimilarityThreshold() {
+            // Arrange
+            QuantizedVectorIndex index = QuantizedVectorIndex.builder(null)
+                .add(1L, new float[]{1.0f, 0.0f})
+                .add(2L, new float[]{0.0f, 1.0f})
+                .build();
+            
+            // Act
+            List<DocumentVectorIndex.ScoredDocument> results = index.search(new float[]{1.0f, 0.1f}, 5, 0.5);
+            
+            // Assert
+            assertThat(results).extracting(DocumentVectorIndex.ScoredDocument::getDocumentId).containsExactly(1L);
+        }
+        
+        @Test
+        @DisplayName("should fall back to quantized scores when loading fails")
+        void shouldFallBackToQuantizedScores_whenLoadingFails() {
+            // Arrange
+            QuantizedVectorIndex index = QuantizedVectorIndex.builder(documentIds -> {
+                    throw new IllegalStateException("database closed");
+                })
+                .add(1L, new float[]{1.0f, 0.0f})
+                .build();
+            
+            // Act
+            List<DocumentVectorIndex.ScoredDocument> results = index.search(new float[]{1.0f, 0.0f}, 5, 0.0);
+            
+            // Assert
+            assertThat(results).hasSize(1);
+            assertThat(results.get(0).getSimilarityScore()).isCloseTo(1.0, within(0.02));
+        }
+        
+        @Test
+        @DisplayName("should skip embeddings with mismatched dimensions")
+        void shouldSkipEmbeddingsWithMismatchedDimensions() {
+            // Act
+            QuantizedVectorIndex index = QuantizedVectorIndex.builder(null)
+                .add(1L, new float[]{1.0f, 0.0f, 0.0f})
+                .add(2L, new float[]{1.0f, 0.0f})
+                .add(3L, new float[]{0.0f, 0.0f, 0.0f})
+                .build();
+            
+            // Assert
+            assertThat(index.size()).isEqualTo(1);
+            assertThat(index.getDimension()).isEqualTo(3);
+        }
+        
+        @Test
+        @DisplayName("should throw exception when query dimension does not match")
+        void shouldThrowException_whenQueryDimensionDoesNotMatch() {
+            // Arrange
+            QuantizedVectorIndex index = QuantizedVectorIndex.builder(null).add(1L, new float[]{1.0f, 0.0f}).build();
+            
+            // Act & Assert
+            assertThatThrownBy(() -> index.search(new float[]{1.0f}, 5, 0.0))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("Embeddings must have same dimensions");
+        }
+        
+        @Test
+        @DisplayName("should throw exception when max results is not positive")
+        void shouldThrowException_whenMaxResultsIsNotPositive() {
+            // Arrange
+            QuantizedVectorIndex index = QuantizedVectorIndex.builder(null).add(1L, new float[]{1.0f, 0.0f}).build();
+            
+            // Act & Assert
+            assertThatThrownBy(() -> index.search(new float[]{1.0f, 0.0f}, 0, 0.0))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("Max results must be positive");
+        }
+        
+        @Test
+        @DisplayName("should throw exception when rerank factor is less than one")
+        void shouldThrowException_whenRerankFactorIsLessThanOne() {
+            // Act & Assert
+            assertThatThrownBy(() -> QuantizedVectorIndex.builder(null).setRerankFactor(0))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("Rerank factor must be at least 1");
+        }
+    }
+}
@@ -0,0 +1,204 @@
+package com.trace.ai.services;
+
+import com.trace.ai.configuration.AIServiceType;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@DisplayName("Query Embedding Cache Unit Tests")
+class QueryEmbeddingCacheUnitTest {
+    
+    private static final String MODEL = "text-embedding-ada-002";
+    private static final float[] EMBEDDING = {0.1f, 0.2f, 0.3f};
+    
+    @Nested
+    @DisplayName("Constructor Validation")
+    class ConstructorValidation {
+        
+        @Test
+        @DisplayName("should throw exception when max entries is not positive")
+        void shouldThrowException_whenMaxEntriesIsNotPositive() {
+            // Act & Assert
+            assertThatThrownBy(() -> new QueryEmbeddingCache(0, Duration.ofMinutes(1)))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("Max entries must be positive");
+        }
+        
+        @Test
+        @DisplayName("should throw exception when ttl is zero")
+        void shouldThrowException_whenTtlIsZero() {
+            // Act & Assert
+            assertThatThrownBy(() -> new QueryEmbeddingCache(10, Duration.ZERO))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("TTL must be positive");
+        }
+    }
+    
+    @Nested
+    @DisplayName("In-Memory Caching")
+    class InMemoryCaching {
+        
+        @Test
+        @DisplayName("should load embedding only once for repeated queries")
+        void shouldLoadEmbeddingOnlyOnce_forRepeatedQueries() {
+            // Arrange
+            QueryEmbeddingCache cache = new QueryEmbeddingCache(10, Duration.ofMinutes(5));
+            AtomicInteger loads = new AtomicInteger();
+            
+            // Act
+            for (int i = 0; i < 40; i++) {
+                cache.getOrCompute(AIServiceType.OPENAI, MODEL, "expected true but was false", () -> {
+                    loads.incrementAndGet();
+                    return CompletableFuture.completedFuture(EMBEDDING);
+                }).join();
+            }
+            
+            // Assert
+            assertThat(loads.get()).isEqualTo(1);
+        }
+        
+        @Test
+        @DisplayName("should treat whitespace variants as the same query")
+        void shouldTreatWhitespaceVariantsAsTheSameQuery() {
+            // Arrange
+            QueryEmbeddingCache cache = new QueryEmbeddingCache(10, Duration.ofMinutes(5));
+            cache.put(AIServiceType.OPENAI, MODEL, "Element not found:\r\n  #login", EMBEDDING);
+            
+            // Act & Assert
+            assertThat(cache.get(AIServiceType.OPENAI, MODEL, "  Element not found: #login\n")).containsExactly(EMBEDDING);
+        }
+        
+        @Test
+        @DisplayName("should keep providers and models separate")
+        void shouldKeepProvidersAndModelsSeparate() {
+            // Arrange
+            QueryEmbeddingCache cache = new QueryEmbeddingCache(10, Duration.ofMinutes(5));
+            cache.put(AIServiceType.OPENAI, MODEL, "timeout", EMBEDDING);
+            
+            // Act & Assert
+            assertThat(cache.get(AIServiceType.GEMINI, MODEL, "timeout")).isNull();
+            assertThat(cache.get(AIServiceType.OPENAI, "text-embedding-3-small", "timeout")).isNull();
+        }
+        
+        @Test
+        @DisplayName("should evict least recently used entry when full")
+        void shouldEvictLeastRecentlyUsedEntry_whenFull() {
+            // Arrange
+            QueryEmbeddingCache cache = new QueryEmbeddingCache(2, Duration.ofMinutes(5));
+            cache.put(AIServiceType.OPENAI, MODEL, "first", EMBEDDING);
+            cache.put(AIServiceType.OPENAI, MODEL, "second", EMBEDDING);
+            cache.get(AIServiceType.OPENAI, MODEL, "first");
+            
+            // Act
+            cache.put(AIServiceType.OPENAI, MODEL, "third", EMBEDDING);
+            
+            // Assert
+            assertThat(cache.size()).isEqualTo(2);
+            assertThat(cache.get(AIServiceType.OPENAI, MODEL, "first")).isNotNull();
+            assertThat(cache.get(AIServiceType.OPENAI, MODEL, "second")).isNull();
+        }
+        
+        @Test
+        @DisplayName("should expire entries after ttl")
+        void shouldExpireEntriesAfterTtl() {
+            // Arrange
+            AtomicLong now = new AtomicLong(1_000L);
+            QueryEmbeddingCache cache = new QueryEmbeddingCache(10, Duration.ofSeconds(60), null, now::get);
+            cache.put(AIServiceType.GEMINI, MODEL, "timeout", EMBEDDING);
+            
+            // Act
+            now.addAndGet(60_000L);
+            
+            // Assert
+            assertThat(cache.get(AIServiceType.GEMINI, MODEL, "timeout")).isNull();
+        }
+        
+        @Test
+        @DisplayName("should not cache failed or empty embeddings")
+        void shouldNotCacheFailedOrEmptyEmbeddings() {
+            // Arrange
+            QueryEmbeddingCache cache = new QueryEmbeddingCache(10, Duration.ofMinutes(5));
+            
+            // Act
+            cache.getOrCompute(AIServiceType.OPENAI, MODEL, "a",
+                () -> CompletableFuture.failedFuture(new RuntimeException("boom"))).exceptionally(t -> null).join();
+            cache.getOrCompute(AIServiceType.OPENAI, MODEL, "b",
+                () -> CompletableFuture.completedFuture(null)).join();
+            
+            // Assert
+            assertThat(cache.size()).isZero();
+        }
+        
+        @Test
+        @DisplayName("should share in-flight request for concurrent identical queries")
+        void shouldShareInFlightRequest_forConcurrentIdenticalQueries() {
+            // Arrange
+            QueryEmbeddingCache cache = new QueryEmbeddingCache(10, Duration.ofMinutes(5));
+            CompletableFuture<float[]> request = new CompletableFuture<>();
+            AtomicInteger loads = new AtomicInteger();
+            
+            // Act
+            CompletableFuture<float[]> first = cache.getOrCompute(AIServiceType.OPENAI, MODEL, "q", () -> {
+                loads.incrementAndGet();
+                return request;
+            });
+            CompletableFuture<float[]> second = cache.getOrCompute(AIServiceType.OPENAI, MODEL, "q", () -> {
+                loads.incrementAndGet();
+                return request;
+            });
+            request.complete(EMBEDDING);
+            
+            // Assert
+            assertThat(loads.get()).isEqualTo(1);
+            assertThat(first.join()).containsExactly(EMBEDDING);
+            assertThat(second.join()).containsExactly(EMBEDDING);
+        }
+    }
+    
+    @Nested
+    @DisplayName("Persistent Store")
+    class PersistentStore {
+        
+        @Test
+        @DisplayName("should restore embeddings after reopening store")
+        void shouldRestoreEmbeddings_afterReopeningStore(@TempDir Path tempDir) {
+            // Arrange
+            Path storePath = tempDir.resolve("query-embeddings.db");
+            QueryEmbeddingCache cache = new QueryEmbeddingCache(10, Duration.ofMinutes(5), storePath);
+            cache.put(AIServiceType.OPENAI, MODEL, "timeout", EMBEDDING);
+            cache.close();
+            
+            // Act
+            QueryEmbeddingCache reopened = new QueryEmbeddingCache(10, Duration.ofMinutes(5), storePath);
+            
+            // Assert
+            assertThat(reopened.isPersistent()).isTrue();
+            assertThat(reopened.get(AIServiceType.OPENAI, MODEL, "timeout")).containsExactly(EMBEDDING);
+            reopened.close();
+        }
+        
+        @Test
+        @DisplayName("should fall back to memory when store cannot be opened")
+        void shouldFallBackToMemory_whenStoreCannotBeOpened(@TempDir Path tempDir) {
+            // Arrange - a directory cannot be opened as a database file
+            QueryEmbeddingCache cache = new QueryEmbeddingCache(10, Duration.ofMinutes(5), tempDir);
+            
+            // Act
+            cache.put(AIServiceType.OPENAI, MODEL, "timeout", EMBEDDING);
+            
+            // Assert
+            assertThat(cache.isPersistent()).isFalse();
+            assertThat(cache.get(AIServiceType.OPENAI, MODEL, "timeout")).containsExactly(EMBEDDING);
+        }
+    }
+}
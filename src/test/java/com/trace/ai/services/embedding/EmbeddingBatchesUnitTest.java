@@ -0,0 +1,185 @@
+package com.trace.ai.services.embedding;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@DisplayName("Embedding Batches Unit Tests")
+class EmbeddingBatchesUnitTest {
+    
+    private static List<String> textsOfLength(int count, int length) {
+        List<String> texts = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            texts.add("x".repeat(length));
+        }
+        return texts;
+    }
+    
+    @Nested
+    @DisplayName("Partitioning")
+    class Partitioning {
+        
+        @Test
+        @DisplayName("should return no batches for empty input")
+        void shouldReturnNoBatches_forEmptyInput() {
+            // Act & Assert
+            assertThat(EmbeddingBatches.partition(Collections.emptyList(), 10, 100)).isEmpty();
+        }
+        
+        @Test
+        @DisplayName("should split by maximum item count")
+        void shouldSplitByMaximumItemCount() {
+            // Act
+            List<int[]> batches = EmbeddingBatches.partition(textsOfLength(250, 4), 100, 1_000_000);
+            
+            // Assert
+            assertThat(batches).containsExactly(new int[]{0, 100}, new int[]{100, 200}, new int[]{200, 250});
+        }
+        
+        @Test
+        @DisplayName("should split by token budget")
+        void shouldSplitByTokenBudget() {
+            // Arrange - each text is estimated at 100 tokens
+            List<String> texts = textsOfLength(5, 400);
+            
+            // Act
+            List<int[]> batches = EmbeddingBatches.partition(texts, 100, 250);
+            
+            // Assert
+            assertThat(batches).containsExactly(new int[]{0, 2}, new int[]{2, 4}, new int[]{4, 5});
+        }
+        
+        @Test
+        @DisplayName("should send oversized text in its own batch")
+        void shouldSendOversizedTextInItsOwnBatch() {
+            // Arrange
+            List<String> texts = Arrays.asList("short", "x".repeat(4000), "short");
+            
+            // Act
+            List<int[]> batches = EmbeddingBatches.partition(texts, 100, 500);
+            
+            // Assert
+            assertThat(batches).containsExactly(new int[]{0, 1}, new int[]{1, 2}, new int[]{2, 3});
+        }
+        
+        @Test
+        @DisplayName("should cover every input exactly once in order")
+        void shouldCoverEveryInputExactlyOnceInOrder() {
+            // Arrange
+            List<String> texts = new ArrayList<>();
+            for (int i = 0; i < 97; i++) {
+                texts.add("x".repeat(1 + (i * 37) % 900));
+            }
+            
+            // Act
+            List<int[]> batches = EmbeddingBatches.partition(texts, 7, 600);
+            
+            // Assert
+            int expectedStart = 0;
+            for (int[] batch : batches) {
+                assertThat(batch[0]).isEqualTo(expectedStart);
+                assertThat(batch[1]).isGreaterThan(batch[0]);
+                expectedStart = batch[1];
+            }
+            assertThat(expectedStart).isEqualTo(texts.size());
+        }
+        
+        @Test
+        @DisplayName("should throw exception when limits are not positive")
+        void shouldThrowException_whenLimitsAreNotPositive() {
+            // Act & Assert
+            assertThatThrownBy(() -> EmbeddingBatches.partition(List.of("a"), 0, 10))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("Batch limits must be positive");
+        }
+    }
+    
+    @Nested
+    @DisplayName("Input Validation")
+    class InputValidation {
+        
+        @Test
+        @DisplayName("should throw exception when texts are null")
+        void shouldThrowException_whenTextsAreNull() {
+            // Act & Assert
+            assertThatThrownBy(() -> EmbeddingBatches.validateInputs(null))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("Texts cannot be null");
+        }
+        
+        @Test
+        @DisplayName("should report index of blank text")
+        void shouldReportIndexOfBlankText() {
+            // Act & Assert
+            assertThatThrownBy(() -> EmbeddingBatches.validateInputs(Arrays.asList("a", "  ")))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("Text at index 1 cannot be null or empty");
+        }
+    }
+    
+    @Nested
+    @DisplayName("Sequences")
+    class Sequences {
+        
+        @Test
+        @DisplayName("should collect results of all requests in order")
+        void shouldCollectResultsOfAllRequestsInOrder() throws Exception {
+            // Act
+            CompletableFuture<List<String>> result = EmbeddingBatches.sendInSequence(3,
+                index -> CompletableFuture.completedFuture(List.of("a" + index, "b" + index)));
+            
+            // Assert
+            assertThat(result.get(5, TimeUnit.SECONDS)).containsExactly("a0", "b0", "a1", "b1", "a2", "b2");
+        }
+        
+        @Test
+        @DisplayName("should skip remaining requests when one fails")
+        void shouldSkipRemainingRequests_whenOneFails() {
+            // Arrange
+            AtomicInteger started = new AtomicInteger();
+            
+            // Act
+            CompletableFuture<List<String>> result = EmbeddingBatches.sendInSequence(3, index -> {
+                started.incrementAndGet();
+                return CompletableFuture.failedFuture(new IllegalStateException("Batch " + index + " failed"));
+            });
+            
+            // Assert
+            assertThatThrownBy(() -> result.get(5, TimeUnit.SECONDS))
+                .isInstanceOf(ExecutionException.class)
+                .hasRootCauseMessage("Batch 0 failed");
+            assertThat(started).hasValue(1);
+        }
+        
+        @Test
+        @DisplayName("should skip remaining requests when sequence is cancelled")
+        void shouldSkipRemainingRequests_whenSequenceIsCancelled() {
+            // Arrange
+            AtomicInteger started = new AtomicInteger();
+            CompletableFuture<List<String>> inFlight = new CompletableFuture<>();
+            CompletableFuture<List<String>> result = EmbeddingBatches.sendInSequence(3, index -> {
+                started.incrementAndGet();
+                return inFlight;
+            });
+            
+            // Act
+            result.cancel(true);
+            
+            // Assert
+            assertThat(inFlight).isCancelled();
+            assertThat(started).hasValue(1);
+        }
+    }
+}
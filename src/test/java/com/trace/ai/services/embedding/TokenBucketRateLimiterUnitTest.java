@@ -0,0 +1,138 @@
+package com.trace.ai.services.embedding;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@DisplayName("Token Bucket Rate Limiter Unit Tests")
+class TokenBucketRateLimiterUnitTest {
+    
+    @Nested
+    @DisplayName("Permit Acquisition")
+    class PermitAcquisition {
+        
+        @Test
+        @DisplayName("should grant permits immediately from a full bucket")
+        void shouldGrantPermitsImmediately_fromFullBucket() throws InterruptedException {
+            // Arrange
+            TokenBucketRateLimiter limiter = new TokenBucketRateLimiter(60, 100);
+            long start = System.nanoTime();
+            
+            // Act
+            limiter.acquire(100);
+            
+            // Assert
+            assertThat(Duration.ofNanos(System.nanoTime() - start)).isLessThan(Duration.ofMillis(100));
+            assertThat(limiter.getAvailablePermits()).isZero();
+        }
+        
+        @Test
+        @DisplayName("should block until bucket refills")
+        void shouldBlockUntilBucketRefills() throws InterruptedException {
+            // Arrange - 6000 permits per minute is 100 per second
+            TokenBucketRateLimiter limiter = new TokenBucketRateLimiter(6000, 20);
+            limiter.acquire(20);
+            long start = System.nanoTime();
+            
+            // Act
+            limiter.acquire(20);
+            
+            // Assert
+            assertThat(Duration.ofNanos(System.nanoTime() - start)).isGreaterThanOrEqualTo(Duration.ofMillis(150));
+        }
+        
+        @Test
+        @DisplayName("should clamp requests larger than capacity")
+        void shouldClampRequestsLargerThanCapacity() throws InterruptedException {
+            // Arrange
+            TokenBucketRateLimiter limiter = new TokenBucketRateLimiter(60, 10);
+            long start = System.nanoTime();
+            
+            // Act
+            limiter.acquire(1_000);
+            
+            // Assert
+            assertThat(Duration.ofNanos(System.nanoTime() - start)).isLessThan(Duration.ofMillis(100));
+        }
+        
+        @Test
+        @DisplayName("should wait for pause to expire")
+        void shouldWaitForPauseToExpire() throws InterruptedException {
+            // Arrange
+            TokenBucketRateLimiter limiter = new TokenBucketRateLimiter(6_000_000, 1_000);
+            limiter.pause(Duration.ofMillis(300));
+            long start = System.nanoTime();
+            
+            // Act
+            limiter.acquire(1);
+            
+            // Assert
+            assertThat(Duration.ofNanos(System.nanoTime() - start)).isGreaterThanOrEqualTo(Duration.ofMillis(250));
+        }
+        
+        @Test
+        @DisplayName("should return wait time instead of blocking when bucket is empty")
+        void shouldReturnWaitTimeInsteadOfBlocking_whenBucketIsEmpty() {
+            // Arrange - 6000 permits per minute is 100 per second
+            TokenBucketRateLimiter limiter = new TokenBucketRateLimiter(6000, 20);
+            
+            // Act
+            long firstWait = limiter.tryAcquire(20);
+            long secondWait = limiter.tryAcquire(20);
+            
+            // Assert
+            assertThat(firstWait).isZero();
+            assertThat(Duration.ofNanos(secondWait)).isBetween(Duration.ofMillis(150), Duration.ofMillis(200));
+            assertThat(limiter.getAvailablePermits()).isLessThan(20);
+        }
+        
+        @Test
+        @DisplayName("should throw exception when rate is not positive")
+        void shouldThrowException_whenRateIsNotPositive() {
+            // Act & Assert
+            assertThatThrownBy(() -> new TokenBucketRateLimiter(0, 10))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("Permits per minute must be positive");
+        }
+    }
+    
+    @Nested
+    @DisplayName("Retry-After Parsing")
+    class RetryAfterParsing {
+        
+        @Test
+        @DisplayName("should parse delay in seconds")
+        void shouldParseDelayInSeconds() {
+            // Act & Assert
+            assertThat(EmbeddingRateLimitException.parseRetryAfter("2")).isEqualTo(Duration.ofSeconds(2));
+        }
+        
+        @Test
+        @DisplayName("should parse http date")
+        void shouldParseHttpDate() {
+            // Arrange
+            String header = DateTimeFormatter.RFC_1123_DATE_TIME.format(ZonedDateTime.now().plusSeconds(30));
+            
+            // Act
+            Duration delay = EmbeddingRateLimitException.parseRetryAfter(header);
+            
+            // Assert
+            assertThat(delay).isBetween(Duration.ofSeconds(25), Duration.ofSeconds(30));
+        }
+        
+        @Test
+        @DisplayName("should return null for missing or invalid values")
+        void shouldReturnNull_forMissingOrInvalidValues() {
+            // Act & Assert
+            assertThat(EmbeddingRateLimitException.parseRetryAfter(null)).isNull();
+            assertThat(EmbeddingRateLimitException.parseRetryAfter("soon")).isNull();
+        }
+    }
+}
@@ -0,0 +1,234 @@
+package com.trace.ai.services.http;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.zip.GZIPOutputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@DisplayName("HTTP Client Registry Unit Tests")
+class HttpClientRegistryUnitTest {
+    
+    @Nested
+    @DisplayName("Clients")
+    class Clients {
+        
+        @Test
+        @DisplayName("should reuse client of an operation")
+        void shouldReuseClientOfAnOperation() {
+            // Arrange
+            HttpClientRegistry registry = new HttpClientRegistry(null);
+            
+            // Act
+            HttpClient first = registry.getClient(HttpOperation.EMBEDDING);
+            HttpClient second = registry.getClient(HttpOperation.EMBEDDING);
+            
+            // Assert
+            assertThat(second).isSameAs(first);
+        }
+        
+        @Test
+        @DisplayName("should create HTTP/2 clients with connect timeout of their operation")
+        void shouldCreateHttp2Clients_withConnectTimeoutOfTheirOperation() {
+            // Arrange
+            HttpClientRegistry registry = new HttpClientRegistry(null);
+            
+            // Act
+            HttpClient analysis = registry.getClient(HttpOperation.ANALYSIS);
+            HttpClient discovery = registry.getClient(HttpOperation.DISCOVERY);
+            
+            // Assert
+            assertThat(discovery).isNotSameAs(analysis);
+            assertThat(analysis.version()).isEqualTo(HttpClient.Version.HTTP_2);
+            assertThat(analysis.connectTimeout()).contains(HttpOperation.ANALYSIS.getDefaultConnectTimeout());
+            assertThat(discovery.connectTimeout()).contains(HttpOperation.DISCOVERY.getDefaultConnectTimeout());
+        }
+        
+        @Test
+        @DisplayName("should run all clients on the given executor")
+        void shouldRunAllClients_onTheGivenExecutor() {
+            // Arrange
+            ExecutorService executor = Executors.newSingleThreadExecutor();
+            try {
+                HttpClientRegistry registry = new HttpClientRegistry(executor);
+                
+                // Act & Assert
+                for (HttpOperation operation : HttpOperation.values()) {
+                    assertThat(registry.getClient(operation).executor()).contains(executor);
+                }
+            } finally {
+                executor.shutdownNow();
+            }
+        }
+        
+        @Test
+        @DisplayName("should use fixed client for every operation")
+        void shouldUseFixedClient_forEveryOperation() {
+            // Arrange
+            HttpClient client = HttpClient.newHttpClient();
+            
+            // Act
+            HttpClientRegistry registry = HttpClientRegistry.ofClient(client);
+            
+            // Assert
+            assertThat(registry.getClient(HttpOperation.ANALYSIS)).isSameAs(client);
+            assertThat(registry.getClient(HttpOperation.EMBEDDING)).isSameAs(client);
+            assertThat(registry.getRequestTimeout(HttpOperation.DISCOVERY))
+                .isEqualTo(HttpOperation.DISCOVERY.getDefaultRequestTimeout());
+        }
+    }
+    
+    @Nested
+    @DisplayName("Timeouts")
+    class Timeouts {
+        
+        @Test
+        @DisplayName("should replace client when connect timeout changes")
+        void shouldReplaceClient_whenConnectTimeoutChanges() {
+            // Arrange
+            HttpClientRegistry registry = new HttpClientRegistry(null);
+            HttpClient before = registry.getClient(HttpOperation.EMBEDDING);
+            
+            // Act
+            registry.setTimeouts(HttpOperation.EMBEDDING, Duration.ofSeconds(3), Duration.ofSeconds(45));
+            HttpClient after = registry.getClient(HttpOperation.EMBEDDING);
+            
+            // Assert
+            assertThat(after).isNotSameAs(before);
+            assertThat(after.connectTimeout()).contains(Duration.ofSeconds(3));
+            assertThat(registry.getRequestTimeout(HttpOperation.EMBEDDING)).isEqualTo(Duration.ofSeconds(45));
+        }
+        
+        @Test
+        @DisplayName("should keep client when only request timeout changes")
+        void shouldKeepClient_whenOnlyRequestTimeoutChanges() {
+            // Arrange
+            HttpClientRegistry registry = new HttpClientRegistry(null);
+            HttpClient before = registry.getClient(HttpOperation.ANALYSIS);
+            
+            // Act
+            registry.setTimeouts(HttpOperation.ANALYSIS,
+                HttpOperation.ANALYSIS.getDefaultConnectTimeout(), Duration.ofSeconds(60));
+            
+            // Assert
+            assertThat(registry.getClient(HttpOperation.ANALYSIS)).isSameAs(before);
+        }
+        
+        @Test
+        @DisplayName("should set request timeout of the operation on new requests")
+        void shouldSetRequestTimeoutOfTheOperation_onNewRequests() {
+            // Arrange
+            HttpClientRegistry registry = new HttpClientRegistry(null);
+            
+            // Act
+            HttpRequest request = registry.newRequest(HttpOperation.DISCOVERY, URI.create("https://example.com")).build();
+            
+            // Assert
+            assertThat(request.timeout()).contains(HttpOperation.DISCOVERY.getDefaultRequestTimeout());
+        }
+        
+        @Test
+        @DisplayName("should throw exception when timeout is not positive")
+        void shouldThrowException_whenTimeoutIsNotPositive() {
+            // Arrange
+            HttpClientRegistry registry = new HttpClientRegistry(null);
+            
+            // Act & Assert
+            assertThatThrownBy(() -> registry.setTimeouts(HttpOperation.ANALYSIS, Duration.ZERO, Duration.ofSeconds(1)))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("Connect timeout must be positive");
+        }
+    }
+    
+    @Nested
+    @DisplayName("Compressed Responses")
+    class CompressedResponses {
+        
+        private HttpServer server;
+        private String baseUrl;
+        
+        @BeforeEach
+        void setUp() throws IOException {
+            server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+            server.createContext("/", this::handle);
+            server.start();
+            baseUrl = "http://127.0.0.1:" + server.getAddress().getPort();
+        }
+        
+        @AfterEach
+        void tearDown() {
+            server.stop(0);
+        }
+        
+        private void handle(HttpExchange exchange) throws IOException {
+            byte[] body = "{\"embedding\":[0.25,0.5]}".getBytes(StandardCharsets.UTF_8);
+            if ("gzip".equals(exchange.getRequestHeaders().getFirst("Accept-Encoding"))) {
+                ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+                try (GZIPOutputStream gzip = new GZIPOutputStream(compressed)) {
+                    gzip.write(body);
+                }
+                body = compressed.toByteArray();
+                exchange.getResponseHeaders().add("Content-Encoding", "gzip");
+            }
+            exchange.getResponseHeaders().add("Content-Type", "application/json; charset=utf-8");
+            exchange.sendResponseHeaders(200, body.length);
+            exchange.getResponseBody().write(body);
+            exchange.close();
+        }
+        
+        @Test
+        @DisplayName("should decode gzip response when gzip is accepted")
+        void shouldDecodeGzipResponse_whenGzipIsAccepted() throws Exception {
+            // Arrange
+            HttpClientRegistry registry = new HttpClientRegistry(null);
+            HttpRequest request = CompressedBodyHandlers.acceptGzip(
+                    registry.newRequest(HttpOperation.EMBEDDING, URI.create(baseUrl + "/embed")))
+                .GET()
+                .build();
+            
+            // Act
+            HttpResponse<String> response = registry.getClient(HttpOperation.EMBEDDING)
+                .send(request, CompressedBodyHandlers.ofString());
+            
+            // Assert
+            assertThat(response.headers().firstValue("Content-Encoding")).contains("gzip");
+            assertThat(response.body()).isEqualTo("{\"embedding\":[0.25,0.5]}");
+        }
+        
+        @Test
+        @DisplayName("should read plain response when gzip is not accepted")
+        void shouldReadPlainResponse_whenGzipIsNotAccepted() throws Exception {
+            // Arrange
+            HttpClientRegistry registry = new HttpClientRegistry(null);
+            HttpRequest request = registry.newRequest(HttpOperation.EMBEDDING, URI.create(baseUrl + "/embed"))
+                .GET()
+                .build();
+            
+            // Act
+            HttpResponse<String> response = registry.getClient(HttpOperation.EMBEDDING)
+                .send(request, CompressedBodyHandlers.ofString());
+            
+            // Assert
+            assertThat(response.headers().firstValue("Content-Encoding")).isEmpty();
+            assertThat(response.body()).isEqualTo("{\"embedding\":[0.25,0.5]}");
+        }
+    }
+}
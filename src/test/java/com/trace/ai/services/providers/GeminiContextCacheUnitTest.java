@@ -0,0 +1,200 @@
+package com.trace.ai.services.providers;
+
+import com.sun.net.httpserver.HttpServer;
+import com.trace.ai.services.http.HttpClientRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DisplayName("Gemini Context Cache Unit Tests")
+class GeminiContextCacheUnitTest {
+    
+    private static final String MODEL = "gemini-2.0-flash";
+    private static final String LONG_PREFIX = "### Instruction ###\n" + "analyze the failing step ".repeat(500);
+    
+    private HttpServer server;
+    private final AtomicInteger uploads = new AtomicInteger();
+    private volatile int status = 200;
+    private final AtomicLong clock = new AtomicLong();
+    private GeminiContextCache cache;
+    
+    @BeforeEach
+    void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/cachedContents", exchange -> {
+            exchange.getRequestBody().readAllBytes();
+            int upload = uploads.incrementAndGet();
+            byte[] body = (status == 200 ? "{\"name\":\"cachedContents/c" + upload + "\"}" : "{\"error\":{}}")
+                .getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(status, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        server.start();
+        cache = new GeminiContextCache(new HttpClientRegistry(null),
+            "http://127.0.0.1:" + server.getAddress().getPort() + "/cachedContents", clock::get);
+    }
+    
+    @AfterEach
+    void tearDown() {
+        server.stop(0);
+    }
+    
+    /**
+     * Looks the prefix up until its upload has finished.
+     */
+    private String awaitCacheName(String model) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        String name = cache.lookup(LONG_PREFIX, model, "key");
+        while (name == null && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+            name = cache.lookup(LONG_PREFIX, model, "key");
+        }
+        return name;
+    }
+    
+    @Nested
+    @DisplayName("Lookup")
+    class Lookup {
+        
+        @Test
+        @DisplayName("should not upload prefix on first request")
+        void shouldNotUploadPrefix_onFirstRequest() {
+            // Act
+            String name = cache.lookup(LONG_PREFIX, MODEL, "key");
+            
+            // Assert
+            assertThat(name).isNull();
+            assertThat(uploads.get()).isZero();
+            assertThat(cache.size()).isEqualTo(1);
+        }
+        
+        @Test
+        @DisplayName("should upload prefix once on first follow-up and share cache name")
+        void shouldUploadPrefixOnce_onFirstFollowUp_andShareCacheName() throws InterruptedException {
+            // Arrange
+            cache.lookup(LONG_PREFIX, MODEL, "key");
+            
+            // Act
+            String followUp = cache.lookup(LONG_PREFIX, MODEL, "key");
+            String first = awaitCacheName(MODEL);
+            String second = cache.lookup(LONG_PREFIX, MODEL, "key");
+            
+            // Assert
+            assertThat(followUp).isNull();
+            assertThat(first).isEqualTo("cachedContents/c1");
+            assertThat(second).isEqualTo("cachedContents/c1");
+            assertThat(uploads.get()).isEqualTo(1);
+        }
+        
+        @Test
+        @DisplayName("should send prefix inline when it is below model minimum")
+        void shouldSendPrefixInline_whenItIsBelowModelMinimum() {
+            // Act
+            cache.lookup("### Instruction ###\nShort.\n", MODEL, "key");
+            String name = cache.lookup("### Instruction ###\nShort.\n", MODEL, "key");
+            
+            // Assert
+            assertThat(name).isNull();
+            assertThat(uploads.get()).isZero();
+            assertThat(cache.size()).isZero();
+        }
+        
+        @Test
+        @DisplayName("should send prefix inline until expiry when upload fails")
+        void shouldSendPrefixInline_untilExpiry_whenUploadFails() throws InterruptedException {
+            // Arrange
+            status = 400;
+            cache.lookup(LONG_PREFIX, MODEL, "key");
+            cache.lookup(LONG_PREFIX, MODEL, "key");
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (uploads.get() == 0 && System.nanoTime() < deadline) {
+                Thread.sleep(10);
+            }
+            
+            // Act
+            String first = cache.lookup(LONG_PREFIX, MODEL, "key");
+            String second = cache.lookup(LONG_PREFIX, MODEL, "key");
+            
+            // Assert
+            assertThat(first).isNull();
+            assertThat(second).isNull();
+            assertThat(uploads.get()).isEqualTo(1);
+        }
+        
+        @Test
+        @DisplayName("should upload again after entry expires")
+        void shouldUploadAgain_afterEntryExpires() throws InterruptedException {
+            // Arrange
+            cache.lookup(LONG_PREFIX, MODEL, "key");
+            awaitCacheName(MODEL);
+            clock.addAndGet(GeminiContextCache.TTL.toNanos());
+            
+            // Act
+            String expired = cache.lookup(LONG_PREFIX, MODEL, "key");
+            String name = awaitCacheName(MODEL);
+            
+            // Assert
+            assertThat(expired).isNull();
+            assertThat(name).isEqualTo("cachedContents/c2");
+            assertThat(uploads.get()).isEqualTo(2);
+        }
+        
+        @Test
+        @DisplayName("should upload again after invalidation")
+        void shouldUploadAgain_afterInvalidation() throws InterruptedException {
+            // Arrange
+            cache.lookup(LONG_PREFIX, MODEL, "key");
+            awaitCacheName(MODEL);
+            
+            // Act
+            cache.invalidate(LONG_PREFIX, MODEL, "key");
+            cache.lookup(LONG_PREFIX, MODEL, "key");
+            String name = awaitCacheName(MODEL);
+            
+            // Assert
+            assertThat(name).isEqualTo("cachedContents/c2");
+        }
+        
+        @Test
+        @DisplayName("should keep separate caches per model")
+        void shouldKeepSeparateCaches_perModel() throws InterruptedException {
+            // Act
+            cache.lookup(LONG_PREFIX, MODEL, "key");
+            awaitCacheName(MODEL);
+            cache.lookup(LONG_PREFIX, "gemini-2.0-flash-lite", "key");
+            awaitCacheName("gemini-2.0-flash-lite");
+            
+            // Assert
+            assertThat(uploads.get()).isEqualTo(2);
+            assertThat(cache.size()).isEqualTo(2);
+        }
+    }
+    
+    @Nested
+    @DisplayName("Minimum Tokens")
+    class MinimumTokens {
+        
+        @Test
+        @DisplayName("should require larger prefixes for pro models")
+        void shouldRequireLargerPrefixes_forProModels() {
+            // Act & Assert
+            assertThat(GeminiContextCache.minimumTokens("gemini-2.5-flash")).isEqualTo(1_024);
+            assertThat(GeminiContextCache.minimumTokens("gemini-2.5-pro")).isEqualTo(4_096);
+            assertThat(GeminiContextCache.minimumTokens("gemini-1.5-flash")).isEqualTo(32_768);
+        }
+    }
+}
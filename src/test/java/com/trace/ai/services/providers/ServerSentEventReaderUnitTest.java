@@ -0,0 +1,199 @@
+package com.trace.ai.services.providers;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@DisplayName("Server-Sent Event Reader Unit Tests")
+class ServerSentEventReaderUnitTest {
+    
+    private static JsonObject json(String text) {
+        return JsonParser.parseString(text).getAsJsonObject();
+    }
+    
+    /**
+     * Feeds all lines to a reader and ends the body, like the body subscriber does.
+     */
+    private static boolean feed(List<String> events, String... lines) {
+        ServerSentEventReader reader = new ServerSentEventReader(events::add);
+        for (String line : lines) {
+            reader.accept(line);
+        }
+        return reader.finish();
+    }
+    
+    @Nested
+    @DisplayName("Event Parsing")
+    class EventParsing {
+        
+        @Test
+        @DisplayName("should dispatch data of each event in order")
+        void shouldDispatchDataOfEachEventInOrder() {
+            // Arrange
+            List<String> events = new ArrayList<>();
+            
+            // Act
+            boolean done = feed(events, "data: {\"n\":1}", "", "data: {\"n\":2}", "");
+            
+            // Assert
+            assertThat(events).containsExactly("{\"n\":1}", "{\"n\":2}");
+            assertThat(done).isFalse();
+        }
+        
+        @Test
+        @DisplayName("should join multi-line data with newlines")
+        void shouldJoinMultiLineDataWithNewlines() {
+            // Arrange
+            List<String> events = new ArrayList<>();
+            
+            // Act
+            feed(events, "data: first", "data:second", "");
+            
+            // Assert
+            assertThat(events).containsExactly("first\nsecond");
+        }
+        
+        @Test
+        @DisplayName("should ignore comments and other fields")
+        void shouldIgnoreCommentsAndOtherFields() {
+            // Arrange
+            List<String> events = new ArrayList<>();
+            
+            // Act
+            feed(events, ": keep-alive", "event: message", "id: 7", "data: payload", "");
+            
+            // Assert
+            assertThat(events).containsExactly("payload");
+        }
+        
+        @Test
+        @DisplayName("should stop at done marker")
+        void shouldStopAtDoneMarker() {
+            // Arrange
+            List<String> events = new ArrayList<>();
+            
+            // Act
+            boolean done = feed(events, "data: last", "", "data: [DONE]", "", "data: ignored", "");
+            
+            // Assert
+            assertThat(events).containsExactly("last");
+            assertThat(done).isTrue();
+        }
+        
+        @Test
+        @DisplayName("should dispatch pending data when stream ends without blank line")
+        void shouldDispatchPendingData_whenStreamEndsWithoutBlankLine() {
+            // Arrange
+            List<String> events = new ArrayList<>();
+            
+            // Act
+            feed(events, "data: tail");
+            
+            // Assert
+            assertThat(events).containsExactly("tail");
+        }
+        
+        @Test
+        @DisplayName("should dispatch events as lines are fed one at a time")
+        void shouldDispatchEvents_asLinesAreFedOneAtATime() {
+            // Arrange
+            List<String> events = new ArrayList<>();
+            ServerSentEventReader reader = new ServerSentEventReader(events::add);
+            
+            // Act
+            reader.accept("data: first");
+            List<String> beforeBlankLine = new ArrayList<>(events);
+            reader.accept("");
+            boolean done = reader.accept("data: [DONE]") | reader.accept("");
+            reader.accept("data: ignored");
+            reader.accept("");
+            
+            // Assert
+            assertThat(beforeBlankLine).isEmpty();
+            assertThat(events).containsExactly("first");
+            assertThat(done).isTrue();
+            assertThat(reader.finish()).isTrue();
+        }
+        
+        @Test
+        @DisplayName("should throw exception when consumer is null")
+        void shouldThrowException_whenConsumerIsNull() {
+            // Act & Assert
+            assertThatThrownBy(() -> new ServerSentEventReader(null))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("Argument for @NotNull parameter 'onData'");
+        }
+    }
+    
+    @Nested
+    @DisplayName("Stream Chunks")
+    class StreamChunks {
+        
+        @Test
+        @DisplayName("should extract OpenAI content delta")
+        void shouldExtractOpenAIContentDelta() {
+            // Act
+            String delta = OpenAIProvider.extractOpenAIStreamDelta(
+                json("{\"choices\":[{\"index\":0,\"delta\":{\"content\":\"Step fails\"}}]}"));
+            
+            // Assert
+            assertThat(delta).isEqualTo("Step fails");
+        }
+        
+        @Test
+        @DisplayName("should return empty text for OpenAI chunk without content")
+        void shouldReturnEmptyText_forOpenAIChunkWithoutContent() {
+            // Act
+            String roleOnly = OpenAIProvider.extractOpenAIStreamDelta(
+                json("{\"choices\":[{\"delta\":{\"role\":\"assistant\"}}]}"));
+            String finish = OpenAIProvider.extractOpenAIStreamDelta(
+                json("{\"choices\":[{\"delta\":{},\"finish_reason\":\"stop\"}]}"));
+            String usage = OpenAIProvider.extractOpenAIStreamDelta(json("{\"choices\":[],\"usage\":{}}"));
+            
+            // Assert
+            assertThat(roleOnly).isEmpty();
+            assertThat(finish).isEmpty();
+            assertThat(usage).isEmpty();
+        }
+        
+        @Test
+        @DisplayName("should throw exception when OpenAI chunk reports error")
+        void shouldThrowException_whenOpenAIChunkReportsError() {
+            // Act & Assert
+            assertThatThrownBy(() -> OpenAIProvider.extractOpenAIStreamDelta(
+                    json("{\"error\":{\"message\":\"Rate limit reached\"}}")))
+                .isInstanceOf(RuntimeException.class)
+                .hasMessage("OpenAI stream reported an error: Rate limit reached");
+        }
+        
+        @Test
+        @DisplayName("should join all Gemini text parts")
+        void shouldJoinAllGeminiTextParts() {
+            // Act
+            String text = GeminiProvider.extractGeminiStreamText(
+                json("{\"candidates\":[{\"content\":{\"parts\":[{\"text\":\"Step \"},{\"text\":\"fails\"}]}}]}"));
+            
+            // Assert
+            assertThat(text).isEqualTo("Step fails");
+        }
+        
+        @Test
+        @DisplayName("should return empty text for Gemini chunk without parts")
+        void shouldReturnEmptyText_forGeminiChunkWithoutParts() {
+            // Act
+            String text = GeminiProvider.extractGeminiStreamText(
+                json("{\"candidates\":[{\"finishReason\":\"STOP\"}],\"usageMetadata\":{}}"));
+            
+            // Assert
+            assertThat(text).isEmpty();
+        }
+    }
+}
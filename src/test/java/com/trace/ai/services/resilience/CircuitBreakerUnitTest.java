@@ -0,0 +1,110 @@
+package com.trace.ai.services.resilience;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@DisplayName("Circuit Breaker Unit Tests")
+class CircuitBreakerUnitTest {
+    
+    private final AtomicLong now = new AtomicLong();
+    private final CircuitBreaker breaker = new CircuitBreaker("Test", 3, Duration.ofSeconds(30), now::get);
+    
+    private void recordFailures(int count) {
+        for (int i = 0; i < count; i++) {
+            breaker.recordFailure();
+        }
+    }
+    
+    @Nested
+    @DisplayName("State Transitions")
+    class StateTransitions {
+        
+        @Test
+        @DisplayName("should open after consecutive failures reach threshold")
+        void shouldOpen_afterConsecutiveFailuresReachThreshold() {
+            // Act
+            recordFailures(3);
+            
+            // Assert
+            assertThat(breaker.getState()).isEqualTo(CircuitBreaker.State.OPEN);
+            assertThat(breaker.tryAcquire()).isFalse();
+        }
+        
+        @Test
+        @DisplayName("should stay closed when a success interrupts failures")
+        void shouldStayClosed_whenASuccessInterruptsFailures() {
+            // Act
+            recordFailures(2);
+            breaker.recordSuccess();
+            recordFailures(2);
+            
+            // Assert
+            assertThat(breaker.getState()).isEqualTo(CircuitBreaker.State.CLOSED);
+            assertThat(breaker.tryAcquire()).isTrue();
+        }
+        
+        @Test
+        @DisplayName("should let one trial request through after open duration")
+        void shouldLetOneTrialRequestThrough_afterOpenDuration() {
+            // Arrange
+            recordFailures(3);
+            now.addAndGet(Duration.ofSeconds(30).toNanos());
+            
+            // Act
+            boolean first = breaker.tryAcquire();
+            boolean second = breaker.tryAcquire();
+            
+            // Assert
+            assertThat(first).isTrue();
+            assertThat(second).isFalse();
+            assertThat(breaker.getState()).isEqualTo(CircuitBreaker.State.HALF_OPEN);
+        }
+        
+        @Test
+        @DisplayName("should close when trial request succeeds")
+        void shouldClose_whenTrialRequestSucceeds() {
+            // Arrange
+            recordFailures(3);
+            now.addAndGet(Duration.ofSeconds(30).toNanos());
+            breaker.tryAcquire();
+            
+            // Act
+            breaker.recordSuccess();
+            
+            // Assert
+            assertThat(breaker.getState()).isEqualTo(CircuitBreaker.State.CLOSED);
+        }
+        
+        @Test
+        @DisplayName("should open again when trial request fails")
+        void shouldOpenAgain_whenTrialRequestFails() {
+            // Arrange
+            recordFailures(3);
+            now.addAndGet(Duration.ofSeconds(30).toNanos());
+            breaker.tryAcquire();
+            
+            // Act
+            breaker.recordFailure();
+            
+            // Assert
+            assertThat(breaker.getState()).isEqualTo(CircuitBreaker.State.OPEN);
+            assertThat(breaker.tryAcquire()).isFalse();
+        }
+        
+        @Test
+        @DisplayName("should throw exception when threshold is not positive")
+        void shouldThrowException_whenThresholdIsNotPositive() {
+            // Act & Assert
+            assertThatThrownBy(() -> new CircuitBreaker("Test", 0, Duration.ofSeconds(1), now::get))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("Failure threshold must be positive");
+        }
+    }
+}
@@ -0,0 +1,373 @@
+package com.trace.ai.services.resilience;
+
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@DisplayName("Resilience Policy Unit Tests")
+class ResiliencePolicyUnitTest {
+    
+    private HttpServer server;
+    private ExecutorService executor;
+    private HttpClient client;
+    private URI uri;
+    
+    // Responses of the stub server in order: status, delay in milliseconds
+    private final Queue<int[]> responses = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger requestCount = new AtomicInteger();
+    
+    @BeforeEach
+    void setUp() throws IOException {
+        executor = Executors.newCachedThreadPool();
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.setExecutor(executor);
+        server.createContext("/analyze", exchange -> {
+            requestCount.incrementAndGet();
+            int[] response = responses.poll();
+            int status = response != null ? response[0] : 200;
+            try {
+                Thread.sleep(response != null ? response[1] : 0);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            byte[] body = (status == 200 ? "analysis" : "error " + status).getBytes(StandardCharsets.UTF_8);
+            if (status == 429) {
+                exchange.getResponseHeaders().add("Retry-After", "0.3");
+            }
+            exchange.sendResponseHeaders(status, body.length);
+            exchange.getResponseBody().write(body);
+            exchange.close();
+        });
+        server.start();
+        client = HttpClient.newBuilder().executor(executor).build();
+        uri = URI.create("http://127.0.0.1:" + server.getAddress().getPort() + "/analyze");
+    }
+    
+    @AfterEach
+    void tearDown() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+    
+    private void respond(int status, int delayMs) {
+        responses.add(new int[]{status, delayMs});
+    }
+    
+    private CompletableFuture<String> sendAnalysis() {
+        HttpRequest request = HttpRequest.newBuilder(uri).GET().build();
+        return client.sendAsync(request, HttpResponse.BodyHandlers.ofString()).thenApply(response -> {
+            if (response.statusCode() != 200) {
+                throw new ProviderHttpException("Request failed with status " + response.statusCode(),
+                    response.statusCode(), ProviderHttpException.parseRetryAfter(
+                        response.headers().firstValue("Retry-After").orElse(null)));
+            }
+            return response.body();
+        });
+    }
+    
+    private ResiliencePolicy policy(CircuitBreaker breaker, LatencyTracker tracker) {
+        return new ResiliencePolicy("Test", 3, 10, 50, breaker, tracker, executor);
+    }
+    
+    private ResiliencePolicy policy() {
+        return policy(new CircuitBreaker("Test"), new LatencyTracker());
+    }
+    
+    @Nested
+    @DisplayName("Retries")
+    class Retries {
+        
+        @Test
+        @DisplayName("should retry server errors until request succeeds")
+        void shouldRetryServerErrors_untilRequestSucceeds() throws Exception {
+            // Arrange
+            respond(503, 0);
+            respond(500, 0);
+            
+            // Act
+            String result = policy().execute(ResiliencePolicyUnitTest.this::sendAnalysis, false).get(5, TimeUnit.SECONDS);
+            
+            // Assert
+            assertThat(result).isEqualTo("analysis");
+            assertThat(requestCount).hasValue(3);
+        }
+        
+        @Test
+        @DisplayName("should wait at least retry after when rate limited")
+        void shouldWaitAtLeastRetryAfter_whenRateLimited() throws Exception {
+            // Arrange
+            respond(429, 0);
+            long start = System.nanoTime();
+            
+            // Act
+            String result = policy().execute(ResiliencePolicyUnitTest.this::sendAnalysis, false).get(5, TimeUnit.SECONDS);
+            
+            // Assert
+            assertThat(result).isEqualTo("analysis");
+            assertThat(Duration.ofNanos(System.nanoTime() - start)).isGreaterThanOrEqualTo(Duration.ofMillis(300));
+        }
+        
+        @Test
+        @DisplayName("should not retry client errors")
+        void shouldNotRetryClientErrors() {
+            // Arrange
+            respond(401, 0);
+            
+            // Act
+            CompletableFuture<String> result = policy().execute(ResiliencePolicyUnitTest.this::sendAnalysis, false);
+            
+            // Assert
+            assertThatThrownBy(() -> result.get(5, TimeUnit.SECONDS))
+                .isInstanceOf(ExecutionException.class)
+                .hasRootCauseInstanceOf(ProviderHttpException.class)
+                .hasRootCauseMessage("Request failed with status 401");
+            assertThat(requestCount).hasValue(1);
+        }
+        
+        @Test
+        @DisplayName("should not retry errors other than provider or I/O failures")
+        void shouldNotRetryErrorsOtherThanProviderOrIoFailures() {
+            // Arrange
+            CircuitBreaker breaker = new CircuitBreaker("Test", 1, Duration.ofMinutes(1), System::nanoTime);
+            AtomicInteger attempts = new AtomicInteger();
+            
+            // Act
+            CompletableFuture<String> result = policy(breaker, new LatencyTracker()).execute(() -> {
+                attempts.incrementAndGet();
+                return CompletableFuture.failedFuture(new IllegalStateException("Malformed response"));
+            }, false);
+            
+            // Assert
+            assertThatThrownBy(() -> result.get(5, TimeUnit.SECONDS))
+                .isInstanceOf(ExecutionException.class)
+                .hasRootCauseMessage("Malformed response");
+            assertThat(attempts).hasValue(1);
+            assertThat(breaker.getState()).isEqualTo(CircuitBreaker.State.CLOSED);
+        }
+        
+        @Test
+        @DisplayName("should stop retrying when retry is no longer allowed")
+        void shouldStopRetrying_whenRetryIsNoLongerAllowed() {
+            // Arrange
+            respond(503, 0);
+            
+            // Act
+            CompletableFuture<String> result = policy().execute(ResiliencePolicyUnitTest.this::sendAnalysis, false, () -> false);
+            
+            // Assert
+            assertThatThrownBy(() -> result.get(5, TimeUnit.SECONDS)).isInstanceOf(ExecutionException.class);
+            assertThat(requestCount).hasValue(1);
+        }
+    }
+    
+    @Nested
+    @DisplayName("Circuit Breaking")
+    class CircuitBreaking {
+        
+        @Test
+        @DisplayName("should fail fast once circuit is open")
+        void shouldFailFast_onceCircuitIsOpen() {
+            // Arrange
+            CircuitBreaker breaker = new CircuitBreaker("Test", 3, Duration.ofMinutes(1), System::nanoTime);
+            ResiliencePolicy policy = policy(breaker, new LatencyTracker());
+            for (int i = 0; i < 3; i++) {
+                respond(503, 0);
+            }
+            CompletableFuture<String> failing = policy.execute(ResiliencePolicyUnitTest.this::sendAnalysis, false);
+            assertThatThrownBy(() -> failing.get(5, TimeUnit.SECONDS)).isInstanceOf(ExecutionException.class);
+            
+            // Act
+            CompletableFuture<String> result = policy.execute(ResiliencePolicyUnitTest.this::sendAnalysis, false);
+            
+            // Assert
+            assertThat(breaker.getState()).isEqualTo(CircuitBreaker.State.OPEN);
+            assertThatThrownBy(() -> result.get(5, TimeUnit.SECONDS))
+                .hasCauseInstanceOf(CircuitOpenException.class);
+            assertThat(requestCount).hasValue(3);
+        }
+        
+        @Test
+        @DisplayName("should not count rate limiting as failure")
+        void shouldNotCountRateLimitingAsFailure() throws Exception {
+            // Arrange
+            CircuitBreaker breaker = new CircuitBreaker("Test", 1, Duration.ofMinutes(1), System::nanoTime);
+            respond(429, 0);
+            
+            // Act
+            String result = policy(breaker, new LatencyTracker())
+                .execute(ResiliencePolicyUnitTest.this::sendAnalysis, false).get(5, TimeUnit.SECONDS);
+            
+            // Assert
+            assertThat(result).isEqualTo("analysis");
+            assertThat(breaker.getState()).isEqualTo(CircuitBreaker.State.CLOSED);
+        }
+    }
+    
+    @Nested
+    @DisplayName("Hedging")
+    class Hedging {
+        
+        private LatencyTracker trackerWithLatency(long latencyMs) {
+            LatencyTracker tracker = new LatencyTracker();
+            for (int i = 0; i < LatencyTracker.MIN_SAMPLES; i++) {
+                tracker.record(latencyMs);
+            }
+            return tracker;
+        }
+        
+        @Test
+        @DisplayName("should answer with hedged request when first request is slow")
+        void shouldAnswerWithHedgedRequest_whenFirstRequestIsSlow() throws Exception {
+            // Arrange
+            respond(200, 3000);
+            respond(200, 0);
+            ResiliencePolicy policy = policy(new CircuitBreaker("Test"), trackerWithLatency(50));
+            long start = System.nanoTime();
+            
+            // Act
+            String result = policy.execute(ResiliencePolicyUnitTest.this::sendAnalysis, true).get(5, TimeUnit.SECONDS);
+            
+            // Assert
+            assertThat(result).isEqualTo("analysis");
+            assertThat(requestCount).hasValue(2);
+            assertThat(Duration.ofNanos(System.nanoTime() - start)).isLessThan(Duration.ofMillis(2000));
+        }
+        
+        @Test
+        @DisplayName("should not hedge without enough latency samples")
+        void shouldNotHedge_withoutEnoughLatencySamples() throws Exception {
+            // Arrange
+            respond(200, 200);
+            
+            // Act
+            String result = policy().execute(ResiliencePolicyUnitTest.this::sendAnalysis, true).get(5, TimeUnit.SECONDS);
+            
+            // Assert
+            assertThat(result).isEqualTo("analysis");
+            assertThat(requestCount).hasValue(1);
+        }
+        
+        @Test
+        @DisplayName("should cancel attempts in flight when result is cancelled")
+        void shouldCancelAttemptsInFlight_whenResultIsCancelled() {
+            // Arrange
+            CompletableFuture<String> inFlight = new CompletableFuture<>();
+            CompletableFuture<String> result = policy().execute(() -> inFlight, false);
+            
+            // Act
+            result.cancel(true);
+            
+            // Assert
+            assertThat(inFlight).isCancelled();
+        }
+    }
+    
+    @Nested
+    @DisplayName("Rate Limiting")
+    class RateLimiting {
+        
+        // Hands out permits on the second try and records the pauses it was asked for
+        private final List<Duration> pauses = new CopyOnWriteArrayList<>();
+        private final AtomicInteger acquireCalls = new AtomicInteger();
+        private final RateLimiter rateLimiter = new RateLimiter() {
+            @Override
+            public long tryAcquire(long permits) {
+                return acquireCalls.incrementAndGet() == 1 ? TimeUnit.MILLISECONDS.toNanos(100) : 0;
+            }
+            
+            @Override
+            public void pause(Duration delay) {
+                pauses.add(delay);
+            }
+        };
+        
+        @Test
+        @DisplayName("should wait for permits before sending request")
+        void shouldWaitForPermits_beforeSendingRequest() throws Exception {
+            // Arrange
+            long start = System.nanoTime();
+            
+            // Act
+            String result = policy().execute(ResiliencePolicyUnitTest.this::sendAnalysis, rateLimiter, 10, executor)
+                .get(5, TimeUnit.SECONDS);
+            
+            // Assert
+            assertThat(result).isEqualTo("analysis");
+            assertThat(acquireCalls).hasValue(2);
+            assertThat(requestCount).hasValue(1);
+            assertThat(Duration.ofNanos(System.nanoTime() - start)).isGreaterThanOrEqualTo(Duration.ofMillis(100));
+        }
+        
+        @Test
+        @DisplayName("should pause rate limiter for retry after")
+        void shouldPauseRateLimiter_forRetryAfter() throws Exception {
+            // Arrange
+            respond(429, 0);
+            
+            // Act
+            String result = policy().execute(ResiliencePolicyUnitTest.this::sendAnalysis, rateLimiter, 10, executor)
+                .get(5, TimeUnit.SECONDS);
+            
+            // Assert
+            assertThat(result).isEqualTo("analysis");
+            assertThat(pauses).containsExactly(Duration.ofMillis(300));
+            assertThat(requestCount).hasValue(2);
+        }
+    }
+    
+    @Nested
+    @DisplayName("Backoff")
+    class BackoffDelays {
+        
+        @Test
+        @DisplayName("should double delay within jitter range")
+        void shouldDoubleDelayWithinJitterRange() {
+            // Act
+            long lowest = Backoff.delayMillis(2, 100, 10_000, null, () -> 0.0);
+            long highest = Backoff.delayMillis(2, 100, 10_000, null, () -> 0.999);
+            
+            // Assert
+            assertThat(lowest).isEqualTo(200);
+            assertThat(highest).isBetween(390L, 400L);
+        }
+        
+        @Test
+        @DisplayName("should cap delay at maximum")
+        void shouldCapDelayAtMaximum() {
+            // Act & Assert
+            assertThat(Backoff.delayMillis(20, 1000, 5000, null, () -> 0.999)).isLessThanOrEqualTo(5000);
+        }
+        
+        @Test
+        @DisplayName("should never wait less than retry after")
+        void shouldNeverWaitLessThanRetryAfter() {
+            // Act & Assert
+            assertThat(Backoff.delayMillis(0, 100, 1000, Duration.ofSeconds(7), () -> 0.5)).isEqualTo(7000);
+        }
+    }
+}
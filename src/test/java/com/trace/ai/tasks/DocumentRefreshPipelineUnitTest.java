@@ -0,0 +1,396 @@
+package com.trace.ai.tasks;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import com.trace.ai.models.DocumentEntry;
+import com.trace.ai.services.DocumentDatabaseService;
+import com.trace.ai.services.DocumentDatabaseService.DocumentChange;
+import com.trace.ai.services.DocumentDatabaseService.EmbeddingUpdate;
+import com.trace.ai.services.DocumentDatabaseService.StoredDocumentState;
+import com.trace.ai.services.DocumentDatabaseService.StoredEmbeddingState;
+import com.trace.ai.services.embedding.GeminiEmbeddingService;
+import com.trace.ai.services.embedding.OpenAIEmbeddingService;
+import com.trace.ai.services.embedding.TokenBucketRateLimiter;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@DisplayName("Document Refresh Pipeline Unit Tests")
+class DocumentRefreshPipelineUnitTest {
+    
+    private static final Pattern TITLE_NUMBER = Pattern.compile("Title: Doc (\\d+)");
+    
+    private HttpServer server;
+    private String baseUrl;
+    private DocumentDatabaseService mockDatabase;
+    
+    private final AtomicInteger openAIRequests = new AtomicInteger();
+    private final AtomicInteger openAIInFlight = new AtomicInteger();
+    private final AtomicInteger openAIMaxInFlight = new AtomicInteger();
+    private final AtomicInteger geminiRequests = new AtomicInteger();
+    private final AtomicInteger geminiRateLimitResponses = new AtomicInteger(1);
+    
+    @BeforeEach
+    void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.createContext("/v1/embeddings", this::handleOpenAI);
+        server.createContext("/models/gemini-embedding-001:batchEmbedContents", this::handleGemini);
+        server.start();
+        baseUrl = "http://127.0.0.1:" + server.getAddress().getPort();
+        mockDatabase = mock(DocumentDatabaseService.class);
+    }
+    
+    @AfterEach
+    void tearDown() {
+        server.stop(0);
+    }
+    
+    /**
+     * OpenAI stub: answers with data items in reverse order, relying on the index field.
+     */
+    private void handleOpenAI(HttpExchange exchange) throws IOException {
+        openAIRequests.incrementAndGet();
+        int inFlight = openAIInFlight.incrementAndGet();
+        openAIMaxInFlight.accumulateAndGet(inFlight, Math::max);
+        try {
+            Thread.sleep(50);
+            JsonArray input = readJson(exchange).getAsJsonArray("input");
+            JsonArray data = new JsonArray();
+            for (int i = input.size() - 1; i >= 0; i--) {
+                JsonObject item = new JsonObject();
+                item.addProperty("index", i);
+                item.add("embedding", embeddingFor(input.get(i).getAsString()));
+                data.add(item);
+            }
+            JsonObject response = new JsonObject();
+            response.add("data", data);
+            respond(exchange, 200, response.toString());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            openAIInFlight.decrementAndGet();
+        }
+    }
+    
+    /**
+     * Gemini stub: rate limits the first request with Retry-After, then answers in order.
+     */
+    private void handleGemini(HttpExchange exchange) throws IOException {
+        geminiRequests.incrementAndGet();
+        JsonArray requests = readJson(exchange).getAsJsonArray("requests");
+        if (geminiRateLimitResponses.getAndDecrement() > 0) {
+            exchange.getResponseHeaders().add("Retry-After", "1");
+            respond(exchange, 429, "{\"error\":{\"code\":429}}");
+            return;
+        }
+        JsonArray embeddings = new JsonArray();
+        for (int i = 0; i < requests.size(); i++) {
+            String text = requests.get(i).getAsJsonObject().getAsJsonObject("content")
+                .getAsJsonArray("parts").get(0).getAsJsonObject().get("text").getAsString();
+            JsonObject embedding = new JsonObject();
+            embedding.add("values", embeddingFor(text));
+            embeddings.add(embedding);
+        }
+        JsonObject response = new JsonObject();
+        response.add("embeddings", embeddings);
+        respond(exchange, 200, response.toString());
+    }
+    
+    private static JsonObject readJson(HttpExchange exchange) throws IOException {
+        return JsonParser.parseString(new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8))
+            .getAsJsonObject();
+    }
+    
+    private static void respond(HttpExchange exchange, int status, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream output = exchange.getResponseBody()) {
+            output.write(bytes);
+        }
+    }
+    
+    private static JsonArray embeddingFor(String text) {
+        Matcher matcher = TITLE_NUMBER.matcher(text);
+        float number = matcher.find() ? Float.parseFloat(matcher.group(1)) : -1f;
+        JsonArray values = new JsonArray();
+        values.add(number);
+        values.add(1.0f);
+        return values;
+    }
+    
+    private static List<DocumentEntry> createDocuments(int count) {
+        List<DocumentEntry> documents = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            documents.add(new DocumentEntry("test", "Doc " + i, "content " + i,
+                "summary " + i, null, null, null));
+        }
+        return documents;
+    }
+    
+    private static StoredDocumentState storedState(long id, DocumentEntry document, String openAIModel) {
+        return new StoredDocumentState(id, document.computeContentHash(),
+            new StoredEmbeddingState(true, openAIModel, false),
+            new StoredEmbeddingState(false, null, false));
+    }
+    
+    @SuppressWarnings("unchecked")
+    private List<DocumentChange> captureChanges() throws Exception {
+        ArgumentCaptor<List<DocumentChange>> changes = ArgumentCaptor.forClass(List.class);
+        verify(mockDatabase).applyRefresh(changes.capture(), anyCollection());
+        return changes.getValue();
+    }
+    
+    @SuppressWarnings("unchecked")
+    private List<float[]>[] captureStoredEmbeddings() throws Exception {
+        List<float[]> openAI = new ArrayList<>();
+        List<float[]> gemini = new ArrayList<>();
+        for (DocumentChange change : captureChanges()) {
+            openAI.add(change.getOpenAIUpdate().getEmbedding());
+            gemini.add(change.getGeminiUpdate().getEmbedding());
+        }
+        return new List[]{openAI, gemini};
+    }
+    
+    @Nested
+    @DisplayName("Pipeline Execution")
+    class PipelineExecution {
+        
+        @Test
+        @DisplayName("should map batched embeddings back to their documents")
+        void shouldMapBatchedEmbeddingsBackToTheirDocuments() throws Exception {
+            // Arrange
+            OpenAIEmbeddingService openAI = new OpenAIEmbeddingService("key", baseUrl + "/v1/embeddings");
+            DocumentRefreshPipeline pipeline = new DocumentRefreshPipeline(mockDatabase, openAI, null, 3, 4);
+            
+            // Act
+            DocumentRefreshPipeline.Result result = pipeline.run(createDocuments(25));
+            
+            // Assert
+            assertThat(result.getOpenAIEmbeddingCount()).isEqualTo(25);
+            assertThat(result.getFailedRequests()).isZero();
+            assertThat(openAIRequests.get()).isEqualTo(7);
+            List<float[]> stored = captureStoredEmbeddings()[0];
+            for (int i = 0; i < 25; i++) {
+                assertThat(stored.get(i)[0]).isEqualTo((float) i);
+            }
+        }
+        
+        @Test
+        @DisplayName("should bound requests in flight per provider")
+        void shouldBoundRequestsInFlightPerProvider() throws Exception {
+            // Arrange
+            OpenAIEmbeddingService openAI = new OpenAIEmbeddingService("key", baseUrl + "/v1/embeddings");
+            DocumentRefreshPipeline pipeline = new DocumentRefreshPipeline(mockDatabase, openAI, null, 2, 1);
+            
+            // Act
+            pipeline.run(createDocuments(12));
+            
+            // Assert
+            assertThat(openAIMaxInFlight.get()).isBetween(1, 2);
+        }
+        
+        @Test
+        @DisplayName("should honour retry after and embed with both providers")
+        void shouldHonourRetryAfterAndEmbedWithBothProviders() throws Exception {
+            // Arrange
+            OpenAIEmbeddingService openAI = new OpenAIEmbeddingService("key", baseUrl + "/v1/embeddings");
+            GeminiEmbeddingService gemini = new GeminiEmbeddingService("key", baseUrl + "/models/gemini-embedding-001");
+            gemini.setRateLimiter(new TokenBucketRateLimiter(1_000_000, 1_000_000));
+            DocumentRefreshPipeline pipeline = new DocumentRefreshPipeline(mockDatabase, openAI, gemini, 2, 5);
+            long start = System.currentTimeMillis();
+            
+            // Act
+            DocumentRefreshPipeline.Result result = pipeline.run(createDocuments(10));
+            
+            // Assert
+            assertThat(System.currentTimeMillis() - start).isGreaterThanOrEqualTo(1000);
+            assertThat(geminiRequests.get()).isEqualTo(3);
+            assertThat(result.getOpenAIEmbeddingCount()).isEqualTo(10);
+            assertThat(result.getGeminiEmbeddingCount()).isEqualTo(10);
+            List<float[]>[] stored = captureStoredEmbeddings();
+            assertThat(stored[1].get(9)[0]).isEqualTo(9f);
+        }
+        
+        @Test
+        @DisplayName("should leave embeddings empty when provider fails")
+        void shouldLeaveEmbeddingsEmpty_whenProviderFails() throws Exception {
+            // Arrange - nothing listens on this path
+            OpenAIEmbeddingService openAI = new OpenAIEmbeddingService("key", baseUrl + "/missing");
+            DocumentRefreshPipeline pipeline = new DocumentRefreshPipeline(mockDatabase, openAI, null, 1, 10);
+            
+            // Act
+            DocumentRefreshPipeline.Result result = pipeline.run(createDocuments(2));
+            
+            // Assert
+            assertThat(result.getFailedRequests()).isEqualTo(1);
+            assertThat(result.getOpenAIEmbeddingCount()).isZero();
+            assertThat(captureStoredEmbeddings()[0]).containsOnlyNulls();
+        }
+    }
+    
+    @Nested
+    @DisplayName("Incremental Refresh")
+    class IncrementalRefresh {
+        
+        @Test
+        @DisplayName("should skip documents whose content and model are unchanged")
+        void shouldSkipDocuments_whoseContentAndModelAreUnchanged() throws Exception {
+            // Arrange
+            OpenAIEmbeddingService openAI = new OpenAIEmbeddingService("key", baseUrl + "/v1/embeddings");
+            List<DocumentEntry> documents = createDocuments(3);
+            Map<String, StoredDocumentState> stored = new HashMap<>();
+            for (int i = 0; i < documents.size(); i++) {
+                stored.put(documents.get(i).getTitle(), storedState(i + 1, documents.get(i), openAI.getDefaultModel()));
+            }
+            when(mockDatabase.getStoredDocumentStates()).thenReturn(stored);
+            DocumentRefreshPipeline pipeline = new DocumentRefreshPipeline(mockDatabase, openAI, null, 2, 10);
+            
+            // Act
+            DocumentRefreshPipeline.Result result = pipeline.run(documents);
+            
+            // Assert
+            assertThat(openAIRequests.get()).isZero();
+            assertThat(result.getUnchangedCount()).isEqualTo(3);
+            verify(mockDatabase, never()).applyRefresh(anyList(), anyCollection());
+        }
+        
+        @Test
+        @SuppressWarnings("unchecked")
+        @DisplayName("should insert, update and delete only what changed")
+        void shouldInsertUpdateAndDeleteOnlyWhatChanged() throws Exception {
+            // Arrange - Doc 0 unchanged, Doc 1 edited, Doc 2 new, "Removed" no longer in the corpus
+            OpenAIEmbeddingService openAI = new OpenAIEmbeddingService("key", baseUrl + "/v1/embeddings");
+            List<DocumentEntry> documents = createDocuments(3);
+            DocumentEntry removed = new DocumentEntry("test", "Removed", "content", null, null, null, null);
+            DocumentEntry previousDoc1 = new DocumentEntry("test", "Doc 1", "content 1", "old summary", null, null, null);
+            Map<String, StoredDocumentState> stored = new HashMap<>();
+            stored.put("Doc 0", storedState(10, documents.get(0), openAI.getDefaultModel()));
+            stored.put("Doc 1", storedState(11, previousDoc1, openAI.getDefaultModel()));
+            stored.put("Removed", storedState(12, removed, openAI.getDefaultModel()));
+            when(mockDatabase.getStoredDocumentStates()).thenReturn(stored);
+            DocumentRefreshPipeline pipeline = new DocumentRefreshPipeline(mockDatabase, openAI, null, 2, 10);
+            
+            // Act
+            DocumentRefreshPipeline.Result result = pipeline.run(documents);
+            
+            // Assert
+            assertThat(result.getInsertedCount()).isEqualTo(1);
+            assertThat(result.getUpdatedCount()).isEqualTo(1);
+            assertThat(result.getDeletedCount()).isEqualTo(1);
+            assertThat(result.getOpenAIEmbeddingCount()).isEqualTo(2);
+            
+            List<DocumentChange> changes = captureChanges();
+            assertThat(changes).extracting(DocumentChange::getExistingId).containsExactly(11L, null);
+            assertThat(changes.get(0).isContentChanged()).isTrue();
+            assertThat(changes.get(1).getOpenAIUpdate().getEmbedding()[0]).isEqualTo(2f);
+            
+            ArgumentCaptor<Collection<Long>> deleted = ArgumentCaptor.forClass(Collection.class);
+            verify(mockDatabase).applyRefresh(anyList(), deleted.capture());
+            assertThat(deleted.getValue()).containsExactly(12L);
+        }
+        
+        @Test
+        @DisplayName("should re-embed documents whose embedding model changed")
+        void shouldReEmbedDocuments_whoseEmbeddingModelChanged() throws Exception {
+            // Arrange
+            OpenAIEmbeddingService openAI = new OpenAIEmbeddingService("key", baseUrl + "/v1/embeddings");
+            List<DocumentEntry> documents = createDocuments(2);
+            Map<String, StoredDocumentState> stored = new HashMap<>();
+            stored.put("Doc 0", storedState(1, documents.get(0), "old-model"));
+            stored.put("Doc 1", storedState(2, documents.get(1), openAI.getDefaultModel()));
+            when(mockDatabase.getStoredDocumentStates()).thenReturn(stored);
+            DocumentRefreshPipeline pipeline = new DocumentRefreshPipeline(mockDatabase, openAI, null, 2, 10);
+            
+            // Act
+            pipeline.run(documents);
+            
+            // Assert
+            List<DocumentChange> changes = captureChanges();
+            assertThat(changes).hasSize(1);
+            assertThat(changes.get(0).isContentChanged()).isFalse();
+            assertThat(changes.get(0).getOpenAIUpdate().getAction()).isEqualTo(EmbeddingUpdate.Action.REPLACE);
+            assertThat(changes.get(0).getOpenAIUpdate().getModel()).isEqualTo(openAI.getDefaultModel());
+        }
+        
+        @Test
+        @DisplayName("should mark embeddings stale when re-embedding fails")
+        void shouldMarkEmbeddingsStale_whenReEmbeddingFails() throws Exception {
+            // Arrange - nothing listens on this path
+            OpenAIEmbeddingService openAI = new OpenAIEmbeddingService("key", baseUrl + "/missing");
+            List<DocumentEntry> documents = createDocuments(1);
+            when(mockDatabase.getStoredDocumentStates())
+                .thenReturn(Map.of("Doc 0", storedState(1, documents.get(0), "old-model")));
+            DocumentRefreshPipeline pipeline = new DocumentRefreshPipeline(mockDatabase, openAI, null, 1, 10);
+            
+            // Act
+            DocumentRefreshPipeline.Result result = pipeline.run(documents);
+            
+            // Assert
+            assertThat(result.getStaleEmbeddingCount()).isEqualTo(1);
+            assertThat(captureChanges().get(0).getOpenAIUpdate().getAction()).isEqualTo(EmbeddingUpdate.Action.MARK_STALE);
+        }
+        
+        @Test
+        @DisplayName("should mark embeddings stale when content changed for an unconfigured provider")
+        void shouldMarkEmbeddingsStale_whenContentChangedForUnconfiguredProvider() throws Exception {
+            // Arrange
+            GeminiEmbeddingService gemini = new GeminiEmbeddingService("key", baseUrl + "/models/gemini-embedding-001");
+            geminiRateLimitResponses.set(0);
+            DocumentEntry previous = new DocumentEntry("test", "Doc 0", "content", "old summary", null, null, null);
+            when(mockDatabase.getStoredDocumentStates()).thenReturn(Map.of("Doc 0", storedState(1, previous, "any")));
+            DocumentRefreshPipeline pipeline = new DocumentRefreshPipeline(mockDatabase, null, gemini, 1, 10);
+            
+            // Act
+            pipeline.run(createDocuments(1));
+            
+            // Assert
+            DocumentChange change = captureChanges().get(0);
+            assertThat(change.getOpenAIUpdate().getAction()).isEqualTo(EmbeddingUpdate.Action.MARK_STALE);
+            assertThat(change.getGeminiUpdate().getAction()).isEqualTo(EmbeddingUpdate.Action.REPLACE);
+        }
+    }
+    
+    @Nested
+    @DisplayName("Constructor Validation")
+    class ConstructorValidation {
+        
+        @Test
+        @DisplayName("should throw exception when parallelism is not positive")
+        void shouldThrowException_whenParallelismIsNotPositive() {
+            // Act & Assert
+            assertThatThrownBy(() -> new DocumentRefreshPipeline(mockDatabase, null, null, 0, 1))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("Parallelism must be positive");
+        }
+    }
+}
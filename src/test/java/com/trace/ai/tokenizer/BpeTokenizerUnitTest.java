@@ -0,0 +1,211 @@
+package com.trace.ai.tokenizer;
+
+import com.trace.ai.configuration.AIServiceType;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+@DisplayName("BPE Tokenizer Unit Tests")
+class BpeTokenizerUnitTest {
+    
+    // Single bytes and a few merges, ranked in merge order
+    private static BpeTokenizer exactTokenizer() {
+        Map<String, Integer> ranks = new HashMap<>();
+        for (int b = 0; b < 256; b++) {
+            ranks.put(String.valueOf((char) b), b);
+        }
+        ranks.put("ab", 256);
+        ranks.put(" a", 257);
+        ranks.put(" ab", 258);
+        ranks.put("abc", 259);
+        return new BpeTokenizer(TokenEncoding.CL100K_BASE, ranks);
+    }
+    
+    @Nested
+    @DisplayName("Exact Counting")
+    class ExactCounting {
+        
+        @Test
+        @DisplayName("should merge pairs lowest rank first")
+        void shouldMergePairsLowestRankFirst() {
+            // Arrange
+            BpeTokenizer tokenizer = exactTokenizer();
+            
+            // Act
+            int abc = tokenizer.countTokens("abc");
+            int abd = tokenizer.countTokens(" abd");
+            
+            // Assert
+            assertThat(abc).isEqualTo(1);
+            assertThat(abd).isEqualTo(2);
+            assertThat(tokenizer.countTokens("abc abd")).isEqualTo(3);
+            assertThat(tokenizer.isExact()).isTrue();
+        }
+        
+        @Test
+        @DisplayName("should count multi-byte characters by their UTF-8 bytes")
+        void shouldCountMultiByteCharacters_byTheirUtf8Bytes() {
+            // Arrange
+            BpeTokenizer tokenizer = exactTokenizer();
+            
+            // Act
+            int count = tokenizer.countTokens("é");
+            
+            // Assert
+            assertThat(count).isEqualTo(2);
+        }
+        
+        @Test
+        @DisplayName("should count with bundled merge tables")
+        void shouldCountWithBundledMergeTables() {
+            // Arrange
+            BpeTokenizer cl100k = BpeTokenizer.getInstance(TokenEncoding.CL100K_BASE);
+            BpeTokenizer o200k = BpeTokenizer.getInstance(TokenEncoding.O200K_BASE);
+            assumeTrue(cl100k.isExact() && o200k.isExact(), "Merge tables are not in the resources");
+            
+            // Act & Assert
+            assertThat(cl100k.countTokens("hello world")).isEqualTo(2);
+            assertThat(o200k.countTokens("hello world")).isEqualTo(2);
+        }
+        
+        @Test
+        @DisplayName("should count empty text as zero tokens")
+        void shouldCountEmptyText_asZeroTokens() {
+            // Act & Assert
+            assertThat(exactTokenizer().countTokens("")).isZero();
+        }
+    }
+    
+    @Nested
+    @DisplayName("Estimated Counting")
+    class EstimatedCounting {
+        
+        @Test
+        @DisplayName("should estimate four ASCII characters per token for each piece")
+        void shouldEstimateFourAsciiCharactersPerToken_forEachPiece() {
+            // Arrange
+            BpeTokenizer tokenizer = new BpeTokenizer(TokenEncoding.CL100K_BASE, null);
+            
+            // Act
+            int count = tokenizer.countTokens("hello world");
+            
+            // Assert
+            assertThat(count).isEqualTo(4);
+            assertThat(tokenizer.isExact()).isFalse();
+        }
+        
+        @Test
+        @DisplayName("should estimate one token per character outside ASCII")
+        void shouldEstimateOneTokenPerCharacter_outsideAscii() {
+            // Arrange
+            BpeTokenizer tokenizer = new BpeTokenizer(TokenEncoding.CL100K_BASE, null);
+            
+            // Act
+            int cjk = tokenizer.countTokens("你好世界");
+            int accented = tokenizer.countTokens("café");
+            
+            // Assert
+            assertThat(cjk).isEqualTo(4);
+            assertThat(accented).isEqualTo(2);
+        }
+        
+        @Test
+        @DisplayName("should count each number and punctuation piece as at least one token")
+        void shouldCountEachNumberAndPunctuationPiece_asAtLeastOneToken() {
+            // Arrange
+            BpeTokenizer tokenizer = new BpeTokenizer(TokenEncoding.CL100K_BASE, null);
+            
+            // Act
+            int count = tokenizer.countTokens("1.2.3");
+            
+            // Assert
+            assertThat(count).isEqualTo(5);
+        }
+        
+        @Test
+        @DisplayName("should throw exception when text is null")
+        void shouldThrowException_whenTextIsNull() {
+            // Act & Assert
+            assertThatThrownBy(() -> new BpeTokenizer(TokenEncoding.CL100K_BASE, null).countTokens(null))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("Argument for @NotNull parameter 'text'");
+        }
+    }
+    
+    @Nested
+    @DisplayName("Truncation")
+    class Truncation {
+        
+        @Test
+        @DisplayName("should cut after last whole piece that fits")
+        void shouldCutAfterLastWholePieceThatFits() {
+            // Arrange
+            BpeTokenizer tokenizer = exactTokenizer();
+            
+            // Act
+            String truncated = tokenizer.truncate("abc abd abc", 2);
+            
+            // Assert
+            assertThat(truncated).isEqualTo("abc");
+        }
+        
+        @Test
+        @DisplayName("should return whole text when it fits")
+        void shouldReturnWholeText_whenItFits() {
+            // Arrange
+            BpeTokenizer tokenizer = new BpeTokenizer(TokenEncoding.CL100K_BASE, null);
+            
+            // Act
+            String truncated = tokenizer.truncate("hello world", 4);
+            
+            // Assert
+            assertThat(truncated).isEqualTo("hello world");
+        }
+        
+        @Test
+        @DisplayName("should throw exception when max tokens is negative")
+        void shouldThrowException_whenMaxTokensIsNegative() {
+            // Act & Assert
+            assertThatThrownBy(() -> exactTokenizer().truncate("abc", -1))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("Max tokens cannot be negative");
+        }
+    }
+    
+    @Nested
+    @DisplayName("Encodings")
+    class Encodings {
+        
+        @Test
+        @DisplayName("should use o200k for GPT-4o and newer OpenAI models")
+        void shouldUseO200k_forGpt4oAndNewerOpenAIModels() {
+            // Act & Assert
+            assertThat(TokenEncoding.forModel(AIServiceType.OPENAI, "gpt-4o-mini")).isEqualTo(TokenEncoding.O200K_BASE);
+            assertThat(TokenEncoding.forModel(AIServiceType.OPENAI, "gpt-4.1")).isEqualTo(TokenEncoding.O200K_BASE);
+            assertThat(TokenEncoding.forModel(AIServiceType.OPENAI, "o3-mini")).isEqualTo(TokenEncoding.O200K_BASE);
+        }
+        
+        @Test
+        @DisplayName("should use cl100k for older OpenAI models and Gemini")
+        void shouldUseCl100k_forOlderOpenAIModelsAndGemini() {
+            // Act & Assert
+            assertThat(TokenEncoding.forModel(AIServiceType.OPENAI, "gpt-4")).isEqualTo(TokenEncoding.CL100K_BASE);
+            assertThat(TokenEncoding.forModel(AIServiceType.OPENAI, "gpt-3.5-turbo")).isEqualTo(TokenEncoding.CL100K_BASE);
+            assertThat(TokenEncoding.forModel(AIServiceType.GEMINI, "gemini-1.5-pro")).isEqualTo(TokenEncoding.CL100K_BASE);
+        }
+        
+        @Test
+        @DisplayName("should locate merge table in tokenizer resources")
+        void shouldLocateMergeTable_inTokenizerResources() {
+            // Act & Assert
+            assertThat(TokenEncoding.O200K_BASE.getResourcePath()).isEqualTo("/tokenizers/o200k_base.tiktoken");
+        }
+    }
+}
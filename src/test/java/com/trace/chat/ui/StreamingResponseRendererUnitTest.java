@@ -0,0 +1,149 @@
+package com.trace.chat.ui;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@DisplayName("Streaming Response Renderer Unit Tests")
+class StreamingResponseRendererUnitTest {
+    
+    private final List<Runnable> scheduledFrames = new ArrayList<>();
+    private final List<Integer> scheduledDelays = new ArrayList<>();
+    private final List<String> renderedFrames = new ArrayList<>();
+    private StreamingResponseRenderer renderer;
+    
+    @BeforeEach
+    void setUp() {
+        scheduledFrames.clear();
+        scheduledDelays.clear();
+        renderedFrames.clear();
+        renderer = new StreamingResponseRenderer(renderedFrames::add, (frame, delayMs) -> {
+            scheduledFrames.add(frame);
+            scheduledDelays.add(delayMs);
+        });
+    }
+    
+    private void runScheduledFrames() {
+        List<Runnable> frames = new ArrayList<>(scheduledFrames);
+        scheduledFrames.clear();
+        frames.forEach(Runnable::run);
+    }
+    
+    @Nested
+    @DisplayName("Coalescing")
+    class Coalescing {
+        
+        @Test
+        @DisplayName("should schedule one frame for many pieces")
+        void shouldScheduleOneFrameForManyPieces() {
+            // Act
+            renderer.append("The ");
+            renderer.append("step ");
+            renderer.append("failed");
+            runScheduledFrames();
+            
+            // Assert
+            assertThat(scheduledDelays).hasSize(1);
+            assertThat(renderedFrames).containsExactly("The step failed");
+        }
+        
+        @Test
+        @DisplayName("should render first frame without delay")
+        void shouldRenderFirstFrameWithoutDelay() {
+            // Act
+            renderer.append("first");
+            
+            // Assert
+            assertThat(scheduledDelays).containsExactly(0);
+        }
+        
+        @Test
+        @DisplayName("should space frames by frame interval")
+        void shouldSpaceFramesByFrameInterval() {
+            // Arrange
+            renderer.append("first");
+            runScheduledFrames();
+            
+            // Act
+            renderer.append(" second");
+            
+            // Assert
+            assertThat(scheduledDelays).hasSize(2);
+            assertThat(scheduledDelays.get(1)).isGreaterThan(0)
+                .isLessThanOrEqualTo(StreamingResponseRenderer.FRAME_INTERVAL_MS);
+        }
+        
+        @Test
+        @DisplayName("should render accumulated text in each frame")
+        void shouldRenderAccumulatedTextInEachFrame() {
+            // Act
+            renderer.append("first");
+            runScheduledFrames();
+            renderer.append(" second");
+            runScheduledFrames();
+            
+            // Assert
+            assertThat(renderedFrames).containsExactly("first", "first second");
+            assertThat(renderer.getText()).isEqualTo("first second");
+        }
+        
+        @Test
+        @DisplayName("should ignore empty pieces")
+        void shouldIgnoreEmptyPieces() {
+            // Act
+            renderer.append("");
+            
+            // Assert
+            assertThat(scheduledFrames).isEmpty();
+        }
+    }
+    
+    @Nested
+    @DisplayName("Closing")
+    class Closing {
+        
+        @Test
+        @DisplayName("should not render pending frame after close")
+        void shouldNotRenderPendingFrame_afterClose() {
+            // Arrange
+            renderer.append("partial");
+            
+            // Act
+            renderer.close();
+            runScheduledFrames();
+            
+            // Assert
+            assertThat(renderedFrames).isEmpty();
+        }
+        
+        @Test
+        @DisplayName("should ignore text appended after close")
+        void shouldIgnoreTextAppended_afterClose() {
+            // Arrange
+            renderer.close();
+            
+            // Act
+            renderer.append("late");
+            
+            // Assert
+            assertThat(scheduledFrames).isEmpty();
+            assertThat(renderer.getText()).isEmpty();
+        }
+        
+        @Test
+        @DisplayName("should throw exception when frame callback is null")
+        void shouldThrowException_whenFrameCallbackIsNull() {
+            // Act & Assert
+            assertThatThrownBy(() -> new StreamingResponseRenderer(null))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("Argument for @NotNull parameter 'onFrame'");
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package com.trace.test.extractors;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DisplayName("Gherkin Step Index Unit Tests")
+class GherkinStepIndexUnitTest {
+    
+    private static final String FEATURE = String.join("\n",
+        "Feature: User Authentication",
+        "",
+        "  Background:",
+        "    Given the application is running",
+        "",
+        "  @smoke",
+        "  Scenario: Successful login",
+        "    Given I am on the login page",
+        "    When I enter valid credentials",
+        "    | user  | password |",
+        "    | alice | secret   |",
+        "    Then I should be logged in",
+        "",
+        "  Scenario Outline: Login with <email>",
+        "    When I enter \"<email>\" in the email field",
+        "    Then I should be logged in",
+        "",
+        "    Examples:",
+        "      | email          |",
+        "      | valid@test.com |");
+    
+    @Nested
+    @DisplayName("Index Entries")
+    class IndexEntries {
+        
+        @Test
+        @DisplayName("should index scenario and background steps")
+        void shouldIndexScenarioAndBackgroundSteps() {
+            // Act
+            Map<String, Void> entries = GherkinStepIndex.indexFeature(FEATURE);
+            
+            // Assert
+            assertThat(entries).containsKeys(
+                "step:the application is running",
+                "step:I am on the login page",
+                "step:I enter valid credentials",
+                "step:I should be logged in");
+        }
+        
+        @Test
+        @DisplayName("should index scenario names")
+        void shouldIndexScenarioNames() {
+            // Act
+            Map<String, Void> entries = GherkinStepIndex.indexFeature(FEATURE);
+            
+            // Assert
+            assertThat(entries).containsKeys("scenario:Successful login", "scenario:Login with <email>");
+        }
+        
+        @Test
+        @DisplayName("should keep parameterized steps of scenario outlines")
+        void shouldKeepParameterizedSteps_ofScenarioOutlines() {
+            // Act
+            Map<String, Void> entries = GherkinStepIndex.indexFeature(FEATURE);
+            
+            // Assert
+            assertThat(entries).containsKey("step:I enter \"<email>\" in the email field");
+        }
+        
+        @Test
+        @DisplayName("should not index table rows or feature lines")
+        void shouldNotIndexTableRows_orFeatureLines() {
+            // Act
+            Map<String, Void> entries = GherkinStepIndex.indexFeature(FEATURE);
+            
+            // Assert
+            assertThat(entries.keySet()).allMatch(key -> key.startsWith("step:") || key.startsWith("scenario:"));
+            assertThat(entries.keySet()).noneMatch(key -> key.contains("|"));
+            assertThat(entries).hasSize(7);
+        }
+        
+        @Test
+        @DisplayName("should handle Windows line endings")
+        void shouldHandleWindowsLineEndings() {
+            // Act
+            Map<String, Void> entries =
+                GherkinStepIndex.indexFeature(FEATURE.replace("\n", "\r\n"));
+            
+            // Assert
+            assertThat(entries).containsKey("step:I enter valid credentials");
+        }
+    }
+    
+    @Nested
+    @DisplayName("Step Normalization")
+    class StepNormalization {
+        
+        @Test
+        @DisplayName("should remove keyword and collapse whitespace")
+        void shouldRemoveKeyword_andCollapseWhitespace() {
+            // Act
+            String normalized = GherkinStepIndex.normalizeStep("  When I   enter valid\tcredentials ");
+            
+            // Assert
+            assertThat(normalized).isEqualTo("I enter valid credentials");
+        }
+        
+        @Test
+        @DisplayName("should match failed step to indexed step")
+        void shouldMatchFailedStep_toIndexedStep() {
+            // Arrange
+            Map<String, Void> entries = GherkinStepIndex.indexFeature(FEATURE);
+            
+            // Act
+            String key = GherkinStepIndex.STEP_KEY_PREFIX + GherkinStepIndex.normalizeStep("I am on the login page");
+            
+            // Assert
+            assertThat(entries).containsKey(key);
+        }
+    }
+}
@@ -0,0 +1,241 @@
+package com.trace.test.extractors;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DisplayName("Parsed Stack Trace Unit Tests")
+class ParsedStackTraceUnitTest {
+    
+    private static final String SELENIUM_TRACE = String.join("\n",
+        "org.openqa.selenium.TimeoutException: Expected condition failed: waiting for element",
+        "Build info: version: '4.1.0'",
+        "\tat app//org.openqa.selenium.support.ui.WebDriverWait.timeoutException(WebDriverWait.java:87)",
+        "\tat com.example.steps.LoginSteps.i_click_login(LoginSteps.java:42)",
+        "\tat ✽.I click the (login) button(file:///project/src/test/resources/login.feature:12)",
+        "\tSuppressed: java.lang.IllegalStateException: cleanup failed",
+        "\t\tat com.example.Hooks.after(Hooks.java:20)",
+        "\t\tCaused by: java.io.IOException: disk full",
+        "\t\t\tat com.example.Files.write(Files.java:5)",
+        "\t\t\t... 3 more",
+        "Caused by: org.openqa.selenium.NoSuchElementException: no such element",
+        "\tat java.base/jdk.internal.reflect.NativeMethodAccessorImpl.invoke0(Native Method)",
+        "\t... 12 more",
+        "Caused by: java.lang.AssertionError: ",
+        "Expected: is \"Welcome\"",
+        "     but: was \"Login\"",
+        "\tat org.hamcrest.MatcherAssert.assertThat(MatcherAssert.java:20)");
+    
+    @Nested
+    @DisplayName("Exceptions")
+    class Exceptions {
+        
+        @Test
+        @DisplayName("should parse the exception class and multi-line message")
+        void shouldParseExceptionClass_andMultiLineMessage() {
+            // Act
+            ParsedStackTrace.ExceptionInfo exception = ParsedStackTrace.parse(SELENIUM_TRACE).getException();
+            
+            // Assert
+            assertThat(exception).isNotNull();
+            assertThat(exception.getExceptionClass()).isEqualTo("org.openqa.selenium.TimeoutException");
+            assertThat(exception.getMessage())
+                .isEqualTo("Expected condition failed: waiting for element\nBuild info: version: '4.1.0'");
+            assertThat(exception.getFrames()).hasSize(3);
+        }
+        
+        @Test
+        @DisplayName("should parse the chain of causes")
+        void shouldParseTheChainOfCauses() {
+            // Act
+            List<ParsedStackTrace.ExceptionInfo> causes = ParsedStackTrace.parse(SELENIUM_TRACE).getCauses();
+            
+            // Assert
+            assertThat(causes).extracting(ParsedStackTrace.ExceptionInfo::getExceptionClass)
+                .containsExactly("org.openqa.selenium.NoSuchElementException", "java.lang.AssertionError");
+            assertThat(causes.get(0).getMessage()).isEqualTo("no such element");
+            assertThat(causes.get(1).getFrames()).hasSize(1);
+        }
+        
+        @Test
+        @DisplayName("should parse suppressed exceptions with their own causes")
+        void shouldParseSuppressedExceptions_withTheirOwnCauses() {
+            // Act
+            ParsedStackTrace.ExceptionInfo exception = ParsedStackTrace.parse(SELENIUM_TRACE).getException();
+            
+            // Assert
+            assertThat(exception).isNotNull();
+            assertThat(exception.getSuppressed()).hasSize(1);
+            ParsedStackTrace.ExceptionInfo suppressed = exception.getSuppressed().get(0);
+            assertThat(suppressed.getExceptionClass()).isEqualTo("java.lang.IllegalStateException");
+            assertThat(suppressed.getFrames()).extracting(ParsedStackTrace.Frame::getClassName)
+                .containsExactly("com.example.Hooks");
+            assertThat(suppressed.getCause()).isNotNull();
+            assertThat(suppressed.getCause().getExceptionClass()).isEqualTo("java.io.IOException");
+            assertThat(exception.getCause()).isNotNull();
+            assertThat(exception.getCause().getExceptionClass()).isEqualTo("org.openqa.selenium.NoSuchElementException");
+        }
+        
+        @Test
+        @DisplayName("should return the empty result for null or blank stack traces")
+        void shouldReturnEmptyResult_forNullOrBlankStackTraces() {
+            // Act & Assert
+            assertThat(ParsedStackTrace.parse(null)).isSameAs(ParsedStackTrace.EMPTY);
+            assertThat(ParsedStackTrace.parse("  \n ")).isSameAs(ParsedStackTrace.EMPTY);
+            assertThat(ParsedStackTrace.EMPTY.getException()).isNull();
+            assertThat(ParsedStackTrace.EMPTY.getFrames()).isEmpty();
+        }
+        
+        @Test
+        @DisplayName("should keep frames of a stack trace without header line")
+        void shouldKeepFrames_ofStackTraceWithoutHeaderLine() {
+            // Act
+            ParsedStackTrace parsed = ParsedStackTrace.parse(
+                "\tat com.example.Steps.check(Steps.java:9)\nCaused by: java.lang.RuntimeException");
+            
+            // Assert
+            assertThat(parsed.getException()).isNotNull();
+            assertThat(parsed.getException().getExceptionClass()).isNull();
+            assertThat(parsed.getFrames()).hasSize(1);
+            assertThat(parsed.getCauses()).extracting(ParsedStackTrace.ExceptionInfo::getExceptionClass)
+                .containsExactly("java.lang.RuntimeException");
+        }
+    }
+    
+    @Nested
+    @DisplayName("Frames")
+    class Frames {
+        
+        @Test
+        @DisplayName("should list all frames in printing order")
+        void shouldListAllFrames_inPrintingOrder() {
+            // Act
+            List<ParsedStackTrace.Frame> frames = ParsedStackTrace.parse(SELENIUM_TRACE).getFrames();
+            
+            // Assert
+            assertThat(frames).extracting(ParsedStackTrace.Frame::getMethodName).containsExactly(
+                "timeoutException", "i_click_login", "I click the (login) button", "after", "write", "invoke0", "assertThat");
+        }
+        
+        @Test
+        @DisplayName("should strip module and class loader prefixes")
+        void shouldStripModuleAndClassLoaderPrefixes() {
+            // Act
+            List<ParsedStackTrace.Frame> frames = ParsedStackTrace.parse(SELENIUM_TRACE).getFrames();
+            
+            // Assert
+            assertThat(frames.get(0).getClassName()).isEqualTo("org.openqa.selenium.support.ui.WebDriverWait");
+            assertThat(frames.get(5).getClassName()).isEqualTo("jdk.internal.reflect.NativeMethodAccessorImpl");
+        }
+        
+        @Test
+        @DisplayName("should parse file names and line numbers")
+        void shouldParseFileNames_andLineNumbers() {
+            // Act
+            List<ParsedStackTrace.Frame> frames = ParsedStackTrace.parse(SELENIUM_TRACE).getFrames();
+            
+            // Assert
+            assertThat(frames.get(1).getFileName()).isEqualTo("LoginSteps.java");
+            assertThat(frames.get(1).getLineNumber()).isEqualTo(42);
+            assertThat(frames.get(1).isJavaSource()).isTrue();
+            assertThat(frames.get(5).getFileName()).isEqualTo("Native Method");
+            assertThat(frames.get(5).getLineNumber()).isEqualTo(-1);
+            assertThat(frames.get(5).isJavaSource()).isFalse();
+        }
+        
+        @Test
+        @DisplayName("should recognize the Gherkin step frame")
+        void shouldRecognizeTheGherkinStepFrame() {
+            // Act
+            ParsedStackTrace.Frame frame = ParsedStackTrace.parse(SELENIUM_TRACE)
+                .findFrame(ParsedStackTrace.Frame::isGherkinStep);
+            
+            // Assert
+            assertThat(frame).isNotNull();
+            assertThat(frame.getMethodName()).isEqualTo("I click the (login) button");
+            assertThat(frame.getFileName()).isEqualTo("file:///project/src/test/resources/login.feature");
+            assertThat(frame.getLineNumber()).isEqualTo(12);
+        }
+    }
+    
+    @Nested
+    @DisplayName("Assertion Values")
+    class AssertionValues {
+        
+        @Test
+        @DisplayName("should extract Hamcrest expected and actual values")
+        void shouldExtractHamcrestExpectedAndActualValues() {
+            // Act
+            ParsedStackTrace parsed = ParsedStackTrace.parse(SELENIUM_TRACE);
+            
+            // Assert
+            assertThat(parsed.getExpectedValue()).isEqualTo("is \"Welcome\"");
+            assertThat(parsed.getActualValue()).isEqualTo("\"Login\"");
+        }
+        
+        @Test
+        @DisplayName("should extract AssertJ expected and actual values")
+        void shouldExtractAssertJExpectedAndActualValues() {
+            // Act
+            ParsedStackTrace parsed = ParsedStackTrace.parse(
+                "java.lang.AssertionError: \r\nexpected: \"a\"\r\n but was: \"b\"\r\n\tat com.example.Steps.check(Steps.java:9)\r\n");
+            
+            // Assert
+            assertThat(parsed.getExpectedValue()).isEqualTo("\"a\"");
+            assertThat(parsed.getActualValue()).isEqualTo("\"b\"");
+            assertThat(parsed.getFrames()).hasSize(1);
+        }
+        
+        @Test
+        @DisplayName("should extract JUnit expected and actual values from the header line")
+        void shouldExtractJUnitExpectedAndActualValues_fromTheHeaderLine() {
+            // Act
+            ParsedStackTrace parsed = ParsedStackTrace.parse(
+                "org.opentest4j.AssertionFailedError: expected: <5> but was: <3>\n\tat com.example.Steps.check(Steps.java:9)");
+            
+            // Assert
+            assertThat(parsed.getExpectedValue()).isEqualTo("<5>");
+            assertThat(parsed.getActualValue()).isEqualTo("<3>");
+        }
+        
+        @Test
+        @DisplayName("should extract JUnit 4 expected and actual values from the header line")
+        void shouldExtractJUnit4ExpectedAndActualValues_fromTheHeaderLine() {
+            // Act
+            ParsedStackTrace parsed = ParsedStackTrace.parse(
+                "java.lang.AssertionError: expected:<200> but was:<500>\n\tat com.example.Steps.check(Steps.java:9)");
+            
+            // Assert
+            assertThat(parsed.getExpectedValue()).isEqualTo("<200>");
+            assertThat(parsed.getActualValue()).isEqualTo("<500>");
+        }
+        
+        @Test
+        @DisplayName("should extract JUnit 4 comparison failure values")
+        void shouldExtractJUnit4ComparisonFailureValues() {
+            // Act
+            ParsedStackTrace parsed = ParsedStackTrace.parse(
+                "org.junit.ComparisonFailure: expected:<[foo]> but was:<[bar]>\n\tat com.example.Steps.check(Steps.java:9)");
+            
+            // Assert
+            assertThat(parsed.getExpectedValue()).isEqualTo("<[foo]>");
+            assertThat(parsed.getActualValue()).isEqualTo("<[bar]>");
+        }
+        
+        @Test
+        @DisplayName("should return null without assertion message")
+        void shouldReturnNull_withoutAssertionMessage() {
+            // Act
+            ParsedStackTrace parsed = ParsedStackTrace.parse(
+                "java.lang.NullPointerException\n\tat com.example.Steps.check(Steps.java:9)");
+            
+            // Assert
+            assertThat(parsed.getExpectedValue()).isNull();
+            assertThat(parsed.getActualValue()).isNull();
+        }
+    }
+}
@@ -0,0 +1,162 @@
+package com.trace.test.extractors;
+
+import com.trace.test.models.StepDefinitionInfo;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@DisplayName("Step Definition Cache Unit Tests")
+class StepDefinitionCacheUnitTest {
+    
+    private static final ParsedStackTrace.Frame FRAME =
+        new ParsedStackTrace.Frame("com.example.steps.LoginSteps", "i_click_login", "LoginSteps.java", 42);
+    
+    private final AtomicLong modificationCount = new AtomicLong();
+    private final AtomicInteger resolutions = new AtomicInteger();
+    
+    private StepDefinitionCache cache;
+    private StepDefinitionInfo stepDefinition;
+    private Function<ParsedStackTrace.Frame, StepDefinitionInfo> resolver;
+    
+    @BeforeEach
+    void setUp() {
+        cache = new StepDefinitionCache(modificationCount::get);
+        stepDefinition = new StepDefinitionInfo.Builder()
+            .withMethodName("i_click_login")
+            .withClassName("LoginSteps")
+            .withStepPattern("I click the login button")
+            .withLineNumber(40)
+            .build();
+        resolver = frame -> {
+            resolutions.incrementAndGet();
+            return stepDefinition;
+        };
+    }
+    
+    @Nested
+    @DisplayName("Caching")
+    class Caching {
+        
+        @Test
+        @DisplayName("should resolve each frame once")
+        void shouldResolveEachFrameOnce() {
+            // Act
+            StepDefinitionInfo first = cache.getOrResolve(FRAME, resolver);
+            StepDefinitionInfo second = cache.getOrResolve(FRAME, resolver);
+            
+            // Assert
+            assertThat(first).isSameAs(stepDefinition);
+            assertThat(second).isSameAs(stepDefinition);
+            assertThat(resolutions).hasValue(1);
+        }
+        
+        @Test
+        @DisplayName("should cache frames that are not step definitions")
+        void shouldCacheFrames_thatAreNotStepDefinitions() {
+            // Arrange
+            Function<ParsedStackTrace.Frame, StepDefinitionInfo> nullResolver = frame -> {
+                resolutions.incrementAndGet();
+                return null;
+            };
+            
+            // Act
+            cache.getOrResolve(FRAME, nullResolver);
+            StepDefinitionInfo result = cache.getOrResolve(FRAME, nullResolver);
+            
+            // Assert
+            assertThat(result).isNull();
+            assertThat(resolutions).hasValue(1);
+        }
+        
+        @Test
+        @DisplayName("should resolve frames on different lines separately")
+        void shouldResolveFrames_onDifferentLinesSeparately() {
+            // Arrange
+            ParsedStackTrace.Frame otherLine =
+                new ParsedStackTrace.Frame("com.example.steps.LoginSteps", "i_click_login", "LoginSteps.java", 43);
+            
+            // Act
+            cache.getOrResolve(FRAME, resolver);
+            cache.getOrResolve(otherLine, resolver);
+            
+            // Assert
+            assertThat(resolutions).hasValue(2);
+            assertThat(cache.size()).isEqualTo(2);
+        }
+        
+        @Test
+        @DisplayName("should keep the cache bounded")
+        void shouldKeepTheCacheBounded() {
+            // Act
+            for (int line = 1; line <= StepDefinitionCache.MAX_ENTRIES + 10; line++) {
+                cache.getOrResolve(new ParsedStackTrace.Frame("com.example.steps.LoginSteps", "step", "LoginSteps.java", line), resolver);
+            }
+            
+            // Assert
+            assertThat(cache.size()).isEqualTo(StepDefinitionCache.MAX_ENTRIES);
+        }
+    }
+    
+    @Nested
+    @DisplayName("Invalidation")
+    class Invalidation {
+        
+        @Test
+        @DisplayName("should resolve again after a PSI modification")
+        void shouldResolveAgain_afterPsiModification() {
+            // Arrange
+            cache.getOrResolve(FRAME, resolver);
+            
+            // Act
+            modificationCount.incrementAndGet();
+            cache.getOrResolve(FRAME, resolver);
+            
+            // Assert
+            assertThat(resolutions).hasValue(2);
+            assertThat(cache.size()).isEqualTo(1);
+        }
+        
+        @Test
+        @DisplayName("should not cache results of failed resolutions")
+        void shouldNotCacheResults_ofFailedResolutions() {
+            // Arrange
+            Function<ParsedStackTrace.Frame, StepDefinitionInfo> failingResolver = frame -> {
+                throw new IllegalStateException("Read action cancelled");
+            };
+            
+            // Act
+            assertThatThrownBy(() -> cache.getOrResolve(FRAME, failingResolver))
+                .isInstanceOf(IllegalStateException.class);
+            StepDefinitionInfo result = cache.getOrResolve(FRAME, resolver);
+            
+            // Assert
+            assertThat(result).isSameAs(stepDefinition);
+            assertThat(resolutions).hasValue(1);
+        }
+    }
+    
+    @Nested
+    @DisplayName("Validation")
+    class Validation {
+        
+        @Test
+        @DisplayName("should reject null arguments")
+        void shouldRejectNullArguments() {
+            // Act & Assert
+            assertThatThrownBy(() -> cache.getOrResolve(null, resolver))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("Argument for @NotNull parameter 'frame'");
+            assertThatThrownBy(() -> cache.getOrResolve(FRAME, null))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("Argument for @NotNull parameter 'resolver'");
+        }
+    }
+}
@@ -0,0 +1,208 @@
+package com.trace.test.extractors;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@DisplayName("Step Pattern Matcher Unit Tests")
+class StepPatternMatcherUnitTest {
+    
+    @BeforeEach
+    void setUp() {
+        StepPatternMatcher.clearCache();
+    }
+    
+    @Nested
+    @DisplayName("Scenario Outline Steps")
+    class ScenarioOutlineSteps {
+        
+        @Test
+        @DisplayName("should match steps with example values")
+        void shouldMatchSteps_withExampleValues() {
+            // Act & Assert
+            assertThat(StepPatternMatcher.matchesOutlineStep(
+                "I enter \"<email>\" in the email field", "I enter \"valid@test.com\" in the email field")).isTrue();
+            assertThat(StepPatternMatcher.matchesOutlineStep(
+                "I log in as <user> with <password>", "I log in as alice with secret")).isTrue();
+        }
+        
+        @Test
+        @DisplayName("should not match steps with different literal text")
+        void shouldNotMatchSteps_withDifferentLiteralText() {
+            // Act & Assert
+            assertThat(StepPatternMatcher.matchesOutlineStep(
+                "I enter \"<email>\" in the email field", "I type \"valid@test.com\" in the email field")).isFalse();
+            assertThat(StepPatternMatcher.matchesOutlineStep(
+                "I enter \"<email>\" in the email field", "I enter \"valid@test.com\" in the name field")).isFalse();
+        }
+        
+        @Test
+        @DisplayName("should treat regex characters in templates literally")
+        void shouldTreatRegexCharacters_inTemplatesLiterally() {
+            // Act & Assert
+            assertThat(StepPatternMatcher.matchesOutlineStep("the total is $<amount>.", "the total is $5.")).isTrue();
+            assertThat(StepPatternMatcher.matchesOutlineStep("the total is $<amount>.", "the total is $5!")).isFalse();
+        }
+        
+        @Test
+        @DisplayName("should only match identical steps without parameters")
+        void shouldOnlyMatchIdenticalSteps_withoutParameters() {
+            // Act & Assert
+            assertThat(StepPatternMatcher.matchesOutlineStep("I am on the login page", "I am on the login page")).isTrue();
+            assertThat(StepPatternMatcher.matchesOutlineStep("I am on the login page", "I am on the home page")).isFalse();
+        }
+        
+        @Test
+        @DisplayName("should record the literal prefix and suffix of templates")
+        void shouldRecordLiteralPrefixAndSuffix_ofTemplates() {
+            // Act
+            StepPatternMatcher.CompiledPattern pattern =
+                StepPatternMatcher.compileOutlineStep("I enter \"<email>\" in the email field");
+            
+            // Assert
+            assertThat(pattern.getPrefix()).isEqualTo("I enter \"");
+            assertThat(pattern.getSuffix()).isEqualTo("\" in the email field");
+        }
+    }
+    
+    @Nested
+    @DisplayName("Cucumber Expressions")
+    class CucumberExpressions {
+        
+        @Test
+        @DisplayName("should match built-in parameter types")
+        void shouldMatchBuiltInParameterTypes() {
+            // Act & Assert
+            assertThat(StepPatternMatcher.matchesStepDefinition("I have {int} cucumbers", "I have -42 cucumbers")).isTrue();
+            assertThat(StepPatternMatcher.matchesStepDefinition("I have {int} cucumbers", "I have many cucumbers")).isFalse();
+            assertThat(StepPatternMatcher.matchesStepDefinition("the price is {float}", "the price is 3.5")).isTrue();
+            assertThat(StepPatternMatcher.matchesStepDefinition("I pick {word}", "I pick apples")).isTrue();
+            assertThat(StepPatternMatcher.matchesStepDefinition("I pick {word}", "I pick red apples")).isFalse();
+        }
+        
+        @Test
+        @DisplayName("should match double and single quoted strings")
+        void shouldMatchDoubleAndSingleQuotedStrings() {
+            // Act & Assert
+            assertThat(StepPatternMatcher.matchesStepDefinition("the user {string} logs in", "the user \"bob\" logs in")).isTrue();
+            assertThat(StepPatternMatcher.matchesStepDefinition("the user {string} logs in", "the user 'bob' logs in")).isTrue();
+            assertThat(StepPatternMatcher.matchesStepDefinition("the user {string} logs in", "the user bob logs in")).isFalse();
+        }
+        
+        @Test
+        @DisplayName("should match optional text")
+        void shouldMatchOptionalText() {
+            // Act & Assert
+            assertThat(StepPatternMatcher.matchesStepDefinition(
+                "I have {int} cucumber(s) in my belly", "I have 1 cucumber in my belly")).isTrue();
+            assertThat(StepPatternMatcher.matchesStepDefinition(
+                "I have {int} cucumber(s) in my belly", "I have 2 cucumbers in my belly")).isTrue();
+        }
+        
+        @Test
+        @DisplayName("should match optional text containing whitespace")
+        void shouldMatchOptionalText_containingWhitespace() {
+            // Act & Assert
+            assertThat(StepPatternMatcher.matchesStepDefinition(
+                "I have {int} cucumbers in my (big )belly", "I have 5 cucumbers in my big belly")).isTrue();
+            assertThat(StepPatternMatcher.matchesStepDefinition(
+                "I have {int} cucumbers in my (big )belly", "I have 5 cucumbers in my belly")).isTrue();
+            assertThat(StepPatternMatcher.matchesStepDefinition(
+                "I have {int} cucumbers in my (big )belly", "I have 5 cucumbers in my (big )belly")).isFalse();
+        }
+        
+        @Test
+        @DisplayName("should match alternative words")
+        void shouldMatchAlternativeWords() {
+            // Act & Assert
+            assertThat(StepPatternMatcher.matchesStepDefinition("I click/press the button", "I click the button")).isTrue();
+            assertThat(StepPatternMatcher.matchesStepDefinition("I click/press the button", "I press the button")).isTrue();
+            assertThat(StepPatternMatcher.matchesStepDefinition("I click/press the button", "I push the button")).isFalse();
+        }
+        
+        @Test
+        @DisplayName("should match escaped characters literally")
+        void shouldMatchEscapedCharactersLiterally() {
+            // Act & Assert
+            assertThat(StepPatternMatcher.matchesStepDefinition("a \\(literal\\) value of {int}", "a (literal) value of 5")).isTrue();
+            assertThat(StepPatternMatcher.matchesStepDefinition("a \\(literal\\) value of {int}", "a  value of 5")).isFalse();
+        }
+        
+        @Test
+        @DisplayName("should match any text for custom parameter types")
+        void shouldMatchAnyText_forCustomParameterTypes() {
+            // Act & Assert
+            assertThat(StepPatternMatcher.matchesStepDefinition("I see a {color} car", "I see a dark red car")).isTrue();
+        }
+    }
+    
+    @Nested
+    @DisplayName("Regular Expressions")
+    class RegularExpressions {
+        
+        @Test
+        @DisplayName("should match anchored regular expressions")
+        void shouldMatchAnchoredRegularExpressions() {
+            // Act & Assert
+            assertThat(StepPatternMatcher.matchesStepDefinition("^I have (\\d+) items$", "I have 3 items")).isTrue();
+            assertThat(StepPatternMatcher.matchesStepDefinition("^I have (\\d+) items$", "I have three items")).isFalse();
+        }
+        
+        @Test
+        @DisplayName("should not match invalid regular expressions")
+        void shouldNotMatch_invalidRegularExpressions() {
+            // Act & Assert
+            assertThat(StepPatternMatcher.matchesStepDefinition("^I have (\\d+ items$", "I have 3 items")).isFalse();
+        }
+    }
+    
+    @Nested
+    @DisplayName("Pattern Cache")
+    class PatternCache {
+        
+        @Test
+        @DisplayName("should compile each template once")
+        void shouldCompileEachTemplateOnce() {
+            // Act
+            StepPatternMatcher.matchesOutlineStep("I enter \"<email>\"", "I enter \"a@test.com\"");
+            StepPatternMatcher.matchesOutlineStep("I enter \"<email>\"", "I enter \"b@test.com\"");
+            StepPatternMatcher.matchesStepDefinition("I enter {string}", "I enter \"a@test.com\"");
+            
+            // Assert
+            assertThat(StepPatternMatcher.getCacheSize()).isEqualTo(2);
+        }
+        
+        @Test
+        @DisplayName("should keep the cache bounded")
+        void shouldKeepTheCacheBounded() {
+            // Act
+            for (int i = 0; i < StepPatternMatcher.MAX_CACHED_PATTERNS + 10; i++) {
+                StepPatternMatcher.matchesOutlineStep("step <value> " + i, "step value " + i);
+            }
+            
+            // Assert
+            assertThat(StepPatternMatcher.getCacheSize()).isEqualTo(StepPatternMatcher.MAX_CACHED_PATTERNS);
+        }
+    }
+    
+    @Nested
+    @DisplayName("Validation")
+    class Validation {
+        
+        @Test
+        @DisplayName("should reject null arguments")
+        void shouldRejectNullArguments() {
+            // Act & Assert
+            assertThatThrownBy(() -> StepPatternMatcher.matchesOutlineStep(null, "step"))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("Argument for @NotNull parameter 'template'");
+            assertThatThrownBy(() -> StepPatternMatcher.matchesStepDefinition("step", null))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("Argument for @NotNull parameter 'stepText'");
+        }
+    }
+}
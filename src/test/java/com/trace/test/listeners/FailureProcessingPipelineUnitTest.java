@@ -0,0 +1,163 @@
+package com.trace.test.listeners;
+
+import com.intellij.execution.testframework.sm.runner.SMTestProxy;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DisplayName("Failure Processing Pipeline Unit Tests")
+class FailureProcessingPipelineUnitTest {
+    
+    /**
+     * Records what the pipeline processes and completes each failure when told to.
+     */
+    private static final class ManualStages {
+        private final List<String> events = new ArrayList<>();
+        private final Deque<Runnable> pending = new ArrayDeque<>();
+        
+        FailureProcessingPipeline pipeline() {
+            return new FailureProcessingPipeline((test, done) -> {
+                events.add("start " + test.getName());
+                pending.add(() -> {
+                    events.add("done " + test.getName());
+                    done.run();
+                });
+            }, Runnable::run);
+        }
+        
+        void completeNext() {
+            pending.poll().run();
+        }
+    }
+    
+    private static SMTestProxy test(String name) {
+        return new SMTestProxy(name, false, null);
+    }
+    
+    @Nested
+    @DisplayName("Ordering")
+    class Ordering {
+        
+        @Test
+        @DisplayName("should process one failure at a time in order")
+        void shouldProcessOneFailureAtATime_inOrder() {
+            // Arrange
+            ManualStages stages = new ManualStages();
+            FailureProcessingPipeline pipeline = stages.pipeline();
+            
+            // Act
+            pipeline.submit(test("first"));
+            pipeline.submit(test("second"));
+            
+            // Assert
+            assertThat(stages.events).containsExactly("start first");
+            assertThat(pipeline.getQueuedFailureCount()).isEqualTo(1);
+            
+            stages.completeNext();
+            assertThat(stages.events).containsExactly("start first", "done first", "start second");
+        }
+        
+        @Test
+        @DisplayName("should run notification after failures queued before it")
+        void shouldRunNotification_afterFailuresQueuedBeforeIt() {
+            // Arrange
+            ManualStages stages = new ManualStages();
+            FailureProcessingPipeline pipeline = stages.pipeline();
+            
+            // Act
+            pipeline.submit(test("first"));
+            pipeline.runAfterPending(() -> stages.events.add("finished"));
+            pipeline.submit(test("second"));
+            stages.completeNext();
+            
+            // Assert
+            assertThat(stages.events).containsExactly("start first", "done first", "finished", "start second");
+        }
+        
+        @Test
+        @DisplayName("should run notification right away when nothing is pending")
+        void shouldRunNotificationRightAway_whenNothingIsPending() {
+            // Arrange
+            ManualStages stages = new ManualStages();
+            FailureProcessingPipeline pipeline = stages.pipeline();
+            
+            // Act
+            pipeline.runAfterPending(() -> stages.events.add("started"));
+            
+            // Assert
+            assertThat(stages.events).containsExactly("started");
+        }
+        
+        @Test
+        @DisplayName("should continue with next failure when processing throws")
+        void shouldContinueWithNextFailure_whenProcessingThrows() {
+            // Arrange
+            List<String> processed = new ArrayList<>();
+            FailureProcessingPipeline pipeline = new FailureProcessingPipeline((test, done) -> {
+                if (test.getName().equals("broken")) {
+                    throw new IllegalStateException("Broken failure");
+                }
+                processed.add(test.getName());
+                done.run();
+            }, Runnable::run);
+            
+            // Act
+            pipeline.submit(test("broken"));
+            pipeline.submit(test("fine"));
+            
+            // Assert
+            assertThat(processed).containsExactly("fine");
+        }
+    }
+    
+    @Nested
+    @DisplayName("Capacity")
+    class Capacity {
+        
+        @Test
+        @DisplayName("should drop failures when queue is full")
+        void shouldDropFailures_whenQueueIsFull() {
+            // Arrange
+            ManualStages stages = new ManualStages();
+            FailureProcessingPipeline pipeline = stages.pipeline();
+            pipeline.submit(test("in progress"));
+            for (int i = 0; i < FailureProcessingPipeline.MAX_QUEUED_FAILURES; i++) {
+                assertThat(pipeline.submit(test("queued " + i))).isTrue();
+            }
+            
+            // Act
+            boolean accepted = pipeline.submit(test("overflow"));
+            
+            // Assert
+            assertThat(accepted).isFalse();
+            assertThat(pipeline.getQueuedFailureCount()).isEqualTo(FailureProcessingPipeline.MAX_QUEUED_FAILURES);
+        }
+        
+        @Test
+        @DisplayName("should clear waiting failures but keep notifications")
+        void shouldClearWaitingFailures_butKeepNotifications() {
+            // Arrange
+            ManualStages stages = new ManualStages();
+            FailureProcessingPipeline pipeline = stages.pipeline();
+            pipeline.submit(test("in progress"));
+            pipeline.submit(test("stale"));
+            pipeline.runAfterPending(() -> stages.events.add("started"));
+            
+            // Act
+            int dropped = pipeline.clearPendingFailures();
+            stages.completeNext();
+            
+            // Assert
+            assertThat(dropped).isEqualTo(1);
+            assertThat(pipeline.getQueuedFailureCount()).isZero();
+            assertThat(stages.events).containsExactly("start in progress", "done in progress", "started");
+        }
+    }
+}